@@ -0,0 +1,124 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.audit.benchmark;
+
+import static org.forgerock.audit.events.AuditEventBuilder.TIMESTAMP;
+import static org.forgerock.audit.events.AuditEventBuilder.TRANSACTION_ID;
+import static org.forgerock.json.JsonValue.*;
+import static org.forgerock.json.resource.ResourceResponse.FIELD_CONTENT_ID;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.audit.events.handlers.buffering.BatchConsumer;
+import org.forgerock.audit.events.handlers.buffering.BatchException;
+import org.forgerock.audit.events.handlers.buffering.BatchPublisher;
+import org.forgerock.audit.events.handlers.buffering.BufferedBatchPublisher;
+import org.forgerock.audit.events.handlers.buffering.OverflowPolicy;
+import org.forgerock.audit.events.handlers.buffering.QueueStrategy;
+import org.forgerock.json.JsonValue;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.time.Duration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Throughput and latency benchmarks for {@link BufferedBatchPublisher}, comparing its {@link QueueStrategy queue
+ * strategies}. The batch consumer does no I/O, so that the benchmarks measure the cost of handing events over from
+ * the producer threads to the consumer thread.
+ */
+public class BufferedBatchPublisherBenchmarkTest extends BenchmarkBase {
+
+    private static final String ACCESS = "access";
+    private static final int MAX_BATCHED_EVENTS = 500;
+
+    @State(Scope.Benchmark)
+    public static class PublisherState implements BatchConsumer {
+        @Param({ "ARRAY_BLOCKING_QUEUE", "MPSC_RING_BUFFER" })
+        QueueStrategy queueStrategy;
+
+        final AtomicLong offered = new AtomicLong();
+        final AtomicLong consumed = new AtomicLong();
+        final JsonValue event = json(object(field(FIELD_CONTENT_ID, "1"), field(TIMESTAMP, "1"),
+                field(TRANSACTION_ID, "1")));
+        BatchPublisher publisher;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            publisher = BufferedBatchPublisher.newBuilder(this)
+                    .queueStrategy(queueStrategy)
+                    .overflowPolicy(OverflowPolicy.BLOCK)
+                    .maxBatchEvents(MAX_BATCHED_EVENTS)
+                    .writeInterval(Duration.duration(100L, TimeUnit.MILLISECONDS))
+                    .build();
+            publisher.startup();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            publisher.shutdown();
+        }
+
+        @Override
+        public void addToBatch(final String topic, final JsonValue event, final StringBuilder payload) {
+            payload.append('.');
+        }
+
+        @Override
+        public Promise<Void, BatchException> publishBatch(final String payload) {
+            consumed.addAndGet(payload.length());
+            return newResultPromise(null);
+        }
+    }
+
+    /**
+     * Measures the throughput of concurrent producers offering events, which block whenever the queue is full.
+     */
+    @Benchmark
+    public boolean offer(final PublisherState state) {
+        return state.publisher.offer(ACCESS, state.event);
+    }
+
+    /**
+     * Measures the latency from offering a full batch of events until the batch has been published.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(1)
+    public long publishBatch(final PublisherState state) {
+        for (int i = 0; i < MAX_BATCHED_EVENTS; i++) {
+            state.publisher.offer(ACCESS, state.event);
+        }
+        final long target = state.offered.addAndGet(MAX_BATCHED_EVENTS);
+        long consumed;
+        while ((consumed = state.consumed.get()) < target) {
+            Thread.yield();
+        }
+        return consumed;
+    }
+}
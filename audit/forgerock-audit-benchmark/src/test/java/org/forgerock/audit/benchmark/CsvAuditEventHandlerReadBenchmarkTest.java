@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.audit.benchmark;
@@ -50,6 +51,15 @@ public class CsvAuditEventHandlerReadBenchmarkTest extends BenchmarkBase {
         private int counter;
         private String[] identifiers;
 
+        /**
+         * Gets the number of events to pre-populate the audit file with.
+         *
+         * @return event count
+         */
+        protected int getEventCount() {
+            return PRE_POPULATED_EVENT_COUNT;
+        }
+
         /**
          * Gets a pseudo-random audit event identifier.
          *
@@ -57,7 +67,7 @@ public class CsvAuditEventHandlerReadBenchmarkTest extends BenchmarkBase {
          */
         String getRandomIdentifier() {
             // NOTE: it doesn't matter that the counter will be updated by multiple thread concurrently
-            return identifiers[++counter % PRE_POPULATED_EVENT_COUNT];
+            return identifiers[++counter % identifiers.length];
         }
 
         @Override
@@ -69,8 +79,8 @@ public class CsvAuditEventHandlerReadBenchmarkTest extends BenchmarkBase {
         @Override
         protected void afterStartup() throws Exception {
             // pre-populate with data and store generated IDs
-            identifiers = new String[PRE_POPULATED_EVENT_COUNT];
-            for (int i = 0; i < PRE_POPULATED_EVENT_COUNT; ++i) {
+            identifiers = new String[getEventCount()];
+            for (int i = 0; i < identifiers.length; ++i) {
                 final String id = String.format("%010d", i);
                 final JsonValue event = json(object(
                         field(FIELD_CONTENT_ID, id), field(TIMESTAMP, id), field(TRANSACTION_ID, id)));
@@ -80,7 +90,7 @@ public class CsvAuditEventHandlerReadBenchmarkTest extends BenchmarkBase {
             // shuffle ordering of IDs, to simulate random access
             // https://en.wikipedia.org/wiki/Fisher%E2%80%93Yates_shuffle#The_modern_algorithm
             final Random random = ThreadLocalRandom.current();
-            for (int i = PRE_POPULATED_EVENT_COUNT - 1; i > 0; --i) {
+            for (int i = identifiers.length - 1; i > 0; --i) {
                 final int index = random.nextInt(i + 1);
                 final String s = identifiers[index];
                 identifiers[index] = identifiers[i];
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.audit.benchmark;
@@ -21,6 +22,7 @@ import static org.forgerock.audit.events.AuditEventBuilder.TRANSACTION_ID;
 import static org.forgerock.json.JsonValue.*;
 import static org.forgerock.json.resource.ResourceResponse.FIELD_CONTENT_ID;
 
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
@@ -35,9 +37,15 @@ import org.forgerock.json.resource.ResourceResponse;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.testng.annotations.Test;
 
 /**
  * Write-throughput benchmarks for {@link CsvAuditEventHandler}.
+ * <p>
+ * Unless a number of threads is given with {@code -Dthreads}, each benchmark is run with 1 to 64 concurrent writer
+ * threads, so that the contention between writers, with and without rotation policies, shows in the results.
  */
 public class CsvAuditEventHandlerWriteBenchmarkTest extends BenchmarkBase {
 
@@ -46,6 +54,12 @@ public class CsvAuditEventHandlerWriteBenchmarkTest extends BenchmarkBase {
      */
     static final long MAX_FILE_SIZE = 100_000_000;
 
+    /** Numbers of concurrent writer threads to run each benchmark with. */
+    static final int[] WRITER_THREADS = { 1, 4, 16, 64 };
+
+    /** Rotation interval of the time-based rotation policy, long enough not to trigger during a benchmark. */
+    private static final String ROTATION_INTERVAL = "1 day";
+
     private static final String KEYSTORE_FILENAME = "target/test-classes/keystore-signature.jks";
     private static final String KEYSTORE_PASSWORD = "password";
     private static final String SIGNATURE_INTERVAL = "10 seconds";
@@ -54,6 +68,24 @@ public class CsvAuditEventHandlerWriteBenchmarkTest extends BenchmarkBase {
     private static final Set<String> TOPICS_SET = Collections.unmodifiableSet(
             new HashSet<>(Arrays.asList(new String[]{ACCESS, ACTIVITY})));
 
+    @Override
+    @Test
+    public void run() throws Exception {
+        if (getThreads() > 0) {
+            super.run();
+            return;
+        }
+        for (final int threads : WRITER_THREADS) {
+            final ChainedOptionsBuilder options = newOptionsBuilder().threads(threads);
+            if (getReportDir() != null) {
+                options.result(Paths.get(getReportDir())
+                        .resolve(getClass().getSimpleName() + "-" + threads + "-threads.json")
+                        .toAbsolutePath().toString());
+            }
+            new Runner(options.build()).run();
+        }
+    }
+
     static class DefaultState extends AuditEventHandlerBenchmarkState<CsvAuditEventHandlerConfiguration> {
         private final AtomicInteger counter = new AtomicInteger();
 
@@ -125,6 +157,23 @@ public class CsvAuditEventHandlerWriteBenchmarkTest extends BenchmarkBase {
         return state.handler.publishEvent(null, ACCESS, state.buildUniqueEvent()).getOrThrow();
     }
 
+    @State(Scope.Benchmark)
+    public static class UnbufferedTimeRotatedWriteState extends DefaultState {
+        @Override
+        public void updateConfiguration(final CsvAuditEventHandlerConfiguration configuration) {
+            configuration.getFileRotation().setRotationEnabled(true);
+            configuration.getFileRotation().setMaxFileSize(MAX_FILE_SIZE);
+            configuration.getFileRotation().setRotationInterval(ROTATION_INTERVAL);
+            configuration.getFileRotation().setRotationTimes(Arrays.asList("0 seconds", "12 hours"));
+        }
+    }
+
+    @Benchmark
+    public ResourceResponse unbufferedTimeRotatedWrite(final UnbufferedTimeRotatedWriteState state)
+            throws Exception {
+        return state.handler.publishEvent(null, ACCESS, state.buildUniqueEvent()).getOrThrow();
+    }
+
     @State(Scope.Benchmark)
     public static class BufferedWriteState extends DefaultState {
         @Override
@@ -0,0 +1,139 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.audit.benchmark;
+
+import static org.forgerock.audit.benchmark.CsvAuditEventHandlerWriteBenchmarkTest.WRITER_THREADS;
+
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.audit.events.handlers.FileBasedEventHandlerConfiguration.GroupCommit;
+import org.forgerock.audit.handlers.csv.CsvAuditEventHandlerConfiguration;
+import org.forgerock.audit.handlers.json.JsonAuditEventHandlerConfiguration;
+import org.forgerock.json.resource.ResourceResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.testng.annotations.Test;
+
+/**
+ * Publication latency benchmarks of the file-based handlers, when events must be durable once published.
+ * <p>
+ * Each benchmark samples the time taken to publish an event, so that the report contains latency percentiles. Events
+ * are made durable either by a sync per event, which is group commit with batches of a single event, or by group
+ * commit, which shares a sync between the events published concurrently. The non-durable CSV handler, which flushes
+ * each event without syncing it, is the reference.
+ * <p>
+ * Unless a number of threads is given with {@code -Dthreads}, each benchmark is run with 1 to 64 concurrent writer
+ * threads, since group commit only pays off with concurrent writers.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DurableAuditEventHandlerLatencyBenchmarkTest extends BenchmarkBase {
+
+    private static final String ACCESS = "access";
+
+    @Override
+    @Test
+    public void run() throws Exception {
+        if (getThreads() > 0) {
+            super.run();
+            return;
+        }
+        for (final int threads : WRITER_THREADS) {
+            final ChainedOptionsBuilder options = newOptionsBuilder().threads(threads);
+            if (getReportDir() != null) {
+                options.result(Paths.get(getReportDir())
+                        .resolve(getClass().getSimpleName() + "-" + threads + "-threads.json")
+                        .toAbsolutePath().toString());
+            }
+            new Runner(options.build()).run();
+        }
+    }
+
+    private static void enableGroupCommit(final GroupCommit groupCommit, final int maxBatchSize) {
+        groupCommit.setEnabled(true);
+        groupCommit.setMaxBatchSize(maxBatchSize);
+    }
+
+    @State(Scope.Benchmark)
+    public static class CsvFlushState extends CsvAuditEventHandlerWriteBenchmarkTest.DefaultState {
+        // empty
+    }
+
+    @Benchmark
+    public ResourceResponse csvFlushPerEvent(final CsvFlushState state) throws Exception {
+        return state.handler.publishEvent(null, ACCESS, state.buildUniqueEvent()).getOrThrow();
+    }
+
+    @State(Scope.Benchmark)
+    public static class CsvSyncState extends CsvAuditEventHandlerWriteBenchmarkTest.DefaultState {
+        @Override
+        protected void updateConfiguration(final CsvAuditEventHandlerConfiguration configuration) {
+            enableGroupCommit(configuration.getGroupCommit(), 1);
+        }
+    }
+
+    @Benchmark
+    public ResourceResponse csvSyncPerEvent(final CsvSyncState state) throws Exception {
+        return state.handler.publishEvent(null, ACCESS, state.buildUniqueEvent()).getOrThrow();
+    }
+
+    @State(Scope.Benchmark)
+    public static class CsvGroupCommitState extends CsvAuditEventHandlerWriteBenchmarkTest.DefaultState {
+        @Override
+        protected void updateConfiguration(final CsvAuditEventHandlerConfiguration configuration) {
+            enableGroupCommit(configuration.getGroupCommit(), GroupCommit.DEFAULT_MAX_BATCH_SIZE);
+        }
+    }
+
+    @Benchmark
+    public ResourceResponse csvGroupCommit(final CsvGroupCommitState state) throws Exception {
+        return state.handler.publishEvent(null, ACCESS, state.buildUniqueEvent()).getOrThrow();
+    }
+
+    @State(Scope.Benchmark)
+    public static class JsonSyncState extends JsonAuditEventHandlerWriteBenchmarkTest.DefaultState {
+        @Override
+        protected void updateConfiguration(final JsonAuditEventHandlerConfiguration configuration) {
+            enableGroupCommit(configuration.getGroupCommit(), 1);
+        }
+    }
+
+    @Benchmark
+    public ResourceResponse jsonSyncPerEvent(final JsonSyncState state) throws Exception {
+        return state.handler.publishEvent(null, ACCESS, state.buildUniqueEvent()).getOrThrow();
+    }
+
+    @State(Scope.Benchmark)
+    public static class JsonGroupCommitState extends JsonAuditEventHandlerWriteBenchmarkTest.DefaultState {
+        @Override
+        protected void updateConfiguration(final JsonAuditEventHandlerConfiguration configuration) {
+            enableGroupCommit(configuration.getGroupCommit(), GroupCommit.DEFAULT_MAX_BATCH_SIZE);
+        }
+    }
+
+    @Benchmark
+    public ResourceResponse jsonGroupCommit(final JsonGroupCommitState state) throws Exception {
+        return state.handler.publishEvent(null, ACCESS, state.buildUniqueEvent()).getOrThrow();
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.audit.benchmark;
@@ -53,6 +54,15 @@ public class JsonAuditEventHandlerReadBenchmarkTest extends BenchmarkBase {
         private int counter;
         private String[] identifiers;
 
+        /**
+         * Gets the number of events to pre-populate the audit file with.
+         *
+         * @return event count
+         */
+        protected int getEventCount() {
+            return PRE_POPULATED_EVENT_COUNT;
+        }
+
         /**
          * Gets a pseudo-random audit event identifier.
          *
@@ -60,7 +70,7 @@ public class JsonAuditEventHandlerReadBenchmarkTest extends BenchmarkBase {
          */
         String getRandomIdentifier() {
             // NOTE: it doesn't matter that the counter will be updated by multiple thread concurrently
-            return identifiers[++counter % PRE_POPULATED_EVENT_COUNT];
+            return identifiers[++counter % identifiers.length];
         }
 
         /**
@@ -76,8 +86,8 @@ public class JsonAuditEventHandlerReadBenchmarkTest extends BenchmarkBase {
         @Override
         protected void afterStartup() throws Exception {
             // pre-populate with data and store generated IDs
-            identifiers = new String[PRE_POPULATED_EVENT_COUNT];
-            for (int i = 0; i < PRE_POPULATED_EVENT_COUNT; ++i) {
+            identifiers = new String[getEventCount()];
+            for (int i = 0; i < identifiers.length; ++i) {
                 final String id = String.format("%010d", i);
                 final JsonValue event = buildUniqueEvent(id);
                 identifiers[i] = handler.publishEvent(null, ACCESS, event).get().getId();
@@ -91,7 +101,7 @@ public class JsonAuditEventHandlerReadBenchmarkTest extends BenchmarkBase {
             // shuffle ordering of IDs, to simulate random access
             // https://en.wikipedia.org/wiki/Fisher%E2%80%93Yates_shuffle#The_modern_algorithm
             final Random random = ThreadLocalRandom.current();
-            for (int i = PRE_POPULATED_EVENT_COUNT - 1; i > 0; --i) {
+            for (int i = identifiers.length - 1; i > 0; --i) {
                 final int index = random.nextInt(i + 1);
                 final String s = identifiers[index];
                 identifiers[index] = identifiers[i];
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.audit.benchmark;
@@ -105,6 +106,20 @@ public class JsonAuditEventHandlerWriteBenchmarkTest extends BenchmarkBase {
         return write(state);
     }
 
+    @State(Scope.Benchmark)
+    public static class SerializeOnWriterThreadWriteState extends WriteState {
+        @Override
+        protected void updateConfiguration(final JsonAuditEventHandlerConfiguration configuration) {
+            configuration.getBuffering().setSerializeOnPublish(false);
+        }
+    }
+
+    @Benchmark
+    public ResourceResponse serializeOnWriterThreadWrite(final SerializeOnWriterThreadWriteState state)
+            throws Exception {
+        return write(state);
+    }
+
     @State(Scope.Benchmark)
     public static class ElasticsearchCompatibleBestCaseWriteState extends WriteState {
         @Override
@@ -0,0 +1,88 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.audit.benchmark;
+
+import org.forgerock.audit.handlers.json.JsonAuditEventHandler;
+import org.forgerock.json.resource.QueryFilters;
+import org.forgerock.json.resource.QueryRequest;
+import org.forgerock.json.resource.QueryResourceHandler;
+import org.forgerock.json.resource.QueryResponse;
+import org.forgerock.json.resource.Requests;
+import org.forgerock.json.resource.ResourceResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Read-throughput benchmarks for {@link JsonAuditEventHandler} on a large audit file, comparing reads and queries
+ * on the indexed {@code _id}, {@code transactionId} and {@code timestamp} fields, which seek straight to the matching
+ * events, with a query which cannot use the index and scans the whole file.
+ * <p>
+ * The file holds 10 million events by default, which can be overridden with {@code -DindexedEventCount=1000000}.
+ */
+public class JsonAuditEventIndexReadBenchmarkTest extends JsonAuditEventHandlerReadBenchmarkTest {
+
+    private static final String ACCESS = "access";
+    private static final int TIMESTAMP_RANGE = 100;
+
+    @State(Scope.Benchmark)
+    public static class LargeReadState extends ReadState {
+        @Override
+        protected int getEventCount() {
+            return Integer.getInteger("indexedEventCount", 10_000_000);
+        }
+    }
+
+    @Benchmark
+    public String largeReadById(final LargeReadState state) throws Exception {
+        return readById(state);
+    }
+
+    @Benchmark
+    public QueryResponse largeQueryForId(final LargeReadState state) throws Exception {
+        return queryForId(state);
+    }
+
+    @Benchmark
+    public QueryResponse largeQueryForTransactionId(final LargeReadState state) throws Exception {
+        return query(state, "/transactionId eq \"" + state.getRandomIdentifier() + "\"");
+    }
+
+    @Benchmark
+    public QueryResponse largeQueryForTimestampRange(final LargeReadState state) throws Exception {
+        final String from = state.getRandomIdentifier();
+        final String to = String.format("%010d", Long.parseLong(from) + TIMESTAMP_RANGE);
+        return query(state, "/timestamp ge \"" + from + "\" and /timestamp lt \"" + to + "\"");
+    }
+
+    @Benchmark
+    public QueryResponse largeQueryForUnindexedFilter(final LargeReadState state) throws Exception {
+        // a "contains" filter cannot use the index, so this is the cost of a full scan
+        return query(state, "/transactionId co \"" + state.getRandomIdentifier() + "\"");
+    }
+
+    private QueryResponse query(final LargeReadState state, final String queryFilter) throws Exception {
+        final QueryRequest queryRequest = Requests.newQueryRequest(ACCESS)
+                .setQueryFilter(QueryFilters.parse(queryFilter));
+        return state.handler.queryEvents(null, ACCESS, queryRequest, new QueryResourceHandler() {
+            @Override
+            public boolean handleResource(final ResourceResponse resource) {
+                return true;
+            }
+        }).getOrThrow();
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.audit.benchmark;
+
+import static org.forgerock.json.JsonValue.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.json.JsonPatch;
+import org.forgerock.json.JsonPointer;
+import org.forgerock.json.JsonValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks {@link JsonPatch#diff} on a document of about 1 MB holding a large array of members, comparing the
+ * {@code legacy} algorithm, which replaces an array as a whole as soon as one of its elements differs, with the
+ * current one. The target document has a few members edited, inserted and removed, or moved, and is a copy of the
+ * original document held either in plain {@code Map}s and {@code List}s, or in {@link JsonValue#toPersistent()
+ * persistent} structures which share the unchanged members.
+ */
+public class JsonPatchDiffBenchmarkTest extends BenchmarkBase {
+
+    @State(Scope.Benchmark)
+    public static class DocumentState {
+        @Param({ "edit", "insert", "move" })
+        String change;
+
+        @Param({ "plain", "persistent" })
+        String representation;
+
+        JsonValue original;
+        JsonValue target;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            final List<Object> members = new ArrayList<>();
+            for (int i = 0; i < 4000; i++) {
+                members.add(object(
+                        field("_ref", "managed/user/" + i),
+                        field("_refProperties", object(field("_id", "rp-" + i), field("_rev", "1"),
+                                field("grantType", i % 3 == 0 ? "conditional" : "direct"),
+                                field("temporalConstraints", array()))),
+                        field("userName", "user" + i),
+                        field("mail", "user" + i + "@example.com"),
+                        field("since", "2026-01-01T00:00:00Z")));
+            }
+            original = json(object(field("_id", "managed/role/0"), field("name", "employees"),
+                    field("members", members)));
+            if (representation.equals("persistent")) {
+                original = original.toPersistent();
+            }
+            target = original.copy();
+            final JsonValue targetMembers = target.get("members");
+            for (int i = 0; i < 10; i++) {
+                final int index = 397 * i;
+                if (change.equals("edit")) {
+                    targetMembers.get(index).put(new JsonPointer("_refProperties/_rev"), "2");
+                } else if (change.equals("insert")) {
+                    targetMembers.add(index, object(field("_ref", "managed/user/new" + i)));
+                    targetMembers.remove(index + 200);
+                } else {
+                    targetMembers.add(index, targetMembers.get(index + 100).getObject());
+                    targetMembers.remove(index + 101);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public JsonValue diffLegacy(final DocumentState state) {
+        return legacyDiff(state.original, state.target);
+    }
+
+    @Benchmark
+    public JsonValue diff(final DocumentState state) {
+        return JsonPatch.diff(state.original, state.target);
+    }
+
+    @Benchmark
+    public JsonValue diffBounded(final DocumentState state) {
+        return JsonPatch.diff(state.original, state.target, 100);
+    }
+
+    private static JsonValue legacyDiff(final JsonValue original, final JsonValue target) {
+        final List<Object> result = new ArrayList<>();
+        if (differentTypes(original, target)) {
+            result.add(op("replace", original.getPointer(), target));
+        } else if (original.isMap()) {
+            for (final String key : original.keys()) {
+                if (target.isDefined(key)) {
+                    final JsonValue diff = legacyDiff(original.get(key), target.get(key));
+                    if (diff.size() > 0) {
+                        result.addAll(diff.asList());
+                    }
+                } else {
+                    result.add(op("remove", original.getPointer().child(key), null));
+                }
+            }
+            for (final String key : target.keys()) {
+                if (!original.isDefined(key)) {
+                    result.add(op("add", original.getPointer().child(key), target.get(key)));
+                }
+            }
+        } else if (original.isList()) {
+            boolean replace = original.size() != target.size();
+            final Iterator<JsonValue> i1 = original.iterator();
+            final Iterator<JsonValue> i2 = target.iterator();
+            while (!replace && i1.hasNext() && i2.hasNext()) {
+                replace = legacyDiff(i1.next(), i2.next()).size() > 0;
+            }
+            if (replace) {
+                result.add(op("replace", original.getPointer(), target));
+            }
+        } else if (!original.isNull() && !original.getObject().equals(target.getObject())) {
+            result.add(op("replace", original.getPointer(), target));
+        }
+        return new JsonValue(result);
+    }
+
+    private static boolean differentTypes(final JsonValue v1, final JsonValue v2) {
+        return !(v1.isNull() && v2.isNull())
+                && !(v1.isMap() && v2.isMap())
+                && !(v1.isList() && v2.isList())
+                && !(v1.isString() && v2.isString())
+                && !(v1.isNumber() && v2.isNumber())
+                && !(v1.isBoolean() && v2.isBoolean());
+    }
+
+    private static Map<String, Object> op(final String op, final JsonPointer pointer, final JsonValue value) {
+        final Map<String, Object> result = new HashMap<>();
+        result.put("op", op);
+        result.put("path", pointer.toString());
+        if (value != null) {
+            result.put("value", value.copy().getObject());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.audit.benchmark;
+
+import static org.forgerock.json.JsonValue.*;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.forgerock.json.JsonPointer;
+import org.forgerock.json.JsonValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks parsing, encoding and resolving {@link JsonPointer}s, comparing the {@code legacy} parsing and
+ * encoding of reference tokens through {@link URI} fragments with the current implementation.
+ */
+public class JsonPointerBenchmarkTest extends BenchmarkBase {
+
+    @State(Scope.Benchmark)
+    public static class PointerState {
+        @Param({ "/transactionId", "/http/request/headers/user-agent", "/a%20b/caf%C3%A9/%2Fdata" })
+        String pointer;
+
+        String[] tokens;
+        JsonValue event;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            tokens = new JsonPointer(pointer).toArray();
+            event = json(object(field("transactionId", "tx-0000000001"),
+                    field("http", object(field("request", object(field("headers", object(
+                            field("user-agent", "curl/8.0"))))))),
+                    field("a b", object(field("caf\u00e9", object(field("/data", 42)))))));
+        }
+    }
+
+    @Benchmark
+    public String[] parseLegacy(final PointerState state) throws URISyntaxException {
+        final String[] split = state.pointer.split("/", -1);
+        final List<String> list = new ArrayList<>(split.length);
+        for (int n = 0; n < split.length; n++) {
+            if ((n == 0 || n == split.length - 1) && split[n].isEmpty()) {
+                continue;
+            }
+            list.add(new URI("#" + split[n]).getFragment());
+        }
+        return list.toArray(new String[list.size()]);
+    }
+
+    @Benchmark
+    public JsonPointer parse(final PointerState state) {
+        return new JsonPointer(state.pointer);
+    }
+
+    @Benchmark
+    public JsonPointer intern(final PointerState state) {
+        return JsonPointer.intern(state.pointer);
+    }
+
+    @Benchmark
+    public String encodeLegacy(final PointerState state) throws URISyntaxException {
+        final StringBuilder sb = new StringBuilder();
+        for (final String token : state.tokens) {
+            sb.append('/').append(new URI(null, null, null, null, token).toASCIIString().substring(1)
+                    .replaceAll("/", "%2F"));
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String encode(final PointerState state) {
+        return new JsonPointer(state.tokens).toString();
+    }
+
+    @Benchmark
+    public JsonValue getLegacy(final PointerState state) throws URISyntaxException {
+        return state.event.get(new JsonPointer(parseLegacy(state)));
+    }
+
+    @Benchmark
+    public JsonValue get(final PointerState state) {
+        return state.event.get(JsonPointer.intern(state.pointer));
+    }
+}
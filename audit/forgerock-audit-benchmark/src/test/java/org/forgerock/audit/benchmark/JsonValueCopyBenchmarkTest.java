@@ -0,0 +1,94 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.audit.benchmark;
+
+import static org.forgerock.json.JsonValue.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.json.JsonValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks the defensive "copy, patch three fields, diff" workload on a managed user resource, comparing JSON
+ * values backed by plain {@code Map}s and {@code List}s with {@link JsonValue#toPersistent() persistent} ones.
+ */
+public class JsonValueCopyBenchmarkTest extends BenchmarkBase {
+
+    @State(Scope.Benchmark)
+    public static class ResourceState {
+        @Param({ "plain", "persistent" })
+        String representation;
+
+        @Param({ "10", "200" })
+        int roles;
+
+        JsonValue resource;
+        JsonValue patch;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            final List<Object> roleList = new ArrayList<>();
+            for (int i = 0; i < roles; i++) {
+                roleList.add(object(field("_ref", "managed/role/" + i),
+                        field("_refProperties", object(field("_id", "rp-" + i), field("_rev", "1"),
+                                field("temporalConstraints", array())))));
+            }
+            final Map<String, Object> attributes = object();
+            for (int i = 0; i < 40; i++) {
+                attributes.put("attribute" + i, "value-" + i);
+            }
+            final JsonValue user = json(object(
+                    field("_id", "bjensen"),
+                    field("_rev", "42"),
+                    field("userName", "bjensen"),
+                    field("givenName", "Barbara"),
+                    field("sn", "Jensen"),
+                    field("mail", "bjensen@example.com"),
+                    field("accountStatus", "active"),
+                    field("address", object(field("street", "1 Main St"), field("city", "Grenoble"),
+                            field("postalCode", "38000"), field("country", "FR"))),
+                    field("roles", roleList),
+                    field("custom", attributes),
+                    field("lastLogin", "2026-01-01T00:00:00Z")));
+            resource = representation.equals("persistent") ? user.toPersistent() : user;
+            patch = json(array(
+                    object(field("op", "replace"), field("path", "/accountStatus"), field("value", "locked")),
+                    object(field("op", "replace"), field("path", "/address/city"), field("value", "Lyon")),
+                    object(field("op", "replace"), field("path", "/custom/attribute7"), field("value", "changed"))));
+        }
+    }
+
+    @Benchmark
+    public JsonValue copy(final ResourceState state) {
+        return state.resource.copy();
+    }
+
+    @Benchmark
+    public JsonValue copyPatchDiff(final ResourceState state) {
+        final JsonValue copy = state.resource.copy();
+        copy.patch(state.patch);
+        return state.resource.diff(copy);
+    }
+}
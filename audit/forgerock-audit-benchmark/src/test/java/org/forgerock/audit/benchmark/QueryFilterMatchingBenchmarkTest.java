@@ -0,0 +1,101 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.audit.benchmark;
+
+import static org.forgerock.audit.util.JsonValueUtils.JSONVALUE_FILTER_VISITOR;
+import static org.forgerock.audit.util.JsonValueUtils.compileQueryFilter;
+import static org.forgerock.json.JsonValue.*;
+
+import org.forgerock.audit.util.JsonValueUtils;
+import org.forgerock.json.JsonPointer;
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.QueryFilters;
+import org.forgerock.util.query.CompiledQueryFilter;
+import org.forgerock.util.query.QueryFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks matching audit events against a query filter, comparing the interpretation of the filter by
+ * {@link JsonValueUtils#JSONVALUE_FILTER_VISITOR} with the filter compiled by
+ * {@link JsonValueUtils#compileQueryFilter(QueryFilter)}.
+ */
+public class QueryFilterMatchingBenchmarkTest extends BenchmarkBase {
+
+    private static final int EVENT_COUNT = 1024;
+
+    @State(Scope.Benchmark)
+    public static class FilterState {
+        @Param({
+            "/transactionId eq \"TX-0000000512\"",
+            "/timestamp ge \"2026-01-01T00:00:00.256Z\" and /timestamp lt \"2026-01-01T00:00:00.768Z\"",
+            "/http/request/path co \"/users/00000005\"",
+            "/eventName eq \"AM-ACCESS-OUTCOME\" and /response/status eq \"SUCCESSFUL\" "
+                    + "and !(/response/elapsedTime lt 10 or /client/ip sw \"10.\")"
+        })
+        String filter;
+
+        final JsonValue[] events = new JsonValue[EVENT_COUNT];
+        QueryFilter<JsonPointer> queryFilter;
+        CompiledQueryFilter<JsonValue> compiledFilter;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            for (int i = 0; i < EVENT_COUNT; i++) {
+                events[i] = json(object(
+                        field("_id", String.format("id-%010d", i)),
+                        field("timestamp", String.format("2026-01-01T00:00:00.%03dZ", i % 1000)),
+                        field("transactionId", String.format("tx-%010d", i)),
+                        field("eventName", i % 2 == 0 ? "AM-ACCESS-OUTCOME" : "AM-ACCESS-ATTEMPT"),
+                        field("client", object(field("ip", (i % 3 == 0 ? "10.0.0." : "192.168.0.") + i % 256))),
+                        field("http", object(field("request", object(
+                                field("path", String.format("http://example.com/users/%010d", i)))))),
+                        field("response", object(
+                                field("status", i % 5 == 0 ? "FAILED" : "SUCCESSFUL"),
+                                field("elapsedTime", i % 20)))));
+            }
+            queryFilter = QueryFilters.parse(filter);
+            compiledFilter = compileQueryFilter(queryFilter);
+        }
+    }
+
+    @Benchmark
+    public int visitor(final FilterState state) {
+        int matches = 0;
+        for (final JsonValue event : state.events) {
+            if (state.queryFilter.accept(JSONVALUE_FILTER_VISITOR, event)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int compiled(final FilterState state) {
+        int matches = 0;
+        for (final JsonValue event : state.events) {
+            if (state.compiledFilter.matches(event)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 package org.forgerock.audit.events.handlers;
 
@@ -53,6 +54,8 @@ public abstract class FileBasedEventHandlerConfiguration extends EventHandlerCon
     private FileRetention fileRetention = new FileRetention();
     @JsonPropertyDescription("audit.handlers.file.rotationRetentionCheckInterval")
     private String rotationRetentionCheckInterval = "5s";
+    @JsonPropertyDescription("audit.handlers.file.groupCommit")
+    private GroupCommit groupCommit = new GroupCommit();
 
     /**
      * Gets the {@link FileRotation}.
@@ -126,6 +129,114 @@ public abstract class FileBasedEventHandlerConfiguration extends EventHandlerCon
         this.rotationRetentionCheckInterval = rotationRetentionCheckInterval;
     }
 
+    /**
+     * Gets the {@link GroupCommit} configuration.
+     *
+     * @return Not-null, The {@link GroupCommit} configuration.
+     */
+    public GroupCommit getGroupCommit() {
+        return groupCommit;
+    }
+
+    /**
+     * Sets the {@link GroupCommit} configuration.
+     *
+     * @param groupCommit Not-null, The {@link GroupCommit} configuration.
+     */
+    public void setGroupCommit(final GroupCommit groupCommit) {
+        Reject.ifNull(groupCommit);
+        this.groupCommit = groupCommit;
+    }
+
+    /**
+     * Groups the group commit config parameters.
+     * <p/>
+     * When group commit is enabled, an event is only reported as published once it has been written and forced to
+     * the storage device. The events published concurrently are written as a batch, forced with a single sync.
+     */
+    public static class GroupCommit {
+
+        /** The default maximum number of events committed by a single sync. */
+        public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+        @JsonPropertyDescription("audit.handlers.file.groupCommitEnabled")
+        private boolean enabled = false;
+
+        @JsonPropertyDescription("audit.handlers.file.maxBatchSize")
+        private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+        @JsonPropertyDescription("audit.handlers.file.maxBatchDelay")
+        private String maxBatchDelay = "0 ms";
+
+        /**
+         * Gets group commit enabled state. By default group commit is disabled.
+         * @return True - If group commit is enabled.
+         *         False - If group commit is disabled.
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Sets group commit enabled state. By default group commit is disabled.
+         * @param enabled True - Enables group commit.
+         *                False - Disables group commit.
+         */
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * Gets the maximum number of events committed by a single sync.
+         * @return The maximum number of events of a batch.
+         */
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        /**
+         * Sets the maximum number of events committed by a single sync.
+         * @param maxBatchSize The maximum number of events of a batch, which must be positive.
+         */
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        /**
+         * Gets the maximum time to wait for more events before committing a batch which is not full. The delay should
+         * be set as a {@link Duration}.
+         * <p/>
+         * The default value of "0 ms" commits the events queued while the previous batch was being synced, without
+         * waiting for more events: a longer delay trades latency for fewer syncs under light load.
+         *
+         * @return The maximum batch delay.
+         */
+        public String getMaxBatchDelay() {
+            return maxBatchDelay;
+        }
+
+        /**
+         * Sets the maximum time to wait for more events before committing a batch which is not full. The delay should
+         * be set as a {@link Duration}.
+         *
+         * @param maxBatchDelay The maximum batch delay.
+         */
+        public void setMaxBatchDelay(String maxBatchDelay) {
+            this.maxBatchDelay = maxBatchDelay;
+        }
+
+        /**
+         * Parses the maximum batch delay, defaulting to zero if it is invalid or unlimited.
+         *
+         * @return The maximum batch delay.
+         */
+        @JsonIgnore
+        public Duration getMaxBatchDelayDuration() {
+            final Duration duration = parseDuration("maximum batch delay", getMaxBatchDelay(), Duration.ZERO);
+            return duration.isUnlimited() ? Duration.ZERO : duration;
+        }
+    }
+
     /**
      * Groups the file rotation config parameters.
      */
@@ -0,0 +1,75 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.audit.events.handlers.buffering;
+
+import org.forgerock.json.JsonValue;
+
+/**
+ * Bounded queue of audit events, which may be offered by many producer threads and is drained by a single consumer
+ * thread.
+ */
+interface BatchQueue {
+
+    /**
+     * Receives the audit events drained from a {@link BatchQueue}.
+     */
+    interface EntryHandler {
+
+        /**
+         * Handles an audit event.
+         *
+         * @param topic
+         *         Event topic
+         * @param event
+         *         Event JSON payload
+         */
+        void handle(String topic, JsonValue event);
+    }
+
+    /**
+     * Inserts an audit event at the tail of the queue if it is possible to do so immediately without exceeding the
+     * queue's capacity.
+     *
+     * @param topic
+     *         Event topic
+     * @param event
+     *         Event JSON payload
+     *
+     * @return {@code true} if the event was added to this queue, else {@code false} if the queue is full
+     */
+    boolean offer(String topic, JsonValue event);
+
+    /**
+     * Removes audit events from the head of the queue, and passes them to the handler in order. Must only be called
+     * by the consumer thread.
+     *
+     * @param handler
+     *         Handler of the removed events
+     * @param maxEntries
+     *         Maximum number of events to remove
+     *
+     * @return the number of events removed
+     */
+    int drain(EntryHandler handler, int maxEntries);
+
+    /**
+     * Gets the number of audit events in the queue. The result is only an estimate when other threads are concurrently
+     * offering or draining events.
+     *
+     * @return number of events in the queue
+     */
+    int size();
+}
@@ -0,0 +1,106 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.audit.events.handlers.buffering;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.forgerock.json.JsonValue;
+
+/**
+ * {@link BatchQueue} backed by an {@link ArrayBlockingQueue}.
+ */
+final class BlockingBatchQueue implements BatchQueue {
+
+    private final BlockingQueue<BatchEntry> queue;
+    /** Entries drained from the queue, only accessed by the consumer thread. */
+    private final List<BatchEntry> drained = new ArrayList<>();
+
+    /**
+     * Creates a new queue.
+     *
+     * @param capacity
+     *         queue capacity
+     */
+    BlockingBatchQueue(final int capacity) {
+        queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public boolean offer(final String topic, final JsonValue event) {
+        return queue.offer(new BatchEntry(topic, event));
+    }
+
+    @Override
+    public int drain(final EntryHandler handler, final int maxEntries) {
+        try {
+            final int count = queue.drainTo(drained, maxEntries);
+            for (final BatchEntry entry : drained) {
+                handler.handle(entry.getTopic(), entry.getEvent());
+            }
+            return count;
+        } finally {
+            drained.clear();
+        }
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * A single audit-event batch entry.
+     */
+    private static class BatchEntry {
+
+        private final String topic;
+        private final JsonValue event;
+
+        /**
+         * Creates a new audit-event batch entry.
+         *
+         * @param topic
+         *         Event topic
+         * @param event
+         *         Event JSON payload
+         */
+        public BatchEntry(final String topic, final JsonValue event) {
+            this.topic = topic;
+            this.event = event;
+        }
+
+        /**
+         * Gets the event JSON payload.
+         *
+         * @return Event JSON payload
+         */
+        public JsonValue getEvent() {
+            return event;
+        }
+
+        /**
+         * Gets the event topic.
+         *
+         * @return Event topic
+         */
+        public String getTopic() {
+            return topic;
+        }
+    }
+}
@@ -12,18 +12,20 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 package org.forgerock.audit.events.handlers.buffering;
 
 import static java.lang.Math.max;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
 import org.forgerock.audit.batch.CommonAuditBatchConfiguration;
 import org.forgerock.json.JsonValue;
@@ -34,32 +36,54 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Buffers audit events to a bounded queue, periodically flushing the queue to a provided {@link BatchConsumer}.
- * If the bounded queue becomes full, further events are dropped until the queue is next flushed.
+ * Buffers audit events to a bounded queue, flushing the queue to a provided {@link BatchConsumer} whenever a full
+ * batch of events is available, and at least once per write interval. By default the queue is a lock-free
+ * {@link QueueStrategy#MPSC_RING_BUFFER ring buffer}, and if it becomes full further events are dropped until the
+ * queue is next flushed; see {@link OverflowPolicy} for the alternatives.
  */
 public final class BufferedBatchPublisher implements BatchPublisher {
 
     private static final Logger logger = LoggerFactory.getLogger(BufferedBatchPublisher.class);
 
-    private final BlockingQueue<BatchEntry> queue;
-    private final ScheduledExecutorService scheduler;
+    /** Time to wait for the consumer to make room in the queue, when blocking producers. */
+    private static final long BLOCKED_OFFER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100L);
+
+    private final BatchQueue queue;
+    private final OverflowPolicy overflowPolicy;
+    private final SpillFile spillFile;
+    private final int maxBatchedEvents;
+    private final ExecutorService executor;
     private final QueueConsumer queueConsumer;
-    private final Duration writeInterval;
 
     private BufferedBatchPublisher(BuilderImpl builder) {
-        queue = new ArrayBlockingQueue<>(builder.capacity);
-        scheduler = Executors.newScheduledThreadPool(1);
+        queue = builder.queueStrategy.newQueue(builder.capacity);
+        overflowPolicy = builder.overflowPolicy;
+        maxBatchedEvents = builder.maxBatchedEvents;
+        if (overflowPolicy == OverflowPolicy.SPILL_TO_DISK) {
+            try {
+                spillFile = new SpillFile(builder.spillFile);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to open spill file " + builder.spillFile, e);
+            }
+        } else {
+            spillFile = null;
+        }
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(runnable, "BufferedBatchPublisher");
+            }
+        });
         queueConsumer = new QueueConsumer(builder.maxBatchedEvents, builder.averagePerEventPayloadSize,
-                builder.autoFlush, queue, scheduler, builder.batchConsumer);
-        this.writeInterval = builder.writeInterval;
+                builder.autoFlush, builder.writeInterval, queue, spillFile, builder.batchConsumer);
     }
 
     /**
-     * Starts periodically sending batch data.
+     * Starts sending batch data.
      */
     @Override
     public void startup() {
-        scheduler.scheduleAtFixedRate(queueConsumer, 0, writeInterval.to(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+        executor.execute(queueConsumer);
     }
 
     /**
@@ -67,82 +91,95 @@ public final class BufferedBatchPublisher implements BatchPublisher {
      */
     @Override
     public void shutdown() {
-        if (!scheduler.isShutdown()) {
+        if (!executor.isShutdown()) {
             queueConsumer.shutdown();
+            executor.shutdown();
+            if (queueConsumer.flushOnShutdown) {
+                // flush requested, so block in an non-cancelable way
+                boolean interrupted = false;
+                while (!executor.isTerminated()) {
+                    try {
+                        executor.awaitTermination(1L, TimeUnit.MINUTES);
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
         }
     }
 
     /**
-     * Inserts the specified element at the tail of this queue if it is possible to do so immediately without
-     * exceeding the queue's capacity, returning {@code true} upon success and {@code false} if this queue is full.
+     * Inserts the specified element at the tail of this queue. If the queue is full, the configured
+     * {@link OverflowPolicy} determines whether the element is dropped, whether this method blocks until there is
+     * room in the queue, or whether the element is spilled to disk. Once elements have been spilled, further elements
+     * are spilled after them until they have all been read back, so that elements are published in order.
      *
      * @param topic
      *         Event topic
      * @param event
      *         Event payload to index, where {@code _id} field is the identifier
      *
-     * @return {@code true} if the element was added to this queue, else {@code false}
+     * @return {@code true} if the element was added to this queue or spilled, else {@code false}
      */
     @Override
     public boolean offer(final String topic, final JsonValue event) {
-        return queue.offer(new BatchEntry(topic, event));
-    }
-
-    /**
-     * A single audit-event batch entry.
-     */
-    private static class BatchEntry {
-
-        private final String topic;
-        private final JsonValue event;
-
-        /**
-         * Creates a new audit-event batch entry.
-         *
-         * @param topic
-         *         Event topic
-         * @param event
-         *         Event JSON payload
-         */
-        public BatchEntry(final String topic, final JsonValue event) {
-            this.topic = topic;
-            this.event = event;
+        if (spillFile != null && spillFile.size() > 0) {
+            return spill(topic, event);
         }
-
-        /**
-         * Gets the event JSON payload.
-         *
-         * @return Event JSON payload
-         */
-        public JsonValue getEvent() {
-            return event;
+        if (queue.offer(topic, event)) {
+            if (queue.size() >= maxBatchedEvents) {
+                queueConsumer.wakeUp();
+            }
+            return true;
         }
+        switch (overflowPolicy) {
+        case BLOCK:
+            do {
+                if (queueConsumer.shutdown) {
+                    return false;
+                }
+                queueConsumer.wakeUp();
+                LockSupport.parkNanos(this, BLOCKED_OFFER_PARK_NANOS);
+            } while (!queue.offer(topic, event));
+            return true;
+        case SPILL_TO_DISK:
+            return spill(topic, event);
+        default:
+            return false;
+        }
+    }
 
-        /**
-         * Gets the event topic.
-         *
-         * @return Event topic
-         */
-        public String getTopic() {
-            return topic;
+    private boolean spill(final String topic, final JsonValue event) {
+        final boolean spilled = spillFile.append(topic, event);
+        if (spillFile.size() >= maxBatchedEvents) {
+            queueConsumer.wakeUp();
         }
+        return spilled;
     }
 
     /**
-     * Consumer of the audit-event batch queue, which can be scheduled to run periodically. This class is not
-     * thread-safe, and is intended to be run by a single thread.
+     * Consumer of the audit-event batch queue, which runs on a dedicated thread until shutdown. The consumer sleeps
+     * for at most the write interval between batches, and is woken up early by producers once a full batch of events
+     * is available. This class is not thread-safe, apart from the {@link #wakeUp()} and {@link #shutdown()} methods,
+     * and is intended to be run by a single thread.
      */
-    private static class QueueConsumer implements Runnable {
+    private static class QueueConsumer implements Runnable, BatchQueue.EntryHandler {
 
         private final int maxBatchedEvents;
         private final boolean flushOnShutdown;
-        private final BlockingQueue<BatchEntry> queue;
-        private final List<BatchEntry> batch;
+        private final long writeIntervalNanos;
+        private final BatchQueue queue;
+        private final SpillFile spillFile;
         private final StringBuilder payload;
         private final BatchConsumer batchEventHandler;
-        private final ScheduledExecutorService scheduler;
+        /** Whether the consumer thread is sleeping, or about to, and may need to be woken up. */
+        private final AtomicBoolean sleeping = new AtomicBoolean();
 
         private volatile boolean shutdown;
+        private volatile Thread thread;
 
         /**
          * Creates a {@code QueueConsumer}.
@@ -154,100 +191,136 @@ public final class BufferedBatchPublisher implements BatchPublisher {
          * @param flushOnShutdown
          *         When {@code true}, the queue will be flushed on shutdown and when {@code false},
          *         items in the queue will be dropped
+         * @param writeInterval
+         *         Maximum interval between two batches
          * @param queue
          *         Audit-event queue
-         * @param scheduler
-         *         This runnable's scheduler
+         * @param spillFile
+         *         File of audit events which overflowed the queue, or {@code null}
          * @param batchEventHandler
          *         Batch audit event handler
          */
         public QueueConsumer(final int maxBatchedEvents, final int averagePerEventPayloadSize,
-                final boolean flushOnShutdown, final BlockingQueue<BatchEntry> queue,
-                final ScheduledExecutorService scheduler, final BatchConsumer batchEventHandler) {
+                final boolean flushOnShutdown, final Duration writeInterval, final BatchQueue queue,
+                final SpillFile spillFile, final BatchConsumer batchEventHandler) {
             this.queue = queue;
+            this.spillFile = spillFile;
             this.flushOnShutdown = flushOnShutdown;
-            this.scheduler = scheduler;
+            this.writeIntervalNanos = writeInterval.to(TimeUnit.NANOSECONDS);
             this.batchEventHandler = batchEventHandler;
             this.maxBatchedEvents = maxBatchedEvents;
-            batch = new ArrayList<>(maxBatchedEvents);
             payload = new StringBuilder(maxBatchedEvents * averagePerEventPayloadSize);
         }
 
         /**
-         * Informs queue consumer that shutdown has been triggered, and when {@code flushOnShutdown} is enabled,
-         * blocks until all events have been flushed from the queue.
+         * Informs queue consumer that shutdown has been triggered.
          */
         public void shutdown() {
-            if (!shutdown) {
-                shutdown = true;
+            shutdown = true;
+            sleeping.set(false);
+            final Thread consumerThread = thread;
+            if (consumerThread != null) {
+                LockSupport.unpark(consumerThread);
+            }
+        }
 
-                if (flushOnShutdown) {
-                    // flush requested, so block in an non-cancelable way
-                    boolean interrupted = false;
-                    while (!scheduler.isTerminated()) {
-                        try {
-                            scheduler.awaitTermination(1L, TimeUnit.MINUTES);
-                        } catch (InterruptedException e) {
-                            interrupted = true;
-                        }
-                    }
-                    if (interrupted) {
-                        Thread.currentThread().interrupt();
-                    }
+        /**
+         * Wakes the consumer thread up if it is sleeping, so that it sends a batch immediately.
+         */
+        public void wakeUp() {
+            if (sleeping.get() && sleeping.compareAndSet(true, false)) {
+                final Thread consumerThread = thread;
+                if (consumerThread != null) {
+                    LockSupport.unpark(consumerThread);
                 }
             }
         }
 
         /**
-         * Performs batch operation.
+         * Performs batch operation. The queue is drained before the spill file, as the events of the queue were
+         * offered before the first spilled event and events are only queued again once the spill file is empty.
+         *
+         * @return the number of events in the batch
          */
-        private void batch() {
-            queue.drainTo(batch, maxBatchedEvents);
-            if (!batch.isEmpty()) {
-                try {
-                    // add to batch
-                    for (final BatchEntry entry : batch) {
-                        try {
-                            batchEventHandler.addToBatch(entry.getTopic(), entry.getEvent(), payload);
-                        } catch (Exception e) {
-                            logger.error("addToBatch failed", e);
-                        }
-                    }
-
-                    // send batch
-                    if (payload.length() != 0) {
-                        batchEventHandler.publishBatch(payload.toString())
-                                .thenCatch(new Function<BatchException, Void, BatchException>() {
-                                    @Override
-                                    public Void apply(BatchException e) throws BatchException {
-                                        logger.error("publishBatch failed", e);
-                                        return null;
-                                    }
-                                });
-                    }
-                } finally {
-                    // clear buffers to prepare for next batch
-                    batch.clear();
-                    payload.setLength(0);
+        private int batch() {
+            int count = queue.drain(this, maxBatchedEvents);
+            if (spillFile != null && count < maxBatchedEvents) {
+                count += spillFile.drain(this, maxBatchedEvents - count);
+            }
+            try {
+                // send batch
+                if (payload.length() != 0) {
+                    batchEventHandler.publishBatch(payload.toString())
+                            .thenCatch(new Function<BatchException, Void, BatchException>() {
+                                @Override
+                                public Void apply(BatchException e) throws BatchException {
+                                    logger.error("publishBatch failed", e);
+                                    return null;
+                                }
+                            });
                 }
+            } finally {
+                // clear buffer to prepare for next batch
+                payload.setLength(0);
+            }
+            return count;
+        }
+
+        @Override
+        public void handle(final String topic, final JsonValue event) {
+            // add to batch
+            try {
+                batchEventHandler.addToBatch(topic, event, payload);
+            } catch (Exception e) {
+                logger.error("addToBatch failed", e);
             }
         }
 
         @Override
         public void run() {
-            if (shutdown) {
-                // we shutdown this runnable's scheduler here, so that we can guarantee that flush will proceed
-                scheduler.shutdown();
+            thread = Thread.currentThread();
+            try {
+                while (!shutdown) {
+                    if (batch() < maxBatchedEvents) {
+                        sleep();
+                    }
+                }
                 if (flushOnShutdown) {
                     // flush queue
-                    while (!queue.isEmpty()) {
-                        batch();
+                    while (batch() > 0) {
+                        continue;
                     }
                 }
+            } finally {
+                thread = null;
+                closeSpillFile();
+            }
+        }
+
+        private void closeSpillFile() {
+            if (spillFile != null) {
+                try {
+                    spillFile.close();
+                } catch (IOException e) {
+                    logger.error("Unable to close spill file", e);
+                }
+            }
+        }
+
+        private void sleep() {
+            sleeping.set(true);
+            // re-check after publishing the sleeping flag, as a producer may have filled a batch in the meantime
+            if (!shutdown && queue.size() + spilledEvents() < maxBatchedEvents) {
+                LockSupport.parkNanos(this, writeIntervalNanos);
+            }
+            sleeping.set(false);
+            if (Thread.interrupted() && !shutdown) {
+                logger.debug("Ignoring interrupt of batch consumer thread");
             }
+        }
 
-            // normal run of batch operation
-            batch();
+        private int spilledEvents() {
+            return spillFile != null ? spillFile.size() : 0;
         }
     }
 
@@ -318,6 +391,39 @@ public final class BufferedBatchPublisher implements BatchPublisher {
          */
         Builder autoFlush(boolean autoFlush);
 
+        /**
+         * Sets the strategy for the bounded queue of events. Defaults to {@link QueueStrategy#MPSC_RING_BUFFER}.
+         *
+         * @param queueStrategy
+         *         queue strategy
+         *
+         * @return this builder
+         */
+        Builder queueStrategy(QueueStrategy queueStrategy);
+
+        /**
+         * Sets the policy applied to events offered while the queue is full. Defaults to {@link OverflowPolicy#DROP}.
+         * The {@link OverflowPolicy#SPILL_TO_DISK} policy requires a {@link #spillFile(Path) spill file}.
+         *
+         * @param overflowPolicy
+         *         overflow policy
+         *
+         * @return this builder
+         */
+        Builder overflowPolicy(OverflowPolicy overflowPolicy);
+
+        /**
+         * Sets the file to which events are spilled when the queue is full, with the
+         * {@link OverflowPolicy#SPILL_TO_DISK} policy. Any events left in the file by a previous publisher are
+         * discarded.
+         *
+         * @param spillFile
+         *         spill file
+         *
+         * @return this builder
+         */
+        Builder spillFile(Path spillFile);
+
         /**
          * Constructs a new {@link BatchPublisher}.
          *
@@ -339,6 +445,9 @@ public final class BufferedBatchPublisher implements BatchPublisher {
         private int averagePerEventPayloadSize;
         private Duration writeInterval;
         private boolean autoFlush;
+        private QueueStrategy queueStrategy;
+        private OverflowPolicy overflowPolicy;
+        private Path spillFile;
 
         private BuilderImpl(final BatchConsumer batchConsumer) {
             Reject.ifNull(batchConsumer, "batchConsumer must not be null");
@@ -347,6 +456,8 @@ public final class BufferedBatchPublisher implements BatchPublisher {
             maxBatchedEvents = MIN_BATCH_SIZE;
             averagePerEventPayloadSize = MIN_PER_EVENT_PAYLOAD_SIZE;
             writeInterval = CommonAuditBatchConfiguration.POLLING_INTERVAL;
+            queueStrategy = QueueStrategy.MPSC_RING_BUFFER;
+            overflowPolicy = OverflowPolicy.DROP;
         }
 
         @Override
@@ -380,8 +491,30 @@ public final class BufferedBatchPublisher implements BatchPublisher {
             return this;
         }
 
+        @Override
+        public Builder queueStrategy(final QueueStrategy queueStrategy) {
+            Reject.ifNull(queueStrategy, "queueStrategy must not be null");
+            this.queueStrategy = queueStrategy;
+            return this;
+        }
+
+        @Override
+        public Builder overflowPolicy(final OverflowPolicy overflowPolicy) {
+            Reject.ifNull(overflowPolicy, "overflowPolicy must not be null");
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        @Override
+        public Builder spillFile(final Path spillFile) {
+            this.spillFile = spillFile;
+            return this;
+        }
+
         @Override
         public BatchPublisher build() {
+            Reject.ifTrue(overflowPolicy == OverflowPolicy.SPILL_TO_DISK && spillFile == null,
+                    "spillFile must be set with the SPILL_TO_DISK overflow policy");
             return new BufferedBatchPublisher(this);
         }
 
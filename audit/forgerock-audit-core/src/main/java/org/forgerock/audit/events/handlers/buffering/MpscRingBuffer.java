@@ -0,0 +1,138 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.audit.events.handlers.buffering;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.forgerock.json.JsonValue;
+
+/**
+ * Lock-free, bounded, multi-producer single-consumer {@link BatchQueue}, based on the bounded queue of Dmitry Vyukov.
+ * <p>
+ * The slots of the ring buffer are allocated once, as parallel arrays of topics and events, and each slot has a
+ * sequence number which tells producers and the consumer whose turn it is to use it. A producer claims the slot at
+ * the tail with a single compare-and-set, fills it, and publishes it by advancing its sequence number; the consumer
+ * empties published slots at the head, and releases them by advancing their sequence number by the capacity of the
+ * ring buffer, ready for the next lap.
+ */
+final class MpscRingBuffer implements BatchQueue {
+
+    private final int mask;
+    private final int capacity;
+    private final AtomicLongArray sequences;
+    private final String[] topics;
+    private final JsonValue[] events;
+    /** Next position to be claimed by a producer. */
+    private final AtomicLong tail = new PaddedAtomicLong();
+    /** Next position to be drained by the consumer, only written by the consumer thread. */
+    private final AtomicLong head = new PaddedAtomicLong();
+
+    /**
+     * Creates a new ring buffer.
+     *
+     * @param capacity
+     *         minimum capacity, rounded up to a power of two
+     */
+    MpscRingBuffer(final int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+        }
+        this.capacity = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.mask = this.capacity - 1;
+        this.sequences = new AtomicLongArray(this.capacity);
+        this.topics = new String[this.capacity];
+        this.events = new JsonValue[this.capacity];
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Gets the capacity of the ring buffer.
+     *
+     * @return capacity, a power of two
+     */
+    int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public boolean offer(final String topic, final JsonValue event) {
+        long position = tail.get();
+        int index;
+        while (true) {
+            index = (int) position & mask;
+            final long difference = sequences.get(index) - position;
+            if (difference == 0L) {
+                if (tail.compareAndSet(position, position + 1L)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0L) {
+                // the consumer has not yet released this slot from the previous lap
+                return false;
+            } else {
+                // another producer claimed this position
+                position = tail.get();
+            }
+        }
+        topics[index] = topic;
+        events[index] = event;
+        sequences.lazySet(index, position + 1L);
+        return true;
+    }
+
+    @Override
+    public int drain(final EntryHandler handler, final int maxEntries) {
+        long position = head.get();
+        int count = 0;
+        while (count < maxEntries) {
+            final int index = (int) position & mask;
+            if (sequences.get(index) != position + 1L) {
+                // empty, or the producer which claimed this slot has not yet published it
+                break;
+            }
+            final String topic = topics[index];
+            final JsonValue event = events[index];
+            topics[index] = null;
+            events[index] = null;
+            sequences.lazySet(index, position + capacity);
+            head.lazySet(++position);
+            count++;
+            handler.handle(topic, event);
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        // read head first, so that a concurrent drain cannot make the size negative
+        final long headPosition = head.get();
+        final long size = tail.get() - headPosition;
+        return (int) Math.max(0L, Math.min(size, capacity));
+    }
+
+    /**
+     * {@link AtomicLong} padded to a typical cache line, so that the head and tail positions, which are respectively
+     * written by the consumer and the producers, do not share a cache line.
+     */
+    @SuppressWarnings("unused")
+    private static final class PaddedAtomicLong extends AtomicLong {
+        private static final long serialVersionUID = 1L;
+        private long p1, p2, p3, p4, p5, p6, p7;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.audit.events.handlers.buffering;
+
+/**
+ * Policy applied by a {@link BufferedBatchPublisher} when an audit event is offered while its queue is full.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Drops the event, which is reported as not consumed by {@link BatchPublisher#offer}.
+     */
+    DROP,
+
+    /**
+     * Blocks the offering thread until the consumer has made room in the queue, or the publisher is shut down.
+     */
+    BLOCK,
+
+    /**
+     * Appends the event to a spill file, from which it is read back once the queue has been drained. Until all the
+     * spilled events have been read back, further events are also appended to the spill file, so that events are
+     * published in the order they were offered. Events which cannot be written to the spill file are dropped.
+     */
+    SPILL_TO_DISK
+}
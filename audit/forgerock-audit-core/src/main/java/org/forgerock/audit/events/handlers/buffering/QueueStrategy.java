@@ -0,0 +1,56 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.audit.events.handlers.buffering;
+
+/**
+ * Strategy for the bounded queue to which a {@link BufferedBatchPublisher} buffers audit events before they are
+ * batched.
+ */
+public enum QueueStrategy {
+
+    /**
+     * Buffers events to an {@link java.util.concurrent.ArrayBlockingQueue}, which takes a single lock for each offered
+     * event, and allocates an entry object for each event.
+     */
+    ARRAY_BLOCKING_QUEUE {
+        @Override
+        BatchQueue newQueue(final int capacity) {
+            return new BlockingBatchQueue(capacity);
+        }
+    },
+
+    /**
+     * Buffers events to a lock-free, multi-producer single-consumer ring buffer, whose slots are allocated once and
+     * reused. Producers only contend on a single compare-and-set of the ring buffer's tail, so this strategy scales
+     * with the number of threads publishing audit events. The capacity is rounded up to a power of two.
+     */
+    MPSC_RING_BUFFER {
+        @Override
+        BatchQueue newQueue(final int capacity) {
+            return new MpscRingBuffer(capacity);
+        }
+    };
+
+    /**
+     * Creates a new queue.
+     *
+     * @param capacity
+     *         queue capacity
+     *
+     * @return a new queue
+     */
+    abstract BatchQueue newQueue(int capacity);
+}
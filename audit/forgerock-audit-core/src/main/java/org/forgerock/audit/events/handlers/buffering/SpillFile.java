@@ -0,0 +1,218 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.audit.events.handlers.buffering;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.forgerock.json.JsonValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * File to which a {@link BufferedBatchPublisher} spills audit events that do not fit in its queue. Events are
+ * appended as length-prefixed records containing the UTF-8 encoded topic and JSON event, and are read back in the
+ * same order. The file is truncated whenever all of its events have been read back, so that it does not grow while
+ * the publisher keeps up with the offered events. While events keep being spilled as others are read back, the
+ * events not yet read back are moved to the start of the file once they take less room than those already read
+ * back, so that the file does not grow beyond twice the size of the spilled events.
+ */
+final class SpillFile implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpillFile.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    /** Number of bytes of events read back before the file may be compacted. */
+    private static final long DEFAULT_COMPACTION_THRESHOLD = 16L * 1024L * 1024L;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final RandomAccessFile file;
+    private final long compactionThreshold;
+    private long readPosition;
+    private long writePosition;
+    private int size;
+
+    /**
+     * Opens a spill file, discarding any events spilled by a previous publisher.
+     *
+     * @param path
+     *         path of the spill file
+     *
+     * @throws IOException
+     *         if the file cannot be opened
+     */
+    SpillFile(final Path path) throws IOException {
+        this(path, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * Opens a spill file, discarding any events spilled by a previous publisher.
+     *
+     * @param path
+     *         path of the spill file
+     * @param compactionThreshold
+     *         number of bytes of events read back before the file may be compacted
+     *
+     * @throws IOException
+     *         if the file cannot be opened
+     */
+    SpillFile(final Path path, final long compactionThreshold) throws IOException {
+        this.path = path;
+        this.file = new RandomAccessFile(path.toFile(), "rw");
+        this.compactionThreshold = compactionThreshold;
+        file.setLength(0);
+    }
+
+    /**
+     * Appends an audit event to the spill file.
+     *
+     * @param topic
+     *         Event topic
+     * @param event
+     *         Event JSON payload
+     *
+     * @return {@code true} if the event was spilled, else {@code false} if it could not be written
+     */
+    synchronized boolean append(final String topic, final JsonValue event) {
+        try {
+            final byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+            final byte[] eventBytes = MAPPER.writeValueAsBytes(event.getObject());
+            final byte[] record = new byte[8 + topicBytes.length + eventBytes.length];
+            putInt(record, 0, topicBytes.length);
+            putInt(record, 4, eventBytes.length);
+            System.arraycopy(topicBytes, 0, record, 8, topicBytes.length);
+            System.arraycopy(eventBytes, 0, record, 8 + topicBytes.length, eventBytes.length);
+            file.seek(writePosition);
+            file.write(record);
+            writePosition += record.length;
+            size++;
+            return true;
+        } catch (IOException e) {
+            logger.error("Unable to spill audit event to " + path, e);
+            return false;
+        }
+    }
+
+    /**
+     * Reads back spilled audit events, in the order they were appended, and passes them to the handler.
+     *
+     * @param handler
+     *         Handler of the spilled events
+     * @param maxEntries
+     *         Maximum number of events to read back
+     *
+     * @return the number of events read back
+     */
+    int drain(final BatchQueue.EntryHandler handler, final int maxEntries) {
+        int count = 0;
+        while (count < maxEntries) {
+            final String topic;
+            final JsonValue event;
+            synchronized (this) {
+                if (size == 0) {
+                    break;
+                }
+                try {
+                    file.seek(readPosition);
+                    final byte[] topicBytes = new byte[file.readInt()];
+                    final byte[] eventBytes = new byte[file.readInt()];
+                    file.readFully(topicBytes);
+                    file.readFully(eventBytes);
+                    readPosition = file.getFilePointer();
+                    size--;
+                    if (size == 0) {
+                        readPosition = 0;
+                        writePosition = 0;
+                        file.setLength(0);
+                    } else {
+                        compactIfNeeded();
+                    }
+                    topic = new String(topicBytes, StandardCharsets.UTF_8);
+                    event = new JsonValue(MAPPER.readValue(eventBytes, Object.class));
+                } catch (IOException e) {
+                    logger.error("Unable to read spilled audit events from " + path + ", discarding " + size
+                            + " events", e);
+                    discard();
+                    break;
+                }
+            }
+            count++;
+            handler.handle(topic, event);
+        }
+        return count;
+    }
+
+    /**
+     * Moves the events not yet read back to the start of the file, once the events already read back take more room.
+     * The copy never overwrites bytes which have not been copied yet, as the events are moved to a lower position by
+     * at least their own size.
+     */
+    private void compactIfNeeded() throws IOException {
+        final long unread = writePosition - readPosition;
+        if (readPosition < compactionThreshold || unread > readPosition) {
+            return;
+        }
+        final byte[] buffer = new byte[(int) Math.min(COPY_BUFFER_SIZE, unread)];
+        for (long copied = 0; copied < unread;) {
+            final int length = (int) Math.min(buffer.length, unread - copied);
+            file.seek(readPosition + copied);
+            file.readFully(buffer, 0, length);
+            file.seek(copied);
+            file.write(buffer, 0, length);
+            copied += length;
+        }
+        readPosition = 0;
+        writePosition = unread;
+        file.setLength(unread);
+    }
+
+    /**
+     * Gets the number of spilled audit events which have not yet been read back.
+     *
+     * @return number of spilled events
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    private void discard() {
+        size = 0;
+        readPosition = 0;
+        writePosition = 0;
+        try {
+            file.setLength(0);
+        } catch (IOException e) {
+            logger.error("Unable to truncate " + path, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        file.close();
+    }
+
+    private static void putInt(final byte[] bytes, final int offset, final int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+}
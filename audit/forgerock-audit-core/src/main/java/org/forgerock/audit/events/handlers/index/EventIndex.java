@@ -0,0 +1,733 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.audit.events.handlers.index;
+
+import static org.forgerock.util.Utils.closeSilently;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.forgerock.json.JsonPointer;
+import org.forgerock.util.Reject;
+import org.forgerock.util.query.QueryFilter;
+import org.forgerock.util.query.QueryFilterVisitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the events of an audit file, which maps some key fields, such as {@code _id}, and the timestamp of each
+ * event to its byte offset in the file.
+ * <p>
+ * Keys are stored as 32-bit hashes in open-addressing tables, and timestamps as the minimum and maximum value of each
+ * block of {@value #TIMESTAMP_BLOCK_SIZE} consecutive events, so an index seek yields candidate events which must
+ * still be matched against the query filter. Both compare strings ignoring case, as the query filters evaluated by
+ * the handlers do.
+ * <p>
+ * The index is persisted to an append-only sidecar file, in the {@value #INDEX_DIRECTORY_NAME} directory next to the
+ * audit file, from which it can be reloaded. Finding the events in the audit file, and checking that a reloaded index
+ * still matches the audit file, is left to the handler, which knows the format of the file.
+ * <p>
+ * This class is not thread-safe: its entries must be guarded by the caller, although the sidecar file may be
+ * written by a single thread while other threads {@link #select(QueryFilter) select} entries.
+ */
+public final class EventIndex implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventIndex.class);
+
+    /** Name of the directory, within the log directory, containing the index sidecar files. */
+    public static final String INDEX_DIRECTORY_NAME = ".index";
+
+    /** File-name suffix of the index sidecar files. */
+    public static final String INDEX_FILE_NAME_SUFFIX = ".idx";
+
+    /** Number of consecutive events sharing the same minimum and maximum timestamps. */
+    public static final int TIMESTAMP_BLOCK_SIZE = 256;
+
+    /** Maximum number of key fields, whose flags share a byte with the timestamp flag in the sidecar file. */
+    private static final int MAX_KEY_FIELDS = 7;
+    private static final byte FORMAT_VERSION = 1;
+    private static final int HEADER_LENGTH = 5;
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final Path dataFile;
+    private final Path indexFile;
+    private final int magic;
+    private final JsonPointer timestampField;
+    private final JsonPointer[] keyFields;
+    private final int timestampFlag;
+    private final QueryPlanner planner = new QueryPlanner();
+
+    // entries
+    private long[][] offsets;
+    private int count;
+    private KeyTable[] keys;
+    private BitSet[] unindexedKeys;
+    private String[] blockMinTimestamps;
+    private String[] blockMaxTimestamps;
+    private BitSet blocksWithUnindexedTimestamps;
+    private String minTimestamp;
+    private String maxTimestamp;
+    private int lastFlags;
+    private final int[] lastKeyHashes;
+
+    // sidecar file
+    private DataOutputStream indexOutput;
+
+    /**
+     * Creates an empty index of the given audit file.
+     *
+     * @param dataFile Audit file
+     * @param magic Number identifying the format of the audit file at the start of the sidecar file
+     * @param timestampField Field holding the event timestamp in query filters
+     * @param keyFields Fields holding the event keys in query filters, in the order of the keys of each event
+     */
+    public EventIndex(final Path dataFile, final int magic, final JsonPointer timestampField,
+            final JsonPointer... keyFields) {
+        Reject.ifTrue(keyFields.length > MAX_KEY_FIELDS, "At most " + MAX_KEY_FIELDS + " key fields can be indexed");
+        this.dataFile = dataFile;
+        this.indexFile = dataFile.resolveSibling(INDEX_DIRECTORY_NAME)
+                .resolve(dataFile.getFileName() + INDEX_FILE_NAME_SUFFIX);
+        this.magic = magic;
+        this.timestampField = timestampField;
+        this.keyFields = keyFields.clone();
+        this.timestampFlag = 1 << keyFields.length;
+        this.lastKeyHashes = new int[keyFields.length];
+        clear();
+    }
+
+    /**
+     * Gets the sidecar file this index is persisted to.
+     *
+     * @return Index file path
+     */
+    public Path getIndexFile() {
+        return indexFile;
+    }
+
+    /**
+     * Gets the number of indexed events.
+     *
+     * @return Number of entries
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Gets the offset of an event in the audit file.
+     *
+     * @param entry Entry, lower than {@link #size()}
+     * @return Offset of the event
+     */
+    public long offset(final int entry) {
+        return offsets[entry >>> CHUNK_BITS][entry & CHUNK_MASK];
+    }
+
+    /**
+     * Hashes a string such that strings which are equal ignoring case have the same hash, consistently with
+     * {@link String#compareToIgnoreCase(String)}.
+     *
+     * @param s String
+     * @return Hash
+     */
+    public static int hashIgnoreCase(final String s) {
+        int hash = 0;
+        for (int i = 0; i < s.length(); ++i) {
+            hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(s.charAt(i)));
+        }
+        return hash;
+    }
+
+    /**
+     * Removes all the entries, leaving the sidecar file untouched. The candidates already selected are unaffected.
+     */
+    public void clear() {
+        offsets = new long[1][];
+        count = 0;
+        keys = new KeyTable[keyFields.length];
+        unindexedKeys = new BitSet[keyFields.length];
+        for (int k = 0; k < keyFields.length; ++k) {
+            keys[k] = new KeyTable();
+            unindexedKeys[k] = new BitSet();
+        }
+        blockMinTimestamps = new String[16];
+        blockMaxTimestamps = new String[16];
+        blocksWithUnindexedTimestamps = new BitSet();
+        minTimestamp = null;
+        maxTimestamp = null;
+        lastFlags = 0;
+        Arrays.fill(lastKeyHashes, 0);
+    }
+
+    /**
+     * Adds an event, which must follow the events already indexed in the audit file.
+     *
+     * @param offset Offset of the event in the audit file
+     * @param eventKeys Event keys, in the order of the key fields, each {@code null} if the event has none
+     * @param timestamp Event timestamp, or {@code null} if the event has none
+     */
+    public void add(final long offset, final String[] eventKeys, final String timestamp) {
+        final int entry = addOffset(offset);
+        lastFlags = 0;
+        for (int k = 0; k < keyFields.length; ++k) {
+            addKey(entry, k, eventKeys[k] != null, eventKeys[k] != null ? hashIgnoreCase(eventKeys[k]) : 0);
+        }
+        addTimestamp(entry, timestamp);
+        count = entry + 1;
+    }
+
+    private void add(final long offset, final int flags, final int[] keyHashes, final String timestamp) {
+        final int entry = addOffset(offset);
+        lastFlags = 0;
+        for (int k = 0; k < keyFields.length; ++k) {
+            addKey(entry, k, (flags & (1 << k)) != 0, keyHashes[k]);
+        }
+        addTimestamp(entry, timestamp);
+        count = entry + 1;
+    }
+
+    private int addOffset(final long offset) {
+        final int entry = count;
+        final int chunk = entry >>> CHUNK_BITS;
+        if (chunk == offsets.length) {
+            offsets = Arrays.copyOf(offsets, chunk * 2);
+        }
+        if (offsets[chunk] == null) {
+            offsets[chunk] = new long[CHUNK_SIZE];
+        }
+        offsets[chunk][entry & CHUNK_MASK] = offset;
+        return entry;
+    }
+
+    private void addKey(final int entry, final int k, final boolean present, final int hash) {
+        if (present) {
+            keys[k].put(hash, entry);
+            lastFlags |= 1 << k;
+        } else {
+            unindexedKeys[k].set(entry);
+        }
+        lastKeyHashes[k] = hash;
+    }
+
+    private void addTimestamp(final int entry, final String timestamp) {
+        final int block = entry / TIMESTAMP_BLOCK_SIZE;
+        if (block == blockMinTimestamps.length) {
+            blockMinTimestamps = Arrays.copyOf(blockMinTimestamps, block * 2);
+            blockMaxTimestamps = Arrays.copyOf(blockMaxTimestamps, block * 2);
+        }
+        if (timestamp == null) {
+            blocksWithUnindexedTimestamps.set(block);
+            return;
+        }
+        if (blockMinTimestamps[block] == null || timestamp.compareToIgnoreCase(blockMinTimestamps[block]) < 0) {
+            blockMinTimestamps[block] = timestamp;
+        }
+        if (blockMaxTimestamps[block] == null || timestamp.compareToIgnoreCase(blockMaxTimestamps[block]) > 0) {
+            blockMaxTimestamps[block] = timestamp;
+        }
+        if (minTimestamp == null || timestamp.compareToIgnoreCase(minTimestamp) < 0) {
+            minTimestamp = timestamp;
+        }
+        if (maxTimestamp == null || timestamp.compareToIgnoreCase(maxTimestamp) > 0) {
+            maxTimestamp = timestamp;
+        }
+    }
+
+    /**
+     * Checks whether the last indexed event has the given key, so that a stale sidecar file, left behind by an audit
+     * file which has since been replaced, can be detected once loaded.
+     *
+     * @param k Index of the key field
+     * @param key Key of the event found at the offset of the last entry in the audit file, or {@code null}
+     * @return {@code true} if the last entry has the same key, or has no key and {@code key} is {@code null}
+     */
+    public boolean lastEntryMatches(final int k, final String key) {
+        return (lastFlags & (1 << k)) == 0
+                ? key == null
+                : key != null && hashIgnoreCase(key) == lastKeyHashes[k];
+    }
+
+    /**
+     * Selects the entries which may match a query filter, using the index where the filter allows it.
+     *
+     * @param filter Query filter, or {@code null} to select all entries
+     * @return Candidate entries, which must still be matched against the filter
+     */
+    public Candidates select(final QueryFilter<JsonPointer> filter) {
+        return new Candidates(offsets, count, filter == null ? null : filter.accept(planner, null));
+    }
+
+    /**
+     * Replaces the entries with those of the sidecar file, up to the first entry which is truncated or does not fit
+     * in the audit file.
+     *
+     * @param minOffset Offset of the first event in the audit file
+     * @param dataFileSize Size of the audit file
+     * @return Length of the valid part of the sidecar file, or {@code 0} if it is missing or unreadable, in which case
+     * the index is left empty
+     */
+    public long load(final long minOffset, final long dataFileSize) {
+        clear();
+        if (!Files.exists(indexFile)) {
+            return 0L;
+        }
+        long validLength = 0L;
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(indexFile)))) {
+            if (in.readInt() == magic && in.readByte() == FORMAT_VERSION) {
+                validLength = HEADER_LENGTH;
+                final int[] keyHashes = new int[keyFields.length];
+                long previousOffset = minOffset - 1;
+                while (true) {
+                    final long offset = in.readLong();
+                    final int flags = in.readUnsignedByte();
+                    for (int k = 0; k < keyFields.length; ++k) {
+                        keyHashes[k] = (flags & (1 << k)) != 0 ? in.readInt() : 0;
+                    }
+                    final String timestamp = (flags & timestampFlag) != 0 ? in.readUTF() : null;
+                    if (offset <= previousOffset || offset >= dataFileSize) {
+                        break;
+                    }
+                    add(offset, flags, keyHashes, timestamp);
+                    previousOffset = offset;
+                    validLength += recordLength(flags, timestamp);
+                }
+            }
+        } catch (EOFException e) {
+            // truncated record, which was being written when the process stopped
+        } catch (IOException e) {
+            logger.warn("Failed to read index {}", indexFile, e);
+            validLength = 0L;
+        }
+        if (validLength == 0L) {
+            logger.info("Rebuilding index {} of {}", indexFile, dataFile);
+            clear();
+        }
+        return validLength;
+    }
+
+    private int recordLength(final int flags, final String timestamp) {
+        int length = 9 + 4 * Integer.bitCount(flags & (timestampFlag - 1));
+        if (timestamp != null) {
+            // modified UTF-8, as written by DataOutput.writeUTF
+            length += 2;
+            for (int i = 0; i < timestamp.length(); ++i) {
+                final char c = timestamp.charAt(i);
+                length += c >= 0x0001 && c <= 0x007f ? 1 : c <= 0x07ff ? 2 : 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Opens the sidecar file for appending, after truncating it to its valid length. Failures are logged, and the
+     * index is then no longer persisted until the sidecar file is opened again.
+     *
+     * @param validLength Length of the valid part of the sidecar file, as {@link #load(long, long) loaded}, or
+     * {@code 0} to rewrite it
+     */
+    public void openOutput(final long validLength) {
+        closeOutput();
+        try {
+            Files.createDirectories(indexFile.getParent());
+            final FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE);
+            channel.truncate(validLength);
+            channel.position(validLength);
+            indexOutput = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            if (validLength == 0L) {
+                indexOutput.writeInt(magic);
+                indexOutput.writeByte(FORMAT_VERSION);
+                indexOutput.flush();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to open index {}, which will be rebuilt when next loaded", indexFile, e);
+            closeOutput();
+        }
+    }
+
+    /**
+     * Appends an event to the sidecar file, once it has been {@link #add(long, String[], String) added}.
+     *
+     * @param offset Offset of the event in the audit file
+     * @param eventKeys Event keys, in the order of the key fields, each {@code null} if the event has none
+     * @param timestamp Event timestamp, or {@code null} if the event has none
+     */
+    public void write(final long offset, final String[] eventKeys, final String timestamp) {
+        if (indexOutput == null) {
+            return;
+        }
+        int flags = timestamp != null ? timestampFlag : 0;
+        for (int k = 0; k < keyFields.length; ++k) {
+            if (eventKeys[k] != null) {
+                flags |= 1 << k;
+            }
+        }
+        try {
+            indexOutput.writeLong(offset);
+            indexOutput.writeByte(flags);
+            for (final String key : eventKeys) {
+                if (key != null) {
+                    indexOutput.writeInt(hashIgnoreCase(key));
+                }
+            }
+            if (timestamp != null) {
+                indexOutput.writeUTF(timestamp);
+            }
+        } catch (IOException e) {
+            failOutput(e);
+        }
+    }
+
+    /**
+     * Flushes the events appended to the sidecar file.
+     */
+    public void flush() {
+        if (indexOutput != null) {
+            try {
+                indexOutput.flush();
+            } catch (IOException e) {
+                failOutput(e);
+            }
+        }
+    }
+
+    /**
+     * Closes the sidecar file, ignoring failures.
+     */
+    public void closeOutput() {
+        closeSilently(indexOutput);
+        indexOutput = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (indexOutput != null) {
+            try {
+                indexOutput.close();
+            } finally {
+                indexOutput = null;
+            }
+        }
+    }
+
+    private void failOutput(final IOException e) {
+        logger.warn("Failed to write index {}, which will be rebuilt when next loaded", indexFile, e);
+        closeOutput();
+    }
+
+    /**
+     * Entries selected by a query, which are unaffected by the entries added or cleared afterwards.
+     */
+    public static final class Candidates {
+
+        /** No entries, as selected from an audit file which does not exist. */
+        public static final Candidates NONE = new Candidates(new long[0][], 0, null);
+
+        private final long[][] offsets;
+        private final int count;
+        private final BitSet candidates;
+
+        private Candidates(final long[][] offsets, final int count, final BitSet candidates) {
+            this.offsets = offsets;
+            this.count = count;
+            this.candidates = candidates;
+        }
+
+        /**
+         * Checks whether the query could not use the index, and all entries must be scanned.
+         *
+         * @return {@code true} if all entries are selected
+         */
+        public boolean isFullScan() {
+            return candidates == null;
+        }
+
+        /**
+         * Gets the number of entries of the index when selected, whether selected or not.
+         *
+         * @return Number of entries
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Gets the number of selected entries.
+         *
+         * @return Number of selected entries
+         */
+        public int size() {
+            return candidates == null ? count : candidates.cardinality();
+        }
+
+        /**
+         * Gets the next selected entry, in file order.
+         *
+         * @param fromEntry First entry to consider
+         * @return Selected entry, or {@code -1} if there are no more
+         */
+        public int next(final int fromEntry) {
+            if (candidates == null) {
+                return fromEntry < count ? fromEntry : -1;
+            }
+            final int entry = candidates.nextSetBit(fromEntry);
+            return entry < count ? entry : -1;
+        }
+
+        /**
+         * Gets the offset of an entry in the audit file.
+         *
+         * @param entry Entry, lower than {@link #getCount()}
+         * @return Offset of the event
+         */
+        public long offset(final int entry) {
+            return offsets[entry >>> CHUNK_BITS][entry & CHUNK_MASK];
+        }
+    }
+
+    /**
+     * Open-addressing hash table of 32-bit key hashes to entries, where each slot packs the hash in its upper half
+     * and the entry plus one in its lower half, so that an empty slot is zero.
+     */
+    private static final class KeyTable {
+        private long[] slots = new long[1024];
+        private int size;
+
+        void put(final int hash, final int entry) {
+            if ((size + 1) * 4L > slots.length * 3L) {
+                resize();
+            }
+            insert(slots, hash, entry);
+            ++size;
+        }
+
+        void addMatches(final int hash, final BitSet matches) {
+            final int mask = slots.length - 1;
+            for (int i = spread(hash) & mask; slots[i] != 0L; i = (i + 1) & mask) {
+                if ((int) (slots[i] >>> 32) == hash) {
+                    matches.set((int) slots[i] - 1);
+                }
+            }
+        }
+
+        private void resize() {
+            final long[] newSlots = new long[slots.length * 2];
+            for (final long slot : slots) {
+                if (slot != 0L) {
+                    insert(newSlots, (int) (slot >>> 32), (int) slot - 1);
+                }
+            }
+            slots = newSlots;
+        }
+
+        private static void insert(final long[] slots, final int hash, final int entry) {
+            final int mask = slots.length - 1;
+            int i = spread(hash) & mask;
+            while (slots[i] != 0L) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = ((long) hash << 32) | (entry + 1L);
+        }
+
+        private static int spread(final int hash) {
+            final int h = hash * 0x9e3779b9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * Turns a query filter into the set of candidate entries, or {@code null} when the index cannot narrow down the
+     * events matching the filter.
+     */
+    private final class QueryPlanner implements QueryFilterVisitor<BitSet, Void, JsonPointer> {
+
+        @Override
+        public BitSet visitAndFilter(final Void p, final List<QueryFilter<JsonPointer>> subFilters) {
+            BitSet result = null;
+            for (final QueryFilter<JsonPointer> subFilter : subFilters) {
+                final BitSet candidates = subFilter.accept(this, p);
+                if (candidates != null) {
+                    if (result == null) {
+                        result = candidates;
+                    } else {
+                        result.and(candidates);
+                    }
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public BitSet visitOrFilter(final Void p, final List<QueryFilter<JsonPointer>> subFilters) {
+            final BitSet result = new BitSet();
+            for (final QueryFilter<JsonPointer> subFilter : subFilters) {
+                final BitSet candidates = subFilter.accept(this, p);
+                if (candidates == null) {
+                    return null;
+                }
+                result.or(candidates);
+            }
+            return result;
+        }
+
+        @Override
+        public BitSet visitBooleanLiteralFilter(final Void p, final boolean value) {
+            return value ? null : new BitSet();
+        }
+
+        @Override
+        public BitSet visitEqualsFilter(final Void p, final JsonPointer field, final Object valueAssertion) {
+            if (!(valueAssertion instanceof String)) {
+                return null;
+            }
+            final String value = (String) valueAssertion;
+            // events without the field also match an equality filter
+            for (int k = 0; k < keyFields.length; ++k) {
+                if (keyFields[k].equals(field)) {
+                    final BitSet result = (BitSet) unindexedKeys[k].clone();
+                    keys[k].addMatches(hashIgnoreCase(value), result);
+                    return result;
+                }
+            }
+            if (timestampField.equals(field)) {
+                final BitSet result = timestampRange(value, true, value, true);
+                for (int block = blocksWithUnindexedTimestamps.nextSetBit(0); block >= 0;
+                        block = blocksWithUnindexedTimestamps.nextSetBit(block + 1)) {
+                    setBlock(result, block);
+                }
+                return result;
+            }
+            return null;
+        }
+
+        @Override
+        public BitSet visitGreaterThanFilter(final Void p, final JsonPointer field, final Object valueAssertion) {
+            return isTimestampRange(field, valueAssertion)
+                    ? timestampRange((String) valueAssertion, false, null, false) : null;
+        }
+
+        @Override
+        public BitSet visitGreaterThanOrEqualToFilter(final Void p, final JsonPointer field,
+                final Object valueAssertion) {
+            return isTimestampRange(field, valueAssertion)
+                    ? timestampRange((String) valueAssertion, true, null, false) : null;
+        }
+
+        @Override
+        public BitSet visitLessThanFilter(final Void p, final JsonPointer field, final Object valueAssertion) {
+            return isTimestampRange(field, valueAssertion)
+                    ? timestampRange(null, false, (String) valueAssertion, false) : null;
+        }
+
+        @Override
+        public BitSet visitLessThanOrEqualToFilter(final Void p, final JsonPointer field,
+                final Object valueAssertion) {
+            return isTimestampRange(field, valueAssertion)
+                    ? timestampRange(null, false, (String) valueAssertion, true) : null;
+        }
+
+        @Override
+        public BitSet visitContainsFilter(final Void p, final JsonPointer field, final Object valueAssertion) {
+            return null;
+        }
+
+        @Override
+        public BitSet visitExtendedMatchFilter(final Void p, final JsonPointer field, final String operator,
+                final Object valueAssertion) {
+            return null;
+        }
+
+        @Override
+        public BitSet visitNotFilter(final Void p, final QueryFilter<JsonPointer> subFilter) {
+            return null;
+        }
+
+        @Override
+        public BitSet visitPresentFilter(final Void p, final JsonPointer field) {
+            return null;
+        }
+
+        @Override
+        public BitSet visitStartsWithFilter(final Void p, final JsonPointer field, final Object valueAssertion) {
+            return null;
+        }
+
+        private boolean isTimestampRange(final JsonPointer field, final Object valueAssertion) {
+            return timestampField.equals(field) && valueAssertion instanceof String;
+        }
+
+        /**
+         * Selects the blocks whose timestamps overlap a range, skipping all blocks when the range does not overlap
+         * the timestamps of the whole file.
+         */
+        private BitSet timestampRange(final String lower, final boolean lowerInclusive, final String upper,
+                final boolean upperInclusive) {
+            final BitSet result = new BitSet();
+            if (minTimestamp == null || !overlaps(minTimestamp, maxTimestamp, lower, lowerInclusive, upper,
+                    upperInclusive)) {
+                return result;
+            }
+            final int blocks = (count + TIMESTAMP_BLOCK_SIZE - 1) / TIMESTAMP_BLOCK_SIZE;
+            for (int block = 0; block < blocks; ++block) {
+                if (blockMinTimestamps[block] != null && overlaps(blockMinTimestamps[block],
+                        blockMaxTimestamps[block], lower, lowerInclusive, upper, upperInclusive)) {
+                    setBlock(result, block);
+                }
+            }
+            return result;
+        }
+
+        private boolean overlaps(final String min, final String max, final String lower,
+                final boolean lowerInclusive, final String upper, final boolean upperInclusive) {
+            if (lower != null) {
+                final int c = max.compareToIgnoreCase(lower);
+                if (c < 0 || (c == 0 && !lowerInclusive)) {
+                    return false;
+                }
+            }
+            if (upper != null) {
+                final int c = min.compareToIgnoreCase(upper);
+                if (c > 0 || (c == 0 && !upperInclusive)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void setBlock(final BitSet result, final int block) {
+            final int from = block * TIMESTAMP_BLOCK_SIZE;
+            result.set(from, Math.min(from + TIMESTAMP_BLOCK_SIZE, count));
+        }
+    }
+}
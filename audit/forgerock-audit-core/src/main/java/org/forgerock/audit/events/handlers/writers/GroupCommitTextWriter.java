@@ -0,0 +1,291 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.audit.events.handlers.writers;
+
+import static org.forgerock.audit.batch.CommonAuditBatchConfiguration.POLLING_TIMEOUT;
+import static org.forgerock.audit.batch.CommonAuditBatchConfiguration.POLLING_TIMEOUT_UNIT;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.util.Reject;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A Text Writer which makes each log record durable before returning, by group commit.
+ * <p>
+ * The records written concurrently are queued, then written by a single thread as a batch, which is forced to the
+ * storage device with a single {@link SyncableTextWriter#sync()}. The promises of all the records of the batch are
+ * completed once the batch is durable, so that concurrent writers share the cost of a sync. A batch holds all the
+ * records queued while the previous batch was being synced, up to a maximum size; the writer thread may also wait
+ * for more records, up to a maximum delay, before committing a batch that is not full.
+ * <p>
+ * If a batch fails to be written or synced, all of its records fail, even though some of them may have been
+ * written.
+ */
+public class GroupCommitTextWriter implements TextWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupCommitTextWriter.class);
+    /** Maximum number of records that can be queued before producers start to block. */
+    private static final int CAPACITY = 5000;
+
+    /** The wrapped Text Writer. */
+    private final SyncableTextWriter writer;
+    private final int maxBatchSize;
+    private final long maxBatchDelayNanos;
+
+    /** Queue to store uncommitted records. */
+    private final BlockingQueue<Commit> queue;
+    /** Single threaded executor which runs the CommitTask. */
+    private final ExecutorService executorService;
+    /** Flag for notifying the CommitTask to exit. */
+    private volatile boolean stopRequested;
+
+    /**
+     * Construct a new GroupCommitTextWriter wrapper.
+     *
+     * @param name
+     *            the name of the thread.
+     * @param maxBatchSize
+     *            the maximum number of records committed by a single sync.
+     * @param maxBatchDelay
+     *            the maximum time to wait for more records before committing a batch that is not full.
+     * @param writer
+     *            a character stream used for output.
+     */
+    public GroupCommitTextWriter(final String name, final int maxBatchSize, final Duration maxBatchDelay,
+            final SyncableTextWriter writer) {
+        Reject.ifNull(writer, maxBatchDelay);
+        Reject.ifTrue(maxBatchSize <= 0, "maxBatchSize must be positive");
+        this.writer = writer;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchDelayNanos = maxBatchDelay.isUnlimited() ? 0L : maxBatchDelay.to(TimeUnit.NANOSECONDS);
+        this.queue = new LinkedBlockingQueue<>(Math.max(CAPACITY, maxBatchSize));
+        this.executorService = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, name);
+            }
+        });
+        executorService.execute(new CommitTask());
+    }
+
+    /** A record, and the promise completed once it is durable. */
+    private static final class Commit {
+        private final String record;
+        private final PromiseImpl<Void, IOException> promise = PromiseImpl.create();
+
+        private Commit(String record) {
+            this.record = record;
+        }
+    }
+
+    /**
+     * The committer thread is responsible for writing and syncing the batches of records.
+     */
+    private class CommitTask implements Runnable {
+
+        /**
+         * Runs until queue is empty AND we've been asked to terminate.
+         */
+        @Override
+        public void run() {
+            final List<Commit> batch = new ArrayList<>(maxBatchSize);
+
+            boolean interrupted = false;
+            while (!stopRequested || !queue.isEmpty()) {
+                try {
+                    final Commit first = queue.poll(POLLING_TIMEOUT, POLLING_TIMEOUT_UNIT);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    fillBatch(batch);
+                    commit(batch);
+                } catch (InterruptedException ex) {
+                    // Ignore. We'll rerun the loop
+                    // and presumably fall out.
+                    interrupted = true;
+                } finally {
+                    // Fails the records which could not be committed
+                    fail(batch, new IOException("Writer closed"));
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void fillBatch(final List<Commit> batch) throws InterruptedException {
+            final long deadline = System.nanoTime() + maxBatchDelayNanos;
+            while (batch.size() < maxBatchSize) {
+                if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                    continue;
+                }
+                final long remaining = deadline - System.nanoTime();
+                final Commit next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                if (next == null) {
+                    return;
+                }
+                batch.add(next);
+            }
+        }
+
+        private void commit(final List<Commit> batch) {
+            try {
+                for (final Commit commit : batch) {
+                    writer.write(commit.record);
+                }
+                writer.sync();
+            } catch (IOException | RuntimeException e) {
+                logger.error("Error when committing a batch of " + batch.size() + " messages", e);
+                fail(batch, e instanceof IOException ? (IOException) e : new IOException(e));
+                return;
+            }
+            for (final Commit commit : batch) {
+                commit.promise.handleResult(null);
+            }
+            batch.clear();
+        }
+
+        private void fail(final List<Commit> batch, final IOException e) {
+            for (final Commit commit : batch) {
+                commit.promise.handleException(e);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Queues the log record, and returns a promise completed once the record has been written and synced to the
+     * storage device.
+     *
+     * @param record
+     *            the log record to write.
+     * @return a promise completed once the record is durable.
+     */
+    public Promise<Void, IOException> commit(String record) {
+        final Commit commit = new Commit(record);
+        boolean interrupted = false;
+        boolean enqueued = false;
+        while (!stopRequested) {
+            // Put request on queue for writer, without blocking forever if the writer stops meanwhile
+            try {
+                if (queue.offer(commit, POLLING_TIMEOUT, POLLING_TIMEOUT_UNIT)) {
+                    enqueued = true;
+                    break;
+                }
+            } catch (InterruptedException e) {
+                // We expect this to happen. Just ignore it and hopefully
+                // drop out in the next try.
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        // The CommitTask may have drained the queue and exited after the check of stopRequested: take the record
+        // back unless it has already been picked up, in which case the CommitTask completes it.
+        if (enqueued && stopRequested && queue.remove(commit)) {
+            enqueued = false;
+        }
+        // Inform caller if this writer has been shutdown
+        if (!enqueued) {
+            commit.promise.handleException(new IOException("Writer closed"));
+        }
+        return commit.promise;
+    }
+
+    /**
+     * Writes the log record, and blocks until it has been written and synced to the storage device, together with
+     * the records written concurrently.
+     *
+     * @param record
+     *            the log record to write.
+     * @throws IOException
+     *             if the record could not be written or synced.
+     */
+    @Override
+    public void write(String record) throws IOException {
+        commit(record).getOrThrowUninterruptibly();
+    }
+
+    /**
+     * Does nothing, since the records are durable once written.
+     */
+    @Override
+    public void flush() {
+        // Nothing to do
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getBytesWritten() {
+        return writer.getBytesWritten();
+    }
+
+    /**
+     * Retrieves the wrapped writer.
+     *
+     * @return The wrapped writer used by this group commit writer.
+     */
+    public SyncableTextWriter getWrappedWriter() {
+        return writer;
+    }
+
+    /**
+     * Commits the queued records, then releases any resources held by the writer, including the wrapped writer.
+     */
+    @Override
+    public void shutdown() {
+        stopRequested = true;
+
+        // Wait for writer thread to terminate
+        executorService.shutdown();
+        boolean interrupted = false;
+        while (!executorService.isTerminated()) {
+            try {
+                executorService.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        // Fail the records which may have been queued since the CommitTask exited
+        final List<Commit> leftovers = new ArrayList<>();
+        queue.drainTo(leftovers);
+        for (final Commit commit : leftovers) {
+            commit.promise.handleException(new IOException("Writer closed"));
+        }
+
+        writer.shutdown();
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -12,21 +12,26 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 package org.forgerock.audit.events.handlers.writers;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A metered stream is a subclass of OutputStream that
  * (a) forwards all its output to a target stream
  * (b) keeps track of how many bytes have been written.
+ * <p>
+ * The byte count may be read by any thread while the stream is written to, so that rotation thresholds can be
+ * checked without locking the writers of the stream.
  */
 public final class MeteredStream extends OutputStream {
 
     private final OutputStream out;
-    private long written;
+    private final AtomicLong written;
 
     /**
      * Create the stream wrapped around the specified output stream.
@@ -38,7 +43,7 @@ public final class MeteredStream extends OutputStream {
      */
     public MeteredStream(OutputStream out, long written) {
         this.out = out;
-        this.written = written;
+        this.written = new AtomicLong(written);
     }
 
     /**
@@ -52,7 +57,7 @@ public final class MeteredStream extends OutputStream {
     @Override
     public void write(int b) throws IOException {
         out.write(b);
-        written++;
+        written.incrementAndGet();
     }
 
     /**
@@ -66,7 +71,7 @@ public final class MeteredStream extends OutputStream {
     @Override
     public void write(byte[] buff) throws IOException {
         out.write(buff);
-        written += buff.length;
+        written.addAndGet(buff.length);
     }
 
     /**
@@ -84,7 +89,7 @@ public final class MeteredStream extends OutputStream {
     @Override
     public void write(byte[] buff, int off, int len) throws IOException {
         out.write(buff, off, len);
-        written += len;
+        written.addAndGet(len);
     }
 
     /**
@@ -115,6 +120,6 @@ public final class MeteredStream extends OutputStream {
      * @return the number of bytes
      */
     public long getBytesWritten() {
-        return written;
+        return written.get();
     }
 }
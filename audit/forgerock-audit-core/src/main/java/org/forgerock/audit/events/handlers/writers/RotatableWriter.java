@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.audit.events.handlers.writers;
@@ -24,6 +25,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -40,7 +42,10 @@ import org.forgerock.audit.retention.RetentionPolicy;
 import org.forgerock.audit.rotation.RotatableObject;
 import org.forgerock.audit.rotation.RotationContext;
 import org.forgerock.audit.rotation.RotationHooks;
+import org.forgerock.audit.rotation.FixedTimeRotationPolicy;
 import org.forgerock.audit.rotation.RotationPolicy;
+import org.forgerock.audit.rotation.SizeBasedRotationPolicy;
+import org.forgerock.audit.rotation.TimeLimitRotationPolicy;
 import org.forgerock.util.annotations.VisibleForTesting;
 import org.forgerock.util.time.Duration;
 import org.joda.time.DateTime;
@@ -50,8 +55,12 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Creates an {@link RotatableWriter} that supports file rotation and retention.
+ * <p>
+ * Writers only share a read lock: the need for a rotation is decided from the byte count of the {@link MeteredStream}
+ * and from the precomputed time of the next time-based rotation, so that the write lock is only taken when a file
+ * is actually rolled over. The previous file is closed once writers have been released onto the new file.
  */
-public class RotatableWriter implements TextWriter, RotatableObject {
+public class RotatableWriter implements SyncableTextWriter, RotatableObject {
 
     private static final Logger logger = LoggerFactory.getLogger(RotatableWriter.class);
     private static final Duration FIVE_SECONDS = Duration.duration("5s");
@@ -59,16 +68,27 @@ public class RotatableWriter implements TextWriter, RotatableObject {
     private final List<RotationPolicy> rotationPolicies;
     private final List<RetentionPolicy> retentionPolicies;
     private final FileNamingPolicy fileNamingPolicy;
+    /** The smallest size of the size-based rotation policies, or {@code Long.MAX_VALUE}. */
+    private final long maxFileSize;
+    /** The rotation policies that can only be checked by calling {@link RotationPolicy#shouldRotateFile}. */
+    private final List<RotationPolicy> otherRotationPolicies = new ArrayList<>();
+    /** The earliest time, in milliseconds, at which a time-based rotation policy may require a rotation. */
+    private volatile long nextRotationTime = Long.MAX_VALUE;
     private ScheduledExecutorService rotator;
-    private DateTime lastRotationTime;
+    private volatile DateTime lastRotationTime;
     private final boolean rotationEnabled;
     private final File file;
     private RotationHooks rotationHooks = new RotationHooks.NoOpRotatationHooks();
     private final AtomicBoolean isRotating = new AtomicBoolean(false);
+    /** The underlying file stream. */
+    private volatile FileOutputStream fileStream;
     /** The underlying output stream. */
-    private MeteredStream meteredStream;
+    private volatile MeteredStream meteredStream;
     /** The underlying buffered writer using the output stream. */
-    private BufferedWriter writer;
+    private volatile BufferedWriter writer;
+    /** The writer replaced by the last rotation, to be closed once the write lock is released. */
+    private BufferedWriter retiredWriter;
+    private FileOutputStream retiredStream;
     private final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
     private final RolloverLifecycleHook rolloverLifecycleHook;
 
@@ -126,6 +146,20 @@ public class RotatableWriter implements TextWriter, RotatableObject {
         this.writer = constructWriter(file, append);
         retentionPolicies = configuration.getFileRetention().buildRetentionPolicies();
         rotationPolicies = configuration.getFileRotation().buildRotationPolicies();
+        long smallestMaxFileSize = Long.MAX_VALUE;
+        for (RotationPolicy rotationPolicy : rotationPolicies) {
+            if (rotationPolicy instanceof SizeBasedRotationPolicy) {
+                final long max = ((SizeBasedRotationPolicy) rotationPolicy).getMaxFileSizeInBytes();
+                if (max > 0L) {
+                    smallestMaxFileSize = Math.min(smallestMaxFileSize, max);
+                }
+            } else if (!(rotationPolicy instanceof TimeLimitRotationPolicy
+                    || rotationPolicy instanceof FixedTimeRotationPolicy)) {
+                otherRotationPolicies.add(rotationPolicy);
+            }
+        }
+        this.maxFileSize = smallestMaxFileSize;
+        updateNextRotationTime();
         scheduleRotationAndRetentionChecks(configuration);
     }
 
@@ -136,28 +170,96 @@ public class RotatableWriter implements TextWriter, RotatableObject {
      */
     @Override
     public void rotateIfNeeded() throws IOException {
-        if (!rotationEnabled || isRotating.get()) {
+        if (!rotationEnabled || !mayNeedRotation() || !isRotating.compareAndSet(false, true)) {
             return;
         }
         readWriteLock.writeLock().lock();
         try {
+            boolean rotationRequired = false;
             for (RotationPolicy rotationPolicy : rotationPolicies) {
                 if (rotationPolicy.shouldRotateFile(this)) {
+                    rotationRequired = true;
+                    break;
+                }
+            }
+            if (rotationRequired) {
+                if (logger.isTraceEnabled()) {
+                    logger.trace("Must rotate: {}", file.getAbsolutePath());
+                }
+                if (rotate()) {
                     if (logger.isTraceEnabled()) {
-                        logger.trace("Must rotate: {}", file.getAbsolutePath());
+                        logger.trace("Finished rotation for: {}", file.getAbsolutePath());
                     }
-                    isRotating.set(true);
-                    if (rotate()) {
-                        if (logger.isTraceEnabled()) {
-                            logger.trace("Finished rotation for: {}", file.getAbsolutePath());
-                        }
-                    }
-                    break;
                 }
+            } else {
+                // The next rotation time is only a lower bound of the time-based policies
+                updateNextRotationTime();
             }
         } finally {
-            readWriteLock.writeLock().unlock();
             isRotating.set(false);
+            releaseWriteLock();
+        }
+    }
+
+    /**
+     * Checks the thresholds of the rotation policies without taking any lock. A {@code true} result must be
+     * confirmed by the policies themselves under the write lock.
+     */
+    private boolean mayNeedRotation() {
+        if (meteredStream.getBytesWritten() >= maxFileSize || System.currentTimeMillis() >= nextRotationTime) {
+            return true;
+        }
+        for (RotationPolicy rotationPolicy : otherRotationPolicies) {
+            if (rotationPolicy.shouldRotateFile(this)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void updateNextRotationTime() {
+        long next = Long.MAX_VALUE;
+        for (RotationPolicy rotationPolicy : rotationPolicies) {
+            DateTime rotationTime = null;
+            if (rotationPolicy instanceof TimeLimitRotationPolicy) {
+                rotationTime = ((TimeLimitRotationPolicy) rotationPolicy).getNextRotationTime(lastRotationTime);
+            } else if (rotationPolicy instanceof FixedTimeRotationPolicy) {
+                rotationTime = ((FixedTimeRotationPolicy) rotationPolicy).getNextRotationTime(lastRotationTime);
+            }
+            if (rotationTime != null) {
+                next = Math.min(next, rotationTime.getMillis());
+            }
+        }
+        nextRotationTime = next;
+    }
+
+    /**
+     * Releases the write lock, then closes the writer replaced by a rotation, if any, while writers already append
+     * to the new file. A failure to close it is only logged, as the record of the thread which did the rotation has
+     * been written to the new file.
+     */
+    private void releaseWriteLock() {
+        final BufferedWriter previousWriter = retiredWriter;
+        final FileOutputStream previousStream = retiredStream;
+        retiredWriter = null;
+        retiredStream = null;
+        readWriteLock.writeLock().unlock();
+        if (previousWriter != null) {
+            try {
+                syncAndClose(previousWriter, previousStream);
+            } catch (IOException e) {
+                logger.error("Unable to close the rotated file of {}", file.getAbsolutePath(), e);
+            }
+        }
+    }
+
+    /** Closes the writer of a rotated file, once its content is on the storage device. */
+    private static void syncAndClose(BufferedWriter writer, FileOutputStream stream) throws IOException {
+        try {
+            writer.flush();
+            stream.getChannel().force(false);
+        } finally {
+            writer.close();
         }
     }
 
@@ -184,17 +286,31 @@ public class RotatableWriter implements TextWriter, RotatableObject {
             File newFile = fileNamingPolicy.getNextName();
             context.setNextFile(newFile);
             rotationHooks.preRotationAction(context);
-            writer.close();
             if (logger.isTraceEnabled()) {
                 logger.trace("Renaming {} to {}", currentFile.getAbsolutePath(), newFile.getAbsolutePath());
             }
-            if (currentFile.renameTo(newFile)) {
+            // The previous writer still refers to the renamed file, so that it can be closed outside the write lock
+            BufferedWriter previousWriter = writer;
+            final FileOutputStream previousStream = fileStream;
+            boolean renamed = currentFile.renameTo(newFile);
+            if (!renamed) {
+                // Some platforms cannot rename an open file
+                syncAndClose(previousWriter, previousStream);
+                previousWriter = null;
+                renamed = currentFile.renameTo(newFile);
+            }
+            if (renamed) {
                 rotationHappened = true;
                 if (currentFile.createNewFile()) {
                     writer = constructWriter(currentFile, true);
+                    retiredWriter = previousWriter;
+                    retiredStream = previousStream;
                     context.setWriter(writer);
                     rotationHooks.postRotationAction(context);
                 } else {
+                    if (previousWriter != null) {
+                        syncAndClose(previousWriter, previousStream);
+                    }
                     logger.error("Unable to resume writing to audit file {}; further events will not be logged",
                             currentFile.toString());
                 }
@@ -204,6 +320,7 @@ public class RotatableWriter implements TextWriter, RotatableObject {
                 writer = constructWriter(currentFile, true);
             }
             lastRotationTime = DateTime.now(DateTimeZone.UTC);
+            updateNextRotationTime();
         }
         return rotationHappened;
     }
@@ -314,7 +431,7 @@ public class RotatableWriter implements TextWriter, RotatableObject {
             return rotate();
         } finally {
             isRotating.set(false);
-            readWriteLock.writeLock().unlock();
+            releaseWriteLock();
         }
     }
 
@@ -323,9 +440,29 @@ public class RotatableWriter implements TextWriter, RotatableObject {
         writer.flush();
     }
 
+    /**
+     * Flushes the current file, then forces its content to the storage device. Files are also forced to the
+     * storage device when they are rotated.
+     *
+     * @throws IOException
+     *          If an error occurs
+     */
+    @Override
+    public void sync() throws IOException {
+        ReadLock lock = readWriteLock.readLock();
+        lock.lock();
+        try {
+            writer.flush();
+            fileStream.getChannel().force(false);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     private BufferedWriter constructWriter(File csvFile, boolean append)
             throws IOException {
         FileOutputStream stream = new FileOutputStream(csvFile, append);
+        fileStream = stream;
         meteredStream = new MeteredStream(stream, file.length());
         OutputStreamWriter osw = new OutputStreamWriter(meteredStream, StandardCharsets.UTF_8);
         return new BufferedWriter(osw);
@@ -12,9 +12,11 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 package org.forgerock.audit.events.handlers.writers;
 
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
@@ -91,4 +93,32 @@ public interface TextWriter {
             return stream.getBytesWritten();
         }
     }
+
+    /**
+     * A TextWriter implementation which writes to a given file output stream, and can force the written text to
+     * the storage device.
+     */
+    public class FileStream extends Stream implements SyncableTextWriter {
+        private final FileOutputStream fileStream;
+
+        /**
+         * Creates a new text writer that will write to the provided file output stream.
+         *
+         * @param fileStream
+         *            The file output stream to which the text is written.
+         */
+        public FileStream(FileOutputStream fileStream) {
+            super(fileStream);
+            this.fileStream = fileStream;
+        }
+
+        @Override
+        public void sync() throws IOException {
+            // Flushes the PrintWriter, which does not throw, and checks it has not failed to write the text
+            if (((Stream) this).writer.checkError()) {
+                throw new IOException("Failed to write to the file");
+            }
+            fileStream.getChannel().force(false);
+        }
+    }
 }
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 package org.forgerock.audit.rotation;
 
@@ -57,6 +58,30 @@ public class FixedTimeRotationPolicy implements RotationPolicy {
         return false;
     }
 
+    /**
+     * Returns the first of today's rotation times that is after the given last rotation time, or the first of
+     * tomorrow's rotation times if there is none. {@link #shouldRotateFile(RotatableObject)} does not require a
+     * rotation before that time.
+     *
+     * @param lastRotationTime The last time the file was rotated.
+     * @return The time of the next rotation, or {@code null} if there are no rotation times.
+     */
+    public DateTime getNextRotationTime(final DateTime lastRotationTime) {
+        final DateTime today = DateTime.now().withTimeAtStartOfDay();
+        DateTime nextRotationTime = null;
+        for (final Duration dailyRotationTime : dailyRotationTimes) {
+            final long millisAfterMidnight = dailyRotationTime.to(TimeUnit.MILLISECONDS);
+            DateTime rotationTime = today.plus(millisAfterMidnight);
+            if (!rotationTime.isAfter(lastRotationTime)) {
+                rotationTime = today.plusDays(1).withTimeAtStartOfDay().plus(millisAfterMidnight);
+            }
+            if (nextRotationTime == null || rotationTime.isBefore(nextRotationTime)) {
+                nextRotationTime = rotationTime;
+            }
+        }
+        return nextRotationTime;
+    }
+
     /**
      * Get the list of times since midnight that rotation will occur at.
      * @return The list of times as {@code Duration} instances.
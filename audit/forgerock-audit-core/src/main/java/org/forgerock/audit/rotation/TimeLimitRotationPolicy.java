@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 package org.forgerock.audit.rotation;
 
@@ -56,6 +57,19 @@ public class TimeLimitRotationPolicy implements RotationPolicy {
         }
     }
 
+    /**
+     * Returns the time at which this policy will require the rotation of a file last rotated at the given time.
+     *
+     * @param lastRotationTime The last time the file was rotated.
+     * @return The time of the next rotation, or {@code null} if this policy never requires a rotation.
+     */
+    public DateTime getNextRotationTime(final DateTime lastRotationTime) {
+        if (rotationInterval.isZero() || rotationInterval.isUnlimited()) {
+            return null;
+        }
+        return lastRotationTime.plus(rotationIntervalInMillis);
+    }
+
     /**
      * Gets the rotation duration interval.
      * @return The interval as a {@link Duration}.
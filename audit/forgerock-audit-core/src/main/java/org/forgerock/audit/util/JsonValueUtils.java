@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.audit.util;
@@ -29,7 +30,10 @@ import java.util.TreeMap;
 
 import org.forgerock.json.JsonPointer;
 import org.forgerock.json.JsonValue;
+import org.forgerock.json.JsonValueFieldResolver;
+import org.forgerock.util.query.CompiledQueryFilter;
 import org.forgerock.util.query.QueryFilter;
+import org.forgerock.util.query.QueryFilterCompiler;
 import org.forgerock.util.query.QueryFilterVisitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,6 +48,8 @@ public final class JsonValueUtils {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JsonValueUtils.class);
     private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final QueryFilterCompiler<JsonValue, JsonPointer> FILTER_COMPILER =
+            QueryFilterCompiler.newQueryFilterCompiler(new JsonValueFieldResolver()).withEqualityOfAllValues();
 
     private JsonValueUtils() {
         // utility class
@@ -135,7 +141,7 @@ public final class JsonValueUtils {
      *         a null value, null will be returned.
      */
     public static String extractValueAsString(final JsonValue json, final String fieldName) {
-        return extractValueAsString(json, new JsonPointer(fieldName));
+        return extractValueAsString(json, JsonPointer.intern(fieldName));
     }
 
     /**
@@ -198,12 +204,12 @@ public final class JsonValueUtils {
         for (Map.Entry<String, Object> entry : objectSet.entrySet()) {
             final String key = entry.getKey();
             final Object value = entry.getValue();
-            if (jsonValue.get(new JsonPointer(key)) != null
-                    && !jsonValue.get(new JsonPointer(key)).isNull()) {
+            final JsonPointer jsonPointer = JsonPointer.intern(key);
+            final JsonValue existing = jsonValue.get(jsonPointer);
+            if (existing != null && !existing.isNull()) {
                 //only build a sub json object for one prefix value
                 continue;
             }
-            final JsonPointer jsonPointer = new JsonPointer(key);
             int numberOfIndexTokens = getIndexTokens(jsonPointer);
             if (numberOfIndexTokens > 1) {
                 //more than one json array must build the sub json object
@@ -311,6 +317,18 @@ public final class JsonValueUtils {
 
     }
 
+    /**
+     * Compiles a query filter into a predicate matching {@link JsonValue}s exactly as
+     * {@link #JSONVALUE_FILTER_VISITOR} does, which should be preferred when matching many values against the same
+     * filter.
+     *
+     * @param filter the query filter to compile
+     * @return the compiled query filter
+     */
+    public static CompiledQueryFilter<JsonValue> compileQueryFilter(final QueryFilter<JsonPointer> filter) {
+        return FILTER_COMPILER.compile(filter);
+    }
+
     /**
      * A generic JsonValue Query Filter Visitor.
      */
@@ -0,0 +1,320 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.audit.events.handlers.buffering;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.time.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class BufferedBatchPublisherTest {
+
+    private static final Duration ONE_HOUR = Duration.duration(1L, TimeUnit.HOURS);
+    private static final int MAX_BATCHED_EVENTS = 500;
+
+    private BatchPublisher publisher;
+    private Path spillFile;
+
+    @AfterMethod
+    protected void tearDown() throws Exception {
+        if (publisher != null) {
+            publisher.shutdown();
+            publisher = null;
+        }
+        if (spillFile != null) {
+            Files.deleteIfExists(spillFile);
+            spillFile = null;
+        }
+    }
+
+    @DataProvider
+    public Object[][] queueStrategies() {
+        return new Object[][] {
+            { QueueStrategy.ARRAY_BLOCKING_QUEUE },
+            { QueueStrategy.MPSC_RING_BUFFER }
+        };
+    }
+
+    @Test(dataProvider = "queueStrategies")
+    public void testPublishesFullBatchWithoutWaitingForWriteInterval(final QueueStrategy queueStrategy)
+            throws Exception {
+        // given
+        final RecordingBatchConsumer consumer = new RecordingBatchConsumer();
+        publisher = BufferedBatchPublisher.newBuilder(consumer)
+                .queueStrategy(queueStrategy)
+                .maxBatchEvents(MAX_BATCHED_EVENTS)
+                .writeInterval(ONE_HOUR)
+                .build();
+        publisher.startup();
+
+        // when
+        for (int i = 0; i < 2 * MAX_BATCHED_EVENTS; i++) {
+            assertThat(publisher.offer("access", json(i))).isTrue();
+        }
+
+        // then at most one partial batch is left waiting for the write interval
+        consumer.awaitEvents(MAX_BATCHED_EVENTS + 1);
+    }
+
+    @Test(dataProvider = "queueStrategies")
+    public void testPublishesPartialBatchAfterWriteInterval(final QueueStrategy queueStrategy) throws Exception {
+        // given
+        final RecordingBatchConsumer consumer = new RecordingBatchConsumer();
+        publisher = BufferedBatchPublisher.newBuilder(consumer)
+                .queueStrategy(queueStrategy)
+                .writeInterval(Duration.duration(10L, TimeUnit.MILLISECONDS))
+                .build();
+        publisher.startup();
+
+        // when
+        publisher.offer("access", json(1));
+        publisher.offer("activity", json(2));
+
+        // then
+        consumer.awaitEvents(2);
+        assertThat(consumer.allPayloads()).isEqualTo("access:1\nactivity:2\n");
+    }
+
+    @Test(dataProvider = "queueStrategies")
+    public void testFlushesQueueOnShutdownWhenAutoFlushEnabled(final QueueStrategy queueStrategy) throws Exception {
+        // given
+        final RecordingBatchConsumer consumer = new RecordingBatchConsumer();
+        publisher = BufferedBatchPublisher.newBuilder(consumer)
+                .queueStrategy(queueStrategy)
+                .writeInterval(ONE_HOUR)
+                .autoFlush(true)
+                .build();
+        publisher.startup();
+        for (int i = 0; i < 10; i++) {
+            publisher.offer("access", json(i));
+        }
+
+        // when
+        publisher.shutdown();
+
+        // then
+        assertThat(consumer.eventCount()).isEqualTo(10);
+    }
+
+    @Test
+    public void testDropsEventsWhenQueueIsFull() {
+        // given
+        final RecordingBatchConsumer consumer = new RecordingBatchConsumer();
+        publisher = BufferedBatchPublisher.newBuilder(consumer)
+                .queueStrategy(QueueStrategy.ARRAY_BLOCKING_QUEUE)
+                .capacity(10000)
+                .build();
+
+        // when
+        for (int i = 0; i < 10000; i++) {
+            assertThat(publisher.offer("access", json(i))).isTrue();
+        }
+
+        // then
+        assertThat(publisher.offer("access", json(10000))).isFalse();
+    }
+
+    @Test(dataProvider = "queueStrategies")
+    public void testBlocksProducersWhenQueueIsFull(final QueueStrategy queueStrategy) throws Exception {
+        // given
+        final RecordingBatchConsumer consumer = new RecordingBatchConsumer();
+        publisher = BufferedBatchPublisher.newBuilder(consumer)
+                .queueStrategy(queueStrategy)
+                .overflowPolicy(OverflowPolicy.BLOCK)
+                .writeInterval(ONE_HOUR)
+                .build();
+        final int queued = fill(publisher, queueStrategy);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Boolean> blockedOffer = executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return publisher.offer("access", json(-1));
+                }
+            });
+            try {
+                blockedOffer.get(100L, TimeUnit.MILLISECONDS);
+                throw new AssertionError("offer should block while the queue is full");
+            } catch (TimeoutException e) {
+                // expected
+            }
+
+            // when
+            publisher.startup();
+
+            // then
+            assertThat(blockedOffer.get(10L, TimeUnit.SECONDS)).isTrue();
+            consumer.awaitEvents(queued + 1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(dataProvider = "queueStrategies")
+    public void testSpillsEventsToDiskWhenQueueIsFull(final QueueStrategy queueStrategy) throws Exception {
+        // given
+        spillFile = File.createTempFile("audit-spill", ".bin").toPath();
+        final RecordingBatchConsumer consumer = new RecordingBatchConsumer();
+        publisher = BufferedBatchPublisher.newBuilder(consumer)
+                .queueStrategy(queueStrategy)
+                .overflowPolicy(OverflowPolicy.SPILL_TO_DISK)
+                .spillFile(spillFile)
+                .writeInterval(Duration.duration(10L, TimeUnit.MILLISECONDS))
+                .build();
+        final int queued = fill(publisher, queueStrategy);
+
+        // when
+        for (int i = 0; i < 10; i++) {
+            assertThat(publisher.offer("spilled", json(i))).isTrue();
+        }
+        assertThat(Files.size(spillFile)).isGreaterThan(0L);
+        publisher.startup();
+
+        // then
+        consumer.awaitEvents(queued + 10);
+        final String payload = consumer.allPayloads();
+        for (int i = 0; i < 10; i++) {
+            assertThat(payload).contains("spilled:" + i + "\n");
+        }
+        assertThat(Files.size(spillFile)).isEqualTo(0L);
+    }
+
+    @Test(dataProvider = "queueStrategies")
+    public void testPublishesSpilledEventsInOrderUnderSustainedOverflow(final QueueStrategy queueStrategy)
+            throws Exception {
+        // given
+        spillFile = File.createTempFile("audit-spill", ".bin").toPath();
+        final RecordingBatchConsumer consumer = new RecordingBatchConsumer(2L);
+        publisher = BufferedBatchPublisher.newBuilder(consumer)
+                .queueStrategy(queueStrategy)
+                .overflowPolicy(OverflowPolicy.SPILL_TO_DISK)
+                .spillFile(spillFile)
+                .writeInterval(Duration.duration(10L, TimeUnit.MILLISECONDS))
+                .build();
+        publisher.startup();
+        final int events = 50000;
+
+        // when
+        for (int i = 0; i < events; i++) {
+            assertThat(publisher.offer("access", json(i))).isTrue();
+        }
+
+        // then
+        consumer.awaitEvents(events);
+        final String[] published = consumer.allPayloads().split("\n");
+        assertThat(published).hasSize(events);
+        for (int i = 0; i < events; i++) {
+            assertThat(published[i]).isEqualTo("access:" + i);
+        }
+        assertThat(Files.size(spillFile)).isEqualTo(0L);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRequiresSpillFileToSpillToDisk() {
+        BufferedBatchPublisher.newBuilder(new RecordingBatchConsumer())
+                .overflowPolicy(OverflowPolicy.SPILL_TO_DISK)
+                .build();
+    }
+
+    /** Offers events to a publisher which has not been started, until its queue of the default capacity is full. */
+    private static int fill(final BatchPublisher publisher, final QueueStrategy queueStrategy) {
+        // the ring buffer rounds the default capacity of 10000 up to a power of two
+        final int capacity = queueStrategy == QueueStrategy.MPSC_RING_BUFFER ? 16384 : 10000;
+        for (int i = 0; i < capacity; i++) {
+            assertThat(publisher.offer("access", json(i))).isTrue();
+        }
+        return capacity;
+    }
+
+    private static final class RecordingBatchConsumer implements BatchConsumer {
+        private final List<String> payloads = new CopyOnWriteArrayList<>();
+        private final long publishDelayMillis;
+
+        RecordingBatchConsumer() {
+            this(0L);
+        }
+
+        /** Creates a consumer which takes the given time to publish each batch. */
+        RecordingBatchConsumer(final long publishDelayMillis) {
+            this.publishDelayMillis = publishDelayMillis;
+        }
+
+        @Override
+        public void addToBatch(final String topic, final JsonValue event, final StringBuilder payload) {
+            payload.append(topic).append(':').append(event.getObject()).append('\n');
+        }
+
+        @Override
+        public Promise<Void, BatchException> publishBatch(final String payload) {
+            if (publishDelayMillis > 0L) {
+                try {
+                    Thread.sleep(publishDelayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            payloads.add(payload);
+            return newResultPromise(null);
+        }
+
+        int eventCount() {
+            int count = 0;
+            for (String payload : payloads) {
+                for (int i = 0; i < payload.length(); i++) {
+                    if (payload.charAt(i) == '\n') {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        String allPayloads() {
+            final StringBuilder all = new StringBuilder();
+            for (String payload : payloads) {
+                all.append(payload);
+            }
+            return all.toString();
+        }
+
+        void awaitEvents(final int expected) throws InterruptedException {
+            final long deadline = System.currentTimeMillis() + 10000L;
+            while (eventCount() < expected && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5L);
+            }
+            assertThat(eventCount()).isGreaterThanOrEqualTo(expected);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.audit.events.handlers.buffering;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.json;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.forgerock.json.JsonValue;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class MpscRingBufferTest {
+
+    @Test
+    public void testRoundsCapacityUpToPowerOfTwo() {
+        assertThat(new MpscRingBuffer(10000).capacity()).isEqualTo(16384);
+        assertThat(new MpscRingBuffer(16384).capacity()).isEqualTo(16384);
+    }
+
+    @Test
+    public void testDrainsEventsInOrder() {
+        // given
+        final MpscRingBuffer ringBuffer = new MpscRingBuffer(4);
+        final RecordingHandler handler = new RecordingHandler();
+
+        // when
+        for (int i = 0; i < 10; i++) {
+            assertThat(ringBuffer.offer("topic", json(i))).isTrue();
+            assertThat(ringBuffer.drain(handler, 10)).isEqualTo(1);
+        }
+
+        // then
+        for (int i = 0; i < 10; i++) {
+            assertThat(handler.events.get(i).asInteger()).isEqualTo(i);
+        }
+        assertThat(ringBuffer.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testRejectsEventsWhenFull() {
+        // given
+        final MpscRingBuffer ringBuffer = new MpscRingBuffer(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(ringBuffer.offer("topic", json(i))).isTrue();
+        }
+
+        // when
+        final boolean offered = ringBuffer.offer("topic", json(4));
+
+        // then
+        assertThat(offered).isFalse();
+        assertThat(ringBuffer.size()).isEqualTo(4);
+        assertThat(ringBuffer.drain(new RecordingHandler(), 2)).isEqualTo(2);
+        assertThat(ringBuffer.offer("topic", json(4))).isTrue();
+    }
+
+    @Test
+    public void testDoesNotLoseOrDuplicateConcurrentlyOfferedEvents() throws Exception {
+        // given
+        final int producers = 8;
+        final int eventsPerProducer = 20000;
+        final MpscRingBuffer ringBuffer = new MpscRingBuffer(1024);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < eventsPerProducer; i++) {
+                        final JsonValue event = json(producer * eventsPerProducer + i);
+                        while (!ringBuffer.offer("topic" + producer, event)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        // when
+        final int[] lastSeen = new int[producers];
+        final boolean[] seen = new boolean[producers * eventsPerProducer];
+        final int[] count = new int[1];
+        Arrays.fill(lastSeen, -1);
+        final BatchQueue.EntryHandler handler = new BatchQueue.EntryHandler() {
+            @Override
+            public void handle(final String topic, final JsonValue event) {
+                final int value = event.asInteger();
+                final int producer = value / eventsPerProducer;
+                assertThat(topic).isEqualTo("topic" + producer);
+                assertThat(seen[value]).isFalse();
+                // events of each producer are drained in the order they were offered
+                assertThat(value).isGreaterThan(lastSeen[producer]);
+                seen[value] = true;
+                lastSeen[producer] = value;
+                count[0]++;
+            }
+        };
+        start.countDown();
+        while (count[0] < producers * eventsPerProducer) {
+            if (ringBuffer.drain(handler, 500) == 0) {
+                Thread.yield();
+            }
+        }
+
+        // then
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(ringBuffer.size()).isEqualTo(0);
+        assertThat(ringBuffer.drain(handler, 500)).isEqualTo(0);
+    }
+
+    private static final class RecordingHandler implements BatchQueue.EntryHandler {
+        private final List<JsonValue> events = new ArrayList<>();
+
+        @Override
+        public void handle(final String topic, final JsonValue event) {
+            events.add(event);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.audit.events.handlers.buffering;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.json;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.forgerock.json.JsonValue;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class SpillFileTest {
+
+    private Path path;
+    private SpillFile spillFile;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        path = File.createTempFile("audit-spill", ".bin").toPath();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        if (spillFile != null) {
+            spillFile.close();
+        }
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void testReadsBackEventsInOrderAndTruncatesOnceEmpty() throws Exception {
+        // given
+        spillFile = new SpillFile(path);
+        for (int i = 0; i < 10; i++) {
+            assertThat(spillFile.append("access", json(i))).isTrue();
+        }
+
+        // when
+        final List<Object> events = drain(5);
+        final long sizeAfterPartialDrain = Files.size(path);
+        events.addAll(drain(10));
+
+        // then
+        assertThat(events).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        assertThat(sizeAfterPartialDrain).isGreaterThan(0L);
+        assertThat(spillFile.size()).isZero();
+        assertThat(Files.size(path)).isEqualTo(0L);
+    }
+
+    @Test
+    public void testCompactsFileWhileEventsKeepBeingSpilled() throws Exception {
+        // given
+        spillFile = new SpillFile(path, 1024L);
+        int next = 0;
+        for (; next < 100; next++) {
+            spillFile.append("access", json(next));
+        }
+        final long initialSize = Files.size(path);
+
+        // when
+        final List<Object> events = new ArrayList<>();
+        for (int round = 0; round < 100; round++) {
+            events.addAll(drain(10));
+            for (int i = 0; i < 10; i++, next++) {
+                spillFile.append("access", json(next));
+            }
+            assertThat(spillFile.size()).isEqualTo(100);
+            assertThat(Files.size(path)).isLessThanOrEqualTo(2 * initialSize + 1024L);
+        }
+        events.addAll(drain(100));
+
+        // then
+        assertThat(events).hasSize(next);
+        for (int i = 0; i < next; i++) {
+            assertThat(events.get(i)).isEqualTo(i);
+        }
+        assertThat(Files.size(path)).isEqualTo(0L);
+    }
+
+    private List<Object> drain(final int maxEntries) {
+        final List<Object> events = new ArrayList<>();
+        spillFile.drain(new BatchQueue.EntryHandler() {
+            @Override
+            public void handle(final String topic, final JsonValue event) {
+                events.add(event.getObject());
+            }
+        }, maxEntries);
+        return events;
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.audit.events.handlers.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.util.test.FileUtils.deleteRecursively;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.forgerock.json.JsonPointer;
+import org.forgerock.json.resource.QueryFilters;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class EventIndexTest {
+
+    private static final int MAGIC = 0x54494458;
+    private static final int EVENT_COUNT = 2_000;
+    private static final int EVENT_LENGTH = 100;
+
+    private Path logDirectoryPath;
+    private Path dataFile;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        logDirectoryPath = Files.createTempDirectory(EventIndexTest.class.getSimpleName());
+        dataFile = logDirectoryPath.resolve("access.audit");
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        deleteRecursively(logDirectoryPath);
+    }
+
+    @Test
+    public void testSelectByKeyIgnoringCase() throws Exception {
+        // given
+        final EventIndex index = newIndex();
+        addEvents(index, 0, EVENT_COUNT);
+
+        // when
+        final EventIndex.Candidates byId = index.select(QueryFilters.parse("/_id eq \"ID-0000001234\""));
+        final EventIndex.Candidates byTransactionId =
+                index.select(QueryFilters.parse("/transactionId eq \"TX-0000000042\""));
+
+        // then
+        assertThat(byId.isFullScan()).isFalse();
+        assertThat(offsets(byId)).containsExactly(1234L * EVENT_LENGTH);
+        assertThat(offsets(byTransactionId)).containsExactly(42L * EVENT_LENGTH);
+    }
+
+    @Test
+    public void testSelectTimestampRange() throws Exception {
+        // given
+        final EventIndex index = newIndex();
+        addEvents(index, 0, EVENT_COUNT);
+
+        // when
+        final EventIndex.Candidates range = index.select(QueryFilters.parse(
+                "/timestamp ge \"ts-0000001000\" and /timestamp lt \"ts-0000001010\""));
+        final EventIndex.Candidates outside = index.select(QueryFilters.parse("/timestamp gt \"ts-9\""));
+
+        // then
+        assertThat(range.size()).isLessThanOrEqualTo(2 * EventIndex.TIMESTAMP_BLOCK_SIZE);
+        assertThat(offsets(range)).contains(1000L * EVENT_LENGTH, 1009L * EVENT_LENGTH);
+        assertThat(outside.size()).isZero();
+    }
+
+    @Test
+    public void testSelectWithoutIndexedFieldIsFullScan() throws Exception {
+        // given
+        final EventIndex index = newIndex();
+        addEvents(index, 0, EVENT_COUNT);
+
+        // when
+        final EventIndex.Candidates candidates = index.select(QueryFilters.parse("/_id co \"0000001\""));
+
+        // then
+        assertThat(candidates.isFullScan()).isTrue();
+        assertThat(candidates.size()).isEqualTo(EVENT_COUNT);
+    }
+
+    @Test
+    public void testCandidatesAreUnaffectedByLaterChanges() throws Exception {
+        // given
+        final EventIndex index = newIndex();
+        addEvents(index, 0, 10);
+        final EventIndex.Candidates candidates = index.select(null);
+
+        // when
+        index.clear();
+        addEvents(index, 0, 20);
+
+        // then
+        assertThat(candidates.getCount()).isEqualTo(10);
+        assertThat(offsets(candidates)).hasSize(10);
+    }
+
+    @Test
+    public void testReloadsSidecarFile() throws Exception {
+        // given
+        final EventIndex index = newIndex();
+        index.openOutput(0L);
+        writeEvents(index, 0, EVENT_COUNT);
+        index.close();
+
+        // when
+        final EventIndex reloaded = newIndex();
+        final long validLength = reloaded.load(0L, EVENT_COUNT * EVENT_LENGTH);
+
+        // then
+        assertThat(validLength).isEqualTo(Files.size(index.getIndexFile()));
+        assertThat(reloaded.size()).isEqualTo(EVENT_COUNT);
+        assertThat(reloaded.lastEntryMatches(0, "ID-0000001999")).isTrue();
+        assertThat(reloaded.lastEntryMatches(0, "id-0000001998")).isFalse();
+        assertThat(offsets(reloaded.select(QueryFilters.parse("/_id eq \"id-0000000042\""))))
+                .containsExactly(42L * EVENT_LENGTH);
+    }
+
+    @Test
+    public void testReloadStopsAtEventsBeyondTheAuditFile() throws Exception {
+        // given
+        final EventIndex index = newIndex();
+        index.openOutput(0L);
+        writeEvents(index, 0, EVENT_COUNT);
+        index.close();
+
+        final EventIndex truncated = newIndex();
+        final long validLength = truncated.load(0L, 500L * EVENT_LENGTH);
+        assertThat(truncated.size()).isEqualTo(500);
+
+        // when
+        truncated.openOutput(validLength);
+        writeEvents(truncated, 500, 600);
+        truncated.close();
+
+        // then
+        final EventIndex caughtUp = newIndex();
+        caughtUp.load(0L, 600L * EVENT_LENGTH);
+        assertThat(caughtUp.size()).isEqualTo(600);
+    }
+
+    @Test
+    public void testIgnoresSidecarFileOfAnotherFormat() throws Exception {
+        // given
+        final EventIndex index = newIndex();
+        index.openOutput(0L);
+        writeEvents(index, 0, 10);
+        index.close();
+
+        // when
+        final EventIndex other = new EventIndex(dataFile, MAGIC + 1, new JsonPointer("/timestamp"),
+                new JsonPointer("/_id"));
+        final long validLength = other.load(0L, 10L * EVENT_LENGTH);
+
+        // then
+        assertThat(validLength).isZero();
+        assertThat(other.size()).isZero();
+    }
+
+    private EventIndex newIndex() {
+        return new EventIndex(dataFile, MAGIC, new JsonPointer("/timestamp"), new JsonPointer("/_id"),
+                new JsonPointer("/transactionId"));
+    }
+
+    private static void addEvents(final EventIndex index, final int from, final int to) {
+        for (int i = from; i < to; ++i) {
+            index.add((long) i * EVENT_LENGTH, keys(i), timestamp(i));
+        }
+    }
+
+    private static void writeEvents(final EventIndex index, final int from, final int to) {
+        for (int i = from; i < to; ++i) {
+            index.add((long) i * EVENT_LENGTH, keys(i), timestamp(i));
+            index.write((long) i * EVENT_LENGTH, keys(i), timestamp(i));
+        }
+        index.flush();
+    }
+
+    private static String[] keys(final int i) {
+        return new String[] { String.format("id-%010d", i), String.format("tx-%010d", i) };
+    }
+
+    private static String timestamp(final int i) {
+        return String.format("ts-%010d", i);
+    }
+
+    private static List<Long> offsets(final EventIndex.Candidates candidates) {
+        final List<Long> offsets = new ArrayList<>();
+        for (int entry = candidates.next(0); entry >= 0; entry = candidates.next(entry + 1)) {
+            offsets.add(candidates.offset(entry));
+        }
+        return offsets;
+    }
+}
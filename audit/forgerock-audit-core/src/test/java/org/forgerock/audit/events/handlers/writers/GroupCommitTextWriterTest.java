@@ -0,0 +1,260 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.audit.events.handlers.writers;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.assertj.core.util.Files.newTemporaryFile;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.time.Duration;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class GroupCommitTextWriterTest {
+
+    @Test
+    public void testRecordsQueuedDuringASyncAreCommittedTogether() throws Exception {
+        // given
+        final RecordingWriter recordingWriter = new RecordingWriter();
+        final GroupCommitTextWriter writer = new GroupCommitTextWriter("test", 1000, Duration.ZERO, recordingWriter);
+        try {
+            final Promise<Void, IOException> first = writer.commit("a");
+            assertThat(recordingWriter.syncStarted.await(10, SECONDS)).isTrue();
+
+            // when
+            final List<Promise<Void, IOException>> promises = new ArrayList<>();
+            for (String record : new String[] { "b", "c", "d" }) {
+                promises.add(writer.commit(record));
+            }
+            assertThat(first.isDone()).isFalse();
+            recordingWriter.releaseSync.countDown();
+
+            // then
+            first.getOrThrow(10, SECONDS);
+            for (Promise<Void, IOException> promise : promises) {
+                promise.getOrThrow(10, SECONDS);
+            }
+            assertThat(recordingWriter.getEvents()).containsExactly("a", "sync", "b", "c", "d", "sync");
+        } finally {
+            writer.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatchesAreLimitedToMaxBatchSize() throws Exception {
+        // given
+        final RecordingWriter recordingWriter = new RecordingWriter();
+        final GroupCommitTextWriter writer = new GroupCommitTextWriter("test", 2, Duration.ZERO, recordingWriter);
+        try {
+            writer.commit("a");
+            assertThat(recordingWriter.syncStarted.await(10, SECONDS)).isTrue();
+
+            // when
+            Promise<Void, IOException> last = null;
+            for (String record : new String[] { "b", "c", "d", "e", "f" }) {
+                last = writer.commit(record);
+            }
+            recordingWriter.releaseSync.countDown();
+            last.getOrThrow(10, SECONDS);
+
+            // then
+            assertThat(recordingWriter.getEvents())
+                    .containsExactly("a", "sync", "b", "c", "sync", "d", "e", "sync", "f", "sync");
+        } finally {
+            writer.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatchDelayWaitsForMoreRecords() throws Exception {
+        // given
+        final RecordingWriter recordingWriter = new RecordingWriter();
+        recordingWriter.releaseSync.countDown();
+        final GroupCommitTextWriter writer =
+                new GroupCommitTextWriter("test", 2, Duration.duration("1 minute"), recordingWriter);
+        try {
+            // when
+            final Promise<Void, IOException> first = writer.commit("a");
+            Thread.sleep(50);
+            assertThat(first.isDone()).isFalse();
+            writer.commit("b").getOrThrow(10, SECONDS);
+
+            // then
+            assertThat(first.isDone()).isTrue();
+            assertThat(recordingWriter.getEvents()).containsExactly("a", "b", "sync");
+        } finally {
+            writer.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testSyncFailureFailsTheRecordsOfTheBatch() throws Exception {
+        final RecordingWriter recordingWriter = new RecordingWriter();
+        recordingWriter.releaseSync.countDown();
+        recordingWriter.failure = new IOException("disk full");
+        final GroupCommitTextWriter writer = new GroupCommitTextWriter("test", 1000, Duration.ZERO, recordingWriter);
+        try {
+            writer.write("a");
+        } finally {
+            writer.shutdown();
+        }
+    }
+
+    @Test
+    public void testShutdownCommitsQueuedRecordsThenRejectsNewOnes() throws Exception {
+        // given
+        final RecordingWriter recordingWriter = new RecordingWriter();
+        recordingWriter.releaseSync.countDown();
+        final GroupCommitTextWriter writer = new GroupCommitTextWriter("test", 1000, Duration.ZERO, recordingWriter);
+        final Promise<Void, IOException> queued = writer.commit("a");
+
+        // when
+        writer.shutdown();
+
+        // then
+        queued.getOrThrow(10, SECONDS);
+        assertThat(recordingWriter.shutdown).isTrue();
+        try {
+            writer.write("b");
+            failBecauseExceptionWasNotThrown(IOException.class);
+        } catch (IOException e) {
+            assertThat(e).hasMessage("Writer closed");
+        }
+    }
+
+    @Test
+    public void testRecordsCommittedConcurrentlyWithShutdownAreCompleted() throws Exception {
+        // given
+        final RecordingWriter recordingWriter = new RecordingWriter();
+        recordingWriter.releaseSync.countDown();
+        final GroupCommitTextWriter writer = new GroupCommitTextWriter("test", 1000, Duration.ZERO, recordingWriter);
+        final AtomicInteger hungRecords = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(4);
+        final List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    while (true) {
+                        try {
+                            writer.commit("record").getOrThrow(10, SECONDS);
+                        } catch (IOException | InterruptedException e) {
+                            return;
+                        } catch (TimeoutException e) {
+                            hungRecords.incrementAndGet();
+                            return;
+                        }
+                    }
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        assertThat(started.await(10, SECONDS)).isTrue();
+
+        // when
+        writer.shutdown();
+
+        // then
+        for (Thread producer : producers) {
+            producer.join(SECONDS.toMillis(20));
+            assertThat(producer.isAlive()).isFalse();
+        }
+        assertThat(hungRecords.get()).isZero();
+    }
+
+    @Test
+    public void testRecordsAreInTheFileOnceWritten() throws Exception {
+        // given
+        final File file = newTemporaryFile();
+        file.deleteOnExit();
+        final GroupCommitTextWriter writer = new GroupCommitTextWriter("test", 1000, Duration.ZERO,
+                new TextWriter.FileStream(new FileOutputStream(file)));
+        try {
+            // when
+            writer.write("a,b\n");
+
+            // then
+            assertThat(new String(Files.readAllBytes(file.toPath()), UTF_8)).isEqualTo("a,b\n");
+            assertThat(writer.getBytesWritten()).isEqualTo(4L);
+        } finally {
+            writer.shutdown();
+        }
+    }
+
+    /** Records the writes and syncs, blocking the first sync until released. */
+    private static final class RecordingWriter implements SyncableTextWriter {
+        private final List<String> events = new ArrayList<>();
+        private final CountDownLatch syncStarted = new CountDownLatch(1);
+        private final CountDownLatch releaseSync = new CountDownLatch(1);
+        private volatile IOException failure;
+        private volatile boolean shutdown;
+
+        @Override
+        public synchronized void write(String text) {
+            events.add(text);
+        }
+
+        @Override
+        public void sync() throws IOException {
+            syncStarted.countDown();
+            try {
+                releaseSync.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            synchronized (this) {
+                events.add("sync");
+            }
+        }
+
+        @Override
+        public void flush() {
+            // Nothing to do
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public long getBytesWritten() {
+            return 0;
+        }
+
+        synchronized List<String> getEvents() {
+            return new ArrayList<>(events);
+        }
+    }
+}
@@ -21,12 +21,18 @@ import static org.assertj.core.api.Assertions.*;
 import static org.assertj.core.util.Files.*;
 
 import java.io.File;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import org.forgerock.audit.events.handlers.FileBasedEventHandlerConfiguration;
@@ -262,6 +268,63 @@ public class RotatableWriterTest {
 
     // TODO: testRotationForFixedTimeRotationPolicy
 
+    @Test
+    public void testConcurrentWritersDuringSizeBasedRotation() throws Exception {
+        // given
+        final File file = getTempFile();
+        final String prefix = "testConcurrentWritersDuringSizeBasedRotation";
+        final FileBasedEventHandlerConfiguration configuration = new DefaultFileBasedAuditEventHandlerConfiguration();
+        configuration.setRotationRetentionCheckInterval("1 hour"); // ensure asynchronous check is inactive
+        configuration.getFileRotation().setRotationEnabled(true);
+        configuration.getFileRotation().setRotationFilePrefix(prefix);
+        configuration.getFileRotation().setRotationFileSuffix(ROTATION_FILE_SUFFIX);
+        configuration.getFileRotation().setMaxFileSize(10_000);
+        rotatableWriter = new RotatableWriter(file, configuration, true);
+        final int threads = 8;
+        final int linesPerThread = 2_000;
+        final String line = "0123456789012345678901234567890123456789\n";
+
+        // when
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Void>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int j = 0; j < linesPerThread; j++) {
+                            rotatableWriter.write(line);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get(30, SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        rotatableWriter.close();
+
+        // then
+        // rotations within the same millisecond get a unique suffix, which the timestamp filter does not accept
+        final File[] rotatedFiles = file.getParentFile().listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(prefix + file.getName());
+            }
+        });
+        cleanupFilesWhenDone(rotatedFiles);
+        assertThat(rotatedFiles).isNotEmpty();
+        long totalLength = file.length();
+        for (File rotatedFile : rotatedFiles) {
+            totalLength += rotatedFile.length();
+            assertThat(rotatedFile.length() % line.length()).isEqualTo(0);
+        }
+        assertThat(totalLength).isEqualTo((long) threads * linesPerThread * line.length());
+    }
+
     @Test
     public void testCanForceRotation() throws Exception {
         // given
@@ -20,6 +20,7 @@ import static org.forgerock.util.time.Duration.duration;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -54,4 +55,18 @@ public class FixedTimeRotationPolicyTest {
             assertThat(rotate).isFalse();
         }
     }
+
+    @Test
+    public void testNextRotationTime() {
+        final FixedTimeRotationPolicy rotationPolicy = new FixedTimeRotationPolicy(
+                Arrays.asList(duration("2 hours"), duration(ONE_MINUTE)));
+        final DateMidnight today = new DateMidnight();
+
+        assertThat(rotationPolicy.getNextRotationTime(today.toDateTime()))
+                .isEqualTo(today.toDateTime().plusMinutes(1));
+        assertThat(rotationPolicy.getNextRotationTime(today.toDateTime().plusMinutes(1)))
+                .isEqualTo(today.toDateTime().plusHours(2));
+        assertThat(rotationPolicy.getNextRotationTime(today.toDateTime().plusHours(3)))
+                .isEqualTo(today.plusDays(1).toDateTime().plusMinutes(1));
+    }
 }
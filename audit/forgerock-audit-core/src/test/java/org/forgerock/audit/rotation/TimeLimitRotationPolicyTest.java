@@ -70,4 +70,13 @@ public class TimeLimitRotationPolicyTest {
         // then
         assertThat(rotate).isFalse();
     }
+
+    @Test
+    public void testNextRotationTime() {
+        final DateTime lastRotationTime = DateTime.now();
+
+        assertThat(new TimeLimitRotationPolicy(duration).getNextRotationTime(lastRotationTime))
+                .isEqualTo(lastRotationTime.plusSeconds(5));
+        assertThat(new TimeLimitRotationPolicy(disabled).getNextRotationTime(lastRotationTime)).isNull();
+    }
 }
@@ -12,11 +12,13 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.audit.util;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.audit.util.JsonValueUtils.JSONVALUE_FILTER_VISITOR;
 import static org.forgerock.json.JsonValue.array;
 import static org.forgerock.json.JsonValue.field;
 import static org.forgerock.json.JsonValue.json;
@@ -24,6 +26,9 @@ import static org.forgerock.json.JsonValue.object;
 
 import org.forgerock.json.JsonPointer;
 import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.QueryFilters;
+import org.forgerock.util.query.QueryFilter;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.util.HashMap;
@@ -127,4 +132,48 @@ public class JsonValueUtilsTest {
         assertThat(flatObject.get("/nestedObject/array/0").equals("value1"));
         assertThat(flatObject.get("/nestedObject/array/1").equals("value2"));
     }
+
+    @DataProvider
+    public Object[][] queryFilters() {
+        return new Object[][] {
+            { "true" },
+            { "/_id eq \"ID-1\"" },
+            { "/_id eq \"id-10\"" },
+            { "/missing eq \"x\"" },
+            { "/tags eq \"a\"" },
+            { "/tags co \"B\"" },
+            { "/empty eq \"x\"" },
+            { "/nullField eq \"x\"" },
+            { "/nullField pr" },
+            { "/response/elapsedTime gt 10" },
+            { "/response/elapsedTime le 10.0" },
+            { "/response/status sw \"SUCC\"" },
+            { "/response/status co 10" },
+            { "/response/detail/0 eq true" },
+            { "/_id sw \"id\" and !(/response/elapsedTime lt 5 or /missing pr)" },
+            { "!(/_id eq \"id-1\" and /tags eq \"a\")" },
+        };
+    }
+
+    @Test(dataProvider = "queryFilters")
+    public void testCompiledQueryFilterMatchesLikeVisitor(final String filter) {
+        // given
+        final QueryFilter<JsonPointer> queryFilter = QueryFilters.parse(filter);
+        final JsonValue[] events = {
+            json(object(field("_id", "id-1"), field("tags", array("a")), field("empty", array()),
+                    field("nullField", null),
+                    field("response", object(field("status", "SUCCESSFUL"), field("elapsedTime", 10),
+                            field("detail", array(true)))))),
+            json(object(field("_id", "id-10"), field("tags", array("a", "b")),
+                    field("response", object(field("status", "FAILED"), field("elapsedTime", 4.5))))),
+        };
+
+        for (final JsonValue event : events) {
+            // when
+            final boolean matches = JsonValueUtils.compileQueryFilter(queryFilter).matches(event);
+
+            // then
+            assertThat(matches).isEqualTo(queryFilter.accept(JSONVALUE_FILTER_VISITOR, event));
+        }
+    }
 }
@@ -12,10 +12,12 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2017 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 package org.forgerock.audit.handlers.csv;
 
 import static java.lang.String.format;
+import static org.forgerock.audit.events.AuditEventBuilder.TIMESTAMP;
 import static org.forgerock.audit.events.AuditEventHelper.ARRAY_TYPE;
 import static org.forgerock.audit.events.AuditEventHelper.OBJECT_TYPE;
 import static org.forgerock.audit.events.AuditEventHelper.dotNotationToJsonPointer;
@@ -24,7 +26,7 @@ import static org.forgerock.audit.events.AuditEventHelper.getAuditEventSchema;
 import static org.forgerock.audit.events.AuditEventHelper.getPropertyType;
 import static org.forgerock.audit.events.AuditEventHelper.jsonPointerToDotNotation;
 import static org.forgerock.audit.util.JsonSchemaUtils.generateJsonPointers;
-import static org.forgerock.audit.util.JsonValueUtils.JSONVALUE_FILTER_VISITOR;
+import static org.forgerock.audit.util.JsonValueUtils.compileQueryFilter;
 import static org.forgerock.audit.util.JsonValueUtils.expand;
 import static org.forgerock.json.JsonValue.field;
 import static org.forgerock.json.JsonValue.json;
@@ -32,18 +34,25 @@ import static org.forgerock.json.JsonValue.object;
 import static org.forgerock.json.resource.ResourceResponse.FIELD_CONTENT_ID;
 import static org.forgerock.json.resource.Responses.newQueryResponse;
 import static org.forgerock.json.resource.Responses.newResourceResponse;
+import static org.forgerock.util.Utils.closeSilently;
 import static org.forgerock.util.Utils.isNullOrEmpty;
 
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -52,15 +61,19 @@ import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import javax.inject.Inject;
 
 import org.forgerock.audit.Audit;
 import org.forgerock.audit.events.EventTopicsMetaData;
 import org.forgerock.audit.events.handlers.AuditEventHandlerBase;
+import org.forgerock.audit.events.handlers.index.EventIndex;
 import org.forgerock.audit.handlers.csv.CsvAuditEventHandlerConfiguration.CsvSecurity;
 import org.forgerock.audit.handlers.csv.CsvAuditEventHandlerConfiguration.EventBufferingConfiguration;
 import org.forgerock.audit.providers.KeyStoreHandlerProvider;
+import org.forgerock.audit.retention.FileNamingPolicy;
 import org.forgerock.audit.retention.TimeStampFileNamingPolicy;
 import org.forgerock.audit.secure.JcaKeyStoreHandler;
 import org.forgerock.audit.secure.KeyStoreHandler;
@@ -72,7 +85,6 @@ import org.forgerock.json.resource.ActionResponse;
 import org.forgerock.json.resource.BadRequestException;
 import org.forgerock.json.resource.InternalServerErrorException;
 import org.forgerock.json.resource.NotFoundException;
-import org.forgerock.json.resource.QueryFilters;
 import org.forgerock.json.resource.QueryRequest;
 import org.forgerock.json.resource.QueryResourceHandler;
 import org.forgerock.json.resource.QueryResponse;
@@ -82,6 +94,7 @@ import org.forgerock.json.resource.Responses;
 import org.forgerock.services.context.Context;
 import org.forgerock.util.Reject;
 import org.forgerock.util.promise.Promise;
+import org.forgerock.util.query.CompiledQueryFilter;
 import org.forgerock.util.query.QueryFilter;
 import org.forgerock.util.time.Duration;
 import org.slf4j.Logger;
@@ -108,8 +121,13 @@ public class CsvAuditEventHandler extends AuditEventHandlerBase {
 
     static final String SECURE_CSV_FILENAME_PREFIX = "tamper-evident-";
 
+    /** Number of selected records parsed by each parallel scan task. */
+    static final int SCAN_CHUNK_SIZE = 4096;
+
     private static final ObjectMapper MAPPER = new ObjectMapper();
     private static final Random RANDOM;
+    /** CSV files are read with the platform character set, as by {@link FileReader}. */
+    private static final Charset CHARSET = Charset.defaultCharset();
 
     static {
         try {
@@ -128,6 +146,8 @@ public class CsvAuditEventHandler extends AuditEventHandlerBase {
     /** Caches the dot notation for each field. */
     private final Map<String, String> fieldDotNotationByField;
     private KeyStoreHandler keyStoreHandler;
+    /** Indexes of the current and rotated audit files, or {@code null} if the CSV format cannot be indexed. */
+    private final ConcurrentMap<File, CsvFileIndex> indexes;
 
     /**
      * Create a new CsvAuditEventHandler instance.
@@ -148,6 +168,10 @@ public class CsvAuditEventHandler extends AuditEventHandlerBase {
         super(configuration.getName(), eventTopicsMetaData, configuration.getTopics(), configuration.isEnabled());
         this.configuration = configuration;
         this.csvPreference = createCsvPreference(this.configuration);
+        final String endOfLineSymbols = csvPreference.getEndOfLineSymbols();
+        this.indexes = !endOfLineSymbols.isEmpty() && CsvFileIndex.isSupported(CHARSET, csvPreference.getQuoteChar(),
+                (char) csvPreference.getDelimiterChar(), endOfLineSymbols.charAt(endOfLineSymbols.length() - 1))
+                ? new ConcurrentHashMap<File, CsvFileIndex>() : null;
         CsvSecurity security = configuration.getSecurity();
         if (security.isEnabled()) {
             Duration duration = security.getSignatureIntervalDuration();
@@ -230,6 +254,7 @@ public class CsvAuditEventHandler extends AuditEventHandlerBase {
                 LOGGER.error("Error when creating audit file: {}", auditLogFile, e);
             }
         }
+        deleteOrphanIndexes(file);
     }
 
     /** {@inheritDoc} */
@@ -351,7 +376,11 @@ public class CsvAuditEventHandler extends AuditEventHandlerBase {
     }
 
     private ICsvMapReader createCsvMapReader(final File auditFile) throws IOException {
-        CsvMapReader csvReader = new CsvMapReader(new FileReader(auditFile), csvPreference);
+        return createCsvMapReader(new FileReader(auditFile));
+    }
+
+    private ICsvMapReader createCsvMapReader(final Reader auditReader) {
+        CsvMapReader csvReader = new CsvMapReader(auditReader, csvPreference);
 
         if (configuration.getSecurity().isEnabled()) {
             return new CsvSecureMapReader(csvReader);
@@ -380,9 +409,7 @@ public class CsvAuditEventHandler extends AuditEventHandlerBase {
             QueryRequest query,
             QueryResourceHandler handler) {
         try {
-            for (final JsonValue value : getEntries(topic, query.getQueryFilter())) {
-                handler.handleResource(newResourceResponse(value.get(FIELD_CONTENT_ID).asString(), null, value));
-            }
+            queryEntries(topic, query.getQueryFilter(), handler);
             return newQueryResponse().asPromise();
         } catch (Exception e) {
             return new BadRequestException(e).asPromise();
@@ -396,15 +423,22 @@ public class CsvAuditEventHandler extends AuditEventHandlerBase {
     @Override
     public Promise<ResourceResponse, ResourceException> readEvent(Context context, String topic, String resourceId) {
         try {
-            final Set<JsonValue> entry = getEntries(topic, QueryFilters.parse("/_id eq \"" + resourceId + "\""));
-            if (entry.isEmpty()) {
+            final ResourceResponse[] resource = new ResourceResponse[1];
+            queryEntries(topic, QueryFilter.equalTo(new JsonPointer(FIELD_CONTENT_ID), resourceId),
+                    new QueryResourceHandler() {
+                        @Override
+                        public boolean handleResource(final ResourceResponse response) {
+                            resource[0] = response;
+                            return false;
+                        }
+                    });
+            if (resource[0] == null) {
                 throw new NotFoundException(topic + " audit log not found");
             }
-            final JsonValue resource = entry.iterator().next();
-            return newResourceResponse(resource.get(FIELD_CONTENT_ID).asString(), null, resource).asPromise();
+            return resource[0].asPromise();
         } catch (ResourceException e) {
             return e.asPromise();
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             return new BadRequestException(e).asPromise();
         }
     }
@@ -470,8 +504,7 @@ public class CsvAuditEventHandler extends AuditEventHandlerBase {
         try {
             File auditLogFile = getAuditLogFile(topic);
             if (forceRotation) {
-                TimeStampFileNamingPolicy namingPolicy = new TimeStampFileNamingPolicy(auditLogFile, null, null);
-                File rotatedFile = namingPolicy.getNextName();
+                File rotatedFile = getFileNamingPolicy(auditLogFile).getNextName();
                 if (!auditLogFile.renameTo(rotatedFile)) {
                     throw new BadRequestException(
                             format("Unable to rename file %s to %s when rotating", auditLogFile, rotatedFile));
@@ -497,37 +530,214 @@ public class CsvAuditEventHandler extends AuditEventHandlerBase {
     }
 
     /**
-     * Parser the csv file corresponding the the specified audit entry type and returns a set of matching audit entries.
+     * Parses the current and rotated csv files of the specified audit entry type, oldest first, and streams the
+     * matching audit entries to a query handler, until it stops the query.
+     * <p>
+     * The records which may match the query filter are selected with the index of each file, and then parsed and
+     * matched in chunks of {@value #SCAN_CHUNK_SIZE} records by parallel fork-join tasks. The results of each chunk
+     * are handed to the query handler in file order, while the following chunks are being scanned.
      *
      * @param auditEntryType the audit log type
      * @param queryFilter the query filter to apply to the entries
-     * @return  A audit log entry; null if no entry exists
-     * @throws IOException If unable to get an entry from the CSV file.
+     * @param handler the query handler to which the matching entries are handed
+     * @throws IOException If unable to read entries from the CSV files.
+     * @throws ResourceException If the schema of the audit log type is misconfigured.
+     */
+    private void queryEntries(final String auditEntryType, final QueryFilter<JsonPointer> queryFilter,
+            final QueryResourceHandler handler) throws IOException, ResourceException {
+        final CompiledQueryFilter<JsonValue> filter =
+                compileQueryFilter(queryFilter == null ? QueryFilter.<JsonPointer>alwaysTrue() : queryFilter);
+        final List<File> auditFiles = getAuditLogFiles(auditEntryType);
+        if (indexes == null) {
+            for (final File auditFile : auditFiles) {
+                if (!scanEntries(auditEntryType, auditFile, filter, handler)) {
+                    return;
+                }
+            }
+            return;
+        }
+        final List<CsvFileIndex.Selection> selections = new ArrayList<>();
+        final List<ScanTask> tasks = new ArrayList<>();
+        int forked = 0;
+        try {
+            for (final File auditFile : auditFiles) {
+                final CsvFileIndex.Selection selection = getIndex(auditFile).select(queryFilter);
+                selections.add(selection);
+                if (selection.size() > 0) {
+                    addScanTasks(auditEntryType, auditFile, selection, filter, tasks);
+                }
+            }
+            if (tasks.size() == 1) {
+                handleEntries(tasks.get(0).invoke(), handler);
+                return;
+            }
+            // scan a bounded number of chunks ahead of the query handler
+            final int window = 2 * ForkJoinPool.getCommonPoolParallelism();
+            for (int i = 0; i < tasks.size(); ++i) {
+                for (; forked < tasks.size() && forked <= i + window; ++forked) {
+                    tasks.get(forked).fork();
+                }
+                if (!handleEntries(tasks.get(i).join(), handler)) {
+                    return;
+                }
+            }
+        } finally {
+            for (int i = 0; i < forked; ++i) {
+                tasks.get(i).cancel(false);
+                tasks.get(i).quietlyJoin();
+            }
+            for (final CsvFileIndex.Selection selection : selections) {
+                selection.close();
+            }
+        }
+    }
+
+    private void addScanTasks(final String auditEntryType, final File auditFile,
+            final CsvFileIndex.Selection selection, final CompiledQueryFilter<JsonValue> filter,
+            final List<ScanTask> tasks) throws IOException, ResourceException {
+        final String[] header;
+        try (ICsvMapReader reader = createCsvMapReader(auditFile)) {
+            header = convertDotNotationToSlashes(reader.getHeader(true));
+        }
+        final CellProcessor[] processors = createCellProcessors(auditEntryType, header);
+        int from = selection.next(0);
+        while (from >= 0) {
+            int to = from;
+            for (int selected = 0; selected < SCAN_CHUNK_SIZE && to >= 0; ++selected) {
+                to = selection.next(to + 1);
+            }
+            if (to < 0) {
+                to = selection.getCount();
+            }
+            tasks.add(new ScanTask(selection, from, to, header, processors, filter));
+            from = selection.next(to);
+        }
+    }
+
+    /**
+     * Parses a whole csv file and streams its matching audit entries to a query handler, when the format of the
+     * csv files cannot be indexed.
+     *
+     * @return {@code false} if the query handler stopped the query
+     */
+    private boolean scanEntries(final String auditEntryType, final File auditFile,
+            final CompiledQueryFilter<JsonValue> filter, final QueryResourceHandler handler)
+            throws IOException, ResourceException {
+        if (!auditFile.exists()) {
+            return true;
+        }
+        try (ICsvMapReader reader = createCsvMapReader(auditFile)) {
+            // the header elements are used to map the values to the bean (names must match)
+            final String[] header = convertDotNotationToSlashes(reader.getHeader(true));
+            final CellProcessor[] processors = createCellProcessors(auditEntryType, header);
+            final List<JsonValue> results = new ArrayList<>(1);
+            while (readEntries(reader, header, processors, filter, results, 1)) {
+                if (!handleEntries(results, handler)) {
+                    return false;
+                }
+                results.clear();
+            }
+            return handleEntries(results, handler);
+        }
+    }
+
+    /**
+     * Reads entries until enough of them match the query filter.
+     *
+     * @return {@code false} if the end of the csv file has been reached
      */
-    private Set<JsonValue> getEntries(final String auditEntryType, QueryFilter<JsonPointer> queryFilter)
+    private boolean readEntries(final ICsvMapReader reader, final String[] header, final CellProcessor[] processors,
+            final CompiledQueryFilter<JsonValue> filter, final List<JsonValue> results, final int maxResults)
             throws IOException {
+        Map<String, Object> entry;
+        while ((entry = reader.read(header, processors)) != null) {
+            entry = convertDotNotationToSlashes(entry);
+            final JsonValue jsonEntry = expand(entry);
+            if (filter.matches(jsonEntry)) {
+                results.add(jsonEntry);
+                if (results.size() == maxResults) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean handleEntries(final List<JsonValue> entries, final QueryResourceHandler handler) {
+        for (final JsonValue entry : entries) {
+            if (!handler.handleResource(newResourceResponse(entry.get(FIELD_CONTENT_ID).asString(), null, entry))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lists the rotated csv files of the specified audit entry type, from oldest to newest, followed by the current
+     * one, and forgets the indexes of the files which have been deleted by the retention policies.
+     */
+    private List<File> getAuditLogFiles(final String auditEntryType) {
         final File auditFile = getAuditLogFile(auditEntryType);
-        final Set<JsonValue> results = new HashSet<>();
-        if (queryFilter == null) {
-            queryFilter = QueryFilter.alwaysTrue();
-        }
-        if (auditFile.exists()) {
-            try (ICsvMapReader reader = createCsvMapReader(auditFile)) {
-                // the header elements are used to map the values to the bean (names must match)
-                final String[] header = convertDotNotationToSlashes(reader.getHeader(true));
-                final CellProcessor[] processors = createCellProcessors(auditEntryType, header);
-                Map<String, Object> entry;
-                while ((entry = reader.read(header, processors)) != null) {
-                    entry = convertDotNotationToSlashes(entry);
-                    final JsonValue jsonEntry = expand(entry);
-                    if (queryFilter.accept(JSONVALUE_FILTER_VISITOR, jsonEntry)) {
-                        results.add(jsonEntry);
+        final List<File> auditFiles = new ArrayList<>(getFileNamingPolicy(auditFile).listFiles());
+        auditFiles.add(auditFile);
+        if (indexes != null) {
+            for (final CsvFileIndex index : indexes.values()) {
+                if (!auditFile.equals(index.getDataFile().toFile()) && !Files.exists(index.getDataFile())
+                        && indexes.remove(index.getDataFile().toFile(), index)) {
+                    try {
+                        index.delete();
+                    } catch (IOException e) {
+                        LOGGER.debug("Unable to delete index {}", index.getIndexFile(), e);
                     }
                 }
+            }
+        }
+        return auditFiles;
+    }
+
+    private FileNamingPolicy getFileNamingPolicy(final File auditFile) {
+        if (configuration.getFileRotation().isRotationEnabled()) {
+            return configuration.getFileRotation().buildTimeStampFileNamingPolicy(auditFile);
+        }
+        return new TimeStampFileNamingPolicy(auditFile, null, null);
+    }
+
+    private CsvFileIndex getIndex(final File auditFile) {
+        CsvFileIndex index = indexes.get(auditFile);
+        if (index == null) {
+            final String endOfLineSymbols = csvPreference.getEndOfLineSymbols();
+            final CsvFileIndex newIndex = new CsvFileIndex(auditFile.toPath(), CHARSET, csvPreference.getQuoteChar(),
+                    (char) csvPreference.getDelimiterChar(), endOfLineSymbols.charAt(endOfLineSymbols.length() - 1),
+                    FIELD_CONTENT_ID, TIMESTAMP);
+            index = indexes.putIfAbsent(auditFile, newIndex);
+            if (index == null) {
+                index = newIndex;
+            }
+        }
+        return index;
+    }
 
+    /**
+     * Deletes the index sidecar files of the csv files which no longer exist.
+     */
+    private void deleteOrphanIndexes(final File logDirectory) {
+        final Path indexDirectory = logDirectory.toPath().resolve(EventIndex.INDEX_DIRECTORY_NAME);
+        if (!Files.isDirectory(indexDirectory)) {
+            return;
+        }
+        try (DirectoryStream<Path> indexFiles =
+                     Files.newDirectoryStream(indexDirectory, "*" + EventIndex.INDEX_FILE_NAME_SUFFIX)) {
+            for (final Path indexFile : indexFiles) {
+                final String fileName = indexFile.getFileName().toString();
+                final Path auditFile = logDirectory.toPath().resolve(
+                        fileName.substring(0, fileName.length() - EventIndex.INDEX_FILE_NAME_SUFFIX.length()));
+                if (!Files.exists(auditFile)) {
+                    Files.deleteIfExists(indexFile);
+                }
             }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to delete the indexes of deleted audit files in {}", indexDirectory, e);
         }
-        return results;
     }
 
     private CellProcessor[] createCellProcessors(final String auditEntryType, final String[] headers)
@@ -577,7 +787,47 @@ public class CsvAuditEventHandler extends AuditEventHandlerBase {
 
     }
 
+    /**
+     * Parses and matches the selected records within a range of entries of a csv file.
+     */
+    private final class ScanTask extends RecursiveTask<List<JsonValue>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final CsvFileIndex.Selection selection;
+        private final int fromEntry;
+        private final int toEntry;
+        private final String[] header;
+        private final CellProcessor[] processors;
+        private final CompiledQueryFilter<JsonValue> filter;
+
+        private ScanTask(final CsvFileIndex.Selection selection, final int fromEntry, final int toEntry,
+                final String[] header, final CellProcessor[] processors, final CompiledQueryFilter<JsonValue> filter) {
+            this.selection = selection;
+            this.fromEntry = fromEntry;
+            this.toEntry = toEntry;
+            this.header = header;
+            this.processors = processors;
+            this.filter = filter;
+        }
+
+        @Override
+        protected List<JsonValue> compute() {
+            final List<JsonValue> results = new ArrayList<>();
+            try (ICsvMapReader reader =
+                         createCsvMapReader(new InputStreamReader(selection.open(fromEntry, toEntry), CHARSET))) {
+                readEntries(reader, header, processors, filter, results, Integer.MAX_VALUE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return results;
+        }
+    }
+
     private synchronized void cleanup() throws ResourceException {
+        if (indexes != null) {
+            closeSilently(indexes.values());
+        }
         try {
             for (CsvWriter csvWriter : writers.values()) {
                 if (csvWriter != null) {
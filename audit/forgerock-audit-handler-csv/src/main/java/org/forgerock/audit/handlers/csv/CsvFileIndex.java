@@ -0,0 +1,545 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.audit.handlers.csv;
+
+import static org.forgerock.util.Utils.closeSilently;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.forgerock.audit.events.handlers.index.EventIndex;
+import org.forgerock.json.JsonPointer;
+import org.forgerock.util.query.QueryFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the records of a CSV audit file, which maps the {@code _id} and {@code timestamp} columns of each record
+ * to its byte offset in the file, using an {@link EventIndex}.
+ * <p>
+ * The index is maintained by the readers of the file, rather than by its writer: each {@link #select(QueryFilter)}
+ * first indexes the records appended since the previous one, by scanning their bytes for end-of-line symbols outside
+ * of quoted cells. Only records whose end-of-line has been written are indexed, and the audit file itself is never
+ * modified, so the HMAC chain of tamper-evident files is left untouched. The index is reloaded from its sidecar file
+ * when first used, and is rebuilt when the audit file is replaced by a new file of the same name.
+ */
+final class CsvFileIndex implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CsvFileIndex.class);
+
+    private static final int MAGIC = 0x43494458;
+    private static final int ID_KEY = 0;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private final Path dataFile;
+    private final Charset charset;
+    private final byte quote;
+    private final byte delimiter;
+    private final byte endOfLine;
+    private final String idColumnName;
+    private final String timestampColumnName;
+
+    // all guarded by this
+    private final EventIndex index;
+    private boolean loaded;
+    private Object fileKey;
+    private int idColumn;
+    private int timestampColumn;
+    private long end;
+
+    /**
+     * Creates an empty index of the given audit file, which is loaded from its sidecar file or built when first used.
+     *
+     * @param dataFile Audit file
+     * @param charset Character set of the audit file
+     * @param quote Quote character, which must be encoded as a single byte
+     * @param delimiter Delimiter character, which must be encoded as a single byte
+     * @param endOfLine Last character of the end-of-line symbols, which must be encoded as a single byte
+     * @param idColumnName Name of the column holding the event identifier
+     * @param timestampColumnName Name of the column holding the event timestamp
+     */
+    CsvFileIndex(final Path dataFile, final Charset charset, final char quote, final char delimiter,
+            final char endOfLine, final String idColumnName, final String timestampColumnName) {
+        this.dataFile = dataFile;
+        this.charset = charset;
+        this.quote = (byte) quote;
+        this.delimiter = (byte) delimiter;
+        this.endOfLine = (byte) endOfLine;
+        this.idColumnName = idColumnName;
+        this.timestampColumnName = timestampColumnName;
+        this.index = new EventIndex(dataFile, MAGIC, new JsonPointer().child(timestampColumnName),
+                new JsonPointer().child(idColumnName));
+        clear();
+    }
+
+    /**
+     * Checks whether the index can scan files using the given characters, which must be ASCII characters encoded
+     * as themselves, as they are in UTF-8 and in the ISO-8859 character sets.
+     *
+     * @param charset Character set of the audit files
+     * @param characters Quote, delimiter and end-of-line characters
+     * @return {@code true} if the files can be indexed
+     */
+    static boolean isSupported(final Charset charset, final char... characters) {
+        for (final char c : characters) {
+            final byte[] bytes = String.valueOf(c).getBytes(charset);
+            if (c > 0x7f || bytes.length != 1 || bytes[0] != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the audit file this index refers to.
+     *
+     * @return Audit file path
+     */
+    Path getDataFile() {
+        return dataFile;
+    }
+
+    /**
+     * Gets the sidecar file this index is persisted to.
+     *
+     * @return Index file path
+     */
+    Path getIndexFile() {
+        return index.getIndexFile();
+    }
+
+    /**
+     * Indexes the records added to the audit file since the last call, and selects the records which may match a
+     * query filter, using the index where the filter allows it.
+     *
+     * @param filter Query filter, or {@code null} to select all records
+     * @return Candidate records, which must still be matched against the filter, and which must be closed after use
+     * @throws IOException failed to read the audit file
+     */
+    synchronized Selection select(final QueryFilter<JsonPointer> filter) throws IOException {
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(dataFile, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return new Selection(null, EventIndex.Candidates.NONE, 0L);
+        }
+        try {
+            refresh(channel);
+            return new Selection(channel, index.select(filter), end);
+        } catch (IOException | RuntimeException e) {
+            closeSilently(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the sidecar file and deletes it, after the audit file has been deleted.
+     *
+     * @throws IOException failed to delete the sidecar file
+     */
+    synchronized void delete() throws IOException {
+        close();
+        Files.deleteIfExists(index.getIndexFile());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        index.close();
+    }
+
+    private void clear() {
+        idColumn = -1;
+        timestampColumn = -1;
+        end = 0L;
+        index.clear();
+    }
+
+    /**
+     * Loads the sidecar file on first use, rebuilds the index if the audit file has been replaced, and indexes the
+     * complete records which follow the last indexed one.
+     */
+    private void refresh(final FileChannel channel) throws IOException {
+        final Object currentFileKey = Files.readAttributes(dataFile, BasicFileAttributes.class).fileKey();
+        final long size = channel.size();
+        if (!loaded) {
+            loaded = true;
+            fileKey = currentFileKey;
+            index.openOutput(load(channel, size));
+        } else if (size < end || (fileKey != null && !fileKey.equals(currentFileKey))) {
+            logger.info("Rebuilding index {} of replaced {}", index.getIndexFile(), dataFile);
+            fileKey = currentFileKey;
+            clear();
+            index.openOutput(0L);
+        }
+        if (size > end) {
+            catchUp(channel, end);
+        }
+    }
+
+    /**
+     * Reads the header of the audit file and the sidecar file, up to the first record which is truncated or does
+     * not fit in the audit file.
+     *
+     * @return Length of the valid part of the sidecar file, or {@code 0} if it does not match the audit file
+     */
+    private long load(final FileChannel channel, final long dataFileSize) {
+        try {
+            final byte[] header = readRecord(channel, 0L);
+            if (header == null || !readColumns(header, header.length)) {
+                clear();
+                return 0L;
+            }
+            end = header.length;
+        } catch (IOException e) {
+            logger.warn("Failed to read the header of {}", dataFile, e);
+            clear();
+            return 0L;
+        }
+        final long validLength = index.load(end, dataFileSize);
+        if (index.size() > 0) {
+            final long lastEnd = lastRecordEnd(channel);
+            if (lastEnd < 0L) {
+                logger.warn("Index {} does not match {}, rebuilding it", index.getIndexFile(), dataFile);
+                clear();
+                return 0L;
+            }
+            end = lastEnd;
+        }
+        return validLength;
+    }
+
+    /**
+     * Checks that the last loaded record has the same identifier in the audit file, so that a stale sidecar, left
+     * behind by an audit file which has since been replaced, is discarded.
+     *
+     * @return Offset of the end of the last record, or {@code -1} if it does not match
+     */
+    private long lastRecordEnd(final FileChannel channel) {
+        final long offset = index.offset(index.size() - 1);
+        try {
+            final ByteBuffer previous = ByteBuffer.allocate(1);
+            channel.read(previous, offset - 1);
+            if (previous.get(0) != endOfLine) {
+                return -1L;
+            }
+            final byte[] record = readRecord(channel, offset);
+            if (record == null) {
+                return -1L;
+            }
+            final String[] cells = cells(record, record.length, idColumn + 1);
+            final String id = idColumn < cells.length ? cells[idColumn] : null;
+            return index.lastEntryMatches(ID_KEY, id) ? offset + record.length : -1L;
+        } catch (IOException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Reads the complete record starting at an offset, including its end-of-line symbols.
+     *
+     * @return Record bytes, or {@code null} if the record is incomplete
+     */
+    private byte[] readRecord(final FileChannel channel, final long offset) throws IOException {
+        final ByteArrayOutputStream record = new ByteArrayOutputStream();
+        final ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        boolean quoted = false;
+        long position = offset;
+        while (channel.read(buffer, position) > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                final byte b = buffer.get();
+                record.write(b);
+                if (b == quote) {
+                    quoted = !quoted;
+                } else if (b == endOfLine && !quoted) {
+                    return record.toByteArray();
+                }
+            }
+            position += buffer.position();
+            buffer.clear();
+        }
+        return null;
+    }
+
+    /**
+     * Indexes the complete records of the audit file which follow an offset, starting with the header if it has not
+     * been read yet.
+     */
+    private void catchUp(final FileChannel channel, final long start) throws IOException {
+        final int previousCount = index.size();
+        final byte[] buffer = new byte[SCAN_BUFFER_SIZE];
+        byte[] record = new byte[1024];
+        int recordLength = 0;
+        boolean quoted = false;
+        long position = start;
+        long recordStart = start;
+        final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+        int n;
+        while ((n = channel.read(byteBuffer, position)) > 0) {
+            for (int i = 0; i < n; ++i) {
+                final byte b = buffer[i];
+                if (recordLength == record.length) {
+                    record = Arrays.copyOf(record, recordLength * 2);
+                }
+                record[recordLength++] = b;
+                if (b == quote) {
+                    quoted = !quoted;
+                } else if (b == endOfLine && !quoted) {
+                    if (idColumn < 0) {
+                        if (!readColumns(record, recordLength)) {
+                            logger.warn("No {} and {} columns in {}", idColumnName, timestampColumnName, dataFile);
+                        }
+                    } else {
+                        indexRecord(recordStart, record, recordLength);
+                    }
+                    recordStart = position + i + 1;
+                    recordLength = 0;
+                }
+            }
+            position += n;
+            byteBuffer.clear();
+        }
+        // a trailing incomplete record is not indexed, and will be completed by the writer
+        end = recordStart;
+        if (index.size() > previousCount) {
+            logger.debug("Indexed {} records of {}", index.size() - previousCount, dataFile);
+        }
+        index.flush();
+    }
+
+    /**
+     * Finds the identifier and timestamp columns in the header of the audit file.
+     *
+     * @return {@code false} if either column is missing, in which case no record can be looked up by that column
+     */
+    private boolean readColumns(final byte[] header, final int length) {
+        final String[] names = cells(header, length, Integer.MAX_VALUE);
+        idColumn = names.length;
+        timestampColumn = names.length;
+        for (int i = 0; i < names.length; ++i) {
+            if (idColumnName.equals(names[i])) {
+                idColumn = i;
+            } else if (timestampColumnName.equals(names[i])) {
+                timestampColumn = i;
+            }
+        }
+        return idColumn < names.length && timestampColumn < names.length;
+    }
+
+    private void indexRecord(final long offset, final byte[] record, final int length) {
+        final String[] cells = cells(record, length, Math.max(idColumn, timestampColumn) + 1);
+        final String[] keys = new String[] { idColumn < cells.length ? cells[idColumn] : null };
+        final String timestamp = timestampColumn < cells.length ? cells[timestampColumn] : null;
+        index.add(offset, keys, timestamp);
+        index.write(offset, keys, timestamp);
+    }
+
+    /**
+     * Splits a record into its first cells, removing the quotes around them and unescaping the quotes within them.
+     * Empty cells, which are read as {@code null} by the handler, are {@code null}.
+     */
+    private String[] cells(final byte[] record, final int length, final int maxCells) {
+        final List<String> cells = new ArrayList<>();
+        final ByteArrayOutputStream cell = new ByteArrayOutputStream();
+        boolean quoted = false;
+        int i = 0;
+        while (i < length && cells.size() < maxCells) {
+            final byte b = record[i++];
+            if (quoted) {
+                if (b != quote) {
+                    cell.write(b);
+                } else if (i < length && record[i] == quote) {
+                    cell.write(quote);
+                    ++i;
+                } else {
+                    quoted = false;
+                }
+            } else if (b == quote) {
+                quoted = true;
+            } else if (b == delimiter || b == endOfLine) {
+                cells.add(cell.size() == 0 ? null : new String(cell.toByteArray(), charset));
+                cell.reset();
+            } else if (b != '\r' && b != '\n') {
+                cell.write(b);
+            }
+        }
+        return cells.toArray(new String[cells.size()]);
+    }
+
+    /**
+     * Records of the audit file selected by a query, which remain readable after the audit file is rotated.
+     */
+    static final class Selection implements Closeable {
+        private final FileChannel channel;
+        private final EventIndex.Candidates candidates;
+        private final long end;
+
+        private Selection(final FileChannel channel, final EventIndex.Candidates candidates, final long end) {
+            this.channel = channel;
+            this.candidates = candidates;
+            this.end = end;
+        }
+
+        /**
+         * Checks whether the query could not use the index, and all records must be scanned.
+         *
+         * @return {@code true} if all records are selected
+         */
+        boolean isFullScan() {
+            return candidates.isFullScan();
+        }
+
+        /**
+         * Gets the number of records of the audit file, whether selected or not.
+         *
+         * @return Number of records
+         */
+        int getCount() {
+            return candidates.getCount();
+        }
+
+        /**
+         * Gets the number of selected records.
+         *
+         * @return Number of selected records
+         */
+        int size() {
+            return candidates.size();
+        }
+
+        /**
+         * Gets the next selected record, in file order.
+         *
+         * @param fromEntry First entry to consider
+         * @return Selected entry, or {@code -1} if there are no more
+         */
+        int next(final int fromEntry) {
+            return candidates.next(fromEntry);
+        }
+
+        /**
+         * Opens a stream over the bytes of the selected records within a range of entries, without the header of
+         * the audit file, so that it can be parsed as CSV. Several streams can be read concurrently.
+         *
+         * @param fromEntry First entry of the range
+         * @param toEntry Entry following the range
+         * @return CSV bytes of the selected records
+         */
+        InputStream open(final int fromEntry, final int toEntry) {
+            return new RecordInputStream(fromEntry, Math.min(toEntry, candidates.getCount()));
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+
+        private long start(final int entry) {
+            return entry < candidates.getCount() ? candidates.offset(entry) : end;
+        }
+
+        /**
+         * Reads runs of consecutive selected records, with positional reads so that the channel can be shared.
+         */
+        private final class RecordInputStream extends InputStream {
+            private final int toEntry;
+            private final ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+            private int nextEntry;
+            private long position;
+            private long runEnd;
+
+            private RecordInputStream(final int fromEntry, final int toEntry) {
+                this.toEntry = toEntry;
+                this.nextEntry = fromEntry;
+                buffer.flip();
+            }
+
+            @Override
+            public int read() throws IOException {
+                if (!fill()) {
+                    return -1;
+                }
+                return buffer.get() & 0xff;
+            }
+
+            @Override
+            public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+                if (length == 0) {
+                    return 0;
+                }
+                if (!fill()) {
+                    return -1;
+                }
+                final int n = Math.min(length, buffer.remaining());
+                buffer.get(bytes, offset, n);
+                return n;
+            }
+
+            private boolean fill() throws IOException {
+                if (buffer.hasRemaining()) {
+                    return true;
+                }
+                if (position == runEnd && !nextRun()) {
+                    return false;
+                }
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), runEnd - position));
+                while (buffer.hasRemaining()) {
+                    final int n = channel.read(buffer, position + buffer.position());
+                    if (n < 0) {
+                        throw new EOFException("Audit file truncated: " + position);
+                    }
+                }
+                position += buffer.position();
+                buffer.flip();
+                return true;
+            }
+
+            private boolean nextRun() {
+                final int first = nextEntry < toEntry ? next(nextEntry) : -1;
+                if (first < 0 || first >= toEntry) {
+                    nextEntry = toEntry;
+                    return false;
+                }
+                int last = first;
+                while (last + 1 < toEntry && next(last + 1) == last + 1) {
+                    ++last;
+                }
+                nextEntry = last + 1;
+                position = start(first);
+                runEnd = start(last + 1);
+                return true;
+            }
+        }
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 package org.forgerock.audit.handlers.csv;
 
@@ -217,6 +218,9 @@ class SecureCsvWriter implements CsvWriter, RolloverLifecycleHook {
         if (config.getBuffering().isEnabled()) {
             logger.warn("Secure CSV logging does not support buffering. Buffering config will be ignored.");
         }
+        if (config.getGroupCommit().isEnabled()) {
+            logger.warn("Secure CSV logging does not support group commit. Group commit config will be ignored.");
+        }
         return new TextWriterAdapter(textWriter);
     }
 
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 package org.forgerock.audit.handlers.csv;
 
@@ -25,8 +26,11 @@ import java.io.IOException;
 import java.io.Writer;
 import java.util.Map;
 
+import org.forgerock.audit.events.handlers.FileBasedEventHandlerConfiguration.GroupCommit;
 import org.forgerock.audit.events.handlers.writers.AsynchronousTextWriter;
+import org.forgerock.audit.events.handlers.writers.GroupCommitTextWriter;
 import org.forgerock.audit.events.handlers.writers.RotatableWriter;
+import org.forgerock.audit.events.handlers.writers.SyncableTextWriter;
 import org.forgerock.audit.events.handlers.writers.TextWriter;
 import org.forgerock.audit.events.handlers.writers.TextWriterAdapter;
 import org.forgerock.audit.handlers.csv.CsvAuditEventHandlerConfiguration.EventBufferingConfiguration;
@@ -87,17 +91,26 @@ class StandardCsvWriter implements CsvWriter {
 
     private Writer constructWriter(File csvFile, boolean append, CsvAuditEventHandlerConfiguration config)
             throws IOException {
-        TextWriter textWriter;
+        SyncableTextWriter textWriter;
         if (config.getFileRotation().isRotationEnabled()) {
             rotatableWriter = new RotatableWriter(csvFile, config, append);
             textWriter = rotatableWriter;
         } else {
-            textWriter = new TextWriter.Stream(new FileOutputStream(csvFile, append));
+            textWriter = new TextWriter.FileStream(new FileOutputStream(csvFile, append));
         }
 
+        final GroupCommit groupCommit = config.getGroupCommit();
+        if (groupCommit.isEnabled()) {
+            if (config.getBuffering().isEnabled()) {
+                logger.warn("CSV group commit does not support buffering. Buffering config will be ignored.");
+            }
+            return new TextWriterAdapter(new GroupCommitTextWriter("CsvHandler", groupCommit.getMaxBatchSize(),
+                    groupCommit.getMaxBatchDelayDuration(), textWriter));
+        }
         if (config.getBuffering().isEnabled()) {
             EventBufferingConfiguration bufferConfig = config.getBuffering();
-            textWriter = new AsynchronousTextWriter("CsvHandler", bufferConfig.isAutoFlush(), textWriter);
+            return new TextWriterAdapter(
+                    new AsynchronousTextWriter("CsvHandler", bufferConfig.isAutoFlush(), textWriter));
         }
         return new TextWriterAdapter(textWriter);
     }
@@ -12,7 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
- * Portions Copyright 2018 Wren Security.
+ * Portions Copyright 2018-2026 Wren Security.
  */
 
 package org.forgerock.audit.handlers.csv;
@@ -33,6 +33,7 @@ import java.io.File;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -50,6 +51,8 @@ import org.forgerock.audit.providers.KeyStoreHandlerProvider;
 import org.forgerock.audit.secure.JcaKeyStoreHandler;
 import org.forgerock.audit.secure.KeyStoreHandler;
 import org.forgerock.audit.secure.KeyStoreHandlerDecorator;
+import org.forgerock.audit.secure.KeyStoreSecureStorage;
+import org.forgerock.audit.secure.SecureStorage;
 import org.forgerock.json.JsonValue;
 import org.forgerock.json.resource.ActionRequest;
 import org.forgerock.json.resource.CreateRequest;
@@ -64,9 +67,11 @@ import org.forgerock.json.resource.ResourceResponse;
 import org.forgerock.services.context.Context;
 import org.forgerock.services.context.RootContext;
 import org.forgerock.util.Utils;
+import org.forgerock.util.encode.Base64;
 import org.forgerock.util.promise.Promise;
 import org.forgerock.util.promise.ResultHandler;
 import org.mockito.ArgumentCaptor;
+import org.supercsv.prefs.CsvPreference;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
@@ -144,6 +149,41 @@ public class CsvAuditEventHandlerTest {
         }
     }
 
+    @DataProvider
+    private Object[][] groupCommitData() {
+        return new Object[][] {
+                // label, is rotation enabled ?
+                { "Group commit to a file", false },
+                { "Group commit to a rotatable file", true }
+        };
+    }
+
+    @Test(dataProvider = "groupCommitData")
+    public void testCreatingAuditLogEntryWithGroupCommit(String label, boolean isRotationEnabled) throws Exception {
+        //given
+        final Path logDirectory = Files.createTempDirectory("CsvAuditEventHandlerTest");
+        logDirectory.toFile().deleteOnExit();
+        final CsvAuditEventHandlerBuilder builder = csvAuditEventHandler().loggingTo(logDirectory);
+        if (isRotationEnabled) {
+            builder.withRotationEnabled();
+        }
+        final CsvAuditEventHandler csvHandler = builder.withGroupCommitEnabled().build();
+        final Context context = new RootContext();
+        try {
+
+            // when
+            assertThatPromise(csvHandler.publishEvent(context, "access", buildEvent(1))).succeeded();
+            assertThatPromise(csvHandler.publishEvent(context, "access", buildEvent(2))).succeeded();
+
+            // then the events are written once published, without waiting for a flush
+            final String expectedContent = "\"_id\",\"timestamp\",\"transactionId\"\n"
+                    + "\"_id1\",\"timestamp\",\"transactionId-X\"\n" + "\"_id2\",\"timestamp\",\"transactionId-X\"";
+            assertThat(logDirectory.resolve("access.csv").toFile()).hasContent(expectedContent);
+        } finally {
+            csvHandler.shutdown();
+        }
+    }
+
     @Test
     public void testCreatingAuditLogEntry() throws Exception {
         //given
@@ -242,6 +282,123 @@ public class CsvAuditEventHandlerTest {
         assertResourceEquals(resource, event);
     }
 
+    @Test
+    public void testQueryIncludesRotatedFiles() throws Exception {
+        //given
+        final Path logDirectory = Files.createTempDirectory("CsvAuditEventHandlerTest");
+        logDirectory.toFile().deleteOnExit();
+        final CsvAuditEventHandler csvHandler = csvAuditEventHandler().loggingTo(logDirectory).build();
+        final Context context = new RootContext();
+        try {
+            csvHandler.publishEvent(context, "access", buildEvent(1));
+            csvHandler.handleAction(context, "access", Requests.newActionRequest("access", ROTATE_FILE_ACTION_NAME));
+            csvHandler.publishEvent(context, "access", buildEvent(2));
+
+            //when
+            final List<String> ids = queryIds(csvHandler, "true", Integer.MAX_VALUE);
+            final Promise<ResourceResponse, ResourceException> promise =
+                    csvHandler.readEvent(context, "access", "_id1");
+
+            //then
+            assertThat(ids).containsExactly("_id1", "_id2");
+            assertThatPromise(promise).succeeded();
+            assertThat(promise.get().getId()).isEqualTo("_id1");
+        } finally {
+            csvHandler.shutdown();
+        }
+    }
+
+    @Test
+    public void testQueryStreamsResultsInFileOrder() throws Exception {
+        //given
+        final Path logDirectory = Files.createTempDirectory("CsvAuditEventHandlerTest");
+        logDirectory.toFile().deleteOnExit();
+        final CsvAuditEventHandler csvHandler = csvAuditEventHandler().loggingTo(logDirectory).build();
+        final Context context = new RootContext();
+        final int eventCount = 3 * CsvAuditEventHandler.SCAN_CHUNK_SIZE + 1;
+        try {
+            for (int i = 0; i < eventCount; i++) {
+                csvHandler.publishEvent(context, "access", buildEvent(i));
+            }
+
+            //when
+            final List<String> ids = queryIds(csvHandler, "/transactionId eq \"transactionId-X\"", Integer.MAX_VALUE);
+            final List<String> firstIds = queryIds(csvHandler, "true", 10);
+
+            //then
+            assertThat(ids).hasSize(eventCount);
+            for (int i = 0; i < eventCount; i++) {
+                assertThat(ids.get(i)).isEqualTo("_id" + i);
+            }
+            assertThat(firstIds).hasSize(10).startsWith("_id0").endsWith("_id9");
+        } finally {
+            csvHandler.shutdown();
+        }
+    }
+
+    @Test
+    public void testQueryOnSecureAuditLogKeepsItVerifiable() throws Exception {
+        //given
+        final Path logDirectory = Files.createTempDirectory("CsvAuditEventHandlerTest");
+        logDirectory.toFile().deleteOnExit();
+        final KeyStoreHandlerDecorator keyStoreHandler = new KeyStoreHandlerDecorator(
+                new JcaKeyStoreHandler(CsvSecureConstants.KEYSTORE_TYPE, KEYSTORE_FILENAME, "password"));
+        final DefaultKeyStoreHandlerProvider provider = new DefaultKeyStoreHandlerProvider();
+        provider.registerKeyStoreHandler("csvSecure", keyStoreHandler);
+        final CsvAuditEventHandlerBuilder builder = csvAuditEventHandler().loggingTo(logDirectory)
+                .withSecureLoggingEnabled();
+        builder.keystoreHandlerProvider = provider;
+        final CsvAuditEventHandler csvHandler = builder.build();
+        final Context context = new RootContext();
+        final List<String> ids;
+        final Promise<ResourceResponse, ResourceException> promise;
+        try {
+            for (int i = 0; i < 3; i++) {
+                csvHandler.publishEvent(context, "access", buildEvent(i));
+            }
+
+            //when
+            ids = queryIds(csvHandler, "/_id eq \"_id1\"", Integer.MAX_VALUE);
+            promise = csvHandler.readEvent(context, "access", "_id2");
+        } finally {
+            csvHandler.shutdown();
+        }
+
+        //then
+        assertThat(ids).containsExactly("_id1");
+        assertThatPromise(promise).succeeded();
+        final File csvFile = logDirectory.resolve(CsvAuditEventHandler.SECURE_CSV_FILENAME_PREFIX + "access.csv")
+                .toFile();
+        final String password = Base64.encode(
+                keyStoreHandler.readSecretKeyFromKeyStore(CsvSecureConstants.ENTRY_PASSWORD).getEncoded());
+        final SecureStorage secureStorage = new KeyStoreSecureStorage(
+                new JcaKeyStoreHandler(CsvSecureConstants.KEYSTORE_TYPE, csvFile.getPath() + ".keystore", password),
+                keyStoreHandler.readPublicKeyFromKeyStore(KeyStoreSecureStorage.ENTRY_SIGNATURE));
+        assertThat(new CsvSecureVerifier(csvFile, CsvPreference.EXCEL_PREFERENCE, secureStorage).verify()
+                .hasPassedVerification()).isTrue();
+    }
+
+    /**
+     * Queries the identifiers of the access events matching a filter, stopping the query after the given number of
+     * results.
+     */
+    private List<String> queryIds(final CsvAuditEventHandler csvHandler, final String queryFilter,
+            final int maxResults) throws Exception {
+        final List<String> ids = new ArrayList<>();
+        final QueryRequest queryRequest = Requests.newQueryRequest("access")
+                .setQueryFilter(QueryFilters.parse(queryFilter));
+        final Promise<QueryResponse, ResourceException> promise = csvHandler.queryEvents(new RootContext(), "access",
+                queryRequest, new QueryResourceHandler() {
+                    @Override
+                    public boolean handleResource(final ResourceResponse resource) {
+                        ids.add(resource.getId());
+                        return ids.size() < maxResults;
+                    }
+                });
+        assertThatPromise(promise).succeeded();
+        return ids;
+    }
+
     private CreateRequest makeCreateRequest() {
         return Requests.newCreateRequest("access", buildEvent());
     }
@@ -493,6 +650,11 @@ public class CsvAuditEventHandlerTest {
             return this;
         }
 
+        private CsvAuditEventHandlerBuilder withGroupCommitEnabled() {
+            config.getGroupCommit().setEnabled(true);
+            return this;
+        }
+
         private CsvAuditEventHandlerBuilder withRotationEnabled() {
             FileRotation fileRotation = new FileRotation();
             fileRotation.setRotationEnabled(true);
@@ -0,0 +1,247 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.audit.handlers.csv;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.util.test.FileUtils.deleteRecursively;
+
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.audit.events.handlers.index.EventIndex;
+import org.forgerock.json.resource.QueryFilters;
+import org.supercsv.io.CsvMapReader;
+import org.supercsv.prefs.CsvPreference;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class CsvFileIndexTest {
+
+    private static final int EVENT_COUNT = 2_000;
+    private static final String HEADER = "\"_id\",\"timestamp\",\"transactionId\"\n";
+    private static final String[] COLUMNS = { "_id", "timestamp", "transactionId" };
+
+    private Path logDirectoryPath;
+    private Path dataFile;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        logDirectoryPath = Files.createTempDirectory(CsvFileIndexTest.class.getSimpleName());
+        dataFile = logDirectoryPath.resolve("access.csv");
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        deleteRecursively(logDirectoryPath);
+    }
+
+    @Test
+    public void testSelectById() throws Exception {
+        // given
+        final CsvFileIndex index = newIndex();
+        writeEvents(0, EVENT_COUNT);
+
+        // when
+        final CsvFileIndex.Selection selection = index.select(QueryFilters.parse("/_id eq \"ID-0000001234\""));
+
+        // then
+        assertThat(selection.isFullScan()).isFalse();
+        assertThat(ids(selection)).containsExactly("id-0000001234");
+    }
+
+    @Test
+    public void testSelectTimestampRange() throws Exception {
+        // given
+        final CsvFileIndex index = newIndex();
+        writeEvents(0, EVENT_COUNT);
+
+        // when
+        final CsvFileIndex.Selection selection = index.select(QueryFilters.parse(
+                "/timestamp ge \"ts-0000001000\" and /timestamp lt \"ts-0000001010\""));
+        final CsvFileIndex.Selection outside = index.select(QueryFilters.parse("/timestamp gt \"ts-9\""));
+
+        // then
+        assertThat(selection.size()).isLessThanOrEqualTo(2 * EventIndex.TIMESTAMP_BLOCK_SIZE);
+        assertThat(ids(selection)).contains("id-0000001000", "id-0000001009");
+        assertThat(outside.isFullScan()).isFalse();
+        assertThat(outside.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testFullScanForUnindexedFilters() throws Exception {
+        // given
+        final CsvFileIndex index = newIndex();
+        writeEvents(0, EVENT_COUNT);
+
+        // when
+        final CsvFileIndex.Selection contains = index.select(QueryFilters.parse("/_id co \"0000001\""));
+        final CsvFileIndex.Selection or = index.select(QueryFilters.parse(
+                "/_id eq \"id-0000000001\" or /transactionId eq \"tx\""));
+
+        // then
+        assertThat(contains.isFullScan()).isTrue();
+        assertThat(or.isFullScan()).isTrue();
+        assertThat(ids(or)).hasSize(EVENT_COUNT);
+    }
+
+    @Test
+    public void testSelectRecordsWithQuotedEndOfLines() throws Exception {
+        // given
+        final CsvFileIndex index = newIndex();
+        write(HEADER,
+                "\"id-1\",\"ts-1\",\"multi\nline \"\"quoted\"\"\"\n",
+                "\"\",\"ts-2\",\"no id\"\n",
+                "\"id-3\",\"ts-3\",\"tx\"\n");
+
+        // when
+        final CsvFileIndex.Selection selection = index.select(QueryFilters.parse("/_id eq \"id-3\""));
+
+        // then
+        assertThat(selection.getCount()).isEqualTo(3);
+        assertThat(ids(selection)).containsExactly(null, "id-3");
+        assertThat(read(index.select(QueryFilters.parse("/_id eq \"id-1\""))).get(0).get("transactionId"))
+                .isEqualTo("multi\nline \"quoted\"");
+    }
+
+    @Test
+    public void testIgnoreIncompleteRecordUntilWritten() throws Exception {
+        // given
+        final CsvFileIndex index = newIndex();
+        writeEvents(0, 10);
+        write("\"id-0000000010\",\"ts-00");
+
+        // when
+        final int countBefore = index.select(null).getCount();
+        write("00000010\",\"tx\"\n");
+        final int countAfter = index.select(null).getCount();
+
+        // then
+        assertThat(countBefore).isEqualTo(10);
+        assertThat(countAfter).isEqualTo(11);
+        assertThat(ids(index.select(QueryFilters.parse("/timestamp eq \"ts-0000000010\""))))
+                .contains("id-0000000010");
+    }
+
+    @Test
+    public void testReloadFromSidecar() throws Exception {
+        // given
+        final CsvFileIndex index = newIndex();
+        writeEvents(0, EVENT_COUNT);
+        index.select(null).close();
+        index.close();
+        final long sidecarLength = Files.size(index.getIndexFile());
+        writeEvents(EVENT_COUNT, EVENT_COUNT + 10);
+
+        // when
+        final CsvFileIndex reloaded = newIndex();
+        final CsvFileIndex.Selection selection = reloaded.select(QueryFilters.parse("/_id eq \"id-0000000042\""));
+
+        // then
+        assertThat(Files.size(reloaded.getIndexFile())).isGreaterThan(sidecarLength);
+        assertThat(ids(selection)).containsExactly("id-0000000042");
+        assertThat(selection.getCount()).isEqualTo(EVENT_COUNT + 10);
+        reloaded.close();
+    }
+
+    @Test
+    public void testRebuildIndexOfReplacedFile() throws Exception {
+        // given
+        final CsvFileIndex index = newIndex();
+        writeEvents(0, 100);
+        index.select(null).close();
+        Files.move(dataFile, logDirectoryPath.resolve("access.csv-rotated"));
+        writeEvents(500, 600);
+
+        // when
+        final CsvFileIndex.Selection selection = index.select(QueryFilters.parse("/_id eq \"id-0000000550\""));
+        final CsvFileIndex reloaded = newIndex();
+
+        // then
+        assertThat(ids(selection)).containsExactly("id-0000000550");
+        assertThat(reloaded.select(QueryFilters.parse("/_id eq \"id-0000000050\"")).size()).isEqualTo(0);
+        reloaded.close();
+        index.close();
+    }
+
+    @Test
+    public void testSelectionIsReadableAfterRotation() throws Exception {
+        // given
+        final CsvFileIndex index = newIndex();
+        writeEvents(0, 10);
+        final CsvFileIndex.Selection selection = index.select(null);
+
+        // when
+        Files.move(dataFile, logDirectoryPath.resolve("access.csv-rotated"));
+        writeEvents(10, 15);
+
+        // then
+        assertThat(ids(selection)).hasSize(10).startsWith("id-0000000000");
+        assertThat(ids(index.select(null))).hasSize(5).startsWith("id-0000000010");
+        index.close();
+    }
+
+    private CsvFileIndex newIndex() {
+        return new CsvFileIndex(dataFile, UTF_8, '"', ',', '\n', "_id", "timestamp");
+    }
+
+    private void writeEvents(final int from, final int to) throws Exception {
+        final StringBuilder events = new StringBuilder();
+        if (!Files.exists(dataFile)) {
+            events.append(HEADER);
+        }
+        for (int i = from; i < to; ++i) {
+            events.append(String.format("\"id-%010d\",\"ts-%010d\",\"tx\"\n", i, i));
+        }
+        write(events.toString());
+    }
+
+    private void write(final String... records) throws Exception {
+        for (final String record : records) {
+            Files.write(dataFile, record.getBytes(UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+    private static List<Map<String, String>> read(final CsvFileIndex.Selection selection) throws Exception {
+        final List<Map<String, String>> records = new ArrayList<>();
+        try (CsvMapReader reader = new CsvMapReader(
+                new InputStreamReader(selection.open(0, Integer.MAX_VALUE), UTF_8), CsvPreference.STANDARD_PREFERENCE)) {
+            Map<String, String> record;
+            while ((record = reader.read(COLUMNS)) != null) {
+                records.add(record);
+            }
+        } finally {
+            selection.close();
+        }
+        return records;
+    }
+
+    private static List<String> ids(final CsvFileIndex.Selection selection) throws Exception {
+        final List<String> ids = new ArrayList<>();
+        for (final Map<String, String> record : read(selection)) {
+            ids.add(record.get("_id"));
+        }
+        return ids;
+    }
+}
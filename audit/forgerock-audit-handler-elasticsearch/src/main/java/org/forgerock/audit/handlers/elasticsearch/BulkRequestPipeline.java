@@ -0,0 +1,382 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.audit.handlers.elasticsearch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.forgerock.audit.util.ElasticsearchUtil.OBJECT_MAPPER;
+import static org.forgerock.json.JsonValue.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.forgerock.audit.events.handlers.buffering.BatchException;
+import org.forgerock.audit.handlers.elasticsearch.ElasticsearchAuditEventHandlerConfiguration.EventBufferingConfiguration;
+import org.forgerock.http.Client;
+import org.forgerock.http.header.ContentEncodingHeader;
+import org.forgerock.http.header.ContentTypeHeader;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.json.JsonValue;
+import org.forgerock.util.Function;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.promise.Promises;
+import org.forgerock.util.promise.ResultHandler;
+import org.forgerock.util.promise.RuntimeExceptionHandler;
+import org.forgerock.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends <a href="https://www.elastic.co/guide/en/elasticsearch/reference/current/docs-bulk.html">Bulk API</a>
+ * payloads to Elasticsearch, with a bounded number of concurrent requests.
+ * <p>
+ * Each payload is split into requests of at most a target size, and {@link #publish(String)} blocks while the
+ * maximum number of requests are in flight, so that events accumulate in the buffer of the caller. The items of a
+ * request which fail with a transient error (HTTP status 429 or 5xx), or which are missing from the response, are
+ * sent again, with an exponential backoff, whereas the items which Elasticsearch rejects are reported as failed. The
+ * target request size is halved whenever Elasticsearch is slower than the target latency or rejects requests, and
+ * grows back by a quarter otherwise.
+ */
+final class BulkRequestPipeline {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkRequestPipeline.class);
+
+    private static final String POST = "POST";
+    private static final String GZIP = "gzip";
+    private static final String ERRORS = "errors";
+    private static final String ITEMS = "items";
+    private static final String STATUS = "status";
+
+    /** Smallest target size of a request, in bytes, unless the maximum request size is smaller. */
+    private static final int MIN_REQUEST_SIZE = 64 * 1024;
+    /** Longest delay between two retries of the same items. */
+    private static final long MAX_RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(30L);
+    /** Longest time to wait for in-flight requests on close. */
+    private static final long CLOSE_TIMEOUT_MINUTES = 1L;
+
+    private final Client client;
+    private final String bulkUri;
+    private final String authorizationHeaderValue;
+    private final int maxInFlightRequests;
+    private final Semaphore inFlightRequests;
+    private final int maxRetries;
+    private final long retryDelayMillis;
+    private final int maxRequestSize;
+    private final int minRequestSize;
+    private final long targetLatencyNanos;
+    private final boolean compressRequests;
+    private final ScheduledExecutorService retryExecutor;
+    /** Current target size of a request, in bytes, adjusted to the observed latency. */
+    private volatile int targetRequestSize;
+
+    /**
+     * Creates a {@code BulkRequestPipeline}.
+     *
+     * @param client HTTP client
+     * @param bulkUri URI of the Bulk API
+     * @param authorizationHeaderValue Value of the {@code Authorization} header, or {@code null}
+     * @param configuration Event buffering configuration
+     */
+    BulkRequestPipeline(final Client client, final String bulkUri, final String authorizationHeaderValue,
+            final EventBufferingConfiguration configuration) {
+        this.client = client;
+        this.bulkUri = bulkUri;
+        this.authorizationHeaderValue = authorizationHeaderValue;
+        maxInFlightRequests = Math.max(1, configuration.getMaxInFlightRequests());
+        inFlightRequests = new Semaphore(maxInFlightRequests);
+        maxRetries = Math.max(0, configuration.getMaxRetries());
+        retryDelayMillis = toMillis(configuration.getRetryDelay(),
+                EventBufferingConfiguration.DEFAULT_RETRY_DELAY);
+        maxRequestSize = configuration.getMaxRequestSize() > 0
+                ? configuration.getMaxRequestSize()
+                : EventBufferingConfiguration.DEFAULT_MAX_REQUEST_SIZE;
+        minRequestSize = Math.min(MIN_REQUEST_SIZE, maxRequestSize);
+        targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(toMillis(configuration.getTargetRequestLatency(),
+                EventBufferingConfiguration.DEFAULT_TARGET_REQUEST_LATENCY));
+        compressRequests = configuration.isCompressRequests();
+        targetRequestSize = maxRequestSize;
+        retryExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "ElasticsearchBulkRetry");
+                // retries are awaited on close, so they must not keep the JVM alive when the handler is not closed
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    private static long toMillis(final String duration, final String defaultDuration) {
+        return Duration.duration(duration == null || duration.isEmpty() ? defaultDuration : duration)
+                .to(TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends a Bulk API payload, as one or more requests, blocking while the maximum number of requests are in
+     * flight.
+     *
+     * @param payload Bulk API payload, made of an action line and a source line per event
+     * @return Promise completed once all the events are indexed, or failed with a {@link BatchException} if some
+     * of the events could not be indexed
+     */
+    Promise<Void, BatchException> publish(final String payload) {
+        final List<String> items = splitItems(payload);
+        final List<Promise<Void, BatchException>> requests = new ArrayList<>();
+        int from = 0;
+        while (from < items.size()) {
+            final int requestSize = targetRequestSize;
+            int to = from;
+            int size = 0;
+            do {
+                size += items.get(to++).length();
+            } while (to < items.size() && size + items.get(to).length() <= requestSize);
+            inFlightRequests.acquireUninterruptibly();
+            final BulkRequest request = new BulkRequest(new ArrayList<>(items.subList(from, to)));
+            request.send();
+            requests.add(request.promise);
+            from = to;
+        }
+        return Promises.when(requests).then(new Function<List<Void>, Void, BatchException>() {
+            @Override
+            public Void apply(final List<Void> value) {
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Waits for the in-flight requests, including their retries, to complete, then releases the retry thread.
+     */
+    void close() {
+        boolean interrupted = false;
+        try {
+            if (!inFlightRequests.tryAcquire(maxInFlightRequests, CLOSE_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                LOGGER.warn("Elasticsearch bulk requests still in flight after {} minute(s)", CLOSE_TIMEOUT_MINUTES);
+            } else {
+                inFlightRequests.release(maxInFlightRequests);
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+        retryExecutor.shutdownNow();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Splits a Bulk API payload into items, each made of an action line and a source line, including their
+     * trailing newlines.
+     */
+    private static List<String> splitItems(final String payload) {
+        final List<String> items = new ArrayList<>();
+        int start = 0;
+        while (start < payload.length()) {
+            final int actionEnd = payload.indexOf('\n', start);
+            final int sourceEnd = actionEnd == -1 ? -1 : payload.indexOf('\n', actionEnd + 1);
+            final int end = sourceEnd == -1 ? payload.length() : sourceEnd + 1;
+            items.add(payload.substring(start, end));
+            start = end;
+        }
+        return items;
+    }
+
+    private static boolean isTransient(final int status) {
+        return status == Status.TOO_MANY_REQUESTS.getCode() || status >= 500;
+    }
+
+    /**
+     * Adjusts the target request size to the latency of a request: halves it if the request was slow or throttled,
+     * else grows it by a quarter.
+     */
+    private synchronized void adjustRequestSize(final long latencyNanos, final boolean throttled) {
+        if (throttled || latencyNanos > targetLatencyNanos) {
+            targetRequestSize = Math.max(minRequestSize, targetRequestSize / 2);
+        } else if (targetRequestSize < maxRequestSize) {
+            targetRequestSize = (int) Math.min(maxRequestSize, targetRequestSize + targetRequestSize / 4L);
+        }
+    }
+
+    /**
+     * A request holding a subset of the items of a payload, which is sent until all its items are indexed, or
+     * failed, or out of retries, or until the client fails unexpectedly. The request holds an in-flight permit until
+     * then.
+     */
+    private final class BulkRequest implements ResultHandler<Response>, RuntimeExceptionHandler {
+
+        private final PromiseImpl<Void, BatchException> promise = PromiseImpl.create();
+        private final List<Object> failedItems = new ArrayList<>();
+        private List<String> items;
+        private int retries;
+        private long sentAt;
+
+        private BulkRequest(final List<String> items) {
+            this.items = items;
+        }
+
+        private void send() {
+            final Request request;
+            try {
+                request = newRequest();
+            } catch (URISyntaxException | IOException e) {
+                complete(new BatchException("Unable to create Elasticsearch batch index request", e));
+                return;
+            }
+            sentAt = System.nanoTime();
+            final Promise<Response, NeverThrowsException> response;
+            try {
+                response = client.send(request);
+            } catch (RuntimeException e) {
+                complete(new BatchException("Unexpected error while publishing batch", e));
+                return;
+            }
+            response.thenOnResult(this).thenOnRuntimeException(this);
+        }
+
+        private Request newRequest() throws URISyntaxException, IOException {
+            final StringBuilder payload = new StringBuilder();
+            for (final String item : items) {
+                payload.append(item);
+            }
+            final Request request = new Request();
+            request.setMethod(POST);
+            request.setUri(bulkUri);
+            request.getHeaders().put(ContentTypeHeader.NAME, "application/json; charset=UTF-8");
+            if (compressRequests) {
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length() / 4);
+                try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+                    gzip.write(payload.toString().getBytes(UTF_8));
+                }
+                request.getHeaders().put(ContentEncodingHeader.NAME, GZIP);
+                request.setEntity(bytes.toByteArray());
+            } else {
+                request.setEntity(payload.toString());
+            }
+            if (authorizationHeaderValue != null) {
+                request.getHeaders().put("Authorization", authorizationHeaderValue);
+            }
+            return request;
+        }
+
+        @Override
+        public void handleResult(final Response response) {
+            try {
+                final int status = response.getStatus().getCode();
+                adjustRequestSize(System.nanoTime() - sentAt, status == Status.TOO_MANY_REQUESTS.getCode());
+                if (isTransient(status)) {
+                    // the whole request failed, possibly without reaching Elasticsearch
+                    retry(items, "Elasticsearch batch index failed with status " + status);
+                } else if (!response.getStatus().isSuccessful()) {
+                    complete(new BatchException("Elasticsearch batch index failed: " + response.getEntity()));
+                } else {
+                    handleItems(json(response.getEntity().getJson()));
+                }
+            } catch (IOException | RuntimeException e) {
+                complete(new BatchException("Unexpected error while publishing batch", e));
+            } finally {
+                response.close();
+            }
+        }
+
+        @Override
+        public void handleRuntimeException(final RuntimeException exception) {
+            complete(new BatchException("Unexpected error while publishing batch", exception));
+        }
+
+        private void handleItems(final JsonValue responseJson) {
+            // items are in the order of the request, and keyed by their action
+            final JsonValue responseItems = responseJson.get(ITEMS);
+            final int respondedItems = Math.min(responseItems.size(), items.size());
+            if (!responseJson.get(ERRORS).defaultTo(false).asBoolean() && respondedItems == items.size()) {
+                complete(null);
+                return;
+            }
+            final List<String> transientItems = new ArrayList<>();
+            for (int i = 0; i < respondedItems; ++i) {
+                final JsonValue responseItem = responseItems.get(i);
+                final JsonValue item = responseItem.get(responseItem.keys().iterator().next());
+                final int status = item.get(STATUS).asInteger();
+                if (isTransient(status)) {
+                    transientItems.add(items.get(i));
+                } else if (status >= 400) {
+                    failedItems.add(item.getObject());
+                }
+            }
+            // the items missing from the response may not be indexed, and are indexed again by their _id
+            transientItems.addAll(items.subList(respondedItems, items.size()));
+            if (transientItems.isEmpty()) {
+                complete(null);
+            } else {
+                retry(transientItems, transientItems.size() + " Elasticsearch batch index entries failed");
+            }
+        }
+
+        private void retry(final List<String> retryItems, final String message) {
+            if (retries >= maxRetries) {
+                complete(new BatchException(message + " after " + retries + " retries"));
+                return;
+            }
+            final long delay = Math.min(MAX_RETRY_DELAY_MILLIS, retryDelayMillis << Math.min(retries, 20));
+            ++retries;
+            items = retryItems;
+            LOGGER.debug("{}, retrying {} entries in {} ms", message, retryItems.size(), delay);
+            try {
+                retryExecutor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        send();
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                complete(new BatchException(message + ", and the handler is shut down", e));
+            }
+        }
+
+        /**
+         * Completes the request, failing it if some items were rejected, and releases its in-flight permit.
+         *
+         * @param failure Failure of the remaining items, or {@code null}
+         */
+        private void complete(final BatchException failure) {
+            inFlightRequests.release();
+            if (failure != null) {
+                promise.handleException(failure);
+            } else if (!failedItems.isEmpty()) {
+                try {
+                    promise.handleException(new BatchException("One or more Elasticsearch batch index entries failed: "
+                            + OBJECT_MAPPER.writeValueAsString(failedItems)));
+                } catch (IOException e) {
+                    promise.handleException(new BatchException("Unexpected error while publishing batch", e));
+                }
+            } else {
+                promise.handleResult(null);
+            }
+        }
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 package org.forgerock.audit.handlers.elasticsearch;
 
@@ -25,12 +26,9 @@ import static org.forgerock.json.resource.ResourceResponse.FIELD_CONTENT_ID;
 import static org.forgerock.json.resource.Responses.newQueryResponse;
 import static org.forgerock.json.resource.Responses.newResourceResponse;
 import static org.forgerock.util.CloseSilentlyFunction.closeSilently;
-import static org.forgerock.util.promise.Promises.newExceptionPromise;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
-import java.util.List;
 
 import org.forgerock.audit.Audit;
 import org.forgerock.audit.events.EventTopicsMetaData;
@@ -91,7 +89,6 @@ public class ElasticsearchAuditEventHandler extends AuditEventHandlerBase implem
     private static final int DEFAULT_PAGE_SIZE = 10;
     private static final String TOTAL = "total";
     private static final String PUT = "PUT";
-    private static final String POST = "POST";
 
     /**
      * Average number of characters, per event, for batch indexing via Elasticsearch Bulk API. This value
@@ -114,6 +111,7 @@ public class ElasticsearchAuditEventHandler extends AuditEventHandlerBase implem
     private final ElasticsearchAuditEventHandlerConfiguration configuration;
     private final Client client;
     private final BatchPublisher batchIndexer;
+    private final BulkRequestPipeline bulkRequestPipeline;
     private final HttpClientHandler defaultHttpClientHandler;
 
     /**
@@ -143,6 +141,7 @@ public class ElasticsearchAuditEventHandler extends AuditEventHandlerBase implem
 
         final EventBufferingConfiguration bufferConfig = configuration.getBuffering();
         if (bufferConfig.isEnabled()) {
+            bulkRequestPipeline = new BulkRequestPipeline(this.client, bulkUri, basicAuthHeaderValue, bufferConfig);
             final Duration writeInterval =
                     bufferConfig.getWriteInterval() == null || bufferConfig.getWriteInterval().isEmpty()
                             ? null
@@ -155,6 +154,7 @@ public class ElasticsearchAuditEventHandler extends AuditEventHandlerBase implem
                     .autoFlush(ALWAYS_FLUSH_BATCH_QUEUE)
                     .build();
         } else {
+            bulkRequestPipeline = null;
             batchIndexer = null;
         }
     }
@@ -170,6 +170,8 @@ public class ElasticsearchAuditEventHandler extends AuditEventHandlerBase implem
     public void shutdown() throws ResourceException {
         if (batchIndexer != null) {
             batchIndexer.shutdown();
+            // wait for the requests of the flushed batches
+            bulkRequestPipeline.close();
         }
         if (defaultHttpClientHandler != null) {
             try {
@@ -359,54 +361,15 @@ public class ElasticsearchAuditEventHandler extends AuditEventHandlerBase implem
     /**
      * Publishes a <a href="https://www.elastic.co/guide/en/elasticsearch/reference/current/docs-bulk.html">Bulk API</a>
      * payload to Elasticsearch.
+     * <p>
+     * The payload is sent as one or more concurrent requests, whose events are retried if they fail with a transient
+     * error. This method blocks while the configured maximum number of requests are in flight.
      *
      * @param payload Elasticsearch Bulk API payload
      */
     @Override
     public Promise<Void, BatchException> publishBatch(final String payload) {
-        final Request request;
-        try {
-            request = createRequest(POST, buildBulkUri(), payload);
-        } catch (URISyntaxException e) {
-            return newExceptionPromise(new BatchException("Incorrect URI", e));
-        }
-
-        return client.send(request)
-                .then(closeSilently(processBatchResponse()), Responses.<Void, BatchException>noopExceptionFunction());
-    }
-
-    private Function<Response, Void, BatchException> processBatchResponse() {
-        return new Function<Response, Void, BatchException>() {
-            @Override
-            public Void apply(Response response) throws BatchException {
-                try {
-                    if (!response.getStatus().isSuccessful()) {
-                        throw new BatchException("Elasticsearch batch index failed: " + response.getEntity());
-                    } else {
-                        final JsonValue responseJson = json(response.getEntity().getJson());
-                        if (responseJson.get("errors").asBoolean()) {
-                            // one or more batch index operations failed, so log failures
-                            final JsonValue items = responseJson.get("items");
-                            final int n = items.size();
-                            final List<Object> failureItems = new ArrayList<>(n);
-                            for (int i = 0; i < n; ++i) {
-                                final JsonValue item = items.get(i).get("index");
-                                final Integer status = item.get("status").asInteger();
-                                if (status >= 400) {
-                                    failureItems.add(item);
-                                }
-                            }
-                            final String message = "One or more Elasticsearch batch index entries failed: "
-                                    + OBJECT_MAPPER.writeValueAsString(failureItems);
-                            throw new BatchException(message);
-                        }
-                    }
-                } catch (IOException e) {
-                    throw new BatchException("Unexpected error while publishing batch", e);
-                }
-                return null;
-            }
-        };
+        return bulkRequestPipeline.publish(payload);
     }
 
     /**
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 package org.forgerock.audit.handlers.elasticsearch;
 
@@ -41,7 +42,13 @@ import com.fasterxml.jackson.annotation.JsonPropertyDescription;
  *      "enabled" : true,
  *      "maxSize" : 10000,
  *      "writeInterval" : "250 millis",
- *      "maxBatchedEvents" : 500
+ *      "maxBatchedEvents" : 500,
+ *      "maxInFlightRequests" : 2,
+ *      "maxRetries" : 3,
+ *      "retryDelay" : "100 millis",
+ *      "maxRequestSize" : 5242880,
+ *      "targetRequestLatency" : "1 s",
+ *      "compressRequests" : false
  *    }
  *  }
  * </pre>
@@ -271,6 +278,21 @@ public class ElasticsearchAuditEventHandlerConfiguration extends EventHandlerCon
      */
     public static class EventBufferingConfiguration {
 
+        /** Default maximum number of concurrent Bulk API requests. */
+        public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 2;
+
+        /** Default maximum number of times the failed events of a Bulk API request are retried. */
+        public static final int DEFAULT_MAX_RETRIES = 3;
+
+        /** Default delay before the first retry of failed events. */
+        public static final String DEFAULT_RETRY_DELAY = "100 millis";
+
+        /** Default maximum size, in bytes, of a Bulk API request payload (5 MiB). */
+        public static final int DEFAULT_MAX_REQUEST_SIZE = 5 * 1024 * 1024;
+
+        /** Default Bulk API request latency, above which requests are made smaller. */
+        public static final String DEFAULT_TARGET_REQUEST_LATENCY = "1 s";
+
         @JsonPropertyDescription("audit.handlers.elasticsearch.buffering.enabled")
         private boolean enabled;
 
@@ -283,6 +305,24 @@ public class ElasticsearchAuditEventHandlerConfiguration extends EventHandlerCon
         @JsonPropertyDescription("audit.handlers.elasticsearch.buffering.maxBatchedEvents")
         private int maxBatchedEvents;
 
+        @JsonPropertyDescription("audit.handlers.elasticsearch.buffering.maxInFlightRequests")
+        private int maxInFlightRequests = DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+
+        @JsonPropertyDescription("audit.handlers.elasticsearch.buffering.maxRetries")
+        private int maxRetries = DEFAULT_MAX_RETRIES;
+
+        @JsonPropertyDescription("audit.handlers.elasticsearch.buffering.retryDelay")
+        private String retryDelay = DEFAULT_RETRY_DELAY;
+
+        @JsonPropertyDescription("audit.handlers.elasticsearch.buffering.maxRequestSize")
+        private int maxRequestSize = DEFAULT_MAX_REQUEST_SIZE;
+
+        @JsonPropertyDescription("audit.handlers.elasticsearch.buffering.targetRequestLatency")
+        private String targetRequestLatency = DEFAULT_TARGET_REQUEST_LATENCY;
+
+        @JsonPropertyDescription("audit.handlers.elasticsearch.buffering.compressRequests")
+        private boolean compressRequests;
+
         /**
          * Indicates if event buffering is enabled.
          *
@@ -354,5 +394,119 @@ public class ElasticsearchAuditEventHandlerConfiguration extends EventHandlerCon
         public void setMaxBatchedEvents(int maxBatchedEvents) {
             this.maxBatchedEvents = maxBatchedEvents;
         }
+
+        /**
+         * Gets the maximum number of Bulk API requests sent concurrently (default 2). Once reached, the writer of
+         * the buffer waits for a request to complete, and events accumulate in the buffer.
+         *
+         * @return Maximum number of in-flight requests
+         */
+        public int getMaxInFlightRequests() {
+            return maxInFlightRequests;
+        }
+
+        /**
+         * Sets the maximum number of Bulk API requests sent concurrently.
+         *
+         * @param maxInFlightRequests Maximum number of in-flight requests
+         */
+        public void setMaxInFlightRequests(int maxInFlightRequests) {
+            this.maxInFlightRequests = maxInFlightRequests;
+        }
+
+        /**
+         * Gets the maximum number of times the events of a Bulk API request, which failed with a transient error,
+         * are sent again (default 3).
+         *
+         * @return Maximum number of retries
+         */
+        public int getMaxRetries() {
+            return maxRetries;
+        }
+
+        /**
+         * Sets the maximum number of times the events of a Bulk API request, which failed with a transient error,
+         * are sent again.
+         *
+         * @param maxRetries Maximum number of retries
+         */
+        public void setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+        }
+
+        /**
+         * Gets the delay before the first retry of failed events, which doubles with each subsequent retry.
+         *
+         * @return Delay (e.g., "100 millis")
+         */
+        public String getRetryDelay() {
+            return retryDelay;
+        }
+
+        /**
+         * Sets the delay before the first retry of failed events, which doubles with each subsequent retry.
+         *
+         * @param retryDelay Delay (e.g., "100 millis")
+         */
+        public void setRetryDelay(String retryDelay) {
+            this.retryDelay = retryDelay;
+        }
+
+        /**
+         * Gets the maximum size, in bytes, of a Bulk API request payload (default 5 MiB). Batches are split into
+         * requests of at most this size, which is reduced while Elasticsearch is slow to respond.
+         *
+         * @return Maximum request size
+         */
+        public int getMaxRequestSize() {
+            return maxRequestSize;
+        }
+
+        /**
+         * Sets the maximum size, in bytes, of a Bulk API request payload.
+         *
+         * @param maxRequestSize Maximum request size
+         */
+        public void setMaxRequestSize(int maxRequestSize) {
+            this.maxRequestSize = maxRequestSize;
+        }
+
+        /**
+         * Gets the Bulk API request latency above which, or when Elasticsearch rejects requests, the size of
+         * requests is halved. The size grows back while requests take less than this latency.
+         *
+         * @return Latency (e.g., "1 s")
+         */
+        public String getTargetRequestLatency() {
+            return targetRequestLatency;
+        }
+
+        /**
+         * Sets the Bulk API request latency above which, or when Elasticsearch rejects requests, the size of
+         * requests is halved.
+         *
+         * @param targetRequestLatency Latency (e.g., "1 s")
+         */
+        public void setTargetRequestLatency(String targetRequestLatency) {
+            this.targetRequestLatency = targetRequestLatency;
+        }
+
+        /**
+         * Indicates if Bulk API request payloads are compressed with gzip.
+         *
+         * @return {@code true} if requests are compressed
+         */
+        public boolean isCompressRequests() {
+            return compressRequests;
+        }
+
+        /**
+         * Sets whether Bulk API request payloads are compressed with gzip.
+         *
+         * @param compressRequests {@code true} if requests are compressed
+         */
+        public void setCompressRequests(boolean compressRequests) {
+            this.compressRequests = compressRequests;
+        }
     }
 }
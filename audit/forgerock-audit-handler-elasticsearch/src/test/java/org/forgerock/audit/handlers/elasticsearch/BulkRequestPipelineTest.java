@@ -0,0 +1,373 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.audit.handlers.elasticsearch;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.forgerock.http.grizzly.GrizzlySupport.newGrizzlyHttpHandler;
+import static org.forgerock.json.JsonValue.array;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.forgerock.audit.events.handlers.buffering.BatchException;
+import org.forgerock.audit.handlers.elasticsearch.ElasticsearchAuditEventHandlerConfiguration.EventBufferingConfiguration;
+import org.forgerock.http.Client;
+import org.forgerock.http.Handler;
+import org.forgerock.http.handler.HttpClientHandler;
+import org.forgerock.http.header.ContentEncodingHeader;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.json.JsonValue;
+import org.forgerock.services.context.Context;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.promise.Promises;
+import org.glassfish.grizzly.PortRange;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class BulkRequestPipelineTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private BulkStub stub;
+    private HttpServer server;
+    private HttpClientHandler httpClientHandler;
+    private Client client;
+    private String bulkUri;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        stub = new BulkStub();
+        server = HttpServer.createSimpleServer(null, new PortRange(6000, 7000));
+        server.getServerConfiguration().addHttpHandler(newGrizzlyHttpHandler(stub, null));
+        server.start();
+        bulkUri = "http://localhost:" + server.getListeners().iterator().next().getPort() + "/audit/_bulk";
+        httpClientHandler = new HttpClientHandler();
+        client = new Client(httpClientHandler);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        try {
+            httpClientHandler.close();
+        } finally {
+            server.shutdownNow();
+            stub.scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRetriesOnlyTransientlyFailedItems() throws Exception {
+        // given
+        stub.itemStatuses.put("b", new ArrayDeque<>(Arrays.asList(429, 201)));
+        stub.itemStatuses.put("c", new ArrayDeque<>(Collections.singletonList(400)));
+        final BulkRequestPipeline pipeline = newPipeline(newConfiguration());
+
+        // when
+        try {
+            pipeline.publish(payload("a", "b", "c")).getOrThrow(10, SECONDS);
+            failBecauseExceptionWasNotThrown(BatchException.class);
+        } catch (BatchException e) {
+            // then
+            assertThat(e.getMessage()).contains("\"_id\":\"c\"").doesNotContain("\"_id\":\"b\"");
+        } finally {
+            pipeline.close();
+        }
+        assertThat(stub.getRequests()).containsExactly(Arrays.asList("a", "b", "c"), Collections.singletonList("b"));
+    }
+
+    @Test
+    public void testRetriesWholeRequestOnServerError() throws Exception {
+        // given
+        stub.requestStatuses.add(503);
+        final BulkRequestPipeline pipeline = newPipeline(newConfiguration());
+
+        // when
+        try {
+            pipeline.publish(payload("a", "b")).getOrThrow(10, SECONDS);
+        } finally {
+            pipeline.close();
+        }
+
+        // then
+        assertThat(stub.getRequests()).containsExactly(Arrays.asList("a", "b"), Arrays.asList("a", "b"));
+    }
+
+    @Test
+    public void testRetriesItemsMissingFromResponse() throws Exception {
+        // given
+        stub.truncatedResponses = 1;
+        final BulkRequestPipeline pipeline = newPipeline(newConfiguration());
+
+        // when
+        try {
+            pipeline.publish(payload("a", "b", "c")).getOrThrow(10, SECONDS);
+        } finally {
+            pipeline.close();
+        }
+
+        // then
+        assertThat(stub.getRequests()).containsExactly(Arrays.asList("a", "b", "c"), Collections.singletonList("c"));
+    }
+
+    @Test
+    public void testFailsItemsOnceOutOfRetries() throws Exception {
+        // given
+        stub.itemStatuses.put("a", new ArrayDeque<>(Arrays.asList(429, 429, 429, 429)));
+        final EventBufferingConfiguration configuration = newConfiguration();
+        configuration.setMaxRetries(2);
+        final BulkRequestPipeline pipeline = newPipeline(configuration);
+
+        // when
+        try {
+            pipeline.publish(payload("a", "b")).getOrThrow(10, SECONDS);
+            failBecauseExceptionWasNotThrown(BatchException.class);
+        } catch (BatchException e) {
+            // then
+            assertThat(e.getMessage()).endsWith("after 2 retries");
+        } finally {
+            pipeline.close();
+        }
+        assertThat(stub.getRequests()).hasSize(3);
+    }
+
+    @Test
+    public void testLimitsInFlightRequests() throws Exception {
+        // given
+        stub.responseDelayMillis = 20;
+        final EventBufferingConfiguration configuration = newConfiguration();
+        // a request per item
+        configuration.setMaxRequestSize(1);
+        configuration.setMaxInFlightRequests(2);
+        final BulkRequestPipeline pipeline = newPipeline(configuration);
+        final String[] ids = new String[20];
+        for (int i = 0; i < ids.length; ++i) {
+            ids[i] = Integer.toString(i);
+        }
+
+        // when
+        try {
+            pipeline.publish(payload(ids)).getOrThrow(10, SECONDS);
+        } finally {
+            pipeline.close();
+        }
+
+        // then
+        assertThat(stub.getRequests()).hasSize(ids.length);
+        assertThat(stub.maxInFlightRequests.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testSplitsSmallerRequestsWhenSlow() throws Exception {
+        // given
+        stub.responseDelayMillis = 20;
+        final EventBufferingConfiguration configuration = newConfiguration();
+        configuration.setMaxRequestSize(256 * 1024);
+        configuration.setTargetRequestLatency("1 ms");
+        final BulkRequestPipeline pipeline = newPipeline(configuration);
+        // about 200 KiB
+        final String[] ids = new String[100];
+        for (int i = 0; i < ids.length; ++i) {
+            ids[i] = Integer.toString(i);
+        }
+
+        // when
+        try {
+            pipeline.publish(payload(ids)).getOrThrow(10, SECONDS);
+            pipeline.publish(payload(ids)).getOrThrow(10, SECONDS);
+        } finally {
+            pipeline.close();
+        }
+
+        // then the first request was too slow, so the second payload was split in two
+        assertThat(stub.getRequests()).hasSize(3);
+    }
+
+    @Test
+    public void testCompressesRequests() throws Exception {
+        // given
+        final EventBufferingConfiguration configuration = newConfiguration();
+        configuration.setCompressRequests(true);
+        final BulkRequestPipeline pipeline = newPipeline(configuration);
+
+        // when
+        try {
+            pipeline.publish(payload("a", "b")).getOrThrow(10, SECONDS);
+        } finally {
+            pipeline.close();
+        }
+
+        // then
+        assertThat(stub.getRequests()).containsExactly(Arrays.asList("a", "b"));
+        assertThat(stub.contentEncodings).containsExactly("gzip");
+    }
+
+    @Test
+    public void testFailsRequestsAndReleasesPermitsOnClientRuntimeExceptions() throws Exception {
+        // given a client which alternately fails its promise and throws
+        final AtomicInteger sentRequests = new AtomicInteger();
+        final Client failingClient = new Client(new Handler() {
+            @Override
+            public Promise<Response, NeverThrowsException> handle(final Context context, final Request request) {
+                if (sentRequests.getAndIncrement() % 2 == 0) {
+                    return Promises.newRuntimeExceptionPromise(new IllegalStateException("failed promise"));
+                }
+                throw new IllegalStateException("thrown");
+            }
+        });
+        final EventBufferingConfiguration configuration = newConfiguration();
+        // a request per item
+        configuration.setMaxRequestSize(1);
+        configuration.setMaxInFlightRequests(1);
+        final BulkRequestPipeline pipeline = new BulkRequestPipeline(failingClient, bulkUri, null, configuration);
+
+        // when
+        try {
+            pipeline.publish(payload("a", "b", "c")).getOrThrow(10, SECONDS);
+            failBecauseExceptionWasNotThrown(BatchException.class);
+        } catch (BatchException e) {
+            // then every request completed, and released its permit for the next one
+            assertThat(e.getMessage()).isEqualTo("Unexpected error while publishing batch");
+        } finally {
+            pipeline.close();
+        }
+        assertThat(sentRequests.get()).isEqualTo(3);
+    }
+
+    private BulkRequestPipeline newPipeline(final EventBufferingConfiguration configuration) {
+        return new BulkRequestPipeline(client, bulkUri, null, configuration);
+    }
+
+    private static EventBufferingConfiguration newConfiguration() {
+        final EventBufferingConfiguration configuration = new EventBufferingConfiguration();
+        configuration.setEnabled(true);
+        configuration.setRetryDelay("1 ms");
+        return configuration;
+    }
+
+    private static String payload(final String... ids) {
+        final char[] padding = new char[2000];
+        Arrays.fill(padding, 'x');
+        final StringBuilder payload = new StringBuilder();
+        for (final String id : ids) {
+            payload.append("{ \"index\" : { \"_type\" : \"access\", \"_id\" : \"").append(id).append("\" } }\n")
+                    .append("{\"padding\":\"").append(padding).append("\"}\n");
+        }
+        return payload.toString();
+    }
+
+    /**
+     * Stub of the Elasticsearch Bulk API, which records the identifiers of the events of each request, and responds
+     * with the scripted statuses.
+     */
+    private static final class BulkStub implements Handler {
+        private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        /** Statuses of the next requests, before the default 200. */
+        private final Deque<Integer> requestStatuses = new ArrayDeque<>();
+        /** Statuses of the next attempts to index an event, before the default 201. */
+        private final Map<String, Deque<Integer>> itemStatuses = new HashMap<>();
+        private final List<List<String>> requests = new ArrayList<>();
+        private final List<String> contentEncodings = Collections.synchronizedList(new ArrayList<String>());
+        private final AtomicInteger inFlightRequests = new AtomicInteger();
+        private final AtomicInteger maxInFlightRequests = new AtomicInteger();
+        private volatile long responseDelayMillis;
+        /** Number of the next responses which omit their last item, without reporting errors. */
+        private int truncatedResponses;
+
+        @Override
+        public Promise<Response, NeverThrowsException> handle(final Context context, final Request request) {
+            final int inFlight = inFlightRequests.incrementAndGet();
+            while (maxInFlightRequests.get() < inFlight) {
+                maxInFlightRequests.compareAndSet(maxInFlightRequests.get(), inFlight);
+            }
+            final Response response;
+            try {
+                final String encoding = request.getHeaders().getFirst(ContentEncodingHeader.NAME);
+                if (encoding != null) {
+                    contentEncodings.add(encoding);
+                }
+                response = respond(request.getEntity().getString());
+            } catch (Exception e) {
+                inFlightRequests.decrementAndGet();
+                return Response.newResponsePromise(new Response(Status.INTERNAL_SERVER_ERROR).setCause(e));
+            }
+            final PromiseImpl<Response, NeverThrowsException> promise = Response.newResponsePromiseImpl();
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    inFlightRequests.decrementAndGet();
+                    promise.handleResult(response);
+                }
+            }, responseDelayMillis, TimeUnit.MILLISECONDS);
+            return promise;
+        }
+
+        private synchronized Response respond(final String payload) throws Exception {
+            final List<String> ids = new ArrayList<>();
+            final String[] lines = payload.split("\n");
+            for (int i = 0; i < lines.length; i += 2) {
+                ids.add(json(OBJECT_MAPPER.readValue(lines[i], Map.class)).get("index").get("_id").asString());
+            }
+            requests.add(ids);
+            final Integer requestStatus = requestStatuses.poll();
+            if (requestStatus != null) {
+                return new Response(Status.valueOf(requestStatus));
+            }
+            boolean errors = false;
+            final JsonValue items = json(array());
+            for (final String id : ids) {
+                final Deque<Integer> statuses = itemStatuses.get(id);
+                final int status = statuses == null || statuses.isEmpty() ? 201 : statuses.poll();
+                errors |= status >= 400;
+                items.add(object(field("index", object(field("_index", "audit"), field("_type", "access"),
+                        field("_id", id), field("status", status)))));
+            }
+            if (truncatedResponses > 0) {
+                --truncatedResponses;
+                items.asList().remove(items.size() - 1);
+            }
+            final Response response = new Response(Status.OK);
+            response.setEntity(object(field("took", 1), field("errors", errors), field("items", items.getObject())));
+            return response;
+        }
+
+        synchronized List<List<String>> getRequests() {
+            return new ArrayList<>(requests);
+        }
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 package org.forgerock.audit.handlers.jms;
 
@@ -37,7 +38,10 @@ import static org.forgerock.audit.batch.CommonAuditBatchConfiguration.POLLING_TI
  * Generic publisher that will queue anything for batch processing.
  *
  * @param <T> This is the type of object that will be queued before publishing.
+ * @deprecated The JMS handler now queues its events with a
+ * {@link org.forgerock.audit.events.handlers.buffering.BufferedBatchPublisher}.
  */
+@Deprecated
 public abstract class BatchPublisher<T> implements Publisher<T> {
     private static final Logger logger = LoggerFactory.getLogger(BatchPublisher.class);
 
@@ -47,6 +51,7 @@ public abstract class BatchPublisher<T> implements Publisher<T> {
     private final long shutdownTimeoutSec;
     private volatile boolean stopRequested;
     private final int maxBatchedEvents;
+    private final int threadCount;
 
     /**
      * This constructs the thread pool of worker threads.  The pool is not executed until {@link #startup()}.
@@ -63,6 +68,7 @@ public abstract class BatchPublisher<T> implements Publisher<T> {
         this.maxBatchedEvents = configuration.getMaxBatchedEvents();
         this.insertTimeoutSec = configuration.getInsertTimeoutSec();
         this.shutdownTimeoutSec = configuration.getShutdownTimeoutSec();
+        this.threadCount = configuration.getThreadCount();
         this.stopRequested = false;
         this.executorService = Executors.newFixedThreadPool(configuration.getThreadCount(), new ThreadFactory() {
             @Override
@@ -96,16 +102,18 @@ public abstract class BatchPublisher<T> implements Publisher<T> {
     protected abstract void publishMessages(List<T> messages);
 
     /**
-     * This first initializes the worker threads that monitor the queue of items to publish, and then calls
-     * {@link #startupPublisher()}.
+     * This first calls {@link #startupPublisher()}, and then starts the configured count of worker threads that
+     * monitor the queue of items to publish, so that batches are published in parallel.
      *
      * @throws ResourceException If there is trouble starting up the publisher or starting the worker threads.
      */
     @Override
     public final void startup() throws ResourceException {
         stopRequested = false;
-        this.executorService.execute(new PublishTask());
         startupPublisher();
+        for (int i = 0; i < threadCount; i++) {
+            this.executorService.execute(new PublishTask());
+        }
     }
 
     /**
@@ -158,6 +166,15 @@ public abstract class BatchPublisher<T> implements Publisher<T> {
         }
     }
 
+    /**
+     * Returns the count of items waiting in the queue to be published.
+     *
+     * @return the count of queued items.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
     /**
      * This runnable defines the logic of the worker threads that process the queue.
      *
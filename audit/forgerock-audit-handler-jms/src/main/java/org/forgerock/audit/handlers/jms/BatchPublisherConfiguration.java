@@ -12,14 +12,19 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 package org.forgerock.audit.handlers.jms;
 
+import org.forgerock.audit.events.handlers.buffering.BufferedBatchPublisher;
+import org.forgerock.audit.events.handlers.buffering.OverflowPolicy;
+import org.forgerock.audit.events.handlers.buffering.QueueStrategy;
+
 import com.fasterxml.jackson.annotation.JsonPropertyDescription;
 
 /**
- * This class holds the configuration properties that are used by the {#link BatchPublisher} to control the batch queue
- * and worker threads that process the items in the queue.
+ * This class holds the configuration properties that are used by the {@link BufferedBatchPublisher} of the JMS
+ * handler to control the batch queue, and by the worker threads that publish the batches taken from the queue.
  */
 public class BatchPublisherConfiguration {
 
@@ -44,8 +49,24 @@ public class BatchPublisherConfiguration {
     @JsonPropertyDescription("audit.handlers.jms.publisher.batch.shutdownTimeoutSec")
     private long shutdownTimeoutSec = 60L;
 
+    @JsonPropertyDescription("audit.handlers.jms.publisher.batch.transacted")
+    private boolean transacted = false;
+
+    @JsonPropertyDescription("audit.handlers.jms.publisher.batch.asyncSend")
+    private boolean asyncSend = false;
+
+    @JsonPropertyDescription("audit.handlers.jms.publisher.batch.queueStrategy")
+    private QueueStrategy queueStrategy = QueueStrategy.MPSC_RING_BUFFER;
+
+    @JsonPropertyDescription("audit.handlers.jms.publisher.batch.overflowPolicy")
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+    @JsonPropertyDescription("audit.handlers.jms.publisher.batch.spillFile")
+    private String spillFile;
+
     /**
-     * Returns the maximum capacity of the publishing queue.  Execution will block if the queue size is at capacity.
+     * Returns the maximum capacity of the publishing queue. Events published while the queue is at capacity are
+     * handled according to the {@link #getOverflowPolicy() overflow policy}. The capacity is at least 10000.
      *
      * @return the maximum capacity of the publishing queue
      */
@@ -100,7 +121,8 @@ public class BatchPublisherConfiguration {
 
     /**
      * Returns the timeout in seconds the duration that the queue should block while attempting to offer a new item
-     * for the queue.
+     * for the queue. This is no longer used, as the {@link #getOverflowPolicy() overflow policy} determines what
+     * happens to the events published while the queue is full.
      *
      * @return timeout in seconds
      */
@@ -120,7 +142,8 @@ public class BatchPublisherConfiguration {
 
     /**
      * Returns the timeout in seconds for the worker threads to wait for a new item to be available in the queue
-     * before exiting.
+     * before exiting. This is no longer used, as the queue is consumed by a single thread which is woken up as soon
+     * as a full batch of events is available.
      *
      * @return timeout in seconds
      */
@@ -173,4 +196,99 @@ public class BatchPublisherConfiguration {
     public void setBatchEnabled(boolean batchEnabled) {
         this.batchEnabled = batchEnabled;
     }
+
+    /**
+     * Returns true if each batch should be sent in a local JMS transaction, which is committed once the whole batch is
+     * sent.
+     *
+     * @return true if each batch should be sent in a local JMS transaction.
+     */
+    public boolean isTransacted() {
+        return transacted;
+    }
+
+    /**
+     * Sets if each batch should be sent in a local JMS transaction, which is committed once the whole batch is sent.
+     *
+     * @param transacted true if each batch should be sent in a local JMS transaction.
+     */
+    public void setTransacted(boolean transacted) {
+        this.transacted = transacted;
+    }
+
+    /**
+     * Returns true if the messages of a batch should be sent asynchronously, when the JMS provider supports the JMS 2
+     * asynchronous send. The batch is complete once the provider acknowledged all of its messages.
+     *
+     * @return true if the messages of a batch should be sent asynchronously.
+     */
+    public boolean isAsyncSend() {
+        return asyncSend;
+    }
+
+    /**
+     * Sets if the messages of a batch should be sent asynchronously, when the JMS provider supports the JMS 2
+     * asynchronous send.
+     *
+     * @param asyncSend true if the messages of a batch should be sent asynchronously.
+     */
+    public void setAsyncSend(boolean asyncSend) {
+        this.asyncSend = asyncSend;
+    }
+
+    /**
+     * Returns the strategy for the bounded queue of events.
+     *
+     * @return the queue strategy.
+     */
+    public QueueStrategy getQueueStrategy() {
+        return queueStrategy;
+    }
+
+    /**
+     * Sets the strategy for the bounded queue of events.
+     *
+     * @param queueStrategy the queue strategy.
+     */
+    public void setQueueStrategy(QueueStrategy queueStrategy) {
+        this.queueStrategy = queueStrategy;
+    }
+
+    /**
+     * Returns the policy applied to the events published while the queue is full. Defaults to
+     * {@link OverflowPolicy#BLOCK}, so that publishing blocks until there is room in the queue.
+     *
+     * @return the overflow policy.
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Sets the policy applied to the events published while the queue is full.
+     *
+     * @param overflowPolicy the overflow policy.
+     */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Returns the path of the file to which events are spilled while the queue is full, which is required by the
+     * {@link OverflowPolicy#SPILL_TO_DISK} overflow policy.
+     *
+     * @return the path of the spill file, or {@code null} if not set.
+     */
+    public String getSpillFile() {
+        return spillFile;
+    }
+
+    /**
+     * Sets the path of the file to which events are spilled while the queue is full.
+     *
+     * @param spillFile the path of the spill file.
+     */
+    public void setSpillFile(String spillFile) {
+        this.spillFile = spillFile;
+    }
 }
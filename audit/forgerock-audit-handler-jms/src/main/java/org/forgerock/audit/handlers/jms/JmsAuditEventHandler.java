@@ -12,27 +12,50 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.audit.handlers.jms;
 
 import static org.forgerock.audit.util.ResourceExceptionsUtil.*;
 import static org.forgerock.json.JsonValue.*;
+import static org.forgerock.json.resource.Responses.newActionResponse;
 import static org.forgerock.json.resource.Responses.newResourceResponse;
+import static org.forgerock.util.promise.Promises.newResultPromise;
 
 import javax.inject.Inject;
+import javax.jms.CompletionListener;
 import javax.jms.JMSException;
+import javax.jms.Message;
 import javax.jms.MessageProducer;
 import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.forgerock.audit.Audit;
 import org.forgerock.audit.events.EventTopicsMetaData;
 import org.forgerock.audit.events.handlers.AuditEventHandlerBase;
+import org.forgerock.audit.events.handlers.buffering.BatchConsumer;
+import org.forgerock.audit.events.handlers.buffering.BatchException;
+import org.forgerock.audit.events.handlers.buffering.BufferedBatchPublisher;
+import org.forgerock.audit.handlers.jms.JmsResourceManager.PooledSession;
 import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.ActionRequest;
+import org.forgerock.json.resource.ActionResponse;
+import org.forgerock.json.resource.BadRequestException;
 import org.forgerock.json.resource.InternalServerErrorException;
 import org.forgerock.json.resource.NotSupportedException;
 import org.forgerock.json.resource.QueryRequest;
@@ -40,7 +63,9 @@ import org.forgerock.json.resource.QueryResourceHandler;
 import org.forgerock.json.resource.QueryResponse;
 import org.forgerock.json.resource.ResourceException;
 import org.forgerock.json.resource.ResourceResponse;
+import org.forgerock.json.resource.ServiceUnavailableException;
 import org.forgerock.services.context.Context;
+import org.forgerock.util.Reject;
 import org.forgerock.util.promise.Promise;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,8 +77,22 @@ public class JmsAuditEventHandler extends AuditEventHandlerBase {
     private static final Logger LOGGER = LoggerFactory.getLogger(JmsAuditEventHandler.class);
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
+    /** Name of action to get the {@link JmsPublisherStatistics publisher statistics}. */
+    public static final String METRICS_ACTION_NAME = "metrics";
+
+    /** Maximum time to wait for the provider to acknowledge the messages of a batch sent asynchronously. */
+    private static final long ASYNC_SEND_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
     private final JmsResourceManager jmsResourceManager;
     private final Publisher<JsonValue> publisher;
+    private final boolean asyncSend;
+    private volatile boolean asyncSendSupported = true;
+
+    private final AtomicLong publishedEvents = new AtomicLong();
+    private final AtomicLong publishedBatches = new AtomicLong();
+    private final AtomicLong failedEvents = new AtomicLong();
+    private final AtomicLong totalPublishLatencyNanos = new AtomicLong();
+    private final AtomicLong maxPublishLatencyNanos = new AtomicLong();
 
     /**
      * Creates a new AuditEventHandler instance that publishes JMS messages on a JMS Topic for each Audit event.
@@ -72,6 +111,7 @@ public class JmsAuditEventHandler extends AuditEventHandlerBase {
         super(configuration.getName(), eventTopicsMetaData, configuration.getTopics(), configuration.isEnabled());
 
         publisher = buildPublisher(configuration);
+        asyncSend = configuration.getBatch().isBatchEnabled() && configuration.getBatch().isAsyncSend();
         this.jmsResourceManager =
                 jmsContextManager == null
                         ? new JmsResourceManager(
@@ -138,65 +178,170 @@ public class JmsAuditEventHandler extends AuditEventHandlerBase {
     }
 
 
+    /**
+     * Returns a snapshot of the statistics of the publishing of audit events.
+     *
+     * @return the publisher statistics.
+     */
+    public JmsPublisherStatistics getStatistics() {
+        return new JmsPublisherStatistics(
+                publisher instanceof JmsBatchPublisher ? ((JmsBatchPublisher) publisher).getQueueDepth() : 0,
+                publishedEvents.get(),
+                publishedBatches.get(),
+                failedEvents.get(),
+                totalPublishLatencyNanos.get(),
+                maxPublishLatencyNanos.get());
+    }
+
+    /**
+     * Handles the {@value #METRICS_ACTION_NAME} action, which returns the {@link #getStatistics() publisher
+     * statistics}.
+     * <br/>
+     * {@inheritDoc}
+     */
+    @Override
+    public Promise<ActionResponse, ResourceException> handleAction(Context context, String topic,
+            ActionRequest request) {
+        if (METRICS_ACTION_NAME.equals(request.getAction())) {
+            return newActionResponse(getStatistics().toJsonValue()).asPromise();
+        }
+        return new BadRequestException("Unsupported action: " + request.getAction()).asPromise();
+    }
+
     /**
      * Publishes the list of messages using a single producer.
      *
-     * @param messages the messages to send.
+     * @param messages the texts of the messages to send.
      * @throws InternalServerErrorException if unable to publish jms messages.
      */
-    private void publishJmsMessagesWithRetry(List<JsonValue> messages) throws InternalServerErrorException {
+    private void publishJmsMessagesWithRetry(List<String> messages) throws InternalServerErrorException {
         try {
-            publishJmsMessages(messages);
-        } catch (JMSException e) {
-            LOGGER.debug("Retrying publish", e);
             try {
-                resetConnection();
                 publishJmsMessages(messages);
-            } catch (JMSException | ResourceException ex) {
-                final String message = "Unable to publish JMS messages, messages are likely lost";
-                LOGGER.error(message, e);
-                throw new InternalServerErrorException(message, e);
+            } catch (JMSException e) {
+                LOGGER.debug("Retrying publish", e);
+                try {
+                    publishJmsMessages(messages);
+                } catch (JMSException ex) {
+                    final String message = "Unable to publish JMS messages, messages are likely lost";
+                    e.addSuppressed(ex);
+                    LOGGER.error(message, e);
+                    throw new InternalServerErrorException(message, e);
+                }
             }
+        } catch (InternalServerErrorException e) {
+            failedEvents.addAndGet(messages.size());
+            throw e;
+        } catch (RuntimeException e) {
+            // such as when the connection is closed, or could not be reopened
+            LOGGER.error("Unable to publish JMS messages, messages are likely lost", e);
+            failedEvents.addAndGet(messages.size());
+            throw e;
         }
     }
 
     /**
-     * Publishes the list of messages using a single producer.
+     * Publishes the list of messages using a single pooled producer, within a single transaction if sessions are
+     * transacted. If the messages cannot be sent, the connection of the session is reset, unless another thread
+     * already reset it. The messages can also be sent again if the connection was reset while they were being sent,
+     * which some JMS providers report with a runtime exception rather than with a {@link JMSException}.
      *
-     * @param messages the messages to send.
+     * @param messages the texts of the messages to send.
      * @throws JMSException if unable to publish jms messages and a retry is possible.
-     *         InternalServerErrorException if unable to publish jms messages and a retry is not possible.
      */
-    private void publishJmsMessages(List<JsonValue> messages) throws JMSException, InternalServerErrorException {
-        Session session = null;
+    private void publishJmsMessages(List<String> messages) throws JMSException {
+        final long start = System.nanoTime();
+        PooledSession pooledSession = null;
+        boolean published = false;
         try {
-            session = jmsResourceManager.createSession();
-            MessageProducer producer = null;
-            try {
-                producer = jmsResourceManager.createProducer(session);
-                for (JsonValue message : messages) {
-                    String text = MAPPER.writeValueAsString(message.getObject());
-                    producer.send(session.createTextMessage(text));
-                }
-            } finally {
-                if (null != producer) {
-                    producer.close();
-                }
+            pooledSession = jmsResourceManager.borrowSession();
+            sendMessages(pooledSession.getSession(), pooledSession.getProducer(), messages);
+            if (pooledSession.isTransacted()) {
+                pooledSession.getSession().commit();
             }
+            published = true;
         } catch (JMSException e) {
             LOGGER.debug("Failed to publish messages", e);
+            if (null != pooledSession) {
+                resetConnection(pooledSession);
+                // closing its connection closed the session, and rolled back the messages it sent if transacted
+                pooledSession = null;
+            }
             throw e;
-        } catch (JsonProcessingException e) {
-            final String message = "Unable to publish JMS messages, messages are likely lost";
-            LOGGER.error(message, e);
-            throw new InternalServerErrorException(message, e);
+        } catch (RuntimeException e) {
+            if (null == pooledSession || !jmsResourceManager.isConnectionClosed(pooledSession)) {
+                throw e;
+            }
+            LOGGER.debug("Failed to publish messages on a connection reset by another thread", e);
+            pooledSession = null;
+            final JMSException closedException = new JMSException("JMS connection closed while publishing");
+            closedException.setLinkedException(e);
+            closedException.initCause(e);
+            throw closedException;
         } finally {
-            if (null != session) {
-                session.close();
+            if (published) {
+                jmsResourceManager.returnSession(pooledSession);
+                recordPublish(messages.size(), System.nanoTime() - start);
+            } else if (null != pooledSession) {
+                // also rolls back the messages sent in the failed transaction, if any
+                jmsResourceManager.discardSession(pooledSession);
             }
         }
     }
 
+    /**
+     * Sends the messages with the producer, asynchronously if configured and supported by the JMS provider, in which
+     * case this waits for the provider to acknowledge all the messages.
+     */
+    private void sendMessages(Session session, MessageProducer producer, List<String> messages)
+            throws JMSException {
+        final BatchCompletionListener completionListener = asyncSend ? new BatchCompletionListener() : null;
+        for (String message : messages) {
+            final TextMessage textMessage = session.createTextMessage(message);
+            if (completionListener == null || !sendAsync(producer, textMessage, completionListener)) {
+                producer.send(textMessage);
+            }
+        }
+        if (completionListener != null) {
+            completionListener.awaitCompletion(ASYNC_SEND_TIMEOUT_MILLIS);
+        }
+    }
+
+    /**
+     * Sends the message asynchronously, unless the JMS provider was found not to support the JMS 2 asynchronous
+     * send.
+     *
+     * @return false if the message was not sent, since asynchronous send is not supported.
+     */
+    private boolean sendAsync(MessageProducer producer, Message message, BatchCompletionListener completionListener)
+            throws JMSException {
+        if (!asyncSendSupported) {
+            return false;
+        }
+        // the completion may be notified before the send returns
+        completionListener.sending();
+        try {
+            producer.send(message, completionListener);
+            return true;
+        } catch (AbstractMethodError | UnsupportedOperationException e) {
+            // JMS 1.1 providers do not implement the method
+            completionListener.notSent();
+            asyncSendSupported = false;
+            LOGGER.info("JMS provider does not support asynchronous send, messages are sent synchronously", e);
+            return false;
+        }
+    }
+
+    private void recordPublish(int eventCount, long latencyNanos) {
+        publishedEvents.addAndGet(eventCount);
+        publishedBatches.incrementAndGet();
+        totalPublishLatencyNanos.addAndGet(latencyNanos);
+        long max = maxPublishLatencyNanos.get();
+        while (latencyNanos > max && !maxPublishLatencyNanos.compareAndSet(max, latencyNanos)) {
+            max = maxPublishLatencyNanos.get();
+        }
+    }
+
     /**
      * Returns NotSupportedException as query is not implemented for JMS.
      * <br/>
@@ -224,37 +369,136 @@ public class JmsAuditEventHandler extends AuditEventHandlerBase {
     }
 
     /**
-     * Implementation of the BatchPublisher to handle publishing groups of audit event data to JMS.
+     * Implementation of the Publisher to handle publishing groups of audit event data to JMS. The events are queued by
+     * a {@link BufferedBatchPublisher}, whose consumer thread serializes them and hands them over to the worker
+     * threads in batches of at most {@code maxBatchedEvents} messages, so that the batches are published in parallel.
      */
-    private class JmsBatchPublisher extends BatchPublisher<JsonValue> {
+    private class JmsBatchPublisher implements Publisher<JsonValue>, BatchConsumer {
+
+        private final org.forgerock.audit.events.handlers.buffering.BatchPublisher batchPublisher;
+        private final ExecutorService workers;
+        /** Bounds the batches handed over to the worker threads, so that the queue fills up if they cannot keep up. */
+        private final Semaphore idleWorkers;
+        private final AtomicInteger queueDepth = new AtomicInteger();
+        private final int maxBatchedEvents;
+        private final long shutdownTimeoutSec;
 
         /**
-         * Constructor that passes the configuration to {@link BatchPublisher}.
+         * Creates the publisher and its worker threads, which are not started until {@link #startup()}.
          *
          * @param configuration config of the publisher.
          */
         public JmsBatchPublisher(BatchPublisherConfiguration configuration) {
-            super("JmsBatchPublisher", configuration);
+            Reject.ifFalse(configuration.getThreadCount() > 0, "ThreadCount must be greater than 0");
+            Reject.ifFalse(configuration.getCapacity() > 0, "Capacity must be greater than 0");
+            Reject.ifFalse(configuration.getMaxBatchedEvents() > 0, "MaxBatchedEvents must be greater than 0");
+            this.maxBatchedEvents = configuration.getMaxBatchedEvents();
+            this.shutdownTimeoutSec = configuration.getShutdownTimeoutSec();
+            this.idleWorkers = new Semaphore(configuration.getThreadCount());
+            this.workers = Executors.newFixedThreadPool(configuration.getThreadCount(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return new Thread(runnable, "JmsBatchPublisher");
+                }
+            });
+            this.batchPublisher = BufferedBatchPublisher.newBuilder(this)
+                    .capacity(configuration.getCapacity())
+                    .maxBatchEvents(configuration.getMaxBatchedEvents())
+                    .autoFlush(true)
+                    .queueStrategy(configuration.getQueueStrategy())
+                    .overflowPolicy(configuration.getOverflowPolicy())
+                    .spillFile(configuration.getSpillFile() == null ? null : Paths.get(configuration.getSpillFile()))
+                    .build();
         }
 
         @Override
-        public void startupPublisher() throws ResourceException {
+        public void startup() throws ResourceException {
             openJmsConnection();
+            batchPublisher.startup();
         }
 
+        /**
+         * Publishes the queued events, waits for the worker threads to publish them, and then closes the connection.
+         */
         @Override
-        public void shutdownPublisher() throws ResourceException {
+        public void shutdown() throws ResourceException {
+            batchPublisher.shutdown();
+            workers.shutdown();
+            try {
+                while (!workers.awaitTermination(shutdownTimeoutSec, TimeUnit.SECONDS)) {
+                    LOGGER.debug("Waiting for the JMS batch publisher worker threads to terminate");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
             closeJmsConnection();
         }
 
         @Override
-        protected void publishMessages(List<JsonValue> messages) {
+        public void publish(JsonValue message) throws ResourceException {
+            queueDepth.incrementAndGet();
+            if (!batchPublisher.offer(message.get("auditTopic").asString(), message)) {
+                queueDepth.decrementAndGet();
+                failedEvents.incrementAndGet();
+                throw new ServiceUnavailableException("JMS batch queue is full or the publisher is shut down");
+            }
+        }
+
+        /**
+         * Returns the number of events that are queued and not yet handed over to a worker thread.
+         *
+         * @return the depth of the queue.
+         */
+        public int getQueueDepth() {
+            return queueDepth.get();
+        }
+
+        /**
+         * Appends the text of the message of the event to the payload, on a line of its own. The text cannot span
+         * several lines, since JSON strings escape line terminators.
+         */
+        @Override
+        public void addToBatch(String topic, JsonValue event, StringBuilder payload) throws BatchException {
+            queueDepth.decrementAndGet();
             try {
-                publishJmsMessagesWithRetry(messages);
-            } catch (InternalServerErrorException e) {
-                // do nothing
+                payload.append(MAPPER.writeValueAsString(event.getObject())).append('\n');
+            } catch (JsonProcessingException e) {
+                failedEvents.incrementAndGet();
+                throw new BatchException("Unable to serialize the JMS message, the message is lost", e);
             }
         }
+
+        /**
+         * Hands the messages of the payload over to the worker threads, in batches of at most
+         * {@code maxBatchedEvents} messages. Blocks while all the worker threads are busy.
+         */
+        @Override
+        public Promise<Void, BatchException> publishBatch(String payload) {
+            final List<String> messages = Arrays.asList(payload.split("\n"));
+            for (int from = 0; from < messages.size(); from += maxBatchedEvents) {
+                final List<String> batch = messages.subList(from, Math.min(from + maxBatchedEvents, messages.size()));
+                idleWorkers.acquireUninterruptibly();
+                try {
+                    workers.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                publishJmsMessagesWithRetry(batch);
+                            } catch (InternalServerErrorException | RuntimeException e) {
+                                // already logged and counted as failed, and the worker thread must keep publishing
+                            } finally {
+                                idleWorkers.release();
+                            }
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    idleWorkers.release();
+                    failedEvents.addAndGet(batch.size());
+                    LOGGER.error("Unable to publish JMS messages, the publisher is shut down", e);
+                }
+            }
+            return newResultPromise(null);
+        }
     }
 
     /**
@@ -274,7 +518,81 @@ public class JmsAuditEventHandler extends AuditEventHandlerBase {
 
         @Override
         public void publish(JsonValue message) throws ResourceException {
-            publishJmsMessagesWithRetry(Collections.singletonList(message));
+            final String text;
+            try {
+                text = MAPPER.writeValueAsString(message.getObject());
+            } catch (JsonProcessingException e) {
+                failedEvents.incrementAndGet();
+                final String errorMessage = "Unable to publish JMS messages, messages are likely lost";
+                LOGGER.error(errorMessage, e);
+                throw new InternalServerErrorException(errorMessage, e);
+            }
+            publishJmsMessagesWithRetry(Collections.singletonList(text));
+        }
+    }
+
+    /**
+     * Tracks the completion of the messages of a batch that are sent asynchronously.
+     */
+    private static final class BatchCompletionListener implements CompletionListener {
+        private int pendingMessages;
+        private Exception failure;
+
+        synchronized void sending() {
+            pendingMessages++;
+        }
+
+        synchronized void notSent() {
+            pendingMessages--;
+        }
+
+        @Override
+        public synchronized void onCompletion(Message message) {
+            pendingMessages--;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void onException(Message message, Exception exception) {
+            if (failure == null) {
+                failure = exception;
+            }
+            pendingMessages--;
+            notifyAll();
+        }
+
+        /**
+         * Waits until all the messages sent are acknowledged by the provider.
+         *
+         * @throws JMSException if any message failed to be sent, or if the messages are not acknowledged in time.
+         */
+        synchronized void awaitCompletion(long timeoutMillis) throws JMSException {
+            final long deadline = System.currentTimeMillis() + timeoutMillis;
+            boolean interrupted = false;
+            try {
+                long remaining = timeoutMillis;
+                while (pendingMessages > 0 && remaining > 0) {
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                    remaining = deadline - System.currentTimeMillis();
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failure != null) {
+                final JMSException e = new JMSException("Failed to send JMS message: " + failure.getMessage());
+                e.setLinkedException(failure);
+                e.initCause(failure);
+                throw e;
+            }
+            if (pendingMessages > 0) {
+                throw new JMSException("Timed out waiting for " + pendingMessages + " JMS messages to be sent");
+            }
         }
     }
 
@@ -294,8 +612,11 @@ public class JmsAuditEventHandler extends AuditEventHandlerBase {
         }
     }
 
-    private void resetConnection() throws InternalServerErrorException {
-        closeJmsConnection();
-        openJmsConnection();
+    private void resetConnection(PooledSession failedSession) {
+        try {
+            jmsResourceManager.resetConnection(failedSession);
+        } catch (JMSException e) {
+            LOGGER.error("Unable to reopen the JMS connection", e);
+        }
     }
 }
@@ -0,0 +1,140 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.audit.handlers.jms;
+
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+
+import org.forgerock.json.JsonValue;
+
+/**
+ * Provides a snapshot of the statistics of the publishing of audit events by the {@link JmsAuditEventHandler}.
+ */
+public final class JmsPublisherStatistics {
+    private final int queueDepth;
+    private final long publishedEvents;
+    private final long publishedBatches;
+    private final long failedEvents;
+    private final long totalPublishLatencyNanos;
+    private final long maxPublishLatencyNanos;
+
+    /**
+     * Constructs a statistics object with the given parameters.
+     *
+     * @param queueDepth the count of events waiting to be published.
+     * @param publishedEvents the count of events published.
+     * @param publishedBatches the count of batches published.
+     * @param failedEvents the count of events which could not be published.
+     * @param totalPublishLatencyNanos the total time spent publishing the batches, in nanoseconds.
+     * @param maxPublishLatencyNanos the longest time spent publishing a batch, in nanoseconds.
+     */
+    public JmsPublisherStatistics(final int queueDepth,
+                                  final long publishedEvents,
+                                  final long publishedBatches,
+                                  final long failedEvents,
+                                  final long totalPublishLatencyNanos,
+                                  final long maxPublishLatencyNanos) {
+        this.queueDepth = queueDepth;
+        this.publishedEvents = publishedEvents;
+        this.publishedBatches = publishedBatches;
+        this.failedEvents = failedEvents;
+        this.totalPublishLatencyNanos = totalPublishLatencyNanos;
+        this.maxPublishLatencyNanos = maxPublishLatencyNanos;
+    }
+
+    /**
+     * The count of events waiting in the batch queue to be published. This is always 0 if batching is disabled.
+     *
+     * @return the count of queued events.
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * The count of events which were successfully published.
+     *
+     * @return the count of published events.
+     */
+    public long getPublishedEvents() {
+        return publishedEvents;
+    }
+
+    /**
+     * The count of batches which were successfully published. Each event is its own batch if batching is disabled.
+     *
+     * @return the count of published batches.
+     */
+    public long getPublishedBatches() {
+        return publishedBatches;
+    }
+
+    /**
+     * The count of events which could not be published, even after a retry, and are therefore lost.
+     *
+     * @return the count of failed events.
+     */
+    public long getFailedEvents() {
+        return failedEvents;
+    }
+
+    /**
+     * The mean time spent publishing a batch, from borrowing a session until the messages are sent and committed.
+     *
+     * @return the mean publish latency in nanoseconds, or 0 if no batch was published.
+     */
+    public long getMeanPublishLatencyNanos() {
+        return publishedBatches == 0 ? 0 : totalPublishLatencyNanos / publishedBatches;
+    }
+
+    /**
+     * The longest time spent publishing a batch, from borrowing a session until the messages are sent and committed.
+     *
+     * @return the maximum publish latency in nanoseconds.
+     */
+    public long getMaxPublishLatencyNanos() {
+        return maxPublishLatencyNanos;
+    }
+
+    /**
+     * Converts these statistics to JSON.
+     *
+     * @return the statistics as a JSON object.
+     */
+    public JsonValue toJsonValue() {
+        return json(object(
+                field("queueDepth", queueDepth),
+                field("publishedEvents", publishedEvents),
+                field("publishedBatches", publishedBatches),
+                field("failedEvents", failedEvents),
+                field("meanPublishLatencyNanos", getMeanPublishLatencyNanos()),
+                field("maxPublishLatencyNanos", maxPublishLatencyNanos)));
+    }
+
+    @Override
+    public String toString() {
+        return "JmsPublisherStatistics{"
+                + "queueDepth=" + queueDepth
+                + ", publishedEvents=" + publishedEvents
+                + ", publishedBatches=" + publishedBatches
+                + ", failedEvents=" + failedEvents
+                + ", meanPublishLatencyNanos=" + getMeanPublishLatencyNanos()
+                + ", maxPublishLatencyNanos=" + maxPublishLatencyNanos
+                + '}';
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.audit.handlers.jms;
@@ -22,6 +23,8 @@ import javax.jms.JMSException;
 import javax.jms.MessageProducer;
 import javax.jms.Session;
 import javax.jms.Topic;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 import org.forgerock.json.resource.InternalServerErrorException;
 import org.forgerock.json.resource.ResourceException;
@@ -31,6 +34,10 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Manages the Connection to the JMS services and does the JNDI lookup for the JMS configuration settings.
+ * <p>
+ * Sessions are not thread-safe, so each publishing thread {@link #borrowSession() borrows} a session with its producer
+ * from a pool, and {@link #returnSession(PooledSession) returns} it once its messages are sent. Sessions are thus
+ * reused across batches rather than created for each of them.
  */
 class JmsResourceManager {
     private static final Logger logger = LoggerFactory.getLogger(JmsResourceManager.class);
@@ -60,6 +67,21 @@ class JmsResourceManager {
      */
     private Topic topic;
 
+    /**
+     * Whether the sessions are transacted, in which case the messages they send must be committed.
+     */
+    private final boolean transacted;
+
+    /**
+     * Maximum count of idle sessions kept in the pool.
+     */
+    private final int maxIdleSessions;
+
+    /**
+     * Sessions of the current connection that are not used by a publishing thread, most recently used first.
+     */
+    private final Deque<PooledSession> idleSessions = new ArrayDeque<>();
+
     /**
      * Given the configuration, this builds an JMS InitialContext. If usage of JNDI isn't desired, then both the
      * connectionFactory and the jmsTopic need to be populated.
@@ -75,7 +97,12 @@ class JmsResourceManager {
         Reject.ifNull(configuration.getSessionMode(), "JMS Session Mode is required");
         sessionMode = configuration.getSessionMode();
         deliveryMode = configuration.getDeliveryMode();
-
+        final BatchPublisherConfiguration batch = configuration.getBatch();
+        transacted = batch.isBatchEnabled() && batch.isTransacted();
+        // one session per worker thread when batching, else one session per concurrent caller
+        maxIdleSessions = batch.isBatchEnabled()
+                ? batch.getThreadCount()
+                : Runtime.getRuntime().availableProcessors();
 
         this.connectionFactory = jmsContextManager.getConnectionFactory();
         this.topic = jmsContextManager.getTopic();
@@ -88,18 +115,49 @@ class JmsResourceManager {
      * Opens the connection to the JMS services with the configured session mode.
      * @throws JMSException
      */
-    public void openConnection() throws JMSException {
+    public synchronized void openConnection() throws JMSException {
         connection = connectionFactory.createConnection();
         connection.start();
         logger.debug("JMS Connection created and started");
     }
 
     /**
-     * Closes the connection to the JMS services.
+     * Closes the connection on which a session failed, along with its idle sessions, and opens a new one, unless
+     * another thread already did so or the connection was closed. This is done while holding the lock of this
+     * manager, so that other threads never find the connection closed, and the sessions they borrowed from the new
+     * connection are not closed when they fail because of the previous one.
+     *
+     * @param failedSession a session obtained from {@link #borrowSession()} which failed to send its messages.
+     * @throws JMSException if the new connection cannot be opened.
+     */
+    public void resetConnection(PooledSession failedSession) throws JMSException {
+        resetConnection(failedSession.connection);
+    }
+
+    private synchronized void resetConnection(Connection failedConnection) throws JMSException {
+        if (failedConnection != connection) {
+            logger.debug("JMS Connection already reset");
+            return;
+        }
+        try {
+            closeConnection();
+        } catch (JMSException e) {
+            logger.debug("Unable to close the failed JMS Connection", e);
+        }
+        openConnection();
+    }
+
+    /**
+     * Closes the idle sessions and the connection to the JMS services. Sessions borrowed before the connection is
+     * closed are closed rather than pooled once returned.
      *
      * @throws JMSException
      */
-    public void closeConnection() throws JMSException {
+    public synchronized void closeConnection() throws JMSException {
+        PooledSession pooledSession;
+        while ((pooledSession = idleSessions.pollFirst()) != null) {
+            pooledSession.close();
+        }
         if (null != connection) {
             try {
                 connection.close();
@@ -121,11 +179,95 @@ class JmsResourceManager {
      * @see Connection#createSession(boolean, int)
      */
     public Session createSession() throws JMSException {
+        return getConnection().createSession(false, sessionMode.getMode());
+    }
+
+    /**
+     * Borrows a session, with its producer, from the pool of idle sessions, or creates a new one if none is idle.
+     * The session is then confined to the calling thread until it is either {@link #returnSession(PooledSession)
+     * returned} or {@link #discardSession(PooledSession) discarded}.
+     *
+     * @return a session with its producer, transacted if batches are configured to be sent in transactions.
+     * @throws JMSException if trouble is encountered creating the session or its producer, in which case the
+     *         connection is {@link #resetConnection(PooledSession) reset}.
+     * @throws IllegalStateException if the connection hasn't been opened.
+     */
+    public PooledSession borrowSession() throws JMSException {
+        final Connection sessionConnection;
+        synchronized (this) {
+            final PooledSession pooledSession = idleSessions.pollFirst();
+            if (pooledSession != null) {
+                return pooledSession;
+            }
+            sessionConnection = getConnection();
+        }
+        Session session = null;
+        try {
+            session = transacted
+                    ? sessionConnection.createSession(true, Session.SESSION_TRANSACTED)
+                    : sessionConnection.createSession(false, sessionMode.getMode());
+            return new PooledSession(sessionConnection, session, createProducer(session), transacted);
+        } catch (JMSException e) {
+            if (session != null) {
+                try {
+                    session.close();
+                } catch (JMSException closeException) {
+                    // the connection likely failed, which must still be reset
+                    e.addSuppressed(closeException);
+                }
+            }
+            try {
+                resetConnection(sessionConnection);
+            } catch (JMSException resetException) {
+                e.addSuppressed(resetException);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a session to the pool once its messages were sent, so that it can be reused by any thread. The session
+     * is closed instead if it was created on a connection that has since been closed, or if the pool is full.
+     *
+     * @param pooledSession a session obtained from {@link #borrowSession()}.
+     */
+    public void returnSession(PooledSession pooledSession) {
+        synchronized (this) {
+            if (pooledSession.connection == connection && idleSessions.size() < maxIdleSessions) {
+                idleSessions.addFirst(pooledSession);
+                return;
+            }
+        }
+        pooledSession.close();
+    }
+
+    /**
+     * Returns true if the connection on which the session was created has since been closed, typically because
+     * another thread reset it, in which case the session is closed too.
+     *
+     * @param pooledSession a session obtained from {@link #borrowSession()}.
+     * @return true if the connection of the session was closed.
+     */
+    public synchronized boolean isConnectionClosed(PooledSession pooledSession) {
+        return pooledSession.connection != connection;
+    }
+
+    /**
+     * Closes a session that failed to send its messages, rather than returning it to the pool. Closing a transacted
+     * session rolls back the messages it sent since its last commit.
+     *
+     * @param pooledSession a session obtained from {@link #borrowSession()}.
+     */
+    public void discardSession(PooledSession pooledSession) {
+        pooledSession.close();
+    }
+
+    private synchronized Connection getConnection() {
         if (null == connection) {
             throw new IllegalStateException(
                     "JMS Connection not available to create session. The JMS Audit Service requires a restart.");
         }
-        return connection.createSession(false, sessionMode.getMode());
+        return connection;
     }
 
     /**
@@ -142,4 +284,56 @@ class JmsResourceManager {
         producer.setDeliveryMode(deliveryMode.getMode());
         return producer;
     }
+
+    /**
+     * A session with its producer, which is used by a single thread at a time.
+     */
+    static final class PooledSession {
+        private final Connection connection;
+        private final Session session;
+        private final MessageProducer producer;
+        private final boolean transacted;
+
+        private PooledSession(Connection connection, Session session, MessageProducer producer, boolean transacted) {
+            this.connection = connection;
+            this.session = session;
+            this.producer = producer;
+            this.transacted = transacted;
+        }
+
+        /**
+         * Returns the session.
+         *
+         * @return the session.
+         */
+        Session getSession() {
+            return session;
+        }
+
+        /**
+         * Returns the producer of the session, which sends messages to the configured JMS topic.
+         *
+         * @return the producer of the session.
+         */
+        MessageProducer getProducer() {
+            return producer;
+        }
+
+        /**
+         * Returns true if the session is transacted, in which case the messages it sent must be committed.
+         *
+         * @return true if the session is transacted.
+         */
+        boolean isTransacted() {
+            return transacted;
+        }
+
+        private void close() {
+            try {
+                session.close();
+            } catch (JMSException e) {
+                logger.debug("Unable to close JMS session", e);
+            }
+        }
+    }
 }
@@ -12,7 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
- * Portions Copyright 2018 Wren Security.
+ * Portions Copyright 2018-2026 Wren Security.
  */
 
 package org.forgerock.audit.handlers.jms;
@@ -32,13 +32,20 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.atMost;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.jms.CompletionListener;
 import javax.jms.Connection;
 import javax.jms.ConnectionFactory;
 import javax.jms.Destination;
@@ -63,6 +70,7 @@ import org.forgerock.json.JsonValue;
 import org.forgerock.json.resource.InternalServerErrorException;
 import org.forgerock.json.resource.NotSupportedException;
 import org.forgerock.json.resource.QueryResponse;
+import org.forgerock.json.resource.ActionResponse;
 import org.forgerock.json.resource.Requests;
 import org.forgerock.json.resource.ResourceException;
 import org.forgerock.json.resource.ResourceResponse;
@@ -72,6 +80,7 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -363,6 +372,302 @@ public class JmsAuditEventHandlerTest {
         assertThatPromise(response).failedWithException().isInstanceOf(NotSupportedException.class);
     }
 
+    @Test
+    public void testBatchesReusePooledSession() throws Exception {
+        // given
+        final MockJmsProvider jms = new MockJmsProvider();
+        final JmsAuditEventHandlerConfiguration configuration = getBufferedConfiguration();
+        final JmsAuditEventHandler jmsAuditEventHandler = jms.newHandler(configuration);
+        jmsAuditEventHandler.startup();
+
+        // when
+        for (int i = 0; i < 10; i++) {
+            publishTestEvent(jmsAuditEventHandler, i);
+        }
+        jmsAuditEventHandler.shutdown();
+
+        // then
+        verify(jms.connection, times(1)).createSession(false, Session.AUTO_ACKNOWLEDGE);
+        verify(jms.session, times(1)).createProducer(any(Destination.class));
+        verify(jms.producer, times(10)).send(any(TextMessage.class));
+        // the pooled session is only closed with the connection
+        verify(jms.session, times(1)).close();
+    }
+
+    @Test
+    public void testCommitsEachTransactedBatchOnce() throws Exception {
+        // given
+        final MockJmsProvider jms = new MockJmsProvider();
+        final JmsAuditEventHandlerConfiguration configuration = getBufferedConfiguration();
+        configuration.getBatch().setTransacted(true);
+        final JmsAuditEventHandler jmsAuditEventHandler = jms.newHandler(configuration);
+        // queue 3 full batches before the worker thread starts
+        for (int i = 0; i < 9; i++) {
+            publishTestEvent(jmsAuditEventHandler, i);
+        }
+
+        // when
+        jmsAuditEventHandler.startup();
+        jmsAuditEventHandler.shutdown();
+
+        // then
+        verify(jms.connection, times(1)).createSession(true, Session.SESSION_TRANSACTED);
+        verify(jms.producer, times(9)).send(any(TextMessage.class));
+        verify(jms.session, times(3)).commit();
+        verify(jms.session, never()).rollback();
+    }
+
+    @Test
+    public void testBatchesArePublishedInParallel() throws Exception {
+        // given
+        final MockJmsProvider jms = new MockJmsProvider();
+        final AtomicInteger concurrentSends = new AtomicInteger();
+        final AtomicInteger maxConcurrentSends = new AtomicInteger();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                final int concurrent = concurrentSends.incrementAndGet();
+                while (maxConcurrentSends.get() < concurrent) {
+                    maxConcurrentSends.compareAndSet(maxConcurrentSends.get(), concurrent);
+                }
+                Thread.sleep(100L);
+                concurrentSends.decrementAndGet();
+                return null;
+            }
+        }).when(jms.producer).send(any(TextMessage.class));
+        final JmsAuditEventHandlerConfiguration configuration = getBufferedConfiguration();
+        configuration.getBatch().setThreadCount(2);
+        configuration.getBatch().setMaxBatchedEvents(1);
+        final JmsAuditEventHandler jmsAuditEventHandler = jms.newHandler(configuration);
+        for (int i = 0; i < 4; i++) {
+            publishTestEvent(jmsAuditEventHandler, i);
+        }
+
+        // when
+        jmsAuditEventHandler.startup();
+        jmsAuditEventHandler.shutdown();
+
+        // then
+        verify(jms.producer, times(4)).send(any(TextMessage.class));
+        assertThat(maxConcurrentSends.get()).isEqualTo(2);
+    }
+
+    @DataProvider
+    public Object[][] closedSessionFailures() {
+        return new Object[][] {
+            { new JMSException("session closed") },
+            // some providers fail with a runtime exception when their session is closed during a send
+            { new NullPointerException("session closed") }
+        };
+    }
+
+    @Test(dataProvider = "closedSessionFailures")
+    public void testFailedSendResetsConnectionOnceForAllWorkers(final Exception closedSessionFailure)
+            throws Exception {
+        // given connections whose sessions fail to send once closed, and a first send which fails
+        final ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        final Topic topic = mock(Topic.class);
+        final CountDownLatch bothSending = new CountDownLatch(2);
+        final AtomicBoolean failNextSend = new AtomicBoolean(true);
+        when(connectionFactory.createConnection()).thenAnswer(new Answer<Connection>() {
+            @Override
+            public Connection answer(InvocationOnMock invocation) throws Throwable {
+                return newClosableConnection(topic, bothSending, failNextSend, closedSessionFailure);
+            }
+        });
+        final JmsAuditEventHandlerConfiguration configuration = getBufferedConfiguration();
+        configuration.getBatch().setThreadCount(2);
+        configuration.getBatch().setMaxBatchedEvents(1);
+        final JmsAuditEventHandler jmsAuditEventHandler = new JmsAuditEventHandler(
+                new DefaultJmsContextManager(connectionFactory, topic), configuration, CORE_EVENT_TOPICS);
+        for (int i = 0; i < 4; i++) {
+            publishTestEvent(jmsAuditEventHandler, i);
+        }
+
+        // when
+        jmsAuditEventHandler.startup();
+        jmsAuditEventHandler.shutdown();
+
+        // then the worker whose session was closed by the reset retries on the new connection, without resetting it
+        verify(connectionFactory, times(2)).createConnection();
+        assertThat(jmsAuditEventHandler.getStatistics().getPublishedEvents()).isEqualTo(4);
+        assertThat(jmsAuditEventHandler.getStatistics().getFailedEvents()).isEqualTo(0);
+    }
+
+    @Test
+    public void testFailedSessionIsNotClosedAgainOnceItsConnectionIsReset() throws Exception {
+        // given a provider which throws when closing a session whose connection is closed, and a first send which fails
+        final MockJmsProvider jms = new MockJmsProvider();
+        doThrow(new JMSException("send failed")).doNothing().when(jms.producer).send(any(Message.class));
+        doThrow(new IllegalStateException("session already closed")).when(jms.session).close();
+        final JmsAuditEventHandler jmsAuditEventHandler = jms.newHandler(getDefaultConfiguration());
+        jmsAuditEventHandler.startup();
+
+        // when
+        final Promise<ResourceResponse, ResourceException> promise = jmsAuditEventHandler.publishEvent(null,
+                "TEST_AUDIT", json(object(field("_id", "_id"), field("name", "TestEvent"))));
+
+        // then the send is retried on the new connection
+        assertThatPromise(promise).succeeded();
+        verify(jms.connectionFactory, times(2)).createConnection();
+        verify(jms.session, never()).close();
+        assertThat(jmsAuditEventHandler.getStatistics().getPublishedEvents()).isEqualTo(1);
+        assertThat(jmsAuditEventHandler.getStatistics().getFailedEvents()).isEqualTo(0);
+    }
+
+    @Test
+    public void testFailedSessionCreationResetsConnectionEvenIfSessionFailsToClose() throws Exception {
+        // given a first connection which fails to create producers and to close sessions, as when it is broken
+        final MockJmsProvider jms = new MockJmsProvider();
+        final Connection failedConnection = mock(Connection.class);
+        final Session failedSession = mock(Session.class);
+        when(jms.connectionFactory.createConnection()).thenReturn(failedConnection, jms.connection);
+        when(failedConnection.createSession(anyBoolean(), anyInt())).thenReturn(failedSession);
+        when(failedSession.createProducer(any(Destination.class))).thenThrow(new JMSException("transport disposed"));
+        doThrow(new JMSException("transport disposed")).when(failedSession).close();
+        final JmsAuditEventHandler jmsAuditEventHandler = jms.newHandler(getDefaultConfiguration());
+        jmsAuditEventHandler.startup();
+
+        // when
+        final Promise<ResourceResponse, ResourceException> promise = jmsAuditEventHandler.publishEvent(null,
+                "TEST_AUDIT", json(object(field("_id", "_id"), field("name", "TestEvent"))));
+
+        // then the send is retried on the new connection
+        assertThatPromise(promise).succeeded();
+        verify(jms.connectionFactory, times(2)).createConnection();
+        verify(jms.producer).send(any(TextMessage.class));
+    }
+
+    /**
+     * Mocks a connection whose sessions fail to send with the given failure once the connection is closed. Sends wait
+     * for each other until two of them are in progress, then the first one fails if requested, while the other one
+     * takes some time.
+     */
+    private static Connection newClosableConnection(final Topic topic, final CountDownLatch bothSending,
+            final AtomicBoolean failNextSend, final Exception closedSessionFailure) throws JMSException {
+        final Connection connection = mock(Connection.class);
+        final AtomicBoolean closed = new AtomicBoolean();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                closed.set(true);
+                return null;
+            }
+        }).when(connection).close();
+        when(connection.createSession(anyBoolean(), anyInt())).thenAnswer(new Answer<Session>() {
+            @Override
+            public Session answer(InvocationOnMock invocation) throws Throwable {
+                final Session session = mock(Session.class);
+                final MessageProducer producer = mock(MessageProducer.class);
+                when(session.createProducer(topic)).thenReturn(producer);
+                when(session.createTextMessage(anyString())).thenReturn(mock(TextMessage.class));
+                doAnswer(new Answer<Void>() {
+                    @Override
+                    public Void answer(InvocationOnMock invocation) throws Throwable {
+                        bothSending.countDown();
+                        bothSending.await(1, TimeUnit.SECONDS);
+                        if (failNextSend.compareAndSet(true, false)) {
+                            throw new JMSException("send failed");
+                        }
+                        Thread.sleep(100L);
+                        if (closed.get()) {
+                            throw closedSessionFailure;
+                        }
+                        return null;
+                    }
+                }).when(producer).send(any(TextMessage.class));
+                return session;
+            }
+        });
+        return connection;
+    }
+
+    @Test
+    public void testSendsBatchAsynchronously() throws Exception {
+        // given
+        final MockJmsProvider jms = new MockJmsProvider();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        invocation.<CompletionListener>getArgument(1).onCompletion(invocation.<Message>getArgument(0));
+                    }
+                }).start();
+                return null;
+            }
+        }).when(jms.producer).send(any(Message.class), any(CompletionListener.class));
+        final JmsAuditEventHandlerConfiguration configuration = getBufferedConfiguration();
+        configuration.getBatch().setAsyncSend(true);
+        final JmsAuditEventHandler jmsAuditEventHandler = jms.newHandler(configuration);
+        jmsAuditEventHandler.startup();
+
+        // when
+        for (int i = 0; i < 5; i++) {
+            publishTestEvent(jmsAuditEventHandler, i);
+        }
+        jmsAuditEventHandler.shutdown();
+
+        // then
+        verify(jms.producer, times(5)).send(any(Message.class), any(CompletionListener.class));
+        verify(jms.producer, never()).send(any(Message.class));
+        assertThat(jmsAuditEventHandler.getStatistics().getPublishedEvents()).isEqualTo(5);
+        assertThat(jmsAuditEventHandler.getStatistics().getFailedEvents()).isEqualTo(0);
+    }
+
+    @Test
+    public void testFallsBackToSynchronousSendWhenAsyncSendIsNotSupported() throws Exception {
+        // given
+        final MockJmsProvider jms = new MockJmsProvider();
+        doThrow(new AbstractMethodError()).when(jms.producer).send(any(Message.class), any(CompletionListener.class));
+        final JmsAuditEventHandlerConfiguration configuration = getBufferedConfiguration();
+        configuration.getBatch().setAsyncSend(true);
+        final JmsAuditEventHandler jmsAuditEventHandler = jms.newHandler(configuration);
+        jmsAuditEventHandler.startup();
+
+        // when
+        for (int i = 0; i < 5; i++) {
+            publishTestEvent(jmsAuditEventHandler, i);
+        }
+        jmsAuditEventHandler.shutdown();
+
+        // then
+        verify(jms.producer, times(1)).send(any(Message.class), any(CompletionListener.class));
+        verify(jms.producer, times(5)).send(any(Message.class));
+        assertThat(jmsAuditEventHandler.getStatistics().getPublishedEvents()).isEqualTo(5);
+    }
+
+    @Test
+    public void testMetricsAction() throws Exception {
+        // given
+        final MockJmsProvider jms = new MockJmsProvider();
+        doNothing().doThrow(mock(JMSException.class)).when(jms.producer).send(any(Message.class));
+        final JmsAuditEventHandler jmsAuditEventHandler = jms.newHandler(getDefaultConfiguration());
+        jmsAuditEventHandler.startup();
+        publishTestEvent(jmsAuditEventHandler, 0);
+        // fails, then fails again once retried
+        publishTestEvent(jmsAuditEventHandler, 1);
+
+        // when
+        final Promise<ActionResponse, ResourceException> promise = jmsAuditEventHandler.handleAction(
+                null, "TEST_AUDIT", Requests.newActionRequest("", JmsAuditEventHandler.METRICS_ACTION_NAME));
+
+        // then
+        assertThatPromise(promise).succeeded();
+        final JsonValue metrics = promise.get().getJsonContent();
+        assertThat(metrics.get("queueDepth").asInteger()).isEqualTo(0);
+        assertThat(metrics.get("publishedEvents").asLong()).isEqualTo(1);
+        assertThat(metrics.get("publishedBatches").asLong()).isEqualTo(1);
+        assertThat(metrics.get("failedEvents").asLong()).isEqualTo(1);
+        assertThat(metrics.get("maxPublishLatencyNanos").asLong()).isPositive();
+    }
+
+    private static void publishTestEvent(AuditEventHandler jmsAuditEventHandler, int index) {
+        jmsAuditEventHandler.publishEvent(null, "TEST_AUDIT",
+                json(object(field("name", "TestEvent"), field("index", index))));
+    }
+
     private JmsAuditEventHandlerConfiguration getDefaultConfiguration() throws Exception {
         return parseAuditEventHandlerConfiguration(
                 JmsAuditEventHandlerConfiguration.class,
@@ -380,6 +685,29 @@ public class JmsAuditEventHandlerTest {
                 JmsAuditEventHandlerTest.class.getResourceAsStream(RESOURCE_PATH + testConfigFile));
     }
 
+    /**
+     * Mocks of a JMS provider with a single session, which sends messages synchronously.
+     */
+    private static class MockJmsProvider {
+        private final ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        private final Topic topic = mock(Topic.class);
+        private final Connection connection = mock(Connection.class);
+        private final Session session = mock(Session.class);
+        private final MessageProducer producer = mock(MessageProducer.class);
+
+        MockJmsProvider() throws JMSException {
+            when(connectionFactory.createConnection()).thenReturn(connection);
+            when(connection.createSession(anyBoolean(), anyInt())).thenReturn(session);
+            when(session.createProducer(topic)).thenReturn(producer);
+            when(session.createTextMessage(anyString())).thenReturn(mock(TextMessage.class));
+        }
+
+        JmsAuditEventHandler newHandler(JmsAuditEventHandlerConfiguration configuration) throws ResourceException {
+            return new JmsAuditEventHandler(
+                    new DefaultJmsContextManager(connectionFactory, topic), configuration, CORE_EVENT_TOPICS);
+        }
+    }
+
     private static class DefaultJmsContextManager implements JmsContextManager {
 
         private final ConnectionFactory connectionFactory;
@@ -12,95 +12,138 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Portions copyright 2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.audit.handlers.json;
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
 
 /**
- * Wraps a {@link ByteBuffer} to expose the {@link OutputStream} interface, and grows the underlying buffer as
- * data is added to it.
+ * Exposes the {@link OutputStream} interface over a chain of {@link ByteBuffer}s from a {@link ByteBufferPool}. As
+ * data is added, buffers are appended to the chain, so that existing data is never copied; the chain is written
+ * with a single gathering write, then its buffers are returned to the pool.
  */
 class ByteBufferOutputStream extends OutputStream {
 
+    private final ByteBufferPool pool;
+    private ByteBuffer[] buffers = new ByteBuffer[8];
+    private int bufferCount;
+    private int size;
+
     /**
-     * Buffer grows 30% when re-sized.
+     * Creates a {@code ByteBufferOutputStream} with buffers from the given pool.
+     *
+     * @param pool Pool of buffers
      */
-    private static final double GROWTH_RATE = 1.33;
-
-    private ByteBuffer buffer;
+    public ByteBufferOutputStream(final ByteBufferPool pool) {
+        this.pool = pool;
+    }
 
     /**
-     * Creates a {@code ByteBufferOutputStream} with the given {@link ByteBuffer}.
+     * Gets the number of bytes written since the last {@link #clear()}.
      *
-     * @param buffer Initial buffer instance
+     * @return Number of bytes held by the buffers
      */
-    public ByteBufferOutputStream(final ByteBuffer buffer) {
-        this.buffer = buffer;
+    public int size() {
+        return size;
     }
 
     /**
-     * Gets the underlying buffer.
+     * Writes all the data to the channel at its current position, with gathering writes.
      *
-     * @return Underlying buffer
+     * @param channel Channel to which the data is written
+     * @return Number of bytes written
+     * @throws IOException failed to write to the channel
      */
-    public ByteBuffer byteBuffer() {
-        return buffer;
+    public long writeTo(final GatheringByteChannel channel) throws IOException {
+        for (int i = 0; i < bufferCount; ++i) {
+            buffers[i].flip();
+        }
+        long written = 0;
+        while (written < size) {
+            written += channel.write(buffers, 0, bufferCount);
+        }
+        return written;
     }
 
     /**
-     * Clears the buffer, but does not erase the underlying data, making it ready to be reused to accept new data.
+     * Discards the data written after the first {@code newSize} bytes, for instance the partial output of an event
+     * which failed to be serialized.
+     *
+     * @param newSize Number of bytes to keep
      */
-    public void clear() {
-        buffer.clear();
+    public void truncate(final int newSize) {
+        if (newSize >= size) {
+            return;
+        }
+        // all the buffers but the last one are full
+        int i = 0;
+        int remaining = newSize;
+        while (remaining > buffers[i].position()) {
+            remaining -= buffers[i].position();
+            ++i;
+        }
+        buffers[i].position(remaining);
+        for (int j = i + 1; j < bufferCount; ++j) {
+            pool.release(buffers[j]);
+            buffers[j] = null;
+        }
+        bufferCount = i + 1;
+        size = newSize;
     }
 
     /**
-     * Replaces the existing buffer with a new buffer having increased size.
-     *
-     * @param newCapacity New capacity
+     * Returns the buffers to the pool, making the stream ready to be reused to accept new data.
      */
-    private void growTo(final int newCapacity) {
-        final ByteBuffer oldBuffer = buffer;
-        if (buffer.isDirect()) {
-            buffer = ByteBuffer.allocateDirect(newCapacity);
-        } else {
-            buffer = ByteBuffer.allocate(newCapacity);
+    public void clear() {
+        for (int i = 0; i < bufferCount; ++i) {
+            pool.release(buffers[i]);
+            buffers[i] = null;
+        }
+        bufferCount = 0;
+        size = 0;
+    }
+
+    private ByteBuffer writableBuffer() {
+        if (bufferCount > 0 && buffers[bufferCount - 1].hasRemaining()) {
+            return buffers[bufferCount - 1];
+        }
+        if (bufferCount == buffers.length) {
+            buffers = Arrays.copyOf(buffers, bufferCount * 2);
         }
-        // copy data
-        oldBuffer.flip();
-        buffer.put(oldBuffer);
+        final ByteBuffer buffer = pool.acquire();
+        buffers[bufferCount++] = buffer;
+        return buffer;
     }
 
     @Override
     public void write(final int b) {
-        if (buffer.remaining() == 0) {
-            growTo((int) (buffer.capacity() * GROWTH_RATE));
-        }
-        buffer.put((byte) b);
+        writableBuffer().put((byte) b);
+        ++size;
     }
 
     @Override
     public void write(final byte[] bytes) {
-        if (buffer.remaining() < bytes.length) {
-            final int newSize = Math.max((int) (buffer.capacity() * GROWTH_RATE),
-                    buffer.position() + bytes.length);
-            growTo(newSize);
-        }
-        buffer.put(bytes);
+        write(bytes, 0, bytes.length);
     }
 
     @Override
-    public void write(final byte[] bytes, final int off, final int len) {
+    public void write(final byte[] bytes, int off, int len) {
         if (len < 0) {
             throw new IllegalArgumentException("len must be positive");
         }
-        if (buffer.remaining() < len) {
-            final int newSize = Math.max((int) (buffer.capacity() * GROWTH_RATE), buffer.position() + len);
-            growTo(newSize);
+        size += len;
+        while (len > 0) {
+            final ByteBuffer buffer = writableBuffer();
+            final int n = Math.min(len, buffer.remaining());
+            buffer.put(bytes, off, n);
+            off += n;
+            len -= n;
         }
-        buffer.put(bytes, off, len);
     }
 }
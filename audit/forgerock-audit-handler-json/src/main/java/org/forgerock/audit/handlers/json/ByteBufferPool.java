@@ -0,0 +1,78 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.audit.handlers.json;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A pool of direct {@link ByteBuffer}s of the same capacity, which hold serialized events until they are written to
+ * file. Buffers are allocated on demand, and up to a fixed number of released buffers are kept for reuse.
+ * <p>
+ * This class is not thread-safe, and is intended to be used by the file-writer thread.
+ */
+final class ByteBufferPool {
+
+    private final int bufferSize;
+    private final int maxPooledBuffers;
+    private final Deque<ByteBuffer> buffers;
+
+    /**
+     * Creates a {@code ByteBufferPool}.
+     *
+     * @param bufferSize Capacity of the buffers
+     * @param maxPooledBuffers Maximum number of released buffers kept for reuse
+     */
+    ByteBufferPool(final int bufferSize, final int maxPooledBuffers) {
+        this.bufferSize = bufferSize;
+        this.maxPooledBuffers = maxPooledBuffers;
+        this.buffers = new ArrayDeque<>(maxPooledBuffers);
+    }
+
+    /**
+     * Gets a cleared buffer, which should be {@link #release(ByteBuffer) released} once its data is written.
+     *
+     * @return Cleared buffer
+     */
+    ByteBuffer acquire() {
+        final ByteBuffer buffer = buffers.pollFirst();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Returns a buffer to the pool, which keeps it if it holds less than its maximum number of buffers.
+     *
+     * @param buffer Buffer acquired from this pool
+     */
+    void release(final ByteBuffer buffer) {
+        if (buffers.size() < maxPooledBuffers) {
+            buffer.clear();
+            // reuse the most recently used buffers first, since they are the most likely to be cached
+            buffers.addFirst(buffer);
+        }
+    }
+
+    /**
+     * Gets the number of buffers kept for reuse.
+     *
+     * @return Number of pooled buffers
+     */
+    int getPooledBufferCount() {
+        return buffers.size();
+    }
+}
@@ -12,25 +12,20 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.audit.handlers.json;
 
-import static org.forgerock.audit.util.JsonValueUtils.JSONVALUE_FILTER_VISITOR;
+import static org.forgerock.audit.util.JsonValueUtils.compileQueryFilter;
 import static org.forgerock.json.JsonValue.*;
 import static org.forgerock.json.resource.ResourceException.*;
 import static org.forgerock.json.resource.ResourceResponse.FIELD_CONTENT_ID;
 import static org.forgerock.json.resource.Responses.*;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.forgerock.audit.events.EventTopicsMetaData;
@@ -48,13 +43,17 @@ import org.forgerock.json.resource.QueryResponse;
 import org.forgerock.json.resource.ResourceException;
 import org.forgerock.json.resource.ResourceResponse;
 import org.forgerock.services.context.Context;
+import org.forgerock.util.Function;
 import org.forgerock.util.promise.Promise;
+import org.forgerock.util.query.CompiledQueryFilter;
 import org.forgerock.util.query.QueryFilter;
 
 /**
  * {@link AuditEventHandler} for persisting raw JSON events to a file.
  * <p>
  * The file format is a UTF-8 text-file, with one JSON event per line, and each line terminated by a newline character.
+ * Reads and queries use a {@link JsonEventIndex} of the current file, so that events are looked up by {@code _id},
+ * {@code transactionId} or {@code timestamp} without scanning the whole file.
  */
 public class JsonAuditEventHandler extends AuditEventHandlerBase {
 
@@ -80,12 +79,11 @@ public class JsonAuditEventHandler extends AuditEventHandlerBase {
      */
     public static final String FLUSH_FILE_ACTION_NAME = "flush";
 
-    private static final String ID_FIELD_PATTERN_PREFIX = "\"" + FIELD_CONTENT_ID + "\"\\s*:\\s*\"";
-    private static final String EVENT_ID_FIELD_PATTERN_PREFIX = "\"" + EVENT_ID_FIELD + "\"\\s*:\\s*\"";
-    private static final String FIELD_PATTERN_SUFFIX = "\"";
+    private static final JsonPointer ID_POINTER = new JsonPointer().child(FIELD_CONTENT_ID);
 
     private final JsonFileWriter jsonFileWriter;
     private final boolean elasticsearchCompatible;
+    private final boolean groupCommitEnabled;
 
     /**
      * Creates a {@code JsonAuditEventHandler} instances.
@@ -99,6 +97,7 @@ public class JsonAuditEventHandler extends AuditEventHandlerBase {
         super(configuration.getName(), eventTopicsMetaData, configuration.getTopics(), configuration.isEnabled());
         jsonFileWriter = new JsonFileWriter(configuration.getTopics(), configuration, true);
         elasticsearchCompatible = configuration.isElasticsearchCompatible();
+        groupCommitEnabled = configuration.getGroupCommit().isEnabled();
     }
 
     @Override
@@ -114,12 +113,28 @@ public class JsonAuditEventHandler extends AuditEventHandlerBase {
     @Override
     public Promise<ResourceResponse, ResourceException> publishEvent(final Context context, final String topic,
             final JsonValue event) {
+        final Promise<Void, IOException> written;
         try {
-            jsonFileWriter.put(topic, event);
+            written = jsonFileWriter.put(topic, event);
         } catch (Exception e) {
             return newResourceException(INTERNAL_ERROR, "Failed to add event to queue", e).asPromise();
         }
-        return newResourceResponse(event.get(FIELD_CONTENT_ID).asString(), null, event).asPromise();
+        final ResourceResponse response = newResourceResponse(event.get(FIELD_CONTENT_ID).asString(), null, event);
+        if (!groupCommitEnabled) {
+            // the event is only queued
+            return response.asPromise();
+        }
+        return written.then(new Function<Void, ResourceResponse, ResourceException>() {
+            @Override
+            public ResourceResponse apply(Void value) {
+                return response;
+            }
+        }, new Function<IOException, ResourceResponse, ResourceException>() {
+            @Override
+            public ResourceResponse apply(IOException e) throws ResourceException {
+                throw newResourceException(INTERNAL_ERROR, "Failed to write event", e);
+            }
+        });
     }
 
     @Override
@@ -129,20 +144,15 @@ public class JsonAuditEventHandler extends AuditEventHandlerBase {
         if (jsonFilePath == null) {
             return newResourceException(NOT_FOUND, "Topic not found: " + topic).asPromise();
         }
-        final String fieldPatternPrefix = elasticsearchCompatible
-                ? EVENT_ID_FIELD_PATTERN_PREFIX : ID_FIELD_PATTERN_PREFIX;
-        final Matcher idMatcher = Pattern.compile(fieldPatternPrefix + resourceId + FIELD_PATTERN_SUFFIX).matcher("");
-        String line;
-        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(
-                Files.newInputStream(jsonFilePath), StandardCharsets.UTF_8))) {
-            line = reader.readLine();
-            while (line != null) {
-                if (idMatcher.reset(line).find()) {
-                    final JsonValue event = denormalizeJsonEvent(new JsonValue(
-                            OBJECT_MAPPER.readValue(line, Map.class)));
+        try {
+            final JsonEventIndex.Selection selection = jsonFileWriter.getTopicIndex(topic)
+                    .select(QueryFilter.equalTo(ID_POINTER, resourceId));
+            for (int entry = selection.next(0); entry >= 0; entry = selection.next(entry + 1)) {
+                // the index matches identifiers by hash and ignoring case, so check for an exact match
+                final JsonValue event = denormalizeJsonEvent(readEvent(selection, entry));
+                if (resourceId.equals(event.get(FIELD_CONTENT_ID).getObject())) {
                     return newResourceResponse(resourceId, null, event).asPromise();
                 }
-                line = reader.readLine();
             }
             return newResourceException(NOT_FOUND, "Resource not found with ID: " + resourceId).asPromise();
         } catch (Exception e) {
@@ -159,13 +169,13 @@ public class JsonAuditEventHandler extends AuditEventHandlerBase {
         }
         final QueryFilter<JsonPointer> queryFilter = query.getQueryFilter();
         int results = 0;
-        String line;
-        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(
-                Files.newInputStream(jsonFilePath), StandardCharsets.UTF_8))) {
-            line = reader.readLine();
-            while (line != null) {
-                final JsonValue event = denormalizeJsonEvent(new JsonValue(OBJECT_MAPPER.readValue(line, Map.class)));
-                if (queryFilter.accept(JSONVALUE_FILTER_VISITOR, event)) {
+        try {
+            final CompiledQueryFilter<JsonValue> compiledFilter = compileQueryFilter(queryFilter);
+            // the index only narrows down the candidate events, which are all matched against the query filter
+            final JsonEventIndex.Selection selection = jsonFileWriter.getTopicIndex(topic).select(queryFilter);
+            for (int entry = selection.next(0); entry >= 0; entry = selection.next(entry + 1)) {
+                final JsonValue event = denormalizeJsonEvent(readEvent(selection, entry));
+                if (compiledFilter.matches(event)) {
                     ++results;
                     final ResourceResponse resourceResponse =
                             newResourceResponse(event.get(FIELD_CONTENT_ID).asString(), null, event);
@@ -173,7 +183,6 @@ public class JsonAuditEventHandler extends AuditEventHandlerBase {
                         break;
                     }
                 }
-                line = reader.readLine();
             }
         } catch (Exception e) {
             return newResourceException(INTERNAL_ERROR, "Failed to read json file: " + jsonFilePath, e).asPromise();
@@ -207,6 +216,11 @@ public class JsonAuditEventHandler extends AuditEventHandlerBase {
         }
     }
 
+    private static JsonValue readEvent(final JsonEventIndex.Selection selection, final int entry)
+            throws IOException {
+        return new JsonValue(OBJECT_MAPPER.readValue(selection.read(entry), Map.class));
+    }
+
     /**
      * Reverses all ElasticSearch JSON normalization, if {@link #elasticsearchCompatible} is enabled.
      *
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.audit.handlers.json;
@@ -106,6 +107,9 @@ public class JsonAuditEventHandlerConfiguration extends FileBasedEventHandlerCon
         @JsonPropertyDescription("audit.handlers.json.buffering.writeInterval")
         private String writeInterval;
 
+        @JsonPropertyDescription("audit.handlers.json.buffering.serializeOnPublish")
+        private boolean serializeOnPublish = true;
+
         /**
          * Gets the buffer capacity, which are the maximum number of events that can be buffered.
          *
@@ -143,5 +147,29 @@ public class JsonAuditEventHandlerConfiguration extends FileBasedEventHandlerCon
         public void setWriteInterval(String writeInterval) {
             this.writeInterval = writeInterval;
         }
+
+        /**
+         * Gets whether events are serialized by the publishing threads, instead of the file-writer thread.
+         * <p>
+         * By default, events are serialized by the publishing threads. Serializing them by the file-writer thread
+         * requires that they are not modified once published, including by the other handlers of the audit service.
+         *
+         * @return {@code true} if events are serialized by the publishing threads
+         */
+        public boolean isSerializeOnPublish() {
+            return serializeOnPublish;
+        }
+
+        /**
+         * Sets whether events are serialized by the publishing threads, instead of the file-writer thread.
+         * <p>
+         * By default, events are serialized by the publishing threads. Serializing them by the file-writer thread
+         * requires that they are not modified once published, including by the other handlers of the audit service.
+         *
+         * @param serializeOnPublish {@code true} if events are serialized by the publishing threads
+         */
+        public void setSerializeOnPublish(boolean serializeOnPublish) {
+            this.serializeOnPublish = serializeOnPublish;
+        }
     }
 }
@@ -0,0 +1,422 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.audit.handlers.json;
+
+import static org.forgerock.audit.events.AuditEventBuilder.TIMESTAMP;
+import static org.forgerock.audit.events.AuditEventBuilder.TRANSACTION_ID;
+import static org.forgerock.audit.handlers.json.JsonAuditEventHandler.OBJECT_MAPPER;
+import static org.forgerock.json.resource.ResourceResponse.FIELD_CONTENT_ID;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.forgerock.audit.events.handlers.index.EventIndex;
+import org.forgerock.json.JsonPointer;
+import org.forgerock.util.query.QueryFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the events in a newline-delimited JSON audit file, which maps the {@code _id}, {@code transactionId} and
+ * {@code timestamp} of each event to its byte offset in the file, using an {@link EventIndex}.
+ * <p>
+ * Entries are appended by the single thread writing the file, and only become visible to queries once the bytes of
+ * their events have been written to the file. The index is reloaded from its sidecar file on startup, and any events
+ * missing from the sidecar are indexed by scanning the end of the audit file. Events are read back through memory
+ * mappings of the audit file.
+ */
+final class JsonEventIndex implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(JsonEventIndex.class);
+
+    private static final JsonPointer ID_FIELD = new JsonPointer().child(FIELD_CONTENT_ID);
+    private static final JsonPointer TRANSACTION_ID_FIELD = new JsonPointer().child(TRANSACTION_ID);
+    private static final JsonPointer TIMESTAMP_FIELD = new JsonPointer().child(TIMESTAMP);
+
+    private static final int MAGIC = 0x4a494458;
+    private static final int ID_KEY = 0;
+
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private final Path dataFile;
+    private final String idFieldName;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // committed entries, guarded by lock, although the sidecar file is only written by the writer thread
+    private final EventIndex index;
+    private long end;
+    private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    // pending entries, only accessed by the writer thread
+    private int[] pendingOffsets = new int[64];
+    private String[][] pendingKeys = new String[64][];
+    private String[] pendingTimestamps = new String[64];
+    private int pendingCount;
+
+    /**
+     * Creates an empty index of the given audit file, which must be {@link #open() opened} before use.
+     *
+     * @param dataFile Audit file
+     * @param idFieldName Name of the field holding the event identifier in the audit file
+     */
+    JsonEventIndex(final Path dataFile, final String idFieldName) {
+        this.dataFile = dataFile;
+        this.idFieldName = idFieldName;
+        this.index = new EventIndex(dataFile, MAGIC, TIMESTAMP_FIELD, ID_FIELD, TRANSACTION_ID_FIELD);
+    }
+
+    /**
+     * Gets the sidecar file this index is persisted to.
+     *
+     * @return Index file path
+     */
+    Path getIndexFile() {
+        return index.getIndexFile();
+    }
+
+    /**
+     * Loads the index from its sidecar file, discarding any entries which do not match the audit file, and then
+     * indexes the events of the audit file which were missing from the sidecar.
+     *
+     * @throws IOException failed to read the audit file
+     */
+    void open() throws IOException {
+        final long dataFileSize = Files.exists(dataFile) ? Files.size(dataFile) : 0L;
+        long validLength = index.load(0L, dataFileSize);
+        if (index.size() > 0 && !lastEntryMatches()) {
+            logger.warn("Index {} does not match {}, rebuilding it", index.getIndexFile(), dataFile);
+            index.clear();
+            validLength = 0L;
+        }
+        index.openOutput(validLength);
+        catchUp(dataFileSize);
+    }
+
+    /**
+     * Records an event which has been added to the write buffer of the audit file.
+     *
+     * @param bufferOffset Offset of the event in the write buffer
+     * @param id Event identifier, or {@code null} if not a string
+     * @param transactionId Event transaction identifier, or {@code null} if not a string
+     * @param timestamp Event timestamp, or {@code null} if not a string
+     */
+    void append(final int bufferOffset, final String id, final String transactionId, final String timestamp) {
+        if (pendingCount == pendingOffsets.length) {
+            final int length = pendingCount * 2;
+            pendingOffsets = Arrays.copyOf(pendingOffsets, length);
+            pendingKeys = Arrays.copyOf(pendingKeys, length);
+            pendingTimestamps = Arrays.copyOf(pendingTimestamps, length);
+        }
+        pendingOffsets[pendingCount] = bufferOffset;
+        pendingKeys[pendingCount] = new String[] { id, transactionId };
+        pendingTimestamps[pendingCount] = timestamp;
+        ++pendingCount;
+    }
+
+    /**
+     * Makes the pending events visible to queries, once the write buffer has been written to the audit file, and
+     * appends them to the sidecar file.
+     *
+     * @param bufferPosition Position in the audit file at which the write buffer was written
+     * @param newEnd Position in the audit file after the write buffer
+     */
+    void commit(final long bufferPosition, final long newEnd) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < pendingCount; ++i) {
+                index.add(bufferPosition + pendingOffsets[i], pendingKeys[i], pendingTimestamps[i]);
+            }
+            end = newEnd;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        for (int i = 0; i < pendingCount; ++i) {
+            index.write(bufferPosition + pendingOffsets[i], pendingKeys[i], pendingTimestamps[i]);
+        }
+        index.flush();
+        discardPending();
+    }
+
+    /**
+     * Discards the pending events, after the write buffer could not be written to the audit file.
+     */
+    void discardPending() {
+        Arrays.fill(pendingKeys, 0, pendingCount, null);
+        Arrays.fill(pendingTimestamps, 0, pendingCount, null);
+        pendingCount = 0;
+    }
+
+    /**
+     * Removes all the committed entries, after the audit file has been rotated or recreated, but keeps the pending
+     * events which have not yet been written.
+     */
+    void reset() {
+        lock.writeLock().lock();
+        try {
+            index.clear();
+            end = 0L;
+            segments = new MappedByteBuffer[0];
+        } finally {
+            lock.writeLock().unlock();
+        }
+        index.openOutput(0L);
+    }
+
+    @Override
+    public void close() throws IOException {
+        index.close();
+    }
+
+    /**
+     * Selects the committed events which may match a query filter, using the index where the filter allows it.
+     *
+     * @param filter Query filter, or {@code null} to select all events
+     * @return Candidate events, which must still be matched against the filter
+     * @throws IOException failed to map the audit file
+     */
+    Selection select(final QueryFilter<JsonPointer> filter) throws IOException {
+        lock.readLock().lock();
+        try {
+            return new Selection(index.select(filter), end, mapSegments());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks that the last loaded entry points at the start of an event with the same identifier, so that a stale
+     * sidecar, left behind by an audit file which has since been replaced, is discarded.
+     */
+    private boolean lastEntryMatches() {
+        final long offset = index.offset(index.size() - 1);
+        try (final FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            if (offset > 0) {
+                final ByteBuffer previous = ByteBuffer.allocate(1);
+                channel.read(previous, offset - 1);
+                if (previous.get(0) != '\n') {
+                    return false;
+                }
+            }
+            final byte[] line = readLine(channel, offset);
+            final Object id = line == null ? null : parseField(line, line.length, idFieldName);
+            return index.lastEntryMatches(ID_KEY, asString(id));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static byte[] readLine(final FileChannel channel, final long offset) throws IOException {
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        final ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long position = offset;
+        while (channel.read(buffer, position) > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                final byte b = buffer.get();
+                if (b == '\n') {
+                    return line.toByteArray();
+                }
+                line.write(b);
+            }
+            position += buffer.position();
+            buffer.clear();
+        }
+        return null;
+    }
+
+    /**
+     * Indexes the complete lines of the audit file which follow the last loaded entry.
+     */
+    private void catchUp(final long dataFileSize) throws IOException {
+        final int count = index.size();
+        final long start = count == 0 ? 0L : index.offset(count - 1);
+        if (start >= dataFileSize) {
+            return;
+        }
+        final byte[] buffer = new byte[SCAN_BUFFER_SIZE];
+        byte[] line = new byte[1024];
+        int lineLength = 0;
+        long position = start;
+        long lineStart = start;
+        boolean skipLine = count > 0;
+        try (final FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+            int n;
+            while ((n = channel.read(byteBuffer, position)) > 0) {
+                for (int i = 0; i < n; ++i) {
+                    if (buffer[i] != '\n') {
+                        if (lineLength == line.length) {
+                            line = Arrays.copyOf(line, lineLength * 2);
+                        }
+                        line[lineLength++] = buffer[i];
+                        continue;
+                    }
+                    if (!skipLine && lineLength > 0) {
+                        indexLine(lineStart, line, lineLength);
+                    }
+                    skipLine = false;
+                    lineStart = position + i + 1;
+                    lineLength = 0;
+                }
+                position += n;
+                byteBuffer.clear();
+            }
+        }
+        // a trailing incomplete line is not indexed, and will be followed by the next event written
+        end = Math.max(end, lineStart);
+        if (index.size() > count) {
+            logger.info("Indexed {} events of {} missing from {}", index.size() - count, dataFile,
+                    index.getIndexFile());
+        }
+        index.flush();
+    }
+
+    private void indexLine(final long offset, final byte[] line, final int length) {
+        Map<?, ?> event;
+        try {
+            event = OBJECT_MAPPER.readValue(line, 0, length, Map.class);
+        } catch (IOException | RuntimeException e) {
+            event = null;
+        }
+        final String[] keys = new String[] {
+            event == null ? null : asString(event.get(idFieldName)),
+            event == null ? null : asString(event.get(TRANSACTION_ID))
+        };
+        final String timestamp = event == null ? null : asString(event.get(TIMESTAMP));
+        index.add(offset, keys, timestamp);
+        index.write(offset, keys, timestamp);
+    }
+
+    private static Object parseField(final byte[] line, final int length, final String fieldName) {
+        try {
+            return ((Map<?, ?>) OBJECT_MAPPER.readValue(line, 0, length, Map.class)).get(fieldName);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String asString(final Object value) {
+        return value instanceof String ? (String) value : null;
+    }
+
+    /**
+     * Maps the audit file up to the committed end, in segments of at most 1 GiB, and remaps the last segment if
+     * the file has grown since it was mapped. Must be called while holding the read lock.
+     */
+    private synchronized MappedByteBuffer[] mapSegments() throws IOException {
+        if (end == 0L) {
+            return segments;
+        }
+        final int segmentCount = (int) ((end - 1) >>> SEGMENT_BITS) + 1;
+        final int last = segmentCount - 1;
+        final long lastLength = end - ((long) last << SEGMENT_BITS);
+        if (segments.length == segmentCount && segments[last].capacity() >= lastLength) {
+            return segments;
+        }
+        final MappedByteBuffer[] newSegments = Arrays.copyOf(segments, segmentCount);
+        try (final FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            for (int i = Math.max(0, segments.length - 1); i < segmentCount; ++i) {
+                final long position = (long) i << SEGMENT_BITS;
+                final long length = i == last ? lastLength : 1L << SEGMENT_BITS;
+                if (newSegments[i] == null || newSegments[i].capacity() < length) {
+                    newSegments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                }
+            }
+        }
+        segments = newSegments;
+        return segments;
+    }
+
+    /**
+     * Events of the audit file selected by a query, which remain readable after the audit file is rotated.
+     */
+    static final class Selection {
+        private final EventIndex.Candidates candidates;
+        private final long end;
+        private final MappedByteBuffer[] segments;
+
+        private Selection(final EventIndex.Candidates candidates, final long end, final MappedByteBuffer[] segments) {
+            this.candidates = candidates;
+            this.end = end;
+            this.segments = segments;
+        }
+
+        /**
+         * Checks whether the query could not use the index, and all events must be scanned.
+         *
+         * @return {@code true} if all events are selected
+         */
+        boolean isFullScan() {
+            return candidates.isFullScan();
+        }
+
+        /**
+         * Gets the number of selected events.
+         *
+         * @return Number of selected events
+         */
+        int size() {
+            return candidates.size();
+        }
+
+        /**
+         * Gets the next selected event, in file order.
+         *
+         * @param fromEntry First entry to consider
+         * @return Selected entry, or {@code -1} if there are no more
+         */
+        int next(final int fromEntry) {
+            return candidates.next(fromEntry);
+        }
+
+        /**
+         * Reads the JSON bytes of an event from the memory-mapped audit file.
+         *
+         * @param entry Selected entry
+         * @return JSON bytes, which may be followed by newlines
+         */
+        byte[] read(final int entry) {
+            final long start = candidates.offset(entry);
+            final int next = entry + 1;
+            final long stop = next < candidates.getCount() ? candidates.offset(next) : end;
+            final byte[] bytes = new byte[(int) (stop - start)];
+            long position = start;
+            int copied = 0;
+            while (copied < bytes.length) {
+                final ByteBuffer segment = segments[(int) (position >>> SEGMENT_BITS)].duplicate();
+                segment.position((int) (position & SEGMENT_MASK));
+                final int length = Math.min(bytes.length - copied, segment.remaining());
+                segment.get(bytes, copied, length);
+                copied += length;
+                position += length;
+            }
+            return bytes;
+        }
+    }
+}
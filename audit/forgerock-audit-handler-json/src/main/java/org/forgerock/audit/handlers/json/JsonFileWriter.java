@@ -12,7 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
- * Portions copyright 2021 Wren Security.
+ * Portions copyright 2021-2026 Wren Security.
  */
 
 package org.forgerock.audit.handlers.json;
@@ -20,6 +20,10 @@ package org.forgerock.audit.handlers.json;
 import static java.lang.Math.max;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.forgerock.audit.batch.CommonAuditBatchConfiguration.POLLING_INTERVAL;
+import static org.forgerock.audit.batch.CommonAuditBatchConfiguration.POLLING_TIMEOUT;
+import static org.forgerock.audit.batch.CommonAuditBatchConfiguration.POLLING_TIMEOUT_UNIT;
+import static org.forgerock.audit.events.AuditEventBuilder.TIMESTAMP;
+import static org.forgerock.audit.events.AuditEventBuilder.TRANSACTION_ID;
 import static org.forgerock.audit.handlers.json.JsonAuditEventHandler.OBJECT_MAPPER;
 import static org.forgerock.audit.handlers.json.JsonAuditEventHandler.EVENT_ID_FIELD;
 import static org.forgerock.audit.util.ElasticsearchUtil.normalizeJson;
@@ -27,11 +31,11 @@ import static org.forgerock.audit.util.ElasticsearchUtil.renameField;
 import static org.forgerock.json.resource.ResourceResponse.FIELD_CONTENT_ID;
 import static org.forgerock.util.Reject.checkNotNull;
 import static org.forgerock.util.Utils.closeSilently;
+import static org.forgerock.util.promise.Promises.newResultPromise;
 
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -41,6 +45,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -50,6 +56,8 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.forgerock.audit.events.handlers.FileBasedEventHandlerConfiguration.GroupCommit;
 import org.forgerock.audit.retention.FileNamingPolicy;
 import org.forgerock.audit.retention.RetentionPolicy;
 import org.forgerock.audit.rotation.RotatableObject;
@@ -57,6 +65,8 @@ import org.forgerock.audit.rotation.RotationHooks;
 import org.forgerock.audit.rotation.RotationPolicy;
 import org.forgerock.json.JsonValue;
 import org.forgerock.util.Utils;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
 import org.forgerock.util.time.Duration;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
@@ -64,7 +74,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Periodically writes JSON events to a file.
+ * Periodically writes JSON events to a file, and maintains a {@link JsonEventIndex} of each file.
+ * <p>
+ * By default, events are serialized by the publishing thread, because the same event is published to the other
+ * handlers of the audit service, some of which modify it while publishing it, so the file-writer thread only copies
+ * them to pooled direct buffers which are written with gathering writes. When {@code serializeOnPublish} is
+ * disabled, and ElasticSearch compatibility is not enabled, events are instead serialized by the file-writer thread,
+ * with a streaming {@link JsonGenerator} per file, so that no intermediate copy of an event is allocated; events
+ * must then not be modified once published.
+ * <p>
+ * When {@link GroupCommit group commit} is enabled, events are instead written as soon as possible, in batches which
+ * are forced to the storage device before the events are reported as written.
  */
 class JsonFileWriter {
 
@@ -74,7 +94,11 @@ class JsonFileWriter {
 
     static final String LOG_FILE_NAME_SUFFIX = "audit.json";
 
+    /** The promise of queued events, when group commit is disabled. */
+    private static final Promise<Void, IOException> QUEUED = newResultPromise(null);
+
     private final boolean elasticsearchCompatible;
+    private final boolean serializeOnPublish;
     private final BlockingQueue<QueueEntry> queue;
     private final ScheduledExecutorService scheduler;
     private final QueueConsumer queueConsumer;
@@ -92,6 +116,7 @@ class JsonFileWriter {
     JsonFileWriter(final Set<String> topics, final JsonAuditEventHandlerConfiguration configuration,
             final boolean autoFlush) {
         elasticsearchCompatible = configuration.isElasticsearchCompatible();
+        serializeOnPublish = configuration.getBuffering().isSerializeOnPublish();
         queue = new ArrayBlockingQueue<>(max(configuration.getBuffering().getMaxSize(), MIN_QUEUE_SIZE));
         scheduler = Executors.newScheduledThreadPool(1, Utils.newThreadFactory(null, "audit-json-%d", false));
         writeInterval = parseWriteInterval(configuration);
@@ -117,10 +142,21 @@ class JsonFileWriter {
     }
 
     /**
-     * Starts periodically writing JSON events to a file.
+     * Starts periodically writing JSON events to a file, or committing them in batches when group commit is
+     * enabled.
      */
     void startup() {
-        scheduler.scheduleAtFixedRate(queueConsumer, 0, writeInterval.to(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+        if (queueConsumer.isGroupCommitEnabled()) {
+            scheduler.execute(new Runnable() {
+                @Override
+                public void run() {
+                    queueConsumer.commitEvents(writeInterval);
+                }
+            });
+        } else {
+            scheduler.scheduleAtFixedRate(queueConsumer, 0, writeInterval.to(TimeUnit.MILLISECONDS),
+                    TimeUnit.MILLISECONDS);
+        }
     }
 
     /**
@@ -138,26 +174,43 @@ class JsonFileWriter {
      *
      * @param topic Event topic
      * @param event Event payload to index, where {@code _id} field is the identifier
+     * @return A promise completed once the event is queued, or once it has been written and forced to the storage
+     * device when group commit is enabled
      * @throws InterruptedException thread interrupted while blocking on a full queue
      * @throws IOException failed to serialize JSON
      */
-    void put(final String topic, final JsonValue event) throws InterruptedException, IOException {
+    Promise<Void, IOException> put(final String topic, final JsonValue event)
+            throws InterruptedException, IOException {
+        final String id = asString(event.get(FIELD_CONTENT_ID));
+        final String transactionId = asString(event.get(TRANSACTION_ID));
+        final String timestamp = asString(event.get(TIMESTAMP));
+        final boolean durable = queueConsumer.isGroupCommitEnabled();
         if (elasticsearchCompatible) {
-            // rename _id field to be _eventId, because _id is reserved by ElasticSearch
-            renameField(event, FIELD_CONTENT_ID, EVENT_ID_FIELD);
-            try {
-                // apply ElasticSearch JSON normalization, if necessary
-                final byte[] bytes = normalizeJson(event).getBytes(UTF_8);
-                queue.put(new QueueEntry(topic, bytes));
-            } finally {
-                // restore _id field, because original event is same instance as normalizedEvent
-                renameField(event, EVENT_ID_FIELD, FIELD_CONTENT_ID);
-            }
+            // rename _id field to be _eventId, because _id is reserved by ElasticSearch, in a shallow copy of the
+            // event, because other handlers may be serializing the original event concurrently
+            final JsonValue renamedEvent = new JsonValue(new LinkedHashMap<>(event.asMap()));
+            renameField(renamedEvent, FIELD_CONTENT_ID, EVENT_ID_FIELD);
+            // apply ElasticSearch JSON normalization, if necessary
+            final byte[] bytes = normalizeJson(renamedEvent).getBytes(UTF_8);
+            return put(new QueueEntry(topic, bytes, id, transactionId, timestamp, durable));
+        } else if (serializeOnPublish) {
+            return put(new QueueEntry(topic, OBJECT_MAPPER.writeValueAsBytes(event.getObject()), id, transactionId,
+                    timestamp, durable));
         } else {
-            queue.put(new QueueEntry(topic, OBJECT_MAPPER.writeValueAsBytes(event.getObject())));
+            // serialized by the file-writer thread
+            return put(new QueueEntry(topic, event.getObject(), id, transactionId, timestamp, durable));
         }
     }
 
+    private Promise<Void, IOException> put(final QueueEntry entry) throws InterruptedException {
+        queue.put(entry);
+        return entry.promise != null ? entry.promise : QUEUED;
+    }
+
+    private static String asString(final JsonValue value) {
+        return value.isString() ? value.asString() : null;
+    }
+
     /**
      * Requests an unscheduled rotation of the underlying JSON audit file.
      * <p>
@@ -170,7 +223,7 @@ class JsonFileWriter {
      */
     boolean rotateFile(final String topic) throws InterruptedException {
         if (queueConsumer.isRotationEnabled()) {
-            queue.put(new QueueEntry(topic, QueueEntry.ROTATE_FILE_ENTRY));
+            queue.put(new QueueEntry(topic, QueueEntry.ROTATE_FILE_ENTRY, null, null, null, false));
             return true;
         }
         return false;
@@ -185,7 +238,7 @@ class JsonFileWriter {
      * @throws InterruptedException thread interrupted while blocking on a full queue
      */
     void flushFileBuffer(final String topic) throws InterruptedException {
-        queue.put(new QueueEntry(topic, QueueEntry.FLUSH_FILE_ENTRY));
+        queue.put(new QueueEntry(topic, QueueEntry.FLUSH_FILE_ENTRY, null, null, null, false));
     }
 
     /**
@@ -199,6 +252,17 @@ class JsonFileWriter {
         return topicEntry == null ? null : topicEntry.filePath;
     }
 
+    /**
+     * Gets the index of the current log-file for the given topic.
+     *
+     * @param topic Topic name (case-sensitive)
+     * @return {@link JsonEventIndex} or {@code null} if topic is unrecognised
+     */
+    JsonEventIndex getTopicIndex(final String topic) {
+        final QueueConsumer.TopicEntry topicEntry = queueConsumer.topicEntryMap.get(topic);
+        return topicEntry == null ? null : topicEntry.index;
+    }
+
     /**
      * A single audit-event entry.
      */
@@ -206,19 +270,70 @@ class JsonFileWriter {
 
         static final byte[] ROTATE_FILE_ENTRY = new byte[0];
         static final byte[] FLUSH_FILE_ENTRY = new byte[0];
+        static final byte[] UNSERIALIZED_ENTRY = new byte[0];
 
         private final String topic;
         private final byte[] event;
+        private final Object content;
+        private final String id;
+        private final String transactionId;
+        private final String timestamp;
+        private final PromiseImpl<Void, IOException> promise;
 
         /**
          * Creates a new audit-event batch entry.
          *
          * @param topic Event topic
          * @param event Event JSON payload
+         * @param id Event identifier to index, or {@code null}
+         * @param transactionId Event transaction identifier to index, or {@code null}
+         * @param timestamp Event timestamp to index, or {@code null}
+         * @param durable {@code true} if the entry is completed once written and forced to the storage device
+         */
+        QueueEntry(final String topic, final byte[] event, final String id, final String transactionId,
+                final String timestamp, final boolean durable) {
+            this(topic, checkNotNull(event), null, id, transactionId, timestamp, durable);
+        }
+
+        /**
+         * Creates a new audit-event batch entry, whose event is serialized by the file-writer thread.
+         *
+         * @param topic Event topic
+         * @param content Event content, to serialize as JSON
+         * @param id Event identifier to index, or {@code null}
+         * @param transactionId Event transaction identifier to index, or {@code null}
+         * @param timestamp Event timestamp to index, or {@code null}
+         * @param durable {@code true} if the entry is completed once written and forced to the storage device
          */
-        QueueEntry(final String topic, final byte[] event) {
+        QueueEntry(final String topic, final Object content, final String id, final String transactionId,
+                final String timestamp, final boolean durable) {
+            this(topic, UNSERIALIZED_ENTRY, checkNotNull(content), id, transactionId, timestamp, durable);
+        }
+
+        private QueueEntry(final String topic, final byte[] event, final Object content, final String id,
+                final String transactionId, final String timestamp, final boolean durable) {
             this.topic = checkNotNull(topic);
-            this.event = checkNotNull(event);
+            this.event = event;
+            this.content = content;
+            this.id = id;
+            this.transactionId = transactionId;
+            this.timestamp = timestamp;
+            this.promise = durable ? PromiseImpl.<Void, IOException>create() : null;
+        }
+
+        /**
+         * Completes a durable entry.
+         *
+         * @param failure The failure to write the entry, or {@code null} if it was written
+         */
+        void complete(final IOException failure) {
+            if (promise != null) {
+                if (failure == null) {
+                    promise.handleResult(null);
+                } else {
+                    promise.handleException(failure);
+                }
+            }
         }
 
         boolean isRotateEntry() {
@@ -228,6 +343,10 @@ class JsonFileWriter {
         boolean isFlushEntry() {
             return event == FLUSH_FILE_ENTRY;
         }
+
+        boolean isSerialized() {
+            return event != UNSERIALIZED_ENTRY;
+        }
     }
 
     /**
@@ -237,8 +356,9 @@ class JsonFileWriter {
     private static final class QueueConsumer implements Runnable {
 
         private static final int BATCH_SIZE = 5000;
-        private static final int OUTPUT_BUF_INITIAL_SIZE = 16 * 1024;
-        private static final byte[] NEWLINE_UTF_8_BYTES = "\n".getBytes(UTF_8);
+        private static final int OUTPUT_BUF_SIZE = 8 * 1024;
+        private static final int MAX_POOLED_OUTPUT_BUFS = 16;
+        private static final int NEWLINE_UTF_8_BYTE = '\n';
 
         private final boolean flushOnShutdown;
         private final boolean rotationEnabled;
@@ -251,6 +371,11 @@ class JsonFileWriter {
         private final Map<String, TopicEntry> topicEntryMap;
         private final List<QueueEntry> drainList;
         private final int iterationsBeforeFlush;
+        private final boolean groupCommitEnabled;
+        private final int maxBatchSize;
+        private final long maxBatchDelayNanos;
+        private final Set<TopicEntry> topicsToSync;
+        private final ByteBufferPool bufferPool;
 
         private volatile boolean shutdown;
 
@@ -274,7 +399,13 @@ class JsonFileWriter {
             this.scheduler = scheduler;
             this.flushOnShutdown = flushOnShutdown;
             this.iterationsBeforeFlush = iterationsBeforeFlush;
-            drainList = new ArrayList<>(BATCH_SIZE);
+            final GroupCommit groupCommit = configuration.getGroupCommit();
+            groupCommitEnabled = groupCommit.isEnabled();
+            maxBatchSize = groupCommitEnabled ? max(1, groupCommit.getMaxBatchSize()) : BATCH_SIZE;
+            maxBatchDelayNanos = groupCommit.getMaxBatchDelayDuration().to(TimeUnit.NANOSECONDS);
+            topicsToSync = new LinkedHashSet<>();
+            bufferPool = new ByteBufferPool(OUTPUT_BUF_SIZE, MAX_POOLED_OUTPUT_BUFS);
+            drainList = new ArrayList<>(maxBatchSize);
             rotationEnabled = configuration.getFileRotation().isRotationEnabled();
             rotationPolicies = configuration.getFileRotation().buildRotationPolicies();
             retentionPolicies = configuration.getFileRetention().buildRetentionPolicies();
@@ -316,7 +447,12 @@ class JsonFileWriter {
                         }
                         // process remaining events and flush topic writers
                         while (!queue.isEmpty()) {
-                            writeEvents();
+                            if (groupCommitEnabled) {
+                                queue.drainTo(drainList, maxBatchSize);
+                                commitBatch();
+                            } else {
+                                writeEvents();
+                            }
                         }
                         for (final TopicEntry topicEntry : topicEntryMap.values()) {
                             topicEntry.flush();
@@ -324,6 +460,13 @@ class JsonFileWriter {
                     }
                 } finally {
                     closeSilently(topicEntryMap.values());
+                    // fail the durable events which were dropped
+                    drainList.clear();
+                    queue.drainTo(drainList);
+                    for (final QueueEntry entry : drainList) {
+                        entry.complete(new IOException("Writer closed"));
+                    }
+                    drainList.clear();
                 }
             }
         }
@@ -352,7 +495,7 @@ class JsonFileWriter {
                         } else if (entry.isFlushEntry()) {
                             topicEntry.flush();
                         } else {
-                            topicEntry.write(entry.event);
+                            topicEntry.write(entry);
                         }
                     }
                 }
@@ -376,6 +519,118 @@ class JsonFileWriter {
             }
         }
 
+        /**
+         * Commits batches of events until shutdown, and enforces rotation and retention policies at most once per
+         * {@code policyCheckInterval}. A batch holds the events queued while the previous batch was committed, up to
+         * {@code maxBatchSize} events, and the events queued within {@code maxBatchDelay} if it is not full.
+         *
+         * @param policyCheckInterval Interval at which rotation and retention policies are enforced
+         */
+        void commitEvents(final Duration policyCheckInterval) {
+            final long policyCheckIntervalNanos = policyCheckInterval.to(TimeUnit.NANOSECONDS);
+            long nextPolicyCheck = System.nanoTime();
+            boolean interrupted = false;
+            while (!shutdown) {
+                try {
+                    final QueueEntry first = queue.poll(POLLING_TIMEOUT, POLLING_TIMEOUT_UNIT);
+                    if (first != null) {
+                        drainList.add(first);
+                        fillBatch();
+                        commitBatch();
+                    }
+                } catch (InterruptedException e) {
+                    // Ignore. We'll rerun the loop and presumably fall out.
+                    interrupted = true;
+                }
+                if (hasRotationOrRetentionPolicies && System.nanoTime() - nextPolicyCheck >= 0) {
+                    enforcePolicies();
+                    nextPolicyCheck = System.nanoTime() + policyCheckIntervalNanos;
+                }
+            }
+            if (!drainList.isEmpty()) {
+                // a batch was interrupted while being filled, and queued events are handled by shutdown()
+                commitBatch();
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void fillBatch() throws InterruptedException {
+            final long deadline = System.nanoTime() + maxBatchDelayNanos;
+            while (drainList.size() < maxBatchSize) {
+                if (queue.drainTo(drainList, maxBatchSize - drainList.size()) > 0) {
+                    continue;
+                }
+                final long remaining = deadline - System.nanoTime();
+                final QueueEntry next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                if (next == null) {
+                    return;
+                }
+                drainList.add(next);
+            }
+        }
+
+        /**
+         * Writes the drained events, forces the files written to the storage device, then completes the events.
+         * If any of them fails, all the events of the batch fail, even though some of them may have been written.
+         */
+        private void commitBatch() {
+            IOException failure = null;
+            try {
+                for (final QueueEntry entry : drainList) {
+                    final TopicEntry topicEntry = topicEntryMap.get(entry.topic);
+                    if (topicEntry == null) {
+                        logger.warn("Unrecognised topic: " + entry.topic);
+                        entry.complete(new IOException("Unrecognised topic: " + entry.topic));
+                    } else if (entry.isRotateEntry()) {
+                        topicEntry.rotateNow();
+                    } else if (entry.isFlushEntry()) {
+                        topicEntry.flush();
+                    } else {
+                        topicEntry.write(entry);
+                        topicsToSync.add(topicEntry);
+                    }
+                }
+                for (final TopicEntry topicEntry : topicsToSync) {
+                    topicEntry.sync();
+                }
+            } catch (IOException e) {
+                logger.error("JSON file write failed", e);
+                failure = e;
+            } catch (Exception e) {
+                logger.error("Unexpected failure", e);
+                failure = new IOException(e);
+            } finally {
+                topicsToSync.clear();
+            }
+            for (final QueueEntry entry : drainList) {
+                entry.complete(failure);
+            }
+            drainList.clear();
+        }
+
+        private void enforcePolicies() {
+            try {
+                for (final TopicEntry topicEntry : topicEntryMap.values()) {
+                    topicEntry.rotateIfNeeded();
+                }
+            } catch (IOException e) {
+                logger.error("JSON file rotation failed", e);
+            } catch (Exception e) {
+                logger.error("Unexpected failure", e);
+            }
+        }
+
+        /**
+         * Checks if group commit is enabled.
+         *
+         * @return {@code true} if group commit is enabled and {@code false} otherwise
+         */
+        boolean isGroupCommitEnabled() {
+            return groupCommitEnabled;
+        }
+
         /**
          * Checks if rotation is enabled.
          *
@@ -394,6 +649,8 @@ class JsonFileWriter {
             private final Path filePath;
             private final FileNamingPolicy fileNamingPolicy;
             private final ByteBufferOutputStream outputStream;
+            private JsonGenerator generator;
+            private final JsonEventIndex index;
             private DateTime lastRotationTime;
             private FileChannel fileChannel;
             private long positionInFile;
@@ -401,7 +658,8 @@ class JsonFileWriter {
 
             TopicEntry(final String fileName, final JsonAuditEventHandlerConfiguration configuration) {
                 try {
-                    outputStream = new ByteBufferOutputStream(ByteBuffer.allocateDirect(OUTPUT_BUF_INITIAL_SIZE));
+                    outputStream = new ByteBufferOutputStream(bufferPool);
+                    generator = newGenerator();
 
                     final Path directoryPath = Paths.get(configuration.getLogDirectory());
                     if (Files.notExists(directoryPath)) {
@@ -409,6 +667,9 @@ class JsonFileWriter {
                     }
                     filePath = directoryPath.resolve(fileName);
                     openFileChannel();
+                    index = new JsonEventIndex(filePath,
+                            configuration.isElasticsearchCompatible() ? EVENT_ID_FIELD : FIELD_CONTENT_ID);
+                    index.open();
 
                     final File currentFile = filePath.toFile();
                     fileNamingPolicy = configuration.getFileRotation().buildTimeStampFileNamingPolicy(currentFile);
@@ -422,44 +683,87 @@ class JsonFileWriter {
                 }
             }
 
-            void write(final byte[] bytes) throws IOException {
+            void write(final QueueEntry entry) throws IOException {
+                // offsets are relative to the buffer, until it is written to the file
+                final int offset = outputStream.size();
+                if (entry.isSerialized()) {
+                    outputStream.write(entry.event);
+                } else {
+                    try {
+                        // the mapper flushes the generator, which recycles its own buffer, after each event
+                        OBJECT_MAPPER.writeValue(generator, entry.content);
+                    } catch (IOException | RuntimeException e) {
+                        // discard the partial output, and the generator which may still hold some of it
+                        outputStream.truncate(offset);
+                        generator = newGenerator();
+                        throw e;
+                    }
+                }
                 // newline delimited JSON with UTF-8 character encoding
-                outputStream.write(bytes);
-                outputStream.write(NEWLINE_UTF_8_BYTES);
-                if (outputStream.byteBuffer().position() >= FILE_BUFFER_THRESHOLD) {
-                    outputStream.byteBuffer().flip();
+                outputStream.write(NEWLINE_UTF_8_BYTE);
+                index.append(offset, entry.id, entry.transactionId, entry.timestamp);
+                if (outputStream.size() >= FILE_BUFFER_THRESHOLD) {
                     try {
-                        if (Files.notExists(filePath)) {
-                            openFileChannel();
-                        }
-                        // write buffer to file
-                        positionInFile += fileChannel.write(outputStream.byteBuffer(), positionInFile);
+                        writeBuffer();
                     } finally {
                         outputStream.clear();
+                        index.discardPending();
                     }
                 }
                 iterationsWithoutEventsCounter = 0;
             }
 
+            private JsonGenerator newGenerator() throws IOException {
+                final JsonGenerator newGenerator = OBJECT_MAPPER.getFactory().createGenerator(outputStream);
+                // events are separated by newlines instead of the default space
+                newGenerator.setRootValueSeparator(null);
+                return newGenerator;
+            }
+
             void flush() {
-                if (outputStream.byteBuffer().position() != 0) {
+                try {
+                    writeBufferedEvents();
+                } catch (IOException e) {
+                    logger.error("Failed to flush file buffer", e);
+                }
+            }
+
+            /**
+             * Writes the buffered events, and forces them to the storage device.
+             *
+             * @throws IOException error writing or forcing the file
+             */
+            void sync() throws IOException {
+                writeBufferedEvents();
+                fileChannel.force(false);
+            }
+
+            private void writeBufferedEvents() throws IOException {
+                if (outputStream.size() != 0) {
                     // write buffer to file
-                    outputStream.byteBuffer().flip();
                     try {
-                        if (Files.notExists(filePath)) {
-                            openFileChannel();
-                        }
-                        // write buffer to file
-                        positionInFile += fileChannel.write(outputStream.byteBuffer(), positionInFile);
-                    } catch (IOException e) {
-                        logger.error("Failed to flush file buffer", e);
+                        writeBuffer();
                     } finally {
                         outputStream.clear();
+                        index.discardPending();
                     }
                 }
                 iterationsWithoutEventsCounter = 0;
             }
 
+            private void writeBuffer() throws IOException {
+                if (Files.notExists(filePath)) {
+                    openFileChannel();
+                    // the file was deleted, so the offsets of indexed events are no longer valid
+                    index.reset();
+                }
+                // write buffers to file, and make their events visible to index queries
+                final long bufferPosition = positionInFile;
+                fileChannel.position(positionInFile);
+                positionInFile += outputStream.writeTo(fileChannel);
+                index.commit(bufferPosition, positionInFile);
+            }
+
             @Override
             public long getBytesWritten() {
                 return positionInFile;
@@ -501,12 +805,17 @@ class JsonFileWriter {
              * @throws IOException error rotating file
              */
             void rotateNow() throws IOException {
+                if (groupCommitEnabled) {
+                    // the events of the current file must be durable before it is archived
+                    sync();
+                }
                 // close and rename current file
                 fileChannel.close();
                 final Path archivedFilePath = fileNamingPolicy.getNextName().toPath();
                 Files.move(filePath, archivedFilePath);
-                // create new file
+                // create new file, and a new index, because queries only read the current file
                 openFileChannel();
+                index.reset();
                 lastRotationTime = DateTime.now(DateTimeZone.UTC);
             }
 
@@ -517,7 +826,12 @@ class JsonFileWriter {
 
             @Override
             public void close() throws IOException {
-                fileChannel.close();
+                try {
+                    fileChannel.close();
+                } finally {
+                    outputStream.clear();
+                    index.close();
+                }
             }
 
             @Override
@@ -0,0 +1,71 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.audit.handlers.json;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.testng.annotations.Test;
+
+public class ByteBufferOutputStreamTest {
+
+    @Test
+    public void testWriteToSpansBuffers() throws Exception {
+        final ByteBufferPool pool = new ByteBufferPool(4, 8);
+        final ByteBufferOutputStream outputStream = new ByteBufferOutputStream(pool);
+        final Path file = Files.createTempFile(ByteBufferOutputStreamTest.class.getSimpleName(), ".json");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            outputStream.write("{\"a\":\"bcdefgh\"}".getBytes(UTF_8));
+            outputStream.write('\n');
+            assertThat(outputStream.size()).isEqualTo(16);
+
+            assertThat(outputStream.writeTo(channel)).isEqualTo(16L);
+            outputStream.clear();
+
+            assertThat(outputStream.size()).isEqualTo(0);
+            assertThat(pool.getPooledBufferCount()).isEqualTo(4);
+            assertThat(new String(Files.readAllBytes(file), UTF_8)).isEqualTo("{\"a\":\"bcdefgh\"}\n");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testTruncateDiscardsPartialOutput() throws Exception {
+        final ByteBufferPool pool = new ByteBufferPool(4, 8);
+        final ByteBufferOutputStream outputStream = new ByteBufferOutputStream(pool);
+        final Path file = Files.createTempFile(ByteBufferOutputStreamTest.class.getSimpleName(), ".json");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            outputStream.write("first\n".getBytes(UTF_8));
+            outputStream.write("{\"partial\":".getBytes(UTF_8));
+
+            outputStream.truncate(6);
+            outputStream.write("second\n".getBytes(UTF_8));
+
+            assertThat(outputStream.size()).isEqualTo(13);
+            outputStream.writeTo(channel);
+            assertThat(new String(Files.readAllBytes(file), UTF_8)).isEqualTo("first\nsecond\n");
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
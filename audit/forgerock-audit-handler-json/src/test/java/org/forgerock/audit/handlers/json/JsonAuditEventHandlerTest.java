@@ -12,13 +12,15 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
- * Portions copyright 2021-2023 Wren Security.
+ * Portions copyright 2021-2026 Wren Security.
  */
 
 package org.forgerock.audit.handlers.json;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.forgerock.audit.AuditServiceProxy.ACTION_PARAM_TARGET_HANDLER;
+import static org.forgerock.audit.handlers.json.JsonAuditEventHandler.EVENT_ID_FIELD;
 import static org.forgerock.audit.handlers.json.JsonAuditEventHandler.FLUSH_FILE_ACTION_NAME;
 import static org.forgerock.audit.handlers.json.JsonAuditEventHandler.ROTATE_FILE_ACTION_NAME;
 import static org.forgerock.json.JsonValue.*;
@@ -30,13 +32,19 @@ import java.io.InputStream;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -47,11 +55,13 @@ import org.forgerock.json.resource.ActionRequest;
 import org.forgerock.json.resource.IdentifierQueryResourceHandler;
 import org.forgerock.json.resource.QueryFilters;
 import org.forgerock.json.resource.QueryRequest;
+import org.forgerock.json.resource.QueryResourceHandler;
 import org.forgerock.json.resource.QueryResponse;
 import org.forgerock.json.resource.Requests;
 import org.forgerock.json.resource.ResourceException;
 import org.forgerock.json.resource.ResourceResponse;
 import org.forgerock.util.promise.Promise;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 public class JsonAuditEventHandlerTest {
@@ -108,6 +118,195 @@ public class JsonAuditEventHandlerTest {
         writeAndQueryEvents(LARGE_EVENT_COUNT, true);
     }
 
+    @Test
+    public void testQueryTimestampRangeAfterRestart() throws Exception {
+        final Path logDirectoryPath = Files.createTempDirectory(JsonAuditEventHandlerTest.class.getSimpleName());
+        AuditEventHandler handler = null;
+        try {
+            final JsonAuditEventHandlerConfiguration configuration = buildConfiguration(SMALL_EVENT_COUNT,
+                    logDirectoryPath);
+            handler = new JsonAuditEventHandler(configuration, getEventTopicsMetaData("/events.json"));
+            handler.startup();
+            final String[] identifiers = generateAndPublishEvents(SMALL_EVENT_COUNT, handler);
+            Thread.sleep(SLEEP_MILLIS);
+            handler.shutdown();
+
+            // reopening the file reloads its index
+            handler = new JsonAuditEventHandler(configuration, getEventTopicsMetaData("/events.json"));
+            handler.startup();
+
+            final List<ResourceResponse> results = new ArrayList<>();
+            final QueryRequest queryRequest = Requests.newQueryRequest(ACCESS).setQueryFilter(QueryFilters.parse(
+                    "/timestamp ge \"" + identifiers[100] + "\" and /timestamp lt \"" + identifiers[110] + "\""));
+            final QueryResponse queryResponse = handler.queryEvents(null, ACCESS, queryRequest,
+                    new QueryResourceHandler() {
+                        @Override
+                        public boolean handleResource(final ResourceResponse resource) {
+                            results.add(resource);
+                            return true;
+                        }
+                    }).getOrThrow();
+
+            assertThat(queryResponse.getTotalPagedResults()).isEqualTo(10);
+            assertThat(results.get(0).getId()).isEqualTo(identifiers[100]);
+            assertThat(handler.readEvent(null, ACCESS, identifiers[500]).getOrThrow().getId())
+                    .isEqualTo(identifiers[500]);
+        } finally {
+            try {
+                if (handler != null) {
+                    handler.shutdown();
+                }
+            } finally {
+                deleteRecursively(logDirectoryPath);
+            }
+        }
+    }
+
+    @Test
+    public void testGroupCommitWritesEventsBeforePublishing() throws Exception {
+        final Path logDirectoryPath = Files.createTempDirectory(JsonAuditEventHandlerTest.class.getSimpleName());
+        AuditEventHandler handler = null;
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final JsonAuditEventHandlerConfiguration configuration = buildConfiguration(SMALL_EVENT_COUNT,
+                    logDirectoryPath);
+            configuration.getGroupCommit().setEnabled(true);
+            final AuditEventHandler groupCommitHandler =
+                    new JsonAuditEventHandler(configuration, getEventTopicsMetaData("/events.json"));
+            handler = groupCommitHandler;
+            handler.startup();
+
+            // publish concurrently, so that events are committed in batches
+            final List<Future<String>> identifiers = new ArrayList<>();
+            for (int i = 0; i < SMALL_EVENT_COUNT; ++i) {
+                final String id = String.format("%010d", i);
+                identifiers.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        final JsonValue event = json(object(
+                                field("_id", id), field("timestamp", id), field("transactionId", id)));
+                        return groupCommitHandler.publishEvent(null, ACCESS, event).getOrThrow().getId();
+                    }
+                }));
+            }
+
+            // published events can be read without sleeping or flushing the file buffer
+            for (final Future<String> identifier : identifiers) {
+                final String resourceId = identifier.get();
+                assertThat(handler.readEvent(null, ACCESS, resourceId).getOrThrow().getId()).isEqualTo(resourceId);
+            }
+            assertThat(Files.readAllLines(logDirectoryPath.resolve(ACCESS + '.' + JsonFileWriter.LOG_FILE_NAME_SUFFIX),
+                    UTF_8)).hasSize(SMALL_EVENT_COUNT);
+        } finally {
+            executor.shutdown();
+            try {
+                if (handler != null) {
+                    handler.shutdown();
+                }
+            } finally {
+                deleteRecursively(logDirectoryPath);
+            }
+        }
+    }
+
+    @DataProvider
+    public Object[][] serializationModes() {
+        return new Object[][] {
+            // serializeOnPublish, elasticsearchCompatible
+            { false, false },
+            { true, false },
+            { false, true },
+        };
+    }
+
+    @Test(dataProvider = "serializationModes")
+    public void testWriteEventsSerializedByEitherThread(final boolean serializeOnPublish,
+            final boolean elasticsearchCompatible) throws Exception {
+        final Path logDirectoryPath = Files.createTempDirectory(JsonAuditEventHandlerTest.class.getSimpleName());
+        AuditEventHandler handler = null;
+        try {
+            final JsonAuditEventHandlerConfiguration configuration = buildConfiguration(LARGE_EVENT_COUNT,
+                    logDirectoryPath);
+            configuration.getBuffering().setSerializeOnPublish(serializeOnPublish);
+            configuration.setElasticsearchCompatible(elasticsearchCompatible);
+            handler = new JsonAuditEventHandler(configuration, getEventTopicsMetaData("/events.json"));
+            handler.startup();
+
+            // events spanning several output buffers
+            final List<JsonValue> events = new ArrayList<>();
+            for (int i = 0; i < LARGE_EVENT_COUNT; ++i) {
+                final String id = String.format("%010d", i);
+                final JsonValue event = json(object(field("_id", id), field("timestamp", id),
+                        field("transactionId", id), field("response", object(field("detail", "caf\u00e9 " + i)))));
+                handler.publishEvent(null, ACCESS, event).getOrThrow();
+                events.add(event);
+            }
+            final ActionRequest actionRequest = Requests.newActionRequest(ACCESS, FLUSH_FILE_ACTION_NAME)
+                    .setAdditionalParameter(ACTION_PARAM_TARGET_HANDLER, "json");
+            handler.handleAction(null, ACCESS, actionRequest).getOrThrow();
+
+            final List<String> lines = Files.readAllLines(
+                    logDirectoryPath.resolve(ACCESS + '.' + JsonFileWriter.LOG_FILE_NAME_SUFFIX), UTF_8);
+            assertThat(lines).hasSize(LARGE_EVENT_COUNT);
+            final ObjectMapper mapper = new ObjectMapper();
+            final String idField = elasticsearchCompatible ? EVENT_ID_FIELD : "_id";
+            for (int i = 0; i < LARGE_EVENT_COUNT; ++i) {
+                final JsonValue written = json(mapper.readValue(lines.get(i), Map.class));
+                final String id = String.format("%010d", i);
+                assertThat(written.get(idField).asString()).isEqualTo(id);
+                assertThat(written.get("response").get("detail").asString()).isEqualTo("caf\u00e9 " + i);
+                // the published event is left untouched
+                assertThat(events.get(i).get("_id").asString()).isEqualTo(id);
+                assertThat(events.get(i).isDefined(EVENT_ID_FIELD)).isFalse();
+            }
+        } finally {
+            try {
+                if (handler != null) {
+                    handler.shutdown();
+                }
+            } finally {
+                deleteRecursively(logDirectoryPath);
+            }
+        }
+    }
+
+    @Test
+    public void testEventsModifiedByOtherHandlersOncePublishedAreWrittenAsPublished() throws Exception {
+        final Path logDirectoryPath = Files.createTempDirectory(JsonAuditEventHandlerTest.class.getSimpleName());
+        AuditEventHandler handler = null;
+        try {
+            // default buffering configuration
+            handler = new JsonAuditEventHandler(buildConfiguration(1, logDirectoryPath),
+                    getEventTopicsMetaData("/events.json"));
+            handler.startup();
+
+            final JsonValue event = json(object(field("_id", "id"), field("timestamp", "timestamp"),
+                    field("transactionId", "transactionId")));
+            handler.publishEvent(null, ACCESS, event).getOrThrow();
+            // as the ElasticSearch handler does with the event shared by the audit service
+            event.remove("_id");
+            event.put("_topic", ACCESS);
+            final ActionRequest actionRequest = Requests.newActionRequest(ACCESS, FLUSH_FILE_ACTION_NAME)
+                    .setAdditionalParameter(ACTION_PARAM_TARGET_HANDLER, "json");
+            handler.handleAction(null, ACCESS, actionRequest).getOrThrow();
+
+            final List<String> lines = Files.readAllLines(
+                    logDirectoryPath.resolve(ACCESS + '.' + JsonFileWriter.LOG_FILE_NAME_SUFFIX), UTF_8);
+            assertThat(lines).hasSize(1);
+            final JsonValue written = json(new ObjectMapper().readValue(lines.get(0), Map.class));
+            assertThat(written.get("_id").asString()).isEqualTo("id");
+            assertThat(written.isDefined("_topic")).isFalse();
+        } finally {
+            try {
+                if (handler != null) {
+                    handler.shutdown();
+                }
+            } finally {
+                deleteRecursively(logDirectoryPath);
+            }
+        }
+    }
+
     /**
      * Test that shutdown on non-started handler does not halt the thread.
      */
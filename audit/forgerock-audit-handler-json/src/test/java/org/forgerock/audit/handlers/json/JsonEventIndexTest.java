@@ -0,0 +1,309 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.audit.handlers.json;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.resource.ResourceResponse.FIELD_CONTENT_ID;
+import static org.forgerock.util.test.FileUtils.deleteRecursively;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.audit.events.handlers.index.EventIndex;
+import org.forgerock.json.JsonPointer;
+import org.forgerock.json.resource.QueryFilters;
+import org.forgerock.util.query.QueryFilter;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class JsonEventIndexTest {
+
+    private static final int EVENT_COUNT = 2_000;
+
+    private Path logDirectoryPath;
+    private Path dataFile;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        logDirectoryPath = Files.createTempDirectory(JsonEventIndexTest.class.getSimpleName());
+        dataFile = logDirectoryPath.resolve("access.audit.json");
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        deleteRecursively(logDirectoryPath);
+    }
+
+    @Test
+    public void testSelectById() throws Exception {
+        // given
+        final JsonEventIndex index = newIndex();
+        writeEvents(index, 0, EVENT_COUNT);
+
+        // when
+        final JsonEventIndex.Selection selection = index.select(QueryFilters.parse("/_id eq \"id-0000001234\""));
+
+        // then
+        assertThat(selection.isFullScan()).isFalse();
+        assertThat(ids(selection)).containsExactly("id-0000001234");
+    }
+
+    @Test
+    public void testSelectByIdIgnoringCase() throws Exception {
+        // given
+        final JsonEventIndex index = newIndex();
+        writeEvents(index, 0, EVENT_COUNT);
+
+        // when
+        final JsonEventIndex.Selection selection = index.select(QueryFilters.parse("/_id eq \"ID-0000001234\""));
+
+        // then
+        assertThat(ids(selection)).containsExactly("id-0000001234");
+    }
+
+    @Test
+    public void testSelectByTransactionIdIncludesEventsWithoutTransactionId() throws Exception {
+        // given
+        final JsonEventIndex index = newIndex();
+        writeEvents(index, 0, 10);
+        writeLines(index, "{\"_id\":\"no-transaction\",\"timestamp\":\"ts-0000000010\"}");
+
+        // when
+        final JsonEventIndex.Selection selection =
+                index.select(QueryFilters.parse("/transactionId eq \"tx-0000000003\""));
+
+        // then
+        assertThat(ids(selection)).containsExactly("id-0000000003", "no-transaction");
+    }
+
+    @Test
+    public void testSelectTimestampRange() throws Exception {
+        // given
+        final JsonEventIndex index = newIndex();
+        writeEvents(index, 0, EVENT_COUNT);
+
+        // when
+        final JsonEventIndex.Selection selection = index.select(QueryFilters.parse(
+                "/timestamp ge \"ts-0000001000\" and /timestamp lt \"ts-0000001010\""));
+
+        // then
+        assertThat(selection.isFullScan()).isFalse();
+        assertThat(selection.size()).isLessThanOrEqualTo(2 * EventIndex.TIMESTAMP_BLOCK_SIZE);
+        assertThat(ids(selection)).contains("id-0000001000", "id-0000001009");
+    }
+
+    @Test
+    public void testSkipFileOutsideTimestampRange() throws Exception {
+        // given
+        final JsonEventIndex index = newIndex();
+        writeEvents(index, 0, EVENT_COUNT);
+
+        // when
+        final JsonEventIndex.Selection selection = index.select(QueryFilters.parse("/timestamp gt \"ts-9\""));
+
+        // then
+        assertThat(selection.isFullScan()).isFalse();
+        assertThat(selection.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testUnionOfIndexedFilters() throws Exception {
+        // given
+        final JsonEventIndex index = newIndex();
+        writeEvents(index, 0, EVENT_COUNT);
+
+        // when
+        final JsonEventIndex.Selection selection = index.select(QueryFilters.parse(
+                "/_id eq \"id-0000000001\" or /transactionId eq \"tx-0000001999\""));
+
+        // then
+        assertThat(ids(selection)).containsExactly("id-0000000001", "id-0000001999");
+    }
+
+    @Test
+    public void testFullScanForUnindexedFilters() throws Exception {
+        // given
+        final JsonEventIndex index = newIndex();
+        writeEvents(index, 0, EVENT_COUNT);
+
+        // when
+        final JsonEventIndex.Selection contains = index.select(QueryFilters.parse("/_id co \"0000001\""));
+        final JsonEventIndex.Selection not = index.select(QueryFilters.parse("!(/_id eq \"id-0000000001\")"));
+        final JsonEventIndex.Selection or = index.select(QueryFilters.parse(
+                "/_id eq \"id-0000000001\" or /eventName eq \"event\""));
+
+        // then
+        assertThat(contains.isFullScan()).isTrue();
+        assertThat(not.isFullScan()).isTrue();
+        assertThat(or.isFullScan()).isTrue();
+        assertThat(or.size()).isEqualTo(EVENT_COUNT);
+    }
+
+    @Test
+    public void testReloadFromSidecar() throws Exception {
+        // given
+        final JsonEventIndex index = newIndex();
+        writeEvents(index, 0, EVENT_COUNT);
+        index.close();
+        final long sidecarLength = Files.size(index.getIndexFile());
+
+        // when
+        final JsonEventIndex reloaded = newIndex();
+
+        // then
+        assertThat(Files.size(reloaded.getIndexFile())).isEqualTo(sidecarLength);
+        assertThat(ids(reloaded.select(QueryFilters.parse("/_id eq \"id-0000000042\""))))
+                .containsExactly("id-0000000042");
+        assertThat(reloaded.select(QueryFilters.parse("/timestamp ge \"ts-0000001999\"")).size())
+                .isLessThanOrEqualTo(EventIndex.TIMESTAMP_BLOCK_SIZE);
+        reloaded.close();
+    }
+
+    @Test
+    public void testIndexEventsMissingFromSidecar() throws Exception {
+        // given
+        final JsonEventIndex index = newIndex();
+        writeEvents(index, 0, 100);
+        index.close();
+        try (final FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(events(100, 200)));
+        }
+
+        // when
+        final JsonEventIndex reloaded = newIndex();
+        reloaded.close();
+        final JsonEventIndex reloadedAgain = newIndex();
+
+        // then
+        assertThat(ids(reloaded.select(QueryFilters.parse("/_id eq \"id-0000000150\""))))
+                .containsExactly("id-0000000150");
+        assertThat(ids(reloadedAgain.select(QueryFilters.parse("/timestamp eq \"ts-0000000199\""))))
+                .contains("id-0000000199");
+        assertThat(reloadedAgain.select(null).size()).isEqualTo(200);
+        reloadedAgain.close();
+    }
+
+    @Test
+    public void testRebuildSidecarOfReplacedFile() throws Exception {
+        // given
+        final JsonEventIndex index = newIndex();
+        writeEvents(index, 0, 100);
+        index.close();
+        Files.write(dataFile, events(500, 600));
+
+        // when
+        final JsonEventIndex reloaded = newIndex();
+
+        // then
+        assertThat(reloaded.select(QueryFilters.parse("/_id eq \"id-0000000050\"")).size()).isEqualTo(0);
+        assertThat(ids(reloaded.select(QueryFilters.parse("/_id eq \"id-0000000550\""))))
+                .containsExactly("id-0000000550");
+        reloaded.close();
+    }
+
+    @Test
+    public void testSelectionIsReadableAfterReset() throws Exception {
+        // given
+        final JsonEventIndex index = newIndex();
+        writeEvents(index, 0, 10);
+        final JsonEventIndex.Selection selection = index.select(QueryFilter.<JsonPointer>alwaysTrue());
+
+        // when
+        Files.move(dataFile, logDirectoryPath.resolve("access.audit.json-rotated"));
+        index.reset();
+
+        // then
+        assertThat(index.select(null).size()).isEqualTo(0);
+        assertThat(ids(selection)).hasSize(10);
+        index.close();
+    }
+
+    private JsonEventIndex newIndex() throws Exception {
+        final JsonEventIndex index = new JsonEventIndex(dataFile, FIELD_CONTENT_ID);
+        index.open();
+        return index;
+    }
+
+    /**
+     * Writes events the way {@link JsonFileWriter} does, appending them to the index as they are buffered and
+     * committing them once the buffer has been written.
+     */
+    private void writeEvents(final JsonEventIndex index, final int from, final int to) throws Exception {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (int i = from; i < to; ++i) {
+            index.append(buffer.size(), String.format("id-%010d", i), String.format("tx-%010d", i),
+                    String.format("ts-%010d", i));
+            buffer.write(event(i));
+        }
+        commit(index, buffer);
+    }
+
+    private void writeLines(final JsonEventIndex index, final String... lines) throws Exception {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (final String line : lines) {
+            @SuppressWarnings("unchecked")
+            final Map<String, Object> event = JsonAuditEventHandler.OBJECT_MAPPER.readValue(line, Map.class);
+            index.append(buffer.size(), asString(event.get("_id")), asString(event.get("transactionId")),
+                    asString(event.get("timestamp")));
+            buffer.write((line + "\n").getBytes(UTF_8));
+        }
+        commit(index, buffer);
+    }
+
+    private void commit(final JsonEventIndex index, final ByteArrayOutputStream buffer) throws Exception {
+        final long position = Files.exists(dataFile) ? Files.size(dataFile) : 0L;
+        Files.write(dataFile, buffer.toByteArray(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        index.commit(position, position + buffer.size());
+    }
+
+    private static String asString(final Object value) {
+        return value instanceof String ? (String) value : null;
+    }
+
+    private static byte[] events(final int from, final int to) {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (int i = from; i < to; ++i) {
+            final byte[] event = event(i);
+            buffer.write(event, 0, event.length);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static byte[] event(final int i) {
+        return String.format("{\"_id\":\"id-%010d\",\"transactionId\":\"tx-%010d\",\"timestamp\":\"ts-%010d\"}\n",
+                i, i, i).getBytes(UTF_8);
+    }
+
+    private static List<String> ids(final JsonEventIndex.Selection selection) throws Exception {
+        final List<String> ids = new ArrayList<>();
+        for (int entry = selection.next(0); entry >= 0; entry = selection.next(entry + 1)) {
+            ids.add((String) JsonAuditEventHandler.OBJECT_MAPPER.readValue(selection.read(entry), Map.class)
+                    .get("_id"));
+        }
+        return ids;
+    }
+}
@@ -12,26 +12,44 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2014 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.authz.modules.oauth2;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.forgerock.util.time.TimeService;
 
 /**
  * <p>Cache for caching AccessToken validation results.</p>
  *
- * <p>The cache is created with a maximum size, which when reached the cache will remove the oldest entry.</p>
+ * <p>Reads do not take any lock. An entry is only returned until the expiry time of its access token, after which
+ * it is removed and the token has to be validated again.</p>
+ *
+ * <p>The cache is created with a maximum size, which when reached the cache will remove the least recently used
+ * entries. Recency is approximated with a second-chance (CLOCK) policy: entries are queued in insertion order and
+ * an entry which has been read since it was last considered for eviction is re-queued instead of being removed.</p>
  *
  * @since 1.4.0
  */
 class AccessTokenValidationCache {
 
-    private final Map<String, AccessTokenValidationResponse> cache;
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int maxSize;
+    private final TimeService time;
+    private final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<>();
+    private final Queue<Entry> evictionQueue = new ConcurrentLinkedQueue<>();
+    /** Size of the eviction queue, which includes entries that have since been replaced or removed. */
+    private final AtomicInteger evictionQueueSize = new AtomicInteger();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder expirationCount = new LongAdder();
 
     /**
      * Constructs a new instance of the AccessTokenValidationCache.
@@ -39,47 +57,69 @@ class AccessTokenValidationCache {
      * @param maxSize The maximum size of the cache.
      */
     AccessTokenValidationCache(final int maxSize) {
-        cache = new LinkedHashMap<String, AccessTokenValidationResponse>(maxSize) {
-            /**
-             * Serial Version UID.
-             */
-            public static final long serialVersionUID = -1L;
-
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<String, AccessTokenValidationResponse> eldestEntry) {
-                return size() > maxSize;
-            }
-        };
+        this(maxSize, TimeService.SYSTEM);
     }
 
     /**
-     * Adds an entry to the cache.
+     * Constructs a new instance of the AccessTokenValidationCache.
+     *
+     * @param maxSize The maximum size of the cache.
+     * @param time The time service used to expire entries.
+     */
+    AccessTokenValidationCache(final int maxSize, final TimeService time) {
+        this.maxSize = maxSize;
+        this.time = time;
+    }
+
+    /**
+     * Adds an entry to the cache, unless its access token has already expired.
      *
      * @param accessToken The access token.
      * @param validationResponse The validation response.
      */
     void add(String accessToken, AccessTokenValidationResponse validationResponse) {
-        try {
-            lock.writeLock().lock();
-            cache.put(accessToken, validationResponse);
-        } finally {
-            lock.writeLock().unlock();
+        if (validationResponse == null || validationResponse.getExpiryTime() <= time.now()) {
+            return;
         }
+        Entry existing = cache.get(accessToken);
+        if (existing == null) {
+            Entry entry = new Entry(accessToken, validationResponse);
+            existing = cache.putIfAbsent(accessToken, entry);
+            if (existing == null) {
+                evictionQueue.offer(entry);
+                evictionQueueSize.incrementAndGet();
+                evict();
+                return;
+            }
+        }
+        existing.validationResponse = validationResponse;
     }
 
     /**
      * Retrieves an entry from the cache.
      *
      * @param accessToken The access token.
-     * @return The access tokens validation response.
+     * @return The access tokens validation response, or {@code null} if there is none or it has expired.
      */
     AccessTokenValidationResponse get(String accessToken) {
-        try {
-            lock.readLock().lock();
-            return cache.get(accessToken);
-        } finally {
-            lock.readLock().unlock();
+        Entry entry = cache.get(accessToken);
+        if (entry == null) {
+            missCount.increment();
+            return null;
+        }
+        AccessTokenValidationResponse validationResponse = entry.validationResponse;
+        if (validationResponse.getExpiryTime() <= time.now()) {
+            if (cache.remove(accessToken, entry)) {
+                expirationCount.increment();
+            }
+            missCount.increment();
+            return null;
+        }
+        if (!entry.referenced) {
+            entry.referenced = true;
         }
+        hitCount.increment();
+        return validationResponse;
     }
 
     /**
@@ -88,11 +128,96 @@ class AccessTokenValidationCache {
      * @return The cache size.
      */
     int size() {
-        try {
-            lock.readLock().lock();
-            return cache.size();
-        } finally {
-            lock.readLock().unlock();
+        return cache.size();
+    }
+
+    /**
+     * Returns the number of lookups which returned a validation response.
+     *
+     * @return The hit count.
+     */
+    long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Returns the number of lookups which did not return a validation response, including those for which the
+     * cached access token had expired.
+     *
+     * @return The miss count.
+     */
+    long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Returns the number of entries removed because the cache was full.
+     *
+     * @return The eviction count.
+     */
+    long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Returns the number of entries removed because their access token had expired.
+     *
+     * @return The expiration count.
+     */
+    long getExpirationCount() {
+        return expirationCount.sum();
+    }
+
+    /**
+     * Returns a snapshot of the statistics of the cache.
+     *
+     * @return The cache statistics.
+     */
+    AccessTokenValidationCacheStatistics getStatistics() {
+        return new AccessTokenValidationCacheStatistics(size(), getHitCount(), getMissCount(), getEvictionCount(),
+                getExpirationCount());
+    }
+
+    /**
+     * Removes entries until the cache is no larger than its maximum size, and drops the entries of the eviction
+     * queue which are no longer in the cache once they outnumber the live ones.
+     */
+    private void evict() {
+        // Each live entry can be re-queued at most once before being evicted.
+        int remaining = 2 * evictionQueueSize.get() + 1;
+        while (remaining-- > 0 && (cache.size() > maxSize || evictionQueueSize.get() > 2 * maxSize)) {
+            Entry entry = evictionQueue.poll();
+            if (entry == null) {
+                return;
+            }
+            evictionQueueSize.decrementAndGet();
+            if (cache.get(entry.accessToken) != entry) {
+                continue;
+            }
+            if (entry.validationResponse.getExpiryTime() <= time.now()) {
+                if (cache.remove(entry.accessToken, entry)) {
+                    expirationCount.increment();
+                }
+            } else if (cache.size() <= maxSize || entry.referenced) {
+                if (cache.size() > maxSize) {
+                    entry.referenced = false;
+                }
+                evictionQueue.offer(entry);
+                evictionQueueSize.incrementAndGet();
+            } else if (cache.remove(entry.accessToken, entry)) {
+                evictionCount.increment();
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final String accessToken;
+        private volatile AccessTokenValidationResponse validationResponse;
+        private volatile boolean referenced;
+
+        private Entry(String accessToken, AccessTokenValidationResponse validationResponse) {
+            this.accessToken = accessToken;
+            this.validationResponse = validationResponse;
         }
     }
 }
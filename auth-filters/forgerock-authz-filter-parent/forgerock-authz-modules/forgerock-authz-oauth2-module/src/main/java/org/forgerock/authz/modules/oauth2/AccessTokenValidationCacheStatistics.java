@@ -0,0 +1,117 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.authz.modules.oauth2;
+
+/**
+ * <p>Provides a snapshot of the statistics of the cache of access token validation results of an
+ * {@link OAuth2Module}.</p>
+ *
+ * @since 1.4.0
+ */
+public final class AccessTokenValidationCacheStatistics {
+
+    private final int size;
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long expirationCount;
+
+    /**
+     * Constructs a statistics object with the given parameters.
+     *
+     * @param size The number of entries in the cache.
+     * @param hitCount The number of lookups which returned a validation response.
+     * @param missCount The number of lookups which did not return a validation response.
+     * @param evictionCount The number of entries removed because the cache was full.
+     * @param expirationCount The number of entries removed because their access token had expired.
+     */
+    public AccessTokenValidationCacheStatistics(int size, long hitCount, long missCount, long evictionCount,
+            long expirationCount) {
+        this.size = size;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.expirationCount = expirationCount;
+    }
+
+    /**
+     * Returns the number of entries in the cache.
+     *
+     * @return The cache size.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of lookups which returned a validation response.
+     *
+     * @return The hit count.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of lookups which did not return a validation response, including those for which the
+     * cached access token had expired.
+     *
+     * @return The miss count.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the ratio of lookups which returned a validation response.
+     *
+     * @return The hit rate between 0 and 1, or 0 if there was no lookup.
+     */
+    public double getHitRate() {
+        long lookupCount = hitCount + missCount;
+        return lookupCount == 0 ? 0 : (double) hitCount / lookupCount;
+    }
+
+    /**
+     * Returns the number of entries removed because the cache was full.
+     *
+     * @return The eviction count.
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns the number of entries removed because their access token had expired.
+     *
+     * @return The expiration count.
+     */
+    public long getExpirationCount() {
+        return expirationCount;
+    }
+
+    @Override
+    public String toString() {
+        return "AccessTokenValidationCacheStatistics{"
+                + "size=" + size
+                + ", hitCount=" + hitCount
+                + ", missCount=" + missCount
+                + ", evictionCount=" + evictionCount
+                + ", expirationCount=" + expirationCount
+                + '}';
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2014-2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.authz.modules.oauth2;
@@ -21,13 +22,18 @@ import static org.forgerock.util.promise.Promises.newResultPromise;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.forgerock.authz.filter.api.AuthorizationContext;
 import org.forgerock.authz.filter.api.AuthorizationException;
 import org.forgerock.authz.filter.api.AuthorizationResult;
 import org.forgerock.util.Function;
+import org.forgerock.util.promise.ExceptionHandler;
 import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
 import org.forgerock.util.promise.ResultHandler;
+import org.forgerock.util.promise.RuntimeExceptionHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,6 +62,9 @@ public class OAuth2Module {
     private volatile Set<String> requiredScopes = new HashSet<>();
     private volatile boolean cacheEnabled = true;
     private volatile AccessTokenValidationCache cache;
+    /** The validations in progress, so that concurrent requests with the same access token share a single one. */
+    private final ConcurrentMap<String, Promise<AccessTokenValidationResponse, OAuth2Exception>> pendingValidations =
+            new ConcurrentHashMap<>();
 
     /**
      * Creates a new {@code OAuth2Module} instance with the provided configuration.
@@ -90,6 +99,16 @@ public class OAuth2Module {
         this.cache = cacheFactory.getCache(cacheSize);
     }
 
+    /**
+     * Returns a snapshot of the statistics of the cache of access token validation results, such as its hit and miss
+     * counts.
+     *
+     * @return The cache statistics.
+     */
+    public AccessTokenValidationCacheStatistics getCacheStatistics() {
+        return cache.getStatistics();
+    }
+
     /**
      * Determines whether a request is authorized to access the resource based on the validity of an access token
      * the scopes of the access token.
@@ -153,22 +172,55 @@ public class OAuth2Module {
 
     /**
      * Validates the access token and if the cache is enabled will store the result in the cache for subsequent
-     * requests.
+     * requests. If the same access token is already being validated, the pending validation is returned instead.
      *
      * @param accessToken The access token to validate.
      * @return An AccessTokenValidationResponse containing the result of the validation.
      * @throws OAuth2Exception If the access token could not be validated.
      */
     private Promise<AccessTokenValidationResponse, OAuth2Exception> validateAccessToken(final String accessToken) {
-        return accessTokenValidator.validate(accessToken)
-                .thenOnResult(new ResultHandler<AccessTokenValidationResponse>() {
-                    @Override
-                    public void handleResult(AccessTokenValidationResponse validationResponse) {
-                        if (cacheEnabled) {
-                            cache.add(accessToken, validationResponse);
+        final PromiseImpl<AccessTokenValidationResponse, OAuth2Exception> validation = PromiseImpl.create();
+        final Promise<AccessTokenValidationResponse, OAuth2Exception> pendingValidation =
+                pendingValidations.putIfAbsent(accessToken, validation);
+        if (pendingValidation != null) {
+            return pendingValidation;
+        }
+        try {
+            accessTokenValidator.validate(accessToken)
+                    .thenOnResult(new ResultHandler<AccessTokenValidationResponse>() {
+                        @Override
+                        public void handleResult(AccessTokenValidationResponse validationResponse) {
+                            try {
+                                if (cacheEnabled) {
+                                    cache.add(accessToken, validationResponse);
+                                }
+                            } finally {
+                                pendingValidations.remove(accessToken, validation);
+                                validation.handleResult(validationResponse);
+                            }
+                        }
+                    })
+                    .thenOnException(new ExceptionHandler<OAuth2Exception>() {
+                        @Override
+                        public void handleException(OAuth2Exception exception) {
+                            pendingValidations.remove(accessToken, validation);
+                            validation.handleException(exception);
                         }
-                    }
-                });
+                    })
+                    .thenOnRuntimeException(new RuntimeExceptionHandler() {
+                        @Override
+                        public void handleRuntimeException(RuntimeException exception) {
+                            pendingValidations.remove(accessToken, validation);
+                            validation.handleRuntimeException(exception);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            // fail the requests which are already waiting for this validation
+            pendingValidations.remove(accessToken, validation);
+            validation.handleRuntimeException(e);
+            throw e;
+        }
+        return validation;
     }
 
     /**
@@ -12,26 +12,35 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2014-2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.authz.modules.oauth2;
 
+import org.forgerock.util.time.TimeService;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
 
 public class AccessTokenValidationCacheTest {
 
+    private static final long EXPIRY_TIME = 1_000L;
+
+    private TimeService time;
     private AccessTokenValidationCache cache;
 
     @BeforeMethod
     public void setUp() {
-        cache = new AccessTokenValidationCache(2);
+        time = mock(TimeService.class);
+        given(time.now()).willReturn(0L);
+        cache = new AccessTokenValidationCache(2, time);
     }
 
     @Test
@@ -39,7 +48,7 @@ public class AccessTokenValidationCacheTest {
 
         //Given
         String accessToken = "ACCESS_TOKEN";
-        AccessTokenValidationResponse validationResponse = new AccessTokenValidationResponse(0);
+        AccessTokenValidationResponse validationResponse = new AccessTokenValidationResponse(EXPIRY_TIME);
 
         //When
         cache.add(accessToken, validationResponse);
@@ -53,7 +62,7 @@ public class AccessTokenValidationCacheTest {
 
         //Given
         String accessToken = "ACCESS_TOKEN";
-        AccessTokenValidationResponse validationResponse = new AccessTokenValidationResponse(0);
+        AccessTokenValidationResponse validationResponse = new AccessTokenValidationResponse(EXPIRY_TIME);
 
         //When
         cache.add(accessToken, validationResponse);
@@ -70,9 +79,9 @@ public class AccessTokenValidationCacheTest {
         String accessToken1 = "ACCESS_TOKEN_1";
         String accessToken2 = "ACCESS_TOKEN_2";
         String accessToken3 = "ACCESS_TOKEN_3";
-        AccessTokenValidationResponse validationResponse1 = new AccessTokenValidationResponse(0);
-        AccessTokenValidationResponse validationResponse2 = new AccessTokenValidationResponse(0);
-        AccessTokenValidationResponse validationResponse3 = new AccessTokenValidationResponse(0);
+        AccessTokenValidationResponse validationResponse1 = new AccessTokenValidationResponse(EXPIRY_TIME);
+        AccessTokenValidationResponse validationResponse2 = new AccessTokenValidationResponse(EXPIRY_TIME);
+        AccessTokenValidationResponse validationResponse3 = new AccessTokenValidationResponse(EXPIRY_TIME);
 
         //When
         cache.add(accessToken1, validationResponse1);
@@ -90,7 +99,7 @@ public class AccessTokenValidationCacheTest {
 
         //Given
         String accessToken = "ACCESS_TOKEN";
-        AccessTokenValidationResponse validationResponse = new AccessTokenValidationResponse(0);
+        AccessTokenValidationResponse validationResponse = new AccessTokenValidationResponse(EXPIRY_TIME);
 
         //When
         cache.add(accessToken, validationResponse);
@@ -105,7 +114,7 @@ public class AccessTokenValidationCacheTest {
         //Given
         String accessToken1 = "ACCESS_TOKEN_1";
         String accessToken2 = "ACCESS_TOKEN_2";
-        AccessTokenValidationResponse validationResponse = new AccessTokenValidationResponse(0);
+        AccessTokenValidationResponse validationResponse = new AccessTokenValidationResponse(EXPIRY_TIME);
 
         //When
         cache.add(accessToken1, validationResponse);
@@ -114,6 +123,122 @@ public class AccessTokenValidationCacheTest {
         assertNull(cache.get(accessToken2));
     }
 
+    @Test
+    public void shouldKeepRecentlyReadEntryWhenCacheFull() {
+
+        //Given
+        AccessTokenValidationResponse validationResponse1 = new AccessTokenValidationResponse(EXPIRY_TIME);
+        AccessTokenValidationResponse validationResponse2 = new AccessTokenValidationResponse(EXPIRY_TIME);
+        AccessTokenValidationResponse validationResponse3 = new AccessTokenValidationResponse(EXPIRY_TIME);
+        cache.add("ACCESS_TOKEN_1", validationResponse1);
+        cache.add("ACCESS_TOKEN_2", validationResponse2);
+        cache.get("ACCESS_TOKEN_1");
+
+        //When
+        cache.add("ACCESS_TOKEN_3", validationResponse3);
+
+        //Then
+        assertEquals(cache.get("ACCESS_TOKEN_1"), validationResponse1);
+        assertNull(cache.get("ACCESS_TOKEN_2"));
+        assertEquals(cache.get("ACCESS_TOKEN_3"), validationResponse3);
+        assertEquals(cache.getEvictionCount(), 1);
+    }
+
+    @Test
+    public void shouldNotReturnEntryOnceAccessTokenHasExpired() {
+
+        //Given
+        cache.add("ACCESS_TOKEN", new AccessTokenValidationResponse(EXPIRY_TIME));
+
+        //When
+        given(time.now()).willReturn(EXPIRY_TIME);
+
+        //Then
+        assertNull(cache.get("ACCESS_TOKEN"));
+        assertEquals(cache.size(), 0);
+        assertEquals(cache.getExpirationCount(), 1);
+    }
+
+    @Test
+    public void shouldNotAddEntryWhenAccessTokenHasExpired() {
+
+        //When
+        cache.add("ACCESS_TOKEN", new AccessTokenValidationResponse(0));
+
+        //Then
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void shouldEvictExpiredEntriesBeforeLiveOnes() {
+
+        //Given
+        AccessTokenValidationResponse validationResponse2 = new AccessTokenValidationResponse(2 * EXPIRY_TIME);
+        AccessTokenValidationResponse validationResponse3 = new AccessTokenValidationResponse(2 * EXPIRY_TIME);
+        cache.add("ACCESS_TOKEN_1", new AccessTokenValidationResponse(EXPIRY_TIME));
+        cache.add("ACCESS_TOKEN_2", validationResponse2);
+        given(time.now()).willReturn(EXPIRY_TIME);
+
+        //When
+        cache.add("ACCESS_TOKEN_3", validationResponse3);
+
+        //Then
+        assertEquals(cache.size(), 2);
+        assertEquals(cache.get("ACCESS_TOKEN_2"), validationResponse2);
+        assertEquals(cache.get("ACCESS_TOKEN_3"), validationResponse3);
+        assertEquals(cache.getExpirationCount(), 1);
+        assertEquals(cache.getEvictionCount(), 0);
+    }
+
+    @Test
+    public void shouldCountHitsAndMisses() {
+
+        //Given
+        cache.add("ACCESS_TOKEN", new AccessTokenValidationResponse(EXPIRY_TIME));
+
+        //When
+        cache.get("ACCESS_TOKEN");
+        cache.get("ACCESS_TOKEN");
+        cache.get("OTHER_ACCESS_TOKEN");
+
+        //Then
+        assertEquals(cache.getHitCount(), 2);
+        assertEquals(cache.getMissCount(), 1);
+    }
+
+    @Test
+    public void shouldSnapshotStatistics() {
+
+        //Given
+        cache.add("ACCESS_TOKEN", new AccessTokenValidationResponse(EXPIRY_TIME));
+        cache.get("ACCESS_TOKEN");
+        cache.get("OTHER_ACCESS_TOKEN");
+
+        //When
+        AccessTokenValidationCacheStatistics statistics = cache.getStatistics();
+        cache.get("ACCESS_TOKEN");
+
+        //Then
+        assertEquals(statistics.getSize(), 1);
+        assertEquals(statistics.getHitCount(), 1);
+        assertEquals(statistics.getMissCount(), 1);
+        assertEquals(statistics.getHitRate(), 0.5);
+        assertEquals(statistics.getEvictionCount(), 0);
+        assertEquals(statistics.getExpirationCount(), 0);
+    }
+
+    @Test
+    public void shouldNotGrowWhenEntriesAreRepeatedlyReplaced() {
+
+        //When
+        for (int i = 0; i < 100; i++) {
+            cache.add("ACCESS_TOKEN_" + (i % 3), new AccessTokenValidationResponse(EXPIRY_TIME));
+        }
+
+        //Then
+        assertEquals(cache.size(), 2);
+    }
+
     @Test
     public void cacheShouldBeThreadSafe() throws InterruptedException {
 
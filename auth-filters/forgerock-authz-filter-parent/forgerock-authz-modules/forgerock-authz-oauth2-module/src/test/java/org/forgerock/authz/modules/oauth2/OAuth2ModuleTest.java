@@ -12,7 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2014-2016 ForgeRock AS.
- * Portions Copyright 2018 Wren Security.
+ * Portions Copyright 2018-2026 Wren Security.
  */
 
 package org.forgerock.authz.modules.oauth2;
@@ -39,6 +39,7 @@ import org.forgerock.authz.filter.api.AuthorizationException;
 import org.forgerock.authz.filter.api.AuthorizationResult;
 import org.forgerock.authz.modules.oauth2.OAuth2Module.AccessTokenValidationCacheFactory;
 import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
 import org.forgerock.util.promise.Promises;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -177,6 +178,101 @@ public class OAuth2ModuleTest {
         verify(cache, times(2)).get("ACCESS_TOKEN");
     }
 
+    @Test
+    public void shouldValidateAccessTokenOnceForConcurrentRequests() {
+
+        //Given
+        String accessToken = "ACCESS_TOKEN";
+        AuthorizationContext context = mock(AuthorizationContext.class);
+        AccessTokenValidationResponse validationResponse = mock(AccessTokenValidationResponse.class);
+        PromiseImpl<AccessTokenValidationResponse, OAuth2Exception> validationResponsePromise = PromiseImpl.create();
+
+        createOAuth2Module(true);
+        given(tokenValidator.validate("ACCESS_TOKEN")).willReturn(validationResponsePromise);
+        given(validationResponse.isTokenValid()).willReturn(true);
+        given(validationResponse.getTokenScopes()).willReturn(Collections.singleton("SCOPE_A"));
+
+        //When
+        Promise<AuthorizationResult, AuthorizationException> promise1 = oAuth2Module.authorize(accessToken, context);
+        Promise<AuthorizationResult, AuthorizationException> promise2 = oAuth2Module.authorize(accessToken, context);
+        validationResponsePromise.handleResult(validationResponse);
+
+        //Then
+        verify(tokenValidator, times(1)).validate("ACCESS_TOKEN");
+        verify(cache, times(1)).add("ACCESS_TOKEN", validationResponse);
+        assertTrue(promise1.getOrThrowUninterruptibly().isAuthorized());
+        assertTrue(promise2.getOrThrowUninterruptibly().isAuthorized());
+    }
+
+    @Test
+    public void shouldValidateAccessTokenAgainOncePendingValidationHasFailed() {
+
+        //Given
+        String accessToken = "ACCESS_TOKEN";
+        AuthorizationContext context = mock(AuthorizationContext.class);
+
+        createOAuth2Module(true);
+        given(tokenValidator.validate("ACCESS_TOKEN"))
+                .willReturn(Promises.<AccessTokenValidationResponse, OAuth2Exception>newExceptionPromise(
+                        mock(OAuth2Exception.class)));
+        oAuth2Module.authorize(accessToken, context);
+
+        //When
+        oAuth2Module.authorize(accessToken, context);
+
+        //Then
+        verify(tokenValidator, times(2)).validate("ACCESS_TOKEN");
+    }
+
+    @Test
+    public void shouldFailPendingRequestsWhenValidationFailsWithRuntimeException() {
+
+        //Given
+        String accessToken = "ACCESS_TOKEN";
+        AuthorizationContext context = mock(AuthorizationContext.class);
+        PromiseImpl<AccessTokenValidationResponse, OAuth2Exception> validationResponsePromise = PromiseImpl.create();
+
+        createOAuth2Module(true);
+        given(tokenValidator.validate("ACCESS_TOKEN")).willReturn(validationResponsePromise);
+        Promise<AuthorizationResult, AuthorizationException> promise1 = oAuth2Module.authorize(accessToken, context);
+        Promise<AuthorizationResult, AuthorizationException> promise2 = oAuth2Module.authorize(accessToken, context);
+
+        //When
+        validationResponsePromise.handleRuntimeException(new IllegalStateException());
+        oAuth2Module.authorize(accessToken, context);
+
+        //Then
+        assertTrue(promise1.isDone());
+        assertTrue(promise2.isDone());
+        verify(tokenValidator, times(2)).validate("ACCESS_TOKEN");
+    }
+
+    @Test
+    public void shouldFailPendingRequestsWhenValidatorThrowsRuntimeException() {
+
+        //Given
+        String accessToken = "ACCESS_TOKEN";
+        AuthorizationContext context = mock(AuthorizationContext.class);
+
+        createOAuth2Module(true);
+        given(tokenValidator.validate("ACCESS_TOKEN")).willThrow(new IllegalStateException());
+
+        //When
+        try {
+            oAuth2Module.authorize(accessToken, context);
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            oAuth2Module.authorize(accessToken, context);
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        //Then
+        verify(tokenValidator, times(2)).validate("ACCESS_TOKEN");
+    }
+
     @Test
     public void shouldReturnTrueWhenNotUsingCacheTokenValid() {
 
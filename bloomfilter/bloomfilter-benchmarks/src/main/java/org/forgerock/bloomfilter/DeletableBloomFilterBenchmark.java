@@ -0,0 +1,125 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.bloomfilter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.wrensecurity.guava.common.hash.Funnel;
+import org.wrensecurity.guava.common.hash.Funnels;
+
+/**
+ * Compares the {@link DeletionStrategy#COUNTING counting} and {@link DeletionStrategy#CUCKOO cuckoo} deletable bloom
+ * filters with the {@link ConcurrencyStrategy#ATOMIC atomic} bloom filter they are meant to replace when elements
+ * must be removed. The filters are filled to capacity before measuring. As atomic bloom filters do not support
+ * removal, the {@code addAndRemove} benchmark only adds elements to them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class DeletableBloomFilterBenchmark {
+    private static final Funnel<CharSequence> FUNNEL = Funnels.stringFunnel(StandardCharsets.UTF_8);
+    private static final int LOOKUPS = 1024;
+
+    @Param({ "10000", "10000000" })
+    private int capacity;
+
+    @Param({ "ATOMIC", "COUNTING", "CUCKOO" })
+    private String implementation;
+
+    private BloomFilter<CharSequence> bloomFilter;
+    private DeletableBloomFilter<CharSequence> deletableBloomFilter;
+    private String[] present;
+    private String[] absent;
+    private int next;
+
+    @Setup
+    public void setup() {
+        BloomFilters.BloomFilterBuilder<CharSequence> builder = BloomFilters.create(FUNNEL)
+                .withInitialCapacity(capacity);
+        if ("ATOMIC".equals(implementation)) {
+            bloomFilter = builder.withConcurrencyStrategy(ConcurrencyStrategy.ATOMIC).build();
+        } else {
+            deletableBloomFilter = builder.deletable()
+                    .withDeletionStrategy(DeletionStrategy.valueOf(implementation))
+                    .build();
+            bloomFilter = deletableBloomFilter;
+        }
+        present = new String[LOOKUPS];
+        absent = new String[LOOKUPS];
+        // Leave room for the element added by each addAndRemove invocation
+        for (int i = 0; i < capacity - 1; i++) {
+            String token = UUID.randomUUID().toString();
+            bloomFilter.add(token);
+            if (i < LOOKUPS) {
+                present[i] = token;
+            }
+        }
+        for (int i = 0; i < LOOKUPS; i++) {
+            absent[i] = UUID.randomUUID().toString();
+        }
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (LOOKUPS - 1);
+        return next;
+    }
+
+    @Benchmark
+    public boolean mightContainPresent() {
+        return bloomFilter.mightContain(present[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean mightContainAbsent() {
+        return bloomFilter.mightContain(absent[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean addAndRemove() {
+        String element = absent[nextIndex()];
+        bloomFilter.add(element);
+        return deletableBloomFilter == null || deletableBloomFilter.remove(element);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(DeletableBloomFilterBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+}
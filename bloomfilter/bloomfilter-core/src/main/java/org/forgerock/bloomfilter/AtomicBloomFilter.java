@@ -13,12 +13,12 @@
  */
 
 // Portions Copyrighted 2015 ForgeRock AS.
+// Portions Copyright 2026 Wren Security.
 
 package org.forgerock.bloomfilter;
 
 import org.wrensecurity.guava.common.hash.Funnel;
-import org.wrensecurity.guava.common.hash.Hashing;
-import org.wrensecurity.guava.common.primitives.Longs;
+import org.forgerock.util.Reject;
 
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.Collection;
@@ -28,18 +28,54 @@ import java.util.concurrent.atomic.AtomicLongArray;
 /**
  * A BloomFilter that stores elements in an {@link AtomicLongArray} and uses atomic compare-and-swap operations to
  * ensure thread safety.
+ * <p>
+ * Elements are hashed with {@link Murmur3}, which does not allocate for the standard funnels. With the blocked
+ * layout all the bits of an element are set within a single 512-bit block, the size of a typical cache line, so that
+ * a lookup touches one cache line rather than one per hash function. This comes at the cost of a slightly higher
+ * false positive probability than the standard layout for the same number of bits.
+ * <p>
+ * For replication, the bit array can be stamped with versions taken from a clock shared by all the bloom filters
+ * of a chain: each 512-bit block records the version at which it last changed, so that only the blocks changed since
+ * a given version need to be sent to other nodes, where they are merged with a bitwise OR.
  */
 @ThreadSafe
 final class AtomicBloomFilter<T> implements BloomFilter<T> {
     private static final int BITS_PER_WORD = 64;
+    private static final int BITS_PER_BLOCK = 512;
+    /** Shift which keeps the top nine bits of a hash, enough to index a bit within a block. */
+    private static final int BLOCK_OFFSET_SHIFT = Long.SIZE - Integer.numberOfTrailingZeros(BITS_PER_BLOCK);
+    /** Number of words in each block of the bit array which is stamped with a version. */
+    static final int WORDS_PER_VERSION_BLOCK = BITS_PER_BLOCK / BITS_PER_WORD;
 
     private final long capacity;
     private final double falsePositiveProbability;
     private final AtomicLongArray bits;
-    private final AtomicLong bitCount = new AtomicLong(0);
-    private final Funnel<? super T> funnel;
+    private final AtomicLong bitCount;
+    /** One bit per word of {@link #bits} changed since it was last checkpointed, or {@code null} if not tracked. */
+    private final AtomicLongArray dirtyWords;
+    /** The clock from which versions are taken, or {@code null} if versions are not tracked. */
+    private final AtomicLong versionClock;
+    /** The version at which each block of {@link #bits} last changed, or {@code null} if not tracked. */
+    private final AtomicLongArray blockVersions;
+    private final Murmur3<T> hashFunction;
     private final int numHashFunctions;
     private final long bitSize;
+    private final boolean blocked;
+    private final long numBlocks;
+
+    private final Murmur3.HashConsumer setBits = new Murmur3.HashConsumer() {
+        @Override
+        public boolean accept(final long hash1, final long hash2) {
+            return blocked ? setBlockBits(hash1, hash2) : setBits(hash1, hash2);
+        }
+    };
+
+    private final Murmur3.HashConsumer testBits = new Murmur3.HashConsumer() {
+        @Override
+        public boolean accept(final long hash1, final long hash2) {
+            return blocked ? testBlockBits(hash1, hash2) : testBits(hash1, hash2);
+        }
+    };
 
     /**
      * Constructs an atomic bloom filter with the given parameters.
@@ -51,29 +87,114 @@ final class AtomicBloomFilter<T> implements BloomFilter<T> {
     AtomicBloomFilter(final Funnel<? super T> funnel,
                       final long capacity,
                       final double falsePositiveProbability) {
-        this.funnel = funnel;
+        this(funnel, capacity, falsePositiveProbability, false);
+    }
+
+    /**
+     * Constructs an atomic bloom filter with the given parameters.
+     *
+     * @param funnel the funnel to use for serialising objects for hashing.
+     * @param capacity the desired capacity of the bloom filter.
+     * @param falsePositiveProbability the overall false positive probability to maintain.
+     * @param blocked whether all the bits of an element should be set within a single cache-line sized block.
+     */
+    AtomicBloomFilter(final Funnel<? super T> funnel,
+                      final long capacity,
+                      final double falsePositiveProbability,
+                      final boolean blocked) {
+        this(funnel, capacity, falsePositiveProbability, blocked, false, null);
+    }
+
+    /**
+     * Constructs an empty atomic bloom filter with the given parameters.
+     *
+     * @param funnel the funnel to use for serialising objects for hashing.
+     * @param capacity the desired capacity of the bloom filter.
+     * @param falsePositiveProbability the overall false positive probability to maintain.
+     * @param blocked whether all the bits of an element should be set within a single cache-line sized block.
+     * @param trackDirtyWords whether to record which words have changed since they were last checkpointed.
+     * @param versionClock the clock from which to take the versions of changed blocks, or {@code null} if versions
+     *                     should not be tracked.
+     */
+    AtomicBloomFilter(final Funnel<? super T> funnel,
+                      final long capacity,
+                      final double falsePositiveProbability,
+                      final boolean blocked,
+                      final boolean trackDirtyWords,
+                      final AtomicLong versionClock) {
+        this(funnel, capacity, falsePositiveProbability, blocked,
+                BloomFilterStatistics.optimalNumberOfHashFunctions(
+                        BloomFilterStatistics.optimumBitSize(capacity, falsePositiveProbability), capacity),
+                bitSize(capacity, falsePositiveProbability, blocked), null, 0L, trackDirtyWords, versionClock);
+    }
+
+    /**
+     * Constructs an atomic bloom filter from its previously saved state.
+     *
+     * @param funnel the funnel to use for serialising objects for hashing.
+     * @param capacity the capacity of the bloom filter.
+     * @param falsePositiveProbability the false positive probability of the bloom filter.
+     * @param blocked whether all the bits of an element are set within a single cache-line sized block.
+     * @param numHashFunctions the number of bits set for each element.
+     * @param bitSize the number of bits of the bloom filter.
+     * @param words the words of the bit array, or {@code null} if the bloom filter is empty.
+     * @param bitCount the number of bits set in the bit array.
+     * @param trackDirtyWords whether to record which words have changed since they were last checkpointed.
+     * @param versionClock the clock from which to take the versions of changed blocks, or {@code null} if versions
+     *                     should not be tracked.
+     */
+    AtomicBloomFilter(final Funnel<? super T> funnel,
+                      final long capacity,
+                      final double falsePositiveProbability,
+                      final boolean blocked,
+                      final int numHashFunctions,
+                      final long bitSize,
+                      final long[] words,
+                      final long bitCount,
+                      final boolean trackDirtyWords,
+                      final AtomicLong versionClock) {
+        Reject.ifFalse(numHashFunctions > 0, "Number of hash functions must be > 0");
+        Reject.ifFalse(bitSize > 0 && bitSize <= (long) Integer.MAX_VALUE * BITS_PER_WORD
+                && (!blocked || bitSize % BITS_PER_BLOCK == 0), "Invalid bit size: " + bitSize);
+        this.hashFunction = new Murmur3<T>(funnel);
         this.capacity = capacity;
         this.falsePositiveProbability = falsePositiveProbability;
+        this.blocked = blocked;
+        this.numHashFunctions = numHashFunctions;
+        this.bitSize = bitSize;
+        this.numBlocks = blocked ? bitSize / BITS_PER_BLOCK : 0L;
 
-        this.bitSize = BloomFilterStatistics.optimumBitSize(capacity, falsePositiveProbability);
-        int arraySize = (int) Math.ceil((double) bitSize / (double) BITS_PER_WORD);
-        this.bits = new AtomicLongArray(arraySize);
-        this.numHashFunctions = BloomFilterStatistics.optimalNumberOfHashFunctions(bitSize, capacity);
+        int wordCount = wordCount(bitSize);
+        if (words == null) {
+            this.bits = new AtomicLongArray(wordCount);
+        } else {
+            Reject.ifFalse(words.length == wordCount, "Expected " + wordCount + " words but got " + words.length);
+            this.bits = new AtomicLongArray(words);
+        }
+        this.bitCount = new AtomicLong(bitCount);
+        this.dirtyWords = trackDirtyWords ? new AtomicLongArray(wordCount(wordCount)) : null;
+        this.versionClock = versionClock;
+        this.blockVersions = versionClock != null
+                ? new AtomicLongArray((wordCount + WORDS_PER_VERSION_BLOCK - 1) / WORDS_PER_VERSION_BLOCK)
+                : null;
     }
 
-    @Override
-    public void add(final T element) {
-        // Implementation derived from Guava MURMUR128_MITZ_64 in BloomFilterStrategies
-        byte[] hashBytes = Hashing.murmur3_128().hashObject(element, funnel).asBytes();
-        long hash1 = lowerEight(hashBytes);
-        long hash2 = upperEight(hashBytes);
+    private static long bitSize(final long capacity, final double falsePositiveProbability, final boolean blocked) {
+        long optimumBitSize = BloomFilterStatistics.optimumBitSize(capacity, falsePositiveProbability);
+        if (blocked) {
+            return Math.max(1L, (optimumBitSize + BITS_PER_BLOCK - 1) / BITS_PER_BLOCK) * BITS_PER_BLOCK;
+        }
+        return optimumBitSize;
+    }
 
-        long combinedHash = hash1;
+    /** Returns the number of 64-bit words needed to hold the given number of bits. */
+    private static int wordCount(final long bits) {
+        return (int) ((bits + BITS_PER_WORD - 1) / BITS_PER_WORD);
+    }
 
-        for (int i = 1; i <= numHashFunctions; ++i) {
-            set((combinedHash & Long.MAX_VALUE) % bitSize);
-            combinedHash += hash2;
-        }
+    @Override
+    public void add(final T element) {
+        hashFunction.hash(element, setBits);
     }
 
 
@@ -86,20 +207,53 @@ final class AtomicBloomFilter<T> implements BloomFilter<T> {
 
     @Override
     public boolean mightContain(final T element) {
-        // Implementation derived from Guava MURMUR128_MITZ_64 in BloomFilterStrategies
-        byte[] hashBytes = Hashing.murmur3_128().hashObject(element, funnel).asBytes();
-        long hash1 = lowerEight(hashBytes);
-        long hash2 = upperEight(hashBytes);
+        return hashFunction.hash(element, testBits);
+    }
 
+    private boolean setBits(final long hash1, final long hash2) {
+        // Implementation derived from Guava MURMUR128_MITZ_64 in BloomFilterStrategies
         long combinedHash = hash1;
+        boolean changed = false;
+        for (int i = 1; i <= numHashFunctions; ++i) {
+            changed |= set((combinedHash & Long.MAX_VALUE) % bitSize);
+            combinedHash += hash2;
+        }
+        return changed;
+    }
 
+    private boolean testBits(final long hash1, final long hash2) {
+        // Implementation derived from Guava MURMUR128_MITZ_64 in BloomFilterStrategies
+        long combinedHash = hash1;
         for (int i = 1; i <= numHashFunctions; ++i) {
             if (!get((combinedHash & Long.MAX_VALUE) % bitSize)) {
                 return false;
             }
             combinedHash += hash2;
         }
+        return true;
+    }
+
+    private boolean setBlockBits(final long hash1, final long hash2) {
+        // The first half of the hash selects the block, the second half the bits within it.
+        long blockStart = ((hash1 & Long.MAX_VALUE) % numBlocks) * BITS_PER_BLOCK;
+        long combinedHash = hash2;
+        boolean changed = false;
+        for (int i = 1; i <= numHashFunctions; ++i) {
+            changed |= set(blockStart + (combinedHash >>> BLOCK_OFFSET_SHIFT));
+            combinedHash += hash1 | 1L;
+        }
+        return changed;
+    }
 
+    private boolean testBlockBits(final long hash1, final long hash2) {
+        long blockStart = ((hash1 & Long.MAX_VALUE) % numBlocks) * BITS_PER_BLOCK;
+        long combinedHash = hash2;
+        for (int i = 1; i <= numHashFunctions; ++i) {
+            if (!get(blockStart + (combinedHash >>> BLOCK_OFFSET_SHIFT))) {
+                return false;
+            }
+            combinedHash += hash1 | 1L;
+        }
         return true;
     }
 
@@ -137,11 +291,96 @@ final class AtomicBloomFilter<T> implements BloomFilter<T> {
 
         if (changed) {
             bitCount.incrementAndGet();
+            changed(bucket);
         }
 
         return changed;
     }
 
+    /**
+     * Atomically merges the given bits into a word of the bit array with a bitwise OR.
+     *
+     * @param index the index of the word.
+     * @param word the bits to set in the word.
+     * @return true if the word changed as a result of the merge.
+     */
+    boolean mergeWord(final int index, final long word) {
+        long prev, next;
+        do {
+            prev = bits.get(index);
+            next = prev | word;
+        } while (prev != next && !bits.compareAndSet(index, prev, next));
+
+        if (prev != next) {
+            bitCount.addAndGet(Long.bitCount(next & ~prev));
+            changed(index);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Merges all the elements of a compatible bloom filter into this one.
+     *
+     * @param other the bloom filter to merge, which must have the same layout, bit size and number of hash functions.
+     * @throws IllegalArgumentException if the other bloom filter is not compatible with this one.
+     */
+    void merge(final AtomicBloomFilter<T> other) {
+        Reject.ifFalse(isCompatible(other.blocked, other.bitSize, other.numHashFunctions),
+                "Cannot merge incompatible bloom filters");
+        for (int i = 0, length = bits.length(); i < length; i++) {
+            final long word = other.bits.get(i);
+            if (word != 0L) {
+                mergeWord(i, word);
+            }
+        }
+    }
+
+    /**
+     * Returns whether bloom filters with the given parameters set the same bits for the same elements as this one.
+     *
+     * @param blocked whether the other bloom filter uses the blocked layout.
+     * @param bitSize the bit size of the other bloom filter.
+     * @param numHashFunctions the number of hash functions of the other bloom filter.
+     * @return true if the other bloom filter can be merged into this one.
+     */
+    boolean isCompatible(final boolean blocked, final long bitSize, final int numHashFunctions) {
+        return this.blocked == blocked && this.bitSize == bitSize && this.numHashFunctions == numHashFunctions;
+    }
+
+    private void changed(final int word) {
+        if (dirtyWords != null) {
+            markDirty(word);
+        }
+        if (blockVersions != null) {
+            stampVersion(word / WORDS_PER_VERSION_BLOCK);
+        }
+    }
+
+    /**
+     * Records that a block has changed at the current version. The block is stamped again if the clock moves on
+     * meanwhile, so that a change which completes after a delta has been taken is always included in the next one.
+     */
+    private void stampVersion(final int block) {
+        long version;
+        do {
+            version = versionClock.get();
+            long prev;
+            do {
+                prev = blockVersions.get(block);
+            } while (prev < version && !blockVersions.compareAndSet(block, prev, version));
+        } while (versionClock.get() != version);
+    }
+
+    private void markDirty(final int word) {
+        final int index = word >>> 6;
+        final long mask = 1L << word;
+        long prev;
+        do {
+            prev = dirtyWords.get(index);
+        } while ((prev & mask) == 0L && !dirtyWords.compareAndSet(index, prev, prev | mask));
+    }
+
     /**
      * Atomically tests the bit at the given index.
      * @param index the index of the bit to test.
@@ -152,11 +391,68 @@ final class AtomicBloomFilter<T> implements BloomFilter<T> {
         return (bits.get((int) (index >>> 6)) & 1L << (int) index) != 0L;
     }
 
-    private long lowerEight(byte[] bytes) {
-        return Longs.fromBytes(bytes[7], bytes[6], bytes[5], bytes[4], bytes[3], bytes[2], bytes[1], bytes[0]);
+    long getCapacity() {
+        return capacity;
+    }
+
+    double getFalsePositiveProbability() {
+        return falsePositiveProbability;
+    }
+
+    boolean isBlocked() {
+        return blocked;
+    }
+
+    int getNumHashFunctions() {
+        return numHashFunctions;
+    }
+
+    long getBitSize() {
+        return bitSize;
+    }
+
+    long getBitCount() {
+        return bitCount.get();
+    }
+
+    int getWordCount() {
+        return bits.length();
     }
 
-    private long upperEight(byte[] bytes) {
-        return Longs.fromBytes(bytes[15], bytes[14], bytes[13], bytes[12], bytes[11], bytes[10], bytes[9], bytes[8]);
+    long getWord(final int index) {
+        return bits.get(index);
+    }
+
+    /**
+     * Returns the number of blocks of the bit array which are stamped with a version.
+     *
+     * @return the number of version blocks, or 0 if versions are not tracked.
+     */
+    int getVersionBlockCount() {
+        return blockVersions != null ? blockVersions.length() : 0;
+    }
+
+    /**
+     * Returns the version at which a block of the bit array last changed.
+     *
+     * @param block the index of the block, which is the index of its first word divided by
+     *              {@link #WORDS_PER_VERSION_BLOCK}.
+     * @return the version of the block, or 0 if it has not changed since the bloom filter was created.
+     */
+    long getBlockVersion(final int block) {
+        Reject.ifNull(blockVersions, "Versions are not tracked");
+        return blockVersions.get(block);
+    }
+
+    /**
+     * Returns and clears the dirty flags of 64 consecutive words of the bit array. The flags must be cleared before
+     * the words are read, so that a word which changes concurrently is flagged again.
+     *
+     * @param index the index of the 64 words, which is the index of the first word divided by 64.
+     * @return a bit mask of the words which have changed since they were last checkpointed.
+     */
+    long takeDirtyWords(final int index) {
+        Reject.ifNull(dirtyWords, "Dirty words are not tracked");
+        return dirtyWords.get(index) == 0L ? 0L : dirtyWords.getAndSet(index, 0L);
     }
 }
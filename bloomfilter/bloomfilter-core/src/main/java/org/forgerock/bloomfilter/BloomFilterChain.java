@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.bloomfilter;
@@ -27,6 +28,7 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.ListIterator;
@@ -198,6 +200,52 @@ final class BloomFilterChain<T> implements BloomFilter<T> {
         return lastBucket;
     }
 
+    /**
+     * Returns a copy of the buckets currently in the chain, from oldest to newest.
+     *
+     * @return the buckets in the chain.
+     */
+    List<BloomFilter<T>> getBuckets() {
+        return new ArrayList<BloomFilter<T>>(chain);
+    }
+
+    /**
+     * Appends a previously saved bucket to the end of the chain. The bucket must already have been taken from the
+     * pool of this chain.
+     *
+     * @param bucket the bucket to append.
+     */
+    void restore(final BloomFilter<T> bucket) {
+        Reject.ifNull(bucket);
+        synchronized (chain) {
+            chain.add(bucket);
+        }
+    }
+
+    /**
+     * Inserts a replicated bucket into the chain, after the buckets which precede it in the given order, so that the
+     * chain remains ordered from oldest to newest. The bucket is never inserted after a last bucket which expires
+     * later, so that new elements are not added to a bucket which expires before the buckets preceding it. The bucket
+     * must already have been taken from the pool of this chain.
+     *
+     * @param bucket the bucket to insert.
+     * @param order the order of the buckets in the chain, such as the order of their numbers in the pool.
+     */
+    void insert(final BloomFilter<T> bucket, final Comparator<? super BloomFilter<T>> order) {
+        Reject.ifNull(bucket, order);
+        synchronized (chain) {
+            int index = chain.size();
+            while (index > 0 && order.compare(chain.get(index - 1), bucket) > 0) {
+                index--;
+            }
+            if (index > 0 && index == chain.size() && chain.get(index - 1).getStatistics().getExpiryTime()
+                    > bucket.getStatistics().getExpiryTime()) {
+                index--;
+            }
+            chain.add(index, bucket);
+        }
+    }
+
     @Override
     public String toString() {
         return "BloomFilterChain{size=" + chain.size() + '}';
@@ -0,0 +1,289 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.bloomfilter;
+
+import static org.forgerock.bloomfilter.AtomicBloomFilter.WORDS_PER_VERSION_BLOCK;
+
+import org.wrensecurity.guava.common.hash.Funnel;
+import org.forgerock.util.Reject;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compact, versioned binary encoding of {@link AtomicBloomFilter}s and of the buckets of rolling bloom filters, used
+ * to replicate bloom filters between nodes. Only the 512-bit blocks of the bit arrays which have changed since a
+ * given version are encoded, or all the non-empty blocks for a full encoding, and the receiver merges them into its
+ * own bit arrays with a bitwise OR. The encoding is written with {@link DataOutput}, so all values are big-endian:
+ * <pre>
+ *     chain:  int magic, byte formatVersion, int bucketCount, bucket[bucketCount]
+ *     bucket: int bucketNumber, long expiryTime, filter
+ *     filter: long capacity, double falsePositiveProbability, long bitSize, int numHashFunctions, boolean blocked,
+ *             int blockCount, block[blockCount]
+ *     block:  int blockIndex, long[8] words (fewer for a trailing partial block)
+ * </pre>
+ */
+final class BloomFilterCodec {
+    private static final int MAGIC = 0x424c4652;
+    private static final byte FORMAT_VERSION = 1;
+
+    /** Version to pass to encode all the non-empty blocks of a bloom filter, whatever their version. */
+    static final long ALL_BLOCKS = -1L;
+
+    private BloomFilterCodec() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * A bloom filter decoded from its binary encoding, which may only contain some of the blocks of its bit array.
+     */
+    static final class EncodedBloomFilter {
+        private final long capacity;
+        private final double falsePositiveProbability;
+        private final long bitSize;
+        private final int numHashFunctions;
+        private final boolean blocked;
+        private final int[] blockIndexes;
+        private final long[][] blocks;
+
+        private EncodedBloomFilter(final long capacity, final double falsePositiveProbability, final long bitSize,
+                final int numHashFunctions, final boolean blocked, final int[] blockIndexes, final long[][] blocks) {
+            this.capacity = capacity;
+            this.falsePositiveProbability = falsePositiveProbability;
+            this.bitSize = bitSize;
+            this.numHashFunctions = numHashFunctions;
+            this.blocked = blocked;
+            this.blockIndexes = blockIndexes;
+            this.blocks = blocks;
+        }
+
+        /**
+         * Returns whether the encoding does not contain any block.
+         *
+         * @return true if merging this encoding would not change any bloom filter.
+         */
+        boolean isEmpty() {
+            return blocks.length == 0;
+        }
+
+        /**
+         * Returns whether the encoded blocks can be merged into the given bloom filter.
+         *
+         * @param filter the bloom filter to merge into.
+         * @return true if the bloom filter has the same layout, bit size and number of hash functions.
+         */
+        boolean isCompatibleWith(final AtomicBloomFilter<?> filter) {
+            return filter.isCompatible(blocked, bitSize, numHashFunctions);
+        }
+
+        /**
+         * Merges the encoded blocks into a compatible bloom filter.
+         *
+         * @param filter the bloom filter to merge into.
+         * @return the number of words which changed as a result of the merge.
+         * @throws IllegalArgumentException if the bloom filter is not compatible with the encoding.
+         */
+        int mergeInto(final AtomicBloomFilter<?> filter) {
+            Reject.ifFalse(isCompatibleWith(filter), "Cannot merge incompatible bloom filters");
+            int changedWords = 0;
+            for (int i = 0; i < blocks.length; i++) {
+                final int firstWord = blockIndexes[i] * WORDS_PER_VERSION_BLOCK;
+                for (int j = 0; j < blocks[i].length; j++) {
+                    if (blocks[i][j] != 0L && filter.mergeWord(firstWord + j, blocks[i][j])) {
+                        changedWords++;
+                    }
+                }
+            }
+            return changedWords;
+        }
+
+        /**
+         * Creates a new bloom filter containing the encoded blocks.
+         *
+         * @param funnel the funnel to use for serialising objects for hashing.
+         * @param trackDirtyWords whether to record which words have changed since they were last checkpointed.
+         * @param versionClock the clock from which to take the versions of changed blocks, or {@code null}.
+         * @param <T> the type of elements of the bloom filter.
+         * @return a new bloom filter.
+         */
+        <T> AtomicBloomFilter<T> toBloomFilter(final Funnel<? super T> funnel, final boolean trackDirtyWords,
+                final AtomicLong versionClock) {
+            final AtomicBloomFilter<T> filter = new AtomicBloomFilter<T>(funnel, capacity, falsePositiveProbability,
+                    blocked, numHashFunctions, bitSize, null, 0L, trackDirtyWords, versionClock);
+            mergeInto(filter);
+            return filter;
+        }
+    }
+
+    /**
+     * A bucket of a rolling bloom filter decoded from its binary encoding.
+     */
+    static final class EncodedBucket {
+        final int number;
+        final long expiryTime;
+        final EncodedBloomFilter filter;
+
+        private EncodedBucket(final int number, final long expiryTime, final EncodedBloomFilter filter) {
+            this.number = number;
+            this.expiryTime = expiryTime;
+            this.filter = filter;
+        }
+    }
+
+    /**
+     * Writes the buckets of a rolling bloom filter.
+     *
+     * @param buckets the buckets of the chain, from oldest to newest.
+     * @param sinceVersion only write the blocks which have changed after this version, or {@link #ALL_BLOCKS}.
+     * @param out the output to write to.
+     * @throws IOException if the output cannot be written.
+     */
+    static <T> void writeChain(final List<BloomFilterSnapshot.Bucket<T>> buckets, final long sinceVersion,
+            final DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        out.writeInt(buckets.size());
+        for (BloomFilterSnapshot.Bucket<T> bucket : buckets) {
+            out.writeInt(bucket.number);
+            out.writeLong(bucket.expiryTime);
+            writeFilter(bucket.filter, sinceVersion, out);
+        }
+    }
+
+    /**
+     * Reads the buckets of a rolling bloom filter.
+     *
+     * @param in the input to read from.
+     * @return the decoded buckets, from oldest to newest.
+     * @throws IOException if the input cannot be read or is not a valid encoding.
+     */
+    static List<EncodedBucket> readChain(final DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an encoded bloom filter");
+        }
+        final byte formatVersion = in.readByte();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported bloom filter encoding version: " + formatVersion);
+        }
+        final int bucketCount = in.readInt();
+        if (bucketCount < 0) {
+            throw new IOException("Invalid bucket count: " + bucketCount);
+        }
+        final List<EncodedBucket> buckets = new ArrayList<EncodedBucket>(Math.min(bucketCount, 256));
+        for (int i = 0; i < bucketCount; i++) {
+            final int number = in.readInt();
+            final long expiryTime = in.readLong();
+            buckets.add(new EncodedBucket(number, expiryTime, readFilter(in)));
+        }
+        return buckets;
+    }
+
+    /**
+     * Writes a bloom filter.
+     *
+     * @param filter the bloom filter to write.
+     * @param sinceVersion only write the blocks which have changed after this version, or {@link #ALL_BLOCKS}.
+     * @param out the output to write to.
+     * @throws IOException if the output cannot be written.
+     */
+    static void writeFilter(final AtomicBloomFilter<?> filter, final long sinceVersion, final DataOutput out)
+            throws IOException {
+        final int wordCount = filter.getWordCount();
+        final int blockCount = (wordCount + WORDS_PER_VERSION_BLOCK - 1) / WORDS_PER_VERSION_BLOCK;
+        final int[] selected = new int[blockCount];
+        int selectedCount = 0;
+        for (int block = 0; block < blockCount; block++) {
+            if (sinceVersion == ALL_BLOCKS ? !isEmpty(filter, block) : filter.getBlockVersion(block) > sinceVersion) {
+                selected[selectedCount++] = block;
+            }
+        }
+
+        out.writeLong(filter.getCapacity());
+        out.writeDouble(filter.getFalsePositiveProbability());
+        out.writeLong(filter.getBitSize());
+        out.writeInt(filter.getNumHashFunctions());
+        out.writeBoolean(filter.isBlocked());
+        out.writeInt(selectedCount);
+        for (int i = 0; i < selectedCount; i++) {
+            final int block = selected[i];
+            out.writeInt(block);
+            final int firstWord = block * WORDS_PER_VERSION_BLOCK;
+            for (int word = firstWord, end = Math.min(firstWord + WORDS_PER_VERSION_BLOCK, wordCount); word < end;
+                    word++) {
+                out.writeLong(filter.getWord(word));
+            }
+        }
+    }
+
+    /**
+     * Reads a bloom filter.
+     *
+     * @param in the input to read from.
+     * @return the decoded bloom filter.
+     * @throws IOException if the input cannot be read or is not a valid encoding.
+     */
+    static EncodedBloomFilter readFilter(final DataInput in) throws IOException {
+        final long capacity = in.readLong();
+        final double falsePositiveProbability = in.readDouble();
+        final long bitSize = in.readLong();
+        final int numHashFunctions = in.readInt();
+        final boolean blocked = in.readBoolean();
+        if (bitSize <= 0L || bitSize > (long) Integer.MAX_VALUE * Long.SIZE || numHashFunctions <= 0) {
+            throw new IOException("Invalid bloom filter: bitSize=" + bitSize + ", numHashFunctions="
+                    + numHashFunctions);
+        }
+        final int wordCount = (int) ((bitSize + Long.SIZE - 1) / Long.SIZE);
+        final int maxBlocks = (wordCount + WORDS_PER_VERSION_BLOCK - 1) / WORDS_PER_VERSION_BLOCK;
+        final int blockCount = in.readInt();
+        if (blockCount < 0 || blockCount > maxBlocks) {
+            throw new IOException("Invalid block count: " + blockCount);
+        }
+
+        final int[] blockIndexes = new int[blockCount];
+        final long[][] blocks = new long[blockCount][];
+        for (int i = 0; i < blockCount; i++) {
+            final int block = in.readInt();
+            if (block < 0 || block >= maxBlocks) {
+                throw new IOException("Invalid block index: " + block);
+            }
+            final int firstWord = block * WORDS_PER_VERSION_BLOCK;
+            final long[] words = new long[Math.min(WORDS_PER_VERSION_BLOCK, wordCount - firstWord)];
+            for (int j = 0; j < words.length; j++) {
+                words[j] = in.readLong();
+            }
+            blockIndexes[i] = block;
+            blocks[i] = words;
+        }
+        return new EncodedBloomFilter(capacity, falsePositiveProbability, bitSize, numHashFunctions, blocked,
+                blockIndexes, blocks);
+    }
+
+    private static boolean isEmpty(final AtomicBloomFilter<?> filter, final int block) {
+        final int firstWord = block * WORDS_PER_VERSION_BLOCK;
+        for (int word = firstWord, end = Math.min(firstWord + WORDS_PER_VERSION_BLOCK, filter.getWordCount());
+                word < end; word++) {
+            if (filter.getWord(word) != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.bloomfilter;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import org.wrensecurity.guava.common.hash.Funnel;
+import org.forgerock.util.Reject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Saves the buckets of a rolling bloom filter to a file, and restores them when the bloom filter is created again.
+ * The file consists of a header followed by one record per bucket, in chain order, all big-endian:
+ * <pre>
+ *     header: int magic, int version, int bucketCount, int reserved
+ *     bucket: int bucketNumber, int numHashFunctions, int blocked, long capacity, double falsePositiveProbability,
+ *             long bitSize, long expiryTime, long bitCount, int wordCount, long[wordCount] words
+ * </pre>
+ * Restoring maps the bit arrays of the file read-only and bulk-copies them into new bloom filters. The bloom filters
+ * cannot use the mapping itself, because they update their bit arrays with atomic compare-and-set operations which
+ * Java 8 only offers on heap arrays: restoring therefore still takes time proportional to the size of the snapshot,
+ * at the speed of a memory copy rather than of decoding each word, and needs as much heap as the bit arrays.
+ * <p>
+ * While the buckets of the chain are unchanged, checkpoints are incremental: only the words of the bit arrays which
+ * have changed since the previous checkpoint, along with the expiry time and bit count of each bucket, are written
+ * in place before the file is forced to disk. Bits are only ever set, so a checkpoint interrupted by a crash at
+ * worst loses the elements added since the previous one. Once buckets have been added to or removed from the chain,
+ * the whole snapshot is written to a temporary file which then atomically replaces the previous snapshot.
+ *
+ * @param <T> the type of elements stored in the bloom filter.
+ */
+@ThreadSafe
+final class BloomFilterSnapshot<T> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BloomFilterSnapshot.class);
+
+    private static final int MAGIC = 0x424c4f4d;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int BUCKET_HEADER_SIZE = 56;
+    private static final int EXPIRY_TIME_OFFSET = 36;
+    private static final int BYTES_PER_WORD = 8;
+    /** The number of words tracked by each element of the changed words of a bloom filter. */
+    private static final int WORDS_PER_DIRTY_INDEX = 64;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** The maximum number of words copied from a single mapping, which cannot exceed 2 GiB. */
+    private static final int MAX_MAPPED_WORDS = Integer.MAX_VALUE / BYTES_PER_WORD;
+
+    /**
+     * A bucket of a rolling bloom filter, as saved in or restored from a snapshot.
+     *
+     * @param <T> the type of elements stored in the bloom filter.
+     */
+    static final class Bucket<T> {
+        final int number;
+        final AtomicBloomFilter<T> filter;
+        final long expiryTime;
+
+        /**
+         * Creates a bucket.
+         *
+         * @param number the number of the bucket in the geometric series of the pool.
+         * @param filter the bloom filter holding the elements of the bucket.
+         * @param expiryTime the expiry time of the youngest element of the bucket.
+         */
+        Bucket(final int number, final AtomicBloomFilter<T> filter, final long expiryTime) {
+            Reject.ifNull(filter);
+            this.number = number;
+            this.filter = filter;
+            this.expiryTime = expiryTime;
+        }
+    }
+
+    private final Path file;
+    private final Funnel<? super T> funnel;
+    private final AtomicLong versionClock;
+
+    /** The buckets saved in the file, or {@code null} if the next checkpoint must rewrite the whole file. */
+    private List<Bucket<T>> savedBuckets;
+    /** The offset of each of the saved buckets within the file. */
+    private long[] offsets;
+
+    /**
+     * Creates a snapshot stored in the given file.
+     *
+     * @param file the file in which to store the snapshot.
+     * @param funnel the funnel of the restored bloom filters.
+     * @param versionClock the version clock of the restored bloom filters, or {@code null} if they should not
+     *                     track versions.
+     */
+    BloomFilterSnapshot(final Path file, final Funnel<? super T> funnel, final AtomicLong versionClock) {
+        Reject.ifNull(file, funnel);
+        this.file = file;
+        this.funnel = funnel;
+        this.versionClock = versionClock;
+    }
+
+    /**
+     * Returns the file in which the snapshot is stored.
+     *
+     * @return the snapshot file.
+     */
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Restores the buckets saved in the snapshot file. The bit arrays are copied out of a read-only mapping of the
+     * file into new bloom filters which track their changed words, so that the next checkpoint only writes those words if the chain still contains all the
+     * restored buckets.
+     *
+     * @return the saved buckets, in chain order, or an empty list if the snapshot file does not exist.
+     * @throws IOException if the snapshot file cannot be read or is corrupt.
+     */
+    synchronized List<Bucket<T>> load() throws IOException {
+        if (!Files.exists(file)) {
+            LOGGER.debug("No bloom filter snapshot to restore: {}", file);
+            return Collections.emptyList();
+        }
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            final long fileSize = channel.size();
+            final ByteBuffer header = ByteBuffer.allocate(BUCKET_HEADER_SIZE);
+            header.limit(HEADER_SIZE);
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException("Not a bloom filter snapshot: " + file);
+            }
+            readFully(channel, header, 0L);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a bloom filter snapshot: " + file);
+            }
+            final int bucketCount = header.getInt();
+            Reject.ifFalse(bucketCount >= 0 && bucketCount <= (fileSize - HEADER_SIZE) / BUCKET_HEADER_SIZE,
+                    "Invalid bucket count: " + bucketCount);
+            final List<Bucket<T>> buckets = new ArrayList<Bucket<T>>(bucketCount);
+            final long[] bucketOffsets = new long[bucketCount];
+            long offset = HEADER_SIZE;
+            for (int i = 0; i < bucketCount; i++) {
+                bucketOffsets[i] = offset;
+                buckets.add(readBucket(channel, header, offset, fileSize));
+                offset += bucketSize(buckets.get(i).filter);
+            }
+            LOGGER.debug("Restored {} buckets from bloom filter snapshot {}", bucketCount, file);
+            this.savedBuckets = new ArrayList<Bucket<T>>(buckets);
+            this.offsets = bucketOffsets;
+            return buckets;
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IOException("Corrupt bloom filter snapshot: " + file, e);
+        }
+    }
+
+    /**
+     * Saves the given buckets to the snapshot file and forces the changes to disk.
+     *
+     * @param buckets the buckets of the chain, from oldest to newest.
+     * @throws IOException if the snapshot file cannot be written.
+     */
+    synchronized void write(final List<Bucket<T>> buckets) throws IOException {
+        try {
+            if (isSaved(buckets)) {
+                writeChanges(buckets);
+            } else {
+                rewrite(buckets);
+            }
+        } catch (IOException | RuntimeException e) {
+            // The changed words have been cleared, so only a full rewrite can bring the file up to date again.
+            savedBuckets = null;
+            throw e;
+        }
+    }
+
+    private boolean isSaved(final List<Bucket<T>> buckets) {
+        if (savedBuckets == null || savedBuckets.size() != buckets.size()) {
+            return false;
+        }
+        for (int i = 0; i < buckets.size(); i++) {
+            final Bucket<T> saved = savedBuckets.get(i);
+            final Bucket<T> bucket = buckets.get(i);
+            if (saved.filter != bucket.filter || saved.number != bucket.number) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeChanges(final List<Bucket<T>> buckets) throws IOException {
+        int changedWords = 0;
+        final ByteBuffer buffer = ByteBuffer.allocate(WORDS_PER_DIRTY_INDEX * BYTES_PER_WORD);
+        try (FileChannel channel = FileChannel.open(file, WRITE)) {
+            for (int i = 0; i < buckets.size(); i++) {
+                final Bucket<T> bucket = buckets.get(i);
+                final AtomicBloomFilter<T> filter = bucket.filter;
+                final long offset = offsets[i];
+                final long wordsOffset = offset + BUCKET_HEADER_SIZE;
+                for (int index = 0, length = dirtyWordsLength(filter); index < length; index++) {
+                    final long dirty = filter.takeDirtyWords(index);
+                    if (dirty == 0L) {
+                        continue;
+                    }
+                    // Write the run of words from the first to the last changed one with a single write.
+                    final int first = index * WORDS_PER_DIRTY_INDEX + Long.numberOfTrailingZeros(dirty);
+                    final int last = index * WORDS_PER_DIRTY_INDEX + 63 - Long.numberOfLeadingZeros(dirty);
+                    buffer.clear();
+                    for (int word = first; word <= last; word++) {
+                        buffer.putLong(filter.getWord(word));
+                    }
+                    buffer.flip();
+                    writeFully(channel, buffer, wordsOffset + (long) first * BYTES_PER_WORD);
+                    changedWords += Long.bitCount(dirty);
+                }
+                // The expiry time and the bit count are adjacent in the bucket header.
+                buffer.clear();
+                buffer.putLong(bucket.expiryTime).putLong(filter.getBitCount()).flip();
+                writeFully(channel, buffer, offset + EXPIRY_TIME_OFFSET);
+            }
+            channel.force(false);
+        }
+        LOGGER.debug("Checkpointed {} changed words to bloom filter snapshot {}", changedWords, file);
+    }
+
+    private void rewrite(final List<Bucket<T>> buckets) throws IOException {
+        final Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        final long[] bucketOffsets = new long[buckets.size()];
+        try (FileChannel channel = FileChannel.open(tempFile, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            final DataOutputStream out =
+                    new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(buckets.size());
+            out.writeInt(0);
+            long offset = HEADER_SIZE;
+            for (int i = 0; i < buckets.size(); i++) {
+                bucketOffsets[i] = offset;
+                writeBucket(out, buckets.get(i));
+                offset += bucketSize(buckets.get(i).filter);
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(tempFile, file, ATOMIC_MOVE);
+        LOGGER.debug("Wrote {} buckets to bloom filter snapshot {}", buckets.size(), file);
+
+        this.savedBuckets = new ArrayList<Bucket<T>>(buckets);
+        this.offsets = bucketOffsets;
+    }
+
+    private Bucket<T> readBucket(final FileChannel channel, final ByteBuffer header, final long offset,
+            final long fileSize) throws IOException {
+        Reject.ifFalse(offset + BUCKET_HEADER_SIZE <= fileSize, "Truncated bucket header at offset " + offset);
+        header.clear();
+        readFully(channel, header, offset);
+        final int number = header.getInt();
+        final int numHashFunctions = header.getInt();
+        final boolean blocked = header.getInt() != 0;
+        final long capacity = header.getLong();
+        final double falsePositiveProbability = header.getDouble();
+        final long bitSize = header.getLong();
+        final long expiryTime = header.getLong();
+        final long bitCount = header.getLong();
+        final int wordCount = header.getInt();
+        final long wordsOffset = offset + BUCKET_HEADER_SIZE;
+        Reject.ifFalse(wordCount >= 0 && wordsOffset + (long) wordCount * BYTES_PER_WORD <= fileSize,
+                "Truncated bucket: " + number);
+
+        final long[] words = new long[wordCount];
+        for (int i = 0; i < wordCount; i += MAX_MAPPED_WORDS) {
+            final int length = Math.min(wordCount - i, MAX_MAPPED_WORDS);
+            final LongBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                    wordsOffset + (long) i * BYTES_PER_WORD, (long) length * BYTES_PER_WORD).asLongBuffer();
+            mapped.get(words, i, length);
+        }
+        return new Bucket<T>(number, new AtomicBloomFilter<T>(funnel, capacity, falsePositiveProbability, blocked,
+                numHashFunctions, bitSize, words, bitCount, true, versionClock), expiryTime);
+    }
+
+    private void writeBucket(final DataOutputStream out, final Bucket<T> bucket) throws IOException {
+        final AtomicBloomFilter<T> filter = bucket.filter;
+        // Clear the changed words before reading them, so that concurrent changes are written by the next checkpoint.
+        for (int index = 0, length = dirtyWordsLength(filter); index < length; index++) {
+            filter.takeDirtyWords(index);
+        }
+        out.writeInt(bucket.number);
+        out.writeInt(filter.getNumHashFunctions());
+        out.writeInt(filter.isBlocked() ? 1 : 0);
+        out.writeLong(filter.getCapacity());
+        out.writeDouble(filter.getFalsePositiveProbability());
+        out.writeLong(filter.getBitSize());
+        out.writeLong(bucket.expiryTime);
+        out.writeLong(filter.getBitCount());
+        out.writeInt(filter.getWordCount());
+        for (int i = 0, wordCount = filter.getWordCount(); i < wordCount; i++) {
+            out.writeLong(filter.getWord(i));
+        }
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer, final long position)
+            throws IOException {
+        long nextPosition = position;
+        while (buffer.hasRemaining()) {
+            nextPosition += channel.write(buffer, nextPosition);
+        }
+    }
+
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer, final long position)
+            throws IOException {
+        long nextPosition = position;
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, nextPosition);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of bloom filter snapshot at offset " + nextPosition);
+            }
+            nextPosition += read;
+        }
+        buffer.flip();
+    }
+
+    private static long bucketSize(final AtomicBloomFilter<?> filter) {
+        return BUCKET_HEADER_SIZE + (long) filter.getWordCount() * BYTES_PER_WORD;
+    }
+
+    private static int dirtyWordsLength(final AtomicBloomFilter<?> filter) {
+        return (filter.getWordCount() + WORDS_PER_DIRTY_INDEX - 1) / WORDS_PER_DIRTY_INDEX;
+    }
+
+    @Override
+    public String toString() {
+        return "BloomFilterSnapshot{file=" + file + '}';
+    }
+}
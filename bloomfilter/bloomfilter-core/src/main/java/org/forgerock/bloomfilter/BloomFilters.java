@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.bloomfilter;
@@ -22,6 +23,8 @@ import org.forgerock.util.Reject;
 import org.forgerock.util.annotations.VisibleForTesting;
 import org.forgerock.util.time.TimeService;
 
+import java.nio.file.Path;
+
 /**
  * Factory methods for creating bloom filters with various requirements.
  */
@@ -212,6 +215,19 @@ public final class BloomFilters {
             return new RollingBloomFilterBuilder<T>(this);
         }
 
+        /**
+         * Forces the bloom filter to be a {@link DeletableBloomFilter}, from which elements can be removed as well as
+         * added. Deletable bloom filters have a fixed capacity, and so cannot be combined with the scalable or rolling
+         * options, and do not support write batching. Their thread-safety is determined by the
+         * {@link DeletionStrategy} rather than the concurrency strategy.
+         */
+        public DeletableBloomFilterBuilder<T> deletable() {
+            Reject.ifTrue(this instanceof ScalableBloomFilterBuilder,
+                    "Deletable bloom filters cannot be scalable or rolling");
+            Reject.ifTrue(writeBatchSize > 0, "Deletable bloom filters cannot be combined with write batching");
+            return new DeletableBloomFilterBuilder<T>(this);
+        }
+
         /**
          * Builds the bloom filter with the configured options.
          *
@@ -291,11 +307,32 @@ public final class BloomFilters {
     public static final class RollingBloomFilterBuilder<T> extends ScalableBloomFilterBuilder<T> {
         TimeService clock = TimeService.SYSTEM;
         ExpiryStrategy<T> expiryStrategy = null;
+        Path snapshotFile = null;
 
         public RollingBloomFilterBuilder(final BloomFilterBuilder<T> toCopy) {
             super(toCopy);
         }
 
+        /**
+         * Specifies a file in which to save the buckets of the rolling bloom filter, so that its elements survive a
+         * restart. The buckets saved in the file, if it exists, are restored when the bloom filter is built, and are
+         * saved again by {@link ConcurrentRollingBloomFilter#checkpoint()}. Requires the
+         * {@link ConcurrencyStrategy#ATOMIC} or {@link ConcurrencyStrategy#ATOMIC_BLOCKED} strategy, without write
+         * batching.
+         * <p>
+         * The restored buckets do not share the snapshot file: its bit arrays are mapped read-only and copied onto the
+         * heap, because the bloom filters update them with atomic operations that are only available on heap arrays.
+         * Building the bloom filter therefore takes time proportional to the size of the snapshot, roughly that of
+         * copying it from the page cache, and needs as much heap as the restored bit arrays.
+         *
+         * @param snapshotFile the file in which to save the bloom filter.
+         */
+        public RollingBloomFilterBuilder<T> withSnapshotFile(final Path snapshotFile) {
+            Reject.ifNull(snapshotFile);
+            this.snapshotFile = snapshotFile;
+            return this;
+        }
+
         @VisibleForTesting
         RollingBloomFilterBuilder<T> withClock(final TimeService clock) {
             Reject.ifNull(clock);
@@ -313,7 +350,77 @@ public final class BloomFilters {
         @Override
         BloomFilter<T> buildBloomFilter() {
             Reject.ifNull(expiryStrategy, "No expiry strategy specified");
+            if (snapshotFile != null) {
+                Reject.ifFalse(concurrencyStrategy == ConcurrencyStrategy.ATOMIC
+                        || concurrencyStrategy == ConcurrencyStrategy.ATOMIC_BLOCKED,
+                        "Snapshots require the ATOMIC or ATOMIC_BLOCKED concurrency strategy");
+                Reject.ifTrue(writeBatchSize > 0, "Snapshots cannot be combined with write batching");
+            }
             return new ConcurrentRollingBloomFilter<T>(this);
         }
     }
+
+    /**
+     * Builder pattern for Deletable Bloom Filters, which support removing elements as well as adding them.
+     *
+     * @param <T> the type of elements to contain in the bloom filter.
+     */
+    public static final class DeletableBloomFilterBuilder<T> {
+        final Funnel<? super T> funnel;
+        int capacity;
+        double falsePositiveProbability;
+        DeletionStrategy deletionStrategy = DeletionStrategy.COUNTING;
+
+        DeletableBloomFilterBuilder(final BloomFilterBuilder<T> toCopy) {
+            this.funnel = toCopy.funnel;
+            this.capacity = toCopy.initialCapacity;
+            this.falsePositiveProbability = toCopy.falsePositiveProbability;
+        }
+
+        /**
+         * Specifies the capacity of the bloom filter. This is the expected number of elements that can be contained
+         * in the bloom filter before it becomes saturated (exceeds the configured false positive probability).
+         *
+         * @param capacity the capacity of the bloom filter.
+         */
+        public DeletableBloomFilterBuilder<T> withCapacity(final int capacity) {
+            Reject.ifFalse(capacity > 0, "Capacity must be > 0");
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * Specifies the probability of false positives that this bloom filter should achieve. The bloom filter will
+         * be sized to achieve this probability for the specified capacity.
+         *
+         * @param fpp the probability of false positives to achieve.
+         */
+        public DeletableBloomFilterBuilder<T> withFalsePositiveProbability(final double fpp) {
+            Reject.ifFalse(fpp > 0.0d, "False positive probability must be > 0");
+            Reject.ifFalse(fpp < 1.0d, "False positive probability must be < 1");
+            this.falsePositiveProbability = fpp;
+            return this;
+        }
+
+        /**
+         * Sets the strategy used to represent elements so that they can be removed. Defaults to
+         * {@link DeletionStrategy#COUNTING}.
+         *
+         * @param strategy the deletion strategy to use.
+         */
+        public DeletableBloomFilterBuilder<T> withDeletionStrategy(final DeletionStrategy strategy) {
+            Reject.ifNull(strategy);
+            this.deletionStrategy = strategy;
+            return this;
+        }
+
+        /**
+         * Builds the deletable bloom filter with the configured options.
+         *
+         * @return a new deletable bloom filter configured appropriately.
+         */
+        public DeletableBloomFilter<T> build() {
+            return deletionStrategy.create(funnel, capacity, falsePositiveProbability);
+        }
+    }
 }
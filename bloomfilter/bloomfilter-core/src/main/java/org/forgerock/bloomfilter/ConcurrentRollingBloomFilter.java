@@ -12,16 +12,27 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.bloomfilter;
 
+import org.wrensecurity.guava.common.hash.Funnel;
 import org.forgerock.util.Reject;
+import org.forgerock.util.time.TimeService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.concurrent.ThreadSafe;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A thread-safe implementation of a Bloom Filter that can expand over time to accommodate arbitrary numbers of
@@ -33,26 +44,138 @@ import java.util.Collection;
  * critical and writes are relatively rare. Write performance may be improved by batching writes via the
  * {@link #addAll(Collection)} method, or by using some external synchronisation mechanism to perform pre-emptive
  * locking (at the cost of reducing read performance).
+ * <p/>
+ * If a snapshot file has been configured with {@link BloomFilters.RollingBloomFilterBuilder#withSnapshotFile(Path)},
+ * the buckets saved in that file are restored on construction, dropping any bucket whose elements have all expired,
+ * and {@link #checkpoint()} saves the current buckets to it.
+ * <p/>
+ * With the {@link ConcurrencyStrategy#ATOMIC} and {@link ConcurrencyStrategy#ATOMIC_BLOCKED} strategies, the state
+ * of the bloom filter can be replicated to other nodes: {@link #writeTo(DataOutput)} writes all of its elements,
+ * {@link #writeDelta(long, DataOutput)} only those added or merged since a previous call, and
+ * {@link #merge(DataInput)} merges what another node has written into this bloom filter. Nodes can therefore gossip
+ * small deltas rather than their whole bloom filters.
  */
 @ThreadSafe
 public final class ConcurrentRollingBloomFilter<T> implements BloomFilter<T> {
     private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrentRollingBloomFilter.class);
 
     private final BloomFilterChain<T> bucketChain;
-    private final BloomFilterPool<T> bucketPool;
+    private final GeometricSeriesBloomFilterPool<T> bucketPool;
     private final ConcurrencyStrategy concurrencyStrategy;
+    private final Funnel<? super T> funnel;
+    /** The expiry strategy, or {@code null} if elements never expire. */
+    private final ExpiryStrategy<T> expiryStrategy;
+    private final TimeService clock;
+    /** The clock from which the versions of changed blocks are taken, or {@code null} if not replicable. */
+    private final AtomicLong versionClock;
+    private final BloomFilterSnapshot<T> snapshot;
+    private final Comparator<BloomFilter<T>> bucketNumberOrder = new Comparator<BloomFilter<T>>() {
+        @Override
+        public int compare(final BloomFilter<T> first, final BloomFilter<T> second) {
+            return Integer.compare(bucketNumber(first), bucketNumber(second));
+        }
+
+        private int bucketNumber(final BloomFilter<T> bucket) {
+            final Integer number = bucketPool.getBucketNumber(bucket);
+            return number != null ? number : -1;
+        }
+    };
 
     ConcurrentRollingBloomFilter(final BloomFilters.RollingBloomFilterBuilder<T> builder) {
         this.concurrencyStrategy = builder.concurrencyStrategy;
+        this.funnel = builder.funnel;
+        this.expiryStrategy = builder.expiryStrategy != BloomFilters.NeverExpires.strategy()
+                ? builder.expiryStrategy
+                : null;
+        this.clock = builder.clock;
 
-        BloomFilterFactory<T> factory = concurrencyStrategy.<T>getFactory(builder.funnel);
-        if (builder.expiryStrategy != BloomFilters.NeverExpires.strategy()) {
-            factory = new ExpiringBloomFilterFactory<T>(factory, builder.expiryStrategy);
+        final boolean atomic = concurrencyStrategy == ConcurrencyStrategy.ATOMIC
+                || concurrencyStrategy == ConcurrencyStrategy.ATOMIC_BLOCKED;
+        this.versionClock = atomic ? new AtomicLong(1L) : null;
+        BloomFilterFactory<T> factory = atomic
+                ? new AtomicBloomFilterFactory<T>(funnel, concurrencyStrategy == ConcurrencyStrategy.ATOMIC_BLOCKED,
+                        builder.snapshotFile != null, versionClock)
+                : concurrencyStrategy.<T>getFactory(funnel);
+        if (expiryStrategy != null) {
+            factory = new ExpiringBloomFilterFactory<T>(factory, expiryStrategy);
         }
         this.bucketPool = new GeometricSeriesBloomFilterPool<T>(factory, builder.maxNumberOfBuckets,
                 builder.initialCapacity, builder.capacityGrowthFactor,
                 builder.falsePositiveProbability, builder.falsePositiveProbabilityScaleFactor);
-        this.bucketChain = new BloomFilterChain<T>(bucketPool, builder.clock);
+        this.bucketChain = new BloomFilterChain<T>(bucketPool, clock);
+
+        if (builder.snapshotFile != null) {
+            this.snapshot = new BloomFilterSnapshot<T>(builder.snapshotFile, funnel, versionClock);
+            restore();
+        } else {
+            this.snapshot = null;
+        }
+    }
+
+    /**
+     * Restores the buckets saved in the snapshot file, dropping those whose elements have all expired. A snapshot
+     * which cannot be read is ignored, so that the bloom filter starts empty as it would without a snapshot.
+     */
+    private void restore() {
+        final List<BloomFilterSnapshot.Bucket<T>> savedBuckets;
+        try {
+            savedBuckets = snapshot.load();
+        } catch (IOException e) {
+            LOGGER.warn("Unable to restore bloom filter snapshot {}, starting empty", snapshot.getFile(), e);
+            return;
+        }
+        final long now = clock.now();
+        for (BloomFilterSnapshot.Bucket<T> saved : savedBuckets) {
+            if (expiryStrategy != null && saved.expiryTime < now) {
+                LOGGER.debug("Dropping expired bucket number {}", saved.number);
+                continue;
+            }
+            if (!addBucket(saved.number, saved.filter, saved.expiryTime, false)) {
+                LOGGER.warn("Dropping bucket number {} which does not fit the configured pool", saved.number);
+            }
+        }
+    }
+
+    /**
+     * Adds a saved or replicated bucket to the chain, provided its number is still available in the pool. Saved
+     * buckets are restored in the order of the snapshot, whereas replicated buckets are inserted by bucket number, as
+     * they may be older than the buckets already in the chain.
+     */
+    private boolean addBucket(final int number, final AtomicBloomFilter<T> filter, final long expiryTime,
+            final boolean replicated) {
+        final BloomFilter<T> bucket = expiryStrategy == null
+                ? filter
+                : new ExpiringBloomFilter<T>(filter, expiryStrategy, expiryTime);
+        if (!bucketPool.restore(bucket, number)) {
+            return false;
+        }
+        if (replicated) {
+            bucketChain.insert(bucket, bucketNumberOrder);
+        } else {
+            bucketChain.restore(bucket);
+        }
+        return true;
+    }
+
+    private static final class AtomicBloomFilterFactory<T> implements BloomFilterFactory<T> {
+        private final Funnel<? super T> funnel;
+        private final boolean blocked;
+        private final boolean trackDirtyWords;
+        private final AtomicLong versionClock;
+
+        AtomicBloomFilterFactory(final Funnel<? super T> funnel, final boolean blocked,
+                                 final boolean trackDirtyWords, final AtomicLong versionClock) {
+            this.funnel = funnel;
+            this.blocked = blocked;
+            this.trackDirtyWords = trackDirtyWords;
+            this.versionClock = versionClock;
+        }
+
+        @Override
+        public BloomFilter<T> create(final long expectedInsertions, final double falsePositiveProbability) {
+            return new AtomicBloomFilter<T>(funnel, expectedInsertions, falsePositiveProbability, blocked,
+                    trackDirtyWords, versionClock);
+        }
     }
 
     private static final class ExpiringBloomFilterFactory<T> implements BloomFilterFactory<T> {
@@ -96,6 +219,147 @@ public final class ConcurrentRollingBloomFilter<T> implements BloomFilter<T> {
         return bucketChain.getStatistics();
     }
 
+    /**
+     * Saves the current buckets of this bloom filter to its snapshot file. Only the words of the bit arrays which
+     * have changed since the previous checkpoint are written, unless buckets have since been added or expired. Elements
+     * added concurrently may or may not be included in the snapshot.
+     *
+     * @throws IOException if the snapshot file cannot be written.
+     * @throws IllegalStateException if no snapshot file has been configured.
+     */
+    public void checkpoint() throws IOException {
+        if (snapshot == null) {
+            throw new IllegalStateException("No snapshot file has been configured");
+        }
+        snapshot.write(getBuckets());
+    }
+
+    /**
+     * Writes all the elements of this bloom filter in a compact binary encoding, which other nodes can merge into
+     * their own bloom filter with {@link #merge(DataInput)}. Only the non-empty 512-bit blocks of each bucket are
+     * written, along with the parameters and expiry time of the buckets.
+     *
+     * @param out the output to write to.
+     * @return the version to pass to {@link #writeDelta(long, DataOutput)} to subsequently only write the changes
+     * made after this call.
+     * @throws IOException if the output cannot be written.
+     * @throws IllegalStateException if the concurrency strategy is not {@link ConcurrencyStrategy#ATOMIC} or
+     * {@link ConcurrencyStrategy#ATOMIC_BLOCKED}.
+     */
+    public long writeTo(final DataOutput out) throws IOException {
+        return write(BloomFilterCodec.ALL_BLOCKS, out);
+    }
+
+    /**
+     * Writes the changes made to this bloom filter after the given version, in the same encoding as
+     * {@link #writeTo(DataOutput)}. Only the 512-bit blocks which have changed, whether by adding elements or by
+     * merging those of other nodes, are written. A block which changes while the delta is being written may also be
+     * written by the next delta.
+     *
+     * @param sinceVersion the version returned by a previous call to this method or to {@link #writeTo(DataOutput)}.
+     * @param out the output to write to.
+     * @return the version to pass to the next call to this method.
+     * @throws IOException if the output cannot be written.
+     * @throws IllegalStateException if the concurrency strategy is not {@link ConcurrencyStrategy#ATOMIC} or
+     * {@link ConcurrencyStrategy#ATOMIC_BLOCKED}.
+     */
+    public long writeDelta(final long sinceVersion, final DataOutput out) throws IOException {
+        Reject.ifFalse(sinceVersion >= 0L, "Version must be >= 0");
+        return write(sinceVersion, out);
+    }
+
+    private long write(final long sinceVersion, final DataOutput out) throws IOException {
+        checkReplicable();
+        // Blocks which change from now on are stamped with a later version than the one returned.
+        final long version = versionClock.getAndIncrement();
+        BloomFilterCodec.writeChain(getBuckets(), sinceVersion, out);
+        return version;
+    }
+
+    /**
+     * Merges the elements of another node's bloom filter, written by {@link #writeTo(DataOutput)} or
+     * {@link #writeDelta(long, DataOutput)}, into this one with a bitwise OR. The other bloom filter must have been
+     * built with the same funnel, capacity, false positive probability and concurrency strategy. Each of its buckets
+     * is merged into the bucket with the same number in the chain, which is added if needed unless the elements of
+     * the bucket have all expired. Added buckets are inserted in the order of their numbers, and never become the
+     * bucket to which new elements are added if they expire before the last bucket. Incompatible buckets are skipped.
+     *
+     * @param in the input to read from.
+     * @throws IOException if the input cannot be read or is not a valid encoding.
+     * @throws IllegalStateException if the concurrency strategy is not {@link ConcurrencyStrategy#ATOMIC} or
+     * {@link ConcurrencyStrategy#ATOMIC_BLOCKED}.
+     */
+    public void merge(final DataInput in) throws IOException {
+        checkReplicable();
+        final List<BloomFilterCodec.EncodedBucket> encodedBuckets = BloomFilterCodec.readChain(in);
+        final long now = clock.now();
+        synchronized (versionClock) {
+            for (BloomFilterCodec.EncodedBucket encoded : encodedBuckets) {
+                BloomFilter<T> bucket = findBucket(encoded.number);
+                if (bucket == null) {
+                    if (encoded.filter.isEmpty() || (expiryStrategy != null && encoded.expiryTime < now)) {
+                        continue;
+                    }
+                    final AtomicBloomFilter<T> filter =
+                            encoded.filter.toBloomFilter(funnel, snapshot != null, versionClock);
+                    if (addBucket(encoded.number, filter, encoded.expiryTime, true)) {
+                        LOGGER.debug("Added replicated bucket number {}", encoded.number);
+                        continue;
+                    }
+                    // The bucket number has been taken meanwhile by a local bucket, or does not fit the pool.
+                    bucket = findBucket(encoded.number);
+                    if (bucket == null) {
+                        LOGGER.warn("Skipping replicated bucket number {} which does not fit the configured pool",
+                                encoded.number);
+                        continue;
+                    }
+                }
+                final AtomicBloomFilter<T> filter = atomicBloomFilter(bucket);
+                if (!encoded.filter.isCompatibleWith(filter)) {
+                    LOGGER.warn("Skipping incompatible replicated bucket number {}", encoded.number);
+                    continue;
+                }
+                final int changedWords = encoded.filter.mergeInto(filter);
+                if (bucket instanceof ExpiringBloomFilter) {
+                    ((ExpiringBloomFilter<T>) bucket).updateExpiryTime(encoded.expiryTime);
+                }
+                LOGGER.debug("Merged {} words into bucket number {}", changedWords, encoded.number);
+            }
+        }
+    }
+
+    private void checkReplicable() {
+        if (versionClock == null) {
+            throw new IllegalStateException("Replication requires the ATOMIC or ATOMIC_BLOCKED concurrency strategy");
+        }
+    }
+
+    private BloomFilter<T> findBucket(final int number) {
+        for (BloomFilter<T> bucket : bucketChain.getBuckets()) {
+            final Integer bucketNumber = bucketPool.getBucketNumber(bucket);
+            if (bucketNumber != null && bucketNumber == number) {
+                return bucket;
+            }
+        }
+        return null;
+    }
+
+    private List<BloomFilterSnapshot.Bucket<T>> getBuckets() {
+        final List<BloomFilterSnapshot.Bucket<T>> buckets = new ArrayList<BloomFilterSnapshot.Bucket<T>>();
+        for (BloomFilter<T> bucket : bucketChain.getBuckets()) {
+            buckets.add(new BloomFilterSnapshot.Bucket<T>(bucketPool.getBucketNumber(bucket), atomicBloomFilter(bucket),
+                    bucket.getStatistics().getExpiryTime()));
+        }
+        return buckets;
+    }
+
+    @SuppressWarnings("unchecked")
+    private AtomicBloomFilter<T> atomicBloomFilter(final BloomFilter<T> bucket) {
+        return (AtomicBloomFilter<T>) (bucket instanceof ExpiringBloomFilter
+                ? ((ExpiringBloomFilter<T>) bucket).getDelegate()
+                : bucket);
+    }
+
 
     @Override
     public String toString() {
@@ -103,6 +367,7 @@ public final class ConcurrentRollingBloomFilter<T> implements BloomFilter<T> {
                 "concurrencyStrategy=" + concurrencyStrategy +
                 ", bucketChain=" + bucketChain +
                 ", bucketPool=" + bucketPool +
+                ", snapshot=" + snapshot +
                 '}';
     }
 }
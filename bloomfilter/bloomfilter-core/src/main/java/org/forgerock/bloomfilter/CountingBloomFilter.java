@@ -0,0 +1,207 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.bloomfilter;
+
+import org.wrensecurity.guava.common.hash.Funnel;
+import org.forgerock.util.Reject;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counting bloom filter, which replaces each bit of a standard bloom filter by a 4-bit counter so that elements
+ * can be removed. Sixteen counters are packed into each word of an {@link AtomicLongArray} and updated with atomic
+ * compare-and-swap operations, so that the filter is thread-safe without locking.
+ * <p>
+ * A counter which reaches its maximum value of 15 saturates: it is no longer incremented nor decremented, so that
+ * removing an element sharing it can never cause a false negative. With the optimal number of hash functions the
+ * probability of a counter overflowing is negligible for any realistic capacity.
+ *
+ * @see <a href="http://pages.cs.wisc.edu/~jussara/papers/00ton.pdf">Summary Cache: A Scalable Wide-Area Web Cache
+ * Sharing Protocol</a> by Fan et al., <em>IEEE/ACM Transactions on Networking</em>, 8(3), p.281&ndash;293, 2000.
+ */
+@ThreadSafe
+final class CountingBloomFilter<T> implements DeletableBloomFilter<T> {
+    private static final int BITS_PER_COUNTER = 4;
+    private static final int COUNTERS_PER_WORD = Long.SIZE / BITS_PER_COUNTER;
+    private static final long MAX_COUNT = (1L << BITS_PER_COUNTER) - 1L;
+
+    private final long capacity;
+    private final double falsePositiveProbability;
+    private final long numCounters;
+    private final int numHashFunctions;
+    private final AtomicLongArray counters;
+    /** Number of counters which are not zero, the equivalent of the number of bits set in a standard bloom filter. */
+    private final AtomicLong nonZeroCounters = new AtomicLong();
+    /** Number of elements added and not removed. */
+    private final AtomicLong size = new AtomicLong();
+    private final Murmur3<T> hashFunction;
+
+    private final Murmur3.HashConsumer incrementCounters = new Murmur3.HashConsumer() {
+        @Override
+        public boolean accept(final long hash1, final long hash2) {
+            long combinedHash = hash1;
+            for (int i = 1; i <= numHashFunctions; ++i) {
+                increment((combinedHash & Long.MAX_VALUE) % numCounters);
+                combinedHash += hash2;
+            }
+            return true;
+        }
+    };
+
+    private final Murmur3.HashConsumer decrementCounters = new Murmur3.HashConsumer() {
+        @Override
+        public boolean accept(final long hash1, final long hash2) {
+            long combinedHash = hash1;
+            for (int i = 1; i <= numHashFunctions; ++i) {
+                decrement((combinedHash & Long.MAX_VALUE) % numCounters);
+                combinedHash += hash2;
+            }
+            return true;
+        }
+    };
+
+    private final Murmur3.HashConsumer testCounters = new Murmur3.HashConsumer() {
+        @Override
+        public boolean accept(final long hash1, final long hash2) {
+            long combinedHash = hash1;
+            for (int i = 1; i <= numHashFunctions; ++i) {
+                if (count((combinedHash & Long.MAX_VALUE) % numCounters) == 0L) {
+                    return false;
+                }
+                combinedHash += hash2;
+            }
+            return true;
+        }
+    };
+
+    /**
+     * Constructs a counting bloom filter with the given parameters.
+     *
+     * @param funnel the funnel to use for serialising objects for hashing.
+     * @param capacity the expected number of elements in the bloom filter.
+     * @param falsePositiveProbability the desired probability of false positives.
+     */
+    CountingBloomFilter(final Funnel<? super T> funnel, final long capacity, final double falsePositiveProbability) {
+        Reject.ifNull(funnel);
+        Reject.ifFalse(capacity > 0, "Capacity must be > 0");
+        Reject.ifFalse(falsePositiveProbability > 0.0d && falsePositiveProbability < 1.0d,
+                "False positive probability must be between 0 and 1");
+        this.capacity = capacity;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.numCounters = Math.max(1L, BloomFilterStatistics.optimumBitSize(capacity, falsePositiveProbability));
+        Reject.ifFalse(numCounters <= (long) Integer.MAX_VALUE * COUNTERS_PER_WORD, "Capacity too large");
+        this.numHashFunctions = BloomFilterStatistics.optimalNumberOfHashFunctions(numCounters, capacity);
+        this.counters = new AtomicLongArray((int) ((numCounters + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD));
+        this.hashFunction = new Murmur3<T>(funnel);
+    }
+
+    @Override
+    public void add(final T element) {
+        hashFunction.hash(element, incrementCounters);
+        size.incrementAndGet();
+    }
+
+    @Override
+    public void addAll(final Collection<? extends T> elements) {
+        for (T element : elements) {
+            add(element);
+        }
+    }
+
+    @Override
+    public boolean mightContain(final T element) {
+        return hashFunction.hash(element, testCounters);
+    }
+
+    @Override
+    public boolean remove(final T element) {
+        if (!mightContain(element)) {
+            return false;
+        }
+        hashFunction.hash(element, decrementCounters);
+        size.decrementAndGet();
+        return true;
+    }
+
+    @Override
+    public BloomFilterStatistics getStatistics() {
+        final double expectedFpp = Math.pow((double) nonZeroCounters.get() / (double) numCounters, numHashFunctions);
+        // Counters use four times the memory of the bits of a standard bloom filter
+        return new BloomFilterStatistics(falsePositiveProbability, expectedFpp, capacity,
+                numCounters * BITS_PER_COUNTER, Long.MAX_VALUE, capacity - Math.max(0L, size.get()));
+    }
+
+    /**
+     * Returns the current value of a counter.
+     *
+     * @param index the index of the counter.
+     * @return the value of the counter, between 0 and 15.
+     */
+    long count(final long index) {
+        return (counters.get(wordIndex(index)) >>> shift(index)) & MAX_COUNT;
+    }
+
+    private void increment(final long index) {
+        final int word = wordIndex(index);
+        final int shift = shift(index);
+        long prev, count;
+        do {
+            prev = counters.get(word);
+            count = (prev >>> shift) & MAX_COUNT;
+        } while (count != MAX_COUNT && !counters.compareAndSet(word, prev, prev + (1L << shift)));
+
+        if (count == 0L) {
+            nonZeroCounters.incrementAndGet();
+        }
+    }
+
+    private void decrement(final long index) {
+        final int word = wordIndex(index);
+        final int shift = shift(index);
+        long prev, count;
+        do {
+            prev = counters.get(word);
+            count = (prev >>> shift) & MAX_COUNT;
+            // Saturated counters may be shared by more elements than they can count, and a concurrent removal may
+            // already have cleared the counter.
+        } while (count != MAX_COUNT && count != 0L && !counters.compareAndSet(word, prev, prev - (1L << shift)));
+
+        if (count == 1L) {
+            nonZeroCounters.decrementAndGet();
+        }
+    }
+
+    private static int wordIndex(final long index) {
+        return (int) (index / COUNTERS_PER_WORD);
+    }
+
+    private static int shift(final long index) {
+        return (int) (index % COUNTERS_PER_WORD) * BITS_PER_COUNTER;
+    }
+
+    @Override
+    public String toString() {
+        return "CountingBloomFilter{" +
+                "counters=" + numCounters +
+                ", numHashFunctions=" + numHashFunctions +
+                ", size=" + size.get() +
+                '}';
+    }
+}
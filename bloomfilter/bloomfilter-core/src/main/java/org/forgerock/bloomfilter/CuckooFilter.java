@@ -0,0 +1,314 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.bloomfilter;
+
+import org.wrensecurity.guava.common.hash.Funnel;
+import org.forgerock.util.Reject;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A cuckoo filter, which stores a short fingerprint of each element in one of two candidate buckets of four slots,
+ * so that elements can be removed by clearing their fingerprint. The fingerprints are bit-packed into a {@code long}
+ * array to use no more memory than necessary for the configured false positive probability.
+ * <p>
+ * Adding an element whose candidate buckets are both full relocates existing fingerprints to their alternate bucket,
+ * so writes are serialised by a {@link StampedLock}. Lookups use optimistic reads, which only fall back to taking
+ * the read lock if they overlap with a write. When no free slot can be found after a bounded number of relocations
+ * the last relocated fingerprint is kept aside as a victim, and further additions fail until an element is removed.
+ *
+ * @see <a href="https://www.cs.cmu.edu/~dga/papers/cuckoo-conext2014.pdf">Cuckoo Filter: Practically Better Than
+ * Bloom</a> by Fan et al., <em>CoNEXT</em> 2014.
+ */
+@ThreadSafe
+final class CuckooFilter<T> implements DeletableBloomFilter<T> {
+    private static final int SLOTS_PER_BUCKET = 4;
+    private static final int MAX_KICKS = 500;
+    private static final double MAX_LOAD_FACTOR = 0.95d;
+    private static final int MIN_FINGERPRINT_BITS = 4;
+    private static final int MAX_FINGERPRINT_BITS = 32;
+    private static final long EMPTY = 0L;
+
+    private final long capacity;
+    private final double falsePositiveProbability;
+    private final int fingerprintBits;
+    private final long fingerprintMask;
+    private final long numBuckets;
+    private final long numSlots;
+    /** Fingerprints of {@link #fingerprintBits} bits, which may span two words, with an extra word at the end. */
+    private final long[] slots;
+    private final StampedLock lock = new StampedLock();
+    private final Murmur3<T> hashFunction;
+
+    /** Number of fingerprints stored, including the victim. Guarded by the write lock. */
+    private long count;
+    /** Fingerprint which could not be relocated, or {@link #EMPTY}. Guarded by the write lock. */
+    private long victim = EMPTY;
+    /** One of the candidate buckets of the victim. Guarded by the write lock. */
+    private long victimBucket;
+
+    private final Murmur3.HashConsumer insert = new Murmur3.HashConsumer() {
+        @Override
+        public boolean accept(final long hash1, final long hash2) {
+            return insert(bucket(hash1), fingerprint(hash2));
+        }
+    };
+
+    private final Murmur3.HashConsumer delete = new Murmur3.HashConsumer() {
+        @Override
+        public boolean accept(final long hash1, final long hash2) {
+            return delete(bucket(hash1), fingerprint(hash2));
+        }
+    };
+
+    private final Murmur3.HashConsumer lookup = new Murmur3.HashConsumer() {
+        @Override
+        public boolean accept(final long hash1, final long hash2) {
+            return lookup(bucket(hash1), fingerprint(hash2));
+        }
+    };
+
+    /**
+     * Constructs a cuckoo filter with the given parameters.
+     *
+     * @param funnel the funnel to use for serialising objects for hashing.
+     * @param capacity the expected number of elements in the cuckoo filter.
+     * @param falsePositiveProbability the desired probability of false positives.
+     */
+    CuckooFilter(final Funnel<? super T> funnel, final long capacity, final double falsePositiveProbability) {
+        Reject.ifNull(funnel);
+        Reject.ifFalse(capacity > 0, "Capacity must be > 0");
+        Reject.ifFalse(falsePositiveProbability > 0.0d && falsePositiveProbability < 1.0d,
+                "False positive probability must be between 0 and 1");
+        this.capacity = capacity;
+        this.falsePositiveProbability = falsePositiveProbability;
+        // A lookup compares the fingerprint with up to 2 * SLOTS_PER_BUCKET others, each matching with 1/2^f odds
+        final double bits = Math.ceil(Math.log(2 * SLOTS_PER_BUCKET / falsePositiveProbability) / Math.log(2.0d));
+        this.fingerprintBits = (int) Math.max(MIN_FINGERPRINT_BITS, Math.min(MAX_FINGERPRINT_BITS, bits));
+        this.fingerprintMask = (1L << fingerprintBits) - 1L;
+        this.numBuckets = Math.max(1L, (long) Math.ceil(capacity / (SLOTS_PER_BUCKET * MAX_LOAD_FACTOR)));
+        Reject.ifFalse(numBuckets * SLOTS_PER_BUCKET * fingerprintBits / Long.SIZE < Integer.MAX_VALUE,
+                "Capacity too large");
+        this.numSlots = numBuckets * SLOTS_PER_BUCKET;
+        this.slots = new long[(int) ((numSlots * fingerprintBits + Long.SIZE - 1) / Long.SIZE) + 1];
+        this.hashFunction = new Murmur3<T>(funnel);
+    }
+
+    @Override
+    public void add(final T element) {
+        final long stamp = lock.writeLock();
+        try {
+            hashFunction.hash(element, insert);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void addAll(final Collection<? extends T> elements) {
+        for (T element : elements) {
+            add(element);
+        }
+    }
+
+    @Override
+    public boolean mightContain(final T element) {
+        final long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            final boolean result = hashFunction.hash(element, lookup);
+            if (lock.validate(stamp)) {
+                return result;
+            }
+        }
+        final long readStamp = lock.readLock();
+        try {
+            return hashFunction.hash(element, lookup);
+        } finally {
+            lock.unlockRead(readStamp);
+        }
+    }
+
+    @Override
+    public boolean remove(final T element) {
+        final long stamp = lock.writeLock();
+        try {
+            return hashFunction.hash(element, delete);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public BloomFilterStatistics getStatistics() {
+        final long stamp = lock.readLock();
+        final long fingerprints;
+        try {
+            fingerprints = count;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        // Each of the 2 * SLOTS_PER_BUCKET slots compared by a lookup is occupied with the probability of the load
+        // factor, and holds a matching fingerprint with probability 1 / (2^f - 1) as fingerprints are never zero.
+        final double occupiedSlots = 2.0d * SLOTS_PER_BUCKET * fingerprints / numSlots;
+        final double expectedFpp = 1.0d - Math.pow(1.0d - 1.0d / fingerprintMask, occupiedSlots);
+        return new BloomFilterStatistics(falsePositiveProbability, expectedFpp, capacity,
+                numSlots * fingerprintBits, Long.MAX_VALUE, capacity - fingerprints);
+    }
+
+    private boolean insert(final long bucket, final long fingerprint) {
+        if (victim != EMPTY) {
+            throw new IllegalStateException("Cuckoo filter is full");
+        }
+        count++;
+        if (insertIntoBucket(bucket, fingerprint)
+                || insertIntoBucket(alternateBucket(bucket, fingerprint), fingerprint)) {
+            return true;
+        }
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        long currentBucket = random.nextBoolean() ? bucket : alternateBucket(bucket, fingerprint);
+        long currentFingerprint = fingerprint;
+        for (int kick = 0; kick < MAX_KICKS; kick++) {
+            final long slot = currentBucket * SLOTS_PER_BUCKET + random.nextInt(SLOTS_PER_BUCKET);
+            final long evicted = getSlot(slot);
+            setSlot(slot, currentFingerprint);
+            currentFingerprint = evicted;
+            currentBucket = alternateBucket(currentBucket, currentFingerprint);
+            if (insertIntoBucket(currentBucket, currentFingerprint)) {
+                return true;
+            }
+        }
+        victim = currentFingerprint;
+        victimBucket = currentBucket;
+        return true;
+    }
+
+    private boolean delete(final long bucket, final long fingerprint) {
+        if (deleteFromBucket(bucket, fingerprint)
+                || deleteFromBucket(alternateBucket(bucket, fingerprint), fingerprint)) {
+            count--;
+            if (victim != EMPTY) {
+                // Some space has been freed, so try to find a home for the victim
+                final long homeless = victim;
+                victim = EMPTY;
+                count--;
+                insert(victimBucket, homeless);
+            }
+            return true;
+        }
+        if (victim == fingerprint && isCandidate(bucket, victimBucket, fingerprint)) {
+            victim = EMPTY;
+            count--;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean lookup(final long bucket, final long fingerprint) {
+        return bucketContains(bucket, fingerprint)
+                || bucketContains(alternateBucket(bucket, fingerprint), fingerprint)
+                || (victim == fingerprint && isCandidate(bucket, victimBucket, fingerprint));
+    }
+
+    private boolean isCandidate(final long bucket, final long candidate, final long fingerprint) {
+        return candidate == bucket || candidate == alternateBucket(bucket, fingerprint);
+    }
+
+    private boolean insertIntoBucket(final long bucket, final long fingerprint) {
+        for (long slot = bucket * SLOTS_PER_BUCKET, end = slot + SLOTS_PER_BUCKET; slot < end; slot++) {
+            if (getSlot(slot) == EMPTY) {
+                setSlot(slot, fingerprint);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean deleteFromBucket(final long bucket, final long fingerprint) {
+        for (long slot = bucket * SLOTS_PER_BUCKET, end = slot + SLOTS_PER_BUCKET; slot < end; slot++) {
+            if (getSlot(slot) == fingerprint) {
+                setSlot(slot, EMPTY);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean bucketContains(final long bucket, final long fingerprint) {
+        for (long slot = bucket * SLOTS_PER_BUCKET, end = slot + SLOTS_PER_BUCKET; slot < end; slot++) {
+            if (getSlot(slot) == fingerprint) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long bucket(final long hash) {
+        return (hash & Long.MAX_VALUE) % numBuckets;
+    }
+
+    private long fingerprint(final long hash) {
+        // Use the top bits, which are independent of the bits selecting the bucket; zero marks an empty slot
+        final long fingerprint = hash >>> (Long.SIZE - fingerprintBits);
+        return fingerprint == EMPTY ? 1L : fingerprint;
+    }
+
+    /**
+     * Returns the other candidate bucket for a fingerprint, such that the alternate of the alternate bucket is the
+     * original bucket. This allows fingerprints to be relocated without knowing the element they were derived from.
+     * Unlike the XOR of the original paper, subtracting from the hash of the fingerprint does not require the number
+     * of buckets to be a power of two, which would waste up to half of the memory.
+     */
+    private long alternateBucket(final long bucket, final long fingerprint) {
+        long hash = fingerprint * 0x9e3779b97f4a7c15L;
+        long alternate = ((hash ^ (hash >>> 32)) & Long.MAX_VALUE) % numBuckets - bucket;
+        return alternate < 0L ? alternate + numBuckets : alternate;
+    }
+
+    private long getSlot(final long slot) {
+        final long bit = slot * fingerprintBits;
+        final int word = (int) (bit >>> 6);
+        final int offset = (int) (bit & 63L);
+        long value = slots[word] >>> offset;
+        if (offset + fingerprintBits > Long.SIZE) {
+            value |= slots[word + 1] << (Long.SIZE - offset);
+        }
+        return value & fingerprintMask;
+    }
+
+    private void setSlot(final long slot, final long fingerprint) {
+        final long bit = slot * fingerprintBits;
+        final int word = (int) (bit >>> 6);
+        final int offset = (int) (bit & 63L);
+        slots[word] = (slots[word] & ~(fingerprintMask << offset)) | (fingerprint << offset);
+        if (offset + fingerprintBits > Long.SIZE) {
+            final int shift = Long.SIZE - offset;
+            slots[word + 1] = (slots[word + 1] & ~(fingerprintMask >>> shift)) | (fingerprint >>> shift);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CuckooFilter{" +
+                "capacity=" + capacity +
+                ", falsePositiveProbability=" + falsePositiveProbability +
+                ", fingerprintBits=" + fingerprintBits +
+                '}';
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.bloomfilter;
+
+/**
+ * A Bloom Filter from which elements can also be removed, for instance to undo the revocation of a token that was
+ * revoked by mistake.
+ * <p/>
+ * Only elements which have previously been added should be removed. Removing an element which has not been added,
+ * but which the filter reports as a false positive, may remove another element that shares its hash, which would then
+ * become a false negative.
+ *
+ * @param <E> the type of elements contained in the bloom filter.
+ * @see DeletionStrategy
+ */
+public interface DeletableBloomFilter<E> extends BloomFilter<E> {
+
+    /**
+     * Removes one occurrence of the specified element from this set, if it might be present. An element which has
+     * been added several times must be removed as many times before {@link #mightContain(Object)} no longer reports
+     * it.
+     *
+     * @param element the element to remove from this set.
+     * @return {@code true} if the element might have been present and has been removed, or {@code false} if it was
+     * definitely not present.
+     */
+    boolean remove(E element);
+}
@@ -0,0 +1,70 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.bloomfilter;
+
+import org.wrensecurity.guava.common.hash.Funnel;
+
+/**
+ * Strategy that determines how a {@link DeletableBloomFilter} represents its elements so that they can be removed.
+ * Both strategies are thread-safe and have different trade-offs in terms of memory usage and write performance.
+ */
+public enum DeletionStrategy {
+    /**
+     * Replaces each bit of a standard bloom filter by a 4-bit counter, which is incremented when an element is added
+     * and decremented when it is removed. The counters are packed sixteen to a word of an {@code AtomicLongArray}
+     * and updated with atomic compare-and-set (CAS) instructions, so that neither reads nor writes take locks. This
+     * strategy uses four times the memory of the {@link ConcurrencyStrategy#ATOMIC} strategy. A counter which
+     * overflows stays saturated, so that the elements sharing it can no longer be removed but never become false
+     * negatives.
+     */
+    COUNTING {
+        @Override
+        <T> DeletableBloomFilter<T> create(final Funnel<? super T> funnel, final long capacity,
+                final double falsePositiveProbability) {
+            return new CountingBloomFilter<T>(funnel, capacity, falsePositiveProbability);
+        }
+    },
+
+    /**
+     * Stores a short fingerprint of each element in one of two candidate buckets of a cuckoo hash table, as described
+     * in <a href="https://www.cs.cmu.edu/~dga/papers/cuckoo-conext2014.pdf">Cuckoo Filter: Practically Better Than
+     * Bloom</a> by Fan et al., <em>CoNEXT</em> 2014. Removing an element simply clears its fingerprint, and for low
+     * false positive probabilities (below about 3%) a cuckoo filter uses less memory than a standard bloom filter,
+     * let alone a counting one. Lookups never take locks, but writes are serialised as adding an element may have to
+     * relocate others. A cuckoo filter cannot hold more elements than its capacity allows for: adding elements to a
+     * full cuckoo filter fails with an {@link IllegalStateException}.
+     */
+    CUCKOO {
+        @Override
+        <T> DeletableBloomFilter<T> create(final Funnel<? super T> funnel, final long capacity,
+                final double falsePositiveProbability) {
+            return new CuckooFilter<T>(funnel, capacity, falsePositiveProbability);
+        }
+    };
+
+    /**
+     * Creates a deletable bloom filter using this strategy.
+     *
+     * @param funnel the funnel to use for hashing elements.
+     * @param capacity the expected number of elements in the bloom filter.
+     * @param falsePositiveProbability the desired probability of false positives.
+     * @param <T> the type of elements to contain.
+     * @return a new deletable bloom filter.
+     */
+    abstract <T> DeletableBloomFilter<T> create(Funnel<? super T> funnel, long capacity,
+            double falsePositiveProbability);
+}
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.bloomfilter;
@@ -33,13 +34,36 @@ final class ExpiringBloomFilter<T> implements BloomFilter<T> {
     private final BloomFilter<T> delegate;
     private final ExpiryStrategy<T> expiryStrategy;
 
-    private final AtomicLong latestExpiryTime = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong latestExpiryTime;
 
     ExpiringBloomFilter(final BloomFilter<T> delegate,
                         final ExpiryStrategy<T> expiryStrategy) {
+        this(delegate, expiryStrategy, Long.MIN_VALUE);
+    }
+
+    /**
+     * Decorates a bloom filter which already contains elements, such as one restored from a snapshot.
+     *
+     * @param delegate the bloom filter to decorate.
+     * @param expiryStrategy the strategy for determining the expiry time of elements.
+     * @param latestExpiryTime the expiry time of the youngest element already contained in the delegate.
+     */
+    ExpiringBloomFilter(final BloomFilter<T> delegate,
+                        final ExpiryStrategy<T> expiryStrategy,
+                        final long latestExpiryTime) {
         Reject.ifNull(delegate, expiryStrategy);
         this.delegate = delegate;
         this.expiryStrategy = expiryStrategy;
+        this.latestExpiryTime = new AtomicLong(latestExpiryTime);
+    }
+
+    /**
+     * Returns the decorated bloom filter.
+     *
+     * @return the decorated bloom filter.
+     */
+    BloomFilter<T> getDelegate() {
+        return delegate;
     }
 
     @Override
@@ -74,7 +98,7 @@ final class ExpiringBloomFilter<T> implements BloomFilter<T> {
      * Atomic update of the latest expiry time.
      * @param newExpiryTime the candidate new latest expiry time.
      */
-    private void updateExpiryTime(final long newExpiryTime) {
+    void updateExpiryTime(final long newExpiryTime) {
         int attempts = 0;
         boolean changed;
         long oldExpiryTime;
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.bloomfilter;
@@ -157,6 +158,36 @@ final class GeometricSeriesBloomFilterPool<T> implements BloomFilterPool<T> {
         }
     }
 
+    /**
+     * Returns the number of the given bucket in the geometric series.
+     *
+     * @param bucket a bloom filter taken from this pool.
+     * @return the number of the bucket, or {@code null} if the bucket was not taken from this pool.
+     */
+    Integer getBucketNumber(final BloomFilter<T> bucket) {
+        return takenBucketNumbers.get(bucket);
+    }
+
+    /**
+     * Takes a previously saved bucket from the pool, as if it had been returned by {@link #nextAvailable()} for the
+     * given bucket number.
+     *
+     * @param bucket the restored bloom filter.
+     * @param bucketNumber the number of the bucket in the geometric series when it was saved.
+     * @return {@code false} if the bucket number is out of range or has already been taken.
+     */
+    boolean restore(final BloomFilter<T> bucket, final int bucketNumber) {
+        synchronized (bucketNumbers) {
+            if (bucketNumber < 0 || bucketNumber >= maxBuckets || bucketNumbers.get(bucketNumber)) {
+                return false;
+            }
+            bucketNumbers.set(bucketNumber);
+        }
+        LOGGER.debug("Restored BloomFilter number {}", bucketNumber);
+        takenBucketNumbers.put(bucket, bucketNumber);
+        return true;
+    }
+
     @Override
     public double getOverallFalsePositiveProbability() {
         return initialFalsePositiveProbability / (1.0d - falsePositiveProbabilityScaleFactor);
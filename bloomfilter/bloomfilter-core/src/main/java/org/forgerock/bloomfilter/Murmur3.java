@@ -0,0 +1,274 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.bloomfilter;
+
+import java.nio.charset.StandardCharsets;
+
+import org.wrensecurity.guava.common.hash.Funnel;
+import org.wrensecurity.guava.common.hash.Funnels;
+import org.wrensecurity.guava.common.hash.Hashing;
+
+/**
+ * Allocation-free implementation of the 128-bit x64 variant of MurmurHash3, as originally published by Austin
+ * Appleby in the public domain.
+ * <p>
+ * The two 64-bit halves of the hash are passed to a {@link HashConsumer} rather than being returned as a byte array,
+ * and elements serialised by the standard {@link Funnels#longFunnel() long}, {@link Funnels#integerFunnel() integer},
+ * {@link Funnels#byteArrayFunnel() byte array}, {@link Funnels#unencodedCharsFunnel() unencoded chars} and UTF-8
+ * {@link Funnels#stringFunnel(java.nio.charset.Charset) string} funnels are hashed directly without going through
+ * the funnel. The result is always identical to {@code Hashing.murmur3_128().hashObject(element, funnel)}, so that
+ * the bits set for an element do not depend on which path has been taken. Any other funnel falls back to Guava.
+ *
+ * @param <T> the type of elements to hash.
+ */
+final class Murmur3<T> {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private static final int ASCII_LIMIT = 0x80;
+
+    /**
+     * Receives the two 64-bit halves of the hash of an element.
+     */
+    interface HashConsumer {
+        /**
+         * Consumes the hash of an element.
+         *
+         * @param hash1 the lower eight bytes of the hash, in little-endian order.
+         * @param hash2 the upper eight bytes of the hash, in little-endian order.
+         * @return the result of consuming the hash.
+         */
+        boolean accept(long hash1, long hash2);
+    }
+
+    /** How elements are serialised by the funnel. */
+    private enum Kind {
+        LONG, INTEGER, BYTES, CHARS, UTF8, FUNNEL
+    }
+
+    private final Funnel<? super T> funnel;
+    private final Kind kind;
+
+    /**
+     * Creates a hash function for elements serialised by the given funnel.
+     *
+     * @param funnel the funnel used to serialise elements.
+     */
+    Murmur3(final Funnel<? super T> funnel) {
+        this.funnel = funnel;
+        if (funnel == Funnels.longFunnel()) {
+            this.kind = Kind.LONG;
+        } else if (funnel == Funnels.integerFunnel()) {
+            this.kind = Kind.INTEGER;
+        } else if (funnel == Funnels.byteArrayFunnel()) {
+            this.kind = Kind.BYTES;
+        } else if (funnel == Funnels.unencodedCharsFunnel()) {
+            this.kind = Kind.CHARS;
+        } else if (Funnels.stringFunnel(StandardCharsets.UTF_8).equals(funnel)) {
+            this.kind = Kind.UTF8;
+        } else {
+            this.kind = Kind.FUNNEL;
+        }
+    }
+
+    /**
+     * Hashes the element and passes the result to the consumer.
+     *
+     * @param element the element to hash.
+     * @param consumer the consumer of the hash.
+     * @return the value returned by the consumer.
+     */
+    boolean hash(final T element, final HashConsumer consumer) {
+        switch (kind) {
+        case LONG:
+            return hashLong((Long) element, consumer);
+        case INTEGER:
+            return hashInt((Integer) element, consumer);
+        case BYTES:
+            return hashBytes((byte[]) element, consumer);
+        case CHARS:
+            return hashChars((CharSequence) element, consumer);
+        case UTF8:
+            CharSequence chars = (CharSequence) element;
+            if (isAscii(chars)) {
+                // ASCII characters are encoded as a single identical byte in UTF-8.
+                return hashAscii(chars, consumer);
+            }
+            return hashWithFunnel(element, consumer);
+        default:
+            return hashWithFunnel(element, consumer);
+        }
+    }
+
+    private boolean hashWithFunnel(final T element, final HashConsumer consumer) {
+        byte[] bytes = Hashing.murmur3_128().hashObject(element, funnel).asBytes();
+        return consumer.accept(getLong(bytes, 0), getLong(bytes, 8));
+    }
+
+    static boolean hashLong(final long value, final HashConsumer consumer) {
+        return finish(mixK1(value), 0, 8, consumer);
+    }
+
+    static boolean hashInt(final int value, final HashConsumer consumer) {
+        return finish(mixK1(value & 0xffffffffL), 0, 4, consumer);
+    }
+
+    static boolean hashBytes(final byte[] bytes, final HashConsumer consumer) {
+        long h1 = 0;
+        long h2 = 0;
+        int offset = 0;
+        for (; offset + 16 <= bytes.length; offset += 16) {
+            h1 ^= mixK1(getLong(bytes, offset));
+            h1 = mixH1(h1, h2);
+            h2 ^= mixK2(getLong(bytes, offset + 8));
+            h2 = mixH2(h1, h2);
+        }
+        int remaining = bytes.length - offset;
+        if (remaining > 0) {
+            long k1 = 0;
+            long k2 = 0;
+            for (int i = remaining - 1; i >= 8; i--) {
+                k2 = (k2 << 8) | (bytes[offset + i] & 0xffL);
+            }
+            for (int i = Math.min(remaining, 8) - 1; i >= 0; i--) {
+                k1 = (k1 << 8) | (bytes[offset + i] & 0xffL);
+            }
+            h1 ^= mixK1(k1);
+            h2 ^= mixK2(k2);
+        }
+        return finish(h1, h2, bytes.length, consumer);
+    }
+
+    static boolean hashChars(final CharSequence chars, final HashConsumer consumer) {
+        final int length = chars.length();
+        long h1 = 0;
+        long h2 = 0;
+        int offset = 0;
+        // Each char contributes two little-endian bytes, so a 16-byte block holds 8 chars.
+        for (; offset + 8 <= length; offset += 8) {
+            h1 ^= mixK1(getChars(chars, offset, 4));
+            h1 = mixH1(h1, h2);
+            h2 ^= mixK2(getChars(chars, offset + 4, 4));
+            h2 = mixH2(h1, h2);
+        }
+        int remaining = length - offset;
+        if (remaining > 0) {
+            h1 ^= mixK1(getChars(chars, offset, Math.min(remaining, 4)));
+            h2 ^= mixK2(remaining > 4 ? getChars(chars, offset + 4, remaining - 4) : 0);
+        }
+        return finish(h1, h2, 2L * length, consumer);
+    }
+
+    static boolean hashAscii(final CharSequence chars, final HashConsumer consumer) {
+        final int length = chars.length();
+        long h1 = 0;
+        long h2 = 0;
+        int offset = 0;
+        for (; offset + 16 <= length; offset += 16) {
+            h1 ^= mixK1(getAscii(chars, offset, 8));
+            h1 = mixH1(h1, h2);
+            h2 ^= mixK2(getAscii(chars, offset + 8, 8));
+            h2 = mixH2(h1, h2);
+        }
+        int remaining = length - offset;
+        if (remaining > 0) {
+            h1 ^= mixK1(getAscii(chars, offset, Math.min(remaining, 8)));
+            h2 ^= mixK2(remaining > 8 ? getAscii(chars, offset + 8, remaining - 8) : 0);
+        }
+        return finish(h1, h2, length, consumer);
+    }
+
+    private static boolean isAscii(final CharSequence chars) {
+        for (int i = 0, length = chars.length(); i < length; i++) {
+            if (chars.charAt(i) >= ASCII_LIMIT) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean finish(long h1, long h2, final long length, final HashConsumer consumer) {
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+        return consumer.accept(h1, h2);
+    }
+
+    private static long mixH1(long h1, final long h2) {
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        return h1 * 5 + 0x52dce729;
+    }
+
+    private static long mixH2(final long h1, long h2) {
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        return h2 * 5 + 0x38495ab5;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    /** Reads eight bytes in little-endian order. */
+    private static long getLong(final byte[] bytes, final int offset) {
+        long result = 0;
+        for (int i = 7; i >= 0; i--) {
+            result = (result << 8) | (bytes[offset + i] & 0xffL);
+        }
+        return result;
+    }
+
+    /** Reads up to four chars, each as two little-endian bytes. */
+    private static long getChars(final CharSequence chars, final int offset, final int count) {
+        long result = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            result = (result << 16) | chars.charAt(offset + i);
+        }
+        return result;
+    }
+
+    /** Reads up to eight ASCII chars, each as a single byte. */
+    private static long getAscii(final CharSequence chars, final int offset, final int count) {
+        long result = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            result = (result << 8) | chars.charAt(offset + i);
+        }
+        return result;
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.bloomfilter;
@@ -55,6 +56,35 @@ public class AtomicBloomFilterTest {
         assertThat(bloomFilter.mightContain(value)).isTrue();
     }
 
+    @Test
+    public void blockedLayoutShouldRoundSizeUpToWholeBlocks() {
+        AtomicBloomFilter<Integer> blocked =
+                new AtomicBloomFilter<Integer>(FUNNEL, CAPACITY, FALSE_POSITIVE_PROBABILITY, true);
+
+        assertThat(blocked.getStatistics().getBitSize() % 512).isZero();
+        assertThat(blocked.getStatistics().getBitSize())
+                .isGreaterThanOrEqualTo(bloomFilter.getStatistics().getBitSize());
+    }
+
+    @Test
+    public void blockedLayoutShouldNotHaveFalseNegativesAndKeepFalsePositivesLow() {
+        AtomicBloomFilter<Integer> blocked =
+                new AtomicBloomFilter<Integer>(FUNNEL, 10_000, FALSE_POSITIVE_PROBABILITY, true);
+        for (int i = 0; i < 10_000; i++) {
+            blocked.add(i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(blocked.mightContain(i)).isTrue();
+            if (blocked.mightContain(-1 - i)) {
+                falsePositives++;
+            }
+        }
+
+        assertThat(falsePositives / 10_000d).isLessThan(2 * FALSE_POSITIVE_PROBABILITY);
+    }
+
     @DataProvider
     public Object[][] randomInts() {
         final Random random = new Random();
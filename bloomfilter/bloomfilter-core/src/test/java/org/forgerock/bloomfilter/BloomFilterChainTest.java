@@ -12,12 +12,15 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.bloomfilter;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
 import org.forgerock.util.time.TimeService;
@@ -26,6 +29,10 @@ import org.mockito.MockitoAnnotations;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
 public class BloomFilterChainTest {
     private static final BloomFilterStatistics SATURATED = new BloomFilterStatistics(0.01d, 0.02d, 1, 1, 1, 0);
 
@@ -92,4 +99,59 @@ public class BloomFilterChainTest {
         // Then
         verify(mockPool).release(mockBloomFilter);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldInsertBucketsByOrder() {
+        // Given
+        @SuppressWarnings("unchecked")
+        BloomFilter<Integer> olderBucket = mock(BloomFilter.class);
+        int value = 42;
+        given(mockPool.nextAvailable()).willReturn(mockBloomFilter);
+        given(mockBloomFilter.getStatistics()).willReturn(unsaturatedExpiringAt(2L));
+        given(olderBucket.getStatistics()).willReturn(unsaturatedExpiringAt(1L));
+        testChain.add(value);
+
+        // When
+        testChain.insert(olderBucket, orderOf(olderBucket, mockBloomFilter));
+        testChain.add(value + 1);
+
+        // Then
+        assertThat(testChain.getBuckets()).containsExactly(olderBucket, mockBloomFilter);
+        verify(mockBloomFilter).add(value + 1);
+        verify(olderBucket, never()).add(value + 1);
+    }
+
+    @Test
+    public void shouldNotInsertBucketExpiringEarlierAfterLastBucket() {
+        // Given
+        @SuppressWarnings("unchecked")
+        BloomFilter<Integer> olderBucket = mock(BloomFilter.class);
+        int value = 42;
+        given(mockPool.nextAvailable()).willReturn(mockBloomFilter);
+        given(mockBloomFilter.getStatistics()).willReturn(unsaturatedExpiringAt(2L));
+        given(olderBucket.getStatistics()).willReturn(unsaturatedExpiringAt(1L));
+        testChain.add(value);
+
+        // When
+        testChain.insert(olderBucket, orderOf(mockBloomFilter, olderBucket));
+        testChain.add(value + 1);
+
+        // Then
+        assertThat(testChain.getBuckets()).containsExactly(olderBucket, mockBloomFilter);
+        verify(mockBloomFilter).add(value + 1);
+    }
+
+    private static BloomFilterStatistics unsaturatedExpiringAt(final long expiryTime) {
+        return new BloomFilterStatistics(0.01d, 0.001d, 1, 1, expiryTime, 1);
+    }
+
+    private static Comparator<BloomFilter<Integer>> orderOf(final BloomFilter<?>... buckets) {
+        final List<BloomFilter<?>> order = Arrays.<BloomFilter<?>>asList(buckets);
+        return new Comparator<BloomFilter<Integer>>() {
+            @Override
+            public int compare(final BloomFilter<Integer> first, final BloomFilter<Integer> second) {
+                return Integer.compare(order.indexOf(first), order.indexOf(second));
+            }
+        };
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.bloomfilter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import org.wrensecurity.guava.common.hash.Funnels;
+import org.forgerock.util.time.TimeService;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class BloomFilterReplicationTest {
+    private static final long NOW = 1000000L;
+    private static final int CAPACITY = 1000;
+    private static final int NUM_NODES = 5;
+    /** Rounds of gossip after which all nodes must have converged, which is logarithmic in the number of nodes. */
+    private static final int MAX_ROUNDS = 10;
+
+    private static final ExpiryStrategy<Long> VALUE_IS_EXPIRY_TIME = new ExpiryStrategy<Long>() {
+        @Override
+        public long expiryTime(final Long value) {
+            return value;
+        }
+    };
+
+    private TimeService clock;
+
+    @BeforeMethod
+    public void setup() {
+        clock = mock(TimeService.class);
+        given(clock.now()).willReturn(NOW);
+    }
+
+    @DataProvider
+    public static Object[][] strategies() {
+        return new Object[][] {
+            { ConcurrencyStrategy.ATOMIC },
+            { ConcurrencyStrategy.ATOMIC_BLOCKED }
+        };
+    }
+
+    @Test(dataProvider = "strategies")
+    public void shouldMergeFullEncoding(ConcurrencyStrategy strategy) throws Exception {
+        // Given
+        ConcurrentRollingBloomFilter<Long> source = newBloomFilter(strategy);
+        ConcurrentRollingBloomFilter<Long> target = newBloomFilter(strategy);
+        for (long i = 0; i < 3 * CAPACITY; i++) {
+            source.add(NOW + i);
+        }
+        target.add(NOW - 1);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        // When
+        source.writeTo(new DataOutputStream(bytes));
+        target.merge(in(bytes));
+
+        // Then
+        for (long i = 0; i < 3 * CAPACITY; i++) {
+            assertThat(target.mightContain(NOW + i)).isTrue();
+        }
+        assertThat(target.mightContain(NOW - 1)).isTrue();
+        assertThat(target.getStatistics().getExpiryTime()).isEqualTo(NOW + 3 * CAPACITY - 1);
+    }
+
+    @Test(dataProvider = "strategies")
+    public void shouldOnlyWriteChangedBlocksInDelta(ConcurrencyStrategy strategy) throws Exception {
+        // Given
+        ConcurrentRollingBloomFilter<Long> source = newBloomFilter(strategy, 10 * CAPACITY);
+        for (long i = 0; i < 5 * CAPACITY; i++) {
+            source.add(NOW + i);
+        }
+        ByteArrayOutputStream full = new ByteArrayOutputStream();
+        long version = source.writeTo(new DataOutputStream(full));
+        source.add(NOW + 10 * CAPACITY);
+
+        // When
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        long nextVersion = source.writeDelta(version, new DataOutputStream(delta));
+
+        // Then
+        assertThat(nextVersion).isGreaterThan(version);
+        assertThat(delta.size()).isLessThan(full.size() / 10);
+        ConcurrentRollingBloomFilter<Long> target = newBloomFilter(strategy, 10 * CAPACITY);
+        target.merge(in(full));
+        target.merge(in(delta));
+        assertThat(target.mightContain(NOW + 10 * CAPACITY)).isTrue();
+
+        ByteArrayOutputStream emptyDelta = new ByteArrayOutputStream();
+        source.writeDelta(nextVersion, new DataOutputStream(emptyDelta));
+        assertThat(emptyDelta.size()).isLessThan(delta.size());
+    }
+
+    @Test(dataProvider = "strategies")
+    public void shouldAddToNewestBucketAfterMergingOlderBucket(ConcurrencyStrategy strategy) throws Exception {
+        // Given
+        ConcurrentRollingBloomFilter<Long> source = newBloomFilter(strategy);
+        for (long i = 0; i < 2 * CAPACITY; i++) {
+            source.add(NOW + i);
+        }
+        ByteArrayOutputStream full = new ByteArrayOutputStream();
+        long version = source.writeTo(new DataOutputStream(full));
+        source.add(NOW + 3 * CAPACITY);
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        source.writeDelta(version, new DataOutputStream(delta));
+        ConcurrentRollingBloomFilter<Long> target = newBloomFilter(strategy);
+        target.merge(in(delta));
+        long bitSizeOfNewestBucket = target.getStatistics().getBitSize();
+
+        // When
+        target.merge(in(full));
+        BloomFilterStatistics merged = target.getStatistics();
+        target.add(NOW + 4 * CAPACITY);
+
+        // Then
+        assertThat(merged.getBitSize()).isGreaterThan(bitSizeOfNewestBucket);
+        assertThat(merged.getEstimatedRemainingCapacity()).as("remaining capacity of last bucket").isPositive();
+        assertThat(target.getStatistics().getBitSize()).as("bit size after adding").isEqualTo(merged.getBitSize());
+        assertThat(target.mightContain(NOW + 4 * CAPACITY)).isTrue();
+        assertThat(target.mightContain(NOW)).isTrue();
+    }
+
+    @Test
+    public void shouldNotAddExpiredReplicatedBuckets() throws Exception {
+        // Given
+        ConcurrentRollingBloomFilter<Long> source = newBloomFilter(ConcurrencyStrategy.ATOMIC);
+        source.add(NOW);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        source.writeTo(new DataOutputStream(bytes));
+        given(clock.now()).willReturn(NOW + 1);
+
+        // When
+        ConcurrentRollingBloomFilter<Long> target = newBloomFilter(ConcurrencyStrategy.ATOMIC);
+        target.merge(in(bytes));
+
+        // Then
+        assertThat(target.getStatistics().getBitSize()).isEqualTo(0L);
+    }
+
+    @Test
+    public void shouldSkipIncompatibleBuckets() throws Exception {
+        // Given
+        ConcurrentRollingBloomFilter<Long> source = newBloomFilter(ConcurrencyStrategy.ATOMIC_BLOCKED);
+        ConcurrentRollingBloomFilter<Long> target = newBloomFilter(ConcurrencyStrategy.ATOMIC);
+        source.add(NOW);
+        target.add(NOW + 1);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        source.writeTo(new DataOutputStream(bytes));
+
+        // When
+        target.merge(in(bytes));
+
+        // Then
+        assertThat(target.mightContain(NOW + 1)).isTrue();
+        assertThat(target.mightContain(NOW)).isFalse();
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void shouldRejectInvalidEncoding() throws Exception {
+        newBloomFilter(ConcurrencyStrategy.ATOMIC).merge(new DataInputStream(new ByteArrayInputStream(new byte[16])));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void shouldRejectReplicationOfNonAtomicStrategies() throws Exception {
+        newBloomFilter(ConcurrencyStrategy.SYNCHRONIZED).writeTo(new DataOutputStream(new ByteArrayOutputStream()));
+    }
+
+    @Test
+    public void shouldMergeCompatibleAtomicBloomFilters() {
+        // Given
+        AtomicBloomFilter<Long> first = new AtomicBloomFilter<Long>(Funnels.longFunnel(), CAPACITY, 0.01d);
+        AtomicBloomFilter<Long> second = new AtomicBloomFilter<Long>(Funnels.longFunnel(), CAPACITY, 0.01d);
+        first.add(1L);
+        second.add(2L);
+
+        // When
+        first.merge(second);
+
+        // Then
+        assertThat(first.mightContain(1L)).isTrue();
+        assertThat(first.mightContain(2L)).isTrue();
+        assertThat(first.getBitCount()).isEqualTo(countBits(first));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldRejectMergeOfIncompatibleAtomicBloomFilters() {
+        new AtomicBloomFilter<Long>(Funnels.longFunnel(), CAPACITY, 0.01d)
+                .merge(new AtomicBloomFilter<Long>(Funnels.longFunnel(), 2 * CAPACITY, 0.01d));
+    }
+
+    /**
+     * Simulates a cluster of nodes which each add their own elements and gossip deltas to a random peer in rounds,
+     * remembering the version last sent to each peer, until all nodes contain the elements of all the others.
+     */
+    @Test(dataProvider = "strategies")
+    public void nodesShouldConvergeByGossipingDeltas(ConcurrencyStrategy strategy) throws Exception {
+        // Given
+        Random random = new Random(42);
+        List<ConcurrentRollingBloomFilter<Long>> nodes = new ArrayList<ConcurrentRollingBloomFilter<Long>>();
+        long[][] sentVersions = new long[NUM_NODES][NUM_NODES];
+        for (int i = 0; i < NUM_NODES; i++) {
+            nodes.add(newBloomFilter(strategy));
+        }
+        List<Long> elements = new ArrayList<Long>();
+        long bytesSent = 0;
+        int messages = 0;
+
+        // When
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < NUM_NODES; i++) {
+                for (int j = 0; j < 50; j++) {
+                    long element = NOW + random.nextInt(1000000);
+                    nodes.get(i).add(element);
+                    elements.add(element);
+                }
+            }
+            bytesSent += gossip(nodes, sentVersions, random);
+            messages += NUM_NODES;
+        }
+        int rounds = 0;
+        while (!converged(nodes, elements) && rounds < 50) {
+            bytesSent += gossip(nodes, sentVersions, random);
+            messages += NUM_NODES;
+            rounds++;
+        }
+
+        // Then
+        assertThat(rounds).as("rounds to converge after the last update").isLessThanOrEqualTo(MAX_ROUNDS);
+        ByteArrayOutputStream full = new ByteArrayOutputStream();
+        nodes.get(0).writeTo(new DataOutputStream(full));
+        assertThat(bytesSent / messages).isLessThan(full.size());
+    }
+
+    private long gossip(final List<ConcurrentRollingBloomFilter<Long>> nodes, final long[][] sentVersions,
+            final Random random) throws IOException {
+        long bytesSent = 0;
+        for (int from = 0; from < nodes.size(); from++) {
+            int to = (from + 1 + random.nextInt(nodes.size() - 1)) % nodes.size();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            sentVersions[from][to] = nodes.get(from).writeDelta(sentVersions[from][to], new DataOutputStream(bytes));
+            nodes.get(to).merge(in(bytes));
+            bytesSent += bytes.size();
+        }
+        return bytesSent;
+    }
+
+    private boolean converged(final List<ConcurrentRollingBloomFilter<Long>> nodes, final List<Long> elements) {
+        for (ConcurrentRollingBloomFilter<Long> node : nodes) {
+            for (Long element : elements) {
+                if (!node.mightContain(element)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private long countBits(final AtomicBloomFilter<?> filter) {
+        long count = 0;
+        for (int i = 0; i < filter.getWordCount(); i++) {
+            count += Long.bitCount(filter.getWord(i));
+        }
+        return count;
+    }
+
+    private DataInputStream in(final ByteArrayOutputStream bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    private ConcurrentRollingBloomFilter<Long> newBloomFilter(final ConcurrencyStrategy strategy) {
+        return newBloomFilter(strategy, CAPACITY);
+    }
+
+    private ConcurrentRollingBloomFilter<Long> newBloomFilter(final ConcurrencyStrategy strategy, final int capacity) {
+        return (ConcurrentRollingBloomFilter<Long>) BloomFilters.create(Funnels.longFunnel())
+                .withConcurrencyStrategy(strategy)
+                .withInitialCapacity(capacity)
+                .withExpiryStrategy(VALUE_IS_EXPIRY_TIME)
+                .withClock(clock)
+                .build();
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.bloomfilter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import org.wrensecurity.guava.common.hash.Funnels;
+import org.forgerock.util.time.TimeService;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+public class BloomFilterSnapshotTest {
+    private static final long NOW = 1000000L;
+    private static final int CAPACITY = 100;
+
+    private static final ExpiryStrategy<Long> VALUE_IS_EXPIRY_TIME = new ExpiryStrategy<Long>() {
+        @Override
+        public long expiryTime(final Long value) {
+            return value;
+        }
+    };
+
+    private Path snapshotFile;
+    private TimeService clock;
+
+    @BeforeMethod
+    public void setup() throws Exception {
+        snapshotFile = Files.createTempDirectory("bloomfilter").resolve("snapshot");
+        clock = mock(TimeService.class);
+        given(clock.now()).willReturn(NOW);
+    }
+
+    @AfterMethod
+    public void cleanup() throws Exception {
+        File directory = snapshotFile.getParent().toFile();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @DataProvider
+    public static Object[][] strategies() {
+        return new Object[][] {
+            { ConcurrencyStrategy.ATOMIC },
+            { ConcurrencyStrategy.ATOMIC_BLOCKED }
+        };
+    }
+
+    @Test(dataProvider = "strategies")
+    public void shouldRestoreCheckpointedElements(ConcurrencyStrategy strategy) throws Exception {
+        // Given
+        ConcurrentRollingBloomFilter<Long> bloomFilter = newBloomFilter(strategy);
+        for (long i = 0; i < 10 * CAPACITY; i++) {
+            bloomFilter.add(NOW + i);
+        }
+        bloomFilter.checkpoint();
+
+        // When
+        ConcurrentRollingBloomFilter<Long> restored = newBloomFilter(strategy);
+
+        // Then
+        for (long i = 0; i < 10 * CAPACITY; i++) {
+            assertThat(restored.mightContain(NOW + i)).isTrue();
+        }
+        assertThat(restored.getStatistics().getBitSize()).isEqualTo(bloomFilter.getStatistics().getBitSize());
+        assertThat(restored.getStatistics().getExpiryTime()).isEqualTo(bloomFilter.getStatistics().getExpiryTime());
+    }
+
+    @Test(dataProvider = "strategies")
+    public void shouldCheckpointChangedWordsInPlace(ConcurrencyStrategy strategy) throws Exception {
+        // Given
+        ConcurrentRollingBloomFilter<Long> bloomFilter = newBloomFilter(strategy);
+        bloomFilter.add(NOW);
+        bloomFilter.checkpoint();
+        Object fileKey = fileKey();
+
+        // When
+        bloomFilter.add(NOW + 1);
+        bloomFilter.checkpoint();
+
+        // Then
+        assertThat(fileKey()).isEqualTo(fileKey);
+        ConcurrentRollingBloomFilter<Long> restored = newBloomFilter(strategy);
+        assertThat(restored.mightContain(NOW)).isTrue();
+        assertThat(restored.mightContain(NOW + 1)).isTrue();
+        assertThat(restored.getStatistics().getExpiryTime()).isEqualTo(NOW + 1);
+    }
+
+    @Test
+    public void shouldCheckpointChangesToRestoredBuckets() throws Exception {
+        // Given
+        newBloomFilter(ConcurrencyStrategy.ATOMIC).checkpoint();
+        ConcurrentRollingBloomFilter<Long> restored = newBloomFilter(ConcurrencyStrategy.ATOMIC);
+        restored.add(NOW);
+        restored.checkpoint();
+        restored.add(NOW + 1);
+
+        // When
+        restored.checkpoint();
+
+        // Then
+        ConcurrentRollingBloomFilter<Long> restoredAgain = newBloomFilter(ConcurrencyStrategy.ATOMIC);
+        assertThat(restoredAgain.mightContain(NOW)).isTrue();
+        assertThat(restoredAgain.mightContain(NOW + 1)).isTrue();
+    }
+
+    @Test
+    public void shouldDropExpiredBucketsOnRestore() throws Exception {
+        // Given
+        ConcurrentRollingBloomFilter<Long> bloomFilter = newBloomFilter(ConcurrencyStrategy.ATOMIC);
+        for (long i = 0; i < 10 * CAPACITY; i++) {
+            bloomFilter.add(NOW + i);
+        }
+        bloomFilter.checkpoint();
+        given(clock.now()).willReturn(NOW + 10 * CAPACITY - 1);
+
+        // When
+        ConcurrentRollingBloomFilter<Long> restored = newBloomFilter(ConcurrencyStrategy.ATOMIC);
+
+        // Then
+        assertThat(restored.getStatistics().getBitSize()).isLessThan(bloomFilter.getStatistics().getBitSize());
+        assertThat(restored.mightContain(NOW + 10 * CAPACITY - 1)).isTrue();
+    }
+
+    @Test
+    public void shouldStartEmptyIfSnapshotIsCorrupt() throws Exception {
+        // Given
+        Files.write(snapshotFile, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16 });
+
+        // When
+        ConcurrentRollingBloomFilter<Long> bloomFilter = newBloomFilter(ConcurrencyStrategy.ATOMIC);
+
+        // Then
+        assertThat(bloomFilter.mightContain(NOW)).isFalse();
+        bloomFilter.add(NOW);
+        bloomFilter.checkpoint();
+        assertThat(newBloomFilter(ConcurrencyStrategy.ATOMIC).mightContain(NOW)).isTrue();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldRejectNonAtomicStrategies() {
+        BloomFilters.create(Funnels.longFunnel())
+                .withConcurrencyStrategy(ConcurrencyStrategy.COPY_ON_WRITE)
+                .withExpiryStrategy(VALUE_IS_EXPIRY_TIME)
+                .withSnapshotFile(snapshotFile)
+                .build();
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void shouldRejectCheckpointWithoutSnapshotFile() throws Exception {
+        ConcurrentRollingBloomFilter<Long> bloomFilter = (ConcurrentRollingBloomFilter<Long>)
+                BloomFilters.create(Funnels.longFunnel()).withExpiryStrategy(VALUE_IS_EXPIRY_TIME).build();
+
+        bloomFilter.checkpoint();
+    }
+
+    private ConcurrentRollingBloomFilter<Long> newBloomFilter(final ConcurrencyStrategy strategy) {
+        return (ConcurrentRollingBloomFilter<Long>) BloomFilters.create(Funnels.longFunnel())
+                .withConcurrencyStrategy(strategy)
+                .withInitialCapacity(CAPACITY)
+                .withExpiryStrategy(VALUE_IS_EXPIRY_TIME)
+                .withClock(clock)
+                .withSnapshotFile(snapshotFile)
+                .build();
+    }
+
+    private Object fileKey() throws Exception {
+        return Files.readAttributes(snapshotFile, BasicFileAttributes.class).fileKey();
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.bloomfilter;
@@ -187,6 +188,7 @@ public class BloomFiltersTest {
                 assertThat(bf).isInstanceOf(CopyOnWriteBloomFilter.class);
                 break;
             case ATOMIC:
+            case ATOMIC_BLOCKED:
                 assertThat(bf).isInstanceOf(AtomicBloomFilter.class);
                 break;
             default:
@@ -279,12 +281,46 @@ public class BloomFiltersTest {
         BloomFilters.create(integerFunnel()).withExpiryStrategy(null);
     }
 
+    @Test
+    public void shouldBuildDeletableBloomFilters() {
+        assertThat(BloomFilters.create(integerFunnel()).deletable().build())
+                .isInstanceOf(CountingBloomFilter.class);
+        assertThat(BloomFilters.create(integerFunnel()).deletable().withDeletionStrategy(DeletionStrategy.CUCKOO)
+                .build()).isInstanceOf(CuckooFilter.class);
+    }
+
+    @Test
+    public void shouldCopyCapacityToDeletableBuilder() {
+        // Given
+        BloomFilters.BloomFilterBuilder<Integer> builder = BloomFilters.create(integerFunnel())
+                .withInitialCapacity(12345).withFalsePositiveProbability(0.05d);
+
+        // When
+        BloomFilters.DeletableBloomFilterBuilder<Integer> deletable = builder.deletable();
+
+        // Then
+        assertThat(deletable.capacity).isEqualTo(12345);
+        assertThat(deletable.falsePositiveProbability).isEqualTo(0.05d);
+        assertThat(deletable.build().getStatistics().getCapacity()).isEqualTo(12345L);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldRejectScalableDeletableBloomFilters() {
+        BloomFilters.create(integerFunnel()).scalable().deletable();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldRejectDeletableBloomFiltersWithWriteBatching() {
+        BloomFilters.create(integerFunnel()).withWriteBatchSize(10).deletable();
+    }
+
     @DataProvider
     public Object[][] concurrencyStrategies() {
         return new Object[][] {
                 { ConcurrencyStrategy.COPY_ON_WRITE },
                 { ConcurrencyStrategy.SYNCHRONIZED },
-                { ConcurrencyStrategy.ATOMIC }
+                { ConcurrencyStrategy.ATOMIC },
+                { ConcurrencyStrategy.ATOMIC_BLOCKED }
         };
     }
 
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  * Portions copyright 2023 Wren Security
  */
 
@@ -51,7 +52,8 @@ public class ConcurrentRollingBloomFilterTest {
         return new Object[][] {
                 {ConcurrencyStrategy.COPY_ON_WRITE},
                 {ConcurrencyStrategy.SYNCHRONIZED},
-                {ConcurrencyStrategy.ATOMIC}
+                {ConcurrencyStrategy.ATOMIC},
+                {ConcurrencyStrategy.ATOMIC_BLOCKED}
         };
     }
 
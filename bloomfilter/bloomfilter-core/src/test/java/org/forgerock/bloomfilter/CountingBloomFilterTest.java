@@ -0,0 +1,187 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.bloomfilter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.wrensecurity.guava.common.hash.Funnel;
+import org.wrensecurity.guava.common.hash.Funnels;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class CountingBloomFilterTest {
+    private static final Funnel<Integer> FUNNEL = Funnels.integerFunnel();
+    private static final long CAPACITY = 1000;
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01d;
+
+    private CountingBloomFilter<Integer> bloomFilter;
+
+    @BeforeMethod
+    public void createBloomFilter() {
+        bloomFilter = new CountingBloomFilter<Integer>(FUNNEL, CAPACITY, FALSE_POSITIVE_PROBABILITY);
+    }
+
+    @Test
+    public void shouldUseSpecifiedFalsePositiveProbabilityAndCapacity() {
+        assertThat(bloomFilter.getStatistics().getConfiguredFalsePositiveProbability())
+                .isEqualTo(FALSE_POSITIVE_PROBABILITY);
+        assertThat(bloomFilter.getStatistics().getCapacity()).isEqualTo(CAPACITY);
+    }
+
+    @Test
+    public void shouldUseFourBitsPerCounter() {
+        assertThat(bloomFilter.getStatistics().getBitSize())
+                .isEqualTo(4 * BloomFilterStatistics.optimumBitSize(CAPACITY, FALSE_POSITIVE_PROBABILITY));
+    }
+
+    @Test
+    public void shouldRemoveAddedElements() {
+        // Given
+        for (int i = 0; i < CAPACITY; i++) {
+            bloomFilter.add(i);
+        }
+
+        // When
+        for (int i = 0; i < CAPACITY; i++) {
+            assertThat(bloomFilter.remove(i)).isTrue();
+        }
+
+        // Then
+        for (int i = 0; i < CAPACITY; i++) {
+            assertThat(bloomFilter.mightContain(i)).isFalse();
+        }
+        assertThat(bloomFilter.getStatistics().getExpectedFalsePositiveProbability()).isEqualTo(0.0d);
+        assertThat(bloomFilter.getStatistics().getEstimatedRemainingCapacity()).isEqualTo(CAPACITY);
+    }
+
+    @Test
+    public void shouldNotRemoveAbsentElements() {
+        bloomFilter.add(1);
+
+        assertThat(bloomFilter.remove(2)).isFalse();
+        assertThat(bloomFilter.mightContain(1)).isTrue();
+    }
+
+    @Test
+    public void shouldKeepElementsAddedTwiceUntilRemovedTwice() {
+        // Given
+        bloomFilter.add(42);
+        bloomFilter.add(42);
+
+        // When
+        bloomFilter.remove(42);
+
+        // Then
+        assertThat(bloomFilter.mightContain(42)).isTrue();
+        bloomFilter.remove(42);
+        assertThat(bloomFilter.mightContain(42)).isFalse();
+    }
+
+    @Test
+    public void shouldSaturateCountersRatherThanOverflow() {
+        // Given
+        for (int i = 0; i < 20; i++) {
+            bloomFilter.add(7);
+        }
+
+        // When
+        for (int i = 0; i < 20; i++) {
+            bloomFilter.remove(7);
+        }
+
+        // Then
+        assertThat(bloomFilter.mightContain(7)).isTrue();
+    }
+
+    @Test
+    public void shouldStayWithinConfiguredFalsePositiveProbabilityAtCapacity() {
+        // Given
+        for (int i = 0; i < CAPACITY; i++) {
+            bloomFilter.add(i);
+        }
+
+        // When
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (bloomFilter.mightContain(-1 - i)) {
+                falsePositives++;
+            }
+        }
+
+        // Then
+        BloomFilterStatistics statistics = bloomFilter.getStatistics();
+        assertThat(statistics.getExpectedFalsePositiveProbability()).isLessThanOrEqualTo(2 * FALSE_POSITIVE_PROBABILITY);
+        assertThat(falsePositives / 100000.0d).isLessThan(2 * FALSE_POSITIVE_PROBABILITY);
+        assertThat(statistics.getEstimatedRemainingCapacity()).isEqualTo(0L);
+    }
+
+    @Test
+    public void shouldNotLoseConcurrentUpdates() throws Exception {
+        // Given
+        final int threads = 8;
+        final int perThread = 1000;
+        final CountingBloomFilter<Integer> filter = new CountingBloomFilter<Integer>(FUNNEL, threads * perThread,
+                FALSE_POSITIVE_PROBABILITY);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+
+        // When
+        try {
+            for (int t = 0; t < threads; t++) {
+                final int first = t * perThread;
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int i = first; i < first + perThread; i++) {
+                            filter.add(i);
+                        }
+                        // Remove every other element again
+                        for (int i = first; i < first + perThread; i += 2) {
+                            filter.remove(i);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Then
+        for (int i = 1; i < threads * perThread; i += 2) {
+            assertThat(filter.mightContain(i)).isTrue();
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < threads * perThread; i += 2) {
+            if (filter.mightContain(i)) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(threads * perThread / 20);
+        assertThat(filter.getStatistics().getEstimatedRemainingCapacity()).isEqualTo(threads * perThread / 2);
+    }
+}
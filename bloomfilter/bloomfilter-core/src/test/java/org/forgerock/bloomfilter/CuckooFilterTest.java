@@ -0,0 +1,198 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.bloomfilter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.wrensecurity.guava.common.hash.Funnel;
+import org.wrensecurity.guava.common.hash.Funnels;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class CuckooFilterTest {
+    private static final Funnel<Integer> FUNNEL = Funnels.integerFunnel();
+    private static final long CAPACITY = 1000;
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01d;
+
+    private CuckooFilter<Integer> filter;
+
+    @BeforeMethod
+    public void createFilter() {
+        filter = new CuckooFilter<Integer>(FUNNEL, CAPACITY, FALSE_POSITIVE_PROBABILITY);
+    }
+
+    @Test
+    public void shouldUseSpecifiedFalsePositiveProbabilityAndCapacity() {
+        assertThat(filter.getStatistics().getConfiguredFalsePositiveProbability())
+                .isEqualTo(FALSE_POSITIVE_PROBABILITY);
+        assertThat(filter.getStatistics().getCapacity()).isEqualTo(CAPACITY);
+    }
+
+    @Test
+    public void shouldUseLessMemoryThanStandardBloomFilterForLowFalsePositiveProbabilities() {
+        // Given
+        double fpp = 0.0001d;
+
+        // When
+        CuckooFilter<Integer> cuckooFilter = new CuckooFilter<Integer>(FUNNEL, 1000000, fpp);
+
+        // Then
+        assertThat(cuckooFilter.getStatistics().getBitSize())
+                .isLessThan(BloomFilterStatistics.optimumBitSize(1000000, fpp));
+    }
+
+    @Test
+    public void shouldRemoveAddedElements() {
+        // Given
+        for (int i = 0; i < CAPACITY; i++) {
+            filter.add(i);
+        }
+
+        // When
+        for (int i = 0; i < CAPACITY; i++) {
+            assertThat(filter.remove(i)).isTrue();
+        }
+
+        // Then
+        for (int i = 0; i < CAPACITY; i++) {
+            assertThat(filter.mightContain(i)).isFalse();
+        }
+        assertThat(filter.getStatistics().getExpectedFalsePositiveProbability()).isEqualTo(0.0d);
+        assertThat(filter.getStatistics().getEstimatedRemainingCapacity()).isEqualTo(CAPACITY);
+    }
+
+    @Test
+    public void shouldNotRemoveAbsentElements() {
+        filter.add(1);
+
+        assertThat(filter.remove(2)).isFalse();
+        assertThat(filter.mightContain(1)).isTrue();
+    }
+
+    @Test
+    public void shouldKeepElementsAddedTwiceUntilRemovedTwice() {
+        // Given
+        filter.add(42);
+        filter.add(42);
+
+        // When
+        filter.remove(42);
+
+        // Then
+        assertThat(filter.mightContain(42)).isTrue();
+        filter.remove(42);
+        assertThat(filter.mightContain(42)).isFalse();
+    }
+
+    @Test
+    public void shouldStayWithinConfiguredFalsePositiveProbabilityAtCapacity() {
+        // Given
+        for (int i = 0; i < CAPACITY; i++) {
+            filter.add(i);
+        }
+
+        // When
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.mightContain(-1 - i)) {
+                falsePositives++;
+            }
+        }
+
+        // Then
+        BloomFilterStatistics statistics = filter.getStatistics();
+        assertThat(statistics.getExpectedFalsePositiveProbability()).isLessThanOrEqualTo(FALSE_POSITIVE_PROBABILITY);
+        assertThat(falsePositives / 100000.0d).isLessThan(FALSE_POSITIVE_PROBABILITY);
+        assertThat(statistics.getEstimatedRemainingCapacity()).isEqualTo(0L);
+        assertThat(statistics.isSaturated()).isFalse();
+    }
+
+    @Test
+    public void shouldRejectElementsWhenFullAndAcceptThemAgainAfterRemoval() {
+        // Given
+        CuckooFilter<Integer> small = new CuckooFilter<Integer>(FUNNEL, 16, FALSE_POSITIVE_PROBABILITY);
+        int added = 0;
+        try {
+            while (true) {
+                small.add(added);
+                added++;
+            }
+        } catch (IllegalStateException e) {
+            // Expected once no slot can be found
+        }
+
+        // When
+        assertThat(small.remove(0)).isTrue();
+        small.add(-1);
+
+        // Then
+        assertThat(added).isGreaterThanOrEqualTo(16);
+        for (int i = 1; i < added; i++) {
+            assertThat(small.mightContain(i)).isTrue();
+        }
+        assertThat(small.mightContain(-1)).isTrue();
+    }
+
+    @Test
+    public void shouldNotLoseConcurrentUpdates() throws Exception {
+        // Given
+        final int threads = 8;
+        final int perThread = 1000;
+        final CuckooFilter<Integer> cuckooFilter = new CuckooFilter<Integer>(FUNNEL, threads * perThread,
+                FALSE_POSITIVE_PROBABILITY);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+
+        // When
+        try {
+            for (int t = 0; t < threads; t++) {
+                final int first = t * perThread;
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int i = first; i < first + perThread; i++) {
+                            cuckooFilter.add(i);
+                            assertThat(cuckooFilter.mightContain(i)).isTrue();
+                        }
+                        for (int i = first; i < first + perThread; i += 2) {
+                            cuckooFilter.remove(i);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Then
+        for (int i = 1; i < threads * perThread; i += 2) {
+            assertThat(cuckooFilter.mightContain(i)).isTrue();
+        }
+        assertThat(cuckooFilter.getStatistics().getEstimatedRemainingCapacity()).isEqualTo(threads * perThread / 2);
+    }
+}
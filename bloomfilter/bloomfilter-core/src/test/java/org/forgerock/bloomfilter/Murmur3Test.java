@@ -0,0 +1,120 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.bloomfilter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.wrensecurity.guava.common.hash.Funnel;
+import org.wrensecurity.guava.common.hash.Funnels;
+import org.wrensecurity.guava.common.hash.HashCode;
+import org.wrensecurity.guava.common.hash.Hashing;
+import org.wrensecurity.guava.common.hash.PrimitiveSink;
+
+public class Murmur3Test {
+
+    private static final Random RANDOM = new Random(42);
+
+    @DataProvider
+    public Object[][] lengths() {
+        Object[][] lengths = new Object[40][1];
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i][0] = i;
+        }
+        return lengths;
+    }
+
+    @Test
+    public void shouldHashLongsLikeGuava() {
+        for (long value : new long[] { 0L, 1L, -1L, Long.MIN_VALUE, Long.MAX_VALUE, RANDOM.nextLong() }) {
+            assertSameHash(Funnels.longFunnel(), value);
+        }
+    }
+
+    @Test
+    public void shouldHashIntegersLikeGuava() {
+        for (int value : new int[] { 0, 1, -1, Integer.MIN_VALUE, Integer.MAX_VALUE, RANDOM.nextInt() }) {
+            assertSameHash(Funnels.integerFunnel(), value);
+        }
+    }
+
+    @Test(dataProvider = "lengths")
+    public void shouldHashByteArraysLikeGuava(int length) {
+        byte[] bytes = new byte[length];
+        RANDOM.nextBytes(bytes);
+        assertSameHash(Funnels.byteArrayFunnel(), bytes);
+    }
+
+    @Test(dataProvider = "lengths")
+    public void shouldHashUnencodedCharsLikeGuava(int length) {
+        assertSameHash(Funnels.unencodedCharsFunnel(), randomString(length, Character.MAX_VALUE));
+    }
+
+    @Test(dataProvider = "lengths")
+    public void shouldHashAsciiStringsLikeGuava(int length) {
+        assertSameHash(Funnels.stringFunnel(StandardCharsets.UTF_8), randomString(length, 0x7f));
+    }
+
+    @Test(dataProvider = "lengths")
+    public void shouldHashNonAsciiStringsLikeGuava(int length) {
+        assertSameHash(Funnels.stringFunnel(StandardCharsets.UTF_8), randomString(length, 0x7f) + "é中");
+    }
+
+    @Test
+    public void shouldHashWithCustomFunnelLikeGuava() {
+        Funnel<String> lowerCaseFunnel = new Funnel<String>() {
+            @Override
+            public void funnel(String from, PrimitiveSink into) {
+                into.putUnencodedChars(from.toLowerCase());
+            }
+        };
+        assertSameHash(lowerCaseFunnel, "Some Token");
+    }
+
+    private static String randomString(int length, int maxChar) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) RANDOM.nextInt(maxChar + 1));
+        }
+        return builder.toString();
+    }
+
+    private static <T> void assertSameHash(Funnel<? super T> funnel, final T element) {
+        final HashCode expected = Hashing.murmur3_128().hashObject(element, funnel);
+        boolean result = new Murmur3<T>(funnel).hash(element, new Murmur3.HashConsumer() {
+            @Override
+            public boolean accept(long hash1, long hash2) {
+                assertThat(HashCode.fromBytes(toBytes(hash1, hash2))).as("hash of %s", element).isEqualTo(expected);
+                return true;
+            }
+        });
+        assertThat(result).isTrue();
+    }
+
+    private static byte[] toBytes(long hash1, long hash2) {
+        byte[] bytes = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (hash1 >>> (8 * i));
+            bytes[i + 8] = (byte) (hash2 >>> (8 * i));
+        }
+        return bytes;
+    }
+}
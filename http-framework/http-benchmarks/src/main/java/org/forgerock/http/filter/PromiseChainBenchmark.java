@@ -0,0 +1,157 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.http.filter;
+
+import static org.forgerock.http.protocol.Response.newResponsePromise;
+import static org.forgerock.http.protocol.Response.newResponsePromiseImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.http.Filter;
+import org.forgerock.http.Handler;
+import org.forgerock.http.handler.Handlers;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.forgerock.util.AsyncFunction;
+import org.forgerock.util.Function;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the cost of completing the promises of a chain of filters which transform the response of their next
+ * handler, either synchronously ({@code completed}: the handler returns a completed promise) or once the whole chain
+ * has registered its listeners ({@code pending}: the handler returns a pending promise, completed afterwards).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 1, time = 2, timeUnit = TimeUnit.MINUTES)
+@Fork(1)
+@Threads(25)
+public class PromiseChainBenchmark {
+
+    private static final Response OK = new Response(Status.OK);
+
+    @Param({ "1", "10", "50" })
+    private int depth;
+
+    @Param({ "completed", "pending" })
+    private String response;
+
+    private PromiseImpl<Response, NeverThrowsException> pendingResponse;
+
+    private final Handler handler = new Handler() {
+        @Override
+        public Promise<Response, NeverThrowsException> handle(final Context context, final Request request) {
+            if (pendingResponse != null) {
+                pendingResponse = newResponsePromiseImpl();
+                return pendingResponse;
+            }
+            return newResponsePromise(OK);
+        }
+    };
+
+    private final Function<Response, Response, NeverThrowsException> transform =
+            new Function<Response, Response, NeverThrowsException>() {
+                @Override
+                public Response apply(final Response value) {
+                    return value;
+                }
+            };
+
+    private final AsyncFunction<Response, Response, NeverThrowsException> asyncTransform =
+            new AsyncFunction<Response, Response, NeverThrowsException>() {
+                @Override
+                public Promise<Response, NeverThrowsException> apply(final Response value) {
+                    return newResponsePromise(value);
+                }
+            };
+
+    private final Filter thenFilter = new Filter() {
+        @Override
+        public Promise<Response, NeverThrowsException> filter(final Context context, final Request request,
+                final Handler next) {
+            return next.handle(context, request).then(transform);
+        }
+    };
+
+    private final Filter thenAsyncFilter = new Filter() {
+        @Override
+        public Promise<Response, NeverThrowsException> filter(final Context context, final Request request,
+                final Handler next) {
+            return next.handle(context, request).thenAsync(asyncTransform);
+        }
+    };
+
+    private final Request request = new Request();
+    private final Context context = new RootContext();
+
+    private Handler chain;
+
+    @Setup
+    public void setup() {
+        final List<Filter> filters = new ArrayList<>(depth);
+        for (int i = 0; i < depth; i++) {
+            filters.add(i % 2 == 0 ? thenFilter : thenAsyncFilter);
+        }
+        chain = Handlers.chainOf(handler, filters);
+        if ("pending".equals(response)) {
+            pendingResponse = newResponsePromiseImpl();
+        }
+    }
+
+    @Benchmark
+    public Response chainOf() {
+        final Promise<Response, NeverThrowsException> promise = chain.handle(context, request);
+        if (pendingResponse != null) {
+            pendingResponse.handleResult(OK);
+        }
+        return promise.getOrThrowUninterruptibly();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(PromiseChainBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+}
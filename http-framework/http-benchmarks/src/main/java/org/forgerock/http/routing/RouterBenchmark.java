@@ -0,0 +1,128 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.http.routing;
+
+import static org.forgerock.http.routing.RouteMatchers.requestUriMatcher;
+import static org.forgerock.http.routing.RoutingMode.EQUALS;
+import static org.forgerock.http.routing.RoutingMode.STARTS_WITH;
+
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.http.Handler;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.Promise;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares routing a request through a {@link Router} which evaluates every route with one which uses its
+ * route index. Each simulated resource registers a collection route, an instance route and a sub-resource route.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class RouterBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    private int routes;
+
+    @Param({ "false", "true" })
+    private boolean indexed;
+
+    private final Promise<Response, NeverThrowsException> okResponse =
+            Response.newResponsePromise(new Response(Status.OK));
+
+    private final Handler okHandler = new Handler() {
+        @Override
+        public Promise<Response, NeverThrowsException> handle(final Context context, final Request request) {
+            return okResponse;
+        }
+    };
+
+    private final Context context = new RootContext();
+    private Router router;
+    private Request collectionRequest;
+    private Request instanceRequest;
+    private Request subResourceRequest;
+    private Request unmatchedRequest;
+
+    @Setup
+    public void setup() throws URISyntaxException {
+        router = new Router().setRouteIndexEnabled(indexed);
+        int resources = Math.max(1, routes / 3);
+        for (int i = 0; i < resources; i++) {
+            router.addRoute(requestUriMatcher(EQUALS, "resource" + i), okHandler);
+            router.addRoute(requestUriMatcher(EQUALS, "resource" + i + "/{id}"), okHandler);
+            router.addRoute(requestUriMatcher(STARTS_WITH, "resource" + i + "/{id}/children"), okHandler);
+        }
+        String resource = "resource" + (resources / 2);
+        collectionRequest = new Request().setUri("http://localhost/" + resource);
+        instanceRequest = new Request().setUri("http://localhost/" + resource + "/bjensen");
+        subResourceRequest = new Request().setUri("http://localhost/" + resource + "/bjensen/children/1");
+        unmatchedRequest = new Request().setUri("http://localhost/unknown/bjensen");
+    }
+
+    @Benchmark
+    public Promise<Response, NeverThrowsException> collection() {
+        return router.handle(context, collectionRequest);
+    }
+
+    @Benchmark
+    public Promise<Response, NeverThrowsException> instance() {
+        return router.handle(context, instanceRequest);
+    }
+
+    @Benchmark
+    public Promise<Response, NeverThrowsException> subResource() {
+        return router.handle(context, subResourceRequest);
+    }
+
+    @Benchmark
+    public Promise<Response, NeverThrowsException> notFound() {
+        return router.handle(context, unmatchedRequest);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(RouterBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+}
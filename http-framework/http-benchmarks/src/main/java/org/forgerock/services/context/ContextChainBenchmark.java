@@ -0,0 +1,157 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.services.context;
+
+import static org.forgerock.http.protocol.Response.newResponsePromise;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.http.Filter;
+import org.forgerock.http.Handler;
+import org.forgerock.http.handler.Handlers;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.http.routing.UriRouterContext;
+import org.forgerock.http.session.Session;
+import org.forgerock.http.session.SessionContext;
+import org.forgerock.services.TransactionId;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.Promise;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the cost of building the context chain of a request, as the servlet adapter and a typical filter chain
+ * do, and of looking contexts up from the handler at the end of the chain. Run with {@code -prof gc} to report the
+ * allocations per request ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 1, time = 2, timeUnit = TimeUnit.MINUTES)
+@Fork(1)
+@Threads(25)
+public class ContextChainBenchmark {
+
+    private static final Promise<Response, NeverThrowsException> OK_RESPONSE =
+            newResponsePromise(new Response(Status.OK));
+
+    private final Session session = new InMemorySession();
+
+    private final Map<String, String> variables = Collections.singletonMap("id", "bjensen");
+
+    private final Map<String, Object> authorization = Collections.<String, Object>singletonMap("id", "bjensen");
+
+    private final Handler handler = new Handler() {
+        @Override
+        public Promise<Response, NeverThrowsException> handle(final Context context, final Request request) {
+            context.asContext(ClientContext.class).getRemoteAddress();
+            context.asContext(AttributesContext.class).getAttributes();
+            context.asContext(UriRouterContext.class).getUriTemplateVariables();
+            context.asContext(SecurityContext.class).getAuthenticationId();
+            context.asContext(RequestAuditContext.class).getRequestReceivedTime();
+            context.asContext(TransactionIdContext.class).getTransactionId();
+            return OK_RESPONSE;
+        }
+    };
+
+    private final Filter transactionIdFilter = new Filter() {
+        @Override
+        public Promise<Response, NeverThrowsException> filter(final Context context, final Request request,
+                final Handler next) {
+            return next.handle(new TransactionIdContext(context, new TransactionId("txid")), request);
+        }
+    };
+
+    private final Filter authenticationFilter = new Filter() {
+        @Override
+        public Promise<Response, NeverThrowsException> filter(final Context context, final Request request,
+                final Handler next) {
+            if (!context.containsContext(ClientContext.class)) {
+                throw new IllegalStateException();
+            }
+            return next.handle(new SecurityContext(context, "bjensen", authorization), request);
+        }
+    };
+
+    private final Filter auditFilter = new Filter() {
+        @Override
+        public Promise<Response, NeverThrowsException> filter(final Context context, final Request request,
+                final Handler next) {
+            context.asContext(TransactionIdContext.class).getTransactionId();
+            context.asContext(ClientContext.class).getRemoteAddress();
+            return next.handle(context, request);
+        }
+    };
+
+    private final Handler chain = Handlers.chainOf(handler, transactionIdFilter, authenticationFilter, auditFilter);
+
+    private final Request request = new Request();
+
+    @Benchmark
+    public Promise<Response, NeverThrowsException> servletRequest() {
+        // As built by the servlet adapter.
+        Context context = new RootContext("root");
+        context = new SessionContext(context, session);
+        context = new UriRouterContext(context, "", "users/bjensen", variables);
+        context = new RequestAuditContext(context);
+        context = new AttributesContext(context);
+        context = ClientContext.buildExternalClientContext(context)
+                .remoteAddress("192.0.2.1")
+                .remotePort(4242)
+                .userAgent("curl")
+                .localAddress("192.0.2.2")
+                .localPort(8080)
+                .build();
+        return chain.handle(context, request);
+    }
+
+    private static final class InMemorySession extends HashMap<String, Object> implements Session {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void save(final Response response) {
+            // Nothing to save.
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ContextChainBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+}
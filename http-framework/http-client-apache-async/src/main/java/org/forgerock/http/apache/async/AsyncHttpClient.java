@@ -12,12 +12,14 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.http.apache.async;
 
 import static java.nio.channels.Channels.newChannel;
 import static org.forgerock.http.apache.async.CloseableBufferFactory.closeableByteBufferFactory;
+import static org.forgerock.http.io.IO.defaultBufferPool;
 import static org.forgerock.util.Utils.closeSilently;
 
 import java.io.IOException;
@@ -60,11 +62,11 @@ public class AsyncHttpClient extends AbstractHttpClient {
     private final Factory<Buffer> storage;
     private final CloseableBufferFactory<ByteBuffer> bufferFactory;
 
-    AsyncHttpClient(final CloseableHttpAsyncClient client, final Factory<Buffer> storage, final int threadCount) {
+    AsyncHttpClient(final CloseableHttpAsyncClient client, final Factory<Buffer> storage) {
         // Client should already be started
         this.client = client;
         this.storage = storage;
-        this.bufferFactory = closeableByteBufferFactory(threadCount, 8 * 1_024);
+        this.bufferFactory = closeableByteBufferFactory(defaultBufferPool(), 8 * 1_024);
     }
 
     @Override
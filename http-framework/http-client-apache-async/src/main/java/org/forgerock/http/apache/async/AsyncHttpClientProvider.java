@@ -12,6 +12,7 @@
  * information: "Portions Copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.http.apache.async;
@@ -189,6 +190,6 @@ public class AsyncHttpClientProvider implements HttpClientProvider {
                 .setProxyAuthenticationStrategy(NoAuthenticationStrategy.INSTANCE)
                 .build();
         client.start();
-        return new AsyncHttpClient(client, storage, ioReactorConfig.getIoThreadCount());
+        return new AsyncHttpClient(client, storage);
     }
 }
@@ -12,6 +12,7 @@
  * information: "Portions Copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 package org.forgerock.http.apache.async;
 
@@ -21,6 +22,7 @@ import java.nio.ByteBuffer;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
+import org.forgerock.http.io.BufferPool;
 import org.forgerock.util.Factory;
 
 /**
@@ -61,6 +63,30 @@ abstract class CloseableBufferFactory<T extends Buffer> implements
         };
     }
 
+    /**
+     * Fluent method the create a CloseableBufferFactory<ByteBuffer> whose buffers are segments of a
+     * {@link BufferPool}, so that they are shared with the temporary storage of the entities.
+     * @param bufferPool the pool from which the buffers are acquired, and into which they are released
+     * @param bufferSize the size of the buffer
+     * @return an instance of CloseableBufferFactory that will handle some {@link ByteBuffer}.
+     */
+    static CloseableBufferFactory<ByteBuffer> closeableByteBufferFactory(final BufferPool bufferPool,
+            final int bufferSize) {
+        return new CloseableBufferFactory<ByteBuffer>(0) {
+            @Override
+            protected java.nio.ByteBuffer allocate() {
+                final ByteBuffer buffer = bufferPool.acquire(bufferSize);
+                buffer.limit(Math.min(bufferSize, buffer.capacity()));
+                return buffer;
+            }
+
+            @Override
+            protected void release(ByteBuffer buffer) {
+                bufferPool.release(buffer);
+            }
+        };
+    }
+
     /**
      * Pool of pre-allocated {@code T} instances, which will grow in size up to the maximum concurrent
      * threads that call this class.
@@ -94,6 +120,16 @@ abstract class CloseableBufferFactory<T extends Buffer> implements
      */
     protected abstract T allocate();
 
+    /**
+     * Releases a buffer once its {@link CloseableBuffer} is closed. By default, the buffer is cleared and kept in
+     * the pool of this factory.
+     * @param buffer the buffer to release
+     */
+    protected void release(T buffer) {
+        buffer.clear();
+        pool.add(buffer);
+    }
+
     @Override
     public final CloseableBuffer newInstance() {
         T instance = pool.poll();
@@ -113,8 +149,7 @@ abstract class CloseableBufferFactory<T extends Buffer> implements
 
         @Override
         public void close() {
-            buffer.clear();
-            pool.add(buffer);
+            release(buffer);
         }
 
         T getBuffer() {
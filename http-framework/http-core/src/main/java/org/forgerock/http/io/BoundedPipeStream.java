@@ -0,0 +1,259 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.http.io;
+
+import static org.forgerock.http.io.IO.newBranchingInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.forgerock.util.Factory;
+import org.forgerock.util.Reject;
+import org.forgerock.util.time.Duration;
+
+/**
+ * Represents a pipe for transferring bytes from an {@link OutputStream} to a {@link BranchingInputStream} which is
+ * read concurrently by another thread.
+ * <p>
+ * Unlike {@link PipeBufferedStream}, the pipe only holds a bounded number of bytes: the writer blocks while the
+ * pipe is full and the reader blocks while it is empty. The reader gets an end-of-stream once the output stream has
+ * been closed and all the bytes written to it have been read. Closing the input stream releases a blocked writer,
+ * and any subsequent write fails with an {@link IOException}, so that a producer stops as soon as its consumer has
+ * gone away.
+ * <p>
+ * An optional write timeout bounds how long the writer waits for the reader to make room in the pipe, so that a
+ * producer is not blocked forever when the input stream is never read nor closed.
+ */
+public final class BoundedPipeStream {
+
+    private final byte[] buffer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final OutputStream outputStream;
+    private final BranchingInputStream inputStream;
+    /** Maximum time to wait for room in the pipe, or a negative value to wait forever. */
+    private final long writeTimeoutNanos;
+    /** Index of the next byte to read. */
+    private int head;
+    /** Number of bytes available for reading. */
+    private int count;
+    private boolean writerClosed;
+    private boolean readerClosed;
+
+    /**
+     * Constructs a new {@link BoundedPipeStream} holding at most {@code capacity} bytes, which uses temporary
+     * storage for branches of the input stream.
+     *
+     * @param capacity The maximum number of bytes written but not yet read.
+     */
+    public BoundedPipeStream(final int capacity) {
+        this(capacity, IO.newTemporaryStorage());
+    }
+
+    /**
+     * Constructs a new {@link BoundedPipeStream} holding at most {@code capacity} bytes, which uses temporary
+     * storage for branches of the input stream, and whose writes fail if the reader does not make room in the pipe
+     * within {@code writeTimeout}.
+     *
+     * @param capacity The maximum number of bytes written but not yet read.
+     * @param writeTimeout The maximum time to wait for room in the pipe, or {@link Duration#UNLIMITED}.
+     */
+    public BoundedPipeStream(final int capacity, final Duration writeTimeout) {
+        this(capacity, writeTimeout, IO.newTemporaryStorage());
+    }
+
+    /**
+     * Constructs a new {@link BoundedPipeStream} holding at most {@code capacity} bytes.
+     *
+     * @param capacity The maximum number of bytes written but not yet read.
+     * @param bufferFactory The buffer factory to use to create the {@link BranchingInputStream}.
+     */
+    public BoundedPipeStream(final int capacity, final Factory<Buffer> bufferFactory) {
+        this(capacity, Duration.UNLIMITED, bufferFactory);
+    }
+
+    /**
+     * Constructs a new {@link BoundedPipeStream} holding at most {@code capacity} bytes, whose writes fail if the
+     * reader does not make room in the pipe within {@code writeTimeout}.
+     *
+     * @param capacity The maximum number of bytes written but not yet read.
+     * @param writeTimeout The maximum time to wait for room in the pipe, or {@link Duration#UNLIMITED}.
+     * @param bufferFactory The buffer factory to use to create the {@link BranchingInputStream}.
+     */
+    public BoundedPipeStream(final int capacity, final Duration writeTimeout, final Factory<Buffer> bufferFactory) {
+        Reject.ifTrue(capacity <= 0, "The capacity must be strictly positive");
+        Reject.ifNull(writeTimeout);
+        this.writeTimeoutNanos = writeTimeout.isUnlimited() ? -1 : writeTimeout.to(TimeUnit.NANOSECONDS);
+        this.buffer = new byte[capacity];
+        this.outputStream = new PipeOutputStream();
+        this.inputStream = newBranchingInputStream(new PipeInputStream(), bufferFactory);
+    }
+
+    /**
+     * Returns the output stream which writes to the pipe.
+     *
+     * @return The output stream.
+     */
+    public OutputStream getIn() {
+        return outputStream;
+    }
+
+    /**
+     * Returns the input stream which reads from the pipe.
+     *
+     * @return The input stream.
+     */
+    public BranchingInputStream getOut() {
+        return inputStream;
+    }
+
+    private void await(final Condition condition) throws InterruptedIOException {
+        try {
+            condition.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting on pipe");
+        }
+    }
+
+    /** Waits for room in the pipe, and returns the remaining time to wait, or a negative value if unlimited. */
+    private long awaitNotFull(final long remainingNanos) throws InterruptedIOException {
+        if (remainingNanos < 0) {
+            await(notFull);
+            return remainingNanos;
+        }
+        if (remainingNanos == 0) {
+            throw new InterruptedIOException("Timed out waiting for the pipe to be read");
+        }
+        try {
+            return Math.max(notFull.awaitNanos(remainingNanos), 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting on pipe");
+        }
+    }
+
+    private class PipeOutputStream extends OutputStream {
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, int off, int len) throws IOException {
+            lock.lock();
+            try {
+                while (len > 0) {
+                    long remainingNanos = writeTimeoutNanos;
+                    while (count == buffer.length && !readerClosed && !writerClosed) {
+                        remainingNanos = awaitNotFull(remainingNanos);
+                    }
+                    if (writerClosed) {
+                        throw new IOException("Pipe output stream is closed");
+                    }
+                    if (readerClosed) {
+                        throw new IOException("Pipe input stream has been closed by the reader");
+                    }
+                    final int tail = (head + count) % buffer.length;
+                    final int chunk = Math.min(len, Math.min(buffer.length - count, buffer.length - tail));
+                    System.arraycopy(b, off, buffer, tail, chunk);
+                    count += chunk;
+                    off += chunk;
+                    len -= chunk;
+                    notEmpty.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            lock.lock();
+            try {
+                writerClosed = true;
+                notEmpty.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private class PipeInputStream extends InputStream {
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            lock.lock();
+            try {
+                while (count == 0 && !writerClosed && !readerClosed) {
+                    await(notEmpty);
+                }
+                if (readerClosed) {
+                    throw new IOException("Pipe input stream is closed");
+                }
+                if (count == 0) {
+                    return -1;
+                }
+                final int chunk = Math.min(len, Math.min(count, buffer.length - head));
+                System.arraycopy(buffer, head, b, off, chunk);
+                head = (head + chunk) % buffer.length;
+                count -= chunk;
+                notFull.signal();
+                return chunk;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public int available() throws IOException {
+            lock.lock();
+            try {
+                return count;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            lock.lock();
+            try {
+                readerClosed = true;
+                count = 0;
+                notFull.signalAll();
+                notEmpty.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,407 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.http.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.forgerock.util.Reject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pool of reusable memory segments and temporary files, shared by the {@link Buffer}s of a
+ * {@link IO#newTemporaryStorage(File, int, int, int, BufferPool) temporary storage}.
+ * <p>
+ * Segments are {@code ByteBuffer}s, allocated either on the heap or directly, whose capacities are powers of two
+ * between 1 KiB and the maximum segment size. Each size class has its own free list. Released segments are kept as
+ * long as the pool holds less than its retention limit; beyond it they are left to the garbage collector.
+ * <p>
+ * Spill files are the temporary files in which buffers exceeding their memory limit store their data. Released
+ * spill files are truncated and kept for reuse, up to a limit per directory; beyond it they are deleted immediately.
+ * Idle spill files are deleted when the pool is closed.
+ * <p>
+ * The pool tracks the buffers it serves: the segments and the spill file of a buffer which is garbage collected
+ * without having been closed are released the next time the pool creates a buffer, or when it is closed. The
+ * {@link IO#defaultBufferPool() default pool} also tracks the file buffers of {@link IO#newFileBuffer(File, int)}
+ * and {@link IO#newTemporaryBuffer(int, int, int, File)}, whose file is closed, and deleted if temporary, once they
+ * are collected without having been closed.
+ * <p>
+ * The pool records the number of segments reused and allocated, the number of spill files created, reused and
+ * deleted, the number of buffers released without having been closed, as well as the number of bytes it retains.
+ */
+public final class BufferPool implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BufferPool.class);
+
+    /** 64 KiB. */
+    public static final int DEFAULT_MAX_SEGMENT_SIZE = 64 * 1_024;
+
+    /** 16 MiB. */
+    public static final long DEFAULT_MAX_RETAINED_BYTES = 16 * 1_024 * 1_024;
+
+    /** Number of idle spill files kept per directory by default. */
+    public static final int DEFAULT_MAX_IDLE_FILES = 16;
+
+    /** The size of the smallest segments: 1 KiB. */
+    private static final int MIN_SEGMENT_SHIFT = 10;
+
+    /** Key of the spill files of the system-dependent default temporary directory. */
+    private static final File DEFAULT_DIRECTORY = new File("");
+
+    private final boolean direct;
+    private final int maxSegmentSize;
+    private final long maxRetainedBytes;
+    private final int maxIdleFiles;
+
+    /** Free segments, by size class. */
+    private final Queue<ByteBuffer>[] segments;
+    private final AtomicLong retainedBytes = new AtomicLong();
+
+    /** Idle spill files, by directory. */
+    private final ConcurrentMap<File, Queue<File>> idleFiles = new ConcurrentHashMap<>();
+    private final AtomicInteger idleFileCount = new AtomicInteger();
+    private volatile boolean closed;
+
+    /** The references to the buffers which have not been closed, with the resources to release once collected. */
+    private final Set<ResourcesReference> openBuffers = ConcurrentHashMap.newKeySet();
+    private final ReferenceQueue<Object> collectedBuffers = new ReferenceQueue<>();
+
+    private final LongAdder segmentHitCount = new LongAdder();
+    private final LongAdder segmentMissCount = new LongAdder();
+    private final LongAdder spillFileCreatedCount = new LongAdder();
+    private final LongAdder spillFileReusedCount = new LongAdder();
+    private final LongAdder spillFileDeletedCount = new LongAdder();
+    private final LongAdder unclosedBufferCount = new LongAdder();
+
+    /**
+     * Creates a pool of heap segments of up to {@link #DEFAULT_MAX_SEGMENT_SIZE} bytes, retaining up to
+     * {@link #DEFAULT_MAX_RETAINED_BYTES} bytes and {@link #DEFAULT_MAX_IDLE_FILES} idle spill files per directory.
+     */
+    public BufferPool() {
+        this(false, DEFAULT_MAX_SEGMENT_SIZE, DEFAULT_MAX_RETAINED_BYTES, DEFAULT_MAX_IDLE_FILES);
+    }
+
+    /**
+     * Creates a pool with the provided limits.
+     *
+     * @param direct
+     *            {@code true} to allocate direct segments, {@code false} to allocate them on the heap.
+     * @param maxSegmentSize
+     *            the capacity of the largest segments, rounded up to a power of two of at least 1 KiB.
+     * @param maxRetainedBytes
+     *            the number of bytes of free segments that the pool may retain.
+     * @param maxIdleFiles
+     *            the number of idle spill files that the pool may retain per directory.
+     */
+    @SuppressWarnings("unchecked")
+    public BufferPool(boolean direct, int maxSegmentSize, long maxRetainedBytes, int maxIdleFiles) {
+        Reject.ifTrue(maxSegmentSize <= 0 || maxSegmentSize > 1 << 30, "maxSegmentSize must be in ]0, 1 GiB]");
+        Reject.ifTrue(maxRetainedBytes < 0, "maxRetainedBytes must not be negative");
+        Reject.ifTrue(maxIdleFiles < 0, "maxIdleFiles must not be negative");
+        this.direct = direct;
+        this.maxSegmentSize = 1 << sizeClassShift(maxSegmentSize);
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.maxIdleFiles = maxIdleFiles;
+        this.segments = (Queue<ByteBuffer>[]) new Queue<?>[sizeClassShift(this.maxSegmentSize) - MIN_SEGMENT_SHIFT + 1];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Returns the capacity of the largest segments of this pool.
+     *
+     * @return the capacity of the largest segments of this pool.
+     */
+    public int getMaxSegmentSize() {
+        return maxSegmentSize;
+    }
+
+    /**
+     * Returns a cleared segment of at least {@code size} bytes, or of {@link #getMaxSegmentSize()} bytes if
+     * {@code size} is larger. The segment should be {@link #release(ByteBuffer) released} once no longer used.
+     *
+     * @param size
+     *            the requested capacity.
+     * @return a cleared segment.
+     */
+    public ByteBuffer acquire(int size) {
+        final int shift = sizeClassShift(Math.min(size, maxSegmentSize));
+        final ByteBuffer segment = segments[shift - MIN_SEGMENT_SHIFT].poll();
+        if (segment != null) {
+            retainedBytes.addAndGet(-segment.capacity());
+            segmentHitCount.increment();
+            return segment;
+        }
+        segmentMissCount.increment();
+        return direct ? ByteBuffer.allocateDirect(1 << shift) : ByteBuffer.allocate(1 << shift);
+    }
+
+    /**
+     * Returns a segment to this pool. Segments of a kind or size this pool does not allocate are ignored. The caller
+     * must not use the segment afterwards.
+     *
+     * @param segment
+     *            the segment to release.
+     */
+    public void release(ByteBuffer segment) {
+        final int capacity = segment.capacity();
+        if (closed || segment.isDirect() != direct || segment.isReadOnly() || Integer.bitCount(capacity) != 1
+                || capacity < 1 << MIN_SEGMENT_SHIFT || capacity > maxSegmentSize) {
+            return;
+        }
+        if (retainedBytes.addAndGet(capacity) > maxRetainedBytes) {
+            retainedBytes.addAndGet(-capacity);
+            return;
+        }
+        segment.clear();
+        segments[Integer.numberOfTrailingZeros(capacity) - MIN_SEGMENT_SHIFT].offer(segment);
+    }
+
+    /**
+     * Returns an empty spill file, either an idle one or a newly created one. The file should be
+     * {@link #releaseSpillFile(File, File) released} once no longer used.
+     *
+     * @param directory
+     *            the directory of the file, or {@code null} for the system-dependent default temporary directory.
+     * @return an empty file.
+     * @throws IOException
+     *             if a new file could not be created.
+     */
+    public File acquireSpillFile(File directory) throws IOException {
+        final Queue<File> files = idleFiles.get(key(directory));
+        final File file = files != null ? files.poll() : null;
+        if (file != null) {
+            idleFileCount.decrementAndGet();
+            spillFileReusedCount.increment();
+            return file;
+        }
+        spillFileCreatedCount.increment();
+        return File.createTempFile("buf", null, directory);
+    }
+
+    /**
+     * Returns a spill file to this pool, which keeps it for reuse or deletes it. The caller must have truncated the
+     * file and closed any stream or channel opened on it.
+     *
+     * @param directory
+     *            the directory from which the file was acquired.
+     * @param file
+     *            the file to release.
+     */
+    public void releaseSpillFile(File directory, File file) {
+        final File key = key(directory);
+        Queue<File> files = idleFiles.get(key);
+        if (files == null) {
+            final Queue<File> newFiles = new ConcurrentLinkedQueue<>();
+            files = idleFiles.putIfAbsent(key, newFiles);
+            if (files == null) {
+                files = newFiles;
+            }
+        }
+        if (!closed && file.length() == 0 && files.size() < maxIdleFiles) {
+            idleFileCount.incrementAndGet();
+            files.offer(file);
+            if (!closed) {
+                return;
+            }
+            // Closed concurrently: delete the file, unless close() already did.
+            if (!files.remove(file)) {
+                return;
+            }
+            idleFileCount.decrementAndGet();
+        }
+        delete(file);
+    }
+
+    /**
+     * Discards the free segments and deletes the idle spill files of this pool. Segments and spill files released
+     * afterwards are discarded, respectively deleted, immediately.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        releaseCollectedBuffers();
+        for (Queue<ByteBuffer> queue : segments) {
+            ByteBuffer segment;
+            while ((segment = queue.poll()) != null) {
+                retainedBytes.addAndGet(-segment.capacity());
+            }
+        }
+        for (Queue<File> files : idleFiles.values()) {
+            File file;
+            while ((file = files.poll()) != null) {
+                idleFileCount.decrementAndGet();
+                delete(file);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of segments acquired from the free lists of this pool.
+     *
+     * @return the number of segments reused.
+     */
+    public long getSegmentHitCount() {
+        return segmentHitCount.sum();
+    }
+
+    /**
+     * Returns the number of segments allocated because no free segment of the requested size class was available.
+     *
+     * @return the number of segments allocated.
+     */
+    public long getSegmentMissCount() {
+        return segmentMissCount.sum();
+    }
+
+    /**
+     * Returns the number of bytes of the free segments retained by this pool.
+     *
+     * @return the number of bytes retained.
+     */
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    /**
+     * Returns the number of spill files created by this pool.
+     *
+     * @return the number of spill files created.
+     */
+    public long getSpillFileCreatedCount() {
+        return spillFileCreatedCount.sum();
+    }
+
+    /**
+     * Returns the number of idle spill files handed out again by this pool.
+     *
+     * @return the number of spill files reused.
+     */
+    public long getSpillFileReusedCount() {
+        return spillFileReusedCount.sum();
+    }
+
+    /**
+     * Returns the number of spill files deleted by this pool.
+     *
+     * @return the number of spill files deleted.
+     */
+    public long getSpillFileDeletedCount() {
+        return spillFileDeletedCount.sum();
+    }
+
+    /**
+     * Returns the number of buffers whose segments and spill file were released after they were garbage collected
+     * without having been closed. A growing count reveals code which does not close its buffers or entities.
+     *
+     * @return the number of buffers released without having been closed.
+     */
+    public long getUnclosedBufferCount() {
+        return unclosedBufferCount.sum();
+    }
+
+    /**
+     * Returns the number of idle spill files retained by this pool.
+     *
+     * @return the number of idle spill files.
+     */
+    public int getIdleSpillFileCount() {
+        return idleFileCount.get();
+    }
+
+    /**
+     * Tracks a buffer, so that its resources are released if it is garbage collected without having been closed.
+     * The resources must not refer to the buffer. The resources of the buffers already collected are released first.
+     *
+     * @param buffer
+     *            the buffer to track.
+     * @param resources
+     *            the resources to release if the buffer is garbage collected before being untracked.
+     * @return the reference to pass to {@link #untrack(Reference)} when the buffer is closed.
+     */
+    Reference<?> track(Object buffer, Closeable resources) {
+        releaseCollectedBuffers();
+        final ResourcesReference reference = new ResourcesReference(buffer, resources, collectedBuffers);
+        openBuffers.add(reference);
+        return reference;
+    }
+
+    /**
+     * Stops tracking a buffer, which has released its resources itself.
+     *
+     * @param reference
+     *            the reference returned by {@link #track(Object, Closeable)}.
+     */
+    void untrack(Reference<?> reference) {
+        openBuffers.remove(reference);
+        reference.clear();
+    }
+
+    private void releaseCollectedBuffers() {
+        Reference<?> reference;
+        while ((reference = collectedBuffers.poll()) != null) {
+            if (openBuffers.remove(reference)) {
+                unclosedBufferCount.increment();
+                try {
+                    ((ResourcesReference) reference).resources.close();
+                } catch (IOException e) {
+                    logger.warn("Unable to release the resources of a buffer which was not closed", e);
+                }
+            }
+        }
+    }
+
+    private void delete(File file) {
+        if (file.delete()) {
+            spillFileDeletedCount.increment();
+        }
+    }
+
+    private static File key(File directory) {
+        return directory != null ? directory : DEFAULT_DIRECTORY;
+    }
+
+    /** A phantom reference to a buffer, holding the resources to release once the buffer is collected. */
+    private static final class ResourcesReference extends PhantomReference<Object> {
+        private final Closeable resources;
+
+        private ResourcesReference(Object buffer, Closeable resources, ReferenceQueue<Object> queue) {
+            super(buffer, queue);
+            this.resources = resources;
+        }
+    }
+
+    /** Returns the base-2 logarithm of the size class of {@code size}. */
+    private static int sizeClassShift(int size) {
+        return Math.max(MIN_SEGMENT_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1));
+    }
+}
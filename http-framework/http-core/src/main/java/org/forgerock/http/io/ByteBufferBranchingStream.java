@@ -0,0 +1,115 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.http.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Wraps the remaining content of a {@code ByteBuffer}, which may be a direct or a memory-mapped buffer, with a
+ * stream that can branch to perform divergent reads. Each branch reads through its own view of the buffer; the
+ * content of the buffer is never modified.
+ */
+final class ByteBufferBranchingStream extends DirectBranchingStream {
+
+    /** This stream's own view of the content, whose position is the position of the stream. */
+    private final ByteBuffer buffer;
+
+    ByteBufferBranchingStream(ByteBuffer buffer) {
+        this(buffer, null);
+    }
+
+    private ByteBufferBranchingStream(ByteBuffer buffer, BranchingInputStream parent) {
+        super(parent);
+        this.buffer = buffer.duplicate();
+    }
+
+    @Override
+    public long remaining() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public ByteBufferBranchingStream branch() {
+        return new ByteBufferBranchingStream(buffer, this);
+    }
+
+    @Override
+    public ByteBufferBranchingStream copy() {
+        return new ByteBufferBranchingStream(buffer, parent());
+    }
+
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        len = Math.min(len, buffer.remaining());
+        buffer.get(b, off, len);
+        return len;
+    }
+
+    @Override
+    public long skip(long n) {
+        if (n <= 0) {
+            return 0;
+        }
+        final int skipped = (int) Math.min(n, buffer.remaining());
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target) throws IOException {
+        long total = 0;
+        while (buffer.hasRemaining()) {
+            final int n = target.write(buffer);
+            if (n == 0) {
+                // The target cannot accept more bytes for now.
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    @Override
+    public long writeTo(OutputStream out) throws IOException {
+        if (!buffer.hasArray()) {
+            return super.writeTo(out);
+        }
+        // Heap buffer: write its backing array in one go.
+        final int n = buffer.remaining();
+        out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), n);
+        buffer.position(buffer.limit());
+        return n;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.http.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A {@link BranchingInputStream} over content which is entirely available up front, such as a region of a file or a
+ * {@code ByteBuffer}. Besides being read as a stream, the remaining content can be written directly to a channel or
+ * to an output stream, which lets HTTP bindings send it without copying it through small intermediate buffers.
+ * <p>
+ * Branches are cheap: they share the underlying content and only track their own position.
+ *
+ * @see FileRegionBranchingStream
+ * @see IO#newBranchingInputStream(java.nio.ByteBuffer)
+ */
+public abstract class DirectBranchingStream extends BranchingInputStream {
+
+    /** Largest number of bytes written to an output stream in a single call. */
+    static final int MAX_WRITE_SIZE = 256 * 1_024;
+
+    /**
+     * Initialise the {@code DirectBranchingStream} with the specified parent.
+     * @param parent The parent stream, or null if it is the trunk.
+     */
+    protected DirectBranchingStream(BranchingInputStream parent) {
+        super(parent);
+    }
+
+    /**
+     * Returns the number of bytes between the current position of this stream and the end of its content.
+     *
+     * @return the number of bytes remaining.
+     */
+    public abstract long remaining();
+
+    /**
+     * Writes the remaining content of this stream to the provided channel, advancing this stream to the end of its
+     * content. Implementations use the most direct transfer available, e.g. {@code FileChannel.transferTo}.
+     *
+     * @param target
+     *            the channel to write to.
+     * @return the number of bytes written, which may be less than the number of bytes remaining if the channel is in
+     *         non-blocking mode.
+     * @throws IOException
+     *             if an I/O exception occurs.
+     */
+    public abstract long transferTo(WritableByteChannel target) throws IOException;
+
+    /**
+     * Writes the remaining content of this stream to the provided output stream, in writes of up to 256 KiB, advancing
+     * this stream to the end of its content.
+     *
+     * @param out
+     *            the output stream to write to.
+     * @return the number of bytes written.
+     * @throws IOException
+     *             if an I/O exception occurs.
+     */
+    public long writeTo(OutputStream out) throws IOException {
+        final byte[] buf = new byte[(int) Math.min(remaining(), MAX_WRITE_SIZE)];
+        long total = 0;
+        int n;
+        while (buf.length > 0 && (n = read(buf, 0, buf.length)) != -1) {
+            out.write(buf, 0, n);
+            total += n;
+        }
+        return total;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(remaining(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public abstract int read(byte[] b, int off, int len) throws IOException;
+
+    @Override
+    public abstract DirectBranchingStream branch() throws IOException;
+
+    @Override
+    public abstract DirectBranchingStream copy() throws IOException;
+}
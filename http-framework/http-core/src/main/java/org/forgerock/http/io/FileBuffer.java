@@ -13,6 +13,7 @@
  *
  * Copyright 2010–2011 ApexIdentity Inc.
  * Portions Copyright 2011-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.http.io;
@@ -21,9 +22,11 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.lang.ref.Reference;
 
 /**
- * A buffer that uses a local file for data storage.
+ * A buffer that uses a local file for data storage. The file is closed by the pool tracking the buffer if the buffer
+ * is garbage collected without having been closed.
  */
 final class FileBuffer implements Buffer {
 
@@ -33,9 +36,18 @@ final class FileBuffer implements Buffer {
     /** Maximum file size, after which an {@link OverflowException} will be thrown. */
     private final int limit;
 
+    private final BufferPool pool;
+    private final Reference<?> reference;
+
     FileBuffer(File file, int limit) throws FileNotFoundException {
+        this(file, limit, IO.defaultBufferPool());
+    }
+
+    FileBuffer(File file, int limit, BufferPool pool) throws FileNotFoundException {
         raf = new RandomAccessFile(file, "rw");
         this.limit = limit;
+        this.pool = pool;
+        this.reference = pool.track(this, raf);
     }
 
     @Override
@@ -107,6 +119,7 @@ final class FileBuffer implements Buffer {
     @Override
     public void close() throws IOException {
         if (raf != null) {
+            pool.untrack(reference);
             try {
                 raf.close();
             } finally {
@@ -115,16 +128,6 @@ final class FileBuffer implements Buffer {
         }
     }
 
-    @Override
-    public void finalize() throws Throwable {
-        try {
-            close();
-        } catch (IOException ioe) {
-            // inappropriate to throw an exception when object is being collected
-        }
-        super.finalize();
-    }
-
     /**
      * Throws an {@link IOException} if the buffer is closed.
      */
@@ -0,0 +1,188 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.http.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.forgerock.util.Reject;
+
+/**
+ * A {@link DirectBranchingStream} reading a region of a file through a {@code FileChannel}. All the branches of a
+ * stream share its channel and use positional reads, so branching does not open the file again; only
+ * {@link #copy()} does. The remaining content is sent with {@code FileChannel.transferTo}, which lets the operating
+ * system copy the file to a socket without going through the Java heap.
+ * <p>
+ * This stream is suited to serving large files, such as static resources or exported archives. The channel is
+ * closed when the stream from which the branches were created is closed.
+ */
+public final class FileRegionBranchingStream extends DirectBranchingStream {
+
+    private final File file;
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    private final long end;
+    private long position;
+    private boolean closed;
+
+    /**
+     * Creates a new stream for the whole content of the specified file.
+     *
+     * @param file The file to read from.
+     * @throws IOException If the file cannot be opened.
+     */
+    public FileRegionBranchingStream(File file) throws IOException {
+        this(file, 0, file.length());
+    }
+
+    /**
+     * Creates a new stream for a region of the specified file.
+     *
+     * @param file The file to read from.
+     * @param position The offset in the file of the first byte of the region.
+     * @param count The length of the region.
+     * @throws IOException If the file cannot be opened.
+     */
+    public FileRegionBranchingStream(File file, long position, long count) throws IOException {
+        this(file, open(checkRegion(file, position, count)), true, position, position + count, null);
+    }
+
+    private FileRegionBranchingStream(File file, FileChannel channel, boolean ownsChannel, long position, long end,
+            BranchingInputStream parent) {
+        super(parent);
+        this.file = file;
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.position = position;
+        this.end = end;
+    }
+
+    private static FileChannel open(File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    private static File checkRegion(File file, long position, long count) {
+        Reject.ifTrue(position < 0, "position must not be negative");
+        Reject.ifTrue(count < 0, "count must not be negative");
+        return file;
+    }
+
+    /**
+     * Returns the file from which this stream reads.
+     *
+     * @return the file from which this stream reads.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the offset in the file of the next byte to be read from this stream.
+     *
+     * @return the offset in the file of the next byte to be read.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public long remaining() {
+        return Math.max(0, end - position);
+    }
+
+    @Override
+    public FileRegionBranchingStream branch() throws IOException {
+        ensureOpen();
+        return new FileRegionBranchingStream(file, channel, false, position, end, this);
+    }
+
+    @Override
+    public FileRegionBranchingStream copy() throws IOException {
+        ensureOpen();
+        return new FileRegionBranchingStream(file, open(file), true, position, end, parent());
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureOpen();
+        if (position >= end) {
+            return -1;
+        }
+        if (len == 0) {
+            return 0;
+        }
+        final int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+        if (n > 0) {
+            position += n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        ensureOpen();
+        if (n <= 0) {
+            return 0;
+        }
+        n = Math.min(n, remaining());
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target) throws IOException {
+        ensureOpen();
+        long total = 0;
+        while (position < end) {
+            final long n = channel.transferTo(position, end - position, target);
+            if (n <= 0) {
+                // Either the file was truncated or the target cannot accept more bytes for now.
+                break;
+            }
+            position += n;
+            total += n;
+        }
+        return total;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        if (ownsChannel) {
+            channel.close();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -14,6 +14,7 @@
  * Copyright 2009 Sun Microsystems Inc.
  * Portions Copyright 2010–2011 ApexIdentity Inc.
  * Portions Copyright 2011-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.http.io;
@@ -26,6 +27,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
@@ -72,7 +74,16 @@ public final class IO {
      */
     private static final Queue<char[]> CHAR_BUF_POOL;
 
+    /** Pool of segments and spill files of the temporary storages. */
+    private static final BufferPool DEFAULT_BUFFER_POOL = new BufferPool();
+
     static {
+        Runtime.getRuntime().addShutdownHook(new Thread("Delete idle spill files") {
+            @Override
+            public void run() {
+                DEFAULT_BUFFER_POOL.close();
+            }
+        });
         BYTE_BUF_POOL = new ConcurrentLinkedQueue<>();
         CHAR_BUF_POOL = new ConcurrentLinkedQueue<>();
         for (int i = 0; i < BUF_POOL_INITIAL_SIZE; ++i) {
@@ -92,6 +103,22 @@ public final class IO {
         return new ByteArrayBranchingStream(bytes);
     }
 
+    /**
+     * Creates a new branching input stream that wraps the remaining content of
+     * a byte buffer, i.e. the bytes between its position and its limit. The
+     * buffer may be a direct or a memory-mapped buffer: its content is written
+     * to channels without being copied to the heap. Neither the position nor
+     * the content of the buffer are modified by the stream, but the content
+     * must not be changed while the stream is in use.
+     *
+     * @param buffer
+     *            byte buffer to wrap with the branching input stream.
+     * @return The branching input stream.
+     */
+    public static DirectBranchingStream newBranchingInputStream(final ByteBuffer buffer) {
+        return new ByteBufferBranchingStream(buffer);
+    }
+
     /**
      * Creates a new branching input stream to wrap another input stream. All
      * divergence between branches is maintained in a temporary buffer.
@@ -121,6 +148,10 @@ public final class IO {
      * <strong>Note:</strong> The returned buffer is not synchronized. If
      * multiple threads access a buffer concurrently, threads that append to the
      * buffer should synchronize on the instance of this object.
+     * <p>
+     * The buffer should be closed once no longer used. Otherwise the
+     * {@link #defaultBufferPool() default buffer pool} closes the file once
+     * the buffer has been garbage collected.
      *
      * @param file
      *            the file to use as storage for the buffer.
@@ -163,6 +194,10 @@ public final class IO {
      * file for data storage. Initially, a {@link #newMemoryBuffer(int, int)
      * memory} buffer is used; when the memory buffer limit is exceeded it
      * promotes to the use of a {@link #newFileBuffer(File, int) file} buffer.
+     * <p>
+     * The buffer should be closed once no longer used. Otherwise the
+     * {@link #defaultBufferPool() default buffer pool} closes and deletes the
+     * temporary file once the buffer has been garbage collected.
      *
      * @param initialLength
      *            the initial length of memory buffer byte array.
@@ -211,7 +246,9 @@ public final class IO {
 
     /**
      * Builds a storage using the given directory (may be {@literal null}) and
-     * provided sizes.
+     * provided sizes. The buffers of the storage are backed by the
+     * {@link #defaultBufferPool() default buffer pool}. Equivalent to call
+     * {@code newTemporaryStorage(directory, initialLength, memoryLimit, fileLimit, defaultBufferPool())}.
      *
      * @param directory
      *            The directory where temporary files are created. If
@@ -231,14 +268,56 @@ public final class IO {
      */
     public static Factory<Buffer> newTemporaryStorage(final File directory,
             final int initialLength, final int memoryLimit, final int fileLimit) {
+        return newTemporaryStorage(directory, initialLength, memoryLimit, fileLimit, DEFAULT_BUFFER_POOL);
+    }
+
+    /**
+     * Builds a storage using the given directory (may be {@literal null}),
+     * provided sizes and buffer pool. The buffers of the storage append data to
+     * segments acquired from the pool, without copying the data already
+     * buffered, and move to a spill file of the pool once the memory limit is
+     * exceeded. Closing a buffer returns its segments or its spill file to the
+     * pool.
+     *
+     * @param directory
+     *            The directory where temporary files are created. If
+     *            {@code null}, then the system-dependent default temporary
+     *            directory will be used.
+     * @param initialLength
+     *            The length of the first segment of memory buffers.
+     * @param memoryLimit
+     *            The length limit of the memory buffer. Attempts to exceed this
+     *            limit will result in promoting the buffer from memory to a
+     *            spill file.
+     * @param fileLimit
+     *            The length limit of the spill file. Attempts to exceed this
+     *            limit will result in an {@link OverflowException} being
+     *            thrown.
+     * @param pool
+     *            The pool from which segments and spill files are acquired.
+     * @return The temporary storage.
+     */
+    public static Factory<Buffer> newTemporaryStorage(final File directory, final int initialLength,
+            final int memoryLimit, final int fileLimit, final BufferPool pool) {
         return new Factory<Buffer>() {
             @Override
             public Buffer newInstance() {
-                return newTemporaryBuffer(initialLength, memoryLimit, fileLimit, directory);
+                return new PooledBuffer(pool, initialLength, memoryLimit, fileLimit, directory);
             }
         };
     }
 
+    /**
+     * Returns the buffer pool shared by the temporary storages which are not
+     * given a pool of their own. Its idle spill files are deleted when the JVM
+     * shuts down.
+     *
+     * @return The default buffer pool.
+     */
+    public static BufferPool defaultBufferPool() {
+        return DEFAULT_BUFFER_POOL;
+    }
+
     /**
      * Returns an input stream that holds no data.
      *
@@ -13,6 +13,7 @@
  *
  * Copyright 2010–2011 ApexIdentity Inc.
  * Portions Copyright 2011-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.http.io;
@@ -109,12 +110,6 @@ final class MemoryBuffer implements Buffer {
         data = null;
     }
 
-    @Override
-    public void finalize() throws Throwable {
-        close();
-        super.finalize();
-    }
-
     /**
      * Throws an {@link IOException} if the buffer is closed.
      */
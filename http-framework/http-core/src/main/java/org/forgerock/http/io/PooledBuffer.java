@@ -0,0 +1,296 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.http.io;
+
+import static org.forgerock.util.Utils.closeSilently;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A buffer that first uses segments, then a spill file of a {@link BufferPool} for data storage. Data is appended
+ * to a chain of segments, whose sizes double up to the maximum segment size of the pool, so that existing data is
+ * never copied as the buffer grows. When the memory limit is exceeded, the data is moved to a spill file and the
+ * segments are returned to the pool. Closing the buffer returns its segments, or its truncated spill file, to the
+ * pool. The pool also releases the segments and the spill file of a buffer which is garbage collected without
+ * having been closed, the next time it creates a buffer.
+ * <p>
+ * <strong>Note:</strong> This implementation is not synchronized. If multiple
+ * threads access a buffer concurrently, threads that append to the buffer
+ * should synchronize on the instance of this object.
+ */
+final class PooledBuffer implements Buffer {
+
+    private final BufferPool pool;
+    private final int initialLength;
+    private final int memoryLimit;
+    private final int fileLimit;
+
+    /** The segments and the spill file, held apart so that the pool can release them once this buffer is lost. */
+    private final Resources resources;
+    private final Reference<?> reference;
+
+    /** The offset in the buffer of the first byte of each segment. */
+    private int[] starts = new int[4];
+
+    /** The total capacity of the segments. */
+    private int capacity;
+
+    private int length;
+    private boolean closed;
+
+    PooledBuffer(BufferPool pool, int initialLength, int memoryLimit, int fileLimit, File directory) {
+        this.pool = pool;
+        this.initialLength = initialLength;
+        this.memoryLimit = memoryLimit;
+        this.fileLimit = fileLimit;
+        this.resources = new Resources(pool, directory);
+        this.reference = pool.track(this, resources);
+    }
+
+    @Override
+    public byte read(final int pos) throws IOException {
+        notClosed();
+        if (pos < 0 || pos >= length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (resources.channel != null) {
+            final ByteBuffer b = ByteBuffer.allocate(1);
+            readFully(b, pos);
+            return b.get(0);
+        }
+        final int i = segmentIndex(pos);
+        return resources.segments[i].get(pos - starts[i]);
+    }
+
+    @Override
+    public int read(final int pos, final byte[] b, final int off, final int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        notClosed();
+        if (pos >= length) {
+            return 0;
+        }
+        final int n = Math.min(len, length - pos);
+        if (resources.channel != null) {
+            readFully(ByteBuffer.wrap(b, off, n), pos);
+            return n;
+        }
+        int i = segmentIndex(pos);
+        int offset = pos - starts[i];
+        int copied = 0;
+        while (copied < n) {
+            final ByteBuffer segment = resources.segments[i];
+            final int count = Math.min(n - copied, segment.capacity() - offset);
+            segment.position(offset);
+            segment.get(b, off + copied, count);
+            copied += count;
+            offset = 0;
+            i++;
+        }
+        return n;
+    }
+
+    @Override
+    public void append(final byte b) throws IOException {
+        notClosed();
+        if (resources.channel == null && length < capacity && length < memoryLimit) {
+            final int i = resources.segmentCount - 1;
+            resources.segments[i].put(length - starts[i], b);
+            length++;
+            return;
+        }
+        append(new byte[] { b }, 0, 1);
+    }
+
+    @Override
+    public void append(final byte[] b, int off, final int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        notClosed();
+        final long end = (long) length + len;
+        if (resources.channel == null && end > memoryLimit) {
+            if (end > fileLimit) {
+                throw new OverflowException();
+            }
+            promote();
+        }
+        final FileChannel channel = resources.channel;
+        if (channel != null) {
+            if (end > fileLimit) {
+                throw new OverflowException();
+            }
+            final ByteBuffer src = ByteBuffer.wrap(b, off, len);
+            while (src.hasRemaining()) {
+                channel.write(src, length + src.position() - off);
+            }
+            length += len;
+            return;
+        }
+        int remaining = len;
+        while (remaining > 0) {
+            if (length == capacity) {
+                addSegment();
+            }
+            final int last = resources.segmentCount - 1;
+            final ByteBuffer segment = resources.segments[last];
+            final int offset = length - starts[last];
+            final int count = Math.min(remaining, segment.capacity() - offset);
+            segment.position(offset);
+            segment.put(b, off, count);
+            off += count;
+            remaining -= count;
+            length += count;
+        }
+    }
+
+    @Override
+    public int length() throws IOException {
+        notClosed();
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        capacity = 0;
+        pool.untrack(reference);
+        resources.close();
+    }
+
+    private void addSegment() {
+        // Doubles the capacity, without allocating much beyond the memory limit
+        final int segmentCount = resources.segmentCount;
+        final int size = segmentCount == 0
+                ? initialLength
+                : Math.min(capacity, Math.max(memoryLimit - capacity, 1));
+        final ByteBuffer segment = pool.acquire(Math.max(size, 1));
+        if (segmentCount == resources.segments.length) {
+            resources.segments = Arrays.copyOf(resources.segments, segmentCount << 1);
+            starts = Arrays.copyOf(starts, segmentCount << 1);
+        }
+        resources.segments[segmentCount] = segment;
+        starts[segmentCount] = capacity;
+        resources.segmentCount++;
+        capacity += segment.capacity();
+    }
+
+    private int segmentIndex(final int pos) {
+        final int i = Arrays.binarySearch(starts, 0, resources.segmentCount, pos);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    private void promote() throws IOException {
+        final File file = pool.acquireSpillFile(resources.directory);
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            for (int i = 0; i < resources.segmentCount; i++) {
+                final ByteBuffer src = resources.segments[i].duplicate();
+                src.limit(Math.min(src.capacity(), length - starts[i]));
+                src.position(0);
+                while (src.hasRemaining()) {
+                    channel.write(src, starts[i] + src.position());
+                }
+            }
+        } catch (IOException e) {
+            closeSilently(channel);
+            // The file is deleted since it may not be empty
+            pool.releaseSpillFile(resources.directory, file);
+            throw e;
+        }
+        resources.file = file;
+        resources.channel = channel;
+        resources.releaseSegments();
+        capacity = 0;
+    }
+
+    private void readFully(final ByteBuffer dst, final int pos) throws IOException {
+        final int start = dst.position();
+        while (dst.hasRemaining()) {
+            if (resources.channel.read(dst, pos + dst.position() - start) < 0) {
+                throw new IOException("spill file was truncated");
+            }
+        }
+    }
+
+    /**
+     * Throws an {@link IOException} if the buffer is closed.
+     */
+    private void notClosed() throws IOException {
+        if (closed) {
+            throw new IOException("buffer is closed");
+        }
+    }
+
+    /**
+     * The segments and the spill file of a buffer. They must not refer to the buffer, so that the pool can release
+     * them once the buffer has been garbage collected.
+     */
+    private static final class Resources implements Closeable {
+        private final BufferPool pool;
+        private final File directory;
+
+        /** The segments storing the data, while in memory. */
+        private ByteBuffer[] segments = new ByteBuffer[4];
+        private int segmentCount;
+
+        /** The spill file and its channel, once promoted. */
+        private File file;
+        private FileChannel channel;
+
+        private Resources(final BufferPool pool, final File directory) {
+            this.pool = pool;
+            this.directory = directory;
+        }
+
+        @Override
+        public void close() throws IOException {
+            releaseSegments();
+            if (channel != null) {
+                try {
+                    channel.truncate(0);
+                } finally {
+                    closeSilently(channel);
+                    channel = null;
+                    // Deletes the file if it could not be truncated
+                    pool.releaseSpillFile(directory, file);
+                    file = null;
+                }
+            }
+        }
+
+        private void releaseSegments() {
+            for (int i = 0; i < segmentCount; i++) {
+                pool.release(segments[i]);
+                segments[i] = null;
+            }
+            segmentCount = 0;
+        }
+    }
+}
@@ -13,17 +13,21 @@
  *
  * Copyright 2010–2011 ApexIdentity Inc.
  * Portions Copyright 2011-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.http.io;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.lang.ref.Reference;
 
 /**
  * A buffer that first uses memory, then a temporary file for data storage.
  * Initially, a {@link MemoryBuffer} is used; when the memory buffer limit is
- * exceeded it promotes to the use of a {@link FileBuffer}.
+ * exceeded it promotes to the use of a {@link FileBuffer}. The temporary file is closed and deleted by the pool
+ * tracking the buffer if the buffer is garbage collected without having been closed.
  */
 final class TemporaryBuffer implements Buffer {
 
@@ -39,10 +43,21 @@ final class TemporaryBuffer implements Buffer {
     /** The buffer currently in use. */
     private Buffer buffer;
 
+    /** The pool tracking the temporary file. */
+    private final BufferPool pool;
+
+    /** The reference tracking the temporary file, once the buffer has been promoted. */
+    private Reference<?> reference;
+
     TemporaryBuffer(int initialLength, int memoryLimit, int fileLimit, File directory) {
+        this(initialLength, memoryLimit, fileLimit, directory, IO.defaultBufferPool());
+    }
+
+    TemporaryBuffer(int initialLength, int memoryLimit, int fileLimit, File directory, BufferPool pool) {
         buffer = IO.newMemoryBuffer(initialLength, memoryLimit);
         this.fileLimit = fileLimit;
         this.directory = directory;
+        this.pool = pool;
     }
 
     @Override
@@ -92,6 +107,9 @@ final class TemporaryBuffer implements Buffer {
     @Override
     public void close() throws IOException {
         if (buffer != null) {
+            if (reference != null) {
+                pool.untrack(reference);
+            }
             try {
                 buffer.close();
             } finally {
@@ -117,7 +135,8 @@ final class TemporaryBuffer implements Buffer {
         if (buffer instanceof MemoryBuffer) {
             MemoryBuffer membuf = (MemoryBuffer) buffer;
             file = File.createTempFile("buf", null, directory);
-            buffer = IO.newFileBuffer(file, fileLimit);
+            buffer = new FileBuffer(file, fileLimit, pool);
+            reference = pool.track(this, new TemporaryFile(buffer, file));
             // accesses byte array directly
             buffer.append(membuf.data, 0, membuf.length());
             membuf.close();
@@ -126,4 +145,24 @@ final class TemporaryBuffer implements Buffer {
             throw new OverflowException();
         }
     }
+
+    /** The file buffer and the temporary file of a promoted buffer, to release if the buffer is lost. */
+    private static final class TemporaryFile implements Closeable {
+        private final Buffer buffer;
+        private final File file;
+
+        private TemporaryFile(Buffer buffer, File file) {
+            this.buffer = buffer;
+            this.file = file;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                buffer.close();
+            } finally {
+                file.delete();
+            }
+        }
+    }
 }
@@ -12,6 +12,7 @@
  * information: "Portions Copyright [year] [name of copyright owner]".
  *
  * Copyright 2014-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.http.protocol;
@@ -38,6 +39,7 @@ import org.forgerock.http.header.ContentEncodingHeader;
 import org.forgerock.http.header.ContentLengthHeader;
 import org.forgerock.http.header.ContentTypeHeader;
 import org.forgerock.http.io.BranchingInputStream;
+import org.forgerock.http.io.DirectBranchingStream;
 import org.forgerock.http.io.IO;
 
 /**
@@ -184,6 +186,10 @@ public final class Entity implements Closeable {
      * After the method returns it will no longer be possible to read data from
      * this entity. This method does not push or pop branches nor does it
      * perform any decoding of the raw data.
+     * <p>
+     * Content backed by a {@link DirectBranchingStream}, such as a file region
+     * or a byte buffer, is written in as few calls as possible rather than
+     * through an intermediate 8 KiB buffer.
      *
      * @param out
      *            The destination output stream.
@@ -191,7 +197,11 @@ public final class Entity implements Closeable {
      *             If an IO error occurred while copying the raw content.
      */
     public void copyRawContentTo(final OutputStream out) throws IOException {
-        IO.stream(head, out);
+        if (head instanceof DirectBranchingStream) {
+            ((DirectBranchingStream) head).writeTo(out);
+        } else {
+            IO.stream(head, out);
+        }
         out.flush();
     }
 
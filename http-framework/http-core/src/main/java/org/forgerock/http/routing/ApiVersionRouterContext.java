@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.http.routing;
@@ -39,7 +40,11 @@ public class ApiVersionRouterContext extends AbstractContext {
 
     private static final String DEFAULT_VERSION_BEHAVIOUR = "defaultVersionBehaviour";
     private static final String WARNING_ENABLED = "warningEnabled";
+    private static final String PROTOCOL_VERSION = "protocolVersion";
+    private static final String RESOURCE_VERSION = "resourceVersion";
 
+    private final DefaultVersionBehaviour defaultVersionBehaviour;
+    private final boolean warningEnabled;
     private Version protocolVersion;
     private Version resourceVersion;
 
@@ -54,11 +59,9 @@ public class ApiVersionRouterContext extends AbstractContext {
      */
     public ApiVersionRouterContext(Context parent, DefaultVersionBehaviour defaultVersionBehaviour,
             boolean warningEnabled) {
-        this(parent);
-        if (defaultVersionBehaviour != null) {
-            data.put(DEFAULT_VERSION_BEHAVIOUR, defaultVersionBehaviour.toString());
-        }
-        data.put(WARNING_ENABLED, warningEnabled);
+        super(parent, "apiVersionRouter");
+        this.defaultVersionBehaviour = defaultVersionBehaviour;
+        this.warningEnabled = warningEnabled;
     }
 
     /**
@@ -71,11 +74,18 @@ public class ApiVersionRouterContext extends AbstractContext {
      */
     public ApiVersionRouterContext(JsonValue savedContext, ClassLoader classLoader) {
         super(savedContext, classLoader);
-        if (data.isDefined("protocolVersion")) {
-            this.protocolVersion = version(data.get("protocolVersion").asString());
+        if (data.isDefined(DEFAULT_VERSION_BEHAVIOUR) && data.get(DEFAULT_VERSION_BEHAVIOUR).isNotNull()) {
+            this.defaultVersionBehaviour =
+                    data.get(DEFAULT_VERSION_BEHAVIOUR).as(enumConstant(DefaultVersionBehaviour.class));
+        } else {
+            this.defaultVersionBehaviour = null;
+        }
+        this.warningEnabled = data.get(WARNING_ENABLED).defaultTo(true).asBoolean();
+        if (data.isDefined(PROTOCOL_VERSION)) {
+            this.protocolVersion = version(data.get(PROTOCOL_VERSION).asString());
         }
-        if (data.isDefined("resourceVersion")) {
-            this.protocolVersion = version(data.get("resourceVersion").asString());
+        if (data.isDefined(RESOURCE_VERSION)) {
+            this.resourceVersion = version(data.get(RESOURCE_VERSION).asString());
         }
     }
 
@@ -87,6 +97,8 @@ public class ApiVersionRouterContext extends AbstractContext {
      */
     ApiVersionRouterContext(Context parent) {
         super(parent, "apiVersionRouter");
+        this.defaultVersionBehaviour = null;
+        this.warningEnabled = true;
     }
 
     /**
@@ -96,11 +108,7 @@ public class ApiVersionRouterContext extends AbstractContext {
      * @return The default version behaviour.
      */
     public DefaultVersionBehaviour getDefaultVersionBehaviour() {
-        if (data.isDefined(DEFAULT_VERSION_BEHAVIOUR) && data.get(DEFAULT_VERSION_BEHAVIOUR).isNotNull()) {
-            return data.get(DEFAULT_VERSION_BEHAVIOUR).as(enumConstant(DefaultVersionBehaviour.class));
-        } else {
-            return null;
-        }
+        return defaultVersionBehaviour;
     }
 
     /**
@@ -110,7 +118,7 @@ public class ApiVersionRouterContext extends AbstractContext {
      * @return {@code true} if warnings should be issued to the client.
      */
     public boolean isWarningEnabled() {
-        return data.get(WARNING_ENABLED).defaultTo(true).asBoolean();
+        return warningEnabled;
     }
 
     /**
@@ -120,7 +128,6 @@ public class ApiVersionRouterContext extends AbstractContext {
      */
     public void setProtocolVersion(Version protocolVersion) {
         this.protocolVersion = protocolVersion;
-        data.put("protocolVersion", protocolVersion.toString());
     }
 
     /**
@@ -139,7 +146,6 @@ public class ApiVersionRouterContext extends AbstractContext {
      */
     void setResourceVersion(Version resourceVersion) {
         this.resourceVersion = resourceVersion;
-        data.put("resourceVersion", resourceVersion.toString());
     }
 
     /**
@@ -150,4 +156,20 @@ public class ApiVersionRouterContext extends AbstractContext {
     public Version getResourceVersion() {
         return resourceVersion;
     }
+
+    @Override
+    public JsonValue toJsonValue() {
+        final JsonValue value = super.toJsonValue();
+        if (defaultVersionBehaviour != null) {
+            value.put(DEFAULT_VERSION_BEHAVIOUR, defaultVersionBehaviour.toString());
+        }
+        value.put(WARNING_ENABLED, warningEnabled);
+        if (protocolVersion != null) {
+            value.put(PROTOCOL_VERSION, protocolVersion.toString());
+        }
+        if (resourceVersion != null) {
+            value.put(RESOURCE_VERSION, resourceVersion.toString());
+        }
+        return value;
+    }
 }
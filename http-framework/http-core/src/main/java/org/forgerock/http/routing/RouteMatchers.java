@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.http.routing;
@@ -29,6 +30,7 @@ import org.forgerock.services.context.Context;
 import org.forgerock.services.routing.IncomparableRouteMatchException;
 import org.forgerock.services.routing.RouteMatch;
 import org.forgerock.services.routing.RouteMatcher;
+import org.forgerock.util.Pair;
 
 /**
  * A utility class that contains methods for creating route matchers.
@@ -169,6 +171,11 @@ public final class RouteMatchers {
             return delegate.transformApi(descriptor, producer);
         }
 
+        @Override
+        public Pair<RoutingMode, String> uriTemplate() {
+            return delegate.uriTemplate();
+        }
+
         @Override
         public int hashCode() {
             return delegate.hashCode();
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.http.routing;
@@ -32,6 +33,7 @@ import org.forgerock.services.context.Context;
 import org.forgerock.services.routing.IncomparableRouteMatchException;
 import org.forgerock.services.routing.RouteMatch;
 import org.forgerock.services.routing.RouteMatcher;
+import org.forgerock.util.Pair;
 
 /**
  * A {@link RouteMatcher} which routes requests using URI template matching
@@ -166,6 +168,11 @@ class UriRouteMatcher extends RouteMatcher<List<String>> {
         return descriptor != null ? producer.withPath(descriptor, uriTemplate) : null;
     }
 
+    @Override
+    public Pair<RoutingMode, String> uriTemplate() {
+        return Pair.of(mode, uriTemplate);
+    }
+
     @Override
     public int hashCode() {
         int result = mode.hashCode();
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2017 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.http.routing;
@@ -68,6 +69,8 @@ public final class UriRouterContext extends AbstractContext {
     private static final String ATTR_URI_TEMPLATE_VARIABLES = "uriTemplateVariables";
     private static final String ATTR_ORIGINAL_URI = "originalUri";
 
+    private final String matchedUri;
+    private final String remainingUri;
     private final Map<String, String> uriTemplateVariables;
 
     /**
@@ -76,7 +79,7 @@ public final class UriRouterContext extends AbstractContext {
      * happen that the URI received by the web server is not the real one that
      * we want to process.
      */
-    private URI originalUri;
+    private final URI originalUri;
 
     /**
      * Creates a new routing context having the provided parent, URI template
@@ -126,15 +129,10 @@ public final class UriRouterContext extends AbstractContext {
     public UriRouterContext(final Context parent, final String matchedUri, final String remainingUri,
             final Map<String, String> uriTemplateVariables, URI originalUri) {
         super(checkNotNull(parent, "Cannot instantiate UriRouterContext with null parent Context"), "router");
-        data.put(ATTR_MATCHED_URI, matchedUri);
-        data.put(ATTR_REMAINIG_URI, remainingUri);
+        this.matchedUri = matchedUri;
+        this.remainingUri = remainingUri;
         this.uriTemplateVariables = Collections.unmodifiableMap(uriTemplateVariables);
-        data.put(ATTR_URI_TEMPLATE_VARIABLES, this.uriTemplateVariables);
-
-        if (originalUri != null) {
-            this.originalUri = originalUri;
-            data.put(ATTR_ORIGINAL_URI, originalUri.toASCIIString());
-        }
+        this.originalUri = originalUri;
     }
 
     /**
@@ -148,17 +146,31 @@ public final class UriRouterContext extends AbstractContext {
      */
     public UriRouterContext(final JsonValue savedContext, final ClassLoader classLoader) {
         super(savedContext, classLoader);
+        this.matchedUri = data.get(ATTR_MATCHED_URI).asString();
+        this.remainingUri = data.get(ATTR_REMAINIG_URI).asString();
         this.uriTemplateVariables =
                 Collections.unmodifiableMap(data.get(ATTR_URI_TEMPLATE_VARIABLES).required().asMap(String.class));
 
         final String savedUri = data.get(ATTR_ORIGINAL_URI).asString();
         try {
-            this.originalUri = new URI(savedUri);
+            this.originalUri = savedUri != null ? new URI(savedUri) : null;
         } catch (URISyntaxException ex) {
             throw new IllegalArgumentException(format("The URI %s is not valid", savedUri));
         }
     }
 
+    @Override
+    public JsonValue toJsonValue() {
+        final JsonValue value = super.toJsonValue();
+        value.put(ATTR_MATCHED_URI, matchedUri);
+        value.put(ATTR_REMAINIG_URI, remainingUri);
+        value.put(ATTR_URI_TEMPLATE_VARIABLES, new LinkedHashMap<>(uriTemplateVariables));
+        if (originalUri != null) {
+            value.put(ATTR_ORIGINAL_URI, originalUri.toASCIIString());
+        }
+        return value;
+    }
+
     /**
      * Returns the portion of the request URI which has been routed so far. This
      * is obtained dynamically by concatenating the matched URI with the base
@@ -195,7 +207,7 @@ public final class UriRouterContext extends AbstractContext {
      *         URI template.
      */
     public String getMatchedUri() {
-        return data.get(ATTR_MATCHED_URI).asString();
+        return matchedUri;
     }
 
     /**
@@ -207,7 +219,7 @@ public final class UriRouterContext extends AbstractContext {
      * remaining to be matched.
      */
     public String getRemainingUri() {
-        return data.get(ATTR_REMAINIG_URI).asString();
+        return remainingUri;
     }
 
     /**
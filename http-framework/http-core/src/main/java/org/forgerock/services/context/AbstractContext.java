@@ -12,6 +12,7 @@
  * information: "Portions Copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.services.context;
@@ -20,8 +21,12 @@ import static org.forgerock.json.JsonValue.json;
 import static org.forgerock.json.JsonValue.object;
 
 import java.lang.reflect.Constructor;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
+import org.forgerock.json.JsonPointer;
 import org.forgerock.json.JsonValue;
+import org.forgerock.json.JsonValueException;
 import org.forgerock.util.Reject;
 
 /**
@@ -46,6 +51,13 @@ import org.forgerock.util.Reject;
  *   }
  * }
  * </pre>
+ * <p>
+ * The class, id and name of a context are held in fields, and derived contexts
+ * may hold their own attributes in fields too, adding them to the JSON
+ * representation returned by {@link #toJsonValue()}, which is only built on
+ * demand. The first call to {@link #asContext(Class)} or
+ * {@link #containsContext(Class)} indexes the types of the contexts of the
+ * chain, so that subsequent lookups do not walk the chain.
  */
 public abstract class AbstractContext implements Context {
 
@@ -55,16 +67,42 @@ public abstract class AbstractContext implements Context {
     private static final String ATTR_NAME = "name";
     private static final String ATTR_PARENT = "parent";
 
+    /** The sub-types of {@code Context} implemented by each context class, including the class itself. */
+    private static final ClassValue<Class<?>[]> CONTEXT_TYPES = new ClassValue<Class<?>[]>() {
+        @Override
+        protected Class<?>[] computeValue(final Class<?> type) {
+            final Set<Class<?>> types = new LinkedHashSet<>();
+            addContextTypes(type, types);
+            return types.toArray(new Class<?>[types.size()]);
+        }
+    };
+
     /**
      * The parent Context.
      */
     private final Context parent;
 
     /**
-     * The Context data.
+     * The id of this context, or {@code null} if it shares the id of its parent.
+     */
+    private final String id;
+
+    /**
+     * The name of this context.
+     */
+    private final String name;
+
+    /**
+     * The Context data: the attributes of derived contexts which are not held
+     * in fields.
      */
     protected final JsonValue data;
 
+    /**
+     * The index of the types of the contexts of the chain, built on demand.
+     */
+    private ContextIndex index;
+
     /**
      * Constructs a new {@code AbstractContext} with a {@code null} {@code id}.
      *
@@ -84,11 +122,8 @@ public abstract class AbstractContext implements Context {
      */
     protected AbstractContext(String id, String name, Context parent) {
         data = json(object());
-        data.put(ATTR_CLASS, getClass().getName());
-        if (id != null) {
-            data.put(ATTR_ID, id);
-        }
-        data.put(ATTR_NAME, name);
+        this.id = id;
+        this.name = name;
         this.parent = parent;
     }
 
@@ -127,6 +162,11 @@ public abstract class AbstractContext implements Context {
         final JsonValue savedParentContext = savedContext.get(ATTR_PARENT);
         savedContext.remove(ATTR_PARENT);
         data = savedContext.copy();
+        data.remove(ATTR_CLASS);
+        this.id = data.get(ATTR_ID).asString();
+        data.remove(ATTR_ID);
+        this.name = data.get(ATTR_NAME).asString();
+        data.remove(ATTR_NAME);
         this.parent = savedParentContext.isNull() ? null : load0(savedParentContext, classLoader);
     }
 
@@ -147,7 +187,7 @@ public abstract class AbstractContext implements Context {
 
     @Override
     public final String getContextName() {
-        return data.get(ATTR_NAME).asString();
+        return name;
     }
 
     @Override
@@ -183,10 +223,12 @@ public abstract class AbstractContext implements Context {
 
     @Override
     public final String getId() {
-        if (data.get(ATTR_ID).isNull() && !isRootContext()) {
+        if (id != null) {
+            return id;
+        } else if (!isRootContext()) {
             return getParent().getId();
         } else {
-            return data.get(ATTR_ID).required().asString();
+            throw new JsonValueException(new JsonValue(null, new JsonPointer(ATTR_ID)), "Expecting a value");
         }
     }
 
@@ -202,7 +244,15 @@ public abstract class AbstractContext implements Context {
 
     @Override
     public JsonValue toJsonValue() {
-        final JsonValue value = data.copy();
+        final JsonValue value = json(object());
+        value.put(ATTR_CLASS, getClass().getName());
+        if (id != null) {
+            value.put(ATTR_ID, id);
+        }
+        value.put(ATTR_NAME, name);
+        for (final String key : data.keys()) {
+            value.put(key, data.get(key).copy().getObject());
+        }
         value.put(ATTR_PARENT, parent != null ? parent.toJsonValue().getObject() : null);
         return value;
     }
@@ -213,18 +263,13 @@ public abstract class AbstractContext implements Context {
     }
 
     private <T extends Context> T asContext0(final Class<T> clazz) {
-        try {
-            for (Context context = this; context != null; context = context.getParent()) {
-                final Class<?> contextClass = context.getClass();
-                if (clazz.isAssignableFrom(contextClass)) {
-                    return contextClass.asSubclass(clazz).cast(context);
-                }
-            }
-            return null;
-        } catch (final Exception e) {
-            throw new IllegalArgumentException(
-                    "Unable to instantiate Context implementation class '" + clazz.getName() + "'", e);
+        ContextIndex index = this.index;
+        if (index == null) {
+            // Racy but benign: the index is immutable and safely published.
+            index = ContextIndex.of(this);
+            this.index = index;
         }
+        return clazz.cast(index.get(clazz));
     }
 
     private Context getContext0(final String contextName) {
@@ -236,4 +281,103 @@ public abstract class AbstractContext implements Context {
         return null;
     }
 
+    private static void addContextTypes(final Class<?> type, final Set<Class<?>> types) {
+        if (type != null && Context.class.isAssignableFrom(type) && types.add(type)) {
+            addContextTypes(type.getSuperclass(), types);
+            for (final Class<?> superInterface : type.getInterfaces()) {
+                addContextTypes(superInterface, types);
+            }
+        }
+    }
+
+    /**
+     * Maps the types of the contexts of a chain, and their super-types, to the
+     * context nearest to the head of the chain having each type. The index is
+     * an open-addressing hash table holding types and contexts in alternate
+     * slots, keyed by identity.
+     */
+    private static final class ContextIndex {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final Object[] table;
+
+        private ContextIndex(final Object[] table) {
+            this.table = table;
+        }
+
+        /**
+         * Indexes the chain of the provided context, reusing the index of the
+         * nearest ancestor which has one.
+         */
+        static ContextIndex of(final AbstractContext head) {
+            Object[] table = new Object[2 * INITIAL_CAPACITY];
+            int size = 0;
+            for (Context context = head; context != null; context = context.getParent()) {
+                final ContextIndex ancestorIndex = context != head && context instanceof AbstractContext
+                        ? ((AbstractContext) context).index
+                        : null;
+                if (ancestorIndex != null) {
+                    final Object[] ancestorTable = ancestorIndex.table;
+                    for (int i = 0; i < ancestorTable.length; i += 2) {
+                        if (ancestorTable[i] != null) {
+                            table = grow(table, size + 1);
+                            size += put(table, (Class<?>) ancestorTable[i], (Context) ancestorTable[i + 1]);
+                        }
+                    }
+                    break;
+                }
+                for (final Class<?> type : CONTEXT_TYPES.get(context.getClass())) {
+                    table = grow(table, size + 1);
+                    size += put(table, type, context);
+                }
+            }
+            return new ContextIndex(table);
+        }
+
+        Context get(final Class<?> type) {
+            final int mask = table.length - 1;
+            for (int i = slot(type, mask);; i = (i + 2) & mask) {
+                final Object key = table[i];
+                if (key == type) {
+                    return (Context) table[i + 1];
+                } else if (key == null) {
+                    return null;
+                }
+            }
+        }
+
+        /** Adds the type unless it has a nearer context already, returning the number of types added. */
+        private static int put(final Object[] table, final Class<?> type, final Context context) {
+            final int mask = table.length - 1;
+            for (int i = slot(type, mask);; i = (i + 2) & mask) {
+                final Object key = table[i];
+                if (key == type) {
+                    return 0;
+                } else if (key == null) {
+                    table[i] = type;
+                    table[i + 1] = context;
+                    return 1;
+                }
+            }
+        }
+
+        /** Rehashes the table if it would be more than half full with the provided number of types. */
+        private static Object[] grow(final Object[] table, final int size) {
+            if (4 * size <= table.length) {
+                return table;
+            }
+            final Object[] newTable = new Object[2 * table.length];
+            for (int i = 0; i < table.length; i += 2) {
+                if (table[i] != null) {
+                    put(newTable, (Class<?>) table[i], (Context) table[i + 1]);
+                }
+            }
+            return newTable;
+        }
+
+        private static int slot(final Class<?> type, final int mask) {
+            final int h = System.identityHashCode(type);
+            return ((h ^ (h >>> 16)) << 1) & mask;
+        }
+    }
 }
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2014-2015 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.services.context;
@@ -223,7 +224,15 @@ public final class ClientContext extends AbstractContext {
         return new ClientContext(parent, "", "", -1, Collections.<Certificate>emptyList(), "", false, true, "", -1);
     }
 
+    private final String remoteUser;
+    private final String remoteAddress;
+    private final int remotePort;
     private final Collection<? extends Certificate> certificates;
+    private final String userAgent;
+    private final boolean isExternal;
+    private final boolean isSecure;
+    private final String localAddress;
+    private final int localPort;
 
     /**
      * Restore from JSON representation.
@@ -236,6 +245,14 @@ public final class ClientContext extends AbstractContext {
      */
     public ClientContext(final JsonValue savedContext, final ClassLoader classLoader) {
         super(savedContext, classLoader);
+        this.remoteUser = data.get(ATTR_REMOTE_USER).asString();
+        this.remoteAddress = data.get(ATTR_REMOTE_ADDRESS).asString();
+        this.remotePort = data.get(ATTR_REMOTE_PORT).asInteger();
+        this.userAgent = data.get(ATTR_USER_AGENT).asString();
+        this.isExternal = data.get(ATTR_IS_EXTERNAL).asBoolean();
+        this.isSecure = data.get(ATTR_IS_SECURE).asBoolean();
+        this.localAddress = data.get(ATTR_LOCAL_ADDRESS).asString();
+        this.localPort = data.get(ATTR_LOCAL_PORT).asInteger();
         try {
             this.certificates = Collections.unmodifiableCollection(
                 CertificateFactory.getInstance(X509_TYPE).generateCertificates(
@@ -257,22 +274,35 @@ public final class ClientContext extends AbstractContext {
                           String localAddress,
                           int localPort) {
         super(parent, "client");
+        this.remoteUser = remoteUser;
+        this.remoteAddress = remoteAddress;
+        this.remotePort = remotePort;
         // Maintain the real list of certificates for Java API
         this.certificates = certificates;
+        this.userAgent = userAgent;
+        this.isExternal = isExternal;
+        this.isSecure = isSecure;
+        this.localAddress = localAddress;
+        this.localPort = localPort;
+    }
 
-        data.put(ATTR_REMOTE_USER, remoteUser);
-        data.put(ATTR_REMOTE_ADDRESS, remoteAddress);
-        data.put(ATTR_REMOTE_PORT, remotePort);
-        data.put(ATTR_CERTIFICATES, serializeCertificates(certificates));
-        data.put(ATTR_USER_AGENT, userAgent);
-        data.put(ATTR_IS_EXTERNAL, isExternal);
-        data.put(ATTR_IS_SECURE, isSecure);
-        data.put(ATTR_LOCAL_ADDRESS, localAddress);
-        data.put(ATTR_LOCAL_PORT, localPort);
+    @Override
+    public JsonValue toJsonValue() {
+        final JsonValue value = super.toJsonValue();
+        value.put(ATTR_REMOTE_USER, remoteUser);
+        value.put(ATTR_REMOTE_ADDRESS, remoteAddress);
+        value.put(ATTR_REMOTE_PORT, remotePort);
+        value.put(ATTR_CERTIFICATES, serializeCertificates(certificates));
+        value.put(ATTR_USER_AGENT, userAgent);
+        value.put(ATTR_IS_EXTERNAL, isExternal);
+        value.put(ATTR_IS_SECURE, isSecure);
+        value.put(ATTR_LOCAL_ADDRESS, localAddress);
+        value.put(ATTR_LOCAL_PORT, localPort);
+        return value;
     }
 
     /** Returns Base64-encoded certificates for JSON serialization. */
-    private String serializeCertificates(final List<? extends Certificate> certificates) {
+    private String serializeCertificates(final Collection<? extends Certificate> certificates) {
         final StringBuilder builder = new StringBuilder();
         for (final Certificate certificate : certificates) {
             try {
@@ -292,7 +322,7 @@ public final class ClientContext extends AbstractContext {
      * @return the login of the user making this request or an empty string if not known.
      */
     public String getRemoteUser() {
-        return data.get(ATTR_REMOTE_USER).asString();
+        return remoteUser;
     }
 
     /**
@@ -303,7 +333,7 @@ public final class ClientContext extends AbstractContext {
      * or an empty string if the client is internal.
      */
     public String getRemoteAddress() {
-        return data.get(ATTR_REMOTE_ADDRESS).asString();
+        return remoteAddress;
     }
 
     /**
@@ -314,7 +344,7 @@ public final class ClientContext extends AbstractContext {
      * or {@code -1} if the client is internal.
      */
     public int getRemotePort() {
-        return data.get(ATTR_REMOTE_PORT).asInteger();
+        return remotePort;
     }
 
 
@@ -334,7 +364,7 @@ public final class ClientContext extends AbstractContext {
      * @return the value of the {@literal User-Agent} HTTP Header (if any, returns an empty string otherwise).
      */
     public String getUserAgent() {
-        return data.get(ATTR_USER_AGENT).asString();
+        return userAgent;
     }
 
     /**
@@ -343,7 +373,7 @@ public final class ClientContext extends AbstractContext {
      * @return {@code true} if this client is external.
      */
     public boolean isExternal() {
-        return data.get(ATTR_IS_EXTERNAL).asBoolean();
+        return isExternal;
     }
 
     /**
@@ -355,7 +385,7 @@ public final class ClientContext extends AbstractContext {
      * @return {@code true} if this client connection is secure.
      */
     public boolean isSecure() {
-        return data.get(ATTR_IS_SECURE).asBoolean();
+        return isSecure;
     }
 
     /**
@@ -364,7 +394,7 @@ public final class ClientContext extends AbstractContext {
      * @return the IP address of the server that received the request.
      */
     public String getLocalAddress() {
-        return data.get(ATTR_LOCAL_ADDRESS).asString();
+        return localAddress;
     }
 
     /**
@@ -373,6 +403,6 @@ public final class ClientContext extends AbstractContext {
      * @return the port of the interface that received the request.
      */
     public int getLocalPort() {
-        return data.get(ATTR_LOCAL_PORT).asInteger();
+        return localPort;
     }
 }
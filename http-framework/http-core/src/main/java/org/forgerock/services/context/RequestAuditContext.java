@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.services.context;
@@ -27,6 +28,8 @@ public class RequestAuditContext extends AbstractContext {
     /** The time of the request. */
     private static final String RECEIVED_TIME = "receivedTime";
 
+    private final long receivedTime;
+
     /**
      * Constructs a new context using the specified parent and the current time as the request received time.
      * @param parent The parent context.
@@ -42,7 +45,7 @@ public class RequestAuditContext extends AbstractContext {
      */
     public RequestAuditContext(Context parent, TimeService time) {
         super(parent, NAME);
-        data.put(RECEIVED_TIME, time.now());
+        this.receivedTime = time.now();
     }
 
     /**
@@ -52,6 +55,7 @@ public class RequestAuditContext extends AbstractContext {
      */
     public RequestAuditContext(JsonValue savedContext, ClassLoader classLoader) {
         super(savedContext, classLoader);
+        this.receivedTime = data.get(RECEIVED_TIME).asLong();
     }
 
     /**
@@ -59,6 +63,13 @@ public class RequestAuditContext extends AbstractContext {
      * @return The request received time.
      */
     public long getRequestReceivedTime() {
-        return data.get(RECEIVED_TIME).asLong();
+        return receivedTime;
+    }
+
+    @Override
+    public JsonValue toJsonValue() {
+        final JsonValue value = super.toJsonValue();
+        value.put(RECEIVED_TIME, receivedTime);
+        return value;
     }
 }
@@ -12,10 +12,12 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2015 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.services.context;
 
+import static org.forgerock.json.JsonValue.json;
 import static org.forgerock.util.Reject.checkNotNull;
 
 import java.util.Collections;
@@ -101,6 +103,9 @@ public final class SecurityContext extends AbstractContext {
     private static final String ATTR_AUTHENTICATION_ID = "authenticationId";
     private static final String ATTR_AUTHORIZATION = "authorization";
 
+    private final String authenticationId;
+    private final Map<String, Object> authorization;
+
     /**
      * Creates a new security context having the provided parent and an ID
      * automatically generated using {@code UUID.randomUUID()}.
@@ -148,10 +153,10 @@ public final class SecurityContext extends AbstractContext {
     public SecurityContext(final String id, final Context parent,
             final String authenticationId, final Map<String, Object> authorization) {
         super(id, "security", checkNotNull(parent, "Cannot instantiate SecurityContext with null parent Context"));
-        data.put(ATTR_AUTHENTICATION_ID, authenticationId != null ? authenticationId : "");
-        data.put(ATTR_AUTHORIZATION, authorization != null
+        this.authenticationId = authenticationId != null ? authenticationId : "";
+        this.authorization = authorization != null
                 ? Collections.unmodifiableMap(new LinkedHashMap<>(authorization))
-                : Collections.<String, Object>emptyMap());
+                : Collections.<String, Object>emptyMap();
     }
 
     /**
@@ -165,6 +170,8 @@ public final class SecurityContext extends AbstractContext {
      */
     public SecurityContext(final JsonValue savedContext, final ClassLoader classLoader) {
         super(savedContext, classLoader);
+        this.authenticationId = data.get(ATTR_AUTHENTICATION_ID).asString();
+        this.authorization = data.get(ATTR_AUTHORIZATION).asMap();
     }
 
     /**
@@ -178,7 +185,7 @@ public final class SecurityContext extends AbstractContext {
      *         is unauthenticated.
      */
     public String getAuthenticationId() {
-        return data.get(ATTR_AUTHENTICATION_ID).asString();
+        return authenticationId;
     }
 
     /**
@@ -201,6 +208,14 @@ public final class SecurityContext extends AbstractContext {
      *         user.
      */
     public Map<String, Object> getAuthorization() {
-        return data.get(ATTR_AUTHORIZATION).asMap();
+        return authorization;
+    }
+
+    @Override
+    public JsonValue toJsonValue() {
+        final JsonValue value = super.toJsonValue();
+        value.put(ATTR_AUTHENTICATION_ID, authenticationId);
+        value.put(ATTR_AUTHORIZATION, json(authorization).copy().getObject());
+        return value;
     }
 }
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 package org.forgerock.services.context;
 
@@ -56,13 +57,10 @@ public class TransactionIdContext extends AbstractContext {
         return transactionId;
     }
 
-    /**
-     * Updates the data object to have the current transactionId state.
-     * {@inheritDoc}
-     */
     @Override
     public JsonValue toJsonValue() {
-        data.put(ATTR_TRANSACTION_ID, transactionId.toJson().getObject());
-        return super.toJsonValue();
+        final JsonValue value = super.toJsonValue();
+        value.put(ATTR_TRANSACTION_ID, transactionId.toJson().getObject());
+        return value;
     }
 }
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 package org.forgerock.services.routing;
 
@@ -40,6 +41,11 @@ import org.forgerock.util.Pair;
  * and a handler (H). When a request (R) is received the router invokes each {@code RouteMatcher} to see if it
  * matches and then invokes the associated handler if it is the best match.
  * <p>
+ * Routers with many URI template routes may {@link #setRouteIndexEnabled(boolean) enable a route index}: a
+ * path-segment trie, recompiled whenever the routes change, which restricts the evaluated {@code RouteMatcher}s to
+ * those whose URI template could match the request path. Sub-classes support this by implementing
+ * {@link #getRemainingPath(Context, Object)}.
+ * <p>
  * Concrete implementations of {@code AbstractRouter} existing in both {@link org.forgerock.http.routing.Router CHF}
  * and CREST.
  *
@@ -55,6 +61,8 @@ public abstract class AbstractRouter<T extends AbstractRouter<T, R, H, D>, R, H,
     /** Matches the current route. */
     protected final RouteMatcher<R> thisRouterUriMatcher = uriMatcher(EQUALS, "");
     private volatile H defaultRoute;
+    private volatile boolean routeIndexEnabled;
+    private volatile RouteIndex<R, H> routeIndex;
 
     private final List<Describable.Listener> apiListeners = new CopyOnWriteArrayList<>();
     private ApiProducer<D> apiProducer;
@@ -76,6 +84,7 @@ public abstract class AbstractRouter<T extends AbstractRouter<T, R, H, D>, R, H,
     @SuppressWarnings("unchecked")
     protected AbstractRouter(AbstractRouter<T, R, H, D> router) {
         this.defaultRoute = router.defaultRoute;
+        this.routeIndexEnabled = router.routeIndexEnabled;
         addAllRoutes((T) router);
     }
 
@@ -109,6 +118,7 @@ public abstract class AbstractRouter<T extends AbstractRouter<T, R, H, D>, R, H,
                 H handler = route.getValue();
                 descriptorChanged |= updateApiDescriptor(routes.put(route.getKey(), handler), handler);
             }
+            recompileRouteIndex();
             if (descriptorChanged) {
                 notifyDescriptorChange();
             }
@@ -129,7 +139,9 @@ public abstract class AbstractRouter<T extends AbstractRouter<T, R, H, D>, R, H,
      * @return This router instance.
      */
     public final T addRoute(RouteMatcher<R> matcher, H handler) {
-        return updateApiDescriptorAndNotify(routes.put(matcher, handler), handler);
+        H oldHandler = routes.put(matcher, handler);
+        recompileRouteIndex();
+        return updateApiDescriptorAndNotify(oldHandler, handler);
     }
 
     private boolean updateApiDescriptor(H oldHandler, H newHandler) {
@@ -182,6 +194,7 @@ public abstract class AbstractRouter<T extends AbstractRouter<T, R, H, D>, R, H,
      */
     public final T removeAllRoutes() {
         routes.clear();
+        recompileRouteIndex();
         api = null;
         return getThis();
     }
@@ -202,12 +215,61 @@ public abstract class AbstractRouter<T extends AbstractRouter<T, R, H, D>, R, H,
             isModified |= removed != null;
             apiDescriptorModified |= updateApiDescriptor(removed, null);
         }
+        if (isModified) {
+            recompileRouteIndex();
+        }
         if (apiDescriptorModified) {
             notifyDescriptorChange();
         }
         return isModified;
     }
 
+    /**
+     * Enables or disables the route index of this router. When enabled, the URI template of every route whose
+     * {@link RouteMatcher#uriTemplate() matcher exposes one} is compiled into a path-segment trie, and a request is
+     * only evaluated against the routes whose template could match its {@link #getRemainingPath(Context, Object)
+     * remaining path}, as well as against the routes which cannot be indexed. These candidates are evaluated in the
+     * order in which every route would be, so that the first of several equally good matches is selected, as it is
+     * without the index. The index is recompiled every time a route is added or removed.
+     *
+     * @param enabled {@code true} to route requests through the index, {@code false} to evaluate every route.
+     * @return This router instance.
+     */
+    public final T setRouteIndexEnabled(boolean enabled) {
+        this.routeIndexEnabled = enabled;
+        recompileRouteIndex();
+        return getThis();
+    }
+
+    /**
+     * Returns whether requests are routed through the route index.
+     *
+     * @return {@code true} if the route index is enabled.
+     * @see #setRouteIndexEnabled(boolean)
+     */
+    public final boolean isRouteIndexEnabled() {
+        return routeIndexEnabled;
+    }
+
+    private synchronized void recompileRouteIndex() {
+        routeIndex = routeIndexEnabled ? new RouteIndex<>(routes) : null;
+    }
+
+    /**
+     * Returns the URL-decoded path elements of the request which remain to be routed by this router, that is the
+     * path which URI template route matchers evaluate. This is used to look up the route index.
+     *
+     * <p>The default implementation returns {@code null}, in which case every route is evaluated even when the
+     * route index is enabled.</p>
+     *
+     * @param context The request context.
+     * @param request The request.
+     * @return The path elements remaining to be routed, or {@code null} if they cannot be determined.
+     */
+    protected List<String> getRemainingPath(Context context, R request) {
+        return null;
+    }
+
     /**
      * Finds the best route that matches the given request based on the route
      * matchers of the registered routes. If no registered route matches at
@@ -262,8 +324,20 @@ public abstract class AbstractRouter<T extends AbstractRouter<T, R, H, D>, R, H,
     }
 
     private Pair<RouteMatch, H> getBestRouteMatch(Context context, R request) throws IncomparableRouteMatchException {
+        final RouteIndex<R, H> index = routeIndex;
+        if (index != null) {
+            List<String> path = getRemainingPath(context, request);
+            if (path != null) {
+                return getBestRouteMatch(context, request, index.getCandidates(path));
+            }
+        }
+        return getBestRouteMatch(context, request, routes.entrySet());
+    }
+
+    private Pair<RouteMatch, H> getBestRouteMatch(Context context, R request,
+            Iterable<Map.Entry<RouteMatcher<R>, H>> candidates) throws IncomparableRouteMatchException {
         Pair<RouteMatch, H> bestMatch = Pair.of(null, null);
-        for (Map.Entry<RouteMatcher<R>, H> route : routes.entrySet()) {
+        for (Map.Entry<RouteMatcher<R>, H> route : candidates) {
             RouteMatch result = route.getKey().evaluate(context, request);
             if (result != null) {
                 if (result.isBetterMatchThan(bestMatch.getFirst())) {
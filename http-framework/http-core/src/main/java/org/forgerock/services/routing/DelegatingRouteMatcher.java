@@ -12,12 +12,15 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.services.routing;
 
 import org.forgerock.http.ApiProducer;
+import org.forgerock.http.routing.RoutingMode;
 import org.forgerock.services.context.Context;
+import org.forgerock.util.Pair;
 
 /**
  * A route matcher that delegates to a provided route matcher.
@@ -64,4 +67,9 @@ public class DelegatingRouteMatcher<R> extends RouteMatcher<R> {
     public <D> D transformApi(D descriptor, ApiProducer<D> producer) {
         return delegate.transformApi(descriptor, producer);
     }
+
+    @Override
+    public Pair<RoutingMode, String> uriTemplate() {
+        return delegate.uriTemplate();
+    }
 }
@@ -0,0 +1,184 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.services.routing;
+
+import static org.forgerock.http.routing.RoutingMode.EQUALS;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.http.routing.RoutingMode;
+import org.forgerock.http.util.Paths;
+import org.forgerock.util.Pair;
+
+/**
+ * An immutable path-segment trie over the URI template routes of an {@link AbstractRouter}.
+ * <p>
+ * The index does not decide which route is the best match: it only narrows the set of routes whose
+ * {@link RouteMatcher} has to be evaluated for a given path down to those whose URI template could possibly match
+ * it. Candidates are then evaluated and compared by the router exactly as they would be without the index, so the
+ * {@link RoutingMode} semantics and {@link RouteMatch#isBetterMatchThan(RouteMatch)} ordering are unchanged.
+ * Candidates are returned in the iteration order of the indexed routes, so that when several routes match equally
+ * well, the router selects the first of them, as it does when it evaluates every route.
+ * <p>
+ * Template segments which are plain literals are indexed by value, segments containing a template variable are
+ * indexed as wildcards. Routes whose matcher does not expose a {@link RouteMatcher#uriTemplate() URI template} are
+ * returned as candidates for every path.
+ *
+ * @param <R> The type of the request.
+ * @param <H> The type of the handler.
+ */
+final class RouteIndex<R, H> {
+
+    private static final Comparator<IndexedRoute<?, ?>> BY_ORDINAL = new Comparator<IndexedRoute<?, ?>>() {
+        @Override
+        public int compare(IndexedRoute<?, ?> route1, IndexedRoute<?, ?> route2) {
+            return Integer.compare(route1.ordinal, route2.ordinal);
+        }
+    };
+
+    private final Node<R, H> root = new Node<>();
+    private final List<IndexedRoute<R, H>> unindexed = new ArrayList<>();
+
+    /**
+     * Compiles an index over the provided routes.
+     *
+     * @param routes The routes to index.
+     */
+    RouteIndex(Map<RouteMatcher<R>, H> routes) {
+        int ordinal = 0;
+        for (Map.Entry<RouteMatcher<R>, H> route : routes.entrySet()) {
+            IndexedRoute<R, H> entry = new IndexedRoute<>(route.getKey(), route.getValue(), ordinal++);
+            Pair<RoutingMode, String> template = entry.getKey().uriTemplate();
+            if (template == null) {
+                unindexed.add(entry);
+            } else {
+                root.add(templateSegments(template.getSecond()), 0, template.getFirst(), entry);
+            }
+        }
+    }
+
+    /**
+     * Returns the routes which may match the provided path, in the iteration order of the indexed routes.
+     *
+     * @param pathElements The URL-decoded path elements remaining to be routed.
+     * @return The candidate routes, never {@code null}.
+     */
+    List<Map.Entry<RouteMatcher<R>, H>> getCandidates(List<String> pathElements) {
+        List<IndexedRoute<R, H>> candidates = new ArrayList<>(unindexed);
+        root.collect(pathSegments(pathElements), 0, candidates);
+        Collections.sort(candidates, BY_ORDINAL);
+        return Collections.<Map.Entry<RouteMatcher<R>, H>>unmodifiableList(candidates);
+    }
+
+    /**
+     * Splits a URI template the same way the URI route matcher does: at most one leading and one trailing slash are
+     * ignored, and an empty template has no segments at all.
+     */
+    private static String[] templateSegments(String template) {
+        String t = template;
+        if (t.startsWith("/")) {
+            t = t.substring(1);
+        }
+        if (t.endsWith("/")) {
+            t = t.substring(0, t.length() - 1);
+        }
+        return t.isEmpty() ? new String[0] : t.split("/", -1);
+    }
+
+    /**
+     * Splits the URL-encoded form of the path, which is what URI templates are matched against, into segments.
+     */
+    private static String[] pathSegments(List<String> pathElements) {
+        String path = Paths.joinPath(pathElements);
+        return path.isEmpty() ? new String[0] : path.split("/", -1);
+    }
+
+    /** A route, along with its position in the iteration order of the indexed routes. */
+    private static final class IndexedRoute<R, H> extends AbstractMap.SimpleImmutableEntry<RouteMatcher<R>, H> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int ordinal;
+
+        private IndexedRoute(RouteMatcher<R> matcher, H handler, int ordinal) {
+            super(matcher, handler);
+            this.ordinal = ordinal;
+        }
+    }
+
+    private static final class Node<R, H> {
+
+        private final Map<String, Node<R, H>> literals = new HashMap<>();
+        private Node<R, H> wildcard;
+        private List<IndexedRoute<R, H>> equalsRoutes = Collections.emptyList();
+        private List<IndexedRoute<R, H>> startsWithRoutes = Collections.emptyList();
+
+        private void add(String[] segments, int depth, RoutingMode mode, IndexedRoute<R, H> route) {
+            if (depth == segments.length) {
+                if (mode == EQUALS) {
+                    equalsRoutes = append(equalsRoutes, route);
+                } else {
+                    startsWithRoutes = append(startsWithRoutes, route);
+                }
+                return;
+            }
+            String segment = segments[depth];
+            Node<R, H> child;
+            if (segment.indexOf('{') >= 0) {
+                if (wildcard == null) {
+                    wildcard = new Node<>();
+                }
+                child = wildcard;
+            } else {
+                child = literals.get(segment);
+                if (child == null) {
+                    child = new Node<>();
+                    literals.put(segment, child);
+                }
+            }
+            child.add(segments, depth + 1, mode, route);
+        }
+
+        private void collect(String[] segments, int depth, List<IndexedRoute<R, H>> candidates) {
+            candidates.addAll(startsWithRoutes);
+            if (depth == segments.length) {
+                candidates.addAll(equalsRoutes);
+                return;
+            }
+            Node<R, H> literal = literals.get(segments[depth]);
+            if (literal != null) {
+                literal.collect(segments, depth + 1, candidates);
+            }
+            if (wildcard != null) {
+                wildcard.collect(segments, depth + 1, candidates);
+            }
+        }
+
+        private static <E> List<E> append(List<E> list, E element) {
+            List<E> result = new ArrayList<>(list.size() + 1);
+            result.addAll(list);
+            result.add(element);
+            return result;
+        }
+    }
+}
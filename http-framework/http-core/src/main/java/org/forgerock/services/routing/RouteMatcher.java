@@ -12,12 +12,15 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.services.routing;
 
 import org.forgerock.http.ApiProducer;
+import org.forgerock.http.routing.RoutingMode;
 import org.forgerock.services.context.Context;
+import org.forgerock.util.Pair;
 
 /**
  * A matcher for evaluating whether a route matches the incoming request.
@@ -71,4 +74,18 @@ public abstract class RouteMatcher<R> {
      * @return The new descriptor object.
      */
     public abstract <D> D transformApi(D descriptor, ApiProducer<D> producer);
+
+    /**
+     * Returns the routing mode and URI template which the remaining path of a request must match in order for
+     * {@link #evaluate(Context, Object)} to return a match. Routers use this to index their routes by path segment
+     * so that only the routes which could possibly match a request are evaluated.
+     *
+     * <p>The default implementation returns {@code null}, meaning that the matcher cannot be indexed and will be
+     * evaluated for every request.</p>
+     *
+     * @return The routing mode and URI template, or {@code null} if matching does not depend on the request path.
+     */
+    public Pair<RoutingMode, String> uriTemplate() {
+        return null;
+    }
 }
@@ -0,0 +1,157 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.http.io;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.forgerock.util.time.Duration.duration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BoundedPipeStreamTest {
+
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldTransferMoreBytesThanCapacity() throws Exception {
+        final BoundedPipeStream pipe = new BoundedPipeStream(7);
+        final byte[] bytes = new byte[1000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+
+        Future<?> writer = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                try (OutputStream out = pipe.getIn()) {
+                    out.write(bytes, 0, 500);
+                    for (int i = 500; i < bytes.length; i++) {
+                        out.write(bytes[i]);
+                    }
+                }
+                return null;
+            }
+        });
+
+        assertThat(readFully(pipe.getOut())).isEqualTo(bytes);
+        writer.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void shouldReturnEndOfStreamOnceOutputStreamIsClosedAndDrained() throws Exception {
+        BoundedPipeStream pipe = new BoundedPipeStream(16);
+        pipe.getIn().write(new byte[] { 1, 2, 3 });
+        pipe.getIn().close();
+
+        InputStream in = pipe.getOut();
+        assertThat(in.available()).isEqualTo(3);
+        assertThat(readFully(in)).containsExactly(1, 2, 3);
+        assertThat(in.read()).isEqualTo(-1);
+    }
+
+    @Test
+    public void shouldBlockWriterWhilePipeIsFull() throws Exception {
+        final BoundedPipeStream pipe = new BoundedPipeStream(4);
+        Future<?> writer = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                pipe.getIn().write(new byte[] { 1, 2, 3, 4, 5, 6 });
+                return null;
+            }
+        });
+
+        Thread.sleep(100);
+        assertThat(writer.isDone()).isFalse();
+
+        byte[] read = new byte[4];
+        assertThat(pipe.getOut().read(read)).isEqualTo(4);
+        writer.get(10, TimeUnit.SECONDS);
+        assertThat(pipe.getOut().available()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldFailBlockedWriterWhenInputStreamIsClosed() throws Exception {
+        final BoundedPipeStream pipe = new BoundedPipeStream(4);
+        Future<?> writer = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                pipe.getIn().write(new byte[] { 1, 2, 3, 4, 5, 6 });
+                return null;
+            }
+        });
+        Thread.sleep(100);
+
+        pipe.getOut().close();
+
+        assertThatThrownBy(() -> writer.get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(IOException.class);
+        assertThatThrownBy(() -> pipe.getIn().write(1)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void shouldFailWriterWhenPipeIsNotReadWithinWriteTimeout() throws Exception {
+        final BoundedPipeStream pipe = new BoundedPipeStream(4, duration("100 milliseconds"));
+        pipe.getIn().write(new byte[] { 1, 2, 3, 4 });
+
+        assertThatThrownBy(() -> pipe.getIn().write(5)).isInstanceOf(InterruptedIOException.class);
+        assertThat(pipe.getOut().available()).isEqualTo(4);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void shouldFailWritesAfterOutputStreamIsClosed() throws Exception {
+        BoundedPipeStream pipe = new BoundedPipeStream(4);
+        pipe.getIn().close();
+        pipe.getIn().write(1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldRejectNonPositiveCapacity() {
+        new BoundedPipeStream(0);
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[3];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
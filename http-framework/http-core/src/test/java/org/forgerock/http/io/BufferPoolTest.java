@@ -0,0 +1,210 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.http.io;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.forgerock.util.test.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BufferPoolTest {
+
+    private Path tempDir;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory(BufferPoolTest.class.getSimpleName());
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        FileUtils.deleteRecursively(tempDir);
+    }
+
+    @Test
+    public void testSegmentsAreReusedBySizeClass() {
+        BufferPool pool = new BufferPool();
+        ByteBuffer segment = pool.acquire(3_000);
+        assertThat(segment.capacity()).isEqualTo(4_096);
+        assertThat(pool.acquire(1).capacity()).isEqualTo(1_024);
+        assertThat(pool.acquire(1 << 20).capacity()).isEqualTo(BufferPool.DEFAULT_MAX_SEGMENT_SIZE);
+        assertThat(pool.getSegmentMissCount()).isEqualTo(3);
+
+        segment.put((byte) 1);
+        pool.release(segment);
+        assertThat(pool.getRetainedBytes()).isEqualTo(4_096);
+        ByteBuffer reused = pool.acquire(4_096);
+        assertThat(reused).isSameAs(segment);
+        assertThat(reused.position()).isEqualTo(0);
+        assertThat(reused.limit()).isEqualTo(4_096);
+        assertThat(pool.getSegmentHitCount()).isEqualTo(1);
+        assertThat(pool.getRetainedBytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void testRetentionIsBounded() {
+        BufferPool pool = new BufferPool(true, 1_024, 2_048, 0);
+        ByteBuffer[] segments = { pool.acquire(1_024), pool.acquire(1_024), pool.acquire(1_024) };
+        assertThat(segments[0].isDirect()).isTrue();
+        for (ByteBuffer segment : segments) {
+            pool.release(segment);
+        }
+        // Segments the pool does not allocate are ignored
+        pool.release(ByteBuffer.allocateDirect(1_000));
+        pool.release(ByteBuffer.allocate(1_024));
+        assertThat(pool.getRetainedBytes()).isEqualTo(2_048);
+        pool.close();
+        assertThat(pool.getRetainedBytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void testSpillFilesAreReused() throws IOException {
+        BufferPool pool = new BufferPool();
+        File file = pool.acquireSpillFile(tempDir.toFile());
+        assertThat(file.getParentFile()).isEqualTo(tempDir.toFile());
+        pool.releaseSpillFile(tempDir.toFile(), file);
+        assertThat(pool.getIdleSpillFileCount()).isEqualTo(1);
+        assertThat(pool.acquireSpillFile(tempDir.toFile())).isEqualTo(file);
+        assertThat(pool.getSpillFileCreatedCount()).isEqualTo(1);
+        assertThat(pool.getSpillFileReusedCount()).isEqualTo(1);
+
+        // A non-empty file is deleted
+        Files.write(file.toPath(), new byte[] { 1 });
+        pool.releaseSpillFile(tempDir.toFile(), file);
+        assertThat(file).doesNotExist();
+        assertThat(pool.getIdleSpillFileCount()).isEqualTo(0);
+        assertThat(pool.getSpillFileDeletedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testSpillFilesAreDeletedBeyondIdleLimitAndOnClose() throws IOException {
+        BufferPool pool = new BufferPool(false, 1_024, 0, 1);
+        File first = pool.acquireSpillFile(tempDir.toFile());
+        File second = pool.acquireSpillFile(tempDir.toFile());
+        pool.releaseSpillFile(tempDir.toFile(), first);
+        pool.releaseSpillFile(tempDir.toFile(), second);
+        assertThat(first).exists();
+        assertThat(second).doesNotExist();
+
+        pool.close();
+        assertThat(first).doesNotExist();
+        assertThat(pool.getSpillFileDeletedCount()).isEqualTo(2);
+        assertThat(tempDir.toFile().list()).isEmpty();
+    }
+
+    @Test
+    public void testPooledBufferSpansSegmentsThenSpills() throws IOException {
+        BufferPool pool = new BufferPool(false, 1_024, 1 << 20, 4);
+        byte[] data = new byte[10_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        try (Buffer buffer = new PooledBuffer(pool, 1_024, 4_096, 16_384, tempDir.toFile())) {
+            buffer.append(data, 0, 3_000);
+            assertThat(pool.getSegmentMissCount()).isEqualTo(3);
+            assertThat(buffer.read(2_500)).isEqualTo(data[2_500]);
+            byte[] out = new byte[1_500];
+            assertThat(buffer.read(1_000, out, 0, out.length)).isEqualTo(out.length);
+            assertThat(out[0]).isEqualTo(data[1_000]);
+            assertThat(out[1_499]).isEqualTo(data[2_499]);
+
+            buffer.append(data, 3_000, 7_000);
+            assertThat(buffer.length()).isEqualTo(data.length);
+            assertThat(pool.getSpillFileCreatedCount()).isEqualTo(1);
+            assertThat(pool.getRetainedBytes()).isEqualTo(3_072);
+            out = new byte[data.length];
+            assertThat(buffer.read(0, out, 0, out.length)).isEqualTo(data.length);
+            assertThat(out).isEqualTo(data);
+        }
+        assertThat(pool.getIdleSpillFileCount()).isEqualTo(1);
+
+        try (Buffer buffer = new PooledBuffer(pool, 1_024, 4_096, 16_384, tempDir.toFile())) {
+            buffer.append(data, 0, 3_000);
+            buffer.append(data, 3_000, 7_000);
+            assertThat(buffer.read(9_999)).isEqualTo(data[9_999]);
+        }
+        assertThat(pool.getSpillFileReusedCount()).isEqualTo(1);
+        assertThat(pool.getSegmentHitCount()).isEqualTo(3);
+        pool.close();
+        assertThat(tempDir.toFile().list()).isEmpty();
+    }
+
+    @Test
+    public void testResourcesOfUnclosedPooledBufferAreReleasedOnceCollected() throws Exception {
+        BufferPool pool = new BufferPool(false, 1_024, 1 << 20, 0);
+        File spillFile = spillUnclosedBuffer(pool);
+        assertThat(spillFile).exists();
+
+        for (int i = 0; i < 50 && pool.getUnclosedBufferCount() == 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+            // Creating a buffer releases the resources of the collected ones
+            new PooledBuffer(pool, 1_024, 4_096, 16_384, tempDir.toFile()).close();
+        }
+        assertThat(pool.getUnclosedBufferCount()).isEqualTo(1);
+        assertThat(spillFile).doesNotExist();
+        assertThat(pool.getSpillFileDeletedCount()).isEqualTo(1);
+    }
+
+    private File spillUnclosedBuffer(BufferPool pool) throws IOException {
+        Buffer buffer = new PooledBuffer(pool, 1_024, 4_096, 16_384, tempDir.toFile());
+        buffer.append(new byte[5_000], 0, 5_000);
+        File[] files = tempDir.toFile().listFiles();
+        assertThat(files).hasSize(1);
+        return files[0];
+    }
+
+    @Test
+    public void testFileOfUnclosedTemporaryBufferIsDeletedOnceCollected() throws Exception {
+        BufferPool pool = new BufferPool(false, 1_024, 1 << 20, 0);
+        File file = promoteUnclosedTemporaryBuffer(pool);
+        assertThat(file).exists();
+
+        for (int i = 0; i < 50 && pool.getUnclosedBufferCount() == 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+            // Creating a buffer releases the resources of the collected ones
+            new PooledBuffer(pool, 1_024, 4_096, 16_384, tempDir.toFile()).close();
+        }
+        assertThat(pool.getUnclosedBufferCount()).isEqualTo(1);
+        assertThat(file).doesNotExist();
+    }
+
+    private File promoteUnclosedTemporaryBuffer(BufferPool pool) throws IOException {
+        Buffer buffer = new TemporaryBuffer(1_024, 4_096, 16_384, tempDir.toFile(), pool);
+        buffer.append(new byte[5_000], 0, 5_000);
+        File[] files = tempDir.toFile().listFiles();
+        assertThat(files).hasSize(1);
+        return files[0];
+    }
+
+    @Test(expectedExceptions = OverflowException.class)
+    public void testPooledBufferOverflows() throws IOException {
+        try (Buffer buffer = new PooledBuffer(new BufferPool(), 16, 16, 32, tempDir.toFile())) {
+            buffer.append(new byte[33], 0, 33);
+        }
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.http.io;
@@ -52,7 +53,8 @@ public class BufferTest {
         return new Object[][]{
                 {new FileBuffer(Files.createTempFile(tempDir, "buf", "tmp").toFile(), BUF_SIZE)},
                 {new MemoryBuffer(BUF_SIZE, BUF_SIZE)},
-                {new TemporaryBuffer(BUF_SIZE, BUF_SIZE, BUF_SIZE, tempDir.toFile())}
+                {new TemporaryBuffer(BUF_SIZE, BUF_SIZE, BUF_SIZE, tempDir.toFile())},
+                {new PooledBuffer(new BufferPool(), BUF_SIZE, BUF_SIZE, BUF_SIZE, tempDir.toFile())}
         };
     }
 
@@ -0,0 +1,113 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.http.io;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class FileRegionBranchingStreamTest {
+
+    private File file;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        file = File.createTempFile("unit.", ".test");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "A test file".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testReadRegion() throws Exception {
+        try (FileRegionBranchingStream stream = new FileRegionBranchingStream(file, 2, 4)) {
+            assertThat(stream.remaining()).isEqualTo(4);
+            assertThat(stream.read()).isEqualTo('t');
+            byte[] b = new byte[10];
+            assertThat(stream.read(b, 0, 10)).isEqualTo(3);
+            assertThat(new String(b, 0, 3, StandardCharsets.UTF_8)).isEqualTo("est");
+            assertThat(stream.read()).isEqualTo(-1);
+            assertThat(stream.getPosition()).isEqualTo(6);
+        }
+    }
+
+    @Test
+    public void testBranchesReadIndependently() throws Exception {
+        try (FileRegionBranchingStream stream = new FileRegionBranchingStream(file)) {
+            assertThat(stream.read()).isEqualTo('A');
+            try (BranchingInputStream child = stream.branch()) {
+                assertThat(child.parent()).isSameAs(stream);
+                assertThat(child.skip(6)).isEqualTo(6);
+                assertThat(child.read()).isEqualTo('f');
+            }
+            assertThat(stream.read()).isEqualTo(' ');
+        }
+    }
+
+    @Test
+    public void testCopyOutlivesOriginal() throws Exception {
+        FileRegionBranchingStream copy;
+        try (FileRegionBranchingStream stream = new FileRegionBranchingStream(file)) {
+            assertThat(stream.read()).isEqualTo('A');
+            copy = stream.copy();
+        }
+        try (BranchingInputStream stream = copy) {
+            assertThat(stream.parent()).isNull();
+            assertThat(stream.read()).isEqualTo(' ');
+        }
+    }
+
+    @Test
+    public void testTransferTo() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (FileRegionBranchingStream stream = new FileRegionBranchingStream(file)) {
+            assertThat(stream.read()).isEqualTo('A');
+            try (FileRegionBranchingStream child = stream.branch()) {
+                assertThat(child.transferTo(Channels.newChannel(out))).isEqualTo(10);
+                assertThat(child.remaining()).isEqualTo(0);
+            }
+            assertThat(stream.remaining()).isEqualTo(10);
+        }
+        assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8)).isEqualTo(" test file");
+    }
+
+    @Test
+    public void testWriteTo() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (FileRegionBranchingStream stream = new FileRegionBranchingStream(file, 7, 4)) {
+            assertThat(stream.writeTo(out)).isEqualTo(4);
+            assertThat(stream.read()).isEqualTo(-1);
+        }
+        assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8)).isEqualTo("file");
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testBranchesAreClosedWithTrunk() throws Exception {
+        BranchingInputStream child;
+        try (FileRegionBranchingStream stream = new FileRegionBranchingStream(file)) {
+            child = stream.branch();
+        }
+        child.read();
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions Copyright [year] [name of copyright owner]".
  *
  * Copyright 2014-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.http.protocol;
@@ -26,8 +27,10 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -238,6 +241,16 @@ public class EntityTest {
         assertThat(entity.getRawContentInputStream().available()).isEqualTo(0);
     }
 
+    @Test
+    public void setRawInputStreamFromByteBuffer() throws Exception {
+        entity.setRawContentInputStream(IO.newBranchingInputStream(ByteBuffer.wrap(bytes(JSON_CONTENT1))));
+        assertThatContentIsJsonContent1();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.copyRawContentTo(out);
+        assertThat(out.toByteArray()).isEqualTo(bytes(JSON_CONTENT1));
+        assertThat(entity.getRawContentInputStream().read()).isEqualTo(-1);
+    }
+
     @Test
     public void setString() throws Exception {
         entity.setRawContentInputStream(mockJsonContent1);
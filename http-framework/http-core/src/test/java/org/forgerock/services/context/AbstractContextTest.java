@@ -0,0 +1,110 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.services.context;
+
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.util.Collections;
+
+import org.forgerock.http.routing.UriRouterContext;
+import org.forgerock.json.JsonValue;
+import org.forgerock.services.TransactionId;
+import org.testng.annotations.Test;
+
+public class AbstractContextTest {
+
+    @Test
+    public void asContextShouldReturnTheNearestContextOfTheRequestedType() {
+        RootContext root = new RootContext("root");
+        UriRouterContext outer = new UriRouterContext(root, "users", "bjensen", Collections.<String, String>emptyMap());
+        AttributesContext attributes = new AttributesContext(outer);
+        UriRouterContext inner = new UriRouterContext(attributes, "bjensen", "", singletonMap("id", "bjensen"));
+
+        assertThat(inner.asContext(UriRouterContext.class)).isSameAs(inner);
+        assertThat(attributes.asContext(UriRouterContext.class)).isSameAs(outer);
+        assertThat(inner.asContext(AttributesContext.class)).isSameAs(attributes);
+        assertThat(inner.asContext(RootContext.class)).isSameAs(root);
+        assertThat(inner.asContext(AbstractContext.class)).isSameAs(inner);
+        assertThat(attributes.asContext(Context.class)).isSameAs(attributes);
+        assertThat(inner.containsContext(ClientContext.class)).isFalse();
+        assertThat(outer.containsContext(AttributesContext.class)).isFalse();
+    }
+
+    @Test
+    public void asContextShouldReuseTheIndexOfAncestors() {
+        RootContext root = new RootContext("root");
+        AttributesContext attributes = new AttributesContext(root);
+        assertThat(attributes.asContext(AttributesContext.class)).isSameAs(attributes);
+
+        AttributesContext nested = new AttributesContext(new RequestAuditContext(attributes));
+        assertThat(nested.asContext(AttributesContext.class)).isSameAs(nested);
+        assertThat(nested.asContext(RootContext.class)).isSameAs(root);
+        assertThat(nested.getParent().asContext(AttributesContext.class)).isSameAs(attributes);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void asContextShouldFailIfNoContextHasTheRequestedType() {
+        new AttributesContext(new RootContext()).asContext(SecurityContext.class);
+    }
+
+    @Test
+    public void getIdShouldReturnTheIdOfTheNearestContextHavingOne() {
+        Context context = new AttributesContext(new SecurityContext("security", new RootContext("root"), "bjensen",
+                null));
+
+        assertThat(context.getId()).isEqualTo("security");
+        assertThat(context.getContextName()).isEqualTo("attributes");
+        assertThat(context.getContext("root").getId()).isEqualTo("root");
+    }
+
+    @Test
+    public void toJsonValueShouldRestoreAnEqualChain() throws Exception {
+        Context chain = new TransactionIdContext(
+                new SecurityContext(
+                        new RequestAuditContext(
+                                UriRouterContext.uriRouterContext(
+                                        ClientContext.buildExternalClientContext(new RootContext("root"))
+                                                .remoteAddress("192.0.2.1")
+                                                .remotePort(4242)
+                                                .userAgent("curl")
+                                                .secure(true)
+                                                .build())
+                                        .matchedUri("users")
+                                        .remainingUri("bjensen")
+                                        .originalUri(new URI("http://example.com/users/bjensen"))
+                                        .build()),
+                        "bjensen", singletonMap("id", (Object) "bjensen")),
+                new TransactionId("txid"));
+        JsonValue json = chain.toJsonValue();
+
+        Context restored = new TransactionIdContext(json.copy(), getClass().getClassLoader());
+
+        assertThat(restored.toJsonValue().getObject()).isEqualTo(json.getObject());
+        assertThat(restored.asContext(TransactionIdContext.class).getTransactionId().getValue()).isEqualTo("txid");
+        assertThat(restored.asContext(SecurityContext.class).getAuthorization()).containsEntry("id", "bjensen");
+        assertThat(restored.asContext(RequestAuditContext.class).getRequestReceivedTime())
+                .isEqualTo(chain.asContext(RequestAuditContext.class).getRequestReceivedTime());
+        assertThat(restored.asContext(UriRouterContext.class).getOriginalUri())
+                .isEqualTo(new URI("http://example.com/users/bjensen"));
+        assertThat(restored.asContext(ClientContext.class).getRemotePort()).isEqualTo(4242);
+        assertThat(restored.asContext(ClientContext.class).isSecure()).isTrue();
+        assertThat(restored.getId()).isEqualTo("txid");
+        assertThat(restored.asContext(RootContext.class).getId()).isEqualTo("root");
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.services.routing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.http.routing.RouteMatchers.requestUriMatcher;
+import static org.forgerock.http.routing.RoutingMode.EQUALS;
+import static org.forgerock.http.routing.RoutingMode.STARTS_WITH;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import org.forgerock.http.Handler;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.routing.Router;
+import org.forgerock.http.routing.RoutingMode;
+import org.forgerock.http.routing.UriRouterContext;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.forgerock.util.Pair;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class RouteIndexTest {
+
+    private static final Object[][] ROUTES = {
+        { EQUALS, "" },
+        { EQUALS, "users" },
+        { STARTS_WITH, "users" },
+        { EQUALS, "users/{id}" },
+        { EQUALS, "users/admin" },
+        { STARTS_WITH, "users/{id}/devices" },
+        { EQUALS, "users/{id}/devices/{deviceId}" },
+        { STARTS_WITH, "groups/" },
+        { EQUALS, "test{suffix}" },
+        { STARTS_WITH, "test/" },
+        { EQUALS, "a b" },
+        { EQUALS, "a%20b" },
+        { STARTS_WITH, "{realm}/config" },
+    };
+
+    private Router plainRouter;
+    private Router indexedRouter;
+    private Context context;
+
+    @BeforeMethod
+    public void setup() {
+        plainRouter = new Router();
+        indexedRouter = new Router().setRouteIndexEnabled(true);
+        for (Object[] route : ROUTES) {
+            RouteMatcher<Request> matcher = requestUriMatcher((RoutingMode) route[0], (String) route[1]);
+            Handler handler = mock(Handler.class, matcher.toString());
+            plainRouter.addRoute(matcher, handler);
+            indexedRouter.addRoute(matcher, handler);
+        }
+        context = new RootContext();
+    }
+
+    @DataProvider
+    public Object[][] paths() {
+        return new Object[][] {
+            { "" },
+            { "/" },
+            { "users" },
+            { "users/" },
+            { "users/bjensen" },
+            { "users/admin" },
+            { "users/bjensen/devices" },
+            { "users/bjensen/devices/0" },
+            { "users/bjensen/devices/0/extra" },
+            { "users/bjensen/other" },
+            { "groups" },
+            { "groups/admins/members" },
+            { "testabc" },
+            { "test" },
+            { "test//" },
+            { "a%20b" },
+            { "realm/config/x" },
+            { "unknown" },
+            { "unknown/path" },
+        };
+    }
+
+    @Test(dataProvider = "paths")
+    public void indexedRouterShouldSelectSameRouteAsPlainRouter(String path) throws Exception {
+        Request request = new Request().setUri("http://localhost/" + path);
+
+        Pair<Context, Handler> expected = plainRouter.getBestRoute(context, request);
+        Pair<Context, Handler> actual = indexedRouter.getBestRoute(context, request);
+
+        if (expected == null) {
+            assertThat(actual).isNull();
+        } else {
+            assertThat(actual.getSecond()).isSameAs(expected.getSecond());
+            UriRouterContext expectedContext = expected.getFirst().asContext(UriRouterContext.class);
+            UriRouterContext actualContext = actual.getFirst().asContext(UriRouterContext.class);
+            assertThat(actualContext.getMatchedUri()).isEqualTo(expectedContext.getMatchedUri());
+            assertThat(actualContext.getRemainingUri()).isEqualTo(expectedContext.getRemainingUri());
+            assertThat(actualContext.getUriTemplateVariables()).isEqualTo(expectedContext.getUriTemplateVariables());
+        }
+    }
+
+    @Test
+    public void indexedRouterShouldSelectSameRouteAsPlainRouterAmongEqualMatches() throws Exception {
+        // each path is matched equally well by a literal then variable template, and a variable then literal one
+        for (int i = 0; i < 10; i++) {
+            for (String template : new String[] { "tie" + i + "/{id}", "{id}/tie" + i }) {
+                RouteMatcher<Request> matcher = requestUriMatcher(EQUALS, template);
+                Handler handler = mock(Handler.class, matcher.toString());
+                plainRouter.addRoute(matcher, handler);
+                indexedRouter.addRoute(matcher, handler);
+            }
+        }
+
+        for (int i = 0; i < 10; i++) {
+            Request request = new Request().setUri("http://localhost/tie" + i + "/tie" + i);
+
+            Handler expected = plainRouter.getBestRoute(context, request).getSecond();
+            Handler actual = indexedRouter.getBestRoute(context, request).getSecond();
+
+            assertThat(actual).isSameAs(expected);
+        }
+    }
+
+    @Test
+    public void shouldRecompileIndexWhenRouteIsRemoved() throws Exception {
+        Request request = new Request().setUri("http://localhost/users/admin");
+        indexedRouter.removeRoute(requestUriMatcher(EQUALS, "users/admin"));
+
+        Pair<Context, Handler> bestRoute = indexedRouter.getBestRoute(context, request);
+
+        assertThat(bestRoute.getSecond().toString()).isEqualTo("equals(users/{id})");
+    }
+
+    @Test
+    public void shouldRecompileIndexWhenRouteIsAdded() throws Exception {
+        Request request = new Request().setUri("http://localhost/users/bjensen/roles");
+        Handler handler = mock(Handler.class);
+        indexedRouter.addRoute(requestUriMatcher(EQUALS, "users/{id}/roles"), handler);
+
+        Pair<Context, Handler> bestRoute = indexedRouter.getBestRoute(context, request);
+
+        assertThat(bestRoute.getSecond()).isSameAs(handler);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldAlwaysEvaluateRoutesWhichCannotBeIndexed() throws Exception {
+        Request request = new Request().setUri("http://localhost/unknown");
+        RouteMatcher<Request> matcher = mock(RouteMatcher.class);
+        RouteMatch match = mock(RouteMatch.class);
+        Handler handler = mock(Handler.class);
+        given(matcher.evaluate(any(Context.class), any(Request.class))).willReturn(match);
+        given(match.isBetterMatchThan(any())).willReturn(true);
+        given(match.decorateContext(context)).willReturn(context);
+        indexedRouter.addRoute(matcher, handler);
+
+        Pair<Context, Handler> bestRoute = indexedRouter.getBestRoute(context, request);
+
+        assertThat(bestRoute.getSecond()).isSameAs(handler);
+    }
+
+    @Test
+    public void copiedRouterShouldKeepIndexEnabled() {
+        assertThat(new Router(indexedRouter).isRouteIndexEnabled()).isTrue();
+        assertThat(new Router(plainRouter).isRouteIndexEnabled()).isFalse();
+    }
+}
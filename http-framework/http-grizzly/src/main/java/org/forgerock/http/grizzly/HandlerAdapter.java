@@ -12,6 +12,7 @@
  * information: "Portions Copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 package org.forgerock.http.grizzly;
 
@@ -26,6 +27,7 @@ import static org.forgerock.util.Utils.closeSilently;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
@@ -39,7 +41,7 @@ import org.forgerock.http.HttpApplicationException;
 import org.forgerock.http.filter.TransactionIdInboundFilter;
 import org.forgerock.http.handler.DescribableHandler;
 import org.forgerock.http.io.Buffer;
-import org.forgerock.http.io.IO;
+import org.forgerock.http.io.FileRegionBranchingStream;
 import org.forgerock.http.routing.UriRouterContext;
 import org.forgerock.http.session.SessionContext;
 import org.forgerock.http.util.CaseInsensitiveSet;
@@ -52,6 +54,8 @@ import org.forgerock.services.context.RootContext;
 import org.forgerock.util.Factory;
 import org.forgerock.util.promise.ResultHandler;
 import org.forgerock.util.promise.RuntimeExceptionHandler;
+import org.glassfish.grizzly.EmptyCompletionHandler;
+import org.glassfish.grizzly.WriteResult;
 import org.glassfish.grizzly.http.server.HttpHandler;
 import org.glassfish.grizzly.http.server.Request;
 import org.glassfish.grizzly.http.server.Response;
@@ -135,17 +139,13 @@ final class HandlerAdapter extends HttpHandler {
                                 newInternalServerError(e),
                                 response, sessionContext);
                     }
-                })
-                .thenAlways(new Runnable() {
-                    @Override
-                    public void run() {
-                        response.resume();
-                    }
                 });
     }
 
+    /** Writes the response, then resumes it, possibly asynchronously once the file it serves has been sent. */
     private void writeResponse(final org.forgerock.http.protocol.Response chfResponse, final Response grizzlyResponse,
             final SessionContext sessionContext) {
+        boolean completed = true;
         try {
             grizzlyResponse.setStatus(chfResponse.getStatus().getCode());
             sessionContext.getSession().save(chfResponse);
@@ -158,14 +158,52 @@ final class HandlerAdapter extends HttpHandler {
                     }
                 }
             }
-            IO.stream(chfResponse.getEntity().getRawContentInputStream(), grizzlyResponse.getOutputStream());
+            final InputStream entity = chfResponse.getEntity().getRawContentInputStream();
+            if (entity instanceof FileRegionBranchingStream && grizzlyResponse.getOutputBuffer().isSendfileEnabled()) {
+                sendfile((FileRegionBranchingStream) entity, chfResponse, grizzlyResponse);
+                completed = false;
+            } else {
+                chfResponse.getEntity().copyRawContentTo(grizzlyResponse.getOutputStream());
+            }
         } catch (IOException e) {
             LOGGER.trace("Failed to write response", e);
         } finally {
-            closeSilently(chfResponse);
+            if (completed) {
+                closeSilently(chfResponse);
+                grizzlyResponse.resume();
+            }
         }
     }
 
+    /** Lets Grizzly send the file region with {@code sendfile}, bypassing the heap. */
+    private void sendfile(final FileRegionBranchingStream entity,
+            final org.forgerock.http.protocol.Response chfResponse, final Response grizzlyResponse) {
+        grizzlyResponse.setContentLengthLong(entity.remaining());
+        grizzlyResponse.getOutputBuffer().sendfile(entity.getFile(), entity.getPosition(), entity.remaining(),
+                new EmptyCompletionHandler<WriteResult>() {
+                    @Override
+                    public void completed(WriteResult result) {
+                        complete();
+                    }
+
+                    @Override
+                    public void failed(Throwable throwable) {
+                        LOGGER.trace("Failed to write response", throwable);
+                        complete();
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        complete();
+                    }
+
+                    private void complete() {
+                        closeSilently(chfResponse);
+                        grizzlyResponse.resume();
+                    }
+                });
+    }
+
     private org.forgerock.http.protocol.Request toChfRequest(Request req) throws URISyntaxException {
         // populate request
         org.forgerock.http.protocol.Request request = new org.forgerock.http.protocol.Request();
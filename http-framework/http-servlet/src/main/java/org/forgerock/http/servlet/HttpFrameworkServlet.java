@@ -13,6 +13,7 @@
  *
  * Copyright 2010-2011 ApexIdentity Inc.
  * Portions Copyright 2011-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 package org.forgerock.http.servlet;
 
@@ -20,11 +21,12 @@ import static java.util.Collections.list;
 import static org.forgerock.http.handler.Handlers.asDescribableHandler;
 import static org.forgerock.http.handler.Handlers.chainOf;
 import static org.forgerock.http.handler.Handlers.internalServerErrorHandler;
-import static org.forgerock.http.io.IO.newBranchingInputStream;
 import static org.forgerock.http.io.IO.newTemporaryStorage;
 import static org.forgerock.http.protocol.Responses.newInternalServerError;
 import static org.forgerock.http.routing.UriRouterContext.uriRouterContext;
 import static org.forgerock.util.Utils.closeSilently;
+import static org.forgerock.util.promise.Promises.newExceptionPromise;
+import static org.forgerock.util.promise.Promises.newResultPromise;
 
 import java.io.File;
 import java.io.IOException;
@@ -48,6 +50,7 @@ import org.forgerock.http.HttpApplicationException;
 import org.forgerock.http.filter.TransactionIdInboundFilter;
 import org.forgerock.http.handler.DescribableHandler;
 import org.forgerock.http.io.Buffer;
+import org.forgerock.http.io.OverflowException;
 import org.forgerock.http.protocol.Request;
 import org.forgerock.http.protocol.Response;
 import org.forgerock.http.protocol.Status;
@@ -61,7 +64,9 @@ import org.forgerock.services.context.ClientContext;
 import org.forgerock.services.context.Context;
 import org.forgerock.services.context.RequestAuditContext;
 import org.forgerock.services.context.RootContext;
+import org.forgerock.util.AsyncFunction;
 import org.forgerock.util.Factory;
+import org.forgerock.util.promise.ExceptionHandler;
 import org.forgerock.util.promise.NeverThrowsException;
 import org.forgerock.util.promise.Promise;
 import org.forgerock.util.promise.ResultHandler;
@@ -159,8 +164,13 @@ public final class HttpFrameworkServlet extends HttpServlet {
                     + servletContext.getMajorVersion());
         case 2:
             return new Servlet2Adapter();
+        case 3:
+            if (servletContext.getMinorVersion() == 0) {
+                return new Servlet3Adapter();
+            }
+            return new Servlet31Adapter();
         default:
-            return new Servlet3Adapter();
+            return new Servlet31Adapter();
         }
     }
 
@@ -199,6 +209,9 @@ public final class HttpFrameworkServlet extends HttpServlet {
         final Session session = new ServletSession(req);
         final SessionContext sessionContext = new SessionContext(new RootContext(), session);
 
+        // handle request asynchronously, if supported
+        final ServletSynchronizer sync = adapter.createServletSynchronizer(req, resp);
+
         final Request request;
         final UriRouterContext uriRouterContext;
         try {
@@ -207,7 +220,8 @@ public final class HttpFrameworkServlet extends HttpServlet {
         } catch (URISyntaxException e) {
             Response response = new Response(Status.BAD_REQUEST);
             response.setEntity(e.getMessage());
-            writeResponse(response, resp, sessionContext);
+            writeResponse(req, null, response, resp, sessionContext, sync);
+            awaitIfNeeded(sync);
             return;
         }
 
@@ -228,24 +242,40 @@ public final class HttpFrameworkServlet extends HttpServlet {
         attributesContext.getAttributes().put(HttpServletRequest.class.getName(), req);
         attributesContext.getAttributes().put(HttpServletResponse.class.getName(), resp);
 
-        Context context = createClientContext(attributesContext, req);
+        final Context context = createClientContext(attributesContext, req);
 
-        // handle request
-        final ServletSynchronizer sync = adapter.createServletSynchronizer(req, resp);
+        // handle request once its entity, if any, can be read
         try {
             final Promise<Response, NeverThrowsException> promise =
-                    handler.handle(context, request)
+                    readEntity(req, request)
+                            .thenAsync(new AsyncFunction<Void, Response, NeverThrowsException>() {
+                                @Override
+                                public Promise<Response, NeverThrowsException> apply(Void value) {
+                                    return handler.handle(context, request);
+                                }
+                            }, new AsyncFunction<IOException, Response, NeverThrowsException>() {
+                                @Override
+                                public Promise<Response, NeverThrowsException> apply(IOException e) {
+                                    if (e instanceof OverflowException) {
+                                        logger.warn("Request entity exceeds the limit of the temporary storage");
+                                        return newResultPromise(new Response(Status.PAYLOAD_TOO_LARGE));
+                                    }
+                                    logger.error("Failed to read request", e);
+                                    return newResultPromise(new Response(Status.BAD_REQUEST));
+                                }
+                            })
                             .thenOnResult(new ResultHandler<Response>() {
                                 @Override
                                 public void handleResult(Response response) {
-                                    writeResponse(request, response, resp, sessionContext, sync);
+                                    writeResponse(req, request, response, resp, sessionContext, sync);
                                 }
                             })
                             .thenOnRuntimeException(new RuntimeExceptionHandler() {
                                 @Override
                                 public void handleRuntimeException(RuntimeException e) {
                                     logger.error("RuntimeException caught", e);
-                                    writeResponse(request, newInternalServerError(), resp, sessionContext, sync);
+                                    writeResponse(req, request, newInternalServerError(), resp, sessionContext,
+                                            sync);
                                 }
                             });
 
@@ -261,9 +291,13 @@ public final class HttpFrameworkServlet extends HttpServlet {
             // Servlet specification indicates that it's the responsibility of the Servlet implementer to call
             // AsyncContext.complete()
             logger.error("Throwable caught", throwable);
-            writeResponse(request, newInternalServerError(), resp, sessionContext, sync);
+            writeResponse(req, request, newInternalServerError(), resp, sessionContext, sync);
         }
 
+        awaitIfNeeded(sync);
+    }
+
+    private void awaitIfNeeded(final ServletSynchronizer sync) throws ServletException {
         try {
             sync.awaitIfNeeded();
         } catch (InterruptedException e) {
@@ -271,7 +305,7 @@ public final class HttpFrameworkServlet extends HttpServlet {
         }
     }
 
-    private Request createRequest(HttpServletRequest req) throws IOException, URISyntaxException {
+    private Request createRequest(HttpServletRequest req) throws URISyntaxException {
         // populate request
         Request request = new Request();
         request.setMethod(req.getMethod());
@@ -292,13 +326,16 @@ public final class HttpFrameworkServlet extends HttpServlet {
             request.getHeaders().add(name, list(req.getHeaders(name)));
         }
 
+        return request;
+    }
+
+    private Promise<Void, IOException> readEntity(HttpServletRequest req, Request request) {
         // include request entity if appears to be provided with request
         if ((req.getContentLength() > 0 || req.getHeader("Transfer-Encoding") != null)
                 && !NON_ENTITY_METHODS.contains(request.getMethod())) {
-            request.setEntity(newBranchingInputStream(req.getInputStream(), storage));
+            return adapter.readEntity(req, request, storage);
         }
-
-        return request;
+        return newResultPromise(null);
     }
 
     private ClientContext createClientContext(Context parent, HttpServletRequest req) {
@@ -323,48 +360,57 @@ public final class HttpFrameworkServlet extends HttpServlet {
                 .originalUri(request.getUri().asURI()).build();
     }
 
-    private void writeResponse(Request request, Response response, HttpServletResponse servletResponse,
-            SessionContext sessionContext, ServletSynchronizer synchronizer) {
-        try {
-            writeResponse(response, servletResponse, sessionContext);
-        } finally {
-            closeSilently(request);
-            synchronizer.signalAndComplete();
-        }
+    private void writeResponse(final HttpServletRequest servletRequest, final Request request,
+            final Response response, final HttpServletResponse servletResponse, final SessionContext sessionContext,
+            final ServletSynchronizer synchronizer) {
+        writeResponse(servletRequest, response, servletResponse, sessionContext)
+                .thenOnException(new ExceptionHandler<IOException>() {
+                    @Override
+                    public void handleException(IOException e) {
+                        logger.error("Failed to write response", e);
+                    }
+                })
+                .thenAlways(new Runnable() {
+                    @Override
+                    public void run() {
+                        closeSilently(response, request);
+                        synchronizer.signalAndComplete();
+                    }
+                });
     }
 
-    private void writeResponse(final Response response, final HttpServletResponse servletResponse,
+    private Promise<Void, IOException> writeResponse(final HttpServletRequest servletRequest,
+            final Response response, final HttpServletResponse servletResponse,
             final SessionContext sessionContext) {
+        /*
+         * Support for OPENIG-94/95 - The wrapped servlet may have already
+         * committed its response w/o creating a new OpenIG Response instance in
+         * the exchange.
+         */
+        if (response == null) {
+            return newResultPromise(null);
+        }
         try {
-            /*
-             * Support for OPENIG-94/95 - The wrapped servlet may have already
-             * committed its response w/o creating a new OpenIG Response instance in
-             * the exchange.
-             */
-            if (response != null) {
-                // response status-code (reason-phrase deprecated in Servlet API)
-                servletResponse.setStatus(response.getStatus().getCode());
-
-                // ensure that the session has been written back to the response
-                sessionContext.getSession().save(response);
-
-                // response headers
-                for (String name : response.getHeaders().keySet()) {
-                    for (String value : response.getHeaders().get(name).getValues()) {
-                        if (value != null && value.length() > 0) {
-                            servletResponse.addHeader(name, value);
-                        }
+            // response status-code (reason-phrase deprecated in Servlet API)
+            servletResponse.setStatus(response.getStatus().getCode());
+
+            // ensure that the session has been written back to the response
+            sessionContext.getSession().save(response);
+
+            // response headers
+            for (String name : response.getHeaders().keySet()) {
+                for (String value : response.getHeaders().get(name).getValues()) {
+                    if (value != null && value.length() > 0) {
+                        servletResponse.addHeader(name, value);
                     }
                 }
-                // response entity (if applicable)
-                // TODO does this also set content length?
-                response.getEntity().copyRawContentTo(servletResponse.getOutputStream());
             }
         } catch (IOException e) {
-            logger.error("Failed to write response", e);
-        } finally {
-            closeSilently(response);
+            return newExceptionPromise(e);
         }
+        // response entity (if applicable)
+        // TODO does this also set content length?
+        return adapter.writeEntity(servletRequest, servletResponse, response);
     }
 
     @Override
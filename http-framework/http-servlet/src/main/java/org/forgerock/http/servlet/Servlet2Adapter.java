@@ -12,14 +12,26 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2015 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.http.servlet;
 
+import static org.forgerock.http.io.IO.newBranchingInputStream;
+import static org.forgerock.util.promise.Promises.newExceptionPromise;
+import static org.forgerock.util.promise.Promises.newResultPromise;
+
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.concurrent.CountDownLatch;
 
+import org.forgerock.http.io.Buffer;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.util.Factory;
+import org.forgerock.util.promise.Promise;
+
 /**
  * An adapter for use in Servlet 2.x containers.
  */
@@ -65,4 +77,45 @@ final class Servlet2Adapter implements ServletVersionAdapter {
             HttpServletResponse httpResponse) {
         return new Servlet2Synchronizer();
     }
+
+    @Override
+    public Promise<Void, IOException> readEntity(HttpServletRequest httpRequest, Request request,
+            Factory<Buffer> storage) {
+        return readEntityBlocking(httpRequest, request, storage);
+    }
+
+    @Override
+    public Promise<Void, IOException> writeEntity(HttpServletRequest httpRequest, HttpServletResponse httpResponse,
+            Response response) {
+        return writeEntityBlocking(httpResponse, response);
+    }
+
+    /**
+     * Sets the entity of the request to a stream reading the body of the HTTP
+     * request on demand. Package private because it is used as the fall-back
+     * implementation in Servlet 3.
+     */
+    static Promise<Void, IOException> readEntityBlocking(HttpServletRequest httpRequest, Request request,
+            Factory<Buffer> storage) {
+        try {
+            request.setEntity(newBranchingInputStream(httpRequest.getInputStream(), storage));
+            return newResultPromise(null);
+        } catch (IOException e) {
+            return newExceptionPromise(e);
+        }
+    }
+
+    /**
+     * Copies the raw entity of the response to the body of the HTTP response.
+     * Package private because it is used as the fall-back implementation in
+     * Servlet 3.
+     */
+    static Promise<Void, IOException> writeEntityBlocking(HttpServletResponse httpResponse, Response response) {
+        try {
+            response.getEntity().copyRawContentTo(httpResponse.getOutputStream());
+            return newResultPromise(null);
+        } catch (IOException e) {
+            return newExceptionPromise(e);
+        }
+    }
 }
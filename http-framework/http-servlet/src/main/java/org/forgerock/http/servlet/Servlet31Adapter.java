@@ -0,0 +1,186 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.http.servlet;
+
+import static org.forgerock.util.Utils.closeSilently;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.forgerock.http.io.Buffer;
+import org.forgerock.http.io.DirectBranchingStream;
+import org.forgerock.http.io.IO;
+import org.forgerock.http.io.OverflowException;
+import org.forgerock.http.io.PipeBufferedStream;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.util.Factory;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+
+/**
+ * An adapter for use in Servlet 3.1+ containers, which uses the non-blocking
+ * IO API when the request is processed asynchronously, so that no container
+ * thread waits for a slow client:
+ * <ul>
+ * <li>request bodies with a declared length of at most
+ * {@link IO#DEFAULT_TMP_FILE_LIMIT} bytes are buffered in the temporary
+ * storage of the application as the container signals that data is
+ * available, before the request is handled. Reading stops as soon as a body
+ * exceeds the limit of the storage, and the request is rejected with a 413
+ * (Payload Too Large) response. Other request bodies are streamed to the
+ * handler on demand, with blocking reads, as with earlier containers;</li>
+ * <li>response entities are written as the container signals that the client
+ * can receive more data. Only the output side is asynchronous: the response
+ * entity is still read with blocking reads, on the container thread which
+ * writes it, so a handler should only return a response whose entity is
+ * readily available.</li>
+ * </ul>
+ */
+final class Servlet31Adapter implements ServletVersionAdapter {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    /** Largest write of content which is entirely available up front, such as a file region. */
+    private static final int DIRECT_BUFFER_SIZE = 256 * 1024;
+
+    private final Servlet3Adapter servlet3Adapter = new Servlet3Adapter();
+
+    Servlet31Adapter() {
+        // Nothing to do.
+    }
+
+    @Override
+    public ServletSynchronizer createServletSynchronizer(HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse) {
+        return servlet3Adapter.createServletSynchronizer(httpRequest, httpResponse);
+    }
+
+    @Override
+    public Promise<Void, IOException> readEntity(final HttpServletRequest httpRequest, final Request request,
+            final Factory<Buffer> storage) {
+        final long length = httpRequest.getContentLengthLong();
+        if (!httpRequest.isAsyncStarted() || length < 0 || length > IO.DEFAULT_TMP_FILE_LIMIT) {
+            // Fall-back to blocking IO, which is the only option without async, and which does not hold
+            // bodies of unknown or large length in the temporary storage before the request is handled.
+            return Servlet2Adapter.readEntityBlocking(httpRequest, request, storage);
+        }
+        final PromiseImpl<Void, IOException> promise = PromiseImpl.create();
+        final PipeBufferedStream pipe = new PipeBufferedStream(storage);
+        try {
+            final ServletInputStream in = httpRequest.getInputStream();
+            in.setReadListener(new ReadListener() {
+                private final byte[] bytes = new byte[BUFFER_SIZE];
+
+                @Override
+                public void onDataAvailable() throws IOException {
+                    final OutputStream out = pipe.getIn();
+                    while (!promise.isDone() && in.isReady()) {
+                        final int n = in.read(bytes);
+                        if (n < 0) {
+                            // onAllDataRead() will follow.
+                            return;
+                        }
+                        try {
+                            out.write(bytes, 0, n);
+                        } catch (OverflowException e) {
+                            // Do not wait for the rest of a body which cannot be stored.
+                            onError(e);
+                        }
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() throws IOException {
+                    if (promise.isDone()) {
+                        return;
+                    }
+                    pipe.getIn().close();
+                    request.setEntity(pipe.getOut());
+                    promise.handleResult(null);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    closeSilently(pipe.getIn(), pipe.getOut());
+                    promise.handleException(asIOException(t));
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            closeSilently(pipe.getIn(), pipe.getOut());
+            promise.handleException(asIOException(e));
+        }
+        return promise;
+    }
+
+    @Override
+    public Promise<Void, IOException> writeEntity(final HttpServletRequest httpRequest,
+            final HttpServletResponse httpResponse, final Response response) {
+        if (!httpRequest.isAsyncStarted()) {
+            // Fall-back to blocking IO, which is the only option without async.
+            return Servlet2Adapter.writeEntityBlocking(httpResponse, response);
+        }
+        final PromiseImpl<Void, IOException> promise = PromiseImpl.create();
+        final InputStream in = response.getEntity().getRawContentInputStream();
+        try {
+            final ServletOutputStream out = httpResponse.getOutputStream();
+            out.setWriteListener(new WriteListener() {
+                private final byte[] bytes = new byte[bufferSize(in)];
+
+                @Override
+                public void onWritePossible() throws IOException {
+                    while (out.isReady()) {
+                        // Only the write is non-blocking: the read blocks until the entity provides content.
+                        final int n = in.read(bytes);
+                        if (n < 0) {
+                            promise.handleResult(null);
+                            return;
+                        }
+                        out.write(bytes, 0, n);
+                    }
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    promise.handleException(asIOException(t));
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            promise.handleException(asIOException(e));
+        }
+        return promise;
+    }
+
+    private static int bufferSize(final InputStream in) {
+        if (in instanceof DirectBranchingStream) {
+            return (int) Math.max(1, Math.min(((DirectBranchingStream) in).remaining(), DIRECT_BUFFER_SIZE));
+        }
+        return BUFFER_SIZE;
+    }
+
+    private static IOException asIOException(final Throwable t) {
+        return t instanceof IOException ? (IOException) t : new IOException(t);
+    }
+}
@@ -12,19 +12,29 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2015 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.http.servlet;
 
+import java.io.IOException;
+
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.forgerock.http.io.Buffer;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.util.Factory;
+import org.forgerock.util.promise.Promise;
+
 /**
  * A Servlet API version adapter provides an abstraction which allows Servlet
  * and Filter implementations to interact with the Servlet container
- * independently of the Servlet API version. At the moment the adapter only
- * provides an abstraction for performing asynchronous processing, but other API
- * features could be added in future (such as async IO).
+ * independently of the Servlet API version. The adapter provides abstractions
+ * for performing asynchronous processing, and for reading and writing entities,
+ * which do not block container threads on slow clients when the container
+ * supports non-blocking IO.
  */
 interface ServletVersionAdapter {
 
@@ -38,4 +48,35 @@ interface ServletVersionAdapter {
      * @return Returns a new synchronizer appropriate for the HTTP request.
      */
     ServletSynchronizer createServletSynchronizer(HttpServletRequest httpRequest, HttpServletResponse httpResponse);
+
+    /**
+     * Sets the entity of the request from the body of the HTTP request. The
+     * returned promise is completed once the entity can be read, which may be
+     * after the client has sent the whole body if it is read asynchronously.
+     *
+     * @param httpRequest
+     *            The HTTP request, which must have been passed to
+     *            {@link #createServletSynchronizer} first.
+     * @param request
+     *            The request whose entity should be set.
+     * @param storage
+     *            The storage for buffering the entity.
+     * @return A promise completed once the entity of the request has been set.
+     */
+    Promise<Void, IOException> readEntity(HttpServletRequest httpRequest, Request request, Factory<Buffer> storage);
+
+    /**
+     * Writes the raw entity of the response to the body of the HTTP response.
+     *
+     * @param httpRequest
+     *            The HTTP request, which must have been passed to
+     *            {@link #createServletSynchronizer} first.
+     * @param httpResponse
+     *            The HTTP response, whose status and headers have been set.
+     * @param response
+     *            The response whose entity should be written.
+     * @return A promise completed once the entity has been written.
+     */
+    Promise<Void, IOException> writeEntity(HttpServletRequest httpRequest, HttpServletResponse httpResponse,
+            Response response);
 }
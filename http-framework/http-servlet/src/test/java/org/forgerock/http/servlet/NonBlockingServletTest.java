@@ -0,0 +1,216 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.http.servlet;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.http.Applications.simpleHttpApplication;
+import static org.forgerock.http.io.IO.newTemporaryStorage;
+import static org.forgerock.http.protocol.Response.newResponsePromise;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.forgerock.http.Handler;
+import org.forgerock.http.io.Buffer;
+import org.forgerock.http.protocol.Request;
+import org.forgerock.http.protocol.Response;
+import org.forgerock.http.protocol.Status;
+import org.forgerock.services.context.Context;
+import org.forgerock.util.Factory;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.forgerock.util.promise.Promise;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class NonBlockingServletTest {
+
+    private static final int MAX_THREADS = 16;
+    private static final int SLOW_CLIENTS = 2 * MAX_THREADS;
+    private static final String BODY = "Hello, World!";
+
+    private Server server;
+    private QueuedThreadPool threadPool;
+    private int port;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        startServer(new Handler() {
+            @Override
+            public Promise<Response, NeverThrowsException> handle(Context context, Request request) {
+                Response response = new Response(Status.OK);
+                try {
+                    response.setEntity(request.getEntity().getString());
+                } catch (IOException e) {
+                    response.setStatus(Status.INTERNAL_SERVER_ERROR);
+                }
+                return newResponsePromise(response);
+            }
+        }, null);
+    }
+
+    private void startServer(Handler handler, Factory<Buffer> storage) throws Exception {
+        threadPool = new QueuedThreadPool(MAX_THREADS, MAX_THREADS);
+        server = new Server(threadPool);
+        ServerConnector connector = new ServerConnector(server, 1, 1);
+        server.addConnector(connector);
+
+        ServletContextHandler context = new ServletContextHandler();
+        context.setContextPath("/");
+        ServletHolder holder = new ServletHolder(new HttpFrameworkServlet(simpleHttpApplication(handler, storage)));
+        holder.setAsyncSupported(true);
+        context.addServlet(holder, "/*");
+        server.setHandler(context);
+
+        server.start();
+        port = connector.getLocalPort();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void slowClientsShouldNotHoldContainerThreads() throws Exception {
+        List<Socket> clients = new ArrayList<>();
+        try {
+            // Send the headers and the beginning of each body, then stall.
+            String partial = post(BODY).substring(0, post(BODY).length() - 5);
+            for (int i = 0; i < SLOW_CLIENTS; i++) {
+                Socket client = new Socket("localhost", port);
+                clients.add(client);
+                send(client, partial);
+            }
+            Thread.sleep(500);
+
+            // Blocked readers would exhaust the pool: the fresh request could not be served.
+            assertThat(threadPool.getBusyThreads()).isLessThan(MAX_THREADS / 2);
+            try (Socket client = new Socket("localhost", port)) {
+                client.setSoTimeout(10000);
+                send(client, post(BODY));
+                assertThat(readBody(client)).isEqualTo(BODY);
+            }
+
+            for (Socket client : clients) {
+                client.setSoTimeout(10000);
+                send(client, BODY.substring(BODY.length() - 5));
+            }
+            for (Socket client : clients) {
+                assertThat(readBody(client)).isEqualTo(BODY);
+            }
+        } finally {
+            for (Socket client : clients) {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    public void bodiesExceedingTheTemporaryStorageShouldBeRejected() throws Exception {
+        server.stop();
+        startServer(new Handler() {
+            @Override
+            public Promise<Response, NeverThrowsException> handle(Context context, Request request) {
+                return newResponsePromise(new Response(Status.OK));
+            }
+        }, newTemporaryStorage(null, 4, 4, 8));
+
+        try (Socket client = new Socket("localhost", port)) {
+            client.setSoTimeout(10000);
+            send(client, post(BODY));
+            BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), ISO_8859_1));
+            assertThat(in.readLine()).startsWith("HTTP/1.1 413");
+        }
+    }
+
+    @Test
+    public void bodiesOfUnknownLengthShouldBeStreamedToTheHandler() throws Exception {
+        server.stop();
+        startServer(new Handler() {
+            @Override
+            public Promise<Response, NeverThrowsException> handle(Context context, Request request) {
+                Response response = new Response(Status.OK);
+                try (InputStream in = request.getEntity().getRawContentInputStream()) {
+                    int length = 0;
+                    while (in.read() != -1) {
+                        length++;
+                    }
+                    response.setEntity(String.valueOf(length));
+                } catch (IOException e) {
+                    response.setStatus(Status.INTERNAL_SERVER_ERROR);
+                }
+                return newResponsePromise(response);
+            }
+        }, newTemporaryStorage(null, 4, 4, 8));
+
+        try (Socket client = new Socket("localhost", port)) {
+            client.setSoTimeout(10000);
+            send(client, "POST /echo HTTP/1.1\r\n"
+                    + "Host: localhost\r\n"
+                    + "Connection: close\r\n"
+                    + "Content-Type: text/plain\r\n"
+                    + "Transfer-Encoding: chunked\r\n"
+                    + "\r\n"
+                    + Integer.toHexString(BODY.length()) + "\r\n" + BODY + "\r\n"
+                    + "0\r\n\r\n");
+            assertThat(readBody(client)).isEqualTo(String.valueOf(BODY.length()));
+        }
+    }
+
+    private static String post(String body) {
+        return "POST /echo HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Connection: close\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Length: " + body.length() + "\r\n"
+                + "\r\n"
+                + body;
+    }
+
+    private static void send(Socket client, String data) throws IOException {
+        OutputStream out = client.getOutputStream();
+        out.write(data.getBytes(ISO_8859_1));
+        out.flush();
+    }
+
+    private static String readBody(Socket client) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), ISO_8859_1));
+        assertThat(in.readLine()).startsWith("HTTP/1.1 200");
+        String line;
+        while ((line = in.readLine()) != null && !line.isEmpty()) {
+            // Skip the headers.
+        }
+        StringBuilder body = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            body.append((char) c);
+        }
+        return body.toString();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json.jose.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.jose.utils.Utils.parseJson;
+import static org.forgerock.json.jose.utils.Utils.writeJsonObject;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.forgerock.json.jose.exceptions.InvalidJwtException;
+import org.forgerock.json.jose.jwk.KeyUse;
+import org.forgerock.json.jose.jwk.OctJWK;
+import org.testng.annotations.Test;
+
+public class UtilsTest {
+
+    @Test
+    public void shouldWriteJsonWebKeyAsObject() {
+        OctJWK jwk = new OctJWK(KeyUse.SIG, "HS256", "key-id", "AQI", null, null, null);
+
+        Map<String, Object> json = roundTrip(Collections.<String, Object>singletonMap("jwk", jwk));
+
+        assertThat(json.get("jwk")).isInstanceOf(Map.class);
+        assertThat(asMap(json.get("jwk"))).containsEntry("keyId", "key-id").containsEntry("key", "AQI");
+    }
+
+    @Test
+    public void shouldWriteStringArrayAsArray() {
+        Map<String, Object> json = roundTrip(Collections.<String, Object>singletonMap("x5c", new String[] {"a", "b"}));
+
+        assertThat(json.get("x5c")).isEqualTo(Arrays.asList("a", "b"));
+    }
+
+    @Test
+    public void shouldWriteByteArrayAsBase64String() {
+        Map<String, Object> json = roundTrip(Collections.<String, Object>singletonMap("bytes", new byte[] {1, 2}));
+
+        assertThat(json.get("bytes")).isEqualTo("AQI=");
+    }
+
+    @Test
+    public void shouldWriteDateAsEpochMilliseconds() {
+        Map<String, Object> json = roundTrip(Collections.<String, Object>singletonMap("date", new Date(0)));
+
+        assertThat(json.get("date")).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldWriteNonFiniteNumbersAsStrings() {
+        Map<String, Object> object = new LinkedHashMap<>();
+        object.put("nan", Double.NaN);
+        object.put("infinity", Float.POSITIVE_INFINITY);
+
+        Map<String, Object> json = roundTrip(object);
+
+        assertThat(json.get("nan")).isEqualTo("NaN");
+        assertThat(json.get("infinity")).isEqualTo("Infinity");
+    }
+
+    @Test(expectedExceptions = InvalidJwtException.class)
+    public void shouldFailToWriteObjectsWhichAreNotSerializable() {
+        writeJsonObject(Collections.<String, Object>singletonMap("object", new Object()));
+    }
+
+    private static Map<String, Object> roundTrip(Map<String, Object> object) {
+        return parseJson(writeJsonObject(object));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object object) {
+        return (Map<String, Object>) object;
+    }
+}
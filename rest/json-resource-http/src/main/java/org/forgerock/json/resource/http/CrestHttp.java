@@ -12,13 +12,16 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource.http;
 
 import static org.forgerock.json.resource.http.HttpUtils.*;
+import static org.forgerock.util.time.Duration.duration;
 
 import java.net.URI;
+import java.util.concurrent.Executor;
 
 import org.forgerock.json.resource.CrestApplication;
 import org.forgerock.services.context.Context;
@@ -29,7 +32,10 @@ import org.forgerock.http.handler.Handlers;
 import org.forgerock.json.resource.ConnectionFactory;
 import org.forgerock.json.resource.RequestHandler;
 import org.forgerock.json.resource.Resources;
+import org.forgerock.util.Option;
+import org.forgerock.util.Options;
 import org.forgerock.util.Reject;
+import org.forgerock.util.time.Duration;
 
 /**
  * <p>A CREST HTTP utility class which creates instances of the {@link HttpAdapter}
@@ -40,6 +46,35 @@ import org.forgerock.util.Reject;
  */
 public final class CrestHttp {
 
+    /**
+     * The executor used to hand query responses over to the HTTP container while the query is still returning
+     * results. When set, query results are streamed to the client through a bounded buffer as they are returned by
+     * the resource provider, so that neither the time to first byte nor the memory used depends on the number of
+     * results. A query which fails after some results have been streamed completes the response with an
+     * {@code "error"} field following {@code "resultCount"}, since the status code has already been sent.
+     * <p>
+     * The executor must run the hand-over on another thread than the one returning query results: if it runs it on
+     * the calling thread, as a direct executor does, the response is fully buffered instead.
+     * <p>
+     * Defaults to {@code null}, meaning that query responses are fully buffered before being returned.
+     */
+    public static final Option<Executor> OPTION_QUERY_STREAMING_EXECUTOR = Option.of(Executor.class, null);
+
+    /**
+     * The maximum number of bytes of a streamed query response which may be buffered ahead of the HTTP container
+     * before the resource provider is blocked. Defaults to 64 KiB.
+     */
+    public static final Option<Integer> OPTION_QUERY_STREAMING_BUFFER_SIZE = Option.withDefault(64 * 1024);
+
+    /**
+     * The maximum time a resource provider is blocked waiting for the HTTP container to read a streamed query
+     * response, once {@link #OPTION_QUERY_STREAMING_BUFFER_SIZE} bytes are buffered. The query is then aborted and
+     * the response ended, so that a response which is never read does not block the provider forever. Defaults to
+     * 1 minute.
+     */
+    public static final Option<Duration> OPTION_QUERY_STREAMING_WRITE_TIMEOUT =
+            Option.withDefault(duration("1 minute"));
+
     private CrestHttp() {
     }
 
@@ -137,6 +172,20 @@ public final class CrestHttp {
         return Handlers.chainOf(new HttpAdapter(application, factory), newOptionsFilter());
     }
 
+    /**
+     * Creates a new JSON resource HTTP handler with the provided CREST request handler and options.
+     *
+     * @param application The application.
+     * @param factory A factory for creating parent HTTP Contexts, or {@code null} to use the default one.
+     * @param options The options, such as {@link #OPTION_QUERY_STREAMING_EXECUTOR}.
+     * @return The handler
+     */
+    public static Handler newHttpHandler(CrestApplication application, HttpContextFactory factory,
+            Options options) {
+        Reject.ifNull(application, options);
+        return Handlers.chainOf(new HttpAdapter(application, factory, options), newOptionsFilter());
+    }
+
     /**
      * Creates a new JSON resource HTTP handler with the provided CREST request handler.
      *
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 package org.forgerock.json.resource.http;
 
@@ -75,6 +76,7 @@ import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 import org.forgerock.api.CrestApiProducer;
 import org.forgerock.api.jackson.PathsModule;
@@ -125,9 +127,11 @@ import org.forgerock.services.context.Context;
 import org.forgerock.services.context.RootContext;
 import org.forgerock.services.descriptor.Describable;
 import org.forgerock.util.AsyncFunction;
+import org.forgerock.util.Options;
 import org.forgerock.util.i18n.PreferredLocales;
 import org.forgerock.util.promise.NeverThrowsException;
 import org.forgerock.util.promise.Promise;
+import org.forgerock.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -180,6 +184,9 @@ final class HttpAdapter implements Handler, Describable<Swagger, org.forgerock.h
 
     private final ConnectionFactory connectionFactory;
     private final HttpContextFactory contextFactory;
+    private final Executor queryStreamingExecutor;
+    private final int queryStreamingBufferSize;
+    private final Duration queryStreamingWriteTimeout;
     private final String apiId;
     private final String apiVersion;
     private final List<Describable.Listener> apiListeners = new CopyOnWriteArrayList<>();
@@ -245,8 +252,28 @@ final class HttpAdapter implements Handler, Describable<Swagger, org.forgerock.h
      *            context of each request context, or {@code null} if the
      *            {@link SecurityContextFactory} should be used.
      */
-    @SuppressWarnings("deprecation")
     public HttpAdapter(CrestApplication application, HttpContextFactory contextFactory) {
+        this(application, contextFactory, Options.defaultOptions());
+    }
+
+    /**
+     * Creates a new HTTP adapter with the provided connection factory, context
+     * factory and options.
+     *
+     * @param application
+     *            The CREST application.
+     * @param contextFactory
+     *            The context factory which will be used to obtain the parent
+     *            context of each request context, or {@code null} if the
+     *            {@link SecurityContextFactory} should be used.
+     * @param options
+     *            The options, as defined in {@link CrestHttp}.
+     */
+    @SuppressWarnings("deprecation")
+    public HttpAdapter(CrestApplication application, HttpContextFactory contextFactory, Options options) {
+        this.queryStreamingExecutor = options.get(CrestHttp.OPTION_QUERY_STREAMING_EXECUTOR);
+        this.queryStreamingBufferSize = options.get(CrestHttp.OPTION_QUERY_STREAMING_BUFFER_SIZE);
+        this.queryStreamingWriteTimeout = options.get(CrestHttp.OPTION_QUERY_STREAMING_WRITE_TIMEOUT);
         this.contextFactory = contextFactory != null ? contextFactory : SecurityContextFactory
                 .getHttpServletContextFactory();
         this.connectionFactory = checkNotNull(application.getConnectionFactory());
@@ -717,7 +744,8 @@ final class HttpAdapter implements Handler, Describable<Swagger, org.forgerock.h
     private Promise<Response, NeverThrowsException> doRequest(Context context, org.forgerock.http.protocol.Request req,
             Response resp, Request request) throws Exception {
         Context ctx = prepareRequest(context, req, request);
-        final RequestRunner runner = new RequestRunner(ctx, request, req, resp);
+        final RequestRunner runner = new RequestRunner(ctx, request, req, resp, queryStreamingExecutor,
+                queryStreamingBufferSize, queryStreamingWriteTimeout);
         return connectionFactory.getConnectionAsync()
                 .thenAsync(new AsyncFunction<Connection, Response, NeverThrowsException>() {
                     @Override
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource.http;
@@ -48,6 +49,7 @@ import javax.mail.internet.ParseException;
 import org.forgerock.http.header.AcceptApiVersionHeader;
 import org.forgerock.http.header.ContentTypeHeader;
 import org.forgerock.http.header.MalformedHeaderException;
+import org.forgerock.http.io.BoundedPipeStream;
 import org.forgerock.http.io.PipeBufferedStream;
 import org.forgerock.http.protocol.Response;
 import org.forgerock.http.protocol.Status;
@@ -68,6 +70,7 @@ import org.forgerock.services.context.Context;
 import org.forgerock.util.encode.Base64url;
 import org.forgerock.util.promise.NeverThrowsException;
 import org.forgerock.util.promise.Promise;
+import org.forgerock.util.time.Duration;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParseException;
@@ -570,9 +573,40 @@ public final class HttpUtils {
 
         PipeBufferedStream pipeStream = new PipeBufferedStream();
         resp.setEntity(pipeStream.getOut());
+        return newJsonGenerator(req, pipeStream.getIn());
+    }
+
+    /**
+     * Creates a JSON generator which can be used for streaming JSON content
+     * in HTTP responses. Unlike {@link #getJsonGenerator}, the response entity
+     * may be read while the content is being written, and writes block while
+     * {@code bufferSize} bytes are waiting to be read.
+     *
+     * @param req
+     *            The HTTP request.
+     * @param resp
+     *            The HTTP response.
+     * @param bufferSize
+     *            The maximum number of bytes written but not yet read.
+     * @param writeTimeout
+     *            The maximum time to wait for the response to be read once
+     *            the buffer is full.
+     * @return A JSON generator which can be used to write out a JSON response.
+     * @throws IOException
+     *             If an error occurred while obtaining an output stream.
+     */
+    static JsonGenerator getStreamingJsonGenerator(org.forgerock.http.protocol.Request req,
+            Response resp, int bufferSize, Duration writeTimeout) throws IOException {
+
+        BoundedPipeStream pipeStream = new BoundedPipeStream(bufferSize, writeTimeout);
+        resp.setEntity(pipeStream.getOut());
+        return newJsonGenerator(req, pipeStream.getIn());
+    }
 
+    private static JsonGenerator newJsonGenerator(org.forgerock.http.protocol.Request req,
+            OutputStream out) throws IOException {
         final JsonGenerator writer =
-                JSON_MAPPER.getFactory().createGenerator(pipeStream.getIn());
+                JSON_MAPPER.getFactory().createGenerator(out);
 
         // Need to have the JsonGenerator close the stream so that it is
         // properly released.
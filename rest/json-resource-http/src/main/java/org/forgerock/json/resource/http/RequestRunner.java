@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2017 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource.http;
@@ -39,12 +40,15 @@ import static org.forgerock.json.resource.http.HttpUtils.fail;
 import static org.forgerock.json.resource.http.HttpUtils.getIfNoneMatch;
 import static org.forgerock.json.resource.http.HttpUtils.getJsonGenerator;
 import static org.forgerock.json.resource.http.HttpUtils.getRequestedProtocolVersion;
+import static org.forgerock.json.resource.http.HttpUtils.getStreamingJsonGenerator;
 import static org.forgerock.util.Utils.closeSilently;
 import static org.forgerock.util.promise.Promises.newResultPromise;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -84,7 +88,9 @@ import org.forgerock.util.encode.Base64url;
 import org.forgerock.util.promise.ExceptionHandler;
 import org.forgerock.util.promise.NeverThrowsException;
 import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
 import org.forgerock.util.promise.ResultHandler;
+import org.forgerock.util.time.Duration;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectWriter;
@@ -101,17 +107,35 @@ final class RequestRunner implements RequestVisitor<Promise<Response, NeverThrow
     private final Response httpResponse;
     private final Version protocolVersion;
     private final Request request;
-    private final JsonGenerator jsonGenerator;
+    // Executor handing streamed query responses over to the HTTP binding, null if responses are buffered.
+    private final Executor streamingExecutor;
+    private final int streamingBufferSize;
+    private final Duration streamingWriteTimeout;
+    // Created on the first write for streamed query responses.
+    private JsonGenerator jsonGenerator;
+    // Whether the response has been handed over to the HTTP binding while the query is still returning results.
+    private boolean streaming;
 
     RequestRunner(Context context, Request request, org.forgerock.http.protocol.Request httpRequest,
             Response httpResponse) throws Exception {
+        this(context, request, httpRequest, httpResponse, null, 0, Duration.UNLIMITED);
+    }
+
+    RequestRunner(Context context, Request request, org.forgerock.http.protocol.Request httpRequest,
+            Response httpResponse, Executor streamingExecutor, int streamingBufferSize,
+            Duration streamingWriteTimeout) throws Exception {
         this.context = context;
         this.request = request;
         this.httpRequest = httpRequest;
         this.httpResponse = httpResponse;
         // cache the request's protocol version to avoid repeated BadRequestExceptions at call-sites
         this.protocolVersion = getRequestedProtocolVersion(httpRequest);
-        this.jsonGenerator = getJsonGenerator(httpRequest, httpResponse);
+        this.streamingExecutor = request instanceof QueryRequest ? streamingExecutor : null;
+        this.streamingBufferSize = streamingBufferSize;
+        this.streamingWriteTimeout = streamingWriteTimeout;
+        if (this.streamingExecutor == null) {
+            this.jsonGenerator = getJsonGenerator(httpRequest, httpResponse);
+        }
     }
 
     /**
@@ -259,16 +283,27 @@ final class RequestRunner implements RequestVisitor<Promise<Response, NeverThrow
     public final Promise<Response, NeverThrowsException> visitQueryRequest(final Void p, final QueryRequest request) {
         final AtomicBoolean isFirstResult = new AtomicBoolean(true);
         final AtomicInteger resultCount = new AtomicInteger(0);
-        return connection.queryAsync(context, request, new QueryResourceHandler() {
+        // Completed as soon as the response starts being written when streaming.
+        final PromiseImpl<Response, NeverThrowsException> streamedResponse = PromiseImpl.create();
+        final Promise<Response, NeverThrowsException> response =
+                connection.queryAsync(context, request, new QueryResourceHandler() {
             @Override
             public boolean handleResource(final ResourceResponse resource) {
                 try {
-                    writeHeader(resource, isFirstResult);
+                    writeHeader(resource, isFirstResult, streamedResponse);
                     writeResourceJsonContent(resource);
-                    resultCount.incrementAndGet();
+                    if (resultCount.incrementAndGet() == 1 && isStreaming()) {
+                        // Let the client see the first result without waiting for the buffer to fill up.
+                        jsonGenerator.flush();
+                    }
                     return true;
                 } catch (final Exception e) {
-                    handleError(adapt(e));
+                    if (isStreaming()) {
+                        // The response has already been sent, most likely the client has gone away.
+                        onError(e);
+                    } else {
+                        handleError(adapt(e));
+                    }
                     return false;
                 }
             }
@@ -276,7 +311,7 @@ final class RequestRunner implements RequestVisitor<Promise<Response, NeverThrow
             @Override
             public void handleResult(QueryResponse result) {
                 try {
-                    writeHeader(result, isFirstResult);
+                    writeHeader(result, isFirstResult, streamedResponse);
                     jsonGenerator.writeEndArray();
                     jsonGenerator.writeNumberField(FIELD_RESULT_COUNT, resultCount.get());
                     jsonGenerator.writeStringField(FIELD_PAGED_RESULTS_COOKIE, result.getPagedResultsCookie());
@@ -317,21 +352,70 @@ final class RequestRunner implements RequestVisitor<Promise<Response, NeverThrow
         }, new AsyncFunction<ResourceException, Response, NeverThrowsException>() {
             @Override
             public Promise<Response, NeverThrowsException> apply(ResourceException e) {
+                if (isStreaming()) {
+                    // The error has been written as the trailer of the streamed response.
+                    return newResultPromise(httpResponse);
+                }
                 return handleError(e);
             }
         });
+        if (streamingExecutor == null) {
+            return response;
+        }
+        // Failures which occur before anything has been streamed result in a plain error response.
+        response.thenOnResult(new ResultHandler<Response>() {
+            @Override
+            public void handleResult(Response result) {
+                streamedResponse.tryHandleResult(result);
+            }
+        });
+        return streamedResponse;
     }
 
-    private void writeHeader(org.forgerock.json.resource.Response response, AtomicBoolean isFirstResult)
-            throws IOException {
+    private void writeHeader(org.forgerock.json.resource.Response response, AtomicBoolean isFirstResult,
+            final PromiseImpl<Response, NeverThrowsException> streamedResponse) throws IOException {
         if (isFirstResult.compareAndSet(true, false)) {
             writeApiVersionHeaders(response);
             writeAdvice();
+            if (streamingExecutor != null) {
+                startStreaming(streamedResponse);
+            }
             jsonGenerator.writeStartObject();
             jsonGenerator.writeArrayFieldStart(FIELD_RESULT);
         }
     }
 
+    /**
+     * Hands the response over to the HTTP binding, which reads it on another thread while this one keeps writing
+     * results. If the executor runs the hand-over on this thread, as a direct executor does, the binding would wait
+     * for results that this thread could then never write: the response is buffered instead, and returned once the
+     * query completes.
+     */
+    private void startStreaming(final PromiseImpl<Response, NeverThrowsException> streamedResponse)
+            throws IOException {
+        jsonGenerator = getStreamingJsonGenerator(httpRequest, httpResponse, streamingBufferSize,
+                streamingWriteTimeout);
+        final Thread writerThread = Thread.currentThread();
+        final AtomicBoolean handingOver = new AtomicBoolean(true);
+        final AtomicBoolean ranOnWriterThread = new AtomicBoolean();
+        streamingExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (handingOver.get() && Thread.currentThread() == writerThread) {
+                    ranOnWriterThread.set(true);
+                    return;
+                }
+                streamedResponse.tryHandleResult(httpResponse);
+            }
+        });
+        handingOver.set(false);
+        if (ranOnWriterThread.get()) {
+            jsonGenerator = getJsonGenerator(httpRequest, httpResponse);
+        } else {
+            streaming = true;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -367,11 +451,29 @@ final class RequestRunner implements RequestVisitor<Promise<Response, NeverThrow
     }
 
     private void onError(final Exception e) {
+        if (isStreaming()) {
+            // The response has already been sent with a success status: end it without closing the open JSON
+            // structures, so that the client gets a malformed response rather than a truncated one that it would
+            // mistake for a complete result.
+            jsonGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            closeSilently(connection, jsonGenerator);
+            // The generator does not close its target if flushing fails, e.g. when the write timed out.
+            closeSilently((Closeable) jsonGenerator.getOutputTarget());
+            return;
+        }
         // Don't close the JSON generator because the request will become
         // "completed" which then prevents us from sending an error.
         closeSilently(connection);
     }
 
+    /**
+     * Returns {@code true} once a streamed query response has started being sent, after which neither its status
+     * nor its headers can be changed.
+     */
+    private boolean isStreaming() {
+        return streaming;
+    }
+
     private String getResourceURL(final ResourceResponse resource, final CreateRequest request) {
         // Strip out everything except the scheme and host.
         StringBuilder builder = new StringBuilder()
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2013-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 package org.forgerock.json.resource.http;
 
@@ -29,12 +30,20 @@ import static org.forgerock.util.promise.Promises.newResultPromise;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URI;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.forgerock.http.protocol.Request;
 import org.forgerock.http.protocol.Response;
@@ -51,7 +60,10 @@ import org.forgerock.json.resource.ResourceResponse;
 import org.forgerock.services.context.Context;
 import org.forgerock.services.context.RootContext;
 import org.forgerock.util.i18n.LocalizableString;
+import org.forgerock.util.promise.NeverThrowsException;
 import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.PromiseImpl;
+import org.forgerock.util.time.Duration;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.testng.annotations.Test;
@@ -127,6 +139,166 @@ public class RequestRunnerTest {
         assertEquals(getResponseContent(response), "{\"code\":404,\"reason\":\"Not Found\",\"message\":\"Not Found\"}");
     }
 
+    @Test
+    public void testStreamedQueryResponseIsSentBeforeQueryCompletes() throws Exception {
+        // given
+        Context context = mock(Context.class);
+        QueryRequest request = Requests.newQueryRequest("");
+        final PromiseImpl<QueryResponse, ResourceException> queryPromise = PromiseImpl.create();
+        final AtomicReference<QueryResourceHandler> handler = new AtomicReference<>();
+        Connection connection = mockPendingQuery(context, request, queryPromise, handler);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            RequestRunner runner = new RequestRunner(context, request, newRequest(), new Response(Status.OK),
+                    executor, 1024, Duration.UNLIMITED);
+
+            // when
+            Promise<Response, NeverThrowsException> promise = runner.handleResult(connection);
+            assertThat(promise.isDone()).isFalse();
+            handler.get().handleResource(newResourceResponse("id", "rev", json(object(field("intField", 42)))));
+
+            // then
+            Response response = promise.getOrThrow(10, TimeUnit.SECONDS);
+            queryPromise.handleException(EXCEPTION);
+            assertThat(response.getStatus()).isEqualTo(Status.OK);
+            assertEquals(getResponseContent(response), "{" + "\"result\":["
+                    + "{\"_id\":\"id\",\"_rev\":\"rev\",\"intField\":42}],\"resultCount\":1,"
+                    + "\"error\":{\"code\":404,\"reason\":\"Not Found\",\"message\":\"Not Found\"}}");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testQueryResponseIsBufferedWithDirectStreamingExecutor() throws Exception {
+        // given
+        Context context = mock(Context.class);
+        QueryRequest request = Requests.newQueryRequest("");
+        final PromiseImpl<QueryResponse, ResourceException> queryPromise = PromiseImpl.create();
+        final AtomicReference<QueryResourceHandler> handler = new AtomicReference<>();
+        Connection connection = mockPendingQuery(context, request, queryPromise, handler);
+        RequestRunner runner = new RequestRunner(context, request, newRequest(), new Response(Status.OK),
+                new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        command.run();
+                    }
+                }, 16, Duration.UNLIMITED);
+
+        // when
+        Promise<Response, NeverThrowsException> promise = runner.handleResult(connection);
+        // more than the streaming buffer size, which would block a streamed response
+        for (int i = 0; i < 10; i++) {
+            handler.get().handleResource(newResourceResponse("id", "rev", json(object(field("intField", i)))));
+        }
+
+        // then
+        assertThat(promise.isDone()).isFalse();
+        queryPromise.handleResult(newQueryResponse());
+        Response response = promise.getOrThrow();
+        assertThat(response.getStatus()).isEqualTo(Status.OK);
+        assertThat(getResponseContent(response)).contains("\"resultCount\":10");
+    }
+
+    @Test
+    public void testStreamedQueryIsAbortedWhenResponseIsNotRead() throws Exception {
+        // given
+        Context context = mock(Context.class);
+        QueryRequest request = Requests.newQueryRequest("");
+        final PromiseImpl<QueryResponse, ResourceException> queryPromise = PromiseImpl.create();
+        final AtomicReference<QueryResourceHandler> handler = new AtomicReference<>();
+        Connection connection = mockPendingQuery(context, request, queryPromise, handler);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            RequestRunner runner = new RequestRunner(context, request, newRequest(), new Response(Status.OK),
+                    executor, 16, Duration.duration("100 milliseconds"));
+            runner.handleResult(connection);
+
+            // when
+            boolean accepted = true;
+            for (int i = 0; i < 10 && accepted; i++) {
+                accepted = handler.get().handleResource(
+                        newResourceResponse("id", "rev", json(object(field("intField", i)))));
+            }
+
+            // then
+            assertThat(accepted).isFalse();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testStreamedQueryIsLeftUnterminatedWhenWritingFails() throws Exception {
+        // given
+        Context context = mock(Context.class);
+        QueryRequest request = Requests.newQueryRequest("");
+        final PromiseImpl<QueryResponse, ResourceException> queryPromise = PromiseImpl.create();
+        final AtomicReference<QueryResourceHandler> handler = new AtomicReference<>();
+        Connection connection = mockPendingQuery(context, request, queryPromise, handler);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            RequestRunner runner = new RequestRunner(context, request, newRequest(), new Response(Status.OK),
+                    executor, 1024, Duration.UNLIMITED);
+            Promise<Response, NeverThrowsException> promise = runner.handleResult(connection);
+            handler.get().handleResource(newResourceResponse("id", "rev", json(object(field("intField", 42)))));
+            final Response response = promise.getOrThrow(10, TimeUnit.SECONDS);
+            Future<String> content = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws IOException {
+                    return getResponseContent(response);
+                }
+            });
+
+            // when
+            // the second result cannot be serialized, which fails the response after it has started
+            boolean accepted = handler.get().handleResource(
+                    newResourceResponse("id2", "rev", json(object(field("field", new Object())))));
+
+            // then
+            assertThat(accepted).isFalse();
+            assertThat(response.getStatus()).isEqualTo(Status.OK);
+            assertThat(content.get(10, TimeUnit.SECONDS))
+                    .startsWith("{\"result\":[{\"_id\":\"id\",\"_rev\":\"rev\",\"intField\":42}")
+                    .doesNotEndWith("}");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Connection mockPendingQuery(Context context, QueryRequest request,
+            final Promise<QueryResponse, ResourceException> queryPromise,
+            final AtomicReference<QueryResourceHandler> handler) {
+        Connection connection = mock(Connection.class);
+        when(connection.queryAsync(eq(context), eq(request), any(QueryResourceHandler.class)))
+                .thenAnswer(new Answer<Promise<QueryResponse, ResourceException>>() {
+                    @Override
+                    public Promise<QueryResponse, ResourceException> answer(InvocationOnMock invocationOnMock) {
+                        handler.set((QueryResourceHandler) invocationOnMock.getArguments()[2]);
+                        return queryPromise;
+                    }
+                });
+        return connection;
+    }
+
+    @Test
+    public void testStreamedQueryErrorBeforeFirstResultIsNotStreamed() throws Exception {
+        Context context = mock(Context.class);
+        QueryRequest request = Requests.newQueryRequest("");
+        Connection connection = mock(Connection.class);
+        when(connection.queryAsync(eq(context), eq(request), any(QueryResourceHandler.class)))
+                .thenReturn(RESOURCE_EXCEPTION);
+        Executor executor = mock(Executor.class);
+        RequestRunner runner = new RequestRunner(context, request, newRequest(), new Response(Status.OK),
+                executor, 1024, Duration.UNLIMITED);
+
+        Response response = runner.handleResult(connection).getOrThrow();
+
+        assertThat(response.getStatus()).isEqualTo(Status.NOT_FOUND);
+        assertEquals(getResponseContent(response), "{\"code\":404,\"reason\":\"Not Found\",\"message\":\"Not Found\"}");
+        verifyNoInteractions(executor);
+    }
+
     @Test
     public void testLocationIsCorrectWhenCreatingResourceWithUserProvidedResourceId() throws Exception {
         // given
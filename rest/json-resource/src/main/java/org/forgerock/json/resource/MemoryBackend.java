@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2015 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource;
@@ -20,6 +21,7 @@ import static org.forgerock.json.resource.Responses.newQueryResponse;
 import static org.forgerock.json.resource.Responses.newResourceResponse;
 import static org.forgerock.util.promise.Promises.newExceptionPromise;
 import static org.forgerock.util.promise.Promises.newResultPromise;
+import static org.forgerock.util.query.QueryFilterCompiler.newQueryFilterCompiler;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -27,7 +29,6 @@ import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
@@ -36,10 +37,11 @@ import org.forgerock.services.context.Context;
 import org.forgerock.json.JsonPointer;
 import org.forgerock.json.JsonValue;
 import org.forgerock.json.JsonValueException;
+import org.forgerock.json.JsonValueFieldResolver;
 import org.forgerock.util.encode.Base64;
 import org.forgerock.util.promise.Promise;
-import org.forgerock.util.query.QueryFilter;
-import org.forgerock.util.query.QueryFilterVisitor;
+import org.forgerock.util.query.CompiledQueryFilter;
+import org.forgerock.util.query.QueryFilterCompiler;
 
 /**
  * A simple in-memory collection resource provider which uses a {@code Map} to
@@ -47,18 +49,6 @@ import org.forgerock.util.query.QueryFilterVisitor;
  * and there are no performance guarantees.
  */
 public final class MemoryBackend implements CollectionResourceProvider {
-    private enum FilterResult {
-        FALSE, TRUE, UNDEFINED;
-
-        static FilterResult valueOf(final boolean b) {
-            return b ? TRUE : FALSE;
-        }
-
-        boolean toBoolean() {
-            return this == TRUE; // UNDEFINED collapses to FALSE.
-        }
-    }
-
     private static final class Cookie {
         private final List<SortKey> sortKeys;
         private final int lastResultIndex;
@@ -161,191 +151,8 @@ public final class MemoryBackend implements CollectionResourceProvider {
         }
     }
 
-    private static final QueryFilterVisitor<FilterResult, ResourceResponse, JsonPointer> RESOURCE_FILTER =
-            new QueryFilterVisitor<FilterResult, ResourceResponse, JsonPointer>() {
-
-            @Override
-            public FilterResult visitAndFilter(final ResourceResponse p,
-                    final List<org.forgerock.util.query.QueryFilter<JsonPointer>> subFilters) {
-                FilterResult result = FilterResult.TRUE;
-                for (final org.forgerock.util.query.QueryFilter<JsonPointer> subFilter : subFilters) {
-                    final FilterResult r = subFilter.accept(this, p);
-                    if (r.ordinal() < result.ordinal()) {
-                        result = r;
-                    }
-                    if (result == FilterResult.FALSE) {
-                        break;
-                    }
-                }
-                return result;
-            }
-
-            @Override
-            public FilterResult visitBooleanLiteralFilter(final ResourceResponse p, final boolean value) {
-                return FilterResult.valueOf(value);
-            }
-
-            @Override
-            public FilterResult visitContainsFilter(final ResourceResponse p, final JsonPointer field,
-                    final Object valueAssertion) {
-                for (final Object value : getValues(p, field)) {
-                    if (isCompatible(valueAssertion, value)) {
-                        if (valueAssertion instanceof String) {
-                            final String s1 =
-                                    ((String) valueAssertion).toLowerCase(Locale.ENGLISH);
-                            final String s2 = ((String) value).toLowerCase(Locale.ENGLISH);
-                            if (s2.contains(s1)) {
-                                return FilterResult.TRUE;
-                            }
-                        } else {
-                            // Use equality matching for numbers and booleans.
-                            if (compareValues(valueAssertion, value) == 0) {
-                                return FilterResult.TRUE;
-                            }
-                        }
-                    }
-                }
-                return FilterResult.FALSE;
-            }
-
-            @Override
-            public FilterResult visitEqualsFilter(final ResourceResponse p, final JsonPointer field,
-                    final Object valueAssertion) {
-                for (final Object value : getValues(p, field)) {
-                    if (isCompatible(valueAssertion, value)
-                            && compareValues(valueAssertion, value) == 0) {
-                        return FilterResult.TRUE;
-                    }
-                }
-                return FilterResult.FALSE;
-            }
-
-            @Override
-            public FilterResult visitExtendedMatchFilter(final ResourceResponse p,
-                    final JsonPointer field, final String matchingRuleId,
-                    final Object valueAssertion) {
-                // This backend does not support any extended filters.
-                return FilterResult.UNDEFINED;
-            }
-
-            @Override
-            public FilterResult visitGreaterThanFilter(final ResourceResponse p,
-                    final JsonPointer field, final Object valueAssertion) {
-                for (final Object value : getValues(p, field)) {
-                    if (isCompatible(valueAssertion, value)
-                            && compareValues(valueAssertion, value) < 0) {
-                        return FilterResult.TRUE;
-                    }
-                }
-                return FilterResult.FALSE;
-            }
-
-            @Override
-            public FilterResult visitGreaterThanOrEqualToFilter(final ResourceResponse p,
-                    final JsonPointer field, final Object valueAssertion) {
-                for (final Object value : getValues(p, field)) {
-                    if (isCompatible(valueAssertion, value)
-                            && compareValues(valueAssertion, value) <= 0) {
-                        return FilterResult.TRUE;
-                    }
-                }
-                return FilterResult.FALSE;
-            }
-
-            @Override
-            public FilterResult visitLessThanFilter(final ResourceResponse p, final JsonPointer field,
-                    final Object valueAssertion) {
-                for (final Object value : getValues(p, field)) {
-                    if (isCompatible(valueAssertion, value)
-                            && compareValues(valueAssertion, value) > 0) {
-                        return FilterResult.TRUE;
-                    }
-                }
-                return FilterResult.FALSE;
-            }
-
-            @Override
-            public FilterResult visitLessThanOrEqualToFilter(final ResourceResponse p,
-                    final JsonPointer field, final Object valueAssertion) {
-                for (final Object value : getValues(p, field)) {
-                    if (isCompatible(valueAssertion, value)
-                            && compareValues(valueAssertion, value) >= 0) {
-                        return FilterResult.TRUE;
-                    }
-                }
-                return FilterResult.FALSE;
-            }
-
-            @Override
-            public FilterResult visitNotFilter(final ResourceResponse p,
-                    final org.forgerock.util.query.QueryFilter<JsonPointer> subFilter) {
-                switch (subFilter.accept(this, p)) {
-                case FALSE:
-                    return FilterResult.TRUE;
-                case UNDEFINED:
-                    return FilterResult.UNDEFINED;
-                default: // TRUE
-                    return FilterResult.FALSE;
-                }
-            }
-
-            @Override
-            public FilterResult visitOrFilter(final ResourceResponse p,
-                    final List<org.forgerock.util.query.QueryFilter<JsonPointer>> subFilters) {
-                FilterResult result = FilterResult.FALSE;
-                for (final org.forgerock.util.query.QueryFilter<JsonPointer> subFilter : subFilters) {
-                    final FilterResult r = subFilter.accept(this, p);
-                    if (r.ordinal() > result.ordinal()) {
-                        result = r;
-                    }
-                    if (result == FilterResult.TRUE) {
-                        break;
-                    }
-                }
-                return result;
-            }
-
-            @Override
-            public FilterResult visitPresentFilter(final ResourceResponse p, final JsonPointer field) {
-                final JsonValue value = p.getContent().get(field);
-                return FilterResult.valueOf(value != null);
-            }
-
-            @Override
-            public FilterResult visitStartsWithFilter(final ResourceResponse p,
-                    final JsonPointer field, final Object valueAssertion) {
-                for (final Object value : getValues(p, field)) {
-                    if (isCompatible(valueAssertion, value)) {
-                        if (valueAssertion instanceof String) {
-                            final String s1 =
-                                    ((String) valueAssertion).toLowerCase(Locale.ENGLISH);
-                            final String s2 = ((String) value).toLowerCase(Locale.ENGLISH);
-                            if (s2.startsWith(s1)) {
-                                return FilterResult.TRUE;
-                            }
-                        } else {
-                            // Use equality matching for numbers and booleans.
-                            if (compareValues(valueAssertion, value) == 0) {
-                                return FilterResult.TRUE;
-                            }
-                        }
-                    }
-                }
-                return FilterResult.FALSE;
-            }
-
-            private List<Object> getValues(final ResourceResponse resource, final JsonPointer field) {
-                final JsonValue value = resource.getContent().get(field);
-                if (value == null) {
-                    return Collections.emptyList();
-                } else if (value.isList()) {
-                    return value.asList();
-                } else {
-                    return Collections.singletonList(value.getObject());
-                }
-            }
-
-        };
+    private static final QueryFilterCompiler<JsonValue, JsonPointer> FILTER_COMPILER =
+            newQueryFilterCompiler(new JsonValueFieldResolver()).withUndefinedExtendedMatch();
 
     private static final Comparator<Object> VALUE_COMPARATOR = new Comparator<Object>() {
         @Override
@@ -374,12 +181,6 @@ public final class MemoryBackend implements CollectionResourceProvider {
         }
     }
 
-    private static boolean isCompatible(final Object v1, final Object v2) {
-        return (v1 instanceof String && v2 instanceof String)
-                || (v1 instanceof Number && v2 instanceof Number)
-                || (v1 instanceof Boolean && v2 instanceof Boolean);
-    }
-
     private final AtomicLong nextResourceId = new AtomicLong();
     private final Map<String, ResourceResponse> resources = new ConcurrentHashMap<>();
     private final Object writeLock = new Object();
@@ -581,7 +382,8 @@ public final class MemoryBackend implements CollectionResourceProvider {
             return new NotSupportedException("Query by expression not supported").asPromise();
         } else {
             // No filtering or query by filter.
-            final QueryFilter<JsonPointer> filter = request.getQueryFilter();
+            final CompiledQueryFilter<JsonValue> filter =
+                    request.getQueryFilter() != null ? FILTER_COMPILER.compile(request.getQueryFilter()) : null;
 
             // If paged results are requested then decode the cookie in order to determine
             // the index of the first result to be returned.
@@ -615,7 +417,7 @@ public final class MemoryBackend implements CollectionResourceProvider {
             if (sortKeys.isEmpty()) {
                 // No sorting so stream the results.
                 for (final ResourceResponse resource : resources.values()) {
-                    if (filter == null || filter.accept(RESOURCE_FILTER, resource).toBoolean()) {
+                    if (filter == null || filter.matches(resource.getContent())) {
                         if (resultIndex >= firstResultIndex && resultIndex < lastResultIndex) {
                             handler.handleResource(resource);
                         }
@@ -629,7 +431,7 @@ public final class MemoryBackend implements CollectionResourceProvider {
                 // would need to impose administrative limits in order to control memory utilization.
                 final List<ResourceResponse> results = new ArrayList<>();
                 for (final ResourceResponse resource : resources.values()) {
-                    if (filter == null || filter.accept(RESOURCE_FILTER, resource).toBoolean()) {
+                    if (filter == null || filter.matches(resource.getContent())) {
                         results.add(resource);
                     }
                 }
@@ -12,6 +12,7 @@
  * information: "Portions Copyrighted [year] [name of copyright owner]".
  *
  * Copyright 2012-2015 ForgeRock AS.
+ * Portions Copyrighted 2026 Wren Security.
  */
 
 package org.forgerock.json.resource;
@@ -31,7 +32,7 @@ public final class QueryFilters {
     private static final QueryFilterParser<JsonPointer> PARSER = new QueryFilterParser<JsonPointer>() {
         @Override
         protected JsonPointer parseField(String s) {
-            return new JsonPointer(s);
+            return JsonPointer.intern(s);
         }
     };
 
@@ -12,6 +12,7 @@
  * information: "Portions Copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource;
@@ -68,7 +69,7 @@ public final class Requests {
         public final T addField(final String... fields) {
             try {
                 for (final String field : fields) {
-                    this.fields.add(new JsonPointer(field));
+                    this.fields.add(JsonPointer.intern(field));
                 }
             } catch (final JsonException e) {
                 throw new IllegalArgumentException(e.getMessage());
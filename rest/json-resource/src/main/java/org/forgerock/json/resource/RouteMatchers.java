@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource;
@@ -30,6 +31,7 @@ import org.forgerock.services.context.Context;
 import org.forgerock.services.routing.IncomparableRouteMatchException;
 import org.forgerock.services.routing.RouteMatch;
 import org.forgerock.services.routing.RouteMatcher;
+import org.forgerock.util.Pair;
 
 /**
  * A utility class that contains methods for creating route matchers.
@@ -114,11 +116,7 @@ public final class RouteMatchers {
 
         @Override
         public RouteMatch evaluate(Context context, Request request) {
-            final List<String> pathElements = new ArrayList<>(request.getResourcePathObject().size());
-            for (String pathElement : request.getResourcePathObject()) {
-                pathElements.add(pathElement);
-            }
-            return delegate.evaluate(context, pathElements);
+            return delegate.evaluate(context, getResourcePathElements(request));
         }
 
         @Override
@@ -148,12 +146,25 @@ public final class RouteMatchers {
             return delegate.transformApi(t, apiProducer);
         }
 
+        @Override
+        public Pair<RoutingMode, String> uriTemplate() {
+            return delegate.uriTemplate();
+        }
+
         @Override
         public int hashCode() {
             return delegate.hashCode();
         }
     }
 
+    static List<String> getResourcePathElements(Request request) {
+        final List<String> pathElements = new ArrayList<>(request.getResourcePathObject().size());
+        for (String pathElement : request.getResourcePathObject()) {
+            pathElements.add(pathElement);
+        }
+        return pathElements;
+    }
+
     /**
      * A CREST specific {@code RouteMatcher} which extracts the resource API
      * version from a {@code Request} and passes it to the common
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource;
@@ -28,11 +29,14 @@ import static org.forgerock.json.resource.Requests.copyOfReadRequest;
 import static org.forgerock.json.resource.Requests.copyOfUpdateRequest;
 import static org.forgerock.json.resource.ResourceApiVersionRoutingFilter.setApiVersionInfo;
 import static org.forgerock.json.resource.Resources.newHandler;
+import static org.forgerock.json.resource.RouteMatchers.getResourcePathElements;
 import static org.forgerock.json.resource.RouteMatchers.requestResourceApiVersionMatcher;
 import static org.forgerock.json.resource.RouteMatchers.requestUriMatcher;
 import static org.forgerock.json.resource.RouteMatchers.selfApiMatcher;
 import static org.forgerock.util.promise.Promises.newExceptionPromise;
 
+import java.util.List;
+
 import org.forgerock.api.models.ApiDescription;
 import org.forgerock.http.ApiProducer;
 import org.forgerock.http.routing.ApiVersionRouterContext;
@@ -105,6 +109,11 @@ public class Router extends AbstractRouter<Router, Request, RequestHandler, ApiD
         return requestUriMatcher(mode, pattern);
     }
 
+    @Override
+    protected List<String> getRemainingPath(Context context, Request request) {
+        return getResourcePathElements(request);
+    }
+
     /**
      * Adds a new route to this router for the provided collection resource
      * provider. New routes may be added while this router is processing
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2013-2015 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.json.resource;
@@ -269,6 +270,22 @@ public final class MemoryBackendTest {
         assertThat(resource.getContent().getObject()).isEqualTo(object(field("_id", "0")));
     }
 
+    @Test
+    public void testQueryCollectionWithUndefinedExtendedMatchFilters() throws Exception {
+        final Connection connection = getConnectionWithAliceAndBob();
+        final QueryFilter<JsonPointer> soundsLikeAlice =
+                QueryFilter.extendedMatch(new JsonPointer("name"), "soundsLike", "alyce");
+        final Collection<ResourceResponse> results = new ArrayList<>();
+        connection.query(ctx(), newQueryRequest("users").setQueryFilter(
+                QueryFilter.not(soundsLikeAlice)), results);
+        assertThat(results).isEmpty();
+        connection.query(ctx(), newQueryRequest("users").setQueryFilter(
+                QueryFilter.not(QueryFilter.and(soundsLikeAlice,
+                        QueryFilter.equalTo(new JsonPointer("name"), "alice")))), results);
+        assertThat(results).hasSize(1);
+        assertThat(results.iterator().next().getContent().get("name").asString()).isEqualTo("bob");
+    }
+
     @Test(expectedExceptions = BadRequestException.class)
     public void testQueryInstance() throws Exception {
         final Connection connection = getConnectionWithAliceAndBob();
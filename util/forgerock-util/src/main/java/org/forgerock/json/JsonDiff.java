@@ -0,0 +1,609 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the JSON Patch which turns one JSON value into another, for {@link JsonPatch#diff(JsonValue, JsonValue,
+ * int)}.
+ * <p>
+ * Objects are compared member by member. Arrays are compared with the Myers difference algorithm, run over content
+ * classes: elements with equal content share a class, and elements which changed are hashed once, bottom-up, with
+ * the element hashes of nested arrays memoised for when those arrays are compared in turn. The resulting edit script
+ * is turned into RFC 6902 operations: an element removed from one place and added in another becomes a
+ * {@code move}, an element removed and another added in the same place are diffed recursively, or replaced if they
+ * are not both objects or both arrays. Arrays which differ by more than {@link #MAX_EDIT_DISTANCE} edits are
+ * compared index by index instead.
+ * <p>
+ * Instances are single use and not thread-safe.
+ */
+final class JsonDiff {
+
+    /** The maximum edit distance computed by the Myers algorithm, which takes quadratic space in it. */
+    static final int MAX_EDIT_DISTANCE = 1024;
+
+    private static final long NULL_HASH = 0x6a09e667f3bcc908L;
+    private static final long TRUE_HASH = 0xbb67ae8584caa73bL;
+    private static final long FALSE_HASH = 0x3c6ef372fe94f82bL;
+    private static final long STRING_SEED = 0xa54ff53a5f1d36f1L;
+    private static final long NUMBER_SEED = 0x510e527fade682d1L;
+    private static final long OBJECT_SEED = 0x9b05688c2b3e6c1fL;
+    private static final long ARRAY_SEED = 0x1f83d9abfb41bd6bL;
+
+    private final List<Object> operations = new ArrayList<>();
+    /** The hashes of the elements of nested arrays, followed by the hash of the array. */
+    private final Map<Object, long[]> arrayHashes = new IdentityHashMap<>();
+    private final int maxOperations;
+    private boolean exceeded;
+
+    private JsonDiff(final int maxOperations) {
+        this.maxOperations = maxOperations;
+    }
+
+    /**
+     * Returns the list of operations which turn the original value into the target value, or a single
+     * {@code replace} of the original value if more than {@code maxOperations} operations are needed.
+     *
+     * @param original The original value.
+     * @param target The target value.
+     * @param maxOperations The maximum number of operations in the returned list.
+     * @return The list of JSON Patch operations.
+     */
+    static List<Object> diff(final JsonValue original, final JsonValue target, final int maxOperations) {
+        final JsonDiff diff = new JsonDiff(maxOperations);
+        diff.diff(original.getPointer(), original.getObject(), target.getObject());
+        if (diff.exceeded) {
+            final List<Object> replace = new ArrayList<>(1);
+            replace.add(JsonPatch.op("replace", original.getPointer(), target));
+            return replace;
+        }
+        return diff.operations;
+    }
+
+    private void diff(final JsonPointer pointer, final Object original, final Object target) {
+        if (exceeded || PersistentJson.isSameContent(original, target)) {
+            return;
+        } else if (original instanceof Map && target instanceof Map) {
+            diffObjects(pointer, (Map<?, ?>) original, (Map<?, ?>) target);
+        } else if (original instanceof List && target instanceof List) {
+            diffArrays(pointer, (List<?>) original, (List<?>) target);
+        } else if (!isEqual(original, target)) {
+            emitValue("replace", pointer, target);
+        }
+    }
+
+    private void diffObjects(final JsonPointer pointer, final Map<?, ?> original, final Map<?, ?> target) {
+        for (final Map.Entry<?, ?> entry : original.entrySet()) {
+            final String key = String.valueOf(entry.getKey());
+            if (target.containsKey(key)) {
+                diff(pointer.child(key), unwrap(entry.getValue()), unwrap(target.get(key)));
+            } else {
+                emit("remove", pointer.child(key), null);
+            }
+            if (exceeded) {
+                return;
+            }
+        }
+        for (final Map.Entry<?, ?> entry : target.entrySet()) {
+            final String key = String.valueOf(entry.getKey());
+            if (!original.containsKey(key)) {
+                emitValue("add", pointer.child(key), entry.getValue());
+                if (exceeded) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void diffArrays(final JsonPointer pointer, final List<?> originalList, final List<?> targetList) {
+        final Object[] original = elements(originalList);
+        final Object[] target = elements(targetList);
+        final long[] originalHashes = arrayHashes.get(memoKey(originalList));
+        final long[] targetHashes = arrayHashes.get(memoKey(targetList));
+
+        // Equal leading and trailing elements are common, and cheap to skip.
+        int start = 0;
+        while (start < original.length && start < target.length && isEqual(original[start], target[start])) {
+            start++;
+        }
+        int originalEnd = original.length;
+        int targetEnd = target.length;
+        while (originalEnd > start && targetEnd > start && isEqual(original[originalEnd - 1], target[targetEnd - 1])) {
+            originalEnd--;
+            targetEnd--;
+        }
+        final int n = originalEnd - start;
+        final int m = targetEnd - start;
+        if (n == 0 && m == 0) {
+            return;
+        }
+
+        // Number the content classes of the remaining elements, so that Myers compares integers. Most elements are
+        // unchanged and at the same index from either end: each such pair gets a class of its own without hashing.
+        final int[] originalClasses = new int[n];
+        final int[] targetClasses = new int[m];
+        Arrays.fill(originalClasses, -1);
+        Arrays.fill(targetClasses, -1);
+        final int[] classCount = new int[1];
+        for (int j = 0; j < m; j++) {
+            if (j < n && originalClasses[j] < 0 && isEqual(original[start + j], target[start + j])) {
+                originalClasses[j] = classCount[0]++;
+                targetClasses[j] = originalClasses[j];
+            } else if (n != m && j + n - m >= 0 && j + n - m < n && originalClasses[j + n - m] < 0
+                    && isEqual(original[start + j + n - m], target[start + j])) {
+                originalClasses[j + n - m] = classCount[0]++;
+                targetClasses[j] = originalClasses[j + n - m];
+            }
+        }
+        final Map<Long, List<ContentClass>> classes = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            if (originalClasses[i] < 0) {
+                originalClasses[i] = classOf(original, originalHashes, start + i, classes, classCount);
+            }
+        }
+        for (int j = 0; j < m; j++) {
+            if (targetClasses[j] < 0) {
+                targetClasses[j] = classOf(target, targetHashes, start + j, classes, classCount);
+            }
+        }
+
+        // Every edit needs at least half an operation: a replaced or moved element is one removal and one addition.
+        final long budget = 2L * (maxOperations - operations.size());
+        final int maxEdits = (int) Math.min(Math.min(MAX_EDIT_DISTANCE, budget), (long) n + m);
+        final byte[] script = shortestEditScript(originalClasses, targetClasses, maxEdits);
+        if (script != null) {
+            applyEditScript(pointer, start, original, target, originalClasses, targetClasses, script);
+        } else if (budget <= MAX_EDIT_DISTANCE) {
+            exceeded = true;
+        } else {
+            diffByIndex(pointer, start, original, target, n, m);
+        }
+    }
+
+    /** Pairs elements by index, then removes or appends the remaining ones. */
+    private void diffByIndex(final JsonPointer pointer, final int start, final Object[] original,
+            final Object[] target, final int n, final int m) {
+        for (int i = 0; i < Math.min(n, m) && !exceeded; i++) {
+            diffElement(pointer.child(start + i), original[start + i], target[start + i]);
+        }
+        for (int i = n - 1; i >= m && !exceeded; i--) {
+            emit("remove", pointer.child(start + i), null);
+        }
+        for (int j = n; j < m && !exceeded; j++) {
+            emitValue("add", pointer.child(start + j), target[start + j]);
+        }
+    }
+
+    /** Diffs two elements paired at the same index, which are known to differ. */
+    private void diffElement(final JsonPointer pointer, final Object original, final Object target) {
+        if ((original instanceof Map && target instanceof Map)
+                || (original instanceof List && target instanceof List)) {
+            diff(pointer, original, target);
+        } else if (!isEqual(original, target)) {
+            emitValue("replace", pointer, target);
+        }
+    }
+
+    private static final byte KEEP = 0;
+    private static final byte DELETE = 1;
+    private static final byte INSERT = 2;
+
+    /**
+     * Returns the shortest sequence of {@code KEEP}, {@code DELETE} and {@code INSERT} steps which turns the first
+     * sequence of classes into the second, or {@code null} if it is longer than {@code maxEdits} edits. This is the
+     * greedy Myers algorithm, which takes O((n + m) d) time and O(d<sup>2</sup>) space for d edits.
+     */
+    private static byte[] shortestEditScript(final int[] a, final int[] b, final int maxEdits) {
+        final int n = a.length;
+        final int m = b.length;
+        final int offset = maxEdits + 1;
+        final int[] v = new int[2 * maxEdits + 3];
+        final int[][] trace = new int[maxEdits + 1][];
+        for (int d = 0; d <= maxEdits; d++) {
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+                    x = v[offset + k + 1];
+                } else {
+                    x = v[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && a[x] == b[y]) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    return backtrack(trace, d, n, m);
+                }
+            }
+            trace[d] = copyDiagonals(v, offset, d);
+        }
+        return null;
+    }
+
+    private static int[] copyDiagonals(final int[] v, final int offset, final int d) {
+        final int[] diagonals = new int[2 * d + 1];
+        System.arraycopy(v, offset - d, diagonals, 0, diagonals.length);
+        return diagonals;
+    }
+
+    private static byte[] backtrack(final int[][] trace, final int edits, final int n, final int m) {
+        final byte[] script = new byte[n + m - (n + m - edits) / 2];
+        int position = script.length;
+        int x = n;
+        int y = m;
+        for (int d = edits; d > 0; d--) {
+            final int[] previous = trace[d - 1];
+            final int k = x - y;
+            final boolean insert = k == -d || (k != d && previous[k - 1 + d - 1] < previous[k + 1 + d - 1]);
+            final int previousK = insert ? k + 1 : k - 1;
+            final int previousX = previous[previousK + d - 1];
+            final int previousY = previousX - previousK;
+            final int startX = insert ? previousX : previousX + 1;
+            while (x > startX) {
+                script[--position] = KEEP;
+                x--;
+                y--;
+            }
+            script[--position] = insert ? INSERT : DELETE;
+            x = previousX;
+            y = previousY;
+        }
+        while (x > 0) {
+            script[--position] = KEEP;
+            x--;
+        }
+        return script;
+    }
+
+    /**
+     * Turns an edit script into operations. Each element of the original array, and each element inserted into it,
+     * is given a slot; the array being patched is at any time made of the elements in the slots which are present,
+     * in slot order, so the index of an element is the number of present slots before its own. Removed elements
+     * and inserted elements of the same class are paired into moves, and the removed and inserted elements left in
+     * each run of edits are paired in place.
+     */
+    private void applyEditScript(final JsonPointer pointer, final int start, final Object[] original,
+            final Object[] target, final int[] originalClasses, final int[] targetClasses, final byte[] script) {
+        // Lay out the slots, placing the removals of each run of edits before its insertions.
+        final int slotCount = script.length;
+        final int[] slotElement = new int[slotCount]; // index in original, or -1 - index in target
+        final int[] partner = new int[slotCount]; // slot moved to or from, paired slot, or -1
+        int slot = 0;
+        int i = 0;
+        int j = 0;
+        for (int s = 0; s < script.length;) {
+            if (script[s] == KEEP) {
+                partner[slot] = -1;
+                slotElement[slot++] = i++;
+                j++;
+                s++;
+                continue;
+            }
+            final int runStart = s;
+            while (s < script.length && script[s] != KEEP) {
+                s++;
+            }
+            for (int r = runStart; r < s; r++) {
+                if (script[r] == DELETE) {
+                    partner[slot] = -1;
+                    slotElement[slot++] = i++;
+                }
+            }
+            for (int r = runStart; r < s; r++) {
+                if (script[r] == INSERT) {
+                    partner[slot] = -1;
+                    slotElement[slot++] = -1 - j++;
+                }
+            }
+        }
+
+        // Pair removals and insertions of the same content into moves.
+        final Map<Integer, ArrayDeque<Integer>> removals = new HashMap<>();
+        final boolean[] kept = new boolean[slotCount];
+        markKept(script, slotElement, kept);
+        for (slot = 0; slot < slotCount; slot++) {
+            if (!kept[slot] && slotElement[slot] >= 0) {
+                final Integer classId = originalClasses[slotElement[slot]];
+                ArrayDeque<Integer> slots = removals.get(classId);
+                if (slots == null) {
+                    slots = new ArrayDeque<>();
+                    removals.put(classId, slots);
+                }
+                slots.add(slot);
+            }
+        }
+        final boolean[] moved = new boolean[slotCount];
+        for (slot = 0; slot < slotCount; slot++) {
+            if (slotElement[slot] < 0) {
+                final ArrayDeque<Integer> slots = removals.get(targetClasses[-1 - slotElement[slot]]);
+                if (slots != null && !slots.isEmpty()) {
+                    final int removal = slots.poll();
+                    partner[slot] = removal;
+                    partner[removal] = slot;
+                    moved[slot] = true;
+                    moved[removal] = true;
+                }
+            }
+        }
+
+        // Pair the remaining removals and insertions of each run of edits in order. A paired element keeps the slot
+        // of the removal, before the slots of the insertions, so pairing stops at the first insertion moved there.
+        for (slot = 0; slot < slotCount;) {
+            if (kept[slot]) {
+                slot++;
+                continue;
+            }
+            int removal = slot;
+            while (slot < slotCount && !kept[slot] && slotElement[slot] >= 0) {
+                slot++;
+            }
+            final int insertions = slot;
+            while (slot < slotCount && !kept[slot] && slotElement[slot] < 0) {
+                slot++;
+            }
+            int insertion = insertions;
+            while (true) {
+                while (removal < insertions && moved[removal]) {
+                    removal++;
+                }
+                if (removal == insertions || insertion == slot || moved[insertion]) {
+                    break;
+                }
+                partner[removal++] = insertion;
+                partner[insertion++] = removal - 1;
+            }
+        }
+
+        // Emit the operations in slot order, tracking the present slots in a Fenwick tree.
+        final int[] tree = new int[slotCount + 1];
+        for (slot = 0; slot < slotCount; slot++) {
+            if (slotElement[slot] >= 0) {
+                add(tree, slot, 1);
+            }
+        }
+        for (slot = 0; slot < slotCount && !exceeded; slot++) {
+            final int element = slotElement[slot];
+            final int other = partner[slot];
+            if (kept[slot]) {
+                continue;
+            } else if (moved[slot]) {
+                if (other < slot) {
+                    final int removal = element >= 0 ? slot : other;
+                    final int insertion = element >= 0 ? other : slot;
+                    final JsonPointer from = pointer.child(start + prefixSum(tree, removal));
+                    add(tree, removal, -1);
+                    emit("move", pointer.child(start + prefixSum(tree, insertion)), from);
+                    add(tree, insertion, 1);
+                }
+            } else if (element >= 0) {
+                final JsonPointer path = pointer.child(start + prefixSum(tree, slot));
+                if (other >= 0) {
+                    diffElement(path, original[start + element], target[start - 1 - slotElement[other]]);
+                } else {
+                    add(tree, slot, -1);
+                    emit("remove", path, null);
+                }
+            } else if (other < 0) {
+                add(tree, slot, 1);
+                emitValue("add", pointer.child(start + prefixSum(tree, slot)), target[start - 1 - element]);
+            }
+        }
+    }
+
+    private static void markKept(final byte[] script, final int[] slotElement, final boolean[] kept) {
+        // Kept elements are exactly the original elements whose script step is KEEP.
+        final boolean[] keptElements = new boolean[slotElement.length];
+        int i = 0;
+        for (final byte step : script) {
+            if (step != INSERT) {
+                keptElements[i++] = step == KEEP;
+            }
+        }
+        for (int slot = 0; slot < slotElement.length; slot++) {
+            kept[slot] = slotElement[slot] >= 0 && keptElements[slotElement[slot]];
+        }
+    }
+
+    private static void add(final int[] tree, final int slot, final int delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /** Returns the number of present slots before the provided one. */
+    private static int prefixSum(final int[] tree, final int slot) {
+        int sum = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    private int classOf(final Object[] elements, final long[] hashes, final int index,
+            final Map<Long, List<ContentClass>> classes, final int[] classCount) {
+        final Object element = elements[index];
+        final Long hash = hashes != null ? hashes[index] : hash(element);
+        List<ContentClass> candidates = classes.get(hash);
+        if (candidates == null) {
+            candidates = new ArrayList<>(1);
+            classes.put(hash, candidates);
+        } else {
+            for (final ContentClass candidate : candidates) {
+                if (isEqual(candidate.representative, element)) {
+                    return candidate.id;
+                }
+            }
+        }
+        final ContentClass contentClass = new ContentClass(element, classCount[0]++);
+        candidates.add(contentClass);
+        return contentClass.id;
+    }
+
+    private void emit(final String op, final JsonPointer path, final JsonPointer from) {
+        if (operations.size() >= maxOperations) {
+            exceeded = true;
+        } else {
+            operations.add(JsonPatch.op(op, path, from, null));
+        }
+    }
+
+    private void emitValue(final String op, final JsonPointer path, final Object value) {
+        if (operations.size() >= maxOperations) {
+            exceeded = true;
+        } else {
+            operations.add(JsonPatch.op(op, path, null, new JsonValue(value)));
+        }
+    }
+
+    /**
+     * Returns the hash of a JSON value, which is the same for equal values. The element hashes of arrays are
+     * memoised, so that the elements of a nested array are hashed once, however many times they are compared.
+     */
+    private long hash(final Object value) {
+        if (value instanceof Map) {
+            long hash = OBJECT_SEED;
+            for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                // Members are unordered, so combine them commutatively.
+                final Object key = entry.getKey();
+                final int keyHash = key instanceof String ? key.hashCode() : String.valueOf(key).hashCode();
+                hash += mix(keyHash * 0x9e3779b97f4a7c15L ^ hash(unwrap(entry.getValue())));
+            }
+            return hash;
+        } else if (value instanceof List) {
+            final List<?> list = (List<?>) value;
+            if (list.isEmpty()) {
+                return ARRAY_SEED;
+            }
+            final Object key = memoKey(list);
+            long[] hashes = arrayHashes.get(key);
+            if (hashes == null) {
+                hashes = new long[list.size() + 1];
+                long hash = ARRAY_SEED;
+                int i = 0;
+                for (final Object element : list) {
+                    hashes[i] = hash(unwrap(element));
+                    hash = mix(hash * 31 + hashes[i++]);
+                }
+                hashes[i] = hash;
+                arrayHashes.put(key, hashes);
+            }
+            return hashes[hashes.length - 1];
+        } else if (value == null) {
+            return NULL_HASH;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? TRUE_HASH : FALSE_HASH;
+        } else if (value instanceof String) {
+            return mix(STRING_SEED + value.hashCode());
+        } else if (value instanceof Number) {
+            return mix(NUMBER_SEED + value.hashCode());
+        }
+        return mix(System.identityHashCode(value));
+    }
+
+    /** Views of persistent arrays are created on demand, so their hashes are memoised against their node. */
+    private static Object memoKey(final List<?> list) {
+        return PersistentJson.isPersistent(list) ? PersistentJson.toNode(list) : list;
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Returns {@code true} if the two values are equal JSON values, with the semantics of {@link JsonPatch#diff}:
+     * values which are not JSON are never equal.
+     */
+    private static boolean isEqual(final Object value, final Object other) {
+        if (PersistentJson.isSameContent(value, other)) {
+            return true;
+        } else if (value == null || other == null) {
+            return value == null && other == null;
+        } else if (value instanceof Map && other instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>) value;
+            final Map<?, ?> otherMap = (Map<?, ?>) other;
+            if (map.size() != otherMap.size()) {
+                return false;
+            }
+            for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                final Object key = String.valueOf(entry.getKey());
+                final Object otherValue = otherMap.get(key);
+                if ((otherValue == null && !otherMap.containsKey(key))
+                        || !isEqual(unwrap(entry.getValue()), unwrap(otherValue))) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (value instanceof List && other instanceof List) {
+            final List<?> list = (List<?>) value;
+            final List<?> otherList = (List<?>) other;
+            if (list.size() != otherList.size()) {
+                return false;
+            }
+            final Iterator<?> i = list.iterator();
+            final Iterator<?> j = otherList.iterator();
+            while (i.hasNext()) {
+                if (!isEqual(unwrap(i.next()), unwrap(j.next()))) {
+                    return false;
+                }
+            }
+            return true;
+        } else if ((value instanceof String && other instanceof String)
+                || (value instanceof Number && other instanceof Number)
+                || (value instanceof Boolean && other instanceof Boolean)) {
+            return value.equals(other);
+        }
+        return false;
+    }
+
+    private static Object[] elements(final List<?> list) {
+        final Object[] elements = list.toArray();
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = unwrap(elements[i]);
+        }
+        return elements;
+    }
+
+    private static Object unwrap(final Object value) {
+        return value instanceof JsonValue ? ((JsonValue) value).getObject() : value;
+    }
+
+    /** Elements of arrays with equal content. */
+    private static final class ContentClass {
+        private final Object representative;
+        private final int id;
+
+        private ContentClass(final Object representative, final int id) {
+            this.representative = representative;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json;
+
+import java.util.Arrays;
+
+/**
+ * An immutable hash array mapped trie of the members of a JSON object, keyed by member name.
+ * <p>
+ * Each level of the trie consumes five bits of the hash of the member names, and updates copy only the nodes on
+ * the path to the updated member, so that the updated trie shares all other nodes with the original one. Member
+ * values may be {@code null}.
+ */
+final class JsonHashTrie {
+
+    /** The empty trie. */
+    static final JsonHashTrie EMPTY = new JsonHashTrie(BitmapNode.EMPTY, 0);
+
+    /** Returned by {@link #get(Object, Object)} when the member is not found, as values may be {@code null}. */
+    static final Object NOT_FOUND = new Object();
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    /** A trie has at most seven levels of bitmap nodes, followed by a level of collision nodes. */
+    private static final int MAX_DEPTH = 8;
+
+    private final Node root;
+    private final int size;
+
+    private JsonHashTrie(final Node root, final int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns the number of members of this trie.
+     *
+     * @return The number of members of this trie.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the value of the named member, or {@code notFound} if this trie has no such member.
+     *
+     * @param key The member name.
+     * @param notFound The value returned if this trie has no such member.
+     * @return The value of the named member, or {@code notFound}.
+     */
+    Object get(final Object key, final Object notFound) {
+        if (!(key instanceof String)) {
+            return notFound;
+        }
+        return root.find(0, hash(key), (String) key, notFound);
+    }
+
+    /**
+     * Returns a trie with the named member set to the provided value, or this trie if the member already has the
+     * very same value.
+     *
+     * @param key The member name.
+     * @param value The member value.
+     * @return The updated trie.
+     */
+    JsonHashTrie put(final String key, final Object value) {
+        final boolean[] added = new boolean[1];
+        final Node newRoot = root.assoc(0, hash(key), key, value, added);
+        return newRoot == root ? this : new JsonHashTrie(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Returns a trie without the named member, or this trie if it has no such member.
+     *
+     * @param key The member name.
+     * @return The updated trie.
+     */
+    JsonHashTrie remove(final Object key) {
+        if (!(key instanceof String)) {
+            return this;
+        }
+        final Node newRoot = root.without(0, hash(key), (String) key);
+        if (newRoot == root) {
+            return this;
+        }
+        return newRoot == null ? EMPTY : new JsonHashTrie(newRoot, size - 1);
+    }
+
+    /**
+     * Returns a cursor over the members of this trie, in hash order.
+     *
+     * @return A cursor over the members of this trie.
+     */
+    Cursor cursor() {
+        return new Cursor(root);
+    }
+
+    private static int hash(final Object key) {
+        final int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /** Iterates over the members of a trie without allocating an entry per member. */
+    static final class Cursor {
+        private final Object[][] arrays = new Object[MAX_DEPTH][];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth;
+        private String key;
+        private Object value;
+
+        private Cursor(final Node root) {
+            arrays[0] = root.array;
+        }
+
+        /**
+         * Moves to the next member.
+         *
+         * @return {@code true} if there was a next member.
+         */
+        boolean next() {
+            while (depth >= 0) {
+                final Object[] array = arrays[depth];
+                final int position = positions[depth];
+                if (position >= array.length) {
+                    depth--;
+                    continue;
+                }
+                positions[depth] = position + 2;
+                if (array[position] != null) {
+                    key = (String) array[position];
+                    value = array[position + 1];
+                    return true;
+                }
+                depth++;
+                arrays[depth] = ((Node) array[position + 1]).array;
+                positions[depth] = 0;
+            }
+            return false;
+        }
+
+        String key() {
+            return key;
+        }
+
+        Object value() {
+            return value;
+        }
+    }
+
+    /**
+     * A node of the trie. Its array holds pairs of either a member name and value, or {@code null} and a child
+     * node.
+     */
+    private abstract static class Node {
+        final Object[] array;
+
+        Node(final Object[] array) {
+            this.array = array;
+        }
+
+        abstract Object find(int shift, int hash, String key, Object notFound);
+
+        abstract Node assoc(int shift, int hash, String key, Object value, boolean[] added);
+
+        abstract Node without(int shift, int hash, String key);
+    }
+
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+
+        BitmapNode(final int bitmap, final Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        @Override
+        Object find(final int shift, final int hash, final String key, final Object notFound) {
+            final int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return notFound;
+            }
+            final int index = 2 * index(bit);
+            final Object k = array[index];
+            if (k == null) {
+                return ((Node) array[index + 1]).find(shift + BITS, hash, key, notFound);
+            }
+            return key.equals(k) ? array[index + 1] : notFound;
+        }
+
+        @Override
+        Node assoc(final int shift, final int hash, final String key, final Object value, final boolean[] added) {
+            final int bit = bit(hash, shift);
+            final int index = 2 * index(bit);
+            if ((bitmap & bit) == 0) {
+                added[0] = true;
+                final Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, index);
+                newArray[index] = key;
+                newArray[index + 1] = value;
+                System.arraycopy(array, index, newArray, index + 2, array.length - index);
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+            final Object k = array[index];
+            final Object v = array[index + 1];
+            if (k == null) {
+                final Node child = ((Node) v).assoc(shift + BITS, hash, key, value, added);
+                return child == v ? this : with(index + 1, child);
+            }
+            if (key.equals(k)) {
+                return v == value ? this : with(index + 1, value);
+            }
+            added[0] = true;
+            final Node child = split(shift + BITS, (String) k, v, hash, key, value);
+            final Object[] newArray = array.clone();
+            newArray[index] = null;
+            newArray[index + 1] = child;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        @Override
+        Node without(final int shift, final int hash, final String key) {
+            final int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            final int index = 2 * index(bit);
+            final Object k = array[index];
+            if (k == null) {
+                final Node child = ((Node) array[index + 1]).without(shift + BITS, hash, key);
+                if (child == array[index + 1]) {
+                    return this;
+                } else if (child != null) {
+                    return with(index + 1, child);
+                }
+            } else if (!key.equals(k)) {
+                return this;
+            }
+            if (bitmap == bit) {
+                return null;
+            }
+            final Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, index);
+            System.arraycopy(array, index + 2, newArray, index, newArray.length - index);
+            return new BitmapNode(bitmap ^ bit, newArray);
+        }
+
+        private BitmapNode with(final int index, final Object object) {
+            final Object[] newArray = array.clone();
+            newArray[index] = object;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        private int index(final int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private static int bit(final int hash, final int shift) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+
+        private static Node split(final int shift, final String key1, final Object value1,
+                final int hash2, final String key2, final Object value2) {
+            final int hash1 = hash(key1);
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[] { key1, value1, key2, value2 });
+            }
+            final boolean[] added = new boolean[1];
+            return EMPTY.assoc(shift, hash1, key1, value1, added).assoc(shift, hash2, key2, value2, added);
+        }
+    }
+
+    /** Holds the members whose names have the same hash, in no particular order. */
+    private static final class CollisionNode extends Node {
+        private final int hash;
+
+        CollisionNode(final int hash, final Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        @Override
+        Object find(final int shift, final int hash, final String key, final Object notFound) {
+            final int index = indexOf(key);
+            return index < 0 ? notFound : array[index + 1];
+        }
+
+        @Override
+        Node assoc(final int shift, final int hash, final String key, final Object value, final boolean[] added) {
+            if (hash != this.hash) {
+                final int bit = BitmapNode.bit(this.hash, shift);
+                return new BitmapNode(bit, new Object[] { null, this }).assoc(shift, hash, key, value, added);
+            }
+            final int index = indexOf(key);
+            if (index >= 0) {
+                if (array[index + 1] == value) {
+                    return this;
+                }
+                final Object[] newArray = array.clone();
+                newArray[index + 1] = value;
+                return new CollisionNode(hash, newArray);
+            }
+            added[0] = true;
+            final Object[] newArray = Arrays.copyOf(array, array.length + 2);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        Node without(final int shift, final int hash, final String key) {
+            final int index = indexOf(key);
+            if (index < 0) {
+                return this;
+            } else if (array.length == 2) {
+                return null;
+            }
+            final Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, index);
+            System.arraycopy(array, index + 2, newArray, index, newArray.length - index);
+            return new CollisionNode(hash, newArray);
+        }
+
+        private int indexOf(final String key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
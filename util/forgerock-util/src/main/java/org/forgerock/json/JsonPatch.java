@@ -12,6 +12,7 @@
  * information: "Portions Copyrighted [year] [name of copyright owner]".
  *
  * Copyright 2011-2016 ForgeRock AS.
+ * Portions Copyrighted 2026 Wren Security.
  */
 
 package org.forgerock.json;
@@ -76,6 +77,10 @@ public final class JsonPatch {
      * Compares two JSON values, and produces a JSON Patch value, which contains the
      * operations necessary to modify the {@code original} value to arrive at the
      * {@code target} value.
+     * <p>
+     * Objects are compared member by member, and arrays element by element: elements which
+     * were inserted, removed or moved in an array result in {@code add}, {@code remove} and
+     * {@code move} operations, rather than in a replacement of the whole array.
      *
      * @param original the original value.
      * @param target the intended target value.
@@ -83,46 +88,25 @@ public final class JsonPatch {
      * @throws NullPointerException if either of {@code original} or {@code target} are {@code null}.
      */
     public static JsonValue diff(JsonValue original, JsonValue target) {
-        final List<Object> result = new ArrayList<>();
-        if (differentTypes(original, target)) { // different types cause a replace
-            result.add(op("replace", original.getPointer(), target));
-        } else if (original.isMap()) {
-            for (String key : original.keys()) {
-                if (target.isDefined(key)) { // target also has the property
-                    JsonValue diff = diff(original.get(key), target.get(key)); // recursively compare properties
-                    if (diff.size() > 0) {
-                        result.addAll(diff.asList()); // add diff results
-                    }
-                } else { // property is missing in target
-                    result.add(op("remove", original.getPointer().child(key), null));
-                }
-            }
-            for (String key : target.keys()) {
-                if (!original.isDefined(key)) { // property is in target, not in original
-                    result.add(op("add", original.getPointer().child(key), target.get(key)));
-                }
-            }
-        } else if (original.isList()) {
-            boolean replace = false;
-            if (original.size() != target.size()) {
-                replace = true;
-            } else {
-                Iterator<JsonValue> i1 = original.iterator();
-                Iterator<JsonValue> i2 = target.iterator();
-                while (i1.hasNext() && i2.hasNext()) {
-                    if (diff(i1.next(), i2.next()).size() > 0) { // recursively compare elements
-                        replace = true;
-                        break;
-                    }
-                }
-            }
-            if (replace) { // replace list entirely
-                result.add(op("replace", original.getPointer(), target));
-            }
-        } else if (!original.isNull() && !original.getObject().equals(target.getObject())) { // simple value comparison
-            result.add(op("replace", original.getPointer(), target));
-        }
-        return new JsonValue(result);
+        return diff(original, target, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Compares two JSON values, and produces a JSON Patch value, which contains at most
+     * {@code maxOperations} operations necessary to modify the {@code original} value to
+     * arrive at the {@code target} value. If more operations are necessary, the JSON Patch
+     * value contains a single operation replacing the {@code original} value as a whole.
+     *
+     * @param original the original value.
+     * @param target the intended target value.
+     * @param maxOperations the maximum number of operations in the resulting JSON Patch value.
+     * @return the resulting JSON Patch value.
+     * @throws NullPointerException if either of {@code original} or {@code target} are {@code null}.
+     * @throws IllegalArgumentException if {@code maxOperations} is less than one.
+     */
+    public static JsonValue diff(JsonValue original, JsonValue target, int maxOperations) {
+        Reject.ifTrue(maxOperations < 1, "maxOperations must be at least one");
+        return new JsonValue(JsonDiff.diff(original, target, maxOperations));
     }
 
     /**
@@ -138,6 +122,9 @@ public final class JsonPatch {
     public static boolean isEqual(JsonValue value, JsonValue other) {
         Reject.ifFalse(isJsonPrimitive(value) && isJsonPrimitive(other),
                 "JsonPatch#isEqual only supports recognizable JSON primitives");
+        if (PersistentJson.isSameContent(value.getObject(), other.getObject())) { // shared structure
+            return true;
+        }
         if (differentTypes(value, other)) {
             return false;
         }
@@ -187,10 +174,17 @@ public final class JsonPatch {
                 && !(v1.isBoolean() && v2.isBoolean());
     }
 
-    private static HashMap<String, Object> op(String op, JsonPointer pointer, JsonValue value) {
+    static HashMap<String, Object> op(String op, JsonPointer pointer, JsonValue value) {
+        return op(op, pointer, null, value);
+    }
+
+    static HashMap<String, Object> op(String op, JsonPointer pointer, JsonPointer from, JsonValue value) {
         HashMap<String, Object> result = new HashMap<String, Object>();
         result.put(OP_PTR.leaf(), op);
         result.put(PATH_PTR.leaf(), pointer.toString());
+        if (from != null) {
+            result.put(FROM_PTR.leaf(), from.toString());
+        }
         if (value != null) {
             result.put(VALUE_PTR.leaf(), value.copy().getObject());
         }
@@ -323,13 +317,13 @@ public final class JsonPatch {
                     throw new JsonValueException(operation, "cannot move root object");
                 }
                 JsonValue object = sourceParent.get(sourcePath.leaf());
-                JsonValue destParent = parentValue(destPath, original);
-                if (destParent == null) {
+                if (destPath.parent() == null) {
                     // replacing root object with moved object
                     original.setObject(object);
                 } else {
                     sourceParent.remove(sourcePath.leaf());
-                    destParent.put(destPath.leaf(), object);
+                    // the destination is resolved after the removal, which may have shifted it
+                    putOrInsert(parentValue(destPath, original), destPath.leaf(), object);
                 }
             }
         },
@@ -346,7 +340,7 @@ public final class JsonPatch {
                     // replacing root object with copied object
                     original.setObject(object);
                 } else {
-                    destParent.put(destPath.leaf(), object);
+                    putOrInsert(destParent, destPath.leaf(), object);
                 }
             }
         },
@@ -373,6 +367,18 @@ public final class JsonPatch {
         }
     }
 
+    /**
+     * Sets a member of an object, or inserts an element into an array, shifting the elements
+     * at or above the index to the right, as the "move" and "copy" operations require.
+     */
+    private static void putOrInsert(JsonValue parent, String leaf, JsonValue value) {
+        if (parent.isList()) {
+            parent.add("-".equals(leaf) ? parent.size() : JsonValue.toIndex(leaf), value);
+        } else {
+            parent.put(leaf, value);
+        }
+    }
+
     /**
      * Returns the parent value of the value identified by the JSON pointer.
      *
@@ -12,12 +12,14 @@
  * information: "Portions Copyrighted [year] [name of copyright owner]".
  *
  * Copyright 2011-2016 ForgeRock AS.
+ * Portions Copyrighted 2026 Wren Security.
  */
 
 package org.forgerock.json;
 
-import java.net.URI;
-import java.net.URISyntaxException;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.text.Normalizer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
@@ -26,17 +28,54 @@ import java.util.NoSuchElementException;
 /**
  * Identifies a specific value within a JSON structure. Conforms with
  * <a href="http://tools.ietf.org/html/draft-pbryan-zyp-json-pointer-02">draft-pbryan-zip-json-pointer-02</a>.
+ * <p>
+ * Reference tokens are encoded and decoded the way {@link java.net.URI} encodes and decodes URI fragments, so that a
+ * JSON pointer string is also a valid URI fragment.
  */
 public class JsonPointer implements Iterable<String> {
 
-    /** The reference tokens that make-up the JSON pointer. */
-    private String[] tokens = new String[0];
+    private static final String[] NO_TOKENS = new String[0];
+
+    /** The number of tokens reserved for child pointers when a token array is allocated. */
+    private static final int SPARE_TOKENS = 3;
+
+    /** Marks the reserved tokens which have not been claimed by a child pointer yet, compared by identity. */
+    private static final String UNCLAIMED = new String();
+
+    /** The number of entries of the intern cache, which must be a power of 2. */
+    private static final int INTERN_CACHE_SIZE = 1024;
+
+    /** A direct-mapped cache of interned pointers: racing updates lose entries, which is harmless. */
+    private static final InternedPointer[] INTERN_CACHE = new InternedPointer[INTERN_CACHE_SIZE];
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /** Bit masks of the US-ASCII characters allowed in URI fragments, which do not need to be escaped. */
+    private static final long LEGAL_LOW_MASK = mask(0, 64, "!$&'()*+,-./:;=?") | mask(0, 64, "0123456789");
+    private static final long LEGAL_HIGH_MASK = mask(64, 128, "@[]_~")
+            | mask(64, 128, "ABCDEFGHIJKLMNOPQRSTUVWXYZ") | mask(64, 128, "abcdefghijklmnopqrstuvwxyz");
+
+    /**
+     * The reference tokens that make-up the JSON pointer, followed by the tokens of any child pointers sharing the
+     * array.
+     */
+    private final String[] tokens;
+
+    /** The number of reference tokens that make-up the JSON pointer. */
+    private final int size;
+
+    /** The JSON pointer string value, computed lazily. */
+    private String string;
+
+    /** The hash code of the JSON pointer, computed lazily. */
+    private int hash;
 
     /**
      * Constructs a JSON pointer, identifying the root value of a JSON structure.
      */
     public JsonPointer() {
         // empty tokens represents pointer to root value
+        this(NO_TOKENS, 0);
     }
 
     /**
@@ -46,19 +85,7 @@ public class JsonPointer implements Iterable<String> {
      * @throws JsonException if the pointer is malformed.
      */
     public JsonPointer(String pointer) {
-        String[] split = pointer.split("/", -1);
-        int length = split.length;
-        ArrayList<String> list = new ArrayList<>(length);
-        for (int n = 0; n < length; n++) {
-            if (n == 0 && split[n].length() == 0) {
-                continue; // leading slash ignored
-            } else if (n == length - 1 && split[n].length() == 0) {
-                continue; // trailing slash ignored
-            } else {
-                list.add(decode(split[n]));
-            }
-        }
-        tokens = list.toArray(tokens);
+        this(parse(pointer), isCanonical(pointer) ? pointer : null);
     }
 
     /**
@@ -67,7 +94,7 @@ public class JsonPointer implements Iterable<String> {
      * @param tokens an array of string reference tokens.
      */
     public JsonPointer(String... tokens) {
-        this.tokens = Arrays.copyOf(tokens, tokens.length);
+        this(Arrays.copyOf(tokens, tokens.length), null);
     }
 
     /**
@@ -76,11 +103,17 @@ public class JsonPointer implements Iterable<String> {
      * @param iterable an iterable collection of reference tokens.
      */
     public JsonPointer(Iterable<String> iterable) {
-        ArrayList<String> list = new ArrayList<>();
-        for (String element : iterable) {
-            list.add(element);
-        }
-        tokens = list.toArray(tokens);
+        this(toArray(iterable), null);
+    }
+
+    private JsonPointer(final String[] tokens, final String string) {
+        this(tokens, tokens.length);
+        this.string = string;
+    }
+
+    private JsonPointer(final String[] tokens, final int size) {
+        this.tokens = tokens;
+        this.size = size;
     }
 
     /**
@@ -114,34 +147,231 @@ public class JsonPointer implements Iterable<String> {
         return new JsonPointer(iterable);
     }
 
+    /**
+     * Returns a JSON pointer identifying the specified pointer value, which may be shared with other callers.
+     * <p>
+     * The pointers of the most recently interned strings are kept in a small bounded cache, so that the pointers which
+     * are used over and over again, such as the fields of query filters or of audit events, are only parsed once.
+     * JSON pointers are immutable, so sharing them is safe.
+     *
+     * @param pointer a string containing the JSON pointer of the value to identify.
+     * @return The JSON pointer
+     * @throws JsonException if the pointer is malformed.
+     */
+    public static JsonPointer intern(final String pointer) {
+        final int h = pointer.hashCode();
+        final int index = (h ^ (h >>> 16)) & (INTERN_CACHE_SIZE - 1);
+        final InternedPointer interned = INTERN_CACHE[index];
+        if (interned != null && interned.string.equals(pointer)) {
+            return interned.pointer;
+        }
+        final JsonPointer jsonPointer = new JsonPointer(pointer);
+        INTERN_CACHE[index] = new InternedPointer(pointer, jsonPointer);
+        return jsonPointer;
+    }
+
+    private static String[] toArray(final Iterable<String> iterable) {
+        ArrayList<String> list = new ArrayList<>();
+        for (String element : iterable) {
+            list.add(element);
+        }
+        return list.toArray(NO_TOKENS);
+    }
+
+    /**
+     * Splits a JSON pointer string into decoded reference tokens, ignoring any leading and trailing slash.
+     *
+     * @param pointer the JSON pointer string to parse.
+     * @return the decoded reference tokens.
+     * @throws JsonException if a reference token is malformed.
+     */
+    private static String[] parse(final String pointer) {
+        final int length = pointer.length();
+        int count = 1;
+        for (int i = 0; i < length; i++) {
+            if (pointer.charAt(i) == '/') {
+                count++;
+            }
+        }
+        final String[] tokens = new String[count];
+        int size = 0;
+        int start = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || pointer.charAt(i) == '/') {
+                if (i > start || (start > 0 && i < length)) {
+                    tokens[size++] = decode(pointer, start, i);
+                }
+                start = i + 1;
+            }
+        }
+        return size == count ? tokens : size == 0 ? NO_TOKENS : Arrays.copyOf(tokens, size);
+    }
+
+    /**
+     * Returns {@code true} if the specified JSON pointer string is the string value of the pointer it is parsed into,
+     * which is the case when it starts with a slash, does not end with one and has no characters to be escaped.
+     */
+    private static boolean isCanonical(final String pointer) {
+        final int length = pointer.length();
+        if (length == 0 || pointer.charAt(0) != '/' || (length > 1 && pointer.charAt(length - 1) == '/')) {
+            return false;
+        }
+        for (int i = 1; i < length; i++) {
+            final char c = pointer.charAt(i);
+            if (c >= 0x80 || !isLegal(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Encodes a reference token into a string value suitable to expressing in a JSON
      * pointer string value.
      *
      * @param value the reference token value to be encoded.
-     * @return the encode reference token value.
+     * @param builder the builder to which the encoded reference token value is appended.
      */
-    private String encode(String value) {
-        try {
-            return new URI(null, null, null, null, value).toASCIIString().substring(1).replaceAll("/", "%2F");
-        } catch (URISyntaxException use) { // shouldn't happen
-            throw new IllegalStateException(use.getMessage());
+    private static void encode(final String value, final StringBuilder builder) {
+        final int length = value.length();
+        int i = 0;
+        while (i < length && isSafe(value.charAt(i))) {
+            i++;
+        }
+        if (i == length) {
+            builder.append(value);
+            return;
+        }
+        // escape the characters which are not allowed in URI fragments, but keep other non US-ASCII characters
+        final StringBuilder quoted = new StringBuilder(length + 16).append(value, 0, i);
+        boolean nonAscii = false;
+        for (; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                if (isSafe(c)) {
+                    quoted.append(c);
+                } else {
+                    appendEscape(quoted, (byte) c);
+                }
+            } else if (Character.isSpaceChar(c) || Character.isISOControl(c)) {
+                for (final byte b : String.valueOf(c).getBytes(UTF_8)) {
+                    appendEscape(quoted, b);
+                }
+            } else {
+                quoted.append(c);
+                nonAscii = true;
+            }
+        }
+        if (!nonAscii) {
+            builder.append(quoted);
+            return;
+        }
+        // as URI.toASCIIString(), normalize and escape the remaining non US-ASCII characters
+        for (final byte b : Normalizer.normalize(quoted, Normalizer.Form.NFC).getBytes(UTF_8)) {
+            if (b >= 0) {
+                builder.append((char) b);
+            } else {
+                appendEscape(builder, b);
+            }
         }
     }
 
+    private static void appendEscape(final StringBuilder builder, final byte b) {
+        builder.append('%').append(HEX_DIGITS[(b >> 4) & 0x0f]).append(HEX_DIGITS[b & 0x0f]);
+    }
+
     /**
      * Decodes a reference token into a string value that the pointer maintains.
      *
-     * @param value the reference token value to decode.
+     * @param pointer the JSON pointer string containing the reference token value to decode.
+     * @param from the index of the first character of the reference token value.
+     * @param to the index following the last character of the reference token value.
      * @return the decoded reference token value.
      * @throws JsonException if the reference token value is malformed.
      */
-    private String decode(String value) {
-        try {
-            return new URI("#" + value).getFragment();
-        } catch (URISyntaxException use) {
-            throw new JsonException(use.getMessage());
+    private static String decode(final String pointer, final int from, final int to) {
+        boolean escaped = false;
+        for (int i = from; i < to; i++) {
+            final char c = pointer.charAt(i);
+            if (c == '%') {
+                if (i + 2 >= to || hexValue(pointer.charAt(i + 1)) < 0 || hexValue(pointer.charAt(i + 2)) < 0) {
+                    throw malformed("Malformed escape pair", pointer, from, to, i);
+                }
+                escaped = true;
+                i += 2;
+            } else if (!isLegal(c)) {
+                throw malformed("Illegal character in fragment", pointer, from, to, i);
+            }
+        }
+        if (!escaped) {
+            return pointer.substring(from, to);
+        }
+        // as URI.getFragment(), decode each run of escaped octets as UTF-8
+        final StringBuilder builder = new StringBuilder(to - from);
+        final byte[] octets = new byte[(to - from) / 3];
+        int i = from;
+        while (i < to) {
+            final char c = pointer.charAt(i);
+            if (c != '%') {
+                builder.append(c);
+                i++;
+                continue;
+            }
+            int length = 0;
+            do {
+                octets[length++] = (byte) ((hexValue(pointer.charAt(i + 1)) << 4) | hexValue(pointer.charAt(i + 2)));
+                i += 3;
+            } while (i < to && pointer.charAt(i) == '%');
+            builder.append(new String(octets, 0, length, UTF_8));
+        }
+        return builder.toString();
+    }
+
+    private static JsonException malformed(final String reason, final String pointer, final int from, final int to,
+            final int index) {
+        return new JsonException(reason + " at index " + (index - from + 1) + ": #" + pointer.substring(from, to));
+    }
+
+    private static int hexValue(final char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns {@code true} if the character is allowed in a URI fragment without being escaped: an unreserved or
+     * reserved US-ASCII character, or any other character which is neither a space nor a control character.
+     */
+    private static boolean isLegal(final char c) {
+        if (c < 64) {
+            return (LEGAL_LOW_MASK & (1L << c)) != 0;
+        } else if (c < 128) {
+            return (LEGAL_HIGH_MASK & (1L << (c - 64))) != 0;
         }
+        return !Character.isSpaceChar(c) && !Character.isISOControl(c);
+    }
+
+    /**
+     * Returns {@code true} if the character is encoded as itself in a JSON pointer string.
+     */
+    private static boolean isSafe(final char c) {
+        return c < 0x80 && c != '/' && isLegal(c);
+    }
+
+    private static long mask(final int from, final int to, final String chars) {
+        long mask = 0;
+        for (int i = 0; i < chars.length(); i++) {
+            final char c = chars.charAt(i);
+            if (c >= from && c < to) {
+                mask |= 1L << (c - from);
+            }
+        }
+        return mask;
     }
 
     /**
@@ -150,7 +380,7 @@ public class JsonPointer implements Iterable<String> {
      * @return the number of reference tokens in the pointer.
      */
     public int size() {
-        return tokens.length;
+        return size;
     }
 
     /**
@@ -161,7 +391,7 @@ public class JsonPointer implements Iterable<String> {
      * @throws IndexOutOfBoundsException if the index is out of range.
      */
     public String get(int index) {
-        if (index < 0 || index >= tokens.length) {
+        if (index < 0 || index >= size) {
             throw new IndexOutOfBoundsException();
         }
         return tokens[index];
@@ -175,22 +405,18 @@ public class JsonPointer implements Iterable<String> {
      * @return a newly allocated array of strings, containing the pointer's reference tokens.
      */
     public String[] toArray() {
-        return Arrays.copyOf(tokens, tokens.length);
+        return Arrays.copyOf(tokens, size);
     }
 
     /**
      * Returns a pointer to the parent of the JSON value identified by this JSON pointer,
      * or {@code null} if the pointer has no parent JSON value (i.e. references document root).
+     * The parent pointer shares the reference tokens of this pointer.
      *
      * @return a pointer to the parent of of this JSON pointer. Can be null.
      */
     public JsonPointer parent() {
-        JsonPointer parent = null;
-        if (this.tokens.length > 0) {
-            parent = new JsonPointer();
-            parent.tokens = Arrays.copyOf(this.tokens, this.tokens.length - 1);
-        }
-        return parent;
+        return size > 0 ? new JsonPointer(tokens, size - 1) : null;
     }
 
     /**
@@ -227,7 +453,7 @@ public class JsonPointer implements Iterable<String> {
      *         in this pointer.
      */
     public JsonPointer relativePointer() {
-        return tokens.length > 0 ? relativePointer(tokens.length - 1) : this;
+        return size > 0 ? relativePointer(size - 1) : this;
     }
 
     /**
@@ -272,17 +498,14 @@ public class JsonPointer implements Iterable<String> {
      *             If {@code sz} is negative or greater than {@code size()}.
      */
     public JsonPointer relativePointer(int sz) {
-        int length = tokens.length;
-        if (sz < 0 || sz > length) {
+        if (sz < 0 || sz > size) {
             throw new IndexOutOfBoundsException();
-        } else if (sz == length) {
+        } else if (sz == size) {
             return this;
         } else if (sz == 0) {
             return new JsonPointer();
         } else {
-            JsonPointer relativePointer = new JsonPointer();
-            relativePointer.tokens = Arrays.copyOfRange(tokens, length - sz, length);
-            return relativePointer;
+            return new JsonPointer(Arrays.copyOfRange(tokens, size - sz, size), null);
         }
     }
 
@@ -293,12 +516,15 @@ public class JsonPointer implements Iterable<String> {
      * @return the last (leaf) reference token of the JSON pointer if it exists, {@code null} otherwise
      */
     public String leaf() {
-        return tokens.length > 0 ? tokens[tokens.length - 1] : null;
+        return size > 0 ? tokens[size - 1] : null;
     }
 
     /**
      * Returns a new JSON pointer, which identifies a specified child member of the
      * object identified by this pointer.
+     * <p>
+     * The child pointer shares the reference tokens of this pointer when the token array has room for the child
+     * token, and no other child has claimed it already.
      *
      * @param child the name of the child member to identify.
      * @return the child JSON pointer.
@@ -308,10 +534,21 @@ public class JsonPointer implements Iterable<String> {
         if (child == null) {
             throw new NullPointerException();
         }
-        JsonPointer pointer = new JsonPointer();
-        pointer.tokens = Arrays.copyOf(this.tokens, this.tokens.length + 1);
-        pointer.tokens[pointer.tokens.length - 1] = child;
-        return pointer;
+        if (size < tokens.length) {
+            synchronized (tokens) {
+                if (tokens[size] == UNCLAIMED) {
+                    tokens[size] = child;
+                }
+                if (child.equals(tokens[size])) {
+                    return new JsonPointer(tokens, size + 1);
+                }
+            }
+        }
+        final String[] childTokens = new String[size + 1 + SPARE_TOKENS];
+        System.arraycopy(tokens, 0, childTokens, 0, size);
+        childTokens[size] = child;
+        Arrays.fill(childTokens, size + 1, childTokens.length, UNCLAIMED);
+        return new JsonPointer(childTokens, size + 1);
     }
 
     /**
@@ -352,11 +589,11 @@ public class JsonPointer implements Iterable<String> {
             int cursor = 0;
             @Override
             public boolean hasNext() {
-                return cursor < tokens.length;
+                return cursor < size;
             }
             @Override
             public String next() {
-                if (cursor >= tokens.length) {
+                if (cursor >= size) {
                     throw new NoSuchElementException();
                 }
                 return tokens[cursor++];
@@ -375,14 +612,19 @@ public class JsonPointer implements Iterable<String> {
      */
     @Override
     public String toString() {
-        final StringBuilder sb = new StringBuilder();
-        for (String token : tokens) {
-            sb.append('/').append(encode(token));
-        }
-        if (sb.length() == 0) {
-            sb.append('/');
+        String result = string;
+        if (result == null) {
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < size; i++) {
+                encode(tokens[i], sb.append('/'));
+            }
+            if (sb.length() == 0) {
+                sb.append('/');
+            }
+            result = sb.toString();
+            string = result;
         }
-        return sb.toString();
+        return result;
     }
 
     /**
@@ -395,9 +637,20 @@ public class JsonPointer implements Iterable<String> {
      */
     @Override
     public boolean equals(Object o) {
-        return o instanceof JsonPointer
-                && ((JsonPointer) o).size() == size()
-                && Arrays.equals(tokens, ((JsonPointer) o).tokens);
+        if (this == o) {
+            return true;
+        } else if (!(o instanceof JsonPointer) || ((JsonPointer) o).size != size) {
+            return false;
+        }
+        final JsonPointer that = (JsonPointer) o;
+        if (that.tokens != tokens) {
+            for (int i = 0; i < size; i++) {
+                if (tokens[i] == null ? that.tokens[i] != null : !tokens[i].equals(that.tokens[i])) {
+                    return false;
+                }
+            }
+        }
+        return true;
     }
 
     /**
@@ -407,6 +660,25 @@ public class JsonPointer implements Iterable<String> {
      */
     @Override
     public int hashCode() {
-        return Arrays.hashCode(tokens);
+        int result = hash;
+        if (result == 0) {
+            result = 1;
+            for (int i = 0; i < size; i++) {
+                result = 31 * result + (tokens[i] == null ? 0 : tokens[i].hashCode());
+            }
+            hash = result;
+        }
+        return result;
+    }
+
+    /** An entry of the intern cache, associating a JSON pointer string with the JSON pointer it is parsed into. */
+    private static final class InternedPointer {
+        private final String string;
+        private final JsonPointer pointer;
+
+        private InternedPointer(final String string, final JsonPointer pointer) {
+            this.string = string;
+            this.pointer = pointer;
+        }
     }
 }
@@ -13,10 +13,13 @@
  *
  * Copyright © 2010–2011 ApexIdentity Inc. All rights reserved.
  * Portions Copyrighted 2011-2017 ForgeRock AS.
+ * Portions Copyrighted 2026 Wren Security.
  */
 
 package org.forgerock.json;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.AbstractMap;
 import java.util.AbstractSet;
 import java.util.ArrayList;
@@ -25,13 +28,14 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
 import org.forgerock.util.Function;
 import org.forgerock.util.RangeSet;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
 /**
  * Represents a value in a JSON object model structure. JSON values are
  * represented with standard Java objects: {@link String}, {@link Number},
@@ -680,7 +684,9 @@ public class JsonValue implements Cloneable, Iterable<JsonValue> {
     @Override
     public JsonValue clone() {
         final JsonValue result = new JsonValue(this.object, this.pointer);
-        if (isMap()) {
+        if (PersistentJson.isPersistent(object)) {
+            result.object = PersistentJson.copyOf(object);
+        } else if (isMap()) {
             result.object = new LinkedHashMap<>(this.asMap());
         } else if (isList()) {
             result.object = new ArrayList<>(this.asList());
@@ -709,6 +715,9 @@ public class JsonValue implements Cloneable, Iterable<JsonValue> {
     /**
      * Returns a deep copy of this JSON value.
      * <p>
+     * If this JSON value is {@link #isPersistent() persistent}, the copy shares
+     * the structure of this value and takes constant time.
+     * <p>
      * Note: This method is recursive, and currently has no ability to detect or
      * correct for structures containing cyclic references. Processing such a
      * structure will result in a {@link StackOverflowError} being thrown.
@@ -718,7 +727,9 @@ public class JsonValue implements Cloneable, Iterable<JsonValue> {
     public JsonValue copy() {
         // TODO: track original values to resolve cyclic references
         final JsonValue result = new JsonValue(object, pointer); // start with shallow copy
-        if (this.isMap()) {
+        if (PersistentJson.isPersistent(object)) {
+            result.object = PersistentJson.copyOf(object);
+        } else if (this.isMap()) {
             final Map<String, Object> map = object(size());
             for (final String key : keys()) {
                 map.put(key, this.get(key).copy().getObject()); // recursion
@@ -734,6 +745,47 @@ public class JsonValue implements Cloneable, Iterable<JsonValue> {
         return result;
     }
 
+    /**
+     * Returns a deep copy of this JSON value, in which JSON objects and arrays
+     * are held in persistent data structures: hash array mapped tries and
+     * vector tries which share their unmodified parts with their copies.
+     * <p>
+     * The returned value can be used through the {@code JsonValue}, {@code Map}
+     * and {@code List} APIs as usual, and stays compatible with values backed
+     * by other {@code Map}s and {@code List}s. {@link #copy()} of a persistent
+     * value takes constant time, and updates copy only the path from the root
+     * of the value to the updated member. Comparisons and {@link #diff} skip
+     * the parts which two persistent values share. However:
+     * <ul>
+     * <li>object members are iterated in hash order, not in insertion order
+     * <li>objects and arrays are stored by value: a {@code Map} or
+     * {@code List} put in a persistent value is copied, and later changes to
+     * it are not reflected in the persistent value
+     * <li>a {@code Map} or {@code List} obtained from a persistent value stops
+     * reflecting and updating the value once its member is replaced, moved or
+     * removed.
+     * </ul>
+     * Converting a value takes time proportional to its size, unless it is
+     * already persistent.
+     *
+     * @return a persistent deep copy of this JSON value.
+     * @see #isPersistent()
+     */
+    public JsonValue toPersistent() {
+        return new JsonValue(PersistentJson.copyOf(object), pointer);
+    }
+
+    /**
+     * Returns {@code true} if this JSON value is an object or array held in
+     * persistent data structures.
+     *
+     * @return {@code true} if this JSON value is persistent.
+     * @see #toPersistent()
+     */
+    public boolean isPersistent() {
+        return PersistentJson.isPersistent(object);
+    }
+
     /**
      * Defaults the JSON value to the specified value if it is currently
      * {@code null}.
@@ -1250,102 +1302,121 @@ public class JsonValue implements Cloneable, Iterable<JsonValue> {
      *
      * @return a string representation of the JSON value.
      */
-    @SuppressWarnings("unchecked")
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder();
-        if (isNull()) {
-            sb.append("null");
-        } else if (isMap()) {
-            sb.append("{ ");
-            final Map<Object, Object> map = (Map<Object, Object>) object;
-            for (final Iterator<Object> i = map.keySet().iterator(); i.hasNext();) {
-                final Object key = i.next();
-                sb.append('"');
-                appendEscapedString(sb, key.toString());
-                sb.append("\": ");
-                sb.append(new JsonValue(map.get(key)).toString()); // recursion
-                if (i.hasNext()) {
-                    sb.append(", ");
-                }
-            }
-            sb.append(" }");
-        } else if (isCollection()) {
-            sb.append("[ ");
-            for (final Iterator<Object> i = ((Collection<Object>) object).iterator(); i.hasNext();) {
-                sb.append(new JsonValue(i.next()).toString()); // recursion
-                if (i.hasNext()) {
-                    sb.append(", ");
-                }
-            }
-            sb.append(" ]");
-        } else if (isString()) {
-            sb.append('"');
-            appendEscapedString(sb, object.toString());
-            sb.append('"');
-        } else {
-            sb.append(object.toString());
+        try {
+            JsonWriter.write(object, sb, JsonWriter.Format.READABLE);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e); // cannot happen with a StringBuilder
         }
         return sb.toString();
     }
 
     /**
-     * As per json.org a string is any Unicode character except " or \ or
-     * control characters. Special characters will be escaped using a \ as
-     * follows:
-     * <ul>
-     * <li> {@literal \ "} - double quote
-     * <li> {@literal \ \} - back slash
-     * <li> {@literal \ b} - backspace
-     * <li> {@literal \ f} - form feed
-     * <li> {@literal \ n} - new line
-     * <li> {@literal \ r} - carriage return
-     * <li> {@literal \ t} - tab
-     * <li> {@literal \ u xxxx} - other control characters.
-     * </ul>
+     * Returns the JSON serialisation of this JSON value, without insignificant
+     * whitespace. Unlike {@link #toString()}, the result conforms to JSON
+     * syntax: objects which are not maps, lists, strings, numbers or booleans
+     * are written as JSON strings. This method does not apply transformations
+     * to the value's children.
+     *
+     * @return the JSON serialisation of this JSON value.
+     * @see #writeTo(Appendable)
      */
-    private static void appendEscapedString(final StringBuilder sb, final String s) {
-        final int size = s.length();
-        for (int i = 0; i < size; i++) {
-            final char c = s.charAt(i);
-            switch (c) {
-            // Escape characters which must be escaped.
-            case '"':
-                sb.append("\\\"");
-                break;
-            case '\\':
-                sb.append("\\\\");
-                break;
-            // Escape common controls to the C equivalent to make them easier to read.
-            case '\b':
-                sb.append("\\b");
-                break;
-            case '\f':
-                sb.append("\\f");
-                break;
-            case '\n':
-                sb.append("\\n");
-                break;
-            case '\r':
-                sb.append("\\r");
-                break;
-            case '\t':
-                sb.append("\\t");
-                break;
-            default:
-                if (Character.isISOControl(c)) {
-                    final String hex = Integer.toHexString(c).toUpperCase(Locale.ENGLISH);
-                    final int hexPadding = 4 - hex.length();
-                    sb.append("\\u");
-                    for (int j = 0; j < hexPadding; j++) {
-                        sb.append('0');
-                    }
-                    sb.append(hex);
-                } else {
-                    sb.append(c);
-                }
-            }
+    public String toJsonString() {
+        return toJsonString(JsonWriter.Format.COMPACT);
+    }
+
+    /**
+     * Returns the canonical JSON serialisation of this JSON value: the
+     * serialisation of {@link #toJsonString()} with the members of every
+     * object sorted by name. Equal JSON values have the same canonical
+     * serialisation, which makes it suitable as input to signatures or HMACs.
+     *
+     * @return the canonical JSON serialisation of this JSON value.
+     * @see #writeCanonicalTo(Appendable)
+     */
+    public String toCanonicalJsonString() {
+        return toJsonString(JsonWriter.Format.CANONICAL);
+    }
+
+    private String toJsonString(final JsonWriter.Format format) {
+        final StringBuilder sb = new StringBuilder();
+        try {
+            JsonWriter.write(object, sb, format);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e); // cannot happen with a StringBuilder
         }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the JSON serialisation of this JSON value, as returned by
+     * {@link #toJsonString()}, to a character sink. The tree is walked once
+     * and strings are escaped straight into the sink.
+     *
+     * @param out
+     *            the sink to which the JSON is written.
+     * @throws IOException
+     *             if the sink could not be written to.
+     */
+    public void writeTo(final Appendable out) throws IOException {
+        JsonWriter.write(object, out, JsonWriter.Format.COMPACT);
+    }
+
+    /**
+     * Writes the UTF-8 encoded JSON serialisation of this JSON value, as
+     * returned by {@link #toJsonString()}, to an output stream. The output
+     * stream is neither flushed nor closed.
+     *
+     * @param out
+     *            the output stream to which the JSON is written.
+     * @throws IOException
+     *             if the output stream could not be written to.
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        JsonWriter.write(object, out, JsonWriter.Format.COMPACT);
+    }
+
+    /**
+     * Writes this JSON value to a Jackson generator, leaving the formatting
+     * of the output to the generator. Calling this method requires Jackson
+     * core to be available.
+     *
+     * @param generator
+     *            the generator to which the JSON is written.
+     * @throws IOException
+     *             if the generator could not write the JSON.
+     */
+    public void writeTo(final JsonGenerator generator) throws IOException {
+        JsonWriter.write(object, generator, false);
+    }
+
+    /**
+     * Writes the canonical JSON serialisation of this JSON value, as returned
+     * by {@link #toCanonicalJsonString()}, to a character sink.
+     *
+     * @param out
+     *            the sink to which the JSON is written.
+     * @throws IOException
+     *             if the sink could not be written to.
+     */
+    public void writeCanonicalTo(final Appendable out) throws IOException {
+        JsonWriter.write(object, out, JsonWriter.Format.CANONICAL);
+    }
+
+    /**
+     * Writes the UTF-8 encoded canonical JSON serialisation of this JSON
+     * value, as returned by {@link #toCanonicalJsonString()}, to an output
+     * stream. The output stream is neither flushed nor closed.
+     *
+     * @param out
+     *            the output stream to which the JSON is written.
+     * @throws IOException
+     *             if the output stream could not be written to.
+     */
+    public void writeCanonicalTo(final OutputStream out) throws IOException {
+        JsonWriter.write(object, out, JsonWriter.Format.CANONICAL);
     }
 
     private void addToken(final String token, final Object object) {
@@ -0,0 +1,84 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json;
+
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.util.query.QueryFilterCompiler;
+import org.forgerock.util.query.QueryFilterCompiler.FieldAccessor;
+import org.forgerock.util.query.QueryFilterCompiler.FieldResolver;
+
+/**
+ * Resolves {@link JsonPointer} fields of query filters compiled by a {@link QueryFilterCompiler} to match
+ * {@link JsonValue}s.
+ * <p>
+ * The tokens of each pointer are parsed once, list indexes included, and the resolved fields walk the raw Java
+ * objects of the JSON values without wrapping each of their members in a {@link JsonValue}. A field is defined if
+ * {@link JsonValue#get(JsonPointer)} would return a non-{@code null} JSON value.
+ */
+public final class JsonValueFieldResolver implements FieldResolver<JsonValue, JsonPointer> {
+
+    @Override
+    public FieldAccessor<JsonValue> resolve(final JsonPointer field) {
+        return new PointerAccessor(field.toArray());
+    }
+
+    private static final class PointerAccessor implements FieldAccessor<JsonValue> {
+        private final String[] tokens;
+        private final int[] indexes;
+
+        private PointerAccessor(final String[] tokens) {
+            this.tokens = tokens;
+            this.indexes = new int[tokens.length];
+            for (int i = 0; i < tokens.length; i++) {
+                indexes[i] = JsonValue.toIndex(tokens[i]);
+            }
+        }
+
+        @Override
+        public Object getValue(final JsonValue value) {
+            Object object = value.getObject();
+            for (int i = 0; i < tokens.length; i++) {
+                if (object instanceof Map) {
+                    final Map<?, ?> map = (Map<?, ?>) object;
+                    object = map.get(tokens[i]);
+                    if (object == null && !map.containsKey(tokens[i])) {
+                        return QueryFilterCompiler.UNDEFINED;
+                    }
+                } else if (object instanceof List) {
+                    final List<?> list = (List<?>) object;
+                    if (indexes[i] < 0 || indexes[i] >= list.size()) {
+                        return QueryFilterCompiler.UNDEFINED;
+                    }
+                    object = list.get(indexes[i]);
+                } else {
+                    return QueryFilterCompiler.UNDEFINED;
+                }
+                if (object instanceof JsonValue) {
+                    object = ((JsonValue) object).getObject();
+                }
+            }
+            return object;
+        }
+
+        @Override
+        public String toString() {
+            return new JsonPointer(tokens).toString();
+        }
+    }
+}
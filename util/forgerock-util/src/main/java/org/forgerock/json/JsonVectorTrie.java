@@ -0,0 +1,224 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json;
+
+import java.util.Arrays;
+
+/**
+ * An immutable vector of the elements of a JSON array, held in a trie of 32-wide nodes with a separate tail.
+ * <p>
+ * Reading, replacing and appending elements copy only the nodes on the path to the element, so that the updated
+ * vector shares all other nodes with the original one. Inserting or removing elements before the end of the
+ * vector rebuilds the elements which follow them.
+ */
+final class JsonVectorTrie {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    /** The empty vector. */
+    static final JsonVectorTrie EMPTY = new JsonVectorTrie(0, BITS, new Object[WIDTH], new Object[0]);
+
+    private final int size;
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+
+    private JsonVectorTrie(final int size, final int shift, final Object[] root, final Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    /**
+     * Returns the number of elements of this vector.
+     *
+     * @return The number of elements of this vector.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the element at the provided index.
+     *
+     * @param index The index of the element, which must be within bounds.
+     * @return The element at the provided index.
+     */
+    Object get(final int index) {
+        return arrayFor(index)[index & MASK];
+    }
+
+    /**
+     * Returns a vector with the element at the provided index replaced, or this vector if the element is already
+     * the very same value.
+     *
+     * @param index The index of the element, which must be within bounds.
+     * @param value The new element.
+     * @return The updated vector.
+     */
+    JsonVectorTrie set(final int index, final Object value) {
+        if (get(index) == value) {
+            return this;
+        }
+        if (index >= tailOffset()) {
+            final Object[] newTail = tail.clone();
+            newTail[index & MASK] = value;
+            return new JsonVectorTrie(size, shift, root, newTail);
+        }
+        return new JsonVectorTrie(size, shift, set(shift, root, index, value), tail);
+    }
+
+    /**
+     * Returns a vector with the provided element appended.
+     *
+     * @param value The element to append.
+     * @return The updated vector.
+     */
+    JsonVectorTrie append(final Object value) {
+        if (size - tailOffset() < WIDTH) {
+            final Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = value;
+            return new JsonVectorTrie(size + 1, shift, root, newTail);
+        }
+        final Object[] newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tail);
+        }
+        return new JsonVectorTrie(size + 1, newShift, newRoot, new Object[] { value });
+    }
+
+    /**
+     * Returns a vector with the provided element inserted at the provided index.
+     *
+     * @param index The index at which the element is inserted, from zero to the size of this vector.
+     * @param value The element to insert.
+     * @return The updated vector.
+     */
+    JsonVectorTrie insert(final int index, final Object value) {
+        if (index == size) {
+            return append(value);
+        }
+        JsonVectorTrie result = take(index).append(value);
+        for (int i = index; i < size; i++) {
+            result = result.append(get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns a vector without the element at the provided index.
+     *
+     * @param index The index of the element, which must be within bounds.
+     * @return The updated vector.
+     */
+    JsonVectorTrie remove(final int index) {
+        if (index == size - 1 && tail.length > 1) {
+            return new JsonVectorTrie(size - 1, shift, root, Arrays.copyOf(tail, tail.length - 1));
+        }
+        JsonVectorTrie result = take(index);
+        for (int i = index + 1; i < size; i++) {
+            result = result.append(get(i));
+        }
+        return result;
+    }
+
+    /** Returns a vector of the first elements of this vector, sharing the full nodes which hold them. */
+    private JsonVectorTrie take(final int count) {
+        if (count == size) {
+            return this;
+        }
+        final int tailOffset = tailOffset();
+        JsonVectorTrie result = EMPTY;
+        int i = 0;
+        while (i + WIDTH <= count && i < tailOffset) {
+            result = result.appendNode(arrayFor(i));
+            i += WIDTH;
+        }
+        for (; i < count; i++) {
+            result = result.append(get(i));
+        }
+        return result;
+    }
+
+    /** Appends a full node of elements to a vector whose size is a multiple of the node width. */
+    private JsonVectorTrie appendNode(final Object[] node) {
+        if (size == 0) {
+            return new JsonVectorTrie(WIDTH, shift, root, node);
+        }
+        // Push the full tail into the trie, then replace the placeholder tail with the node.
+        final JsonVectorTrie pushed = append(null);
+        return new JsonVectorTrie(size + WIDTH, pushed.shift, pushed.root, node);
+    }
+
+    private int tailOffset() {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] arrayFor(final int index) {
+        if (index >= tailOffset()) {
+            return tail;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    private static Object[] set(final int level, final Object[] node, final int index, final Object value) {
+        final Object[] newNode = node.clone();
+        if (level == 0) {
+            newNode[index & MASK] = value;
+        } else {
+            final int subIndex = (index >>> level) & MASK;
+            newNode[subIndex] = set(level - BITS, (Object[]) node[subIndex], index, value);
+        }
+        return newNode;
+    }
+
+    private Object[] pushTail(final int level, final Object[] parent, final Object[] tailNode) {
+        final int subIndex = ((size - 1) >>> level) & MASK;
+        final Object[] newParent = parent.clone();
+        final Object[] nodeToInsert;
+        if (level == BITS) {
+            nodeToInsert = tailNode;
+        } else {
+            final Object[] child = (Object[]) parent[subIndex];
+            nodeToInsert = child != null ? pushTail(level - BITS, child, tailNode) : newPath(level - BITS, tailNode);
+        }
+        newParent[subIndex] = nodeToInsert;
+        return newParent;
+    }
+
+    private static Object[] newPath(final int level, final Object[] node) {
+        if (level == 0) {
+            return node;
+        }
+        final Object[] path = new Object[WIDTH];
+        path[0] = newPath(level - BITS, node);
+        return path;
+    }
+}
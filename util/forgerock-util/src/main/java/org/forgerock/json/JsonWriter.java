@@ -0,0 +1,372 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Serialises the Java objects of a {@link JsonValue} in a single walk of the tree, escaping strings straight into
+ * the sink without wrapping the members of the tree in {@link JsonValue}s or building intermediate strings.
+ * <p>
+ * Members which are themselves {@link JsonValue}s are unwrapped. Objects which are neither {@code null},
+ * {@code Map}s, {@code Collection}s, {@code Number}s nor {@code Boolean}s are written as strings. Callers which
+ * may hold other Java types, such as arrays or dates, should serialise them with Jackson instead. Except in the
+ * readable format, non-finite numbers are written as strings, as Jackson does by default, to keep the output valid.
+ */
+final class JsonWriter {
+
+    /** The formats in which JSON values can be written. */
+    enum Format {
+        /** The legacy format of {@link JsonValue#toString()}, with spaces between tokens. */
+        READABLE,
+        /** JSON without insignificant whitespace. */
+        COMPACT,
+        /** JSON without insignificant whitespace, with the members of objects sorted by name. */
+        CANONICAL
+    }
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private static final Comparator<Object> KEY_ORDER = new Comparator<Object>() {
+        @Override
+        public int compare(final Object key1, final Object key2) {
+            return String.valueOf(key1).compareTo(String.valueOf(key2));
+        }
+    };
+
+    private final Appendable out;
+    private final Format format;
+
+    private JsonWriter(final Appendable out, final Format format) {
+        this.out = out;
+        this.format = format;
+    }
+
+    /**
+     * Writes the provided object as JSON to a character sink.
+     *
+     * @param object The object to be written.
+     * @param out The sink to which the JSON is written.
+     * @param format The format of the written JSON.
+     * @throws IOException If the sink could not be written to.
+     */
+    static void write(final Object object, final Appendable out, final Format format) throws IOException {
+        new JsonWriter(out, format).writeValue(object);
+    }
+
+    /**
+     * Writes the provided object as UTF-8 encoded JSON to an output stream. The stream is neither flushed nor
+     * closed.
+     *
+     * @param object The object to be written.
+     * @param out The stream to which the JSON is written.
+     * @param format The format of the written JSON.
+     * @throws IOException If the stream could not be written to.
+     */
+    static void write(final Object object, final OutputStream out, final Format format) throws IOException {
+        final Utf8Appendable utf8 = new Utf8Appendable(out);
+        new JsonWriter(utf8, format).writeValue(object);
+        utf8.drain();
+    }
+
+    /**
+     * Writes the provided object to a Jackson generator.
+     *
+     * @param object The object to be written.
+     * @param generator The generator to which the JSON is written.
+     * @param canonical {@code true} if the members of objects should be written sorted by name.
+     * @throws IOException If the generator could not write the JSON.
+     */
+    static void write(final Object object, final JsonGenerator generator, final boolean canonical)
+            throws IOException {
+        GeneratorWriter.writeValue(unwrap(object), generator, canonical);
+    }
+
+    private void writeValue(final Object value) throws IOException {
+        final Object object = unwrap(value);
+        if (object == null) {
+            out.append("null");
+        } else if (object instanceof String) {
+            writeString((String) object);
+        } else if (object instanceof Map) {
+            writeObject((Map<?, ?>) object);
+        } else if (object instanceof Collection) {
+            writeArray((Collection<?>) object);
+        } else if (format != Format.READABLE && isNonFinite(object)) {
+            // NaN and infinities are not JSON numbers, so they are quoted as Jackson does by default.
+            writeString(object.toString());
+        } else if (object instanceof Number || object instanceof Boolean || format == Format.READABLE) {
+            out.append(object.toString());
+        } else {
+            writeString(object.toString());
+        }
+    }
+
+    private void writeObject(final Map<?, ?> map) throws IOException {
+        final boolean readable = format == Format.READABLE;
+        out.append(readable ? "{ " : "{");
+        if (format == Format.CANONICAL) {
+            final Object[] keys = map.keySet().toArray();
+            Arrays.sort(keys, KEY_ORDER);
+            for (int i = 0; i < keys.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                writeMember(keys[i], map.get(keys[i]));
+            }
+        } else {
+            boolean first = true;
+            for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!first) {
+                    out.append(readable ? ", " : ",");
+                }
+                first = false;
+                writeMember(entry.getKey(), entry.getValue());
+            }
+        }
+        out.append(readable ? " }" : "}");
+    }
+
+    private void writeMember(final Object key, final Object value) throws IOException {
+        writeString(String.valueOf(key));
+        out.append(format == Format.READABLE ? ": " : ":");
+        writeValue(value);
+    }
+
+    private void writeArray(final Collection<?> collection) throws IOException {
+        final boolean readable = format == Format.READABLE;
+        out.append(readable ? "[ " : "[");
+        for (final Iterator<?> i = collection.iterator(); i.hasNext();) {
+            writeValue(i.next());
+            if (i.hasNext()) {
+                out.append(readable ? ", " : ",");
+            }
+        }
+        out.append(readable ? " ]" : "]");
+    }
+
+    /**
+     * As per json.org a string is any Unicode character except " or \ or control characters, which are escaped
+     * with a \ as {@code \"}, {@code \\}, {@code \b}, {@code \f}, {@code \n}, {@code \r}, {@code \t}, or as a
+     * hexadecimal Unicode escape for other control characters. In the readable format, all ISO control characters
+     * are escaped, not only those below U+0020. Unescaped runs of characters are appended to the sink in one call.
+     */
+    private void writeString(final String s) throws IOException {
+        out.append('"');
+        final int length = s.length();
+        final boolean escapeIsoControls = format == Format.READABLE;
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = s.charAt(i);
+            if (c >= ' ' && c != '"' && c != '\\' && (!escapeIsoControls || c < '\u007f' || c > '\u009f')) {
+                continue;
+            }
+            if (i > start) {
+                out.append(s, start, i);
+            }
+            start = i + 1;
+            switch (c) {
+            case '"':
+                out.append("\\\"");
+                break;
+            case '\\':
+                out.append("\\\\");
+                break;
+            case '\b':
+                out.append("\\b");
+                break;
+            case '\f':
+                out.append("\\f");
+                break;
+            case '\n':
+                out.append("\\n");
+                break;
+            case '\r':
+                out.append("\\r");
+                break;
+            case '\t':
+                out.append("\\t");
+                break;
+            default:
+                out.append("\\u")
+                        .append(HEX_DIGITS[c >> 12 & 0xf])
+                        .append(HEX_DIGITS[c >> 8 & 0xf])
+                        .append(HEX_DIGITS[c >> 4 & 0xf])
+                        .append(HEX_DIGITS[c & 0xf]);
+            }
+        }
+        if (start == 0) {
+            out.append(s);
+        } else if (start < length) {
+            out.append(s, start, length);
+        }
+        out.append('"');
+    }
+
+    private static boolean isNonFinite(final Object object) {
+        return (object instanceof Double && !isFinite((Double) object))
+                || (object instanceof Float && !isFinite((Float) object));
+    }
+
+    private static boolean isFinite(final double d) {
+        return !Double.isNaN(d) && !Double.isInfinite(d);
+    }
+
+    private static Object unwrap(final Object object) {
+        return object instanceof JsonValue ? ((JsonValue) object).getObject() : object;
+    }
+
+    /** Writes to Jackson generators, kept apart so that Jackson is only loaded if a generator is used. */
+    private static final class GeneratorWriter {
+
+        private static void writeValue(final Object object, final JsonGenerator generator, final boolean canonical)
+                throws IOException {
+            if (object == null) {
+                generator.writeNull();
+            } else if (object instanceof String) {
+                generator.writeString((String) object);
+            } else if (object instanceof Map) {
+                final Map<?, ?> map = (Map<?, ?>) object;
+                generator.writeStartObject();
+                if (canonical) {
+                    final Object[] keys = map.keySet().toArray();
+                    Arrays.sort(keys, KEY_ORDER);
+                    for (final Object key : keys) {
+                        generator.writeFieldName(String.valueOf(key));
+                        writeValue(unwrap(map.get(key)), generator, true);
+                    }
+                } else {
+                    for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                        generator.writeFieldName(String.valueOf(entry.getKey()));
+                        writeValue(unwrap(entry.getValue()), generator, false);
+                    }
+                }
+                generator.writeEndObject();
+            } else if (object instanceof Collection) {
+                generator.writeStartArray();
+                for (final Object element : (Collection<?>) object) {
+                    writeValue(unwrap(element), generator, canonical);
+                }
+                generator.writeEndArray();
+            } else if (object instanceof Boolean) {
+                generator.writeBoolean((Boolean) object);
+            } else if (object instanceof Integer || object instanceof Short || object instanceof Byte) {
+                generator.writeNumber(((Number) object).intValue());
+            } else if (object instanceof Long) {
+                generator.writeNumber((Long) object);
+            } else if (object instanceof Double) {
+                generator.writeNumber((Double) object);
+            } else if (object instanceof Float) {
+                generator.writeNumber((Float) object);
+            } else if (object instanceof BigDecimal) {
+                generator.writeNumber((BigDecimal) object);
+            } else if (object instanceof BigInteger) {
+                generator.writeNumber((BigInteger) object);
+            } else if (object instanceof Number) {
+                generator.writeNumber(object.toString());
+            } else {
+                generator.writeString(object.toString());
+            }
+        }
+    }
+
+    /**
+     * Encodes characters as UTF-8 into a buffer which is written to an output stream when full, copying ASCII
+     * characters without going through a {@link java.nio.charset.CharsetEncoder}. Unpaired surrogates are
+     * encoded as {@code '?'}.
+     */
+    private static final class Utf8Appendable implements Appendable {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[8192];
+        private int position;
+
+        private Utf8Appendable(final OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public Appendable append(final CharSequence csq) throws IOException {
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append(final CharSequence csq, final int start, final int end) throws IOException {
+            for (int i = start; i < end; i++) {
+                final char c = csq.charAt(i);
+                if (c < 0x80) {
+                    if (position == buffer.length) {
+                        drain();
+                    }
+                    buffer[position++] = (byte) c;
+                } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(csq.charAt(i + 1))) {
+                    writeCodePoint(Character.toCodePoint(c, csq.charAt(++i)));
+                } else {
+                    writeCodePoint(Character.isSurrogate(c) ? '?' : c);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public Appendable append(final char c) throws IOException {
+            if (c < 0x80 && position < buffer.length) {
+                buffer[position++] = (byte) c;
+            } else {
+                writeCodePoint(Character.isSurrogate(c) ? '?' : c);
+            }
+            return this;
+        }
+
+        private void writeCodePoint(final int codePoint) throws IOException {
+            if (position > buffer.length - 4) {
+                drain();
+            }
+            if (codePoint < 0x80) {
+                buffer[position++] = (byte) codePoint;
+            } else if (codePoint < 0x800) {
+                buffer[position++] = (byte) (0xc0 | codePoint >> 6);
+                buffer[position++] = (byte) (0x80 | codePoint & 0x3f);
+            } else if (codePoint < 0x10000) {
+                buffer[position++] = (byte) (0xe0 | codePoint >> 12);
+                buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                buffer[position++] = (byte) (0x80 | codePoint & 0x3f);
+            } else {
+                buffer[position++] = (byte) (0xf0 | codePoint >> 18);
+                buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                buffer[position++] = (byte) (0x80 | codePoint & 0x3f);
+            }
+        }
+
+        private void drain() throws IOException {
+            if (position > 0) {
+                out.write(buffer, 0, position);
+                position = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts JSON structures to and from their persistent representation.
+ * <p>
+ * Persistent JSON objects and arrays are held in immutable {@link JsonHashTrie}s and {@link JsonVectorTrie}s, the
+ * <em>nodes</em>, and exposed through the mutable {@link PersistentJsonMap} and {@link PersistentJsonList} views.
+ * A view of a nested object or array is anchored to the view of its parent: updating it updates the parent, which
+ * copies only the nodes on the path from the root of the document to the updated member. Copying a view shares
+ * its node, so it takes constant time.
+ */
+final class PersistentJson {
+
+    private PersistentJson() {
+        // Prevent instantiation.
+    }
+
+    /**
+     * Returns {@code true} if the provided object is a persistent JSON object or array.
+     *
+     * @param object The object to test.
+     * @return {@code true} if the provided object is a persistent JSON object or array.
+     */
+    static boolean isPersistent(final Object object) {
+        return object instanceof PersistentJsonMap || object instanceof PersistentJsonList;
+    }
+
+    /**
+     * Returns a persistent copy of the provided JSON structure, which takes constant time if it is already
+     * persistent. Values which are neither objects nor arrays are returned as is.
+     *
+     * @param object The JSON structure to copy.
+     * @return A persistent copy of the provided JSON structure.
+     */
+    static Object copyOf(final Object object) {
+        return toView(toNode(object), null, null);
+    }
+
+    /**
+     * Returns {@code true} if the two provided objects are the same {@code Map} or {@code List}, or persistent
+     * views of the same node. This is a cheap test for equality which allows comparisons to skip shared
+     * substructures.
+     *
+     * @param object1 An object.
+     * @param object2 Another object.
+     * @return {@code true} if the two objects are known to be equal without comparing their members.
+     */
+    static boolean isSameContent(final Object object1, final Object object2) {
+        final Object node = nodeOf(object1);
+        if (node != null) {
+            return node == nodeOf(object2);
+        }
+        return object1 == object2 && (object1 instanceof Map || object1 instanceof List);
+    }
+
+    /**
+     * Returns the immutable node representing the provided value, converting nested {@code Map}s and
+     * {@code List}s. Values which are neither objects nor arrays are returned as is.
+     */
+    static Object toNode(final Object value) {
+        if (value instanceof JsonValue) {
+            return toNode(((JsonValue) value).getObject());
+        } else if (value instanceof PersistentJsonMap) {
+            return ((PersistentJsonMap) value).node();
+        } else if (value instanceof PersistentJsonList) {
+            return ((PersistentJsonList) value).node();
+        } else if (value instanceof Map) {
+            JsonHashTrie trie = JsonHashTrie.EMPTY;
+            for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                trie = trie.put(String.valueOf(entry.getKey()), toNode(entry.getValue()));
+            }
+            return trie;
+        } else if (value instanceof List) {
+            JsonVectorTrie vector = JsonVectorTrie.EMPTY;
+            for (final Object element : (List<?>) value) {
+                vector = vector.append(toNode(element));
+            }
+            return vector;
+        }
+        return value;
+    }
+
+    /**
+     * Returns a view of the provided node, anchored to a parent view if not {@code null}. Values which are neither
+     * objects nor arrays are returned as is.
+     */
+    static Object toView(final Object node, final Parent parent, final Object key) {
+        if (node instanceof JsonHashTrie) {
+            return new PersistentJsonMap(new Anchor<>((JsonHashTrie) node, parent, key));
+        } else if (node instanceof JsonVectorTrie) {
+            return new PersistentJsonList(new Anchor<>((JsonVectorTrie) node, parent, key));
+        }
+        return node;
+    }
+
+    private static Object nodeOf(final Object object) {
+        if (object instanceof PersistentJsonMap) {
+            return ((PersistentJsonMap) object).node();
+        } else if (object instanceof PersistentJsonList) {
+            return ((PersistentJsonList) object).node();
+        }
+        return null;
+    }
+
+    /** A view which holds the nodes of nested views. */
+    interface Parent {
+        /**
+         * Returns the current node of the member with the provided key, or {@link JsonHashTrie#NOT_FOUND}.
+         *
+         * @param key The member name, or the element index.
+         * @return The current node of the member.
+         */
+        Object childNode(Object key);
+
+        /**
+         * Replaces the node of the member with the provided key.
+         *
+         * @param key The member name, or the element index.
+         * @param node The new node of the member.
+         */
+        void updateChild(Object key, Object node);
+    }
+
+    /**
+     * Holds the current node of a view, and the parent view and key to which the view is anchored. The view is
+     * detached from its parent, becoming the root of its own document, as soon as the parent holds another node
+     * for the key: once the member has been replaced or removed, updates to its view do not affect the parent.
+     *
+     * @param <N> The type of node.
+     */
+    static final class Anchor<N> {
+        private N node;
+        private Parent parent;
+        private final Object key;
+
+        Anchor(final N node, final Parent parent, final Object key) {
+            this.node = node;
+            this.parent = parent;
+            this.key = key;
+        }
+
+        N node() {
+            if (parent != null && parent.childNode(key) != node) {
+                parent = null;
+            }
+            return node;
+        }
+
+        void update(final N newNode) {
+            if (node() != newNode) {
+                if (parent != null) {
+                    parent.updateChild(key, newNode);
+                }
+                node = newNode;
+            }
+        }
+    }
+}
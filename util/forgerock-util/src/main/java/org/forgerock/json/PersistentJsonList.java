@@ -0,0 +1,116 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+import org.forgerock.json.PersistentJson.Anchor;
+
+/**
+ * A mutable {@code List} view of a persistent JSON array held in a {@link JsonVectorTrie}.
+ * <p>
+ * Elements are stored by value: objects and arrays added to the list are copied into the vector, and the elements
+ * returned by the list are views anchored to it.
+ */
+final class PersistentJsonList extends AbstractList<Object> implements RandomAccess, PersistentJson.Parent {
+
+    private final Anchor<JsonVectorTrie> anchor;
+
+    PersistentJsonList(final Anchor<JsonVectorTrie> anchor) {
+        this.anchor = anchor;
+    }
+
+    JsonVectorTrie node() {
+        return anchor.node();
+    }
+
+    @Override
+    public int size() {
+        return node().size();
+    }
+
+    @Override
+    public Object get(final int index) {
+        final JsonVectorTrie vector = node();
+        checkIndex(index, vector.size());
+        return PersistentJson.toView(vector.get(index), this, index);
+    }
+
+    @Override
+    public Object set(final int index, final Object element) {
+        final JsonVectorTrie vector = node();
+        checkIndex(index, vector.size());
+        final Object previous = vector.get(index);
+        anchor.update(vector.set(index, PersistentJson.toNode(element)));
+        return PersistentJson.toView(previous, null, null);
+    }
+
+    @Override
+    public void add(final int index, final Object element) {
+        final JsonVectorTrie vector = node();
+        if (index < 0 || index > vector.size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + vector.size());
+        }
+        anchor.update(vector.insert(index, PersistentJson.toNode(element)));
+        modCount++;
+    }
+
+    @Override
+    public Object remove(final int index) {
+        final JsonVectorTrie vector = node();
+        checkIndex(index, vector.size());
+        final Object previous = vector.get(index);
+        anchor.update(vector.remove(index));
+        modCount++;
+        return PersistentJson.toView(previous, null, null);
+    }
+
+    @Override
+    public void clear() {
+        anchor.update(JsonVectorTrie.EMPTY);
+        modCount++;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return PersistentJson.isSameContent(this, o) || super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    @Override
+    public Object childNode(final Object key) {
+        final JsonVectorTrie vector = node();
+        final int index = (Integer) key;
+        return index < vector.size() ? vector.get(index) : JsonHashTrie.NOT_FOUND;
+    }
+
+    @Override
+    public void updateChild(final Object key, final Object node) {
+        anchor.update(node().set((Integer) key, node));
+    }
+
+    private static void checkIndex(final int index, final int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
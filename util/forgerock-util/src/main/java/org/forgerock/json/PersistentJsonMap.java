@@ -0,0 +1,172 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json;
+
+import static org.forgerock.json.JsonHashTrie.NOT_FOUND;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.forgerock.json.PersistentJson.Anchor;
+
+/**
+ * A mutable {@code Map} view of a persistent JSON object held in a {@link JsonHashTrie}.
+ * <p>
+ * Members are iterated in hash order, over a snapshot of the object taken when the iteration starts. Values are
+ * stored by value: objects and arrays put in the map are copied into the trie, and the values returned by the map
+ * are views anchored to it.
+ */
+final class PersistentJsonMap extends AbstractMap<String, Object> implements PersistentJson.Parent {
+
+    private final Anchor<JsonHashTrie> anchor;
+
+    PersistentJsonMap(final Anchor<JsonHashTrie> anchor) {
+        this.anchor = anchor;
+    }
+
+    JsonHashTrie node() {
+        return anchor.node();
+    }
+
+    @Override
+    public int size() {
+        return node().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return node().size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return node().get(key, NOT_FOUND) != NOT_FOUND;
+    }
+
+    @Override
+    public Object get(final Object key) {
+        final Object node = node().get(key, NOT_FOUND);
+        return node == NOT_FOUND ? null : PersistentJson.toView(node, this, key);
+    }
+
+    @Override
+    public Object put(final String key, final Object value) {
+        final JsonHashTrie trie = node();
+        final Object previous = trie.get(key, null);
+        anchor.update(trie.put(key, PersistentJson.toNode(value)));
+        return PersistentJson.toView(previous, null, null);
+    }
+
+    @Override
+    public Object remove(final Object key) {
+        final JsonHashTrie trie = node();
+        final Object previous = trie.get(key, null);
+        anchor.update(trie.remove(key));
+        return PersistentJson.toView(previous, null, null);
+    }
+
+    @Override
+    public void clear() {
+        anchor.update(JsonHashTrie.EMPTY);
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new EntryIterator(node());
+            }
+
+            @Override
+            public int size() {
+                return PersistentJsonMap.this.size();
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return PersistentJson.isSameContent(this, o) || super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    @Override
+    public Object childNode(final Object key) {
+        return node().get(key, NOT_FOUND);
+    }
+
+    @Override
+    public void updateChild(final Object key, final Object node) {
+        anchor.update(node().put((String) key, node));
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+        private final JsonHashTrie.Cursor cursor;
+        private boolean hasNext;
+        private String lastKey;
+
+        private EntryIterator(final JsonHashTrie trie) {
+            cursor = trie.cursor();
+            hasNext = cursor.next();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext;
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            if (!hasNext) {
+                throw new NoSuchElementException();
+            }
+            final String key = cursor.key();
+            final Object value = cursor.value();
+            lastKey = key;
+            hasNext = cursor.next();
+            return new AbstractMap.SimpleEntry<String, Object>(key,
+                    PersistentJson.toView(value, PersistentJsonMap.this, key)) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public Object setValue(final Object newValue) {
+                    final Object previous = super.setValue(newValue);
+                    PersistentJsonMap.this.put(key, newValue);
+                    return previous;
+                }
+            };
+        }
+
+        @Override
+        public void remove() {
+            if (lastKey == null) {
+                throw new IllegalStateException();
+            }
+            PersistentJsonMap.this.remove(lastKey);
+            lastKey = null;
+        }
+    }
+}
@@ -12,14 +12,15 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 package org.forgerock.util.promise;
 
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 import org.forgerock.util.AsyncFunction;
 import org.forgerock.util.Function;
@@ -39,6 +40,15 @@ import org.slf4j.LoggerFactory;
  * represented by the promise. Cancellation is only supported if the
  * {@link #tryCancel(boolean)} is overridden and returns an exception.
  * </ul>
+ * <p>
+ * A pending promise holds a lock-free stack of listeners, which is atomically
+ * replaced by the outcome of the promise when it completes. Listeners are
+ * invoked in the order in which they were registered, by the thread which
+ * completes the promise, or by the thread registering them if the promise has
+ * already completed. Listeners completing other promises, such as the promises
+ * returned by {@code then} and {@code thenAsync}, are dispatched in turn by the
+ * same thread: past a small nesting depth they are queued until the outer
+ * listeners return, so that long chains do not exhaust the stack.
  *
  * @param <V>
  *            The type of the task's result, or {@link Void} if the task does
@@ -51,7 +61,6 @@ import org.slf4j.LoggerFactory;
  */
 public class PromiseImpl<V, E extends Exception> implements Promise<V, E>, ResultHandler<V>,
         ExceptionHandler<E>, RuntimeExceptionHandler {
-    // TODO: Is using monitor based sync better than AQS?
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PromiseImpl.class);
 
@@ -59,11 +68,6 @@ public class PromiseImpl<V, E extends Exception> implements Promise<V, E>, Resul
         void handleStateChange(int newState, V result, E exception, RuntimeException runtimeException);
     }
 
-    /**
-     * State value indicating that this promise has not completed.
-     */
-    private static final int PENDING = 0;
-
     /**
      * State value indicating that this promise has completed successfully
      * (result set).
@@ -85,6 +89,29 @@ public class PromiseImpl<V, E extends Exception> implements Promise<V, E>, Resul
      */
     private static final int HAS_RUNTIME_EXCEPTION = 4;
 
+    /**
+     * The nesting depth of listener dispatch past which completed promises
+     * queue their listeners rather than invoking them.
+     */
+    private static final int MAX_DISPATCH_DEPTH = 16;
+
+    private static final ThreadLocal<Dispatcher> DISPATCHER = new ThreadLocal<Dispatcher>() {
+        @Override
+        protected Dispatcher initialValue() {
+            return new Dispatcher();
+        }
+    };
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<PromiseImpl, Object> STATE =
+            AtomicReferenceFieldUpdater.newUpdater(PromiseImpl.class, Object.class, "state");
+
+    /**
+     * The stack of listeners, or {@code null}, while this promise is pending,
+     * then its {@link Completion}.
+     */
+    private volatile Object state;
+
     /**
      * Creates a new pending {@link Promise} implementation.
      *
@@ -100,14 +127,6 @@ public class PromiseImpl<V, E extends Exception> implements Promise<V, E>, Resul
         return new PromiseImpl<>();
     }
 
-    private volatile int state = PENDING;
-    private V result = null;
-    private E exception = null;
-    private RuntimeException runtimeException = null;
-
-    private final Queue<StateListener<V, E>> listeners =
-            new ConcurrentLinkedQueue<>();
-
     /**
      * Creates a new pending {@link Promise} implementation. This constructor is
      * protected to allow for sub-classing.
@@ -268,12 +287,13 @@ public class PromiseImpl<V, E extends Exception> implements Promise<V, E>, Resul
 
     @Override
     public final boolean isCancelled() {
-        return state == CANCELLED;
+        final Object current = state;
+        return current instanceof Completion && ((Completion<?, ?>) current).state == CANCELLED;
     }
 
     @Override
     public final boolean isDone() {
-        return state != PENDING;
+        return state instanceof Completion;
     }
 
     @Override
@@ -549,108 +569,295 @@ public class PromiseImpl<V, E extends Exception> implements Promise<V, E>, Resul
         return null;
     }
 
+    @SuppressWarnings("unchecked")
     private void addOrFireListener(final StateListener<V, E> listener) {
-        final int stateBefore = state;
-        if (stateBefore != PENDING) {
-            handleCompletion(listener, stateBefore);
-        } else {
-            listeners.add(listener);
-            final int stateAfter = state;
-            if (stateAfter != PENDING && listeners.remove(listener)) {
-                handleCompletion(listener, stateAfter);
-            }
+        final Object current = state;
+        if (current instanceof Completion) {
+            handleCompletion(listener, (Completion<V, E>) current);
+        } else if (!push(listener)) {
+            handleCompletion(listener, (Completion<V, E>) state);
         }
     }
 
-    private void handleCompletion(final StateListener<V, E> listener, final int completedState) {
+    /**
+     * Pushes a listener on the stack, unless this promise has completed.
+     *
+     * @return {@code false} if this promise has completed.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean push(final StateListener<V, E> listener) {
+        final Node<V, E> node = new Node<>(listener);
+        Object current;
+        do {
+            current = state;
+            if (current instanceof Completion) {
+                return false;
+            }
+            node.next = (Node<V, E>) current;
+        } while (!STATE.compareAndSet(this, current, node));
+        return true;
+    }
+
+    private static <V, E extends Exception> void handleCompletion(final StateListener<V, E> listener,
+            final Completion<V, E> completion) {
         try {
-            listener.handleStateChange(completedState, result, exception, runtimeException);
+            listener.handleStateChange(completion.state, completion.result, completion.exception,
+                    completion.runtimeException);
         } catch (RuntimeException ignored) {
             LOGGER.error("State change listener threw a RuntimeException which cannot be handled!", ignored);
         }
     }
 
+    @SuppressWarnings("unchecked")
+    private Completion<V, E> completion() {
+        return (Completion<V, E>) state;
+    }
+
     private V get0() throws ExecutionException {
-        if (runtimeException != null) {
-            throw new ExecutionException(runtimeException);
-        } else if (exception != null) {
-            throw new ExecutionException(exception);
+        final Completion<V, E> completion = completion();
+        if (completion.runtimeException != null) {
+            throw new ExecutionException(completion.runtimeException);
+        } else if (completion.exception != null) {
+            throw new ExecutionException(completion.exception);
         } else {
-            return result;
+            return completion.result;
         }
     }
 
     private V getOrThrow0() throws E {
-        if (runtimeException != null) {
-            throw runtimeException;
-        } else if (exception != null) {
-            throw exception;
+        final Completion<V, E> completion = completion();
+        if (completion.runtimeException != null) {
+            throw completion.runtimeException;
+        } else if (completion.exception != null) {
+            throw completion.exception;
         } else {
-            return result;
+            return completion.result;
         }
     }
 
+    @SuppressWarnings("unchecked")
     private boolean setState(final int newState, final V result, final E exception,
             final RuntimeException runtimeException) {
-        synchronized (this) {
-            if (state != PENDING) {
+        final Completion<V, E> completion = new Completion<>(newState, result, exception, runtimeException);
+        Object current;
+        do {
+            current = state;
+            if (current instanceof Completion) {
                 // Already completed.
                 return false;
             }
+        } while (!STATE.compareAndSet(this, current, completion)); // Publishes.
+        if (current != null) {
+            // The stack holds the most recent listener first.
+            Node<V, E> listeners = null;
+            Node<V, E> node = (Node<V, E>) current;
+            while (node != null) {
+                final Node<V, E> next = node.next;
+                node.next = listeners;
+                listeners = node;
+                node = next;
+            }
+            DISPATCHER.get().dispatch(listeners, completion);
+        }
+        return true;
+    }
+
+    private void await() throws InterruptedException {
+        // Fast-path.
+        if (!isDone()) {
+            park(false, 0L, false);
+        }
+    }
+
+    private void await(final long timeout, final TimeUnit unit, final boolean isUninterruptibly)
+            throws InterruptedException, TimeoutException {
+        // Fast-path.
+        if (!isDone() && !park(true, System.nanoTime() + unit.toNanos(timeout), isUninterruptibly)) {
+            throw new TimeoutException();
+        }
+    }
+
+    /**
+     * Parks the current thread until this promise completes.
+     *
+     * @return {@code false} if the deadline passed before this promise completed.
+     */
+    private boolean park(final boolean timed, final long deadline, final boolean isUninterruptibly)
+            throws InterruptedException {
+        // This promise may be waiting for listeners queued by the current thread.
+        DISPATCHER.get().dispatchQueued();
+        final Waiter<V, E> waiter = new Waiter<>(Thread.currentThread());
+        if (!push(waiter)) {
+            return true;
+        }
+        boolean wasInterrupted = false;
+        try {
+            while (!isDone()) {
+                if (timed) {
+                    final long remainingNanos = deadline - System.nanoTime();
+                    if (remainingNanos <= 0) {
+                        return false;
+                    }
+                    LockSupport.parkNanos(this, remainingNanos);
+                } else {
+                    LockSupport.park(this);
+                }
+                if (Thread.interrupted()) {
+                    if (isUninterruptibly) {
+                        wasInterrupted = true;
+                    } else {
+                        throw new InterruptedException();
+                    }
+                }
+            }
+            return true;
+        } finally {
+            waiter.thread = null;
+            if (!isDone()) {
+                // Timed out or interrupted: do not leave the waiter on the stack of a long pending promise.
+                removeWaiter(waiter);
+            }
+            if (wasInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Removes a waiter from the stack of listeners, unless this promise has completed. The stack is copied without
+     * the waiter rather than unlinked in place, because {@link #setState} reverses the nodes it takes over.
+     */
+    @SuppressWarnings("unchecked")
+    private void removeWaiter(final Waiter<V, E> waiter) {
+        Object current;
+        Node<V, E> head;
+        do {
+            current = state;
+            if (current == null || current instanceof Completion) {
+                return;
+            }
+            head = null;
+            Node<V, E> tail = null;
+            boolean found = false;
+            for (Node<V, E> node = (Node<V, E>) current; node != null; node = node.next) {
+                if (node.listener == waiter) {
+                    found = true;
+                    continue;
+                }
+                final Node<V, E> copy = new Node<>(node.listener);
+                if (tail == null) {
+                    head = copy;
+                } else {
+                    tail.next = copy;
+                }
+                tail = copy;
+            }
+            if (!found) {
+                return;
+            }
+        } while (!STATE.compareAndSet(this, current, head));
+    }
+
+    /** The outcome of a completed promise. */
+    private static final class Completion<V, E extends Exception> {
+        private final int state;
+        private final V result;
+        private final E exception;
+        private final RuntimeException runtimeException;
+
+        private Completion(final int state, final V result, final E exception,
+                final RuntimeException runtimeException) {
+            this.state = state;
             this.result = result;
             this.exception = exception;
             this.runtimeException = runtimeException;
-            state = newState; // Publishes.
-            notifyAll(); // Wake up any blocked threads.
         }
-        StateListener<V, E> listener;
-        while ((listener = listeners.poll()) != null) {
-            handleCompletion(listener, newState);
+    }
+
+    /** A node of the stack of listeners of a pending promise. */
+    private static final class Node<V, E extends Exception> {
+        private final StateListener<V, E> listener;
+        private Node<V, E> next;
+
+        private Node(final StateListener<V, E> listener) {
+            this.listener = listener;
+        }
+    }
+
+    /** Unparks a thread blocked on the completion of a promise. */
+    private static final class Waiter<V, E extends Exception> implements StateListener<V, E> {
+        private volatile Thread thread;
+
+        private Waiter(final Thread thread) {
+            this.thread = thread;
+        }
+
+        @Override
+        public void handleStateChange(final int newState, final V result, final E exception,
+                final RuntimeException runtimeException) {
+            final Thread waiting = thread;
+            if (waiting != null) {
+                LockSupport.unpark(waiting);
+            }
         }
-        return true;
     }
 
-    private void await() throws InterruptedException {
-        // Use double-check for fast-path.
-        if (state == PENDING) {
-            synchronized (this) {
-                while (state == PENDING) {
-                    wait();
+    /** Invokes the listeners of the promises completed by a thread, bounding the nesting depth. */
+    private static final class Dispatcher {
+        private int depth;
+        private Queued head;
+        private Queued tail;
+
+        <V, E extends Exception> void dispatch(final Node<V, E> listeners, final Completion<V, E> completion) {
+            if (depth >= MAX_DISPATCH_DEPTH) {
+                final Queued queued = new Queued(listeners, completion);
+                if (tail == null) {
+                    head = queued;
+                } else {
+                    tail.next = queued;
                 }
+                tail = queued;
+                return;
+            }
+            invoke(listeners, completion);
+            if (depth == 0) {
+                dispatchQueued();
             }
         }
-    }
 
-    private void await(final long timeout, final TimeUnit unit, final boolean isUninterruptibly)
-            throws InterruptedException, TimeoutException {
-        // Use double-check for fast-path.
-        if (state == PENDING) {
-            final long timeoutMS = unit.toMillis(timeout);
-            final long endTimeMS = System.currentTimeMillis() + timeoutMS;
-            boolean wasInterrupted = false;
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        void dispatchQueued() {
+            while (head != null) {
+                final Queued queued = head;
+                head = queued.next;
+                if (head == null) {
+                    tail = null;
+                }
+                invoke((Node) queued.listeners, (Completion) queued.completion);
+            }
+        }
+
+        private <V, E extends Exception> void invoke(final Node<V, E> listeners, final Completion<V, E> completion) {
+            depth++;
             try {
-                synchronized (this) {
-                    while (state == PENDING) {
-                        final long remainingTimeMS = endTimeMS - System.currentTimeMillis();
-                        if (remainingTimeMS <= 0) {
-                            throw new TimeoutException();
-                        }
-                        try {
-                            wait(remainingTimeMS);
-                        } catch (final InterruptedException e) {
-                            if (isUninterruptibly) {
-                                wasInterrupted = true;
-                            } else {
-                                throw e;
-                            }
-                        }
-                    }
+                for (Node<V, E> node = listeners; node != null; node = node.next) {
+                    handleCompletion(node.listener, completion);
                 }
             } finally {
-                if (wasInterrupted) {
-                    Thread.currentThread().interrupt();
-                }
+                depth--;
             }
         }
     }
+
+    /** Listeners queued for dispatch, with the outcome of their promise. */
+    private static final class Queued {
+        private final Node<?, ?> listeners;
+        private final Completion<?, ?> completion;
+        private Queued next;
+
+        private Queued(final Node<?, ?> listeners, final Completion<?, ?> completion) {
+            this.listeners = listeners;
+            this.completion = completion;
+        }
+    }
 }
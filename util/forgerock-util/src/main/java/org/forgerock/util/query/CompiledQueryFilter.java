@@ -0,0 +1,36 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.util.query;
+
+/**
+ * A {@link QueryFilter} which has been compiled by a {@link QueryFilterCompiler} into a predicate.
+ * <p>
+ * Compiled filters are immutable and may be shared between threads.
+ *
+ * @param <T> The type of the objects matched by this filter.
+ */
+public interface CompiledQueryFilter<T> {
+
+    /**
+     * Returns {@code true} if the provided object matches this filter.
+     *
+     * @param object
+     *            The object to be matched.
+     * @return {@code true} if the provided object matches this filter.
+     */
+    boolean matches(T object);
+}
@@ -0,0 +1,670 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.util.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compiles {@link QueryFilter}s into {@link CompiledQueryFilter}s, which match objects without walking the filter
+ * tree with a {@link QueryFilterVisitor} for each of them.
+ * <p>
+ * Compilation resolves each field once with a {@link FieldResolver} and normalizes each assertion value for the only
+ * type of values it can match. Negations are pushed down to the assertions, boolean literals are folded, and the
+ * sub-filters of {@code and} and {@code or} filters are reordered so that the cheapest sub-filters which are the most
+ * likely to decide the result are evaluated first.
+ * <p>
+ * Assertions compare values the way the JSON query filter visitors do: strings ignoring case, numbers by their
+ * {@code double} value and booleans with {@code false} before {@code true}. A value never matches an assertion value of
+ * another type. The {@code co} and {@code sw} assertions match numbers and booleans by equality. A field whose value is
+ * a {@link List} has the elements of the list as values, and an assertion matches the field if it matches any of them.
+ * <p>
+ * Compilers and compiled filters are immutable and may be shared between threads.
+ *
+ * @param <T> The type of the objects matched by the compiled filters.
+ * @param <F> The type of the field definitions in the compiled filters.
+ */
+public final class QueryFilterCompiler<T, F> {
+
+    /**
+     * The value returned by a {@link FieldAccessor} when the field is not defined in an object, as opposed to a field
+     * which is defined with a {@code null} value.
+     */
+    public static final Object UNDEFINED = new Object() {
+        @Override
+        public String toString() {
+            return "undefined";
+        }
+    };
+
+    /**
+     * Resolves the fields of {@link QueryFilter}s when they are compiled.
+     *
+     * @param <T> The type of the objects matched by the compiled filters.
+     * @param <F> The type of the field definitions in the compiled filters.
+     */
+    public interface FieldResolver<T, F> {
+
+        /**
+         * Returns an accessor for the values of the provided field.
+         *
+         * @param field
+         *            The field definition.
+         * @return An accessor for the values of the field.
+         */
+        FieldAccessor<T> resolve(F field);
+    }
+
+    /**
+     * Reads the value of a resolved field from the objects matched by a compiled filter.
+     *
+     * @param <T> The type of the objects matched by the compiled filters.
+     */
+    public interface FieldAccessor<T> {
+
+        /**
+         * Returns the value of the field in the provided object.
+         *
+         * @param object
+         *            The object being matched.
+         * @return The value of the field, which is a {@link List} for a multi-valued field, or {@link #UNDEFINED} if
+         *         the field is not defined in the object.
+         */
+        Object getValue(T object);
+    }
+
+    /**
+     * Returns a new compiler which resolves fields using the provided resolver.
+     * <p>
+     * An equality assertion matches a field if any of its values is equal to the assertion value, and extended match
+     * assertions never match.
+     *
+     * @param <T> The type of the objects matched by the compiled filters.
+     * @param <F> The type of the field definitions in the compiled filters.
+     * @param resolver
+     *            The resolver of the fields of the compiled filters.
+     * @return A new compiler.
+     */
+    public static <T, F> QueryFilterCompiler<T, F> newQueryFilterCompiler(final FieldResolver<T, F> resolver) {
+        return new QueryFilterCompiler<>(resolver, false, false);
+    }
+
+    private final FieldResolver<T, F> resolver;
+    private final boolean equalityOfAllValues;
+    private final boolean undefinedExtendedMatch;
+
+    private QueryFilterCompiler(final FieldResolver<T, F> resolver, final boolean equalityOfAllValues,
+            final boolean undefinedExtendedMatch) {
+        this.resolver = resolver;
+        this.equalityOfAllValues = equalityOfAllValues;
+        this.undefinedExtendedMatch = undefinedExtendedMatch;
+    }
+
+    /**
+     * Returns a compiler whose equality assertions only match a field if all of its values are equal to the assertion
+     * value, including a field which is not defined or which is an empty list.
+     *
+     * @return A compiler with the same settings as this one, except for equality assertions.
+     */
+    public QueryFilterCompiler<T, F> withEqualityOfAllValues() {
+        return new QueryFilterCompiler<>(resolver, true, undefinedExtendedMatch);
+    }
+
+    /**
+     * Returns a compiler whose extended match assertions are undefined, in the sense of three-valued logic: neither
+     * an extended match assertion nor its negation match any object, and an {@code and} or {@code or} filter whose
+     * result depends on an undefined sub-filter does not match either.
+     *
+     * @return A compiler with the same settings as this one, except for extended match assertions.
+     */
+    public QueryFilterCompiler<T, F> withUndefinedExtendedMatch() {
+        return new QueryFilterCompiler<>(resolver, equalityOfAllValues, true);
+    }
+
+    /**
+     * Compiles the provided filter.
+     *
+     * @param filter
+     *            The filter to be compiled.
+     * @return The compiled filter.
+     */
+    public CompiledQueryFilter<T> compile(final QueryFilter<F> filter) {
+        return filter.accept(new Compiler(), false);
+    }
+
+    /**
+     * Compiles filters into matchers, the parameter telling whether the matcher should match the objects for which
+     * the filter is false rather than true.
+     */
+    private final class Compiler implements QueryFilterVisitor<Matcher<T>, Boolean, F> {
+
+        @Override
+        public Matcher<T> visitAndFilter(final Boolean negated, final List<QueryFilter<F>> subFilters) {
+            return compose(!negated, negated, subFilters);
+        }
+
+        @Override
+        public Matcher<T> visitOrFilter(final Boolean negated, final List<QueryFilter<F>> subFilters) {
+            return compose(negated, negated, subFilters);
+        }
+
+        @Override
+        public Matcher<T> visitNotFilter(final Boolean negated, final QueryFilter<F> subFilter) {
+            return subFilter.accept(this, !negated);
+        }
+
+        @Override
+        public Matcher<T> visitBooleanLiteralFilter(final Boolean negated, final boolean value) {
+            return Constant.valueOf(value != negated);
+        }
+
+        @Override
+        public Matcher<T> visitExtendedMatchFilter(final Boolean negated, final F field, final String operator,
+                final Object valueAssertion) {
+            return Constant.valueOf(negated && !undefinedExtendedMatch);
+        }
+
+        @Override
+        public Matcher<T> visitPresentFilter(final Boolean negated, final F field) {
+            return leaf(negated, new Present<>(resolver.resolve(field), QueryFilter.present(field).toString()));
+        }
+
+        @Override
+        public Matcher<T> visitEqualsFilter(final Boolean negated, final F field, final Object valueAssertion) {
+            return assertion(negated, field, equalityOfAllValues, equality(valueAssertion),
+                    QueryFilter.equalTo(field, valueAssertion));
+        }
+
+        @Override
+        public Matcher<T> visitContainsFilter(final Boolean negated, final F field, final Object valueAssertion) {
+            final ValueMatcher matcher = valueAssertion instanceof String
+                    ? new StringContains((String) valueAssertion, false)
+                    : equality(valueAssertion);
+            return assertion(negated, field, false, matcher, QueryFilter.contains(field, valueAssertion));
+        }
+
+        @Override
+        public Matcher<T> visitStartsWithFilter(final Boolean negated, final F field, final Object valueAssertion) {
+            final ValueMatcher matcher = valueAssertion instanceof String
+                    ? new StringContains((String) valueAssertion, true)
+                    : equality(valueAssertion);
+            return assertion(negated, field, false, matcher, QueryFilter.startsWith(field, valueAssertion));
+        }
+
+        @Override
+        public Matcher<T> visitGreaterThanFilter(final Boolean negated, final F field, final Object valueAssertion) {
+            return assertion(negated, field, false, ordering(valueAssertion, false, false, true),
+                    QueryFilter.greaterThan(field, valueAssertion));
+        }
+
+        @Override
+        public Matcher<T> visitGreaterThanOrEqualToFilter(final Boolean negated, final F field,
+                final Object valueAssertion) {
+            return assertion(negated, field, false, ordering(valueAssertion, false, true, true),
+                    QueryFilter.greaterThanOrEqualTo(field, valueAssertion));
+        }
+
+        @Override
+        public Matcher<T> visitLessThanFilter(final Boolean negated, final F field, final Object valueAssertion) {
+            return assertion(negated, field, false, ordering(valueAssertion, true, false, false),
+                    QueryFilter.lessThan(field, valueAssertion));
+        }
+
+        @Override
+        public Matcher<T> visitLessThanOrEqualToFilter(final Boolean negated, final F field,
+                final Object valueAssertion) {
+            return assertion(negated, field, false, ordering(valueAssertion, true, true, false),
+                    QueryFilter.lessThanOrEqualTo(field, valueAssertion));
+        }
+
+        /**
+         * Composes the sub-filters of an {@code and} filter, or of an {@code or} filter when {@code conjunction} is
+         * {@code false}, taking into account that a negated conjunction is a disjunction of negated sub-filters and
+         * vice versa.
+         */
+        private Matcher<T> compose(final boolean conjunction, final boolean negated,
+                final List<QueryFilter<F>> subFilters) {
+            final List<Matcher<T>> matchers = new ArrayList<>(subFilters.size());
+            for (final QueryFilter<F> subFilter : subFilters) {
+                final Matcher<T> matcher = subFilter.accept(this, negated);
+                if (matcher instanceof Constant) {
+                    if (matcher.matches(null) != conjunction) {
+                        // short-circuits the whole filter
+                        return matcher;
+                    }
+                } else if (matcher instanceof Composite && ((Composite<T>) matcher).conjunction == conjunction) {
+                    matchers.addAll(((Composite<T>) matcher).matchers);
+                } else {
+                    matchers.add(matcher);
+                }
+            }
+            if (matchers.isEmpty()) {
+                return Constant.valueOf(conjunction);
+            } else if (matchers.size() == 1) {
+                return matchers.get(0);
+            }
+            return new Composite<>(conjunction, matchers);
+        }
+
+        private Matcher<T> assertion(final boolean negated, final F field, final boolean allValues,
+                final ValueMatcher matcher, final QueryFilter<F> filter) {
+            return leaf(negated, new Assertion<>(resolver.resolve(field), matcher, allValues, filter.toString()));
+        }
+
+        private Matcher<T> leaf(final boolean negated, final Matcher<T> matcher) {
+            return negated ? new Not<>(matcher) : matcher;
+        }
+    }
+
+    private static ValueMatcher equality(final Object valueAssertion) {
+        return ordering(valueAssertion, false, true, false);
+    }
+
+    private static ValueMatcher ordering(final Object valueAssertion, final boolean ifLess, final boolean ifEqual,
+            final boolean ifGreater) {
+        if (valueAssertion instanceof String) {
+            return new StringOrdering((String) valueAssertion, ifLess, ifEqual, ifGreater);
+        } else if (valueAssertion instanceof Number) {
+            return new NumberOrdering(((Number) valueAssertion).doubleValue(), ifLess, ifEqual, ifGreater);
+        } else if (valueAssertion instanceof Boolean) {
+            return new BooleanOrdering((Boolean) valueAssertion, ifLess, ifEqual, ifGreater);
+        }
+        return ValueMatcher.NEVER;
+    }
+
+    /**
+     * A compiled filter, which estimates the cost of matching an object and the probability that it matches.
+     */
+    private abstract static class Matcher<T> implements CompiledQueryFilter<T> {
+
+        abstract double getCost();
+
+        abstract double getSelectivity();
+    }
+
+    private static final class Constant<T> extends Matcher<T> {
+        private static final Constant<?> TRUE = new Constant<>(true);
+        private static final Constant<?> FALSE = new Constant<>(false);
+
+        @SuppressWarnings("unchecked")
+        static <T> Constant<T> valueOf(final boolean value) {
+            return (Constant<T>) (value ? TRUE : FALSE);
+        }
+
+        private final boolean value;
+
+        private Constant(final boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean matches(final T object) {
+            return value;
+        }
+
+        @Override
+        double getCost() {
+            return 0;
+        }
+
+        @Override
+        double getSelectivity() {
+            return value ? 1 : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+
+    private static final class Not<T> extends Matcher<T> {
+        private final Matcher<T> matcher;
+
+        private Not(final Matcher<T> matcher) {
+            this.matcher = matcher;
+        }
+
+        @Override
+        public boolean matches(final T object) {
+            return !matcher.matches(object);
+        }
+
+        @Override
+        double getCost() {
+            return matcher.getCost();
+        }
+
+        @Override
+        double getSelectivity() {
+            return 1 - matcher.getSelectivity();
+        }
+
+        @Override
+        public String toString() {
+            return "!(" + matcher + ")";
+        }
+    }
+
+    /**
+     * A conjunction or disjunction of matchers, which are evaluated in the order minimizing the expected cost of a
+     * match: the order of increasing cost per chance of short-circuiting the evaluation.
+     */
+    private static final class Composite<T> extends Matcher<T> {
+        private final boolean conjunction;
+        private final List<Matcher<T>> matchers;
+        private final Matcher<?>[] evaluationOrder;
+        private final double cost;
+        private final double selectivity;
+
+        private Composite(final boolean conjunction, final List<Matcher<T>> matchers) {
+            this.conjunction = conjunction;
+            this.matchers = matchers;
+            final List<Matcher<T>> sorted = new ArrayList<>(matchers);
+            Collections.sort(sorted, new Comparator<Matcher<T>>() {
+                @Override
+                public int compare(final Matcher<T> m1, final Matcher<T> m2) {
+                    return Double.compare(rank(m1), rank(m2));
+                }
+            });
+            double cost = 0;
+            double reached = 1;
+            for (final Matcher<T> matcher : sorted) {
+                cost += reached * matcher.getCost();
+                reached *= conjunction ? matcher.getSelectivity() : 1 - matcher.getSelectivity();
+            }
+            this.evaluationOrder = sorted.toArray(new Matcher<?>[0]);
+            this.cost = cost;
+            this.selectivity = conjunction ? reached : 1 - reached;
+        }
+
+        private double rank(final Matcher<T> matcher) {
+            final double shortCircuit = conjunction ? 1 - matcher.getSelectivity() : matcher.getSelectivity();
+            return shortCircuit > 0 ? matcher.getCost() / shortCircuit : Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean matches(final T object) {
+            for (final Matcher<?> matcher : evaluationOrder) {
+                if (((Matcher<T>) matcher).matches(object) != conjunction) {
+                    return !conjunction;
+                }
+            }
+            return conjunction;
+        }
+
+        @Override
+        double getCost() {
+            return cost;
+        }
+
+        @Override
+        double getSelectivity() {
+            return selectivity;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder builder = new StringBuilder("(");
+            for (int i = 0; i < evaluationOrder.length; i++) {
+                if (i > 0) {
+                    builder.append(conjunction ? " and " : " or ");
+                }
+                builder.append(evaluationOrder[i]);
+            }
+            return builder.append(')').toString();
+        }
+    }
+
+    private static final class Present<T> extends Matcher<T> {
+        private final FieldAccessor<T> accessor;
+        private final String description;
+
+        private Present(final FieldAccessor<T> accessor, final String description) {
+            this.accessor = accessor;
+            this.description = description;
+        }
+
+        @Override
+        public boolean matches(final T object) {
+            return accessor.getValue(object) != UNDEFINED;
+        }
+
+        @Override
+        double getCost() {
+            return 1;
+        }
+
+        @Override
+        double getSelectivity() {
+            return 0.9;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    private static final class Assertion<T> extends Matcher<T> {
+        private final FieldAccessor<T> accessor;
+        private final ValueMatcher matcher;
+        private final boolean allValues;
+        private final String description;
+
+        private Assertion(final FieldAccessor<T> accessor, final ValueMatcher matcher, final boolean allValues,
+                final String description) {
+            this.accessor = accessor;
+            this.matcher = matcher;
+            this.allValues = allValues;
+            this.description = description;
+        }
+
+        @Override
+        public boolean matches(final T object) {
+            final Object value = accessor.getValue(object);
+            if (value == UNDEFINED) {
+                return allValues;
+            } else if (value instanceof List) {
+                for (final Object element : (List<?>) value) {
+                    if (matcher.matches(element) != allValues) {
+                        return !allValues;
+                    }
+                }
+                return allValues;
+            }
+            return matcher.matches(value);
+        }
+
+        @Override
+        double getCost() {
+            return 1 + matcher.cost;
+        }
+
+        @Override
+        double getSelectivity() {
+            return matcher.selectivity;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    /**
+     * Matches single values against a normalized assertion value.
+     */
+    private abstract static class ValueMatcher {
+        static final ValueMatcher NEVER = new ValueMatcher(0, 0) {
+            @Override
+            boolean matches(final Object value) {
+                return false;
+            }
+        };
+
+        /** The relative cost of matching a value. */
+        final double cost;
+        /** The estimated probability that a value matches. */
+        final double selectivity;
+
+        ValueMatcher(final double cost, final double selectivity) {
+            this.cost = cost;
+            this.selectivity = selectivity;
+        }
+
+        abstract boolean matches(Object value);
+    }
+
+    /**
+     * Compares values with the assertion value, matching the values which are less than, equal to or greater than
+     * the assertion value as requested.
+     */
+    private abstract static class Ordering extends ValueMatcher {
+        private final boolean ifLess;
+        private final boolean ifEqual;
+        private final boolean ifGreater;
+
+        Ordering(final double cost, final boolean ifLess, final boolean ifEqual, final boolean ifGreater) {
+            super(cost, ifLess || ifGreater ? 0.5 : 0.1);
+            this.ifLess = ifLess;
+            this.ifEqual = ifEqual;
+            this.ifGreater = ifGreater;
+        }
+
+        final boolean accept(final int comparison) {
+            return comparison < 0 ? ifLess : comparison == 0 ? ifEqual : ifGreater;
+        }
+    }
+
+    private static final class StringOrdering extends Ordering {
+        private final String assertion;
+        private final boolean equalityOnly;
+
+        StringOrdering(final String assertion, final boolean ifLess, final boolean ifEqual, final boolean ifGreater) {
+            super(1, ifLess, ifEqual, ifGreater);
+            this.assertion = assertion;
+            this.equalityOnly = ifEqual && !ifLess && !ifGreater;
+        }
+
+        @Override
+        boolean matches(final Object value) {
+            if (!(value instanceof String)) {
+                return false;
+            }
+            final String s = (String) value;
+            if (equalityOnly && s.length() != assertion.length()) {
+                // strings which are equal ignoring case have the same length
+                return false;
+            }
+            return accept(s.compareToIgnoreCase(assertion));
+        }
+    }
+
+    private static final class NumberOrdering extends Ordering {
+        private final double assertion;
+
+        NumberOrdering(final double assertion, final boolean ifLess, final boolean ifEqual, final boolean ifGreater) {
+            super(1, ifLess, ifEqual, ifGreater);
+            this.assertion = assertion;
+        }
+
+        @Override
+        boolean matches(final Object value) {
+            return value instanceof Number && accept(Double.compare(((Number) value).doubleValue(), assertion));
+        }
+    }
+
+    private static final class BooleanOrdering extends Ordering {
+        private final boolean assertion;
+
+        BooleanOrdering(final boolean assertion, final boolean ifLess, final boolean ifEqual,
+                final boolean ifGreater) {
+            super(1, ifLess, ifEqual, ifGreater);
+            this.assertion = assertion;
+        }
+
+        @Override
+        boolean matches(final Object value) {
+            return value instanceof Boolean && accept(Boolean.compare((Boolean) value, assertion));
+        }
+    }
+
+    /**
+     * Matches the strings containing, or starting with, the assertion value ignoring case. The assertion value is
+     * lower-cased once and for all, and ASCII strings are matched without lower-casing them.
+     */
+    private static final class StringContains extends ValueMatcher {
+        private final String assertion;
+        private final boolean ascii;
+        private final boolean prefixOnly;
+
+        StringContains(final String assertion, final boolean prefixOnly) {
+            super(prefixOnly ? 2 : 4, 0.25);
+            this.assertion = assertion.toLowerCase(Locale.ENGLISH);
+            this.ascii = isAscii(this.assertion, this.assertion.length());
+            this.prefixOnly = prefixOnly;
+        }
+
+        @Override
+        boolean matches(final Object value) {
+            if (!(value instanceof String)) {
+                return false;
+            }
+            final String s = (String) value;
+            final int length = assertion.length();
+            // lower-casing non-ASCII characters may yield ASCII characters or change the length of the string
+            if (!ascii || !isAscii(s, prefixOnly ? Math.min(length, s.length()) : s.length())) {
+                final String lowerCase = s.toLowerCase(Locale.ENGLISH);
+                return prefixOnly ? lowerCase.startsWith(assertion) : lowerCase.contains(assertion);
+            }
+            final int last = prefixOnly ? Math.min(0, s.length() - length) : s.length() - length;
+            for (int offset = 0; offset <= last; offset++) {
+                if (regionMatches(s, offset)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean regionMatches(final String s, final int offset) {
+            for (int i = 0; i < assertion.length(); i++) {
+                char c = s.charAt(offset + i);
+                if (c >= 'A' && c <= 'Z') {
+                    c += 'a' - 'A';
+                }
+                if (c != assertion.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isAscii(final String s, final int length) {
+            for (int i = 0; i < length; i++) {
+                if (s.charAt(i) >= 0x80) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions Copyrighted [year] [name of copyright owner]".
  *
  * Copyright 2011-2016 ForgeRock AS.
+ * Portions Copyrighted 2026 Wren Security.
  */
 
 package org.forgerock.json;
@@ -19,6 +20,10 @@ package org.forgerock.json;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.forgerock.json.JsonValue.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
@@ -301,6 +306,117 @@ public class JsonPatchTest {
         assertThat(v1.get("a").asString()).isEqualTo("bxformed");
     }
 
+    @Test
+    public void listDiffInsertAtFront() {
+        v1 = json(array());
+        for (int i = 0; i < 1000; i++) {
+            v1.add(object(field("_id", "user" + i), field("roles", array("r" + i % 7))));
+        }
+        v2 = v1.copy();
+        v2.add(0, object(field("_id", "new")));
+        diff = JsonPatch.diff(v1, v2);
+        assertThat(diff.size()).isEqualTo(1);
+        assertThat(diff.get(0).get("op").asString()).isEqualTo("add");
+        assertThat(diff.get(0).get("path").asString()).isEqualTo("/0");
+
+        JsonPatch.patch(v1, diff);
+        assertThat(JsonPatch.isEqual(v1, v2)).isTrue();
+    }
+
+    @Test
+    public void listDiffMovedElement() {
+        v1 = json(object(field("a", array("1", object(field("b", "2")), "3", "4", "5"))));
+        v2 = json(object(field("a", array("1", "3", "4", "5", object(field("b", "2"))))));
+        diff = JsonPatch.diff(v1, v2);
+        assertThat(diff.size()).isEqualTo(1);
+        assertThat(diff.get(0).get("op").asString()).isEqualTo("move");
+        assertThat(diff.get(0).get("from").asString()).isEqualTo("/a/1");
+        assertThat(diff.get(0).get("path").asString()).isEqualTo("/a/4");
+
+        JsonPatch.patch(v1, diff);
+        assertThat(JsonPatch.isEqual(v1, v2)).isTrue();
+    }
+
+    @Test
+    public void listDiffChangedElement() {
+        v1 = json(array(object(field("a", "1"), field("b", "2")), object(field("a", "3"))));
+        v2 = v1.copy();
+        v2.get(0).put("b", "changed");
+        diff = JsonPatch.diff(v1, v2);
+        assertThat(diff.size()).isEqualTo(1);
+        assertThat(diff.get(0).get("op").asString()).isEqualTo("replace");
+        assertThat(diff.get(0).get("path").asString()).isEqualTo("/0/b");
+
+        JsonPatch.patch(v1, diff);
+        assertThat(JsonPatch.isEqual(v1, v2)).isTrue();
+    }
+
+    @Test
+    public void diffExceedingMaxOperationsReplacesWholeValue() {
+        v1 = json(object(field("a", array("1", "2", "3", "4")), field("b", "5")));
+        v2 = json(object(field("a", array("4", "3", "2", "1")), field("b", "6")));
+        assertThat(JsonPatch.diff(v1, v2).size()).isGreaterThan(2);
+
+        diff = JsonPatch.diff(v1, v2, 2);
+        assertThat(diff.size()).isEqualTo(1);
+        assertThat(diff.get(0).get("op").asString()).isEqualTo("replace");
+        assertThat(diff.get(0).get("path").asString()).isEqualTo("/");
+
+        JsonPatch.patch(v1, diff);
+        assertThat(JsonPatch.isEqual(v1, v2)).isTrue();
+    }
+
+    @Test
+    public void moveShouldInsertIntoList() {
+        v1 = json(array("a", "b", "c"));
+        JsonPatch.patch(v1, json(array(object(field("op", "move"), field("from", "/0"), field("path", "/2")))));
+        assertThat(v1.asList()).containsExactly("b", "c", "a");
+    }
+
+    @Test
+    public void listDiffShouldRoundTrip() {
+        final Random random = new Random(15);
+        for (int round = 0; round < 1000; round++) {
+            final List<Object> original = new ArrayList<>();
+            for (int i = random.nextInt(30); i > 0; i--) {
+                original.add(randomElement(random));
+            }
+            final List<Object> target = new ArrayList<>(original);
+            for (int edits = random.nextInt(8); edits > 0; edits--) {
+                final int op = random.nextInt(4);
+                if (op == 0 || target.isEmpty()) {
+                    target.add(random.nextInt(target.size() + 1), randomElement(random));
+                } else if (op == 1) {
+                    target.remove(random.nextInt(target.size()));
+                } else if (op == 2) {
+                    target.add(random.nextInt(target.size()), target.remove(random.nextInt(target.size())));
+                } else {
+                    target.set(random.nextInt(target.size()), randomElement(random));
+                }
+            }
+            v1 = json(object(field("list", original))).copy();
+            v2 = json(object(field("list", target))).copy();
+            if (round % 2 == 0) {
+                v1 = v1.toPersistent();
+            }
+            diff = JsonPatch.diff(v1, v2);
+            JsonPatch.patch(v1, diff);
+            assertThat(JsonPatch.isEqual(v1, v2)).as("patch %s", diff).isTrue();
+            assertThat(JsonPatch.diff(v1, v2).size()).isEqualTo(0);
+        }
+    }
+
+    private static Object randomElement(final Random random) {
+        switch (random.nextInt(3)) {
+        case 0:
+            return String.valueOf(random.nextInt(6));
+        case 1:
+            return object(field("id", random.nextInt(4)), field("tags", array(random.nextInt(3))));
+        default:
+            return array(random.nextInt(3), random.nextInt(3));
+        }
+    }
+
     // ----- exception unit tests ----------
 
     @Test(expectedExceptions = JsonValueException.class)
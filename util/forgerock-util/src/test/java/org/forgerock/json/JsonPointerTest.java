@@ -13,12 +13,17 @@
  *
  * Copyright © 2010–2011 ApexIdentity Inc. All rights reserved.
  * Portions Copyrighted 2011-2015 ForgeRock AS.
+ * Portions Copyrighted 2026 Wren Security.
  */
 
 package org.forgerock.json;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Random;
+
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
@@ -191,6 +196,87 @@ public class JsonPointerTest {
         assertThat(p.toString()).isEqualTo(pointer.replace("%2f", "%2F"));
     }
 
+    @Test
+    public void toStringIsCached() {
+        JsonPointer p = new JsonPointer().child("a").child("b c");
+        assertThat(p.toString()).isEqualTo("/a/b%20c");
+        assertThat(p.toString()).isSameAs(p.toString());
+    }
+
+    @Test
+    public void toStringOfCanonicalPointerIsParsedString() {
+        String pointer = "/a/b/c";
+        assertThat(new JsonPointer(pointer).toString()).isSameAs(pointer);
+    }
+
+    @DataProvider(name = "nonCanonicalJsonPointers")
+    public Object[][] getNonCanonicalJsonPointers() {
+        return new Object[][] {
+            { "", "/" }, { "a/b", "/a/b" }, { "/a/", "/a" }, { "/a/%65", "/a/e" }, { "/a/%2f", "/a/%2F" },
+            { "/a//b", "/a//b" }, { "/caf\u00e9", "/caf%C3%A9" },
+        };
+    }
+
+    @Test(dataProvider = "nonCanonicalJsonPointers")
+    public void toStringOfNonCanonicalPointer(final String pointer, final String expected) {
+        assertThat(new JsonPointer(pointer).toString()).isEqualTo(expected);
+    }
+
+    @Test
+    public void hashCodeMatchesEquals() {
+        JsonPointer p1 = new JsonPointer("/a/b/c");
+        JsonPointer p2 = new JsonPointer("a", "b", "c");
+        JsonPointer p3 = new JsonPointer("/a/b/c/d").parent();
+        assertThat(p1.hashCode()).isEqualTo(p2.hashCode()).isEqualTo(p3.hashCode());
+        assertThat((Object) p3).isEqualTo(p1);
+    }
+
+    @Test
+    public void internReturnsSameInstance() {
+        JsonPointer p1 = JsonPointer.intern("/a/b/c");
+        JsonPointer p2 = JsonPointer.intern(new String("/a/b/c"));
+        assertThat((Object) p1).isSameAs(p2);
+        assertThat((Object) p1).isEqualTo(new JsonPointer("/a/b/c"));
+    }
+
+    @Test
+    public void siblingChildrenDoNotInterfere() {
+        JsonPointer parent = new JsonPointer("/a");
+        JsonPointer b = parent.child("b");
+        JsonPointer c = parent.child("c");
+        JsonPointer bd = b.child("d");
+        JsonPointer be = b.child("e");
+        assertThat(b.toString()).isEqualTo("/a/b");
+        assertThat(c.toString()).isEqualTo("/a/c");
+        assertThat(bd.toString()).isEqualTo("/a/b/d");
+        assertThat(be.toString()).isEqualTo("/a/b/e");
+        assertThat((Object) bd.parent()).isEqualTo(b);
+        assertThat((Object) parent.child("b")).isEqualTo(b);
+        assertThat((Object) be.parent().parent()).isEqualTo(parent);
+        assertThat(parent.size()).isEqualTo(1);
+        assertThat(be.parent().toArray()).containsExactly("a", "b");
+    }
+
+    @Test
+    public void parsingAndEncodingMatchUriFragments() throws URISyntaxException {
+        final String[] alphabet = {
+            "a", "Z", "0", "9", "-", ".", "_", "~", "!", "$", "&", "'", "(", ")", "*", "+", ",", ";", "=", ":", "@",
+            "[", "]", "?", "/", "%", " ", "#", "^", "{", "}", "|", "\\", "\"", "<", ">", "\u00e9", "e\u0301",
+            "\u2000", "\u0000", "\ud83d\ude00",
+        };
+        final Random random = new Random(6901);
+        for (int i = 0; i < 10000; i++) {
+            StringBuilder token = new StringBuilder();
+            for (int n = 1 + random.nextInt(8); n > 0; n--) {
+                token.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            String value = token.toString();
+            String encoded = new URI(null, null, null, null, value).toASCIIString().substring(1).replace("/", "%2F");
+            assertThat(new JsonPointer().child(value).toString()).isEqualTo("/" + encoded);
+            assertThat(new JsonPointer("/" + encoded).get(0)).isEqualTo(new URI("#" + encoded).getFragment());
+        }
+    }
+
     // ----- exception unit tests ----------
 
     @Test(expectedExceptions = JsonException.class)
@@ -198,6 +284,16 @@ public class JsonPointerTest {
         new JsonPointer("%%%");
     }
 
+    @Test(expectedExceptions = JsonException.class)
+    public void truncatedEscape() throws JsonException {
+        new JsonPointer("/a/%4");
+    }
+
+    @Test(expectedExceptions = JsonException.class)
+    public void illegalCharacter() throws JsonException {
+        new JsonPointer("/a b");
+    }
+
     @Test(expectedExceptions = IndexOutOfBoundsException.class)
     public void relativePathOffsetNegative() {
         new JsonPointer("/a/b/c").relativePointer(-1);
@@ -13,6 +13,7 @@
  *
  * Copyright © 2010–2011 ApexIdentity Inc. All rights reserved.
  * Portions Copyrighted 2011-2017 ForgeRock AS.
+ * Portions Copyrighted 2026 Wren Security.
  */
 
 package org.forgerock.json;
@@ -30,6 +31,8 @@ import static org.forgerock.json.JsonValueFunctions.listOf;
 import static org.forgerock.json.JsonValueFunctions.url;
 import static org.testng.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
 import java.net.URL;
 import java.util.AbstractMap;
 import java.util.ArrayList;
@@ -40,6 +43,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import org.forgerock.util.Function;
 import org.forgerock.util.i18n.LocalizableString;
@@ -47,6 +51,9 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 /**
  * Unit tests for JsonValue.
  */
@@ -645,6 +652,90 @@ public class JsonValueTest {
                         + "some controls \\b\\f\\n\\r\\t\\u0000\\u001F\\u007F\\u009F\" }");
     }
 
+    @Test
+    public void toStringShouldNestValues() {
+        final JsonValue value = json(object(field("a", array(1, 2.5, true, null)), field("b", object()),
+                field("c", json(object(field("d", "e"))))));
+        assertThat(value.toString()).isEqualTo(
+                "{ \"a\": [ 1, 2.5, true, null ], \"b\": {  }, \"c\": { \"d\": \"e\" } }");
+    }
+
+    @Test
+    public void toJsonStringShouldMatchJackson() throws Exception {
+        final JsonValue value = json(object(field("z", array(1, 2.5, true, null, "caf\u00e9 \ud83d\ude00")),
+                field("a \"silly\" key", "controls \b\f\n\r\t\u0000\u001f\u007f\u009f /"),
+                field("m", object(field("y", 1L), field("x", object())))));
+        assertThat(value.toJsonString()).isEqualTo(new ObjectMapper().writeValueAsString(value.getObject()));
+    }
+
+    @Test
+    public void toJsonStringShouldQuoteNonFiniteNumbersAsJackson() throws Exception {
+        final JsonValue value = json(object(field("nan", Double.NaN), field("infinity", Float.NEGATIVE_INFINITY)));
+        assertThat(value.toJsonString()).isEqualTo("{\"nan\":\"NaN\",\"infinity\":\"-Infinity\"}");
+        assertThat(value.toJsonString()).isEqualTo(new ObjectMapper().writeValueAsString(value.getObject()));
+    }
+
+    @Test
+    public void toJsonStringShouldWriteOtherObjectsAsStrings() {
+        assertThat(json(object(field("url", new LocalizableString("fred")))).toJsonString())
+                .isEqualTo("{\"url\":\"fred\"}");
+    }
+
+    @Test
+    public void toCanonicalJsonStringShouldSortMembers() throws Exception {
+        final JsonValue value = json(object(field("b", object(field("d", 1), field("c", array(object(
+                field("f", 2), field("e", 3)))))), field("a", "x")));
+        assertThat(value.toCanonicalJsonString())
+                .isEqualTo("{\"a\":\"x\",\"b\":{\"c\":[{\"e\":3,\"f\":2}],\"d\":1}}");
+        assertThat(value.toCanonicalJsonString())
+                .isEqualTo(new ObjectMapper().writeValueAsString(sorted(value.getObject())));
+    }
+
+    @Test
+    public void writeToOutputStreamShouldEncodeUtf8() throws Exception {
+        final StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            large.append("caf\u00e9 \ud83d\ude00 \u0000 ");
+        }
+        final JsonValue value = json(object(field("large", large.toString()), field("b", "\ud800"),
+                field("a", array("x", 1))));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        value.writeTo(out);
+        assertThat(out.toString("UTF-8")).isEqualTo(value.toJsonString().replace("\ud800", "?"));
+        out.reset();
+        value.writeCanonicalTo(out);
+        assertThat(out.toString("UTF-8")).isEqualTo(value.toCanonicalJsonString().replace("\ud800", "?"));
+    }
+
+    @Test
+    public void writeToGeneratorShouldMatchJsonString() throws Exception {
+        final JsonValue value = json(object(field("a", array(1, 2L, 2.5, 1.5f, true, null, "s")),
+                field("b", object(field("c", new LocalizableString("fred"))))));
+        final StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = new ObjectMapper().getFactory().createGenerator(writer)) {
+            value.writeTo(generator);
+        }
+        assertThat(writer.toString()).isEqualTo(value.toJsonString());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object sorted(final Object object) {
+        if (object instanceof Map) {
+            final Map<String, Object> map = new TreeMap<>();
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) object).entrySet()) {
+                map.put(entry.getKey(), sorted(entry.getValue()));
+            }
+            return map;
+        } else if (object instanceof List) {
+            final List<Object> list = new ArrayList<>();
+            for (Object element : (List<Object>) object) {
+                list.add(sorted(element));
+            }
+            return list;
+        }
+        return object;
+    }
+
     @Test
     public void testAddPermissiveOverNullTarget() {
         final JsonValue value = json(object(field("rootfield", null)));
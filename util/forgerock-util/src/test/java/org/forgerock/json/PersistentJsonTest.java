@@ -0,0 +1,213 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.json;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class PersistentJsonTest {
+
+    private static JsonValue user() {
+        return json(object(
+                field("_id", "bjensen"),
+                field("name", object(field("given", "Barbara"), field("family", "Jensen"))),
+                field("mail", array("bjensen@example.com", "babs@example.com")),
+                field("roles", array(object(field("_ref", "managed/role/0")), object(field("_ref", "managed/role/1")))),
+                field("active", true),
+                field("logins", 42),
+                field("manager", null)));
+    }
+
+    @Test
+    public void shouldBeEqualToOriginal() {
+        final JsonValue original = user();
+        final JsonValue persistent = original.toPersistent();
+        assertThat(persistent.isPersistent()).isTrue();
+        assertThat(original.isPersistent()).isFalse();
+        assertThat(persistent.getObject()).isEqualTo(original.getObject());
+        assertThat(original.getObject()).isEqualTo(persistent.getObject());
+        assertThat(persistent.getObject().hashCode()).isEqualTo(original.getObject().hashCode());
+        assertThat(persistent.isEqualTo(original)).isTrue();
+        assertThat(persistent.diff(original).size()).isEqualTo(0);
+        assertThat(persistent.get("roles").get(1).get("_ref").asString()).isEqualTo("managed/role/1");
+        assertThat(persistent.get(new JsonPointer("/name/family")).asString()).isEqualTo("Jensen");
+        assertThat(persistent.isDefined("manager")).isTrue();
+        assertThat(persistent.get("manager").isNull()).isTrue();
+        assertThat(persistent.isDefined("missing")).isFalse();
+        assertThat(persistent.keys()).containsOnly("_id", "name", "mail", "roles", "active", "logins", "manager");
+    }
+
+    @Test
+    public void copyShouldBeIndependent() {
+        final JsonValue original = user().toPersistent();
+        final JsonValue copy = original.copy();
+        assertThat(copy.isPersistent()).isTrue();
+
+        copy.get("name").put("given", "Babs");
+        copy.get("roles").get(0).put("_ref", "managed/role/2");
+        copy.get("mail").add("b@example.com");
+        copy.remove("active");
+
+        assertThat(original.get("name").get("given").asString()).isEqualTo("Barbara");
+        assertThat(original.get("roles").get(0).get("_ref").asString()).isEqualTo("managed/role/0");
+        assertThat(original.get("mail").size()).isEqualTo(2);
+        assertThat(original.isDefined("active")).isTrue();
+        assertThat(copy.get("name").get("given").asString()).isEqualTo("Babs");
+        assertThat(copy.get(new JsonPointer("/roles/0/_ref")).asString()).isEqualTo("managed/role/2");
+        assertThat(copy.get("mail").asList()).containsExactly("bjensen@example.com", "babs@example.com",
+                "b@example.com");
+        assertThat(copy.isDefined("active")).isFalse();
+
+        original.get("name").put("family", "Smith");
+        assertThat(copy.get("name").get("family").asString()).isEqualTo("Jensen");
+    }
+
+    @Test
+    public void diffShouldReportOnlyChangedMembers() {
+        final JsonValue original = user().toPersistent();
+        final JsonValue copy = original.copy();
+        copy.put(new JsonPointer("/name/given"), "Babs");
+        copy.put("logins", 43);
+        copy.remove("manager");
+
+        final JsonValue patch = original.diff(copy);
+        assertThat(patch.size()).isEqualTo(3);
+        assertThat(patch.asList()).containsOnlyElementsOf(user().diff(copy).asList());
+        original.patch(patch);
+        assertThat(original.isEqualTo(copy)).isTrue();
+        assertThat(original.getObject()).isEqualTo(copy.getObject());
+    }
+
+    @Test
+    public void nestedViewsShouldUpdateTheDocument() {
+        final JsonValue value = user().toPersistent();
+        final Map<String, Object> name = value.get("name").asMap();
+        name.put("middle", "B");
+        assertThat(value.get(new JsonPointer("/name/middle")).asString()).isEqualTo("B");
+
+        final List<Object> roles = value.get("roles").asList();
+        roles.add(0, object(field("_ref", "managed/role/x")));
+        assertThat(value.get(new JsonPointer("/roles/0/_ref")).asString()).isEqualTo("managed/role/x");
+        assertThat(value.get("roles").size()).isEqualTo(3);
+
+        value.put("name", object(field("given", "Babs")));
+        name.put("family", "Smith");
+        assertThat(value.get("name").getObject()).isEqualTo(object(field("given", "Babs")));
+        assertThat(name).containsEntry("family", "Smith").containsEntry("middle", "B");
+    }
+
+    @Test
+    public void valuesShouldBeStoredByValue() {
+        final JsonValue value = json(object()).toPersistent();
+        final Map<String, Object> member = object(field("a", 1));
+        value.put("member", member);
+        member.put("b", 2);
+        assertThat(value.get("member").getObject()).isEqualTo(object(field("a", 1)));
+
+        value.put("alias", value.get("member"));
+        value.get("alias").put("c", 3);
+        assertThat(value.get("member").size()).isEqualTo(1);
+        assertThat(value.get("alias").size()).isEqualTo(2);
+    }
+
+    @Test
+    public void iteratorsShouldSupportUpdates() {
+        final JsonValue value = user().toPersistent();
+        for (final Iterator<Map.Entry<String, Object>> i = value.asMap().entrySet().iterator(); i.hasNext();) {
+            final Map.Entry<String, Object> entry = i.next();
+            if (entry.getKey().equals("active")) {
+                i.remove();
+            } else if (entry.getKey().equals("logins")) {
+                entry.setValue(0);
+            }
+        }
+        assertThat(value.isDefined("active")).isFalse();
+        assertThat(value.get("logins").asInteger()).isEqualTo(0);
+        assertThat(value.toString()).contains("\"logins\": 0");
+    }
+
+    @Test
+    public void mapShouldBehaveLikeHashMap() {
+        final Random random = new Random(14);
+        final Map<String, Object> expected = new HashMap<>();
+        final Map<String, Object> actual = json(object()).toPersistent().asMap();
+        // "Aa" and "BB" have the same hash code, as have their concatenations.
+        final String[] collisions = { "Aa", "BB", "AaAa", "AaBB", "BBAa", "BBBB" };
+        for (int i = 0; i < 20000; i++) {
+            final String key = random.nextInt(4) == 0
+                    ? collisions[random.nextInt(collisions.length)] : "k" + random.nextInt(2000);
+            final int op = random.nextInt(3);
+            if (op == 0) {
+                assertThat(actual.remove(key)).isEqualTo(expected.remove(key));
+            } else {
+                assertThat(actual.put(key, i)).isEqualTo(expected.put(key, i));
+            }
+            assertThat(actual.containsKey(key)).isEqualTo(expected.containsKey(key));
+            assertThat(actual.size()).isEqualTo(expected.size());
+        }
+        assertThat(actual).isEqualTo(expected);
+        assertThat(new HashMap<>(actual)).isEqualTo(expected);
+        actual.clear();
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    public void listShouldBehaveLikeArrayList() {
+        final Random random = new Random(14);
+        final List<Object> expected = new ArrayList<>();
+        final List<Object> actual = json(array()).toPersistent().asList();
+        for (int i = 0; i < 5000; i++) {
+            expected.add(i);
+            actual.add(i);
+        }
+        assertThat(actual).isEqualTo(expected);
+        for (int i = 0; i < 3000; i++) {
+            final int op = random.nextInt(4);
+            if (op == 0 || expected.isEmpty()) {
+                final int index = random.nextInt(expected.size() + 1);
+                expected.add(index, -i);
+                actual.add(index, -i);
+            } else if (op == 1) {
+                final int index = random.nextInt(expected.size());
+                assertThat(actual.remove(index)).isEqualTo(expected.remove(index));
+            } else if (op == 2) {
+                final int index = random.nextInt(expected.size());
+                assertThat(actual.set(index, i)).isEqualTo(expected.set(index, i));
+            } else {
+                expected.add(i);
+                actual.add(i);
+            }
+            assertThat(actual.size()).isEqualTo(expected.size());
+        }
+        assertThat(actual).isEqualTo(expected);
+        assertThat(new ArrayList<>(actual)).isEqualTo(expected);
+        while (!expected.isEmpty()) {
+            assertThat(actual.remove(expected.size() - 1)).isEqualTo(expected.remove(expected.size() - 1));
+        }
+        assertThat(actual).isEmpty();
+    }
+}
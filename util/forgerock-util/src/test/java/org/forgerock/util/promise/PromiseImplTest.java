@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions copyright 2026 Wren Security.
  */
 
 package org.forgerock.util.promise;
@@ -23,7 +24,10 @@ import static org.mockito.Mockito.*;
 import static org.testng.Assert.fail;
 
 import java.io.IOException;
+import java.lang.reflect.Field;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.forgerock.util.AsyncFunction;
 import org.forgerock.util.Function;
@@ -396,6 +400,171 @@ public class PromiseImplTest {
         verifyNoInteractions(onResultOrException);
     }
 
+    @Test
+    public void completingPromiseShouldRunALongChainOfThenAsyncWithoutOverflowingTheStack() throws Exception {
+
+        //Given
+        PromiseImpl<Integer, NeverThrowsException> rootPromise = new PromiseImpl<>();
+        Promise<Integer, NeverThrowsException> promise = rootPromise;
+        for (int i = 0; i < 100000; i++) {
+            final PromiseImpl<Integer, NeverThrowsException> nestedPromise = new PromiseImpl<>();
+            promise = promise
+                    .thenAsync(new AsyncFunction<Integer, Integer, NeverThrowsException>() {
+                        @Override
+                        public Promise<Integer, NeverThrowsException> apply(Integer value) {
+                            nestedPromise.handleResult(value + 1);
+                            return nestedPromise;
+                        }
+                    })
+                    .then(new Function<Integer, Integer, NeverThrowsException>() {
+                        @Override
+                        public Integer apply(Integer value) {
+                            return value + 1;
+                        }
+                    });
+        }
+
+        //When
+        rootPromise.handleResult(0);
+
+        //Then
+        assertThat(promise.isDone()).isTrue();
+        assertThat(promise.get()).isEqualTo(200000);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void blockingOnAPromiseWithinADeepChainShouldNotDeadlock() throws Exception {
+
+        //Given
+        PromiseImpl<Integer, NeverThrowsException> rootPromise = new PromiseImpl<>();
+        final PromiseImpl<Integer, NeverThrowsException> blockingPromise = new PromiseImpl<>();
+        final Promise<Integer, NeverThrowsException>[] last = new Promise[1];
+        Promise<Integer, NeverThrowsException> promise = rootPromise;
+        for (int i = 0; i < 20; i++) {
+            promise = promise.then(new Function<Integer, Integer, NeverThrowsException>() {
+                @Override
+                public Integer apply(Integer value) {
+                    return value;
+                }
+            });
+        }
+        promise.thenOnResult(new ResultHandler<Integer>() {
+            @Override
+            public void handleResult(Integer value) {
+                // The chain completing the last promise is dispatched after this one.
+                blockingPromise.handleResult(last[0].getOrThrowUninterruptibly());
+            }
+        });
+        promise = rootPromise;
+        for (int i = 0; i < 100; i++) {
+            promise = promise.then(new Function<Integer, Integer, NeverThrowsException>() {
+                @Override
+                public Integer apply(Integer value) {
+                    return value + 1;
+                }
+            });
+        }
+        last[0] = promise;
+
+        //When
+        rootPromise.handleResult(0);
+
+        //Then
+        assertThat(blockingPromise.get(1, TimeUnit.SECONDS)).isEqualTo(100);
+    }
+
+    @Test
+    public void getShouldBlockUntilThePromiseIsCompletedByAnotherThread() throws Exception {
+
+        //Given
+        final PromiseImpl<String, NeverThrowsException> promise = new PromiseImpl<>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ignored) {
+                    // Complete the promise anyway.
+                }
+                promise.handleResult("result");
+            }
+        });
+
+        //When
+        thread.start();
+
+        //Then
+        assertThat(promise.get()).isEqualTo("result");
+        thread.join();
+    }
+
+    @Test(expectedExceptions = TimeoutException.class)
+    public void getShouldTimeOutIfThePromiseIsNotCompleted() throws Exception {
+        new PromiseImpl<String, NeverThrowsException>().get(10, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void getOrThrowUninterruptiblyShouldPreserveTheInterruptedStatus() throws Exception {
+
+        //Given
+        final PromiseImpl<String, NeverThrowsException> promise = new PromiseImpl<>();
+        Thread.currentThread().interrupt();
+
+        //When
+        try {
+            promise.getOrThrowUninterruptibly(10, TimeUnit.MILLISECONDS);
+            fail("Expected a TimeoutException");
+        } catch (TimeoutException expected) {
+            // Expected.
+        }
+
+        //Then
+        assertThat(Thread.interrupted()).isTrue();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void timedOutGetShouldNotLeaveItsWaiterOnThePendingPromise() throws Exception {
+
+        //Given
+        final PromiseImpl<String, NeverThrowsException> promise = new PromiseImpl<>();
+        final ResultHandler<String> first = mock(ResultHandler.class);
+        final ResultHandler<String> second = mock(ResultHandler.class);
+        promise.thenOnResult(first);
+
+        //When
+        for (int i = 0; i < 1000; i++) {
+            try {
+                promise.get(0, TimeUnit.MILLISECONDS);
+                fail("Expected a TimeoutException");
+            } catch (TimeoutException expected) {
+                // Expected.
+            }
+        }
+        promise.thenOnResult(second);
+
+        //Then
+        assertThat(countListeners(promise)).isEqualTo(2);
+        promise.handleResult("result");
+        InOrder inOrder = inOrder(first, second);
+        inOrder.verify(first).handleResult("result");
+        inOrder.verify(second).handleResult("result");
+    }
+
+    /** Counts the listeners of a pending promise, from its private stack of listeners. */
+    private static int countListeners(PromiseImpl<?, ?> promise) throws Exception {
+        Field stateField = PromiseImpl.class.getDeclaredField("state");
+        stateField.setAccessible(true);
+        int count = 0;
+        for (Object node = stateField.get(promise); node != null; count++) {
+            Field nextField = node.getClass().getDeclaredField("next");
+            nextField.setAccessible(true);
+            node = nextField.get(node);
+        }
+        return count;
+    }
+
     @DataProvider
     private Object[][] completeBeforeAfter() {
         return new Object[][] { { Boolean.TRUE }, { Boolean.FALSE } };
@@ -0,0 +1,151 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+
+package org.forgerock.util.query;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.forgerock.json.JsonValue.*;
+import static org.forgerock.util.query.QueryFilter.*;
+import static org.forgerock.util.query.QueryFilterCompiler.newQueryFilterCompiler;
+
+import org.forgerock.json.JsonPointer;
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.JsonValueFieldResolver;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class QueryFilterCompilerTest {
+
+    private static final JsonValue USER = json(object(
+            field("name", "Alice"),
+            field("age", 42),
+            field("admin", false),
+            field("nickname", null),
+            field("emails", array("alice@Example.com", "a@test.org")),
+            field("tags", array()),
+            field("address", object(field("city", "Grenoble"))),
+            field("unicode", "Key")));
+
+    private final QueryFilterParser<JsonPointer> parser = new QueryFilterParser<JsonPointer>() {
+        @Override
+        protected JsonPointer parseField(String fieldDescription) {
+            return new JsonPointer(fieldDescription);
+        }
+    };
+
+    private final QueryFilterCompiler<JsonValue, JsonPointer> compiler =
+            newQueryFilterCompiler(new JsonValueFieldResolver());
+
+    @DataProvider
+    public Object[][] toMatchData() {
+        return new Object[][] {
+            // @formatter:off
+            { "true", true },
+            { "false", false },
+            { "/name eq \"alice\"", true },
+            { "/name eq \"alic\"", false },
+            { "/name co \"LIC\"", true },
+            { "/name sw \"AL\"", true },
+            { "/name sw \"li\"", false },
+            { "/name gt \"al\"", true },
+            { "/name lt \"al\"", false },
+            { "/age eq 42", true },
+            { "/age eq 42.0", true },
+            { "/age eq \"42\"", false },
+            { "/age co 42", true },
+            { "/age gt 41", true },
+            { "/age lt 42", false },
+            { "/age le 42", true },
+            { "/age ge 43", false },
+            { "/admin eq false", true },
+            { "/admin gt false", false },
+            { "/admin lt true", true },
+            { "/emails co \"EXAMPLE\"", true },
+            { "/emails eq \"A@TEST.ORG\"", true },
+            { "/emails eq \"x\"", false },
+            { "/emails/1 eq \"a@test.org\"", true },
+            { "/emails/2 pr", false },
+            { "/tags eq \"x\"", false },
+            { "/address/city eq \"grenoble\"", true },
+            { "/address/zip pr", false },
+            { "/nickname pr", true },
+            { "/nickname eq \"x\"", false },
+            { "/missing pr", false },
+            { "/missing/child pr", false },
+            { "/name/child pr", false },
+            { "!(/missing pr)", true },
+            { "/unicode co \"key\"", true },
+            { "/unicode sw \"k\"", true },
+            { "/unicode sw \"key!\"", false },
+            { "/name eq \"alice\" and /age gt 40", true },
+            { "/name eq \"bob\" or /missing pr", false },
+            { "/age ge 40 and /age le 50 and !(/admin eq true)", true },
+            { "/name eq \"bob\" or (/age lt 18 and /admin eq false)", false },
+            { "!(/name eq \"bob\" or /age lt 18)", true },
+            { "!(false and /missing pr)", true },
+            { "/name co \"x\" or true", true },
+            // @formatter:on
+        };
+    }
+
+    @Test(dataProvider = "toMatchData")
+    public void testMatches(final String filter, final boolean expected) {
+        assertThat(compiler.compile(parser.valueOf(filter)).matches(USER)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testEqualityOfAllValues() {
+        final QueryFilterCompiler<JsonValue, JsonPointer> allValues = compiler.withEqualityOfAllValues();
+
+        assertThat(allValues.compile(parser.valueOf("/emails eq \"a@test.org\"")).matches(USER)).isFalse();
+        assertThat(allValues.compile(parser.valueOf("/name eq \"ALICE\"")).matches(USER)).isTrue();
+        assertThat(allValues.compile(parser.valueOf("/missing eq \"x\"")).matches(USER)).isTrue();
+        assertThat(allValues.compile(parser.valueOf("/tags eq \"x\"")).matches(USER)).isTrue();
+        assertThat(allValues.compile(parser.valueOf("/nickname eq \"x\"")).matches(USER)).isFalse();
+        assertThat(allValues.compile(parser.valueOf("/emails co \"test\"")).matches(USER)).isTrue();
+    }
+
+    @Test
+    public void testExtendedMatch() {
+        final QueryFilter<JsonPointer> extendedMatch = extendedMatch(new JsonPointer("/name"), "sounds", "alyce");
+        final QueryFilter<JsonPointer> present = present(new JsonPointer("/name"));
+        final QueryFilter<JsonPointer> missing = present(new JsonPointer("/missing"));
+        final QueryFilterCompiler<JsonValue, JsonPointer> undefined = compiler.withUndefinedExtendedMatch();
+
+        assertThat(compiler.compile(extendedMatch).matches(USER)).isFalse();
+        assertThat(compiler.compile(not(extendedMatch)).matches(USER)).isTrue();
+        assertThat(compiler.compile(not(and(extendedMatch, present))).matches(USER)).isTrue();
+        assertThat(undefined.compile(extendedMatch).matches(USER)).isFalse();
+        assertThat(undefined.compile(not(extendedMatch)).matches(USER)).isFalse();
+        assertThat(undefined.compile(not(and(extendedMatch, present))).matches(USER)).isFalse();
+        assertThat(undefined.compile(not(and(extendedMatch, missing))).matches(USER)).isTrue();
+        assertThat(undefined.compile(or(extendedMatch, present)).matches(USER)).isTrue();
+        assertThat(undefined.compile(not(or(extendedMatch, missing))).matches(USER)).isFalse();
+    }
+
+    @Test
+    public void testReordersSubFiltersAndPushesDownNegations() {
+        assertThat(compiler.compile(parser.valueOf("/name co \"x\" and /age eq 1 and true")))
+                .hasToString("(/age eq 1 and /name co \"x\")");
+        assertThat(compiler.compile(parser.valueOf("/age eq 1 or /name pr")))
+                .hasToString("(/name pr or /age eq 1)");
+        assertThat(compiler.compile(parser.valueOf("!(/age eq 1 or /name pr)")))
+                .hasToString("(!(/name pr) and !(/age eq 1))");
+        assertThat(compiler.compile(parser.valueOf("/age eq 1 and (/name co \"x\" and /age gt 0)")))
+                .hasToString("(/age eq 1 and /age gt 0 and /name co \"x\")");
+        assertThat(compiler.compile(parser.valueOf("/name co \"x\" and false"))).hasToString("false");
+    }
+}